@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +36,9 @@ import org.pentaho.di.core.row.RowMetaInterface;
  *
  * When the row set is done and no more rows will be entering the row set we will switch to delivering mode.
  *
+ * When the reader runs out of rows while the writer is still filling up a buffer, the writer hands over the partially
+ * filled buffer with the next row it puts. That way a slow trickle of rows doesn't stall until a buffer is full.
+ *
  * @author Matt
  * @since 04-05-2011
  *
@@ -49,6 +53,12 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
 
   private final int BATCHSIZE = 2;
 
+  /** Set by the writer while it holds a partially filled buffer */
+  private volatile boolean filling;
+
+  /** Set by the reader when it timed out while the writer was filling a buffer */
+  private volatile boolean starving;
+
   // private long inputTID = -1, outputTID = -1;
 
   /**
@@ -64,14 +74,19 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
     putArray = new ArrayBlockingQueue<Object[][]>( BATCHSIZE, true );
     getArray = new ArrayBlockingQueue<Object[][]>( BATCHSIZE, true );
 
-    size = maxSize / BATCHSIZE; // each buffer's size
-    Object[][] buffer;
+    size = Math.max( 1, maxSize / BATCHSIZE ); // each buffer's size
+    allocateBuffers();
+  }
+
+  private void allocateBuffers() {
     for ( int i = 0; i < BATCHSIZE; i++ ) {
-      buffer = new Object[size][];
-      putArray.offer( buffer );
+      putArray.offer( new Object[size][] );
     }
+    inputBuffer = null;
     outputBuffer = null;
     putIndex = getIndex = size;
+    filling = false;
+    starving = false;
   }
 
   @Override
@@ -88,6 +103,12 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
 
     this.rowMeta = rowMeta;
 
+    // A null entry marks the end of a partially filled buffer, we can't accept it as a row
+    //
+    if ( rowData == null ) {
+      return false;
+    }
+
     // If we're not accepting we block until we do
     //
     if ( inputBuffer == null ) {
@@ -100,20 +121,30 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
         return false;
       }
       putIndex = 0;
+      filling = true;
     }
     inputBuffer[putIndex++] = rowData;
-    if ( putIndex == size ) {
-      try {
-        getArray.offer( inputBuffer, time, tu );
-        inputBuffer = null;
-      } catch ( InterruptedException e ) {
-        return false;
-      }
+    if ( putIndex == size || starving ) {
+      handOver();
     }
 
     return true;
   }
 
+  /**
+   * Pass the current input buffer to the reader. There is always room in the get queue since there are only BATCHSIZE
+   * buffers in total.
+   */
+  private void handOver() {
+    if ( putIndex < size ) {
+      inputBuffer[putIndex] = null; // signal the end of buffer
+    }
+    filling = false;
+    starving = false;
+    getArray.offer( inputBuffer );
+    inputBuffer = null;
+  }
+
   // default getRow with wait time = 100ms
   //
   /*
@@ -134,57 +165,97 @@ public class BlockingBatchingRowSet extends BaseRowSet implements Comparable<Row
   @Override
   public Object[] getRowImmediate() {
 
-    return getRow();
+    return getRowWait( 0, TimeUnit.MILLISECONDS );
   }
 
   @Override
   public Object[] getRowWait( long timeout, TimeUnit tu ) {
-    if ( outputBuffer == null ) {
-      try {
-        outputBuffer = getArray.poll( timeout, tu );
-      } catch ( InterruptedException e ) {
-        return null;
-      }
+    while ( true ) {
       if ( outputBuffer == null ) {
-        return null;
+        if ( done.get() && getArray.isEmpty() ) {
+          return null; // nothing more will come
+        }
+        try {
+          outputBuffer = getArray.poll( timeout, tu );
+        } catch ( InterruptedException e ) {
+          return null;
+        }
+        if ( outputBuffer == null ) {
+          if ( filling ) {
+            starving = true; // ask the writer to hand over what it has
+          }
+          return null;
+        }
+        getIndex = 0;
       }
-      getIndex = 0;
-    }
 
-    Object[] row = outputBuffer[getIndex];
-    outputBuffer[getIndex++] = null; // prevent any hold-up to GC
-    if ( getIndex == size ) {
-      putArray.offer( outputBuffer );
-      outputBuffer = null;
+      Object[] row = outputBuffer[getIndex];
+      outputBuffer[getIndex++] = null; // prevent any hold-up to GC
+      if ( row == null || getIndex == size ) {
+        putArray.offer( outputBuffer );
+        outputBuffer = null;
+      }
+      if ( row != null ) {
+        return row;
+      }
     }
+  }
 
-    return row;
+  /**
+   * Takes the rest of the current output buffer in one go.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    Object[] rowData = getRow();
+    if ( rowData == null ) {
+      return 0;
+    }
+    rows.add( rowData );
+    int count = 1;
+    while ( count < max && outputBuffer != null ) {
+      Object[] row = outputBuffer[getIndex];
+      outputBuffer[getIndex++] = null; // prevent any hold-up to GC
+      if ( row == null || getIndex == size ) {
+        putArray.offer( outputBuffer );
+        outputBuffer = null;
+      }
+      if ( row != null ) {
+        rows.add( row );
+        count++;
+      }
+    }
+    return count;
   }
 
   @Override
   public int size() {
     // does BlockingQueue.size() grab a lock? If so, frequent call to this method
     // may stress the locking system
-    return size - getIndex + size * getArray.size();
+    Object[][] current = outputBuffer;
+    return ( current == null ? 0 : size - getIndex ) + size * getArray.size();
   }
 
   @Override
   public void setDone() {
-    super.setDone();
     if ( putIndex > 0 && putIndex < size && inputBuffer != null ) {
-      inputBuffer[putIndex] = null; // signal the end of buffer
-      for ( int i = putIndex + 1; i < size; i++ ) {
-        inputBuffer[i] = null;
-      }
-      getArray.offer( inputBuffer );
+      handOver();
     }
     putArray.clear();
+    filling = false;
+
+    // Only flag the end of the stream once the last rows are available to the reader
+    //
+    super.setDone();
   }
 
   @Override
   public void clear() {
     putArray.clear();
     getArray.clear();
+    allocateBuffers();
     done.set( false );
   }
 }
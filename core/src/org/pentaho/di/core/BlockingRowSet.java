@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -30,7 +31,10 @@ import org.pentaho.di.core.row.RowMetaInterface;
 
 /**
  * Contains a buffer of rows. Getting rows from the buffer or putting rows in the buffer is synchronized to allow
- * concurrent use of multiple Threads.
+ * concurrent use of multiple Threads.<br>
+ * <br>
+ * All waiting is done with timeouts on the locks of the queue, never in a synchronized block, so steps that run on
+ * virtual threads unmount from their carrier thread while they wait for rows or room.
  *
  * @author Matt
  * @since 04-04-2003
@@ -125,6 +129,22 @@ public class BlockingRowSet extends BaseRowSet implements Comparable<RowSet>, Ro
     }
   }
 
+  /**
+   * Waits for the first row like {@link #getRow()} does, then drains whatever else is available in one go.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    Object[] rowData = getRow();
+    if ( rowData == null ) {
+      return 0;
+    }
+    rows.add( rowData );
+    return 1 + queArray.drainTo( rows, max - 1 );
+  }
+
   @Override
   public int size() {
     return queArray.size();
@@ -136,6 +136,11 @@ public class Const {
    */
   public static final int ROWS_IN_ROWSET = 10000;
 
+  /**
+   * Maximum number of rows passed between steps in one go by steps that use the batch row API (getRows/putRows)
+   */
+  public static final int ROWS_IN_BATCH = 100;
+
   /**
    * Fetch size in rows when querying a database
    */
@@ -794,6 +799,20 @@ public class Const {
    */
   public static final String KETTLE_MAX_LOG_TIMEOUT_IN_MINUTES = "KETTLE_MAX_LOG_TIMEOUT_IN_MINUTES";
 
+  /**
+   * System wide flag to determine whether the logging event listeners (log files, console, ...) are called by a
+   * separate thread so logging doesn't wait for them. Set to "Y" to call them from a separate thread.
+   * Default is "N".
+   */
+  public static final String KETTLE_LOG_EVENT_LISTENERS_ASYNC = "KETTLE_LOG_EVENT_LISTENERS_ASYNC";
+
+  /**
+   * The maximum number of logging events waiting for the separate listener thread, see
+   * {@link #KETTLE_LOG_EVENT_LISTENERS_ASYNC}. Events logged while this many are waiting are not passed to the
+   * listeners. Default is 10000.
+   */
+  public static final String KETTLE_LOG_EVENT_LISTENERS_QUEUE_SIZE = "KETTLE_LOG_EVENT_LISTENERS_QUEUE_SIZE";
+
   /**
    * System wide flag to determine whether standard error will be redirected to Kettle logging facilities. Will redirect
    * if the value is equal ignoring case to the string "Y"
@@ -962,10 +981,118 @@ public class Const {
   public static final String KETTLE_ROWSET_PUT_TIMEOUT = "KETTLE_ROWSET_PUT_TIMEOUT";
 
   /**
-   * Set this variable to Y if you want to test a more efficient batching row set. (default = N)
+   * Set this variable to Y if you want to use the batching row set which hands over rows between steps in blocks.
+   * (default = N)
    */
   public static final String KETTLE_BATCHING_ROWSET = "KETTLE_BATCHING_ROWSET";
 
+  /**
+   * Set this variable to N to stop using the lock-free row set on hops between two single step copies. (default = Y)
+   */
+  public static final String KETTLE_LOCKFREE_ROWSET = "KETTLE_LOCKFREE_ROWSET";
+
+  /**
+   * Set this variable to Y to run the step copies of a transformation as tasks on a shared pool of threads instead of
+   * on a thread each. (default = N)
+   */
+  public static final String KETTLE_STEP_SCHEDULER = "KETTLE_STEP_SCHEDULER";
+
+  /**
+   * The name of the system property that sets the number of threads of the shared step scheduler pool. (default = the
+   * number of available processors)
+   */
+  public static final String KETTLE_STEP_SCHEDULER_THREADS = "KETTLE_STEP_SCHEDULER_THREADS";
+
+  /**
+   * A comma separated list of step IDs that always run on a thread of their own, also when the step scheduler is used.
+   * Use it for plugin steps that keep state in the thread they run on, like a thread local or a script context.
+   */
+  public static final String KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS = "KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS";
+
+  /**
+   * Set this variable to Y to run step copies, step initialization and parallel job entries on virtual threads when the
+   * JVM supports them (Java 21 or later). (default = N)
+   */
+  public static final String KETTLE_VIRTUAL_THREADS = "KETTLE_VIRTUAL_THREADS";
+
+  /**
+   * Set this variable to Y to run chains of simple row-by-row steps (Select values, Calculator, Filter rows, ...) on the
+   * thread of the first step of the chain. (default = N)
+   */
+  public static final String KETTLE_STEP_FUSION = "KETTLE_STEP_FUSION";
+
+  /**
+   * The name of the variable that optionally contains an alternative maximum number of rows that steps exchange in one
+   * batch through getRows/putRows. (default = 100)
+   */
+  public static final String KETTLE_ROW_BATCH_SIZE = "KETTLE_ROW_BATCH_SIZE";
+
+  /**
+   * The name of the variable that optionally contains the memory budget of a transformation in MB. Steps that keep rows
+   * in memory can reserve from this budget and spill to disk when a reservation fails. (default = no budget)
+   */
+  public static final String KETTLE_MEMORY_BUDGET = "KETTLE_MEMORY_BUDGET";
+
+  /**
+   * The name of the system property that optionally contains the memory budget in MB shared by all transformations
+   * running in the JVM, on a Carte server for example. (default = no budget)
+   */
+  public static final String KETTLE_JVM_MEMORY_BUDGET = "KETTLE_JVM_MEMORY_BUDGET";
+
+  /**
+   * The name of the variable that optionally contains the directory in which steps write the temporary files with the
+   * data that doesn't fit in their memory budget. (default = the java.io.tmpdir system property)
+   */
+  public static final String KETTLE_SPILL_DIRECTORY = "KETTLE_SPILL_DIRECTORY";
+
+  /**
+   * The name of the variable that selects the format of rows written to temporary files and sockets: "legacy" or
+   * "binary". Readers of socket streams detect the format of the writer. (default = legacy)
+   */
+  public static final String KETTLE_ROW_CODEC = "KETTLE_ROW_CODEC";
+
+  /**
+   * Set this variable to Y to let the CSV file input step scan single byte encoded files through memory mapped windows
+   * instead of reading them into a buffer. (default = N)
+   */
+  public static final String KETTLE_CSV_INPUT_MEMORY_MAPPED = "KETTLE_CSV_INPUT_MEMORY_MAPPED";
+
+  /**
+   * Set this variable to Y to let the (old) Text file input step decompress and decode files on a separate read-ahead
+   * thread instead of on the thread parsing the lines. (default = N)
+   */
+  public static final String KETTLE_TEXT_FILE_INPUT_READ_AHEAD = "KETTLE_TEXT_FILE_INPUT_READ_AHEAD";
+
+  /**
+   * The name of the variable that sets the number of threads the (old) Text file input step uses to convert lines to
+   * rows, keeping the order of the lines. (default = 0, convert on the step thread)
+   */
+  public static final String KETTLE_TEXT_FILE_INPUT_CONVERSION_THREADS = "KETTLE_TEXT_FILE_INPUT_CONVERSION_THREADS";
+
+  /**
+   * Set this variable to Y to keep the shared strings of XLSX files read by the streaming Excel reader in a memory
+   * mapped temporary file rather than on the heap. The default is N.
+   */
+  public static final String KETTLE_EXCEL_INPUT_SHARED_STRINGS_MAPPED = "KETTLE_EXCEL_INPUT_SHARED_STRINGS_MAPPED";
+
+  /**
+   * The number of sheets of an XLSX file the streaming Excel reader parses at the same time, on separate threads.
+   * The default of 0 parses the rows on the thread of the step.
+   */
+  public static final String KETTLE_EXCEL_INPUT_PARALLEL_SHEETS = "KETTLE_EXCEL_INPUT_PARALLEL_SHEETS";
+
+  /**
+   * Set this variable to Y to let the Get data from XML step evaluate the loop XPath and field XPaths while the files
+   * are parsed, without building a document, when they are simple enough. The default is N.
+   */
+  public static final String KETTLE_GET_XML_DATA_STREAMING_XPATH = "KETTLE_GET_XML_DATA_STREAMING_XPATH";
+
+  /**
+   * Set this variable to Y to let the JSON input step read the rows while the input is parsed, without loading the
+   * whole document, when all the paths go through the same [*] wildcard. The default is N.
+   */
+  public static final String KETTLE_JSON_INPUT_STREAMING = "KETTLE_JSON_INPUT_STREAMING";
+
   /**
    * Set this variable to Y to disable standard Kettle logging to the console. (stdout)
    */
@@ -0,0 +1,375 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A lock-free ring buffer of rows for exactly one writing thread and one reading thread. This is the case for every
+ * hop between two steps that both run as a single copy. No monitor is ever taken: the producer only moves the tail
+ * sequence, the consumer only moves the head sequence.<br>
+ * <br>
+ * When the buffer is full (or empty) the waiting thread first spins, then yields and finally parks for short periods
+ * until the other side makes progress or the time-out expires.<br>
+ * <br>
+ * Do NOT use this row set when more than one thread writes to or reads from it.
+ */
+public class LockFreeRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 50;
+  private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos( 200 );
+
+  private final Object[][] buffer;
+  private final int mask;
+  private final int capacity;
+
+  /** The sequence of the next row to read, only moved by the consumer */
+  private final AtomicLong head;
+
+  /** The sequence of the next row to write, only moved by the producer */
+  private final AtomicLong tail;
+
+  /** The last head seen by the producer, avoids reading the shared head for every row */
+  private long headCache;
+
+  /** The last tail seen by the consumer, avoids reading the shared tail for every row */
+  private long tailCache;
+
+  private volatile Thread waitingProducer;
+  private volatile Thread waitingConsumer;
+
+  private int timeoutPut;
+  private int timeoutGet;
+
+  /**
+   * Create a new lock-free row set with maxSize capacity.
+   *
+   * @param maxSize
+   *          the maximum number of rows held by this row set
+   */
+  public LockFreeRowSet( int maxSize ) {
+    super();
+
+    capacity = Math.max( 1, maxSize );
+    int length = Integer.highestOneBit( capacity );
+    if ( length < capacity ) {
+      length <<= 1;
+    }
+    buffer = new Object[length][];
+    mask = length - 1;
+
+    head = new AtomicLong( 0L );
+    tail = new AtomicLong( 0L );
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    this.rowMeta = rowMeta;
+    if ( rowData == null ) {
+      return false;
+    }
+    if ( offer( rowData ) ) {
+      return true;
+    }
+
+    long deadline = System.nanoTime() + tu.toNanos( time );
+    for ( int attempt = 0;; attempt++ ) {
+      if ( !idle( attempt, deadline, true ) ) {
+        return false;
+      }
+      if ( offer( rowData ) ) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Adds as many rows as there is room for with a single publication of the tail sequence.
+   */
+  @Override
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows ) {
+    this.rowMeta = rowMeta;
+    if ( rows.isEmpty() ) {
+      return 0;
+    }
+    int added = offer( rows );
+    if ( added > 0 ) {
+      return added;
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutPut );
+    for ( int attempt = 0;; attempt++ ) {
+      if ( !idle( attempt, deadline, true ) ) {
+        return 0;
+      }
+      added = offer( rows );
+      if ( added > 0 ) {
+        return added;
+      }
+    }
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    return poll();
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    Object[] row = poll();
+    if ( row != null ) {
+      return row;
+    }
+
+    long deadline = System.nanoTime() + tu.toNanos( timeout );
+    for ( int attempt = 0;; attempt++ ) {
+      // No need to wait for rows that will never come...
+      //
+      if ( done.get() ) {
+        return poll();
+      }
+      if ( !idle( attempt, deadline, false ) ) {
+        return null;
+      }
+      row = poll();
+      if ( row != null ) {
+        return row;
+      }
+    }
+  }
+
+  /**
+   * Waits for the first row like {@link #getRow()} does, then takes whatever else is available in one go.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    Object[] rowData = getRow();
+    if ( rowData == null ) {
+      return 0;
+    }
+    rows.add( rowData );
+    return 1 + poll( rows, max - 1 );
+  }
+
+  /**
+   * Producer side: add the row if there is room.
+   */
+  private boolean offer( Object[] rowData ) {
+    long t = tail.get();
+    if ( t - headCache >= capacity ) {
+      headCache = head.get();
+      if ( t - headCache >= capacity ) {
+        return false;
+      }
+    }
+    buffer[(int) t & mask] = rowData;
+    tail.lazySet( t + 1 );
+
+    Thread consumer = waitingConsumer;
+    if ( consumer != null ) {
+      LockSupport.unpark( consumer );
+    }
+    return true;
+  }
+
+  /**
+   * Consumer side: take the next row if there is one.
+   */
+  private Object[] poll() {
+    long h = head.get();
+    if ( h >= tailCache ) {
+      tailCache = tail.get();
+      if ( h >= tailCache ) {
+        return null;
+      }
+    }
+    int index = (int) h & mask;
+    Object[] row = buffer[index];
+    buffer[index] = null; // prevent any hold-up to GC
+    head.lazySet( h + 1 );
+
+    Thread producer = waitingProducer;
+    if ( producer != null ) {
+      LockSupport.unpark( producer );
+    }
+    return row;
+  }
+
+  /**
+   * Producer side: add the rows from the start of the list for which there is room.
+   *
+   * @return the number of rows added.
+   * @throws NullPointerException
+   *           if one of the rows to add is null, like the queue based row sets do
+   */
+  private int offer( List<Object[]> rows ) {
+    long t = tail.get();
+    long free = capacity - ( t - headCache );
+    if ( free < rows.size() ) {
+      headCache = head.get();
+      free = capacity - ( t - headCache );
+    }
+    int count = (int) Math.min( free, rows.size() );
+    if ( count <= 0 ) {
+      return 0;
+    }
+    for ( int i = 0; i < count; i++ ) {
+      Object[] rowData = rows.get( i );
+      if ( rowData == null ) {
+        // Nothing was published yet, the slots written so far are overwritten by the next rows
+        throw new NullPointerException( "Row " + i + " of the batch is null" );
+      }
+      buffer[(int) ( t + i ) & mask] = rowData;
+    }
+    tail.lazySet( t + count );
+
+    Thread consumer = waitingConsumer;
+    if ( consumer != null ) {
+      LockSupport.unpark( consumer );
+    }
+    return count;
+  }
+
+  /**
+   * Consumer side: take up to max rows that are available right now.
+   *
+   * @return the number of rows added to the list.
+   */
+  private int poll( List<Object[]> rows, int max ) {
+    long h = head.get();
+    tailCache = tail.get();
+    int count = (int) Math.min( tailCache - h, max );
+    if ( count <= 0 ) {
+      return 0;
+    }
+    for ( int i = 0; i < count; i++ ) {
+      int index = (int) ( h + i ) & mask;
+      rows.add( buffer[index] );
+      buffer[index] = null; // prevent any hold-up to GC
+    }
+    head.lazySet( h + count );
+
+    Thread producer = waitingProducer;
+    if ( producer != null ) {
+      LockSupport.unpark( producer );
+    }
+    return count;
+  }
+
+  /**
+   * Back off a little while the buffer is full (producer) or empty (consumer): spin, then yield, then park.
+   *
+   * @return false if the deadline has passed or the thread was interrupted.
+   */
+  private boolean idle( int attempt, long deadline, boolean producer ) {
+    long remaining = deadline - System.nanoTime();
+    if ( remaining <= 0 || Thread.interrupted() ) {
+      return false;
+    }
+
+    if ( attempt < SPIN_TRIES ) {
+      return true;
+    }
+    if ( attempt < SPIN_TRIES + YIELD_TRIES ) {
+      Thread.yield();
+      return true;
+    }
+
+    Thread current = Thread.currentThread();
+    if ( producer ) {
+      waitingProducer = current;
+      if ( isFull() ) {
+        LockSupport.parkNanos( this, Math.min( remaining, MAX_PARK_NANOS ) );
+      }
+      waitingProducer = null;
+    } else {
+      waitingConsumer = current;
+      if ( isEmpty() && !done.get() ) {
+        LockSupport.parkNanos( this, Math.min( remaining, MAX_PARK_NANOS ) );
+      }
+      waitingConsumer = null;
+    }
+    return true;
+  }
+
+  private boolean isFull() {
+    return tail.get() - head.get() >= capacity;
+  }
+
+  private boolean isEmpty() {
+    return head.get() >= tail.get();
+  }
+
+  @Override
+  public void setDone() {
+    super.setDone();
+
+    // Wake up a parked reader so it sees the end of the stream right away
+    //
+    Thread consumer = waitingConsumer;
+    if ( consumer != null ) {
+      LockSupport.unpark( consumer );
+    }
+  }
+
+  @Override
+  public int size() {
+    long h = head.get();
+    long t = tail.get();
+    return t > h ? (int) ( t - h ) : 0;
+  }
+
+  @Override
+  public void clear() {
+    for ( int i = 0; i < buffer.length; i++ ) {
+      buffer[i] = null;
+    }
+    head.set( 0L );
+    tail.set( 0L );
+    headCache = 0L;
+    tailCache = 0L;
+    done.set( false );
+  }
+}
@@ -0,0 +1,177 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number of bytes that steps can reserve memory from before they keep rows in memory. Steps that can't get a
+ * reservation are expected to spill to disk instead. A budget without a limit grants every reservation, it only keeps
+ * track of the reserved bytes.<br>
+ * <br>
+ * A budget can have a parent budget, every reservation is then made from the parent as well. This way all the
+ * transformations running in one JVM (on a Carte server for example) can share a single JVM wide budget, see
+ * {@link Const#KETTLE_JVM_MEMORY_BUDGET}.<br>
+ * <br>
+ * This class is thread-safe.
+ */
+public class MemoryBudget {
+
+  private static MemoryBudget jvmBudget;
+
+  private final long limit;
+  private final MemoryBudget parent;
+  private final AtomicLong reserved;
+  private final AtomicLong peakReserved;
+
+  /**
+   * @param limit
+   *          the maximum number of bytes that can be reserved, 0 or less means no limit
+   * @param parent
+   *          the budget to reserve from as well or null
+   */
+  public MemoryBudget( long limit, MemoryBudget parent ) {
+    this.limit = limit;
+    this.parent = parent;
+    this.reserved = new AtomicLong( 0L );
+    this.peakReserved = new AtomicLong( 0L );
+  }
+
+  /**
+   * Create a memory budget from a number of megabytes.
+   *
+   * @param megaBytes
+   *          the limit in MB, 0 or less means no limit
+   * @param parent
+   *          the budget to reserve from as well or null
+   */
+  public static MemoryBudget fromMegaBytes( long megaBytes, MemoryBudget parent ) {
+    return new MemoryBudget( megaBytes > 0 ? megaBytes * 1024 * 1024 : 0L, parent );
+  }
+
+  /**
+   * @return the budget shared by everything running in this JVM or null if {@link Const#KETTLE_JVM_MEMORY_BUDGET} is
+   *         not set.
+   */
+  public static synchronized MemoryBudget getJvmBudget() {
+    if ( jvmBudget == null ) {
+      long megaBytes = Const.toLong( System.getProperty( Const.KETTLE_JVM_MEMORY_BUDGET ), 0L );
+      if ( megaBytes > 0 ) {
+        jvmBudget = fromMegaBytes( megaBytes, null );
+      }
+    }
+    return jvmBudget;
+  }
+
+  /**
+   * Try to reserve a number of bytes. Either all bytes are reserved or nothing is.
+   *
+   * @param bytes
+   *          the number of bytes to reserve
+   * @return true if the bytes are reserved, false if this would exceed the limit of this budget or of a parent.
+   */
+  public boolean reserve( long bytes ) {
+    if ( bytes <= 0 ) {
+      return true;
+    }
+    long current;
+    long next;
+    do {
+      current = reserved.get();
+      next = current + bytes;
+      if ( limit > 0 && next > limit ) {
+        return false;
+      }
+    } while ( !reserved.compareAndSet( current, next ) );
+
+    if ( parent != null && !parent.reserve( bytes ) ) {
+      reserved.addAndGet( -bytes );
+      return false;
+    }
+
+    long peak = peakReserved.get();
+    while ( next > peak && !peakReserved.compareAndSet( peak, next ) ) {
+      peak = peakReserved.get();
+    }
+    return true;
+  }
+
+  /**
+   * Give back bytes reserved earlier.
+   *
+   * @param bytes
+   *          the number of bytes to release
+   */
+  public void release( long bytes ) {
+    if ( bytes <= 0 ) {
+      return;
+    }
+    reserved.addAndGet( -bytes );
+    if ( parent != null ) {
+      parent.release( bytes );
+    }
+  }
+
+  /**
+   * @return true if this budget or one of its parents has a limit
+   */
+  public boolean isLimited() {
+    return limit > 0 || ( parent != null && parent.isLimited() );
+  }
+
+  /**
+   * @return the number of bytes that can still be reserved, Long.MAX_VALUE if there is no limit
+   */
+  public long getAvailable() {
+    long available = limit > 0 ? Math.max( 0L, limit - reserved.get() ) : Long.MAX_VALUE;
+    if ( parent != null ) {
+      available = Math.min( available, parent.getAvailable() );
+    }
+    return available;
+  }
+
+  /**
+   * @return the limit in bytes, 0 or less means no limit
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of bytes reserved right now
+   */
+  public long getReserved() {
+    return reserved.get();
+  }
+
+  /**
+   * @return the highest number of bytes that was reserved at any one time
+   */
+  public long getPeakReserved() {
+    return peakReserved.get();
+  }
+
+  public MemoryBudget getParent() {
+    return parent;
+  }
+}
@@ -22,6 +22,7 @@
 
 package org.pentaho.di.core;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -56,6 +57,30 @@ public interface RowSet {
    */
   public abstract boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu );
 
+  /**
+   * Offer a number of rows to this rowset at once. If the buffer is full, wait (block) for a small period of time. The
+   * rows are added in order until the buffer is full.
+   *
+   * @param rowMeta
+   *          The description of the row data
+   * @param rows
+   *          the rows of data
+   * @return the number of rows (from the start of the list) that were added, 0 if the buffer stayed full.
+   */
+  public default int putRows( RowMetaInterface rowMeta, List<Object[]> rows ) {
+    int added = 0;
+    for ( Object[] rowData : rows ) {
+      // Only wait for room for the first row, after that we take what we can get
+      //
+      boolean put = added == 0 ? putRow( rowMeta, rowData ) : putRowWait( rowMeta, rowData, 0, TimeUnit.MILLISECONDS );
+      if ( !put ) {
+        break;
+      }
+      added++;
+    }
+    return added;
+  }
+
   /**
    * Get a row from the input buffer, it blocks for a short period until a new row becomes available. Otherwise, it
    * returns null.
@@ -78,6 +103,32 @@ public interface RowSet {
    */
   public abstract Object[] getRowWait( long timeout, TimeUnit tu );
 
+  /**
+   * Get a number of rows from the input buffer at once. It blocks for a short period until a first row becomes
+   * available, after that only the rows that are immediately available are taken.
+   *
+   * @param rows
+   *          the list to add the rows to
+   * @param max
+   *          the maximum number of rows to get
+   * @return the number of rows added to the list, 0 if no row is available.
+   */
+  public default int getRows( List<Object[]> rows, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    Object[] rowData = getRow();
+    int count = 0;
+    while ( rowData != null ) {
+      rows.add( rowData );
+      if ( ++count >= max ) {
+        break;
+      }
+      rowData = getRowImmediate();
+    }
+    return count;
+  }
+
   /**
    * @return Set indication that there is no more input
    */
@@ -0,0 +1,286 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A row set for steps that run as tasks on a shared pool of threads instead of on a thread of their own. The size of
+ * the row set is a limit the scheduler looks at through {@link #isFull()} before it lets the writing step continue, so
+ * putting rows normally doesn't block. The reading and writing steps are woken up through the listeners when rows
+ * arrive or when there is room again.<br>
+ * <br>
+ * Steps that write a lot of rows in one go (Table input writes all its rows in a single call) are only stopped when
+ * the row set holds twice its size. That wait, and a wait for a row that isn't there yet (for example when a step reads
+ * an info stream to the end), is done as a managed blocker so the pool can start another thread in the meantime. The
+ * wait uses a lock instead of a monitor so that steps running on virtual threads don't pin their carrier thread.
+ */
+public class ScheduledRowSet extends BaseRowSet implements Comparable<RowSet>, RowSet {
+
+  private final ConcurrentLinkedQueue<Object[]> queue;
+  private final AtomicInteger size;
+  private final int capacity;
+  private final int limit;
+
+  private final int timeoutPut;
+  private final int timeoutGet;
+
+  private volatile Runnable readerListener;
+  private volatile Runnable writerListener;
+
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition changed = waitLock.newCondition();
+  private volatile int waiting;
+
+  /**
+   * Create a new row set that counts as full with maxSize rows.
+   *
+   * @param maxSize
+   *          the number of rows after which the writing step shouldn't be run anymore
+   */
+  public ScheduledRowSet( int maxSize ) {
+    super();
+    queue = new ConcurrentLinkedQueue<Object[]>();
+    size = new AtomicInteger( 0 );
+    capacity = Math.max( 1, maxSize );
+    limit = capacity * 2;
+
+    timeoutGet = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_GET_TIMEOUT ), Const.TIMEOUT_GET_MILLIS );
+    timeoutPut = Const.toInt( System.getProperty( Const.KETTLE_ROWSET_PUT_TIMEOUT ), Const.TIMEOUT_PUT_MILLIS );
+  }
+
+  /**
+   * @param readerListener
+   *          called when rows arrive or when the row set is done
+   */
+  public void setReaderListener( Runnable readerListener ) {
+    this.readerListener = readerListener;
+  }
+
+  /**
+   * @param writerListener
+   *          called when the row set is no longer full
+   */
+  public void setWriterListener( Runnable writerListener ) {
+    this.writerListener = writerListener;
+  }
+
+  /**
+   * @return true if the writing step should wait for the reading step to catch up
+   */
+  public boolean isFull() {
+    return size.get() >= capacity;
+  }
+
+  @Override
+  public boolean putRow( RowMetaInterface rowMeta, Object[] rowData ) {
+    return putRowWait( rowMeta, rowData, timeoutPut, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public boolean putRowWait( RowMetaInterface rowMeta, Object[] rowData, long time, TimeUnit tu ) {
+    this.rowMeta = rowMeta;
+    if ( rowData == null || !waitForRoom( time, tu ) ) {
+      return false;
+    }
+    queue.add( rowData );
+    size.incrementAndGet();
+    rowsAdded();
+    return true;
+  }
+
+  /**
+   * Adds all the rows at once as long as the row set doesn't hold twice its size yet.
+   */
+  @Override
+  public int putRows( RowMetaInterface rowMeta, List<Object[]> rows ) {
+    this.rowMeta = rowMeta;
+    if ( rows.isEmpty() || !waitForRoom( timeoutPut, TimeUnit.MILLISECONDS ) ) {
+      return 0;
+    }
+    queue.addAll( rows );
+    size.addAndGet( rows.size() );
+    rowsAdded();
+    return rows.size();
+  }
+
+  @Override
+  public Object[] getRow() {
+    return getRowWait( timeoutGet, TimeUnit.MILLISECONDS );
+  }
+
+  @Override
+  public Object[] getRowImmediate() {
+    Object[] row = queue.poll();
+    if ( row != null ) {
+      rowRemoved();
+    }
+    return row;
+  }
+
+  @Override
+  public Object[] getRowWait( long timeout, TimeUnit tu ) {
+    Object[] row = getRowImmediate();
+    if ( row != null || done.get() || timeout <= 0 ) {
+      return row;
+    }
+
+    final long deadline = System.nanoTime() + tu.toNanos( timeout );
+    waitUntil( deadline, new WaitCondition() {
+      @Override
+      public boolean isMet() {
+        return !queue.isEmpty() || done.get();
+      }
+    } );
+    return getRowImmediate();
+  }
+
+  /**
+   * Waits for the first row like {@link #getRow()} does, then takes whatever else is available.
+   */
+  @Override
+  public int getRows( List<Object[]> rows, int max ) {
+    if ( max <= 0 ) {
+      return 0;
+    }
+    Object[] rowData = getRow();
+    int count = 0;
+    while ( rowData != null ) {
+      rows.add( rowData );
+      if ( ++count >= max ) {
+        break;
+      }
+      rowData = getRowImmediate();
+    }
+    return count;
+  }
+
+  @Override
+  public void setDone() {
+    super.setDone();
+    rowsAdded();
+  }
+
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  @Override
+  public void clear() {
+    queue.clear();
+    size.set( 0 );
+    done.set( false );
+  }
+
+  private boolean waitForRoom( long time, TimeUnit tu ) {
+    if ( size.get() < limit ) {
+      return true;
+    }
+    if ( time <= 0 ) {
+      return false;
+    }
+    waitUntil( System.nanoTime() + tu.toNanos( time ), new WaitCondition() {
+      @Override
+      public boolean isMet() {
+        return size.get() < limit;
+      }
+    } );
+    return size.get() < limit;
+  }
+
+  private void rowRemoved() {
+    int newSize = size.decrementAndGet();
+    if ( waiting > 0 && newSize < limit ) {
+      signalWaiting();
+    }
+    if ( newSize == capacity - 1 ) {
+      Runnable listener = writerListener;
+      if ( listener != null ) {
+        listener.run();
+      }
+    }
+  }
+
+  private void rowsAdded() {
+    // Only take the lock when a step is actually waiting
+    //
+    if ( waiting > 0 ) {
+      signalWaiting();
+    }
+    Runnable listener = readerListener;
+    if ( listener != null ) {
+      listener.run();
+    }
+  }
+
+  private interface WaitCondition {
+    boolean isMet();
+  }
+
+  private void signalWaiting() {
+    waitLock.lock();
+    try {
+      changed.signalAll();
+    } finally {
+      waitLock.unlock();
+    }
+  }
+
+  private void waitUntil( final long deadline, final WaitCondition condition ) {
+    try {
+      ForkJoinPool.managedBlock( new ForkJoinPool.ManagedBlocker() {
+        @Override
+        public boolean block() throws InterruptedException {
+          waitLock.lock();
+          waiting++;
+          try {
+            long nanos = deadline - System.nanoTime();
+            if ( !isReleasable() && nanos > 0 ) {
+              changed.awaitNanos( nanos );
+            }
+          } finally {
+            waiting--;
+            waitLock.unlock();
+          }
+          return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+          return condition.isMet() || System.nanoTime() >= deadline;
+        }
+      } );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
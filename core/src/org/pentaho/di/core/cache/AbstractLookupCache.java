@@ -0,0 +1,288 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The common part of the {@link LookupCache} implementations: a hash map of the entries, the bounds, the weight and
+ * the statistics. The entries are nodes that the subclasses link into one or more access ordered lists to decide
+ * what to evict.
+ */
+public abstract class AbstractLookupCache<K, V> implements LookupCache<K, V> {
+
+  /** The weight that is added to every entry for the node and the hash map entry */
+  public static final long ENTRY_OVERHEAD = 64L;
+
+  protected final long maxEntries;
+  protected final long maxWeight;
+  private final Weigher<? super K, ? super V> weigher;
+
+  private final Map<K, Node<K, V>> data;
+
+  // Written by the step thread only, read by anyone asking for the statistics
+  //
+  private volatile long hits;
+  private volatile long misses;
+  private volatile long evictions;
+  private volatile long weight;
+  private volatile int size;
+
+  /**
+   * @param maxEntries
+   *          the maximum number of entries, 0 or less for no limit
+   * @param maxWeight
+   *          the maximum total weight of the entries, 0 or less for no limit
+   * @param weigher
+   *          calculates the weight of the entries, null to only use the fixed {@link #ENTRY_OVERHEAD}
+   */
+  protected AbstractLookupCache( long maxEntries, long maxWeight, Weigher<? super K, ? super V> weigher ) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.data = new HashMap<K, Node<K, V>>();
+  }
+
+  @Override
+  public V get( K key ) {
+    Node<K, V> node = data.get( key );
+    if ( node == null ) {
+      misses++;
+      onMiss( key );
+      return null;
+    }
+    hits++;
+    onHit( node );
+    return node.value;
+  }
+
+  @Override
+  public void put( K key, V value ) {
+    long entryWeight = ENTRY_OVERHEAD + ( weigher == null ? 0L : weigher.weigh( key, value ) );
+    Node<K, V> node = data.get( key );
+    if ( node != null ) {
+      long delta = entryWeight - node.weight;
+      weight += delta;
+      node.value = value;
+      node.weight = entryWeight;
+      onUpdate( node, delta );
+    } else {
+      node = new Node<K, V>( key, value, entryWeight );
+      data.put( key, node );
+      size = data.size();
+      weight += entryWeight;
+      onInsert( node );
+    }
+    evict();
+  }
+
+  @Override
+  public V remove( K key ) {
+    Node<K, V> node = data.remove( key );
+    if ( node == null ) {
+      return null;
+    }
+    size = data.size();
+    weight -= node.weight;
+    onRemove( node );
+    return node.value;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public void clear() {
+    data.clear();
+    size = 0;
+    weight = 0L;
+    onClear();
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return new CacheStatistics( hits, misses, evictions, size, weight );
+  }
+
+  /**
+   * @return true if the cache holds more entries or more weight than allowed
+   */
+  protected boolean isOverLimit() {
+    return ( maxEntries > 0 && size > maxEntries ) || ( maxWeight > 0 && weight > maxWeight );
+  }
+
+  /**
+   * Remove an entry to make room for others, it's counted as an eviction.
+   */
+  protected void evictNode( Node<K, V> node ) {
+    data.remove( node.key );
+    size = data.size();
+    weight -= node.weight;
+    evictions++;
+    onRemove( node );
+  }
+
+  /**
+   * Called when a key is not found.
+   */
+  protected void onMiss( K key ) {
+  }
+
+  /**
+   * Called when a key is found.
+   */
+  protected abstract void onHit( Node<K, V> node );
+
+  /**
+   * Called when the value of an existing key is replaced. The node has the new weight already, the subclass has to
+   * adjust the weight of the list the node is in with the difference.
+   */
+  protected abstract void onUpdate( Node<K, V> node, long weightDelta );
+
+  /**
+   * Called when a new entry was added, the subclass has to link the node.
+   */
+  protected abstract void onInsert( Node<K, V> node );
+
+  /**
+   * Called when an entry was removed or evicted, the subclass has to unlink the node.
+   */
+  protected abstract void onRemove( Node<K, V> node );
+
+  /**
+   * Called when all entries were removed.
+   */
+  protected abstract void onClear();
+
+  /**
+   * Evict entries until the cache is within its bounds again.
+   */
+  protected abstract void evict();
+
+  /**
+   * A cache entry that can be linked in a {@link NodeList}.
+   */
+  protected static final class Node<K, V> {
+    final K key;
+    V value;
+    long weight;
+    int queue;
+    Node<K, V> previous;
+    Node<K, V> next;
+
+    Node( K key, V value, long weight ) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A doubly linked list of nodes, the head is the least recently used one.
+   */
+  protected static final class NodeList<K, V> {
+    private Node<K, V> head;
+    private Node<K, V> tail;
+    private long weight;
+    private int size;
+
+    void addLast( Node<K, V> node ) {
+      node.previous = tail;
+      node.next = null;
+      if ( tail == null ) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      weight += node.weight;
+      size++;
+    }
+
+    void remove( Node<K, V> node ) {
+      if ( node.previous == null ) {
+        head = node.next;
+      } else {
+        node.previous.next = node.next;
+      }
+      if ( node.next == null ) {
+        tail = node.previous;
+      } else {
+        node.next.previous = node.previous;
+      }
+      node.previous = null;
+      node.next = null;
+      weight -= node.weight;
+      size--;
+    }
+
+    void moveToLast( Node<K, V> node ) {
+      if ( node != tail ) {
+        remove( node );
+        addLast( node );
+      }
+    }
+
+    /**
+     * Adjust the weight of the list after the weight of one of its nodes changed.
+     */
+    void reweigh( long delta ) {
+      weight += delta;
+    }
+
+    Node<K, V> peekFirst() {
+      return head;
+    }
+
+    Node<K, V> peekLast() {
+      return tail;
+    }
+
+    long getWeight() {
+      return weight;
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean isEmpty() {
+      return head == null;
+    }
+
+    void clear() {
+      head = null;
+      tail = null;
+      weight = 0L;
+      size = 0;
+    }
+  }
+}
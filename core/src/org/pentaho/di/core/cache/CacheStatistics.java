@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * A snapshot of the counters of a {@link LookupCache}.
+ */
+public class CacheStatistics {
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long entries;
+  private final long weight;
+
+  public CacheStatistics( long hits, long misses, long evictions, long entries, long weight ) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.entries = entries;
+    this.weight = weight;
+  }
+
+  /**
+   * @return the number of lookups that found a value
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that didn't find a value
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return the number of entries that were removed to make room for others
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of entries in the cache
+   */
+  public long getEntries() {
+    return entries;
+  }
+
+  /**
+   * @return the total weight of the entries in the cache, normally in bytes
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  /**
+   * @return the fraction of the lookups that found a value, 0 if there were no lookups
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0.0 : (double) hits / lookups;
+  }
+
+  @Override
+  public String toString() {
+    return "hits=" + hits + ", misses=" + misses + ", hit rate=" + Math.round( getHitRate() * 1000 ) / 10.0
+      + "%, evictions=" + evictions + ", entries=" + entries + ", weight=" + weight;
+  }
+}
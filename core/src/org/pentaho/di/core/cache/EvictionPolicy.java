@@ -0,0 +1,85 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * The ways a {@link LookupCache} can decide which entries to evict when it's full.
+ */
+public enum EvictionPolicy {
+  /** Evict the least recently used entry */
+  LRU( "LRU", "Least recently used (LRU)" ),
+
+  /**
+   * Window TinyLFU: new entries get a small LRU window, after that they are only admitted to the main part of the
+   * cache when they are used more often than the entry they would replace.
+   */
+  TINY_LFU( "TINYLFU", "Least frequently used (W-TinyLFU)" );
+
+  private String code;
+  private String description;
+
+  private EvictionPolicy( String code, String description ) {
+    this.code = code;
+    this.description = description;
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public static String[] getDescriptions() {
+    String[] desc = new String[values().length];
+    for ( int i = 0; i < values().length; i++ ) {
+      desc[i] = values()[i].getDescription();
+    }
+    return desc;
+  }
+
+  /**
+   * @return the policy with the code or LRU if the code is empty or unknown
+   */
+  public static EvictionPolicy getPolicyByCode( String code ) {
+    for ( EvictionPolicy policy : values() ) {
+      if ( policy.getCode().equalsIgnoreCase( code ) ) {
+        return policy;
+      }
+    }
+    return LRU;
+  }
+
+  /**
+   * @return the policy with the description or LRU if the description is unknown
+   */
+  public static EvictionPolicy getPolicyByDescription( String description ) {
+    for ( EvictionPolicy policy : values() ) {
+      if ( policy.getDescription().equals( description ) ) {
+        return policy;
+      }
+    }
+    return LRU;
+  }
+}
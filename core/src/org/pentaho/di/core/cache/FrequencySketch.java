@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * A count-min sketch with 4-bit counters that estimates how often keys were used recently. Every key has a counter in
+ * 4 places of the table, the estimate is the lowest of the 4. When the number of increments reaches 10 times the size
+ * of the cache all counters are halved so old popularity fades away.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_TABLE_SIZE = 1 << 26;
+
+  /** Every long holds 16 counters of 4 bits */
+  private long[] table;
+  private int tableMask;
+  private long sampleSize;
+  private long additions;
+
+  FrequencySketch() {
+    table = new long[0];
+  }
+
+  /**
+   * Make the table large enough for the given number of keys. The counters are cleared when the table grows.
+   */
+  void ensureCapacity( long maximumSize ) {
+    int maximum = (int) Math.min( Math.max( maximumSize, 1L ), MAX_TABLE_SIZE );
+    if ( table.length >= maximum ) {
+      return;
+    }
+    int length = 8;
+    while ( length < maximum ) {
+      length <<= 1;
+    }
+    table = new long[length];
+    tableMask = length - 1;
+    sampleSize = 10L * maximum;
+    additions = 0L;
+  }
+
+  /**
+   * @return the estimated number of times the key was used, between 0 and 15
+   */
+  int frequency( Object key ) {
+    int hash = spread( key.hashCode() );
+    int frequency = 15;
+    for ( int i = 0; i < SEEDS.length; i++ ) {
+      int index = indexOf( hash, i );
+      int offset = offsetOf( hash, i );
+      frequency = Math.min( frequency, (int) ( ( table[index] >>> offset ) & 0xfL ) );
+    }
+    return frequency;
+  }
+
+  /**
+   * Count one use of the key.
+   */
+  void increment( Object key ) {
+    int hash = spread( key.hashCode() );
+    boolean added = false;
+    for ( int i = 0; i < SEEDS.length; i++ ) {
+      added |= incrementAt( indexOf( hash, i ), offsetOf( hash, i ) );
+    }
+    if ( added && ++additions >= sampleSize ) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt( int index, int offset ) {
+    long mask = 0xfL << offset;
+    if ( ( table[index] & mask ) != mask ) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halve all counters.
+   */
+  private void reset() {
+    for ( int i = 0; i < table.length; i++ ) {
+      table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+    }
+    additions /= 2;
+  }
+
+  private int indexOf( int hash, int i ) {
+    long h = ( hash + SEEDS[i] ) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & tableMask;
+  }
+
+  /**
+   * The position in bits of the counter in the long, a different counter for every hash function.
+   */
+  private static int offsetOf( int hash, int i ) {
+    return ( ( ( hash >>> ( i << 3 ) ) & 3 ) << 2 | i ) << 2;
+  }
+
+  private static int spread( int h ) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
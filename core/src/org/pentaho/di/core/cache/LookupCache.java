@@ -0,0 +1,92 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * A map with a bounded size that keeps the entries that are most likely to be asked for again. The bounds are a
+ * maximum number of entries and/or a maximum weight (normally an estimate of the bytes used). Hits, misses and
+ * evictions are counted.<br>
+ * <br>
+ * Implementations are not thread-safe, except for {@link #getStatistics()} which can be called from any thread.
+ *
+ * @param <K>
+ *          the type of the keys, they need proper equals() and hashCode() methods
+ * @param <V>
+ *          the type of the values
+ */
+public interface LookupCache<K, V> {
+
+  /**
+   * Look up a value, this counts as a hit or a miss.
+   *
+   * @param key
+   *          the key to look for
+   * @return the value or null if the key is not in the cache
+   */
+  V get( K key );
+
+  /**
+   * Store a value, replacing the value of the key if it's in the cache already. Entries are evicted when the cache
+   * grows beyond its bounds.
+   *
+   * @param key
+   *          the key
+   * @param value
+   *          the value to store, not null
+   */
+  void put( K key, V value );
+
+  /**
+   * Remove a key from the cache, this doesn't count as an eviction.
+   *
+   * @param key
+   *          the key to remove
+   * @return the value of the key or null if the key was not in the cache
+   */
+  V remove( K key );
+
+  /**
+   * @return the number of entries in the cache
+   */
+  int size();
+
+  /**
+   * @return the total weight of the entries in the cache
+   */
+  long getWeight();
+
+  /**
+   * Remove all entries, the statistics are kept.
+   */
+  void clear();
+
+  /**
+   * @return the eviction policy of this cache
+   */
+  EvictionPolicy getEvictionPolicy();
+
+  /**
+   * @return a snapshot of the hit, miss and eviction counters and the size of the cache
+   */
+  CacheStatistics getStatistics();
+}
@@ -0,0 +1,60 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * Creates {@link LookupCache} instances for an {@link EvictionPolicy}.
+ */
+public class LookupCacheFactory {
+
+  private LookupCacheFactory() {
+  }
+
+  /**
+   * @param policy
+   *          the eviction policy, null for LRU
+   * @param maxEntries
+   *          the maximum number of entries, 0 or less for no limit
+   * @param maxWeight
+   *          the maximum total weight of the entries, 0 or less for no limit
+   * @param weigher
+   *          calculates the weight of the entries, can be null
+   * @return a new, empty cache
+   */
+  public static <K, V> LookupCache<K, V> create( EvictionPolicy policy, long maxEntries, long maxWeight,
+    Weigher<? super K, ? super V> weigher ) {
+    if ( policy == EvictionPolicy.TINY_LFU ) {
+      return new TinyLfuCache<K, V>( maxEntries, maxWeight, weigher );
+    }
+    return new LruCache<K, V>( maxEntries, maxWeight, weigher );
+  }
+
+  /**
+   * @param policyCode
+   *          the code of the eviction policy, LRU is used for an empty or unknown code
+   */
+  public static <K, V> LookupCache<K, V> create( String policyCode, long maxEntries, long maxWeight,
+    Weigher<? super K, ? super V> weigher ) {
+    return create( EvictionPolicy.getPolicyByCode( policyCode ), maxEntries, maxWeight, weigher );
+  }
+}
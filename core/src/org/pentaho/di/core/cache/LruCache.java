@@ -0,0 +1,88 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * A {@link LookupCache} that evicts the least recently used entries.
+ */
+public class LruCache<K, V> extends AbstractLookupCache<K, V> {
+
+  private final NodeList<K, V> accessOrder;
+
+  /**
+   * @param maxEntries
+   *          the maximum number of entries, 0 or less for no limit
+   * @param maxWeight
+   *          the maximum total weight of the entries, 0 or less for no limit
+   * @param weigher
+   *          calculates the weight of the entries, can be null
+   */
+  public LruCache( long maxEntries, long maxWeight, Weigher<? super K, ? super V> weigher ) {
+    super( maxEntries, maxWeight, weigher );
+    accessOrder = new NodeList<K, V>();
+  }
+
+  public LruCache( long maxEntries ) {
+    this( maxEntries, 0L, null );
+  }
+
+  @Override
+  public EvictionPolicy getEvictionPolicy() {
+    return EvictionPolicy.LRU;
+  }
+
+  @Override
+  protected void onHit( Node<K, V> node ) {
+    accessOrder.moveToLast( node );
+  }
+
+  @Override
+  protected void onUpdate( Node<K, V> node, long weightDelta ) {
+    accessOrder.reweigh( weightDelta );
+    accessOrder.moveToLast( node );
+  }
+
+  @Override
+  protected void onInsert( Node<K, V> node ) {
+    accessOrder.addLast( node );
+  }
+
+  @Override
+  protected void onRemove( Node<K, V> node ) {
+    accessOrder.remove( node );
+  }
+
+  @Override
+  protected void onClear() {
+    accessOrder.clear();
+  }
+
+  @Override
+  protected void evict() {
+    // Never evict the entry that was just added, even if it's too heavy on its own
+    //
+    while ( isOverLimit() && accessOrder.size() > 1 ) {
+      evictNode( accessOrder.peekFirst() );
+    }
+  }
+}
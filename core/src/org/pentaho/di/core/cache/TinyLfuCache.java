@@ -0,0 +1,205 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+/**
+ * A {@link LookupCache} with the Window TinyLFU eviction policy. New entries go to a small LRU window (1% of the
+ * cache). Entries that drop out of the window are only kept in the main part of the cache when they were looked up
+ * more often than the entry they would replace, the frequencies are estimated with a {@link FrequencySketch}. The
+ * main part is a segmented LRU: entries that are found again move from the probation segment to the protected
+ * segment (80% of the main part).<br>
+ * <br>
+ * Compared to LRU this keeps the frequently used keys when a lot of keys are only looked up once, which is typical
+ * for lookups on fact rows with a few very common keys and a long tail of rare ones.
+ */
+public class TinyLfuCache<K, V> extends AbstractLookupCache<K, V> {
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private static final double WINDOW_PERCENTAGE = 0.01;
+  private static final double PROTECTED_PERCENTAGE = 0.80;
+
+  /** The size of the frequency sketch when the number of entries is not limited */
+  private static final int DEFAULT_SKETCH_SIZE = 1024;
+
+  private final NodeList<K, V> window;
+  private final NodeList<K, V> probation;
+  private final NodeList<K, V> protectedSegment;
+  private final FrequencySketch sketch;
+
+  private final long windowMaxEntries;
+  private final long windowMaxWeight;
+  private final long protectedMaxEntries;
+  private final long protectedMaxWeight;
+
+  /**
+   * @param maxEntries
+   *          the maximum number of entries, 0 or less for no limit
+   * @param maxWeight
+   *          the maximum total weight of the entries, 0 or less for no limit
+   * @param weigher
+   *          calculates the weight of the entries, can be null
+   */
+  public TinyLfuCache( long maxEntries, long maxWeight, Weigher<? super K, ? super V> weigher ) {
+    super( maxEntries, maxWeight, weigher );
+    window = new NodeList<K, V>();
+    probation = new NodeList<K, V>();
+    protectedSegment = new NodeList<K, V>();
+
+    windowMaxEntries = maxEntries > 0 ? Math.max( 1L, (long) ( maxEntries * WINDOW_PERCENTAGE ) ) : 0L;
+    windowMaxWeight = maxWeight > 0 ? Math.max( 1L, (long) ( maxWeight * WINDOW_PERCENTAGE ) ) : 0L;
+    protectedMaxEntries = maxEntries > 0 ? (long) ( ( maxEntries - windowMaxEntries ) * PROTECTED_PERCENTAGE ) : 0L;
+    protectedMaxWeight = maxWeight > 0 ? (long) ( ( maxWeight - windowMaxWeight ) * PROTECTED_PERCENTAGE ) : 0L;
+
+    sketch = new FrequencySketch();
+    sketch.ensureCapacity( maxEntries > 0 ? maxEntries : DEFAULT_SKETCH_SIZE );
+  }
+
+  public TinyLfuCache( long maxEntries ) {
+    this( maxEntries, 0L, null );
+  }
+
+  @Override
+  public EvictionPolicy getEvictionPolicy() {
+    return EvictionPolicy.TINY_LFU;
+  }
+
+  /**
+   * @return the estimated number of recent lookups of the key, between 0 and 15
+   */
+  public int frequency( K key ) {
+    return sketch.frequency( key );
+  }
+
+  @Override
+  protected void onMiss( K key ) {
+    sketch.increment( key );
+  }
+
+  @Override
+  protected void onHit( Node<K, V> node ) {
+    sketch.increment( node.key );
+    reorder( node );
+  }
+
+  @Override
+  protected void onUpdate( Node<K, V> node, long weightDelta ) {
+    listOf( node ).reweigh( weightDelta );
+    reorder( node );
+  }
+
+  @Override
+  protected void onInsert( Node<K, V> node ) {
+    if ( maxEntries <= 0 ) {
+      sketch.ensureCapacity( size() );
+    }
+    node.queue = WINDOW;
+    window.addLast( node );
+  }
+
+  @Override
+  protected void onRemove( Node<K, V> node ) {
+    listOf( node ).remove( node );
+  }
+
+  @Override
+  protected void onClear() {
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+  }
+
+  @Override
+  protected void evict() {
+    // Entries that drop out of the window become candidates at the end of the probation segment
+    //
+    while ( isOver( window, windowMaxEntries, windowMaxWeight ) ) {
+      Node<K, V> node = window.peekFirst();
+      window.remove( node );
+      node.queue = PROBATION;
+      probation.addLast( node );
+    }
+
+    while ( isOverLimit() && size() > 0 ) {
+      Node<K, V> victim = probation.peekFirst();
+      Node<K, V> candidate = probation.peekLast();
+      if ( victim == null ) {
+        victim = protectedSegment.isEmpty() ? window.peekFirst() : protectedSegment.peekFirst();
+        evictNode( victim );
+      } else if ( victim == candidate ) {
+        evictNode( victim );
+      } else if ( sketch.frequency( candidate.key ) > sketch.frequency( victim.key ) ) {
+        evictNode( victim );
+      } else {
+        evictNode( candidate );
+      }
+    }
+  }
+
+  private void reorder( Node<K, V> node ) {
+    switch ( node.queue ) {
+      case WINDOW:
+        window.moveToLast( node );
+        break;
+      case PROBATION:
+        probation.remove( node );
+        node.queue = PROTECTED;
+        protectedSegment.addLast( node );
+        demoteProtected();
+        break;
+      default:
+        protectedSegment.moveToLast( node );
+        break;
+    }
+  }
+
+  /**
+   * Move the least recently used protected entries back to probation when the protected segment is too large.
+   */
+  private void demoteProtected() {
+    while ( protectedSegment.size() > 1 && isOver( protectedSegment, protectedMaxEntries, protectedMaxWeight ) ) {
+      Node<K, V> node = protectedSegment.peekFirst();
+      protectedSegment.remove( node );
+      node.queue = PROBATION;
+      probation.addLast( node );
+    }
+  }
+
+  private NodeList<K, V> listOf( Node<K, V> node ) {
+    switch ( node.queue ) {
+      case WINDOW:
+        return window;
+      case PROBATION:
+        return probation;
+      default:
+        return protectedSegment;
+    }
+  }
+
+  private static boolean isOver( NodeList<?, ?> list, long maxListEntries, long maxListWeight ) {
+    return ( maxListEntries > 0 && list.size() > maxListEntries )
+      || ( maxListWeight > 0 && list.getWeight() > maxListWeight );
+  }
+}
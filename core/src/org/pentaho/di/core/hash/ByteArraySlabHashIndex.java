@@ -0,0 +1,270 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open addressing (linear probing) hash index of serialized keys and values that doesn't keep any Java object per
+ * entry. The keys and values are copied into large slabs of memory, either byte arrays on the heap or direct buffers
+ * outside of the heap. The index itself consists of two primitive arrays: the address of every entry in the slabs and
+ * its hash code.<br>
+ * <br>
+ * Keys are equal when their serialized bytes are equal, just like in {@link ByteArrayHashIndex}. Replacing the value of
+ * an existing key appends a new entry to the slabs, the space of the old entry is not reused.<br>
+ * <br>
+ * This class is not thread-safe.
+ */
+public class ByteArraySlabHashIndex {
+
+  public static final int DEFAULT_SLAB_SIZE = 8 * 1024 * 1024;
+
+  private static final int STANDARD_INDEX_SIZE = 1024;
+  private static final float STANDARD_LOAD_FACTOR = 0.7f;
+  private static final int MAX_INDEX_SIZE = 1 << 30;
+
+  /** Every entry starts with the length of the key and the length of the value */
+  private static final int ENTRY_HEADER_SIZE = 8;
+
+  private final boolean offHeap;
+  private final int slabSize;
+  private final List<ByteBuffer> slabs;
+  private ByteBuffer currentSlab;
+  private long slabBytes;
+
+  /** The address of the entry in the slabs plus one, 0 is an empty slot */
+  private long[] addresses;
+  private int[] hashCodes;
+  private int mask;
+  private int size;
+  private int resizeThreshold;
+
+  /**
+   * @param initialSize
+   *          the expected number of entries
+   * @param offHeap
+   *          true to store the keys and values in direct memory, outside of the Java heap
+   * @param slabSize
+   *          the size in bytes of the blocks of memory that are allocated to store the keys and values
+   */
+  public ByteArraySlabHashIndex( int initialSize, boolean offHeap, int slabSize ) {
+    this.offHeap = offHeap;
+    this.slabSize = slabSize;
+    this.slabs = new ArrayList<ByteBuffer>();
+
+    int capacity = 1;
+    while ( capacity < initialSize / STANDARD_LOAD_FACTOR && capacity < MAX_INDEX_SIZE ) {
+      capacity <<= 1;
+    }
+    allocateIndex( capacity );
+  }
+
+  public ByteArraySlabHashIndex( boolean offHeap ) {
+    this( STANDARD_INDEX_SIZE, offHeap, DEFAULT_SLAB_SIZE );
+  }
+
+  /**
+   * @return the number of keys in the index
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Look up the value of a key.
+   *
+   * @param key
+   *          the serialized key
+   * @return a copy of the serialized value or null if the key is not in the index
+   */
+  public byte[] get( byte[] key ) {
+    int hashCode = hashCode( key );
+    int slot = findSlot( key, hashCode );
+    long address = addresses[slot];
+    if ( address == 0L ) {
+      return null;
+    }
+    return readValue( address - 1 );
+  }
+
+  /**
+   * Add a key and its value to the index, replacing the value if the key is already in the index.
+   *
+   * @param key
+   *          the serialized key
+   * @param value
+   *          the serialized value
+   */
+  public void put( byte[] key, byte[] value ) {
+    int hashCode = hashCode( key );
+    int slot = findSlot( key, hashCode );
+    boolean isNew = addresses[slot] == 0L;
+
+    addresses[slot] = write( key, value ) + 1;
+    hashCodes[slot] = hashCode;
+
+    if ( isNew ) {
+      size++;
+      if ( size >= resizeThreshold ) {
+        resize();
+      }
+    }
+  }
+
+  /**
+   * @return the number of bytes used by the index and the slabs, including the unused part of the last slab.
+   */
+  public long getMemoryUsage() {
+    return slabBytes + 12L * addresses.length;
+  }
+
+  /**
+   * Release all memory. The index can be used again afterwards.
+   */
+  public void clear() {
+    slabs.clear();
+    currentSlab = null;
+    slabBytes = 0L;
+    size = 0;
+    allocateIndex( STANDARD_INDEX_SIZE );
+  }
+
+  /**
+   * Find the slot of the key or the empty slot where it has to go.
+   */
+  private int findSlot( byte[] key, int hashCode ) {
+    int slot = hashCode & mask;
+    while ( true ) {
+      long address = addresses[slot];
+      if ( address == 0L || ( hashCodes[slot] == hashCode && keyEquals( address - 1, key ) ) ) {
+        return slot;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+  }
+
+  private void allocateIndex( int capacity ) {
+    addresses = new long[capacity];
+    hashCodes = new int[capacity];
+    mask = capacity - 1;
+    resizeThreshold = capacity >= MAX_INDEX_SIZE ? capacity - 1 : (int) ( capacity * STANDARD_LOAD_FACTOR );
+  }
+
+  private void resize() {
+    if ( addresses.length >= MAX_INDEX_SIZE ) {
+      throw new IllegalStateException( "The hash index can't contain more than " + resizeThreshold + " keys" );
+    }
+    long[] oldAddresses = addresses;
+    int[] oldHashCodes = hashCodes;
+    allocateIndex( oldAddresses.length * 2 );
+
+    for ( int i = 0; i < oldAddresses.length; i++ ) {
+      if ( oldAddresses[i] != 0L ) {
+        int slot = oldHashCodes[i] & mask;
+        while ( addresses[slot] != 0L ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        addresses[slot] = oldAddresses[i];
+        hashCodes[slot] = oldHashCodes[i];
+      }
+    }
+  }
+
+  /**
+   * Append an entry to the slabs.
+   *
+   * @return the address of the entry: the slab number in the high 32 bits, the offset in the slab in the low 32 bits.
+   */
+  private long write( byte[] key, byte[] value ) {
+    int entrySize = ENTRY_HEADER_SIZE + key.length + value.length;
+    if ( currentSlab == null || currentSlab.remaining() < entrySize ) {
+      currentSlab = allocateSlab( Math.max( slabSize, entrySize ) );
+      slabs.add( currentSlab );
+    }
+    int offset = currentSlab.position();
+    currentSlab.putInt( key.length );
+    currentSlab.putInt( value.length );
+    currentSlab.put( key );
+    currentSlab.put( value );
+    return ( (long) ( slabs.size() - 1 ) << 32 ) | offset;
+  }
+
+  private ByteBuffer allocateSlab( int capacity ) {
+    slabBytes += capacity;
+    return offHeap ? ByteBuffer.allocateDirect( capacity ) : ByteBuffer.allocate( capacity );
+  }
+
+  private boolean keyEquals( long address, byte[] key ) {
+    ByteBuffer slab = slabs.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    if ( slab.getInt( offset ) != key.length ) {
+      return false;
+    }
+    int keyOffset = offset + ENTRY_HEADER_SIZE;
+    for ( int i = 0; i < key.length; i++ ) {
+      if ( slab.get( keyOffset + i ) != key[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte[] readValue( long address ) {
+    ByteBuffer slab = slabs.get( (int) ( address >>> 32 ) );
+    int offset = (int) address;
+    int keyLength = slab.getInt( offset );
+    int valueLength = slab.getInt( offset + 4 );
+    byte[] value = new byte[valueLength];
+    ByteBuffer view = slab.duplicate();
+    view.position( offset + ENTRY_HEADER_SIZE + keyLength );
+    view.get( value );
+    return value;
+  }
+
+  /**
+   * A hash code of all bytes of the key with the bits spread so linear probing works well on similar keys.
+   */
+  static int hashCode( byte[] key ) {
+    int h = 1;
+    for ( int i = 0; i < key.length; i++ ) {
+      h = 31 * h + key[i];
+    }
+    // murmur3 finalizer
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
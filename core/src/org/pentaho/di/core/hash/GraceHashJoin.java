@@ -0,0 +1,580 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMemoryEstimator;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * A hybrid (grace) hash join of a build input and a probe input that doesn't need sorted input and doesn't need to
+ * keep the whole build input in memory.<br>
+ * <br>
+ * The build rows are divided over a number of partitions on the hash code of their key. As long as the memory budget
+ * allows it, all partitions are kept in memory. When a reservation fails, the largest partition is written to a
+ * temporary file and all later build rows of that partition go to the same file. Probe rows that fall in a partition
+ * in memory are joined right away, the others are written to a temporary file of their partition. When the probe
+ * input is done, the spilled partitions are joined one by one, repartitioning them on other bits of the hash code if
+ * they still don't fit in memory.<br>
+ * <br>
+ * The order of the output is the order of the probe input as long as nothing is spilled. The rows of spilled
+ * partitions come out at the end, when {@link #finishProbe(JoinListener)} is called.<br>
+ * <br>
+ * Keys are compared the same way {@link RowMetaAndData} compares them, so two null keys match.<br>
+ * <br>
+ * The life cycle is: {@link #addBuildRow(Object[])} for every build row, {@link #startProbe(RowMetaInterface, int[])},
+ * {@link #probe(Object[], JoinListener)} for every probe row, {@link #finishProbe(JoinListener)} and {@link #close()}.
+ * This class is not thread-safe.
+ */
+public class GraceHashJoin {
+
+  /**
+   * Receives the result of the join.
+   */
+  public interface JoinListener {
+    /**
+     * A probe row has a build row with the same key. Called once for every matching build row.
+     */
+    void rowsJoined( Object[] probeRow, Object[] buildRow ) throws KettleException;
+
+    /**
+     * A probe row doesn't have a build row with the same key.
+     */
+    void probeRowUnmatched( Object[] probeRow ) throws KettleException;
+
+    /**
+     * A build row didn't match any probe row. Only called when {@link GraceHashJoin#setReturningUnmatchedBuildRows}
+     * is enabled.
+     */
+    void buildRowUnmatched( Object[] buildRow ) throws KettleException;
+  }
+
+  /** The number of partitions, every level of repartitioning uses the next bits of the hash code */
+  private static final int PARTITION_BITS = 5;
+  private static final int NR_PARTITIONS = 1 << PARTITION_BITS;
+
+  /** After this many levels of repartitioning the partitions stay in memory, no matter how large they get */
+  public static final int MAX_LEVEL = 5;
+
+  private static final long RESERVATION_CHUNK = 4L * 1024 * 1024;
+
+  /** The hash map entry, the key and the bucket */
+  private static final long ENTRY_OVERHEAD = 96L;
+
+  private final RowMetaInterface buildMeta;
+  private final int[] buildKeyNrs;
+  private final RowMetaInterface keyMeta;
+  private final MemoryBudget memoryBudget;
+  private final VariableSpace space;
+  private final String directory;
+  private final String prefix;
+  private final int level;
+
+  private final Partition[] partitions;
+
+  private RowMetaInterface probeMeta;
+  private int[] probeKeyNrs;
+  private RowMetaInterface probeKeyMeta;
+  private boolean[] convertProbeKeys;
+
+  private boolean uniqueKeys;
+  private boolean returningUnmatchedBuildRows;
+
+  private long memoryReserved;
+  private long memoryUsed;
+  private int nrSpilledPartitions;
+  private boolean probing;
+
+  /**
+   * @param buildMeta
+   *          the layout of the build rows
+   * @param buildKeyNrs
+   *          the indexes of the key fields in the build rows
+   * @param memoryBudget
+   *          the budget to reserve memory from, nothing is spilled when it isn't limited
+   * @param space
+   *          the variables to resolve the temporary directory with
+   * @param directory
+   *          the directory to create the temporary files in
+   * @param prefix
+   *          the prefix of the names of the temporary files
+   */
+  public GraceHashJoin( RowMetaInterface buildMeta, int[] buildKeyNrs, MemoryBudget memoryBudget,
+    VariableSpace space, String directory, String prefix ) {
+    this( buildMeta, buildKeyNrs, memoryBudget, space, directory, prefix, 0 );
+  }
+
+  private GraceHashJoin( RowMetaInterface buildMeta, int[] buildKeyNrs, MemoryBudget memoryBudget,
+    VariableSpace space, String directory, String prefix, int level ) {
+    this.buildMeta = buildMeta;
+    this.buildKeyNrs = buildKeyNrs;
+    this.memoryBudget = memoryBudget;
+    this.space = space;
+    this.directory = directory;
+    this.prefix = prefix;
+    this.level = level;
+
+    keyMeta = new RowMeta();
+    for ( int keyNr : buildKeyNrs ) {
+      ValueMetaInterface valueMeta = buildMeta.getValueMeta( keyNr ).clone();
+      valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      keyMeta.addValueMeta( valueMeta );
+    }
+
+    partitions = new Partition[NR_PARTITIONS];
+    for ( int i = 0; i < partitions.length; i++ ) {
+      partitions[i] = new Partition();
+    }
+  }
+
+  /**
+   * Create the memory budget of a join: the given number of megabytes, reserved from the budget of the transformation
+   * as well. Without a limit for the join, the budget of the transformation is used as is.
+   *
+   * @param megaBytes
+   *          the limit of the join in MB, 0 or less to only use the parent
+   * @param parent
+   *          the budget of the transformation or null
+   * @return the memory budget of the join, it is only limited when the join or the transformation has a limit
+   */
+  public static MemoryBudget createMemoryBudget( long megaBytes, MemoryBudget parent ) {
+    if ( megaBytes <= 0 && parent != null ) {
+      return parent;
+    }
+    return MemoryBudget.fromMegaBytes( megaBytes, parent );
+  }
+
+  /**
+   * Keep only the last build row of every key, like a lookup table. By default all build rows are kept.
+   */
+  public void setUniqueKeys( boolean uniqueKeys ) {
+    this.uniqueKeys = uniqueKeys;
+  }
+
+  /**
+   * Report the build rows that didn't match any probe row at the end of the join, for right and full outer joins.
+   */
+  public void setReturningUnmatchedBuildRows( boolean returningUnmatchedBuildRows ) {
+    this.returningUnmatchedBuildRows = returningUnmatchedBuildRows;
+  }
+
+  /**
+   * @return the number of partitions that were written to disk so far, at this level
+   */
+  public int getNrSpilledPartitions() {
+    return nrSpilledPartitions;
+  }
+
+  /**
+   * @return the estimated number of bytes of build rows kept in memory
+   */
+  public long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  public void addBuildRow( Object[] row ) throws KettleException {
+    if ( probing ) {
+      throw new IllegalStateException( "The build input is already closed" );
+    }
+    Object[] keyData = new Object[buildKeyNrs.length];
+    for ( int i = 0; i < buildKeyNrs.length; i++ ) {
+      keyData[i] = buildMeta.getValueMeta( buildKeyNrs[i] ).convertToNormalStorageType( row[buildKeyNrs[i]] );
+    }
+    RowMetaAndData key = new RowMetaAndData( keyMeta, keyData );
+    Partition partition = partitions[partitionOf( key.hashCode() )];
+
+    if ( partition.table == null ) {
+      writeBuildRow( partition, row );
+      return;
+    }
+
+    long size = RowMemoryEstimator.estimateRowSize( buildMeta, row )
+      + RowMemoryEstimator.estimateRowSize( keyMeta, keyData ) + ENTRY_OVERHEAD;
+    while ( !reserveMemory( size ) ) {
+      Partition victim = getLargestPartition();
+      if ( victim == null ) {
+        break; // nothing left to spill, keep it in memory anyway
+      }
+      spill( victim );
+      if ( victim == partition ) {
+        writeBuildRow( partition, row );
+        return;
+      }
+    }
+
+    Bucket bucket = partition.table.get( key );
+    if ( bucket == null ) {
+      partition.table.put( key, new Bucket( row ) );
+    } else if ( uniqueKeys ) {
+      bucket.row = row;
+    } else {
+      bucket.add( row );
+    }
+    partition.memory += size;
+    memoryUsed += size;
+  }
+
+  /**
+   * Close the build input and prepare to receive probe rows.
+   *
+   * @param probeMeta
+   *          the layout of the probe rows
+   * @param probeKeyNrs
+   *          the indexes of the key fields in the probe rows, in the same order as the build keys
+   */
+  public void startProbe( RowMetaInterface probeMeta, int[] probeKeyNrs ) throws KettleException {
+    this.probeMeta = probeMeta;
+    this.probeKeyNrs = probeKeyNrs;
+    probing = true;
+
+    // Probe keys are converted to the data type of the build keys before hashing
+    //
+    probeKeyMeta = new RowMeta();
+    convertProbeKeys = new boolean[probeKeyNrs.length];
+    for ( int i = 0; i < probeKeyNrs.length; i++ ) {
+      ValueMetaInterface valueMeta = probeMeta.getValueMeta( probeKeyNrs[i] ).clone();
+      valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      probeKeyMeta.addValueMeta( valueMeta );
+      convertProbeKeys[i] = valueMeta.getType() != keyMeta.getValueMeta( i ).getType();
+    }
+
+    for ( Partition partition : partitions ) {
+      if ( partition.buildOutput != null ) {
+        closeStream( partition.buildOutput );
+        partition.buildOutput = null;
+      }
+    }
+  }
+
+  /**
+   * Join a probe row with the build rows in memory or keep it for later if its partition is on disk.
+   */
+  public void probe( Object[] row, JoinListener listener ) throws KettleException {
+    Object[] keyData = new Object[probeKeyNrs.length];
+    for ( int i = 0; i < probeKeyNrs.length; i++ ) {
+      Object value = probeMeta.getValueMeta( probeKeyNrs[i] ).convertToNormalStorageType( row[probeKeyNrs[i]] );
+      if ( convertProbeKeys[i] ) {
+        value = keyMeta.getValueMeta( i ).convertDataCompatible( probeKeyMeta.getValueMeta( i ), value );
+      }
+      keyData[i] = value;
+    }
+    RowMetaAndData key = new RowMetaAndData( keyMeta, keyData );
+    Partition partition = partitions[partitionOf( key.hashCode() )];
+
+    if ( partition.table != null ) {
+      Bucket bucket = partition.table.get( key );
+      if ( bucket == null ) {
+        listener.probeRowUnmatched( row );
+      } else {
+        bucket.matched = true;
+        listener.rowsJoined( row, bucket.row );
+        if ( bucket.more != null ) {
+          for ( Object[] buildRow : bucket.more ) {
+            listener.rowsJoined( row, buildRow );
+          }
+        }
+      }
+    } else if ( partition.nrBuildRows == 0 ) {
+      listener.probeRowUnmatched( row );
+    } else {
+      if ( partition.probeOutput == null ) {
+        partition.probeFile = createTempFile();
+        partition.probeOutput = openOutput( partition.probeFile );
+      }
+      probeMeta.writeData( partition.probeOutput, row );
+      partition.nrProbeRows++;
+    }
+  }
+
+  /**
+   * Report the unmatched build rows of the partitions in memory, then join the spilled partitions one by one.
+   */
+  public void finishProbe( JoinListener listener ) throws KettleException {
+    for ( Partition partition : partitions ) {
+      if ( partition.table != null ) {
+        if ( returningUnmatchedBuildRows ) {
+          for ( Bucket bucket : partition.table.values() ) {
+            if ( !bucket.matched ) {
+              listener.buildRowUnmatched( bucket.row );
+              if ( bucket.more != null ) {
+                for ( Object[] buildRow : bucket.more ) {
+                  listener.buildRowUnmatched( buildRow );
+                }
+              }
+            }
+          }
+        }
+        partition.table.clear();
+        releaseMemory( partition );
+      }
+    }
+
+    // Give the joins of the spilled partitions the whole budget
+    //
+    memoryBudget.release( memoryReserved );
+    memoryReserved = 0L;
+
+    for ( Partition partition : partitions ) {
+      if ( partition.buildFile != null ) {
+        joinSpilledPartition( partition, listener );
+      }
+    }
+    close();
+  }
+
+  /**
+   * Delete all temporary files and give back all memory. Safe to call more than once.
+   */
+  public void close() {
+    for ( Partition partition : partitions ) {
+      partition.table = null;
+      closeQuietly( partition.buildOutput );
+      closeQuietly( partition.probeOutput );
+      partition.buildOutput = null;
+      partition.probeOutput = null;
+      deleteQuietly( partition.buildFile );
+      deleteQuietly( partition.probeFile );
+      partition.buildFile = null;
+      partition.probeFile = null;
+    }
+    memoryBudget.release( memoryReserved );
+    memoryReserved = 0L;
+    memoryUsed = 0L;
+  }
+
+  private void joinSpilledPartition( Partition partition, JoinListener listener ) throws KettleException {
+    if ( partition.probeOutput != null ) {
+      closeStream( partition.probeOutput );
+      partition.probeOutput = null;
+    }
+
+    if ( partition.nrProbeRows > 0 || returningUnmatchedBuildRows ) {
+      GraceHashJoin join =
+        new GraceHashJoin( buildMeta, buildKeyNrs, memoryBudget, space, directory, prefix, level + 1 );
+      join.setUniqueKeys( uniqueKeys );
+      join.setReturningUnmatchedBuildRows( returningUnmatchedBuildRows );
+      try {
+        DataInputStream input = openInput( partition.buildFile );
+        try {
+          for ( int i = 0; i < partition.nrBuildRows; i++ ) {
+            join.addBuildRow( buildMeta.readData( input ) );
+          }
+        } finally {
+          closeQuietly( input );
+        }
+
+        join.startProbe( probeMeta, probeKeyNrs );
+        if ( partition.nrProbeRows > 0 ) {
+          input = openInput( partition.probeFile );
+          try {
+            for ( int i = 0; i < partition.nrProbeRows; i++ ) {
+              join.probe( probeMeta.readData( input ), listener );
+            }
+          } finally {
+            closeQuietly( input );
+          }
+        }
+        join.finishProbe( listener );
+      } catch ( IOException e ) {
+        throw new KettleFileException( e );
+      } finally {
+        join.close();
+      }
+    }
+
+    deleteQuietly( partition.buildFile );
+    deleteQuietly( partition.probeFile );
+    partition.buildFile = null;
+    partition.probeFile = null;
+  }
+
+  private boolean reserveMemory( long size ) {
+    long needed = memoryUsed + size - memoryReserved;
+    if ( needed <= 0 ) {
+      return true;
+    }
+    if ( memoryBudget.reserve( Math.max( needed, RESERVATION_CHUNK ) ) ) {
+      memoryReserved += Math.max( needed, RESERVATION_CHUNK );
+      return true;
+    }
+    if ( memoryBudget.reserve( needed ) ) {
+      memoryReserved += needed;
+      return true;
+    }
+    return false;
+  }
+
+  private void releaseMemory( Partition partition ) {
+    memoryUsed -= partition.memory;
+    long unused = memoryReserved - memoryUsed;
+    if ( unused > RESERVATION_CHUNK ) {
+      memoryBudget.release( unused );
+      memoryReserved -= unused;
+    }
+    partition.memory = 0L;
+  }
+
+  /**
+   * @return the largest partition in memory or null if nothing can be spilled
+   */
+  private Partition getLargestPartition() {
+    if ( level >= MAX_LEVEL ) {
+      return null;
+    }
+    Partition largest = null;
+    for ( Partition partition : partitions ) {
+      if ( partition.table != null && ( largest == null || partition.memory > largest.memory ) ) {
+        largest = partition;
+      }
+    }
+    return largest;
+  }
+
+  private void spill( Partition partition ) throws KettleException {
+    partition.buildFile = createTempFile();
+    partition.buildOutput = openOutput( partition.buildFile );
+    for ( Bucket bucket : partition.table.values() ) {
+      writeBuildRow( partition, bucket.row );
+      if ( bucket.more != null ) {
+        for ( Object[] row : bucket.more ) {
+          writeBuildRow( partition, row );
+        }
+      }
+    }
+    partition.table = null;
+    releaseMemory( partition );
+    nrSpilledPartitions++;
+  }
+
+  private void writeBuildRow( Partition partition, Object[] row ) throws KettleException {
+    buildMeta.writeData( partition.buildOutput, row );
+    partition.nrBuildRows++;
+  }
+
+  private int partitionOf( int hashCode ) {
+    // Spread the bits (murmur3 finalizer) and take the bits of this level
+    int h = hashCode;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return Integer.rotateRight( h, level * PARTITION_BITS ) & ( NR_PARTITIONS - 1 );
+  }
+
+  private FileObject createTempFile() throws KettleFileException {
+    return KettleVFS.createTempFile( prefix, ".tmp", space.environmentSubstitute( directory ), space );
+  }
+
+  private DataOutputStream openOutput( FileObject fileObject ) throws KettleFileException {
+    try {
+      return new DataOutputStream( new BufferedOutputStream( KettleVFS.getOutputStream( fileObject, false ), 50000 ) );
+    } catch ( IOException e ) {
+      throw new KettleFileException( e );
+    }
+  }
+
+  private DataInputStream openInput( FileObject fileObject ) throws IOException {
+    return new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( fileObject ), 50000 ) );
+  }
+
+  private void closeStream( DataOutputStream outputStream ) throws KettleFileException {
+    try {
+      outputStream.close();
+    } catch ( IOException e ) {
+      throw new KettleFileException( e );
+    }
+  }
+
+  private static void closeQuietly( Closeable closeable ) {
+    if ( closeable != null ) {
+      try {
+        closeable.close();
+      } catch ( IOException e ) {
+        // Ignore, we're cleaning up
+      }
+    }
+  }
+
+  private static void deleteQuietly( FileObject fileObject ) {
+    if ( fileObject != null ) {
+      try {
+        fileObject.delete();
+      } catch ( IOException e ) {
+        // Ignore, we're cleaning up
+      }
+    }
+  }
+
+  private static class Partition {
+    private Map<RowMetaAndData, Bucket> table = new HashMap<RowMetaAndData, Bucket>();
+    private long memory;
+
+    private FileObject buildFile;
+    private DataOutputStream buildOutput;
+    private int nrBuildRows;
+
+    private FileObject probeFile;
+    private DataOutputStream probeOutput;
+    private int nrProbeRows;
+  }
+
+  /**
+   * The build rows of one key. The first row is kept apart since most keys only have one row.
+   */
+  private static class Bucket {
+    private Object[] row;
+    private List<Object[]> more;
+    private boolean matched;
+
+    Bucket( Object[] row ) {
+      this.row = row;
+    }
+
+    void add( Object[] other ) {
+      if ( more == null ) {
+        more = new ArrayList<Object[]>( 2 );
+      }
+      more.add( other );
+    }
+  }
+}
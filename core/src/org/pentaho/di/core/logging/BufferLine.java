@@ -35,6 +35,15 @@ public class BufferLine {
     this.nr = sequence.incrementAndGet();
   }
 
+  /**
+   * @param nr
+   *          the sequence number of the line, handed out by the buffer that keeps it
+   */
+  BufferLine( KettleLoggingEvent event, int nr ) {
+    this.event = event;
+    this.nr = nr;
+  }
+
   public int getNr() {
     return nr;
   }
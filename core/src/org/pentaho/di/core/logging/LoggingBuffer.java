@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -23,48 +23,140 @@
 package org.pentaho.di.core.logging;
 
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.util.EnvUtil;
 
-import java.util.Collections;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * This class keeps the last N lines in a buffer
+ * This class keeps the last N lines in a buffer.<br>
+ * <br>
+ * Every line gets a sequence number (1..N) and is stored in a ring of slots indexed by that number. Adding a line
+ * doesn't take a lock or wait for other threads: a line is visible as soon as its own slot is set, so a line that is
+ * still being added by another thread can show up after lines with a higher number. Reading a range of line numbers
+ * only visits the slots of that range. Only resizing, clearing and removing lines synchronize with each other.<br>
+ * <br>
+ * If {@link Const#KETTLE_LOG_EVENT_LISTENERS_ASYNC} is set to "Y" the logging event listeners are called by a separate
+ * dispatcher thread so that logging doesn't wait for slow listeners like files or consoles. At most
+ * {@link Const#KETTLE_LOG_EVENT_LISTENERS_QUEUE_SIZE} events wait for the dispatcher, events that don't fit are not
+ * passed to the listeners. Use {@link #flush()} to wait until all events added so far were passed to the listeners.
  *
  * @author matt
  *
  */
 public class LoggingBuffer {
+  /** The initial number of slots when the number of lines is not limited, the ring grows when needed */
+  private static final int UNLIMITED_INITIAL_CAPACITY = 1024;
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  /** How long a thread waiting for the dispatcher sleeps between checks */
+  private static final long FLUSH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+  /** The maximum time the JVM shutdown waits for pending events to reach the listeners */
+  private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5000L;
+
+  private static final int DEFAULT_MAX_PENDING_EVENTS = 10000;
+
   private String name;
 
-  private List<BufferLine> buffer;
+  private final AtomicReference<Ring> ring = new AtomicReference<Ring>();
+
+  /** The number of the last line that was handed out */
+  private final AtomicInteger sequence = new AtomicInteger( 0 );
 
-  private int bufferSize;
+  /** All lines with a lower number were removed, only changed while holding the resize lock */
+  private final AtomicInteger firstNr = new AtomicInteger( 1 );
+
+  private final Object resizeLock = new Object();
+
+  private volatile int bufferSize;
 
   private KettleLogLayout layout;
 
-  private List<KettleLoggingEventListener> eventListeners;
+  private final List<KettleLoggingEventListener> eventListeners;
+
+  private final boolean asyncListeners;
+
+  private final int maxPendingEvents;
+
+  private final Queue<KettleLoggingEvent> pendingEvents = new ConcurrentLinkedQueue<KettleLoggingEvent>();
+
+  private final AtomicInteger nrPendingEvents = new AtomicInteger( 0 );
+
+  private final AtomicLong droppedEvents = new AtomicLong( 0L );
+
+  private final AtomicLong queuedEvents = new AtomicLong( 0L );
+
+  private final AtomicLong dispatchedEvents = new AtomicLong( 0L );
+
+  private volatile Thread dispatcher;
+
+  private volatile boolean dispatcherWaiting;
+
+  /** The number of dropped events the dispatcher reported, only used by the dispatcher thread */
+  private long reportedDroppedEvents;
 
   public LoggingBuffer( int bufferSize ) {
+    this( bufferSize, "Y".equalsIgnoreCase(
+      EnvUtil.getSystemProperty( Const.KETTLE_LOG_EVENT_LISTENERS_ASYNC, "N" ) ), Const.toInt( EnvUtil
+        .getSystemProperty( Const.KETTLE_LOG_EVENT_LISTENERS_QUEUE_SIZE ), DEFAULT_MAX_PENDING_EVENTS ) );
+  }
+
+  /**
+   * @param bufferSize
+   *          the maximum number of lines that this buffer should contain, 0 or lower means: no limit
+   * @param asyncListeners
+   *          true to call the logging event listeners from a separate thread, false to call them from the thread
+   *          that adds the event
+   */
+  public LoggingBuffer( int bufferSize, boolean asyncListeners ) {
+    this( bufferSize, asyncListeners, DEFAULT_MAX_PENDING_EVENTS );
+  }
+
+  /**
+   * @param bufferSize
+   *          the maximum number of lines that this buffer should contain, 0 or lower means: no limit
+   * @param asyncListeners
+   *          true to call the logging event listeners from a separate thread, false to call them from the thread
+   *          that adds the event
+   * @param maxPendingEvents
+   *          the maximum number of events waiting for the dispatcher thread, events added when this many are waiting
+   *          are not passed to the listeners
+   */
+  public LoggingBuffer( int bufferSize, boolean asyncListeners, int maxPendingEvents ) {
     this.bufferSize = bufferSize;
-    buffer = Collections.synchronizedList( new LinkedList<BufferLine>() );
+    this.asyncListeners = asyncListeners;
+    this.maxPendingEvents = Math.max( 1, maxPendingEvents );
+    ring.set( new Ring( initialCapacity( bufferSize ) ) );
     layout = new KettleLogLayout( true );
-    eventListeners = Collections.synchronizedList( new ArrayList<KettleLoggingEventListener>() );
+    eventListeners = new CopyOnWriteArrayList<KettleLoggingEventListener>();
   }
 
   /**
    * @return the number (sequence, 1..N) of the last log line. If no records are present in the buffer, 0 is returned.
    */
   public int getLastBufferLineNr() {
-    synchronized ( buffer ) {
-      if ( buffer.size() > 0 ) {
-        return buffer.get( buffer.size() - 1 ).getNr();
-      } else {
-        return 0;
+    Ring current = ring.get();
+    int last = sequence.get();
+    for ( int nr = last, low = lowestNr( current, last ); nr >= low; nr-- ) {
+      if ( current.get( nr ) != null ) {
+        return nr;
       }
     }
+    return 0;
   }
 
   /**
@@ -80,53 +172,39 @@ public class LoggingBuffer {
   public List<KettleLoggingEvent> getLogBufferFromTo( List<String> channelId, boolean includeGeneral, int from,
     int to ) {
     List<KettleLoggingEvent> lines = new ArrayList<KettleLoggingEvent>();
+    Set<String> channelIds = channelId == null ? null : new HashSet<String>( channelId );
+
+    for ( BufferLine line : getLines( from, to ) ) {
+      Object payload = line.getEvent().getMessage();
+      if ( payload instanceof LogMessage ) {
+        LogMessage message = (LogMessage) payload;
+
+        // Typically, the log channel id is the one from the transformation or job running currently.
+        // However, we also want to see the details of the steps etc.
+        // So we need to look at the parents all the way up if needed...
+        //
+        boolean include = channelIds == null;
+
+        // See if we should include generic messages
+        //
+        if ( !include ) {
+          LoggingObjectInterface loggingObject =
+            LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
 
-    synchronized ( buffer ) {
-      for ( BufferLine line : buffer ) {
-        if ( line.getNr() > from && line.getNr() <= to ) {
-          Object payload = line.getEvent().getMessage();
-          if ( payload instanceof LogMessage ) {
-            LogMessage message = (LogMessage) payload;
-
-            // Typically, the log channel id is the one from the transformation or job running currently.
-            // However, we also want to see the details of the steps etc.
-            // So we need to look at the parents all the way up if needed...
-            //
-            boolean include = channelId == null;
-
-            // See if we should include generic messages
-            //
-            if ( !include ) {
-              LoggingObjectInterface loggingObject =
-                LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
-
-              if ( loggingObject != null
-                && includeGeneral && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
-                include = true;
-              }
-
-              // See if we should include a certain channel id (zero, one or more)
-              //
-              if ( !include ) {
-                for ( String id : channelId ) {
-                  if ( message.getLogChannelId().equals( id ) ) {
-                    include = true;
-                    break;
-                  }
-                }
-              }
-            }
-
-            if ( include ) {
-
-              try {
-                // String string = layout.format(line.getEvent());
-                lines.add( line.getEvent() );
-              } catch ( Exception e ) {
-                e.printStackTrace();
-              }
-            }
+          if ( loggingObject != null
+            && includeGeneral && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
+            include = true;
           }
+
+          // See if we should include a certain channel id (zero, one or more)
+          //
+          if ( !include ) {
+            include = channelIds.contains( message.getLogChannelId() );
+          }
+        }
+
+        if ( include ) {
+          lines.add( line.getEvent() );
         }
       }
     }
@@ -184,11 +262,20 @@ public class LoggingBuffer {
   }
 
   public void doAppend( KettleLoggingEvent event ) {
-    synchronized ( buffer ) {
-      buffer.add( new BufferLine( event ) );
-      while ( bufferSize > 0 && buffer.size() > bufferSize ) {
-        buffer.remove( 0 );
-      }
+    int nr = sequence.incrementAndGet();
+    BufferLine line = new BufferLine( event, nr );
+
+    Ring current = ring.get();
+    if ( bufferSize <= 0 && nr - firstNr.get() >= current.capacity ) {
+      current = grow( nr );
+    }
+    current.store( line );
+
+    // A resize or clear can replace the ring while the line is stored, make sure the line ends up in the new one
+    //
+    for ( Ring latest = ring.get(); latest != current; latest = ring.get() ) {
+      latest.store( line );
+      current = latest;
     }
   }
 
@@ -213,7 +300,10 @@ public class LoggingBuffer {
   }
 
   public void clear() {
-    buffer.clear();
+    synchronized ( resizeLock ) {
+      firstNr.set( sequence.get() + 1 );
+      ring.set( new Ring( initialCapacity( bufferSize ) ) );
+    }
   }
 
   /**
@@ -228,14 +318,36 @@ public class LoggingBuffer {
    *          the maximum number of lines that this buffer should contain, 0 or lower means: no limit
    */
   public void setMaxNrLines( int maxNrLines ) {
-    this.bufferSize = maxNrLines;
+    synchronized ( resizeLock ) {
+      this.bufferSize = maxNrLines;
+      if ( maxNrLines > 0 ) {
+        // An appender can still be growing the ring for the old, unlimited size
+        //
+        Ring current;
+        do {
+          current = ring.get();
+        } while ( maxNrLines != current.capacity && !replaceRing( current, Math.min( maxNrLines, MAX_CAPACITY ) ) );
+      } else if ( maxNrLines <= 0 ) {
+        // Lines evicted while the size was limited don't count for growing the ring
+        //
+        skipRemovedLines();
+      }
+    }
   }
 
   /**
    * @return the nrLines
    */
   public int getNrLines() {
-    return buffer.size();
+    Ring current = ring.get();
+    int last = sequence.get();
+    int nrLines = 0;
+    for ( int nr = lowestNr( current, last ); nr <= last; nr++ ) {
+      if ( current.get( nr ) != null ) {
+        nrLines++;
+      }
+    }
+    return nrLines;
   }
 
   /**
@@ -245,45 +357,44 @@ public class LoggingBuffer {
    *          the id of the logging channel to remove
    */
   public void removeChannelFromBuffer( String id ) {
-    synchronized ( buffer ) {
-      Iterator<BufferLine> iterator = buffer.iterator();
-      while ( iterator.hasNext() ) {
-        BufferLine bufferLine = iterator.next();
-        Object payload = bufferLine.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          if ( id.equals( message.getLogChannelId() ) ) {
-            iterator.remove();
-          }
+    List<BufferLine> linesToRemove = new ArrayList<BufferLine>();
+    for ( BufferLine bufferLine : getLines( 0, Integer.MAX_VALUE ) ) {
+      Object payload = bufferLine.getEvent().getMessage();
+      if ( payload instanceof LogMessage ) {
+        LogMessage message = (LogMessage) payload;
+        if ( id.equals( message.getLogChannelId() ) ) {
+          linesToRemove.add( bufferLine );
         }
       }
     }
+    removeBufferLines( linesToRemove );
   }
 
   public int size() {
-    return buffer.size();
+    return getNrLines();
   }
 
   public void removeGeneralMessages() {
-    synchronized ( buffer ) {
-      Iterator<BufferLine> iterator = buffer.iterator();
-      while ( iterator.hasNext() ) {
-        BufferLine bufferLine = iterator.next();
-        Object payload = bufferLine.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          LoggingObjectInterface loggingObject =
-            LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
-          if ( loggingObject != null && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
-            iterator.remove();
-          }
+    List<BufferLine> linesToRemove = new ArrayList<BufferLine>();
+    for ( BufferLine bufferLine : getLines( 0, Integer.MAX_VALUE ) ) {
+      Object payload = bufferLine.getEvent().getMessage();
+      if ( payload instanceof LogMessage ) {
+        LogMessage message = (LogMessage) payload;
+        LoggingObjectInterface loggingObject =
+          LoggingRegistry.getInstance().getLoggingObject( message.getLogChannelId() );
+        if ( loggingObject != null && LoggingObjectType.GENERAL.equals( loggingObject.getObjectType() ) ) {
+          linesToRemove.add( bufferLine );
         }
       }
     }
+    removeBufferLines( linesToRemove );
   }
 
+  /**
+   * @return an iterator over a snapshot of the lines in the buffer, oldest first
+   */
   public Iterator<BufferLine> getBufferIterator() {
-    return buffer.iterator();
+    return getLines( 0, Integer.MAX_VALUE ).iterator();
   }
 
   /**
@@ -292,37 +403,48 @@ public class LoggingBuffer {
   @Deprecated
   public String dump() {
     StringBuilder buf = new StringBuilder( 50000 );
-    synchronized ( buffer ) {
-      for ( BufferLine line : buffer ) {
-        Object payload = line.getEvent().getMessage();
-        if ( payload instanceof LogMessage ) {
-          LogMessage message = (LogMessage) payload;
-          // LoggingObjectInterface loggingObject =
-          // LoggingRegistry.getInstance().getLoggingObject(message.getLogChannelId());
-          buf
-            .append( message.getLogChannelId()
-              + "\t" + message.getSubject() + "\t" + message.getMessage() + "\n" );
-        }
-
+    for ( BufferLine line : getLines( 0, Integer.MAX_VALUE ) ) {
+      Object payload = line.getEvent().getMessage();
+      if ( payload instanceof LogMessage ) {
+        LogMessage message = (LogMessage) payload;
+        // LoggingObjectInterface loggingObject =
+        // LoggingRegistry.getInstance().getLoggingObject(message.getLogChannelId());
+        buf
+          .append( message.getLogChannelId()
+            + "\t" + message.getSubject() + "\t" + message.getMessage() + "\n" );
       }
     }
     return buf.toString();
   }
 
   public void removeBufferLines( List<BufferLine> linesToRemove ) {
-    buffer.removeAll( linesToRemove );
+    synchronized ( resizeLock ) {
+      // An appender growing the ring can copy a line while it's removed, remove it from the new ring too
+      //
+      Ring removed = null;
+      for ( Ring current = ring.get(); current != removed; current = ring.get() ) {
+        for ( BufferLine line : linesToRemove ) {
+          current.remove( line );
+        }
+        removed = current;
+      }
+      skipRemovedLines();
+    }
   }
 
   public List<BufferLine> getBufferLinesBefore( long minTimeBoundary ) {
     List<BufferLine> linesToRemove = new ArrayList<BufferLine>();
-    synchronized ( buffer ) {
-      for ( Iterator<BufferLine> i = buffer.iterator(); i.hasNext(); ) {
-        BufferLine bufferLine = i.next();
-        if ( bufferLine.getEvent().timeStamp < minTimeBoundary ) {
-          linesToRemove.add( bufferLine );
-        } else {
-          break;
-        }
+    Ring current = ring.get();
+    int last = sequence.get();
+    for ( int nr = lowestNr( current, last ); nr <= last; nr++ ) {
+      BufferLine bufferLine = current.get( nr );
+      if ( bufferLine == null ) {
+        continue;
+      }
+      if ( bufferLine.getEvent().timeStamp < minTimeBoundary ) {
+        linesToRemove.add( bufferLine );
+      } else {
+        break;
       }
     }
     return linesToRemove;
@@ -330,18 +452,293 @@ public class LoggingBuffer {
 
   public void addLogggingEvent( KettleLoggingEvent loggingEvent ) {
     doAppend( loggingEvent );
-    synchronized ( eventListeners ) {
+    if ( eventListeners.isEmpty() ) {
+      return;
+    }
+    if ( !asyncListeners ) {
       for ( KettleLoggingEventListener listener : eventListeners ) {
         listener.eventAdded( loggingEvent );
       }
+      return;
+    }
+
+    // Don't let a slow listener fill up the memory: skip the event if too many are waiting already
+    //
+    if ( nrPendingEvents.incrementAndGet() > maxPendingEvents ) {
+      nrPendingEvents.decrementAndGet();
+      droppedEvents.incrementAndGet();
+      return;
+    }
+
+    // Count the event before queueing it so a flush never returns before this event is dispatched
+    //
+    queuedEvents.incrementAndGet();
+    pendingEvents.offer( loggingEvent );
+    if ( dispatcherWaiting ) {
+      LockSupport.unpark( dispatcher );
     }
   }
 
   public void addLoggingEventListener( KettleLoggingEventListener listener ) {
+    if ( asyncListeners ) {
+      startDispatcher();
+    }
     eventListeners.add( listener );
   }
 
+  /**
+   * Removes the listener after all events added so far were passed to it, so it can be closed safely afterwards.
+   */
   public void removeLoggingEventListener( KettleLoggingEventListener listener ) {
+    flush();
     eventListeners.remove( listener );
   }
+
+  /**
+   * @return the number of logging events that were not passed to the listeners because too many events were waiting
+   *         for the dispatcher thread
+   */
+  public long getDroppedEvents() {
+    return droppedEvents.get();
+  }
+
+  /**
+   * Waits until all the logging events that were added so far are passed to the logging event listeners. This returns
+   * immediately if the listeners are called synchronously or if it's called by a listener.
+   */
+  public void flush() {
+    flush( 0L );
+  }
+
+  /**
+   * @param timeoutMs
+   *          the maximum time to wait in milliseconds, 0 or lower means: no limit
+   * @return true if all events were dispatched, false if the timeout expired first
+   */
+  private boolean flush( long timeoutMs ) {
+    Thread thread = dispatcher;
+    if ( thread == null || thread == Thread.currentThread() ) {
+      return true;
+    }
+    long target = queuedEvents.get();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMs );
+    while ( dispatchedEvents.get() < target ) {
+      if ( timeoutMs > 0 && System.nanoTime() - deadline > 0 ) {
+        return false;
+      }
+      LockSupport.parkNanos( FLUSH_POLL_NANOS );
+    }
+    return true;
+  }
+
+  /**
+   * @return the lines with a number after from up to and including to, oldest first
+   */
+  private List<BufferLine> getLines( int from, int to ) {
+    Ring current = ring.get();
+    int last = sequence.get();
+    int first = Math.max( lowestNr( current, last ), from + 1 );
+    last = Math.min( last, to );
+
+    List<BufferLine> lines = new ArrayList<BufferLine>( Math.max( 0, last - first + 1 ) );
+    for ( int nr = first; nr <= last; nr++ ) {
+      BufferLine line = current.get( nr );
+      if ( line != null ) {
+        lines.add( line );
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * @return the number of the oldest line that can still be in the ring if the last line handed out is the specified
+   *         one. The ring of an unlimited buffer keeps all lines, it grows before a line would overwrite an older one.
+   */
+  private int lowestNr( Ring current, int last ) {
+    if ( bufferSize <= 0 ) {
+      return firstNr.get();
+    }
+    return Math.max( firstNr.get(), last - current.capacity + 1 );
+  }
+
+  /**
+   * Move the first line number past removed lines so readers and the unlimited ring don't keep counting them. The
+   * resize lock has to be held.
+   */
+  private void skipRemovedLines() {
+    Ring current = ring.get();
+    int last = sequence.get();
+    int nr = lowestNr( current, last );
+    while ( nr <= last && current.get( nr ) == null ) {
+      nr++;
+    }
+    firstNr.set( nr );
+  }
+
+  /**
+   * Grows the ring of an unlimited buffer without taking the resize lock, appenders that race to grow it retry with
+   * the ring that won.
+   */
+  private Ring grow( int nr ) {
+    while ( true ) {
+      Ring current = ring.get();
+      int capacity = current.capacity;
+      while ( nr - firstNr.get() >= capacity && capacity < MAX_CAPACITY ) {
+        capacity <<= 1;
+      }
+      if ( bufferSize > 0 || capacity == current.capacity || replaceRing( current, capacity ) ) {
+        return ring.get();
+      }
+    }
+  }
+
+  /**
+   * Replace the ring with one of another size, keeping the newest lines that fit.
+   *
+   * @return false if the ring was no longer the specified one
+   */
+  private boolean replaceRing( Ring oldRing, int capacity ) {
+    Ring newRing = new Ring( capacity );
+
+    // Install the new ring first: lines stored in the old ring from now on are stored again in the new one by
+    // their writers, lines stored before are copied here.
+    //
+    if ( !ring.compareAndSet( oldRing, newRing ) ) {
+      return false;
+    }
+    int last = sequence.get();
+    int first = Math.max( firstNr.get(), last - capacity + 1 );
+
+    // Another resize can replace the new ring while copying, copy again into that one: a slot keeps the newest line
+    //
+    for ( Ring target = newRing; target != null; ) {
+      for ( int nr = first; nr <= last; nr++ ) {
+        BufferLine line = oldRing.get( nr );
+        if ( line != null ) {
+          target.store( line );
+        }
+      }
+      Ring latest = ring.get();
+      target = latest == target ? null : latest;
+    }
+    return true;
+  }
+
+  private void startDispatcher() {
+    if ( dispatcher != null ) {
+      return;
+    }
+    synchronized ( pendingEvents ) {
+      if ( dispatcher != null ) {
+        return;
+      }
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          dispatchEvents();
+        }
+      }, "Kettle logging event dispatcher" + ( name == null ? "" : " - " + name ) );
+      thread.setDaemon( true );
+      thread.start();
+      dispatcher = thread;
+
+      // The dispatcher is a daemon thread: give it a chance to pass the last events to files and consoles on exit
+      //
+      try {
+        Runtime.getRuntime().addShutdownHook( new Thread( new Runnable() {
+          @Override
+          public void run() {
+            flush( SHUTDOWN_FLUSH_TIMEOUT_MS );
+          }
+        }, "Kettle logging event flush" ) );
+      } catch ( IllegalStateException e ) {
+        // The JVM is already shutting down
+      }
+    }
+  }
+
+  private void dispatchEvents() {
+    while ( true ) {
+      KettleLoggingEvent event = pendingEvents.poll();
+      if ( event == null ) {
+        reportDroppedEvents();
+        dispatcherWaiting = true;
+        if ( pendingEvents.isEmpty() ) {
+          LockSupport.park( this );
+        }
+        dispatcherWaiting = false;
+        continue;
+      }
+      nrPendingEvents.decrementAndGet();
+      for ( KettleLoggingEventListener listener : eventListeners ) {
+        try {
+          listener.eventAdded( event );
+        } catch ( Throwable e ) {
+          // Don't log this: it would come back to the same listener
+          e.printStackTrace( KettleLogStore.OriginalSystemErr );
+        }
+      }
+      dispatchedEvents.incrementAndGet();
+    }
+  }
+
+  /**
+   * Tells once the queue is empty again how many events the listeners missed, called by the dispatcher thread only.
+   */
+  private void reportDroppedEvents() {
+    long dropped = droppedEvents.get();
+    if ( dropped > reportedDroppedEvents ) {
+      // Don't log this: it would be dropped as well when the listeners are slow
+      KettleLogStore.OriginalSystemErr.println( "The logging event listeners were too slow, "
+        + ( dropped - reportedDroppedEvents ) + " logging events were not passed to them" );
+      reportedDroppedEvents = dropped;
+    }
+  }
+
+  private static int initialCapacity( int bufferSize ) {
+    return bufferSize > 0 ? Math.min( bufferSize, MAX_CAPACITY ) : UNLIMITED_INITIAL_CAPACITY;
+  }
+
+  /**
+   * A fixed number of slots, the line with number nr goes in slot nr modulo the capacity. A slot keeps the newest line
+   * stored in it so a line that arrives late never overwrites a newer one.
+   */
+  private static final class Ring {
+    private final AtomicReferenceArray<BufferLine> slots;
+    private final int capacity;
+
+    Ring( int capacity ) {
+      this.capacity = capacity;
+      this.slots = new AtomicReferenceArray<BufferLine>( capacity );
+    }
+
+    /**
+     * @return the line with the specified number or null if it's not (or no longer) in the ring
+     */
+    BufferLine get( int nr ) {
+      BufferLine line = slots.get( index( nr ) );
+      return line != null && line.getNr() == nr ? line : null;
+    }
+
+    void store( BufferLine line ) {
+      int index = index( line.getNr() );
+      while ( true ) {
+        BufferLine current = slots.get( index );
+        if ( current != null && current.getNr() >= line.getNr() ) {
+          return;
+        }
+        if ( slots.compareAndSet( index, current, line ) ) {
+          return;
+        }
+      }
+    }
+
+    void remove( BufferLine line ) {
+      slots.compareAndSet( index( line.getNr() ), line, null );
+    }
+
+    private int index( int nr ) {
+      return ( nr & Integer.MAX_VALUE ) % capacity;
+    }
+  }
 }
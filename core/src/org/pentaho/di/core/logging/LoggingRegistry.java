@@ -2,7 +2,7 @@
  *
  * Pentaho Data Integration
  *
- * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
  *
  *******************************************************************************
  *
@@ -22,35 +22,64 @@
 
 package org.pentaho.di.core.logging;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.EnvUtil;
 
+/**
+ * Keeps track of all the logging sources (transformations, jobs, steps, job entries, databases, ...) and their
+ * parent-child relationships.<br>
+ * <br>
+ * Logging sources are indexed by name and by repository object id so that finding an existing source doesn't scan the
+ * whole registry, and the children of every source are indexed by the log channel id of the parent. Running
+ * transformations and jobs keep a reference on their log channel (see {@link #retainLoggingSource(String)}). When the
+ * registry grows over its maximum size ({@link Const#KETTLE_MAX_LOGGING_REGISTRY_SIZE}) the oldest hierarchies that are
+ * no longer referenced are removed first.
+ */
 public class LoggingRegistry {
   private static LoggingRegistry registry = new LoggingRegistry();
   private Map<String, LoggingObjectInterface> map;
-  private Map<String, List<String>> childrenMap;
+  private Map<String, Set<String>> childrenMap;
   private Date lastModificationTime;
   private int maxSize;
   private final int DEFAULT_MAX_SIZE = 10000;
 
+  /** The logging sources by name and by repository object id, see {@link #getIndexKeys(LoggingObjectInterface)} */
+  private Map<String, List<LoggingObjectInterface>> sourceIndex;
+
+  /** The number of running transformations and jobs per log channel id */
+  private Map<String, Integer> referenceCounts;
+
+  /** The log channel ids, oldest registration first */
+  private Set<String> registrationOrder;
+
+  private Map<String, LoggingObjectInterface> mapView;
+
   private Object syncObject = new Object();
 
   private LoggingRegistry() {
     this.map = new ConcurrentHashMap<String, LoggingObjectInterface>();
-    this.childrenMap = new ConcurrentHashMap<String, List<String>>();
+    this.childrenMap = new HashMap<String, Set<String>>();
+    this.sourceIndex = new HashMap<String, List<LoggingObjectInterface>>();
+    this.referenceCounts = new HashMap<String, Integer>();
+    this.registrationOrder = new LinkedHashSet<String>();
+    this.mapView = new RegistryMap();
 
     this.lastModificationTime = new Date();
-    this.maxSize = Const.toInt( EnvUtil.getSystemProperty( "KETTLE_MAX_LOGGING_REGISTRY_SIZE" ), DEFAULT_MAX_SIZE );
+    this.maxSize = Const.toInt( EnvUtil.getSystemProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE ), DEFAULT_MAX_SIZE );
   }
 
   public static LoggingRegistry getInstance() {
@@ -60,7 +89,8 @@ public class LoggingRegistry {
   public String registerLoggingSource( Object object ) {
     synchronized ( this.syncObject ) {
 
-      this.maxSize = Const.toInt( EnvUtil.getSystemProperty( "KETTLE_MAX_LOGGING_REGISTRY_SIZE" ), 10000 );
+      this.maxSize =
+        Const.toInt( EnvUtil.getSystemProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE ), DEFAULT_MAX_SIZE );
 
       LoggingObject loggingSource = new LoggingObject( object );
 
@@ -84,77 +114,51 @@ public class LoggingRegistry {
       String logChannelId = UUID.randomUUID().toString();
       loggingSource.setLogChannelId( logChannelId );
 
-      this.map.put( logChannelId, loggingSource );
-
-      if ( loggingSource.getParent() != null ) {
-        String parentLogChannelId = loggingSource.getParent().getLogChannelId();
-        if ( parentLogChannelId != null ) {
-          List<String> parentChildren = this.childrenMap.get( parentLogChannelId );
-          if ( parentChildren == null ) {
-            parentChildren = new ArrayList<String>();
-            this.childrenMap.put( parentLogChannelId, parentChildren );
-          }
-          parentChildren.add( logChannelId );
-        }
-      }
-
       this.lastModificationTime = new Date();
       loggingSource.setRegistrationDate( this.lastModificationTime );
 
+      addLoggingObject( logChannelId, loggingSource );
+
       if ( ( this.maxSize > 0 ) && ( this.map.size() > this.maxSize ) ) {
-        List<LoggingObjectInterface> all = new ArrayList<LoggingObjectInterface>( this.map.values() );
-        Collections.sort( all, new Comparator<LoggingObjectInterface>() {
-          @Override
-          public int compare( LoggingObjectInterface o1, LoggingObjectInterface o2 ) {
-            if ( ( o1 == null ) && ( o2 != null ) ) {
-              return -1;
-            }
-            if ( ( o1 != null ) && ( o2 == null ) ) {
-              return 1;
-            }
-            if ( ( o1 == null ) && ( o2 == null ) ) {
-              return 0;
-            }
-            if ( o1.getRegistrationDate() == null && o2.getRegistrationDate() != null ) {
-              return -1;
-            }
-            if ( o1.getRegistrationDate() != null && o2.getRegistrationDate() == null ) {
-              return 1;
-            }
-            if ( o1.getRegistrationDate() == null && o2.getRegistrationDate() == null ) {
-              return 0;
-            }
-            return ( o1.getRegistrationDate().compareTo( o2.getRegistrationDate() ) );
-          }
-        } );
         int cutCount = this.maxSize < 1000 ? this.maxSize : 1000;
-        for ( int i = 0; i < cutCount; i++ ) {
-          LoggingObjectInterface toRemove = all.get( i );
-          this.map.remove( toRemove.getLogChannelId() );
-        }
-        removeOrphans();
+        evict( this.map.size() - cutCount, this.maxSize );
       }
       return logChannelId;
     }
   }
 
   public LoggingObjectInterface findExistingLoggingSource( LoggingObjectInterface loggingObject ) {
-    LoggingObjectInterface found = null;
-    for ( LoggingObjectInterface verify : this.map.values() ) {
-      if ( loggingObject.equals( verify ) ) {
-        found = verify;
-        break;
+    synchronized ( this.syncObject ) {
+      for ( String indexKey : getIndexKeys( loggingObject ) ) {
+        List<LoggingObjectInterface> candidates = this.sourceIndex.get( indexKey );
+        if ( candidates != null ) {
+          for ( LoggingObjectInterface verify : candidates ) {
+            if ( loggingObject.equals( verify ) ) {
+              return verify;
+            }
+          }
+        }
       }
+      return null;
     }
-    return found;
   }
 
   public LoggingObjectInterface getLoggingObject( String logChannelId ) {
     return this.map.get( logChannelId );
   }
 
+  /**
+   * @return the logging sources by log channel id. Changes to this map keep the indexes of the registry up to date.
+   */
   public Map<String, LoggingObjectInterface> getMap() {
-    return this.map;
+    return this.mapView;
+  }
+
+  /**
+   * @return the number of logging sources in the registry
+   */
+  public int size() {
+    return this.map.size();
   }
 
   public List<String> getLogChannelChildren( String parentLogChannelId ) {
@@ -168,7 +172,7 @@ public class LoggingRegistry {
 
   private List<String> getLogChannelChildren( List<String> children, String parentLogChannelId ) {
     synchronized ( this.syncObject ) {
-      List<String> list = this.childrenMap.get( parentLogChannelId );
+      Set<String> list = this.childrenMap.get( parentLogChannelId );
       if ( list == null ) {
         // Don't do anything, just return the input.
         return children;
@@ -189,6 +193,53 @@ public class LoggingRegistry {
     return children;
   }
 
+  /**
+   * Add a reference to a logging source, typically by a transformation or job that starts running. As long as a
+   * source or one of its parents or children is referenced, the hierarchy is only removed from the registry when
+   * there's no other way to stay below the maximum size.
+   *
+   * @param logChannelId
+   *          the log channel id of the logging source
+   */
+  public void retainLoggingSource( String logChannelId ) {
+    if ( logChannelId == null ) {
+      return;
+    }
+    synchronized ( this.syncObject ) {
+      if ( this.map.containsKey( logChannelId ) ) {
+        this.referenceCounts.put( logChannelId, getReferenceCount( logChannelId ) + 1 );
+      }
+    }
+  }
+
+  /**
+   * Release a reference to a logging source that was added with {@link #retainLoggingSource(String)}, typically when a
+   * transformation or job finishes.
+   *
+   * @param logChannelId
+   *          the log channel id of the logging source
+   */
+  public void releaseLoggingSource( String logChannelId ) {
+    if ( logChannelId == null ) {
+      return;
+    }
+    synchronized ( this.syncObject ) {
+      int count = getReferenceCount( logChannelId );
+      if ( count > 1 ) {
+        this.referenceCounts.put( logChannelId, count - 1 );
+      } else {
+        this.referenceCounts.remove( logChannelId );
+      }
+    }
+  }
+
+  int getReferenceCount( String logChannelId ) {
+    synchronized ( this.syncObject ) {
+      Integer count = this.referenceCounts.get( logChannelId );
+      return count == null ? 0 : count;
+    }
+  }
+
   public Date getLastModificationTime() {
     return this.lastModificationTime;
   }
@@ -228,23 +279,266 @@ public class LoggingRegistry {
    * For junit testing purposes
    * @return ro parent-child relations map
    */
-  Map<String, List<String>> dumpChildren() {
-    return Collections.unmodifiableMap( this.childrenMap );
+  Map<String, Set<String>> dumpChildren() {
+    synchronized ( this.syncObject ) {
+      return Collections.unmodifiableMap( new HashMap<String, Set<String>>( this.childrenMap ) );
+    }
   }
 
   public void removeIncludingChildren( String logChannelId ) {
-    synchronized ( this.map ) {
+    synchronized ( this.syncObject ) {
       List<String> children = getLogChannelChildren( logChannelId );
       for ( String child : children ) {
-        this.map.remove( child );
+        removeLoggingObject( child );
       }
-      this.map.remove( logChannelId );
-      removeOrphans();
+      removeLoggingObject( logChannelId );
     }
   }
 
   public void removeOrphans() {
     // Remove all orphaned children
-    this.childrenMap.keySet().retainAll( this.map.keySet() );
+    synchronized ( this.syncObject ) {
+      this.childrenMap.keySet().retainAll( this.map.keySet() );
+    }
+  }
+
+  /**
+   * Remove hierarchies that aren't referenced by a running transformation or job, oldest first, until no more than the
+   * target number of logging sources are left. If that's not enough to get below the maximum size, the oldest
+   * referenced sources are removed as well.
+   */
+  private void evict( int targetSize, int maxSize ) {
+    List<String> oldestFirst = new ArrayList<String>( this.registrationOrder );
+
+    for ( String logChannelId : oldestFirst ) {
+      if ( this.map.size() <= targetSize ) {
+        return;
+      }
+      if ( !this.map.containsKey( logChannelId ) || isReferenced( logChannelId ) ) {
+        continue;
+      }
+      List<String> hierarchy = getLogChannelChildren( logChannelId );
+      boolean referenced = false;
+      for ( String id : hierarchy ) {
+        if ( getReferenceCount( id ) > 0 ) {
+          referenced = true;
+          break;
+        }
+      }
+      if ( !referenced ) {
+        for ( String id : hierarchy ) {
+          removeLoggingObject( id );
+        }
+      }
+    }
+
+    // The maximum size is a hard limit: if that's not enough remove the oldest sources, referenced or not
+    //
+    for ( String logChannelId : oldestFirst ) {
+      if ( this.map.size() <= maxSize ) {
+        return;
+      }
+      removeLoggingObject( logChannelId );
+    }
+  }
+
+  /**
+   * @return true if the logging source or one of its parents is referenced
+   */
+  private boolean isReferenced( String logChannelId ) {
+    String id = logChannelId;
+    for ( int depth = 0; id != null && depth < 1000; depth++ ) {
+      if ( getReferenceCount( id ) > 0 ) {
+        return true;
+      }
+      LoggingObjectInterface loggingObject = this.map.get( id );
+      id = loggingObject == null ? null : getParentLogChannelId( loggingObject );
+    }
+    return false;
+  }
+
+  /**
+   * Add a logging source and index it. The lock has to be held.
+   */
+  private LoggingObjectInterface addLoggingObject( String logChannelId, LoggingObjectInterface loggingObject ) {
+    LoggingObjectInterface previous = this.map.put( logChannelId, loggingObject );
+    if ( previous != null ) {
+      unindex( logChannelId, previous );
+    }
+    this.registrationOrder.add( logChannelId );
+
+    for ( String indexKey : getIndexKeys( loggingObject ) ) {
+      List<LoggingObjectInterface> sources = this.sourceIndex.get( indexKey );
+      if ( sources == null ) {
+        sources = new ArrayList<LoggingObjectInterface>( 1 );
+        this.sourceIndex.put( indexKey, sources );
+      }
+      sources.add( loggingObject );
+    }
+
+    String parentLogChannelId = getParentLogChannelId( loggingObject );
+    if ( parentLogChannelId != null ) {
+      Set<String> parentChildren = this.childrenMap.get( parentLogChannelId );
+      if ( parentChildren == null ) {
+        parentChildren = new LinkedHashSet<String>();
+        this.childrenMap.put( parentLogChannelId, parentChildren );
+      }
+      parentChildren.add( logChannelId );
+    }
+    return previous;
+  }
+
+  /**
+   * Remove a logging source and all references to it from the indexes. The lock has to be held.
+   */
+  private LoggingObjectInterface removeLoggingObject( String logChannelId ) {
+    LoggingObjectInterface removed = this.map.remove( logChannelId );
+    if ( removed != null ) {
+      unindex( logChannelId, removed );
+      this.registrationOrder.remove( logChannelId );
+      this.referenceCounts.remove( logChannelId );
+      this.childrenMap.remove( logChannelId );
+    }
+    return removed;
+  }
+
+  private void unindex( String logChannelId, LoggingObjectInterface loggingObject ) {
+    for ( String indexKey : getIndexKeys( loggingObject ) ) {
+      List<LoggingObjectInterface> sources = this.sourceIndex.get( indexKey );
+      if ( sources != null ) {
+        for ( Iterator<LoggingObjectInterface> iterator = sources.iterator(); iterator.hasNext(); ) {
+          if ( iterator.next() == loggingObject ) {
+            iterator.remove();
+            break;
+          }
+        }
+        if ( sources.isEmpty() ) {
+          this.sourceIndex.remove( indexKey );
+        }
+      }
+    }
+
+    String parentLogChannelId = getParentLogChannelId( loggingObject );
+    if ( parentLogChannelId != null ) {
+      Set<String> parentChildren = this.childrenMap.get( parentLogChannelId );
+      if ( parentChildren != null ) {
+        parentChildren.remove( logChannelId );
+        if ( parentChildren.isEmpty() ) {
+          this.childrenMap.remove( parentLogChannelId );
+        }
+      }
+    }
+  }
+
+  private void clearAll() {
+    this.map.clear();
+    this.childrenMap.clear();
+    this.sourceIndex.clear();
+    this.referenceCounts.clear();
+    this.registrationOrder.clear();
+  }
+
+  /**
+   * Two logging sources can only be equal if they have the same container object id and either the same name or the
+   * same repository object id (see {@link LoggingObject#equals(Object)}), so those are the keys to look them up.
+   */
+  private static List<String> getIndexKeys( LoggingObjectInterface loggingObject ) {
+    List<String> keys = new ArrayList<String>( 2 );
+    String container = loggingObject.getContainerObjectId();
+    keys.add( "name\t" + container + "\t" + loggingObject.getObjectName() );
+    if ( loggingObject.getObjectId() != null && loggingObject.getObjectId().getId() != null ) {
+      // Object ids are compared ignoring case
+      keys.add( "id\t" + container + "\t" + loggingObject.getObjectId().getId().toLowerCase() );
+    }
+    return keys;
+  }
+
+  private static String getParentLogChannelId( LoggingObjectInterface loggingObject ) {
+    LoggingObjectInterface parent = loggingObject.getParent();
+    return parent == null ? null : parent.getLogChannelId();
+  }
+
+  /**
+   * A view on the logging sources that keeps the indexes up to date when sources are added or removed.
+   */
+  private class RegistryMap extends AbstractMap<String, LoggingObjectInterface> {
+
+    @Override
+    public LoggingObjectInterface get( Object key ) {
+      return key == null ? null : map.get( key );
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+      return key != null && map.containsKey( key );
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public LoggingObjectInterface put( String key, LoggingObjectInterface value ) {
+      synchronized ( syncObject ) {
+        return addLoggingObject( key, value );
+      }
+    }
+
+    @Override
+    public LoggingObjectInterface remove( Object key ) {
+      if ( !( key instanceof String ) ) {
+        return null;
+      }
+      synchronized ( syncObject ) {
+        return removeLoggingObject( (String) key );
+      }
+    }
+
+    @Override
+    public void clear() {
+      synchronized ( syncObject ) {
+        clearAll();
+      }
+    }
+
+    @Override
+    public Set<Entry<String, LoggingObjectInterface>> entrySet() {
+      return new AbstractSet<Entry<String, LoggingObjectInterface>>() {
+        @Override
+        public Iterator<Entry<String, LoggingObjectInterface>> iterator() {
+          final Iterator<Entry<String, LoggingObjectInterface>> iterator = map.entrySet().iterator();
+          return new Iterator<Entry<String, LoggingObjectInterface>>() {
+            private String lastKey;
+
+            @Override
+            public boolean hasNext() {
+              return iterator.hasNext();
+            }
+
+            @Override
+            public Entry<String, LoggingObjectInterface> next() {
+              Entry<String, LoggingObjectInterface> entry = iterator.next();
+              lastKey = entry.getKey();
+              return new SimpleImmutableEntry<String, LoggingObjectInterface>( entry );
+            }
+
+            @Override
+            public void remove() {
+              if ( lastKey == null ) {
+                throw new IllegalStateException();
+              }
+              RegistryMap.this.remove( lastKey );
+              lastKey = null;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return map.size();
+        }
+      };
+    }
   }
 }
@@ -133,6 +133,8 @@ public class Metrics implements MetricsInterface {
     MetricsSnapshotType.START, "METRIC_STEP_INIT", "Initialize a step" );
   public static Metrics METRIC_STEP_INIT_STOP = new Metrics(
     MetricsSnapshotType.STOP, "METRIC_STEP_INIT", "Initialize a step" );
+  public static Metrics METRIC_STEP_LOOKUP_MEMORY_MAX = new Metrics(
+    MetricsSnapshotType.MAX, "METRIC_STEP_LOOKUP_MEMORY_MAX", "Memory used by the lookup data of a step (bytes)" );
 
   // Logging back-end
   //
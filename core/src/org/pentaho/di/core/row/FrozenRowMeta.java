@@ -0,0 +1,478 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.row;
+
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.exception.KettleValueException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row metadata for the row hot path. The layout is captured in plain arrays with a precomputed name to index map so
+ * that the methods called for every row (size, getValueMeta, indexOfValue, cloneRow, compare, ...) don't need to take
+ * the read lock of {@link RowMeta}.<br>
+ * <br>
+ * Most steps never change the metadata they receive from their input row sets, but some do. Instead of failing,
+ * changes are applied to the underlying {@link RowMeta} and the snapshot is rebuilt afterwards (copy-on-write). A
+ * frozen row metadata object is a private copy: changes never affect the row metadata it was created from.
+ */
+public class FrozenRowMeta extends RowMeta {
+
+  /**
+   * The current snapshot or null while the layout is being changed.
+   */
+  private volatile Layout layout;
+
+  /**
+   * The nesting depth of changes, guarded by this object's monitor.
+   */
+  private int changeDepth;
+
+  /**
+   * Creates a frozen copy of the supplied row metadata. The value metadata objects themselves are shared.
+   *
+   * @param rowMeta the row metadata to copy the layout of
+   */
+  public FrozenRowMeta( RowMetaInterface rowMeta ) {
+    super();
+    List<ValueMetaInterface> valueMetas = new ArrayList<ValueMetaInterface>( rowMeta.getValueMetaList() );
+    super.setValueMetaList( valueMetas );
+    layout = new Layout( valueMetas );
+  }
+
+  /**
+   * Returns a frozen version of the supplied row metadata.
+   *
+   * Only plain {@link RowMeta} objects are copied, other implementations of RowMetaInterface (and subclasses of
+   * RowMeta) may carry behavior of their own and are returned as-is.
+   *
+   * @param rowMeta the row metadata to freeze, can be null
+   * @return a frozen copy of a plain RowMeta, otherwise the row metadata itself
+   */
+  public static RowMetaInterface freeze( RowMetaInterface rowMeta ) {
+    if ( rowMeta == null || rowMeta.getClass() != RowMeta.class ) {
+      return rowMeta;
+    }
+    return new FrozenRowMeta( rowMeta );
+  }
+
+  private void beginChange() {
+    changeDepth++;
+    layout = null;
+  }
+
+  private void endChange() {
+    if ( --changeDepth == 0 ) {
+      layout = new Layout( super.getValueMetaList() );
+    }
+  }
+
+  @Override
+  public List<ValueMetaInterface> getValueMetaList() {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.getValueMetaList();
+    }
+    return l.valueMetaList;
+  }
+
+  @Override
+  public int size() {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.size();
+    }
+    return l.valueMetas.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.isEmpty();
+    }
+    return l.valueMetas.length == 0;
+  }
+
+  @Override
+  public ValueMetaInterface getValueMeta( int index ) {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.getValueMeta( index );
+    }
+    if ( index >= 0 && index < l.valueMetas.length ) {
+      return l.valueMetas[ index ];
+    }
+    return null;
+  }
+
+  @Override
+  public int indexOfValue( String valueName ) {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.indexOfValue( valueName );
+    }
+    return l.indexOf( valueName );
+  }
+
+  @Override
+  public ValueMetaInterface searchValueMeta( String valueName ) {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.searchValueMeta( valueName );
+    }
+    int index = l.indexOf( valueName );
+    return index < 0 ? null : l.valueMetas[ index ];
+  }
+
+  @Override
+  public String[] getFieldNames() {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.getFieldNames();
+    }
+    return l.fieldNames.clone();
+  }
+
+  @Override
+  public Object[] cloneRow( Object[] objects, Object[] newObjects ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.cloneRow( objects, newObjects );
+    }
+    for ( int i : l.needRealClone ) {
+      newObjects[ i ] = l.valueMetas[ i ].cloneValueData( objects[ i ] );
+    }
+    return newObjects;
+  }
+
+  @Override
+  public void writeData( DataOutputStream outputStream, Object[] data ) throws KettleFileException {
+    Layout l = layout;
+    if ( l == null ) {
+      super.writeData( outputStream, data );
+      return;
+    }
+    ValueMetaInterface[] valueMetas = l.valueMetas;
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      valueMetas[ i ].writeData( outputStream, data[ i ] );
+    }
+
+    // Same EOF marker as RowMeta for rows without values
+    //
+    if ( valueMetas.length == 0 ) {
+      try {
+        outputStream.writeBoolean( true );
+      } catch ( IOException e ) {
+        throw new KettleFileException( "Error writing marker flag", e );
+      }
+    }
+  }
+
+  @Override
+  public Object[] readData( DataInputStream inputStream ) throws KettleFileException, SocketTimeoutException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.readData( inputStream );
+    }
+    ValueMetaInterface[] valueMetas = l.valueMetas;
+    Object[] data = new Object[ valueMetas.length ];
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      data[ i ] = valueMetas[ i ].readData( inputStream );
+    }
+    if ( valueMetas.length == 0 ) {
+      try {
+        inputStream.readBoolean();
+      } catch ( EOFException e ) {
+        throw new KettleEOFException( e );
+      } catch ( SocketTimeoutException e ) {
+        throw e;
+      } catch ( IOException e ) {
+        throw new KettleFileException( toString() + " : Unable to read the marker flag data from input stream", e );
+      }
+    }
+    return data;
+  }
+
+  @Override
+  public int compare( Object[] rowData1, Object[] rowData2, int[] fieldnrs ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.compare( rowData1, rowData2, fieldnrs );
+    }
+    for ( int fieldnr : fieldnrs ) {
+      int cmp = l.valueMetas[ fieldnr ].compare( rowData1[ fieldnr ], rowData2[ fieldnr ] );
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public boolean equals( Object[] rowData1, Object[] rowData2, int[] fieldnrs ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.equals( rowData1, rowData2, fieldnrs );
+    }
+    for ( int fieldnr : fieldnrs ) {
+      if ( l.valueMetas[ fieldnr ].compare( rowData1[ fieldnr ], rowData2[ fieldnr ] ) != 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int compare( Object[] rowData1, Object[] rowData2, int[] fieldnrs1, int[] fieldnrs2 )
+    throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.compare( rowData1, rowData2, fieldnrs1, fieldnrs2 );
+    }
+    int len = Math.min( fieldnrs1.length, fieldnrs2.length );
+    for ( int i = 0; i < len; i++ ) {
+      int cmp = l.valueMetas[ fieldnrs1[ i ] ].compare( rowData1[ fieldnrs1[ i ] ], rowData2[ fieldnrs2[ i ] ] );
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public int compare( Object[] rowData1, RowMetaInterface rowMeta2, Object[] rowData2, int[] fieldnrs1,
+                      int[] fieldnrs2 ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.compare( rowData1, rowMeta2, rowData2, fieldnrs1, fieldnrs2 );
+    }
+    int len = Math.min( fieldnrs1.length, fieldnrs2.length );
+    for ( int i = 0; i < len; i++ ) {
+      ValueMetaInterface valueMeta2 = rowMeta2.getValueMeta( fieldnrs2[ i ] );
+      int cmp = l.valueMetas[ fieldnrs1[ i ] ].compare( rowData1[ fieldnrs1[ i ] ], valueMeta2,
+        rowData2[ fieldnrs2[ i ] ] );
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public int compare( Object[] rowData1, Object[] rowData2 ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.compare( rowData1, rowData2 );
+    }
+    ValueMetaInterface[] valueMetas = l.valueMetas;
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      int cmp = valueMetas[ i ].compare( rowData1[ i ], rowData2[ i ] );
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  @Deprecated
+  public int oldXORHashCode( Object[] rowData ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null ) {
+      return super.oldXORHashCode( rowData );
+    }
+    int hash = 0;
+    ValueMetaInterface[] valueMetas = l.valueMetas;
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      hash ^= valueMetas[ i ].hashCode( rowData[ i ] );
+    }
+    return hash;
+  }
+
+  @Override
+  public int convertedValuesHashCode( Object[] rowData ) throws KettleValueException {
+    Layout l = layout;
+    if ( l == null || rowData == null ) {
+      return super.convertedValuesHashCode( rowData );
+    }
+    int result = 1;
+    for ( int i = 0; i < rowData.length; i++ ) {
+      result = 31 * result + getValueMeta( i ).hashCode();
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void setValueMetaList( List<ValueMetaInterface> valueMetaList ) {
+    beginChange();
+    try {
+      super.setValueMetaList( new ArrayList<ValueMetaInterface>( valueMetaList ) );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void addValueMeta( ValueMetaInterface meta ) {
+    beginChange();
+    try {
+      super.addValueMeta( meta );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void addValueMeta( int index, ValueMetaInterface meta ) {
+    beginChange();
+    try {
+      super.addValueMeta( index, meta );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void setValueMeta( int index, ValueMetaInterface valueMeta ) {
+    beginChange();
+    try {
+      super.setValueMeta( index, valueMeta );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void addRowMeta( RowMetaInterface rowMeta ) {
+    beginChange();
+    try {
+      super.addRowMeta( rowMeta );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void mergeRowMeta( RowMetaInterface r, String originStepName ) {
+    beginChange();
+    try {
+      super.mergeRowMeta( r, originStepName );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    beginChange();
+    try {
+      super.clear();
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void removeValueMeta( String valueName ) throws KettleValueException {
+    beginChange();
+    try {
+      super.removeValueMeta( valueName );
+    } finally {
+      endChange();
+    }
+  }
+
+  @Override
+  public synchronized void removeValueMeta( int index ) {
+    beginChange();
+    try {
+      super.removeValueMeta( index );
+    } finally {
+      endChange();
+    }
+  }
+
+  /**
+   * An immutable snapshot of the row layout.
+   */
+  private static final class Layout {
+    private final ValueMetaInterface[] valueMetas;
+    private final List<ValueMetaInterface> valueMetaList;
+    private final String[] fieldNames;
+    private final Map<String, Integer> indexes;
+    private final int[] needRealClone;
+
+    Layout( List<ValueMetaInterface> list ) {
+      valueMetas = list.toArray( new ValueMetaInterface[ list.size() ] );
+      valueMetaList = Collections.unmodifiableList( Arrays.asList( valueMetas ) );
+      fieldNames = new String[ valueMetas.length ];
+      indexes = new HashMap<String, Integer>( valueMetas.length * 2 );
+      int[] clones = new int[ valueMetas.length ];
+      int nrClones = 0;
+      for ( int i = 0; i < valueMetas.length; i++ ) {
+        String name = valueMetas[ i ].getName();
+        fieldNames[ i ] = name == null ? "" : name;
+        if ( name != null && !indexes.containsKey( name.toLowerCase() ) ) {
+          indexes.put( name.toLowerCase(), i );
+        }
+        if ( valueMetas[ i ].requiresRealClone() ) {
+          clones[ nrClones++ ] = i;
+        }
+      }
+      needRealClone = Arrays.copyOf( clones, nrClones );
+    }
+
+    /**
+     * Value metadata objects can be renamed after the snapshot was taken so a hit is verified and a miss falls back
+     * to a scan, just like the cache in RowMeta does.
+     */
+    int indexOf( String valueName ) {
+      if ( valueName == null ) {
+        return -1;
+      }
+      Integer index = indexes.get( valueName.toLowerCase() );
+      if ( index != null && valueName.equalsIgnoreCase( valueMetas[ index ].getName() ) ) {
+        return index;
+      }
+      for ( int i = 0; i < valueMetas.length; i++ ) {
+        if ( valueName.equalsIgnoreCase( valueMetas[ i ].getName() ) ) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
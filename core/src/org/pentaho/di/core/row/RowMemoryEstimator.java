@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Estimates the number of bytes a row occupies on the Java heap. The estimate assumes a 64-bit JVM with compressed
+ * object pointers: 12 byte object headers, 4 byte references and every object rounded up to a multiple of 8 bytes.
+ * Values that are shared between rows (indexed storage, cached booleans) are counted as a reference only.<br>
+ * <br>
+ * The numbers are not exact, they are meant to let steps account for the memory they use in a deterministic way.
+ */
+public class RowMemoryEstimator {
+
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  /** java.lang.String: header, byte[] reference, hash, coder */
+  private static final int STRING_SHALLOW = 24;
+  private static final int BOXED_NUMBER = 16;
+  private static final int DATE = 24;
+  private static final int TIMESTAMP = 32;
+  /** java.math.BigDecimal with its BigInteger, without the magnitude array */
+  private static final int BIG_DECIMAL_SHALLOW = 72;
+  private static final int UNKNOWN_OBJECT = 64;
+
+  private RowMemoryEstimator() {
+  }
+
+  /**
+   * Estimate the heap size of a row, including the row array itself.
+   *
+   * @param rowMeta
+   *          the metadata of the row, can be null
+   * @param row
+   *          the row data
+   * @return the estimated number of bytes
+   */
+  public static long estimateRowSize( RowMetaInterface rowMeta, Object[] row ) {
+    if ( row == null ) {
+      return 0L;
+    }
+    long size = align( ARRAY_HEADER + (long) REFERENCE * row.length );
+    int nrValues = rowMeta == null ? row.length : Math.min( rowMeta.size(), row.length );
+    for ( int i = 0; i < nrValues; i++ ) {
+      size += estimateValueSize( rowMeta == null ? null : rowMeta.getValueMeta( i ), row[i] );
+    }
+    for ( int i = nrValues; i < row.length; i++ ) {
+      size += estimateValueSize( null, row[i] );
+    }
+    return size;
+  }
+
+  /**
+   * Estimate the heap size of a single value, not counting the reference to it.
+   *
+   * @param valueMeta
+   *          the metadata of the value, can be null
+   * @param value
+   *          the value data
+   * @return the estimated number of bytes
+   */
+  public static long estimateValueSize( ValueMetaInterface valueMeta, Object value ) {
+    if ( value == null || value instanceof Boolean ) {
+      return 0L;
+    }
+    if ( valueMeta != null && valueMeta.isStorageIndexed() ) {
+      return 0L; // the index points to a value in the shared index
+    }
+    if ( value instanceof String ) {
+      // Assume UTF-16 content, latin-1 only strings take half of this on recent JVMs
+      return align( STRING_SHALLOW ) + align( ARRAY_HEADER + 2L * ( (String) value ).length() );
+    }
+    if ( value instanceof Long || value instanceof Double || value instanceof Integer ) {
+      return BOXED_NUMBER;
+    }
+    if ( value instanceof byte[] ) {
+      return align( ARRAY_HEADER + (long) ( (byte[]) value ).length );
+    }
+    if ( value instanceof Timestamp ) {
+      return TIMESTAMP;
+    }
+    if ( value instanceof Date ) {
+      return DATE;
+    }
+    if ( value instanceof BigDecimal ) {
+      int bits = ( (BigDecimal) value ).unscaledValue().bitLength();
+      return BIG_DECIMAL_SHALLOW + align( ARRAY_HEADER + 4L * ( ( bits + 31 ) / 32 ) );
+    }
+    return UNKNOWN_OBJECT;
+  }
+
+  private static long align( long size ) {
+    return ( size + 7 ) & ~7L;
+  }
+}
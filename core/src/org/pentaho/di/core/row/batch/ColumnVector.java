@@ -0,0 +1,181 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.util.Arrays;
+
+/**
+ * A column of values in a {@link RowBatch}. Null values are kept in a bitmap next to the values so that vectors of
+ * primitive values don't need to box them.
+ */
+public abstract class ColumnVector {
+
+  /**
+   * One bit per value, set for null values.
+   */
+  private long[] nulls;
+
+  /**
+   * The number of values in the vector.
+   */
+  protected int size;
+
+  protected ColumnVector( int capacity ) {
+    nulls = new long[ words( capacity ) ];
+  }
+
+  private static int words( int capacity ) {
+    return ( capacity + 63 ) >>> 6;
+  }
+
+  /**
+   * Creates a vector for the values of the specified value metadata. Integers, numbers and strings with normal storage
+   * get a specialized vector, other values are kept as objects.
+   *
+   * @param valueMeta the metadata of the values to store
+   * @param capacity  the initial capacity
+   * @return a new, empty vector
+   */
+  public static ColumnVector create( ValueMetaInterface valueMeta, int capacity ) {
+    if ( valueMeta.isStorageNormal() ) {
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          return new LongColumnVector( capacity );
+        case ValueMetaInterface.TYPE_NUMBER:
+          return new DoubleColumnVector( capacity );
+        case ValueMetaInterface.TYPE_STRING:
+          return new StringColumnVector( capacity );
+        default:
+          break;
+      }
+    }
+    return new ObjectColumnVector( capacity );
+  }
+
+  /**
+   * @return the number of values in the vector
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Changes the number of values in the vector, growing it if needed. New values are null.
+   *
+   * @param newSize the new number of values
+   */
+  public void setSize( int newSize ) {
+    ensureCapacity( newSize );
+    for ( int i = size; i < newSize; i++ ) {
+      setNull( i );
+    }
+    size = newSize;
+  }
+
+  /**
+   * Removes all values, the capacity is retained.
+   */
+  public void clear() {
+    Arrays.fill( nulls, 0L );
+    size = 0;
+  }
+
+  public boolean isNull( int index ) {
+    return ( nulls[ index >>> 6 ] & ( 1L << index ) ) != 0;
+  }
+
+  public void setNull( int index ) {
+    nulls[ index >>> 6 ] |= 1L << index;
+  }
+
+  protected void setNotNull( int index ) {
+    nulls[ index >>> 6 ] &= ~( 1L << index );
+  }
+
+  /**
+   * @return true if at least one of the values is null
+   */
+  public boolean hasNulls() {
+    int words = words( size );
+    for ( int i = 0; i < words; i++ ) {
+      long word = nulls[ i ];
+      if ( i == words - 1 && ( size & 63 ) != 0 ) {
+        word &= ( 1L << size ) - 1;
+      }
+      if ( word != 0 ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Appends a value to the end of the vector.
+   *
+   * @param value the value in its normal storage form, can be null
+   */
+  public void append( Object value ) {
+    ensureCapacity( size + 1 );
+    setObject( size++, value );
+  }
+
+  /**
+   * Gets a value in its normal storage form. Specialized vectors box or decode the value here so this should only be
+   * used where the value leaves the batch.
+   *
+   * @param index the index of the value
+   * @return the value or null
+   */
+  public abstract Object getObject( int index );
+
+  /**
+   * Sets a value in its normal storage form.
+   *
+   * @param index the index of the value
+   * @param value the value or null
+   */
+  public abstract void setObject( int index, Object value );
+
+  /**
+   * @return the number of values the vector can hold without growing
+   */
+  public abstract int capacity();
+
+  /**
+   * Grows the value storage of the vector.
+   *
+   * @param capacity the new capacity
+   */
+  protected abstract void grow( int capacity );
+
+  protected void ensureCapacity( int minCapacity ) {
+    int capacity = capacity();
+    if ( minCapacity > capacity ) {
+      int newCapacity = Math.max( minCapacity, capacity + ( capacity >> 1 ) + 1 );
+      grow( newCapacity );
+      nulls = Arrays.copyOf( nulls, words( newCapacity ) );
+    }
+  }
+}
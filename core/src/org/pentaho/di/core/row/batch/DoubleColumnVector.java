@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import java.util.Arrays;
+
+/**
+ * A vector of Number values kept as primitive doubles.
+ */
+public class DoubleColumnVector extends ColumnVector {
+
+  private double[] values;
+
+  public DoubleColumnVector( int capacity ) {
+    super( capacity );
+    values = new double[ capacity ];
+  }
+
+  public double getDouble( int index ) {
+    return values[ index ];
+  }
+
+  public void setDouble( int index, double value ) {
+    values[ index ] = value;
+    setNotNull( index );
+  }
+
+  public void appendDouble( double value ) {
+    ensureCapacity( size + 1 );
+    setDouble( size++, value );
+  }
+
+  /**
+   * @return the backing array, only the first {@link #size()} entries are used and entries of null values are undefined
+   */
+  public double[] getValues() {
+    return values;
+  }
+
+  @Override
+  public Object getObject( int index ) {
+    return isNull( index ) ? null : Double.valueOf( values[ index ] );
+  }
+
+  @Override
+  public void setObject( int index, Object value ) {
+    if ( value == null ) {
+      setNull( index );
+    } else {
+      setDouble( index, ( (Double) value ).doubleValue() );
+    }
+  }
+
+  @Override
+  public int capacity() {
+    return values.length;
+  }
+
+  @Override
+  protected void grow( int capacity ) {
+    values = Arrays.copyOf( values, capacity );
+  }
+}
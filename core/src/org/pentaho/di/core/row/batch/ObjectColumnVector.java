@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import java.util.Arrays;
+
+/**
+ * A vector for values without a specialized representation (dates, big numbers, binary storage, ...).
+ */
+public class ObjectColumnVector extends ColumnVector {
+
+  private Object[] values;
+
+  public ObjectColumnVector( int capacity ) {
+    super( capacity );
+    values = new Object[ capacity ];
+  }
+
+  @Override
+  public Object getObject( int index ) {
+    return values[ index ];
+  }
+
+  @Override
+  public void setObject( int index, Object value ) {
+    values[ index ] = value;
+    if ( value == null ) {
+      setNull( index );
+    } else {
+      setNotNull( index );
+    }
+  }
+
+  @Override
+  public void setNull( int index ) {
+    super.setNull( index );
+    values[ index ] = null;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill( values, 0, size, null );
+    super.clear();
+  }
+
+  @Override
+  public int capacity() {
+    return values.length;
+  }
+
+  @Override
+  protected void grow( int capacity ) {
+    values = Arrays.copyOf( values, capacity );
+  }
+}
@@ -0,0 +1,211 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of rows stored column by column. Integers and numbers are kept in primitive arrays and strings are
+ * dictionary encoded, so steps working on a batch don't allocate an object per value. The batch is an alternative
+ * representation of a list of Object[] rows described by a {@link RowMetaInterface}: {@link #fromRows} and
+ * {@link #toRows()} convert between the two at step boundaries.
+ */
+public class RowBatch {
+
+  private final RowMetaInterface rowMeta;
+  private final ColumnVector[] columns;
+  private int size;
+
+  /**
+   * Creates an empty batch.
+   *
+   * @param rowMeta  the metadata of the rows in the batch
+   * @param capacity the initial number of rows the batch can hold
+   */
+  public RowBatch( RowMetaInterface rowMeta, int capacity ) {
+    this.rowMeta = rowMeta;
+    this.columns = new ColumnVector[ rowMeta.size() ];
+    for ( int i = 0; i < columns.length; i++ ) {
+      columns[ i ] = ColumnVector.create( rowMeta.getValueMeta( i ), capacity );
+    }
+  }
+
+  /**
+   * Creates a batch from a list of rows.
+   *
+   * @param rowMeta the metadata of the rows
+   * @param rows    the rows to add
+   * @return a new batch holding the rows
+   */
+  public static RowBatch fromRows( RowMetaInterface rowMeta, List<Object[]> rows ) {
+    RowBatch batch = new RowBatch( rowMeta, rows.size() );
+    for ( Object[] row : rows ) {
+      batch.addRow( row );
+    }
+    return batch;
+  }
+
+  /**
+   * Adds a row at the end of the batch. Only the values described by the row metadata are read, the extra slots of a
+   * row allocated with {@link RowDataUtil#allocateRowData(int)} are ignored.
+   *
+   * @param row the row to add
+   */
+  public void addRow( Object[] row ) {
+    for ( int i = 0; i < columns.length; i++ ) {
+      columns[ i ].append( row[ i ] );
+    }
+    size++;
+  }
+
+  /**
+   * Creates a row for an entry of the batch, this boxes the primitive values.
+   *
+   * @param index the index of the row in the batch
+   * @return a new row
+   */
+  public Object[] getRow( int index ) {
+    Object[] row = RowDataUtil.allocateRowData( columns.length );
+    for ( int i = 0; i < columns.length; i++ ) {
+      row[ i ] = columns[ i ].getObject( index );
+    }
+    return row;
+  }
+
+  /**
+   * @return the rows of the batch as a new list of Object[] rows
+   */
+  public List<Object[]> toRows() {
+    List<Object[]> rows = new ArrayList<Object[]>( size );
+    for ( int i = 0; i < size; i++ ) {
+      rows.add( getRow( i ) );
+    }
+    return rows;
+  }
+
+  /**
+   * Calculates a hash code per row for the specified fields, combining the hash codes of
+   * {@link ValueMetaInterface#hashCode(Object)} the same way {@link java.util.Arrays#hashCode(Object[])} does.
+   *
+   * @param fieldnrs the indexes of the fields to hash
+   * @param hashes   receives the hash codes, at least {@link #size()} long
+   * @throws KettleValueException in case a value can't be hashed
+   */
+  public void hashCodes( int[] fieldnrs, int[] hashes ) throws KettleValueException {
+    int[] columnHashes = new int[ size ];
+    for ( int i = 0; i < size; i++ ) {
+      hashes[ i ] = 1;
+    }
+    for ( int fieldnr : fieldnrs ) {
+      hashCodes( rowMeta.getValueMeta( fieldnr ), columns[ fieldnr ], columnHashes );
+      for ( int i = 0; i < size; i++ ) {
+        hashes[ i ] = 31 * hashes[ i ] + columnHashes[ i ];
+      }
+    }
+  }
+
+  private static void hashCodes( ValueMetaInterface valueMeta, ColumnVector vector, int[] hashes )
+    throws KettleValueException {
+    if ( valueMeta instanceof ValueMetaBase ) {
+      ( (ValueMetaBase) valueMeta ).hashCodes( vector, hashes );
+    } else {
+      for ( int i = 0; i < vector.size(); i++ ) {
+        hashes[ i ] = valueMeta.hashCode( vector.getObject( i ) );
+      }
+    }
+  }
+
+  /**
+   * Compares two rows of the batch on the specified fields.
+   *
+   * @param index1   the index of the first row
+   * @param index2   the index of the second row
+   * @param fieldnrs the fields to compare on (in that order)
+   * @return 0 if the rows are considered equal, a negative number if the first row is smaller, positive otherwise
+   * @throws KettleValueException in case the values can't be compared
+   */
+  public int compare( int index1, int index2, int[] fieldnrs ) throws KettleValueException {
+    for ( int fieldnr : fieldnrs ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( fieldnr );
+      int cmp;
+      if ( valueMeta instanceof ValueMetaBase ) {
+        cmp = ( (ValueMetaBase) valueMeta ).compare( columns[ fieldnr ], index1, index2 );
+      } else {
+        cmp = valueMeta.compare( columns[ fieldnr ].getObject( index1 ), columns[ fieldnr ].getObject( index2 ) );
+      }
+      if ( cmp != 0 ) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  /**
+   * @param index the index of the field
+   * @return the column holding the values of the field
+   */
+  public ColumnVector getColumn( int index ) {
+    return columns[ index ];
+  }
+
+  /**
+   * @param name the name of the field
+   * @return the column holding the values of the field or null if there is no such field
+   */
+  public ColumnVector getColumn( String name ) {
+    int index = rowMeta.indexOfValue( name );
+    return index < 0 ? null : columns[ index ];
+  }
+
+  /**
+   * @return the number of rows in the batch
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all rows, the allocated column storage is kept for reuse.
+   */
+  public void clear() {
+    for ( ColumnVector column : columns ) {
+      column.clear();
+    }
+    size = 0;
+  }
+}
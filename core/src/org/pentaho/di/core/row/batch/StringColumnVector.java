@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary encoded vector of String values. Every distinct string is stored once and the values refer to it by
+ * code, so repeating values cost an int each and can be compared or hashed per distinct value.
+ */
+public class StringColumnVector extends ColumnVector {
+
+  private int[] codes;
+  private final List<String> dictionary;
+  private final Map<String, Integer> lookup;
+
+  public StringColumnVector( int capacity ) {
+    super( capacity );
+    codes = new int[ capacity ];
+    dictionary = new ArrayList<String>();
+    lookup = new HashMap<String, Integer>();
+  }
+
+  public String getString( int index ) {
+    return isNull( index ) ? null : dictionary.get( codes[ index ] );
+  }
+
+  public void setString( int index, String value ) {
+    if ( value == null ) {
+      setNull( index );
+      return;
+    }
+    Integer code = lookup.get( value );
+    if ( code == null ) {
+      code = dictionary.size();
+      dictionary.add( value );
+      lookup.put( value, code );
+    }
+    codes[ index ] = code;
+    setNotNull( index );
+  }
+
+  /**
+   * @param index the index of a value that is not null
+   * @return the dictionary code of the value
+   */
+  public int getCode( int index ) {
+    return codes[ index ];
+  }
+
+  /**
+   * @return the backing array of dictionary codes, only the first {@link #size()} entries are used
+   */
+  public int[] getCodes() {
+    return codes;
+  }
+
+  /**
+   * @return the number of distinct strings in the dictionary
+   */
+  public int getDictionarySize() {
+    return dictionary.size();
+  }
+
+  /**
+   * @param code a dictionary code
+   * @return the string for the code
+   */
+  public String getDictionaryValue( int code ) {
+    return dictionary.get( code );
+  }
+
+  /**
+   * Removes all values and empties the dictionary.
+   */
+  @Override
+  public void clear() {
+    super.clear();
+    dictionary.clear();
+    lookup.clear();
+  }
+
+  @Override
+  public Object getObject( int index ) {
+    return getString( index );
+  }
+
+  @Override
+  public void setObject( int index, Object value ) {
+    setString( index, (String) value );
+  }
+
+  @Override
+  public int capacity() {
+    return codes.length;
+  }
+
+  @Override
+  protected void grow( int capacity ) {
+    codes = Arrays.copyOf( codes, capacity );
+  }
+}
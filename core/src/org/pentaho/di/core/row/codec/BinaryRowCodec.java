@@ -0,0 +1,508 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.codec;
+
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact row format. Every row is written as a length prefixed frame holding a null bitmap followed by the values
+ * that are not null, without any per value metadata:
+ * <ul>
+ * <li>Integers and dates: zig-zag encoded variable length longs</li>
+ * <li>Numbers: the 8 bytes of the double</li>
+ * <li>Strings: variable length byte count and UTF-8 bytes, optionally replaced by a reference to an earlier occurrence
+ * of the same string (dictionary)</li>
+ * <li>Booleans: 1 byte</li>
+ * <li>Big numbers: scale, length and unscaled bytes</li>
+ * <li>Binaries and binary string storage: length and bytes</li>
+ * <li>Other types and indexed storage: the encoding of {@link ValueMetaInterface#writeData(DataOutputStream, Object)}
+ * </li>
+ * </ul>
+ * Rows are encoded in a reusable buffer which is written to the stream in one go. The stream starts with a header
+ * holding a magic number, the format version and the format flags.
+ */
+public class BinaryRowCodec implements RowCodec {
+
+  /**
+   * The start of the header. It's negative so it can't be confused with the field count at the start of row
+   * metadata written by {@link RowMetaInterface#writeMeta(DataOutputStream)}.
+   */
+  public static final int MAGIC = 0x8B524F57;
+
+  public static final int VERSION = 1;
+
+  /**
+   * Header flag: repeating strings are written as a reference to the dictionary.
+   */
+  static final int FLAG_DICTIONARY = 1;
+
+  static final int MAX_DICTIONARY_SIZE = 16384;
+
+  /**
+   * Strings longer than this (in bytes) are not added to the dictionary.
+   */
+  static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+
+  private static final int ENC_INTEGER = 0;
+  private static final int ENC_NUMBER = 1;
+  private static final int ENC_STRING = 2;
+  private static final int ENC_DATE = 3;
+  private static final int ENC_BOOLEAN = 4;
+  private static final int ENC_BIGNUMBER = 5;
+  private static final int ENC_BYTES = 6;
+  private static final int ENC_VALUE_META = 7;
+
+  private final RowMetaInterface rowMeta;
+  private final ValueMetaInterface[] valueMetas;
+  private final int[] encodings;
+  private boolean dictionary;
+
+  private ByteBuffer buffer;
+  private final Map<String, Integer> writeDictionary;
+  private final List<String> readDictionary;
+
+  private ByteArrayOutputStream valueBytes;
+  private DataOutputStream valueOutput;
+
+  /**
+   * Creates a codec using a dictionary for repeating strings.
+   *
+   * @param rowMeta the metadata of the rows
+   */
+  public BinaryRowCodec( RowMetaInterface rowMeta ) {
+    this( rowMeta, true );
+  }
+
+  /**
+   * @param rowMeta    the metadata of the rows
+   * @param dictionary true to write repeating strings as a reference to the dictionary. When reading, the header of
+   *                   the stream decides.
+   */
+  public BinaryRowCodec( RowMetaInterface rowMeta, boolean dictionary ) {
+    this.rowMeta = rowMeta;
+    this.dictionary = dictionary;
+    valueMetas = rowMeta.getValueMetaList().toArray( new ValueMetaInterface[ rowMeta.size() ] );
+    encodings = new int[ valueMetas.length ];
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      encodings[ i ] = getEncoding( valueMetas[ i ] );
+    }
+    buffer = ByteBuffer.allocate( 256 );
+    writeDictionary = new HashMap<String, Integer>();
+    readDictionary = new ArrayList<String>();
+  }
+
+  private static int getEncoding( ValueMetaInterface valueMeta ) {
+    if ( valueMeta.isStorageBinaryString() ) {
+      return ENC_BYTES;
+    }
+    if ( !valueMeta.isStorageNormal() ) {
+      return ENC_VALUE_META;
+    }
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return ENC_INTEGER;
+      case ValueMetaInterface.TYPE_NUMBER:
+        return ENC_NUMBER;
+      case ValueMetaInterface.TYPE_STRING:
+        return ENC_STRING;
+      case ValueMetaInterface.TYPE_DATE:
+        return ENC_DATE;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return ENC_BOOLEAN;
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return ENC_BIGNUMBER;
+      case ValueMetaInterface.TYPE_BINARY:
+        return ENC_BYTES;
+      default:
+        return ENC_VALUE_META;
+    }
+  }
+
+  @Override
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  public boolean isDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  public void writeHeader( DataOutputStream outputStream ) throws KettleFileException {
+    try {
+      outputStream.writeInt( MAGIC );
+      outputStream.writeByte( VERSION );
+      outputStream.writeByte( dictionary ? FLAG_DICTIONARY : 0 );
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to write the row codec header", e );
+    }
+  }
+
+  @Override
+  public void readHeader( DataInputStream inputStream ) throws KettleFileException {
+    try {
+      int magic = inputStream.readInt();
+      if ( magic != MAGIC ) {
+        throw new KettleFileException( "The stream doesn't start with a binary row codec header" );
+      }
+      dictionary = ( readFlags( inputStream ) & FLAG_DICTIONARY ) != 0;
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( e );
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to read the row codec header", e );
+    }
+  }
+
+  /**
+   * Reads the rest of the header after the magic number.
+   *
+   * @return the format flags
+   */
+  static int readFlags( DataInputStream inputStream ) throws IOException, KettleFileException {
+    int version = inputStream.readUnsignedByte();
+    if ( version > VERSION ) {
+      throw new KettleFileException( "Unsupported binary row codec version " + version + ", the highest supported "
+        + "version is " + VERSION );
+    }
+    return inputStream.readUnsignedByte();
+  }
+
+  @Override
+  public void writeRow( DataOutputStream outputStream, Object[] row ) throws KettleFileException {
+    try {
+      buffer.clear();
+      int bitmapLength = ( valueMetas.length + 7 ) >>> 3;
+      ensure( bitmapLength );
+      for ( int i = 0; i < bitmapLength; i++ ) {
+        int bits = 0;
+        for ( int b = 0; b < 8; b++ ) {
+          int index = ( i << 3 ) + b;
+          if ( index < valueMetas.length && row[ index ] == null ) {
+            bits |= 1 << b;
+          }
+        }
+        buffer.put( (byte) bits );
+      }
+      for ( int i = 0; i < valueMetas.length; i++ ) {
+        if ( row[ i ] != null ) {
+          writeValue( i, row[ i ] );
+        }
+      }
+
+      // The frame: length and the encoded row
+      //
+      int length = buffer.position();
+      writeVarInt( outputStream, length );
+      outputStream.write( buffer.array(), 0, length );
+    } catch ( IOException e ) {
+      throw new KettleFileException( rowMeta.toString() + " : Unable to write row to output stream", e );
+    }
+  }
+
+  private void writeValue( int index, Object object ) throws IOException, KettleFileException {
+    switch ( encodings[ index ] ) {
+      case ENC_INTEGER:
+        putVarLong( zigZag( (Long) object ) );
+        break;
+      case ENC_NUMBER:
+        ensure( 8 );
+        buffer.putDouble( (Double) object );
+        break;
+      case ENC_STRING:
+        putString( (String) object );
+        break;
+      case ENC_DATE:
+        putVarLong( zigZag( ( (Date) object ).getTime() ) );
+        break;
+      case ENC_BOOLEAN:
+        ensure( 1 );
+        buffer.put( ( (Boolean) object ) ? (byte) 1 : (byte) 0 );
+        break;
+      case ENC_BIGNUMBER:
+        BigDecimal bigDecimal = (BigDecimal) object;
+        putVarLong( zigZag( bigDecimal.scale() ) );
+        putBytes( bigDecimal.unscaledValue().toByteArray() );
+        break;
+      case ENC_BYTES:
+        putBytes( (byte[]) object );
+        break;
+      default:
+        if ( valueBytes == null ) {
+          valueBytes = new ByteArrayOutputStream();
+          valueOutput = new DataOutputStream( valueBytes );
+        }
+        valueBytes.reset();
+        valueMetas[ index ].writeData( valueOutput, object );
+        valueOutput.flush();
+        putBytes( valueBytes.toByteArray() );
+        break;
+    }
+  }
+
+  private void putString( String string ) {
+    if ( dictionary ) {
+      Integer code = writeDictionary.get( string );
+      if ( code != null ) {
+        putVarLong( code + 1 );
+        return;
+      }
+      putVarLong( 0 );
+    }
+    int length = putUtf8( string );
+    if ( dictionary && writeDictionary.size() < MAX_DICTIONARY_SIZE && length <= MAX_DICTIONARY_STRING_LENGTH ) {
+      writeDictionary.put( string, writeDictionary.size() );
+    }
+  }
+
+  /**
+   * Writes the UTF-8 byte count and bytes of a string straight into the buffer. Unpaired surrogates are written as '?'
+   * just like {@link String#getBytes(java.nio.charset.Charset)} does.
+   *
+   * @return the number of bytes
+   */
+  private int putUtf8( String string ) {
+    int chars = string.length();
+    int length = 0;
+    for ( int i = 0; i < chars; i++ ) {
+      char c = string.charAt( i );
+      if ( c < 0x80 ) {
+        length++;
+      } else if ( c < 0x800 ) {
+        length += 2;
+      } else if ( isSurrogatePair( string, i ) ) {
+        length += 4;
+        i++;
+      } else if ( Character.isSurrogate( c ) ) {
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    putVarLong( length );
+    ensure( length );
+    if ( length == chars ) {
+      for ( int i = 0; i < chars; i++ ) {
+        buffer.put( (byte) string.charAt( i ) );
+      }
+      return length;
+    }
+    for ( int i = 0; i < chars; i++ ) {
+      char c = string.charAt( i );
+      if ( c < 0x80 ) {
+        buffer.put( (byte) c );
+      } else if ( c < 0x800 ) {
+        buffer.put( (byte) ( 0xC0 | ( c >> 6 ) ) );
+        buffer.put( (byte) ( 0x80 | ( c & 0x3F ) ) );
+      } else if ( isSurrogatePair( string, i ) ) {
+        int codePoint = Character.toCodePoint( c, string.charAt( ++i ) );
+        buffer.put( (byte) ( 0xF0 | ( codePoint >> 18 ) ) );
+        buffer.put( (byte) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) ) );
+        buffer.put( (byte) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) ) );
+        buffer.put( (byte) ( 0x80 | ( codePoint & 0x3F ) ) );
+      } else if ( Character.isSurrogate( c ) ) {
+        buffer.put( (byte) '?' );
+      } else {
+        buffer.put( (byte) ( 0xE0 | ( c >> 12 ) ) );
+        buffer.put( (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) ) );
+        buffer.put( (byte) ( 0x80 | ( c & 0x3F ) ) );
+      }
+    }
+    return length;
+  }
+
+  private static boolean isSurrogatePair( String string, int index ) {
+    return Character.isHighSurrogate( string.charAt( index ) ) && index + 1 < string.length()
+      && Character.isLowSurrogate( string.charAt( index + 1 ) );
+  }
+
+  private void putBytes( byte[] bytes ) {
+    putVarLong( bytes.length );
+    ensure( bytes.length );
+    buffer.put( bytes );
+  }
+
+  private void putVarLong( long value ) {
+    ensure( 10 );
+    while ( ( value & ~0x7FL ) != 0 ) {
+      buffer.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+      value >>>= 7;
+    }
+    buffer.put( (byte) value );
+  }
+
+  private static void writeVarInt( DataOutputStream outputStream, int value ) throws IOException {
+    while ( ( value & ~0x7F ) != 0 ) {
+      outputStream.write( ( value & 0x7F ) | 0x80 );
+      value >>>= 7;
+    }
+    outputStream.write( value );
+  }
+
+  private static long zigZag( long value ) {
+    return ( value << 1 ) ^ ( value >> 63 );
+  }
+
+  private static long unZigZag( long value ) {
+    return ( value >>> 1 ) ^ -( value & 1 );
+  }
+
+  /**
+   * Makes sure the buffer can take the specified number of extra bytes.
+   */
+  private void ensure( int extra ) {
+    if ( buffer.remaining() < extra ) {
+      int capacity = Math.max( buffer.capacity() * 2, buffer.position() + extra );
+      ByteBuffer bigger = ByteBuffer.allocate( capacity );
+      buffer.flip();
+      bigger.put( buffer );
+      buffer = bigger;
+    }
+  }
+
+  @Override
+  public Object[] readRow( DataInputStream inputStream ) throws KettleFileException, SocketTimeoutException {
+    int length;
+    try {
+      length = inputStream.readUnsignedByte();
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( e );
+    } catch ( SocketTimeoutException e ) {
+      throw e;
+    } catch ( IOException e ) {
+      throw new KettleFileException( rowMeta.toString() + " : Unable to read row from input stream", e );
+    }
+
+    try {
+      if ( length > 0x7F ) {
+        length &= 0x7F;
+        for ( int shift = 7;; shift += 7 ) {
+          int b = inputStream.readUnsignedByte();
+          length |= ( b & 0x7F ) << shift;
+          if ( b < 0x80 ) {
+            break;
+          }
+        }
+      }
+      if ( buffer.capacity() < length ) {
+        buffer = ByteBuffer.allocate( Math.max( length, buffer.capacity() * 2 ) );
+      }
+      inputStream.readFully( buffer.array(), 0, length );
+      buffer.clear();
+      buffer.limit( length );
+
+      Object[] row = new Object[ valueMetas.length ];
+      int bitmapLength = ( valueMetas.length + 7 ) >>> 3;
+      int bitmapStart = buffer.position();
+      buffer.position( bitmapStart + bitmapLength );
+      for ( int i = 0; i < valueMetas.length; i++ ) {
+        if ( ( buffer.get( bitmapStart + ( i >>> 3 ) ) & ( 1 << ( i & 7 ) ) ) == 0 ) {
+          row[ i ] = readValue( i );
+        }
+      }
+      return row;
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( e );
+    } catch ( SocketTimeoutException e ) {
+      throw e;
+    } catch ( IOException e ) {
+      throw new KettleFileException( rowMeta.toString() + " : Unable to read row from input stream", e );
+    }
+  }
+
+  private Object readValue( int index ) throws IOException, KettleFileException {
+    switch ( encodings[ index ] ) {
+      case ENC_INTEGER:
+        return Long.valueOf( unZigZag( getVarLong() ) );
+      case ENC_NUMBER:
+        return Double.valueOf( buffer.getDouble() );
+      case ENC_STRING:
+        return getString();
+      case ENC_DATE:
+        return new Date( unZigZag( getVarLong() ) );
+      case ENC_BOOLEAN:
+        return Boolean.valueOf( buffer.get() != 0 );
+      case ENC_BIGNUMBER:
+        int scale = (int) unZigZag( getVarLong() );
+        return new BigDecimal( new BigInteger( getBytes() ), scale );
+      case ENC_BYTES:
+        return getBytes();
+      default:
+        byte[] bytes = getBytes();
+        return valueMetas[ index ].readData( new DataInputStream( new ByteArrayInputStream( bytes ) ) );
+    }
+  }
+
+  private String getString() {
+    if ( dictionary ) {
+      int code = (int) getVarLong();
+      if ( code > 0 ) {
+        return readDictionary.get( code - 1 );
+      }
+    }
+    int length = (int) getVarLong();
+    String string = new String( buffer.array(), buffer.position(), length, StandardCharsets.UTF_8 );
+    buffer.position( buffer.position() + length );
+    if ( dictionary && readDictionary.size() < MAX_DICTIONARY_SIZE && length <= MAX_DICTIONARY_STRING_LENGTH ) {
+      readDictionary.add( string );
+    }
+    return string;
+  }
+
+  private byte[] getBytes() {
+    int length = (int) getVarLong();
+    byte[] bytes = new byte[ length ];
+    buffer.get( bytes );
+    return bytes;
+  }
+
+  private long getVarLong() {
+    long value = 0;
+    for ( int shift = 0;; shift += 7 ) {
+      byte b = buffer.get();
+      value |= (long) ( b & 0x7F ) << shift;
+      if ( b >= 0 ) {
+        return value;
+      }
+    }
+  }
+}
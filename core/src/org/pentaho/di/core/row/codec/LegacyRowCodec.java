@@ -0,0 +1,68 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.codec;
+
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * The original row format of {@link RowMetaInterface#writeData(DataOutputStream, Object[])}: every value with a null
+ * flag and its type specific encoding. The stream has no header.
+ */
+public class LegacyRowCodec implements RowCodec {
+
+  private final RowMetaInterface rowMeta;
+
+  public LegacyRowCodec( RowMetaInterface rowMeta ) {
+    this.rowMeta = rowMeta;
+  }
+
+  @Override
+  public RowMetaInterface getRowMeta() {
+    return rowMeta;
+  }
+
+  @Override
+  public void writeHeader( DataOutputStream outputStream ) {
+    // No header
+  }
+
+  @Override
+  public void readHeader( DataInputStream inputStream ) {
+    // No header
+  }
+
+  @Override
+  public void writeRow( DataOutputStream outputStream, Object[] row ) throws KettleFileException {
+    rowMeta.writeData( outputStream, row );
+  }
+
+  @Override
+  public Object[] readRow( DataInputStream inputStream ) throws KettleFileException, SocketTimeoutException {
+    return rowMeta.readData( inputStream );
+  }
+}
@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.codec;
+
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * Serializes rows of a given layout to a stream and back. Used for temporary files, sockets and caches. A codec can
+ * keep state about the stream it writes or reads (a dictionary of repeating strings for example) so every stream
+ * needs its own codec object, created with {@link RowCodecFactory}.
+ */
+public interface RowCodec {
+
+  /**
+   * @return the metadata of the rows written and read by this codec
+   */
+  RowMetaInterface getRowMeta();
+
+  /**
+   * Writes the codec header at the start of a stream, before any rows.
+   *
+   * @param outputStream the stream to write to
+   * @throws KettleFileException in case of an I/O error
+   */
+  void writeHeader( DataOutputStream outputStream ) throws KettleFileException;
+
+  /**
+   * Reads and verifies the codec header written by {@link #writeHeader(DataOutputStream)}.
+   *
+   * @param inputStream the stream to read from
+   * @throws KettleFileException in case of an I/O error or if the header doesn't match this codec
+   */
+  void readHeader( DataInputStream inputStream ) throws KettleFileException;
+
+  /**
+   * Writes one row.
+   *
+   * @param outputStream the stream to write to
+   * @param row          the row to write, described by the row metadata of the codec
+   * @throws KettleFileException in case of an I/O error
+   */
+  void writeRow( DataOutputStream outputStream, Object[] row ) throws KettleFileException;
+
+  /**
+   * Reads one row.
+   *
+   * @param inputStream the stream to read from
+   * @return the row
+   * @throws KettleFileException    in case of an I/O error, a KettleEOFException at the end of the stream
+   * @throws SocketTimeoutException in case a socket read timed out
+   */
+  Object[] readRow( DataInputStream inputStream ) throws KettleFileException, SocketTimeoutException;
+}
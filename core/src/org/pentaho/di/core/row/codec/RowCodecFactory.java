@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.codec;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * Creates the {@link RowCodec} selected with variable {@link Const#KETTLE_ROW_CODEC}.
+ */
+public class RowCodecFactory {
+
+  public static final String CODEC_LEGACY = "legacy";
+
+  public static final String CODEC_BINARY = "binary";
+
+  private RowCodecFactory() {
+  }
+
+  /**
+   * @param space the variables to look in
+   * @return the name of the codec selected with variable KETTLE_ROW_CODEC
+   */
+  public static String getCodecName( VariableSpace space ) {
+    String name = space == null ? null : space.getVariable( Const.KETTLE_ROW_CODEC );
+    return CODEC_BINARY.equalsIgnoreCase( Const.trim( name ) ) ? CODEC_BINARY : CODEC_LEGACY;
+  }
+
+  /**
+   * Creates a new codec, use one per stream.
+   *
+   * @param name    the name of the codec, {@link #CODEC_LEGACY} or {@link #CODEC_BINARY}
+   * @param rowMeta the metadata of the rows
+   * @return the codec
+   */
+  public static RowCodec createCodec( String name, RowMetaInterface rowMeta ) {
+    if ( CODEC_BINARY.equalsIgnoreCase( name ) ) {
+      return new BinaryRowCodec( rowMeta );
+    }
+    return new LegacyRowCodec( rowMeta );
+  }
+
+  /**
+   * Writes the codec header followed by the row metadata to the start of a stream. The stream can be read with
+   * {@link #readRowMeta(DataInputStream)} without knowing which codec was used.
+   *
+   * @param outputStream the stream to write to
+   * @param codec        the codec the rows are written with
+   * @throws KettleFileException in case of an I/O error
+   */
+  public static void writeRowMeta( DataOutputStream outputStream, RowCodec codec ) throws KettleFileException {
+    codec.writeHeader( outputStream );
+    codec.getRowMeta().writeMeta( outputStream );
+  }
+
+  /**
+   * Reads the codec header and row metadata written by {@link #writeRowMeta(DataOutputStream, RowCodec)}. Streams
+   * without a codec header, written with {@link RowMetaInterface#writeMeta(DataOutputStream)}, are read with the
+   * legacy codec.
+   *
+   * @param inputStream the stream to read from
+   * @return the codec to read the rows with, holding the row metadata
+   * @throws KettleFileException    in case of an I/O error
+   * @throws SocketTimeoutException in case a socket read timed out before anything was read
+   */
+  public static RowCodec readRowMeta( DataInputStream inputStream ) throws KettleFileException,
+    SocketTimeoutException {
+    int first;
+    try {
+      first = inputStream.readInt();
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( "End of file while reading the row metadata", e );
+    } catch ( SocketTimeoutException e ) {
+      throw e;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Unable to read the row metadata", e );
+    }
+
+    if ( first == BinaryRowCodec.MAGIC ) {
+      boolean dictionary;
+      try {
+        dictionary = ( BinaryRowCodec.readFlags( inputStream ) & BinaryRowCodec.FLAG_DICTIONARY ) != 0;
+      } catch ( IOException e ) {
+        throw new KettleFileException( "Unable to read the row codec header", e );
+      }
+      return new BinaryRowCodec( new RowMeta( inputStream ), dictionary );
+    }
+
+    // No header: put the field count back in front of the rest of the row metadata
+    //
+    byte[] fieldCount =
+      new byte[] { (byte) ( first >>> 24 ), (byte) ( first >>> 16 ), (byte) ( first >>> 8 ), (byte) first };
+    DataInputStream metaStream =
+      new DataInputStream( new SequenceInputStream( new ByteArrayInputStream( fieldCount ), inputStream ) );
+    return new LegacyRowCodec( new RowMeta( metaStream ) );
+  }
+}
@@ -73,6 +73,10 @@ import org.pentaho.di.core.logging.KettleLogStore;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.row.ValueDataUtil;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.ColumnVector;
+import org.pentaho.di.core.row.batch.DoubleColumnVector;
+import org.pentaho.di.core.row.batch.LongColumnVector;
+import org.pentaho.di.core.row.batch.StringColumnVector;
 import org.pentaho.di.core.util.EnvUtil;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
@@ -120,6 +124,11 @@ public class ValueMetaBase implements ValueMetaInterface {
   public static final boolean EMPTY_STRING_AND_NULL_ARE_DIFFERENT = convertStringToBoolean(
           Const.NVL( System.getProperty( Const.KETTLE_EMPTY_STRING_DIFFERS_FROM_NULL, "N" ), "N" ) );
 
+  // Operations of the vectorized calculations
+  private static final int CALC_PLUS = 0;
+  private static final int CALC_MINUS = 1;
+  private static final int CALC_MULTIPLY = 2;
+
   protected String name;
   protected int length;
   protected int precision;
@@ -4097,6 +4106,212 @@ public class ValueMetaBase implements ValueMetaInterface {
     return hash;
   }
 
+  /**
+   * Calculates the hash codes of all the values in a vector, the same as {@link #hashCode(Object)} does for a single
+   * value. Integers and numbers are hashed without boxing, strings once per dictionary entry.
+   *
+   * @param vector
+   *          the values to calculate the hash codes for, described by this value metadata
+   * @param hashes
+   *          receives the hash codes, at least {@link ColumnVector#size()} long
+   * @throws KettleValueException
+   */
+  public void hashCodes( ColumnVector vector, int[] hashes ) throws KettleValueException {
+    int size = vector.size();
+    if ( getType() == TYPE_INTEGER && vector instanceof LongColumnVector ) {
+      long[] values = ( (LongColumnVector) vector ).getValues();
+      for ( int i = 0; i < size; i++ ) {
+        hashes[i] = vector.isNull( i ) ? 16 : Long.hashCode( values[i] );
+      }
+    } else if ( getType() == TYPE_NUMBER && vector instanceof DoubleColumnVector ) {
+      double[] values = ( (DoubleColumnVector) vector ).getValues();
+      for ( int i = 0; i < size; i++ ) {
+        hashes[i] = vector.isNull( i ) ? 4 : Double.hashCode( values[i] );
+      }
+    } else if ( getType() == TYPE_STRING && vector instanceof StringColumnVector ) {
+      StringColumnVector strings = (StringColumnVector) vector;
+      int[] codes = strings.getCodes();
+      int[] dictionaryHashes = new int[strings.getDictionarySize()];
+      for ( int code = 0; code < dictionaryHashes.length; code++ ) {
+        dictionaryHashes[code] = hashCode( strings.getDictionaryValue( code ) );
+      }
+      int nullHash = hashCode( null );
+      for ( int i = 0; i < size; i++ ) {
+        hashes[i] = vector.isNull( i ) ? nullHash : dictionaryHashes[codes[i]];
+      }
+    } else {
+      for ( int i = 0; i < size; i++ ) {
+        hashes[i] = hashCode( vector.getObject( i ) );
+      }
+    }
+  }
+
+  /**
+   * Compares 2 values in a vector, the same as {@link #compare(Object, Object)} does.
+   *
+   * @param vector
+   *          the values, described by this value metadata
+   * @param index1
+   *          the index of the first value
+   * @param index2
+   *          the index of the second value
+   * @return 0 if the values are equal, -1 if the first value is smaller and +1 if it's larger.
+   * @throws KettleValueException
+   */
+  public int compare( ColumnVector vector, int index1, int index2 ) throws KettleValueException {
+    if ( vector instanceof StringColumnVector && !vector.isNull( index1 ) && !vector.isNull( index2 ) ) {
+      StringColumnVector strings = (StringColumnVector) vector;
+      if ( strings.getCode( index1 ) == strings.getCode( index2 ) ) {
+        return 0;
+      }
+    }
+    return compare( vector, index1, vector, index2 );
+  }
+
+  /**
+   * Compares the values of 2 vectors element by element, the same as {@link #compare(Object, Object)} does.
+   *
+   * @param vector1
+   *          the first values, described by this value metadata
+   * @param vector2
+   *          the second values, described by this value metadata
+   * @param result
+   *          receives the comparison results, at least {@link ColumnVector#size()} of vector1 long
+   * @throws KettleValueException
+   */
+  public void compare( ColumnVector vector1, ColumnVector vector2, int[] result ) throws KettleValueException {
+    int size = vector1.size();
+    for ( int i = 0; i < size; i++ ) {
+      result[i] = compare( vector1, i, vector2, i );
+    }
+  }
+
+  private int compare( ColumnVector vector1, int index1, ColumnVector vector2, int index2 )
+    throws KettleValueException {
+    int cmp;
+    if ( getType() == TYPE_INTEGER && vector1 instanceof LongColumnVector && vector2 instanceof LongColumnVector ) {
+      cmp = compareNulls( vector1.isNull( index1 ), vector2.isNull( index2 ) );
+      if ( cmp == Integer.MIN_VALUE ) {
+        cmp = Long.compare( ( (LongColumnVector) vector1 ).getLong( index1 ),
+            ( (LongColumnVector) vector2 ).getLong( index2 ) );
+      }
+    } else if ( getType() == TYPE_NUMBER && vector1 instanceof DoubleColumnVector
+        && vector2 instanceof DoubleColumnVector ) {
+      cmp = compareNulls( vector1.isNull( index1 ), vector2.isNull( index2 ) );
+      if ( cmp == Integer.MIN_VALUE ) {
+        cmp = Double.compare( ( (DoubleColumnVector) vector1 ).getDouble( index1 ),
+            ( (DoubleColumnVector) vector2 ).getDouble( index2 ) );
+      }
+    } else {
+      return compare( vector1.getObject( index1 ), vector2.getObject( index2 ) );
+    }
+    if ( isSortedDescending() ) {
+      return -cmp;
+    } else {
+      return cmp;
+    }
+  }
+
+  /**
+   * @return the ascending comparison result if one of the values is null, Integer.MIN_VALUE if neither is.
+   */
+  private static int compareNulls( boolean n1, boolean n2 ) {
+    if ( n1 ) {
+      return n2 ? 0 : -1;
+    }
+    return n2 ? 1 : Integer.MIN_VALUE;
+  }
+
+  /**
+   * Adds the values of 2 vectors element by element, the same as
+   * {@link ValueDataUtil#plus(ValueMetaInterface, Object, ValueMetaInterface, Object)} does.
+   *
+   * @param vector1
+   *          the first values, described by this value metadata
+   * @param vector2
+   *          the second values, described by this value metadata
+   * @param target
+   *          receives the results, it's resized to the size of vector1
+   * @throws KettleValueException
+   */
+  public void plus( ColumnVector vector1, ColumnVector vector2, ColumnVector target ) throws KettleValueException {
+    calculate( CALC_PLUS, vector1, vector2, target );
+  }
+
+  /**
+   * Subtracts the values of 2 vectors element by element, the same as
+   * {@link ValueDataUtil#minus(ValueMetaInterface, Object, ValueMetaInterface, Object)} does.
+   *
+   * @see #plus(ColumnVector, ColumnVector, ColumnVector)
+   */
+  public void minus( ColumnVector vector1, ColumnVector vector2, ColumnVector target ) throws KettleValueException {
+    calculate( CALC_MINUS, vector1, vector2, target );
+  }
+
+  /**
+   * Multiplies the values of 2 vectors element by element, the same as
+   * {@link ValueDataUtil#multiply(ValueMetaInterface, Object, ValueMetaInterface, Object)} does.
+   *
+   * @see #plus(ColumnVector, ColumnVector, ColumnVector)
+   */
+  public void multiply( ColumnVector vector1, ColumnVector vector2, ColumnVector target )
+    throws KettleValueException {
+    calculate( CALC_MULTIPLY, vector1, vector2, target );
+  }
+
+  private void calculate( int calcType, ColumnVector vector1, ColumnVector vector2, ColumnVector target )
+    throws KettleValueException {
+    int size = vector1.size();
+    target.setSize( size );
+    if ( getType() == TYPE_INTEGER && vector1 instanceof LongColumnVector && vector2 instanceof LongColumnVector
+        && target instanceof LongColumnVector ) {
+      long[] values1 = ( (LongColumnVector) vector1 ).getValues();
+      long[] values2 = ( (LongColumnVector) vector2 ).getValues();
+      LongColumnVector result = (LongColumnVector) target;
+      for ( int i = 0; i < size; i++ ) {
+        if ( vector1.isNull( i ) || vector2.isNull( i ) ) {
+          result.setNull( i );
+        } else if ( calcType == CALC_PLUS ) {
+          result.setLong( i, values1[i] + values2[i] );
+        } else if ( calcType == CALC_MINUS ) {
+          result.setLong( i, values1[i] - values2[i] );
+        } else {
+          result.setLong( i, values1[i] * values2[i] );
+        }
+      }
+    } else if ( getType() == TYPE_NUMBER && vector1 instanceof DoubleColumnVector
+        && vector2 instanceof DoubleColumnVector && target instanceof DoubleColumnVector ) {
+      double[] values1 = ( (DoubleColumnVector) vector1 ).getValues();
+      double[] values2 = ( (DoubleColumnVector) vector2 ).getValues();
+      DoubleColumnVector result = (DoubleColumnVector) target;
+      for ( int i = 0; i < size; i++ ) {
+        if ( vector1.isNull( i ) || vector2.isNull( i ) ) {
+          result.setNull( i );
+        } else if ( calcType == CALC_PLUS ) {
+          result.setDouble( i, values1[i] + values2[i] );
+        } else if ( calcType == CALC_MINUS ) {
+          result.setDouble( i, values1[i] - values2[i] );
+        } else {
+          result.setDouble( i, values1[i] * values2[i] );
+        }
+      }
+    } else {
+      for ( int i = 0; i < size; i++ ) {
+        Object data1 = vector1.getObject( i );
+        Object data2 = vector2.getObject( i );
+        Object value;
+        if ( calcType == CALC_PLUS ) {
+          value = ValueDataUtil.plus( this, data1, this, data2 );
+        } else if ( calcType == CALC_MINUS ) {
+          value = ValueDataUtil.minus( this, data1, this, data2 );
+        } else {
+          value = ValueDataUtil.multiply( this, data1, this, data2 );
+        }
+        target.setObject( i, value );
+      }
+    }
+  }
+
   /**
    * Create an old-style value for backward compatibility reasons
    *
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates virtual threads on JVMs that have them (Java 21 and later) and platform threads elsewhere. The virtual
+ * threads are created through reflection so that this class also loads on older JVMs.
+ */
+public class VirtualThreads {
+
+  private static final Method OF_VIRTUAL;
+  private static final Method NAME;
+  private static final Method UNSTARTED;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method unstarted = null;
+    try {
+      Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+      ofVirtual = Thread.class.getMethod( "ofVirtual" );
+      name = builderClass.getMethod( "name", String.class );
+      unstarted = builderClass.getMethod( "unstarted", Runnable.class );
+    } catch ( Exception e ) {
+      // No virtual threads on this JVM
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    UNSTARTED = unstarted;
+  }
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true if this JVM can create virtual threads
+   */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Create a thread that isn't started yet: a virtual thread if the JVM supports them, a platform thread otherwise.
+   *
+   * @param runnable
+   *          the code to run
+   * @param name
+   *          the name of the thread
+   * @return the unstarted thread
+   */
+  public static Thread newThread( Runnable runnable, String name ) {
+    if ( isSupported() ) {
+      try {
+        Object builder = NAME.invoke( OF_VIRTUAL.invoke( null ), name );
+        return (Thread) UNSTARTED.invoke( builder, runnable );
+      } catch ( Exception e ) {
+        // Fall back to a platform thread below
+      }
+    }
+    Thread thread = new Thread( runnable );
+    thread.setName( name );
+    return thread;
+  }
+}
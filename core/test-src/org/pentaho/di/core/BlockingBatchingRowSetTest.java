@@ -114,4 +114,29 @@ public class BlockingBatchingRowSetTest extends TestCase {
     assertNotNull( r );
     assertEquals( rows.get( 2 ), r );
   }
+
+  /**
+   * A partially filled buffer is handed over once the reader ran dry, rows can be read in one go.
+   */
+  public void testPartialBufferIsHandedOver() {
+    BlockingBatchingRowSet set = new BlockingBatchingRowSet( 10 );
+
+    RowMetaInterface rm = createRowMetaInterface();
+
+    set.putRow( rm, new Object[] { new Long( 0 ), } );
+    assertEquals( 0, set.size() );
+
+    // The reader finds nothing and asks for the partial buffer
+    //
+    assertNull( set.getRow() );
+
+    set.putRow( rm, new Object[] { new Long( 1 ), } );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    assertEquals( 2, set.getRows( rows, 10 ) );
+    assertEquals( new Long( 0 ), rows.get( 0 )[0] );
+    assertEquals( new Long( 1 ), rows.get( 1 )[0] );
+
+    set.setDone();
+    assertNull( set.getRowImmediate() );
+  }
 }
@@ -0,0 +1,216 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+public class LockFreeRowSetTest {
+  private RowMetaInterface rowMeta;
+
+  @Before
+  public void setup() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "ROWNR" ) );
+  }
+
+  @Test
+  public void testBasicCreation() {
+    RowSet set = new LockFreeRowSet( 10 );
+
+    assertFalse( set.isDone() );
+    assertEquals( 0, set.size() );
+    assertNull( set.getRowImmediate() );
+  }
+
+  @Test
+  public void testPutGetInOrder() {
+    RowSet set = new LockFreeRowSet( 3 );
+    Object[] r1 = new Object[] { 1L };
+    Object[] r2 = new Object[] { 2L };
+    Object[] r3 = new Object[] { 3L };
+    Object[] r4 = new Object[] { 4L };
+
+    assertTrue( set.putRow( rowMeta, r1 ) );
+    assertTrue( set.putRow( rowMeta, r2 ) );
+    assertTrue( set.putRow( rowMeta, r3 ) );
+    assertEquals( 3, set.size() );
+    assertSame( rowMeta, set.getRowMeta() );
+
+    // The capacity is 3, even though the ring buffer itself is larger
+    //
+    assertFalse( set.putRowWait( rowMeta, r4, 1, TimeUnit.MILLISECONDS ) );
+
+    assertSame( r1, set.getRow() );
+    assertTrue( set.putRow( rowMeta, r4 ) );
+    assertSame( r2, set.getRowImmediate() );
+    assertSame( r3, set.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertSame( r4, set.getRow() );
+    assertEquals( 0, set.size() );
+    assertNull( set.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testPutRowsGetRows() {
+    RowSet set = new LockFreeRowSet( 5 );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( long i = 0; i < 7; i++ ) {
+      rows.add( new Object[] { i } );
+    }
+
+    // Only 5 rows fit
+    //
+    assertEquals( 5, set.putRows( rowMeta, rows ) );
+    assertEquals( 5, set.size() );
+
+    List<Object[]> read = new ArrayList<Object[]>();
+    assertEquals( 3, set.getRows( read, 3 ) );
+    assertEquals( 2, set.putRows( rowMeta, rows.subList( 5, 7 ) ) );
+    assertEquals( 4, set.getRows( read, 10 ) );
+    assertEquals( 0, set.getRows( read, 10 ) );
+
+    assertEquals( rows.size(), read.size() );
+    for ( int i = 0; i < rows.size(); i++ ) {
+      assertSame( rows.get( i ), read.get( i ) );
+    }
+  }
+
+  @Test
+  public void testNullRowIsRefused() {
+    RowSet set = new LockFreeRowSet( 3 );
+    assertFalse( set.putRow( rowMeta, null ) );
+    assertEquals( 0, set.size() );
+  }
+
+  @Test
+  public void testNullRowInBatchIsRefused() {
+    RowSet set = new LockFreeRowSet( 5 );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    rows.add( new Object[] { 1L } );
+    rows.add( null );
+    rows.add( new Object[] { 3L } );
+
+    try {
+      set.putRows( rowMeta, rows );
+      fail( "A batch with a null row should be refused" );
+    } catch ( NullPointerException e ) {
+      // expected
+    }
+
+    // Nothing of the refused batch is published
+    //
+    assertEquals( 0, set.size() );
+    assertNull( set.getRowImmediate() );
+
+    assertEquals( 1, set.putRows( rowMeta, rows.subList( 2, 3 ) ) );
+    assertSame( rows.get( 2 ), set.getRow() );
+  }
+
+  @Test
+  public void testGetRowReturnsImmediatelyWhenDone() {
+    RowSet set = new LockFreeRowSet( 3 );
+    set.setDone();
+
+    long start = System.currentTimeMillis();
+    assertNull( set.getRowWait( 10, TimeUnit.SECONDS ) );
+    assertTrue( System.currentTimeMillis() - start < 5000 );
+  }
+
+  @Test
+  public void testClear() {
+    RowSet set = new LockFreeRowSet( 3 );
+    set.putRow( rowMeta, new Object[] { 1L } );
+    set.setDone();
+
+    set.clear();
+    assertEquals( 0, set.size() );
+    assertFalse( set.isDone() );
+    assertNull( set.getRowImmediate() );
+  }
+
+  @Test
+  public void testProducerConsumerThreads() throws Exception {
+    final RowSet set = new LockFreeRowSet( 7 );
+    final int nrRows = 100000;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    Thread producer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        for ( long i = 0; i < nrRows; i++ ) {
+          Object[] row = new Object[] { i };
+          while ( !set.putRow( rowMeta, row ) ) {
+            // retry until there is room, just like BaseStep does
+          }
+        }
+        set.setDone();
+      }
+    } );
+
+    Thread consumer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          long expected = 0;
+          Object[] row = set.getRow();
+          while ( row != null || !set.isDone() ) {
+            if ( row != null ) {
+              assertEquals( expected++, row[0] );
+            }
+            row = set.getRow();
+          }
+          row = set.getRow();
+          while ( row != null ) {
+            assertEquals( expected++, row[0] );
+            row = set.getRow();
+          }
+          assertEquals( nrRows, expected );
+        } catch ( Throwable t ) {
+          failure.set( t );
+        }
+      }
+    } );
+
+    producer.start();
+    consumer.start();
+    producer.join( 60000 );
+    consumer.join( 60000 );
+
+    assertNull( failure.get() );
+    assertEquals( 0, set.size() );
+  }
+}
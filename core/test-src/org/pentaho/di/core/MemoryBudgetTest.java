@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+  @Test
+  public void testUnlimitedBudget() {
+    MemoryBudget budget = new MemoryBudget( 0L, null );
+    assertFalse( budget.isLimited() );
+    assertTrue( budget.reserve( Long.MAX_VALUE / 2 ) );
+    assertEquals( Long.MAX_VALUE, budget.getAvailable() );
+  }
+
+  @Test
+  public void testReserveAndRelease() {
+    MemoryBudget budget = new MemoryBudget( 100L, null );
+    assertTrue( budget.isLimited() );
+    assertTrue( budget.reserve( 60L ) );
+    assertFalse( budget.reserve( 50L ) );
+    assertEquals( 60L, budget.getReserved() );
+    assertEquals( 40L, budget.getAvailable() );
+
+    assertTrue( budget.reserve( 40L ) );
+    budget.release( 70L );
+    assertEquals( 30L, budget.getReserved() );
+    assertEquals( 100L, budget.getPeakReserved() );
+  }
+
+  @Test
+  public void testParentBudgetIsShared() {
+    MemoryBudget jvm = new MemoryBudget( 100L, null );
+    MemoryBudget trans1 = new MemoryBudget( 0L, jvm );
+    MemoryBudget trans2 = new MemoryBudget( 80L, jvm );
+
+    assertTrue( trans1.isLimited() );
+    assertTrue( trans1.reserve( 50L ) );
+    assertEquals( 50L, trans2.getAvailable() );
+
+    // The transformation limit allows this, the JVM limit doesn't
+    assertFalse( trans2.reserve( 60L ) );
+    assertEquals( 0L, trans2.getReserved() );
+    assertEquals( 50L, jvm.getReserved() );
+
+    trans1.release( 50L );
+    assertTrue( trans2.reserve( 60L ) );
+    assertEquals( 60L, jvm.getReserved() );
+  }
+
+  @Test
+  public void testFromMegaBytes() {
+    assertEquals( 2L * 1024 * 1024, MemoryBudget.fromMegaBytes( 2L, null ).getLimit() );
+    assertFalse( MemoryBudget.fromMegaBytes( -1L, null ).isLimited() );
+  }
+}
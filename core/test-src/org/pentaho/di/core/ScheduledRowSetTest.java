@@ -0,0 +1,224 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+public class ScheduledRowSetTest {
+  private RowMetaInterface rowMeta;
+
+  @Before
+  public void setup() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "ROWNR" ) );
+  }
+
+  @Test
+  public void testPutGetInOrder() {
+    ScheduledRowSet set = new ScheduledRowSet( 2 );
+    Object[] r1 = new Object[] { 1L };
+    Object[] r2 = new Object[] { 2L };
+    Object[] r3 = new Object[] { 3L };
+
+    assertTrue( set.putRow( rowMeta, r1 ) );
+    assertFalse( set.isFull() );
+    assertTrue( set.putRow( rowMeta, r2 ) );
+    assertTrue( set.isFull() );
+
+    // Full only means the writer shouldn't be scheduled, the row is still accepted
+    //
+    assertTrue( set.putRow( rowMeta, r3 ) );
+    assertEquals( 3, set.size() );
+    assertSame( rowMeta, set.getRowMeta() );
+
+    assertSame( r1, set.getRow() );
+    assertSame( r2, set.getRowImmediate() );
+    assertFalse( set.isFull() );
+    assertSame( r3, set.getRowWait( 1, TimeUnit.MILLISECONDS ) );
+    assertNull( set.getRowImmediate() );
+    assertEquals( 0, set.size() );
+  }
+
+  @Test
+  public void testWriterIsStoppedAtTwiceTheSize() {
+    ScheduledRowSet set = new ScheduledRowSet( 2 );
+    for ( long i = 0; i < 4; i++ ) {
+      assertTrue( set.putRowWait( rowMeta, new Object[] { i }, 1, TimeUnit.MILLISECONDS ) );
+    }
+    assertFalse( set.putRowWait( rowMeta, new Object[] { 4L }, 1, TimeUnit.MILLISECONDS ) );
+    assertEquals( 4, set.size() );
+
+    set.getRowImmediate();
+    assertTrue( set.putRowWait( rowMeta, new Object[] { 4L }, 1, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testPutRowsGetRows() {
+    ScheduledRowSet set = new ScheduledRowSet( 3 );
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( long i = 0; i < 5; i++ ) {
+      rows.add( new Object[] { i } );
+    }
+
+    // The whole batch goes in as long as the row set isn't at twice its size
+    //
+    assertEquals( 5, set.putRows( rowMeta, rows ) );
+    assertEquals( 5, set.size() );
+
+    List<Object[]> read = new ArrayList<Object[]>();
+    assertEquals( 2, set.getRows( read, 2 ) );
+    assertEquals( 3, set.getRows( read, 10 ) );
+    assertEquals( 0, set.getRows( read, 10 ) );
+
+    for ( int i = 0; i < rows.size(); i++ ) {
+      assertSame( rows.get( i ), read.get( i ) );
+    }
+  }
+
+  @Test
+  public void testListeners() {
+    ScheduledRowSet set = new ScheduledRowSet( 2 );
+    final AtomicInteger readerCalls = new AtomicInteger();
+    final AtomicInteger writerCalls = new AtomicInteger();
+    set.setReaderListener( new Runnable() {
+      @Override
+      public void run() {
+        readerCalls.incrementAndGet();
+      }
+    } );
+    set.setWriterListener( new Runnable() {
+      @Override
+      public void run() {
+        writerCalls.incrementAndGet();
+      }
+    } );
+
+    set.putRow( rowMeta, new Object[] { 1L } );
+    set.putRow( rowMeta, new Object[] { 2L } );
+    set.putRow( rowMeta, new Object[] { 3L } );
+    assertEquals( 3, readerCalls.get() );
+
+    // The writer only hears about it when the row set is no longer full
+    //
+    set.getRow();
+    assertEquals( 0, writerCalls.get() );
+    set.getRow();
+    assertEquals( 1, writerCalls.get() );
+    set.getRow();
+    assertEquals( 1, writerCalls.get() );
+
+    set.setDone();
+    assertEquals( 4, readerCalls.get() );
+  }
+
+  @Test
+  public void testGetRowReturnsImmediatelyWhenDone() {
+    ScheduledRowSet set = new ScheduledRowSet( 3 );
+    set.setDone();
+
+    long start = System.currentTimeMillis();
+    assertNull( set.getRowWait( 10, TimeUnit.SECONDS ) );
+    assertTrue( System.currentTimeMillis() - start < 5000 );
+  }
+
+  @Test
+  public void testClear() {
+    ScheduledRowSet set = new ScheduledRowSet( 3 );
+    set.putRow( rowMeta, new Object[] { 1L } );
+    set.setDone();
+
+    set.clear();
+    assertEquals( 0, set.size() );
+    assertFalse( set.isDone() );
+    assertNull( set.getRowImmediate() );
+  }
+
+  @Test
+  public void testWaitingReaderAndWriterOnSingleThreadPool() throws Exception {
+    // With one thread in the pool the writer and the reader can only both make progress if the pool starts another
+    // thread while one of them waits
+    //
+    final ScheduledRowSet set = new ScheduledRowSet( 5 );
+    final int nrRows = 2000;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    ForkJoinPool pool = new ForkJoinPool( 1 );
+
+    pool.execute( new Runnable() {
+      @Override
+      public void run() {
+        for ( long i = 0; i < nrRows; i++ ) {
+          Object[] row = new Object[] { i };
+          while ( !set.putRow( rowMeta, row ) ) {
+            // retry until there is room, just like BaseStep does
+          }
+        }
+        set.setDone();
+      }
+    } );
+
+    pool.execute( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          long expected = 0;
+          Object[] row = set.getRow();
+          while ( row != null || !set.isDone() ) {
+            if ( row != null ) {
+              assertEquals( expected++, row[0] );
+            }
+            row = set.getRow();
+          }
+          row = set.getRow();
+          while ( row != null ) {
+            assertEquals( expected++, row[0] );
+            row = set.getRow();
+          }
+          assertEquals( nrRows, expected );
+        } catch ( Throwable t ) {
+          failure.set( t );
+        }
+      }
+    } );
+
+    pool.shutdown();
+    assertTrue( pool.awaitTermination( 60, TimeUnit.SECONDS ) );
+    assertNull( failure.get() );
+    assertEquals( 0, set.size() );
+  }
+}
@@ -0,0 +1,104 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    LookupCache<String, Integer> cache = new LruCache<String, Integer>( 3 );
+    cache.put( "a", 1 );
+    cache.put( "b", 2 );
+    cache.put( "c", 3 );
+    assertEquals( Integer.valueOf( 1 ), cache.get( "a" ) );
+
+    cache.put( "d", 4 );
+    assertEquals( 3, cache.size() );
+    assertNull( cache.get( "b" ) );
+    assertEquals( Integer.valueOf( 1 ), cache.get( "a" ) );
+    assertEquals( Integer.valueOf( 3 ), cache.get( "c" ) );
+    assertEquals( Integer.valueOf( 4 ), cache.get( "d" ) );
+  }
+
+  @Test
+  public void testStatistics() {
+    LookupCache<String, Integer> cache = new LruCache<String, Integer>( 1 );
+    cache.put( "a", 1 );
+    cache.get( "a" );
+    cache.get( "a" );
+    cache.get( "b" );
+    cache.put( "b", 2 );
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals( 2, statistics.getHits() );
+    assertEquals( 1, statistics.getMisses() );
+    assertEquals( 1, statistics.getEvictions() );
+    assertEquals( 1, statistics.getEntries() );
+    assertEquals( AbstractLookupCache.ENTRY_OVERHEAD, statistics.getWeight() );
+    assertEquals( 2.0 / 3.0, statistics.getHitRate(), 0.0001 );
+  }
+
+  @Test
+  public void testWeightBound() {
+    Weigher<String, String> weigher = new Weigher<String, String>() {
+      @Override
+      public long weigh( String key, String value ) {
+        return value.length();
+      }
+    };
+    long entryWeight = AbstractLookupCache.ENTRY_OVERHEAD + 100;
+    LookupCache<String, String> cache = new LruCache<String, String>( 0, 5 * entryWeight, weigher );
+    for ( int i = 0; i < 100; i++ ) {
+      cache.put( "key" + i, String.format( "%100d", i ) );
+      assertTrue( cache.getWeight() <= 5 * entryWeight );
+    }
+    assertEquals( 5, cache.size() );
+    assertEquals( 95, cache.getStatistics().getEvictions() );
+
+    // Replacing a value changes the weight
+    cache.put( "key99", "" );
+    assertEquals( 4 * entryWeight + AbstractLookupCache.ENTRY_OVERHEAD, cache.getWeight() );
+
+    assertEquals( "", cache.remove( "key99" ) );
+    assertEquals( 4 * entryWeight, cache.getWeight() );
+    cache.clear();
+    assertEquals( 0, cache.size() );
+    assertEquals( 0L, cache.getWeight() );
+  }
+
+  @Test
+  public void testUnlimited() {
+    LookupCache<Integer, Integer> cache = new LruCache<Integer, Integer>( 0 );
+    for ( int i = 0; i < 10000; i++ ) {
+      cache.put( i, i );
+    }
+    assertEquals( 10000, cache.size() );
+    assertEquals( 0, cache.getStatistics().getEvictions() );
+  }
+}
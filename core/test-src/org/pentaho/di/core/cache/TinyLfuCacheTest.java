@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TinyLfuCacheTest {
+
+  @Test
+  public void testKeepsFrequentKeysDuringScan() {
+    LookupCache<Integer, Integer> cache = new TinyLfuCache<Integer, Integer>( 100 );
+
+    // A few popular keys...
+    for ( int round = 0; round < 5; round++ ) {
+      for ( int i = 0; i < 50; i++ ) {
+        lookup( cache, i );
+      }
+    }
+    // ... followed by many keys that are used only once, less than the sketch ages its counters
+    for ( int i = 1000; i < 1900; i++ ) {
+      lookup( cache, i );
+    }
+
+    assertEquals( 100, cache.size() );
+    for ( int i = 0; i < 50; i++ ) {
+      assertNotNull( "popular key " + i + " was evicted", cache.get( i ) );
+    }
+  }
+
+  @Test
+  public void testScanEvictsPopularKeysWithLru() {
+    // The same access pattern flushes the LRU cache, this is why the TinyLFU policy exists
+    LookupCache<Integer, Integer> cache = new LruCache<Integer, Integer>( 100 );
+    for ( int round = 0; round < 5; round++ ) {
+      for ( int i = 0; i < 50; i++ ) {
+        lookup( cache, i );
+      }
+    }
+    for ( int i = 1000; i < 1900; i++ ) {
+      lookup( cache, i );
+    }
+    long before = cache.getStatistics().getHits();
+    for ( int i = 0; i < 50; i++ ) {
+      cache.get( i );
+    }
+    assertEquals( before, cache.getStatistics().getHits() );
+  }
+
+  @Test
+  public void testStatisticsAndBounds() {
+    TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<Integer, Integer>( 10 );
+    for ( int i = 0; i < 1000; i++ ) {
+      lookup( cache, i % 37 );
+      assertTrue( cache.size() <= 10 );
+    }
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals( 1000, statistics.getHits() + statistics.getMisses() );
+    assertEquals( statistics.getMisses() - 10, statistics.getEvictions() );
+    assertEquals( 10, statistics.getEntries() );
+    assertEquals( EvictionPolicy.TINY_LFU, cache.getEvictionPolicy() );
+  }
+
+  @Test
+  public void testWeightBound() {
+    Weigher<Integer, byte[]> weigher = new Weigher<Integer, byte[]>() {
+      @Override
+      public long weigh( Integer key, byte[] value ) {
+        return value.length;
+      }
+    };
+    long maxWeight = 100 * ( AbstractLookupCache.ENTRY_OVERHEAD + 1000 );
+    LookupCache<Integer, byte[]> cache = new TinyLfuCache<Integer, byte[]>( 0, maxWeight, weigher );
+    for ( int i = 0; i < 5000; i++ ) {
+      if ( cache.get( i % 300 ) == null ) {
+        cache.put( i % 300, new byte[1000] );
+      }
+      assertTrue( cache.getWeight() <= maxWeight );
+    }
+    assertEquals( 100, cache.size() );
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch();
+    sketch.ensureCapacity( 512 );
+    for ( int i = 0; i < 20; i++ ) {
+      sketch.increment( "popular" );
+    }
+    sketch.increment( "rare" );
+    assertEquals( 15, sketch.frequency( "popular" ) );
+    assertTrue( sketch.frequency( "rare" ) >= 1 );
+    assertTrue( sketch.frequency( "rare" ) < 15 );
+
+    // Aging halves the counters
+    for ( int i = 0; i < 10 * 512; i++ ) {
+      sketch.increment( i );
+    }
+    assertTrue( sketch.frequency( "popular" ) <= 7 );
+  }
+
+  private static void lookup( LookupCache<Integer, Integer> cache, int key ) {
+    if ( cache.get( key ) == null ) {
+      cache.put( key, key );
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteArraySlabHashIndexTest {
+
+  @Test
+  public void testGetAndPut() {
+    ByteArraySlabHashIndex obj = new ByteArraySlabHashIndex( false );
+    assertTrue( obj.isEmpty() );
+    assertNull( obj.get( new byte[] { 10 } ) );
+
+    obj.put( new byte[] { 10 }, new byte[] { 53, 12 } );
+    assertArrayEquals( new byte[] { 53, 12 }, obj.get( new byte[] { 10 } ) );
+    assertNull( obj.get( new byte[] { 10, 0 } ) );
+
+    obj.put( new byte[] { 10 }, new byte[] { 1 } );
+    assertArrayEquals( new byte[] { 1 }, obj.get( new byte[] { 10 } ) );
+    assertEquals( 1, obj.size() );
+
+    obj.put( new byte[0], new byte[0] );
+    assertArrayEquals( new byte[0], obj.get( new byte[0] ) );
+    assertEquals( 2, obj.size() );
+  }
+
+  @Test
+  public void testGrowAcrossSlabs() {
+    testManyKeys( false );
+    testManyKeys( true );
+  }
+
+  private void testManyKeys( boolean offHeap ) {
+    // Small index and slabs so both have to grow
+    ByteArraySlabHashIndex obj = new ByteArraySlabHashIndex( 4, offHeap, 256 );
+    int nrKeys = 10000;
+    for ( int i = 0; i < nrKeys; i++ ) {
+      obj.put( key( i ), value( i ) );
+    }
+    assertEquals( nrKeys, obj.size() );
+    for ( int i = 0; i < nrKeys; i++ ) {
+      assertArrayEquals( value( i ), obj.get( key( i ) ) );
+    }
+    assertNull( obj.get( key( nrKeys ) ) );
+    assertTrue( obj.getMemoryUsage() > nrKeys * 8L );
+  }
+
+  @Test
+  public void testEntryLargerThanSlab() {
+    ByteArraySlabHashIndex obj = new ByteArraySlabHashIndex( 16, false, 64 );
+    byte[] large = new byte[1000];
+    large[999] = 7;
+    obj.put( key( 1 ), large );
+    obj.put( key( 2 ), value( 2 ) );
+    assertArrayEquals( large, obj.get( key( 1 ) ) );
+    assertArrayEquals( value( 2 ), obj.get( key( 2 ) ) );
+  }
+
+  @Test
+  public void testClear() {
+    ByteArraySlabHashIndex obj = new ByteArraySlabHashIndex( true );
+    obj.put( key( 1 ), value( 1 ) );
+    obj.clear();
+    assertEquals( 0, obj.size() );
+    assertNull( obj.get( key( 1 ) ) );
+
+    obj.put( key( 1 ), value( 2 ) );
+    assertArrayEquals( value( 2 ), obj.get( key( 1 ) ) );
+  }
+
+  private static byte[] key( int i ) {
+    return ByteBuffer.allocate( 4 ).putInt( i ).array();
+  }
+
+  private static byte[] value( int i ) {
+    return ( "value-" + i ).getBytes();
+  }
+}
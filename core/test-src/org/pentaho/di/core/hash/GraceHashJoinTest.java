@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.variables.Variables;
+
+public class GraceHashJoinTest {
+
+  private static final int NR_BUILD_ROWS = 5000;
+  private static final int NR_PROBE_ROWS = 8000;
+
+  @Test
+  public void testJoinInMemory() throws Exception {
+    testJoin( new MemoryBudget( 0L, null ), false, false );
+  }
+
+  @Test
+  public void testJoinWithSpilling() throws Exception {
+    testJoin( new MemoryBudget( 50000L, null ), false, true );
+  }
+
+  @Test
+  public void testUniqueKeysWithSpilling() throws Exception {
+    testJoin( new MemoryBudget( 50000L, null ), true, true );
+  }
+
+  @Test
+  public void testCreateMemoryBudget() {
+    MemoryBudget transBudget = new MemoryBudget( 0L, null );
+    assertEquals( 2L * 1024 * 1024, GraceHashJoin.createMemoryBudget( 2, null ).getLimit() );
+    assertSame( transBudget, GraceHashJoin.createMemoryBudget( 2, transBudget ).getParent() );
+    assertSame( transBudget, GraceHashJoin.createMemoryBudget( 0, transBudget ) );
+    assertFalse( GraceHashJoin.createMemoryBudget( 0, null ).isLimited() );
+  }
+
+  private void testJoin( MemoryBudget memoryBudget, boolean uniqueKeys, boolean expectSpilling ) throws Exception {
+    RowMetaInterface buildMeta = createRowMeta( "key", "value" );
+    RowMetaInterface probeMeta = createRowMeta( "id", "key" );
+
+    GraceHashJoin join =
+      new GraceHashJoin( buildMeta, new int[] { 0 }, memoryBudget, new Variables(), System
+        .getProperty( "java.io.tmpdir" ), "hashjoin" );
+    join.setUniqueKeys( uniqueKeys );
+    join.setReturningUnmatchedBuildRows( true );
+
+    // The expected result: all values per key
+    Random random = new Random( 7 );
+    Map<Long, List<Long>> values = new HashMap<Long, List<Long>>();
+    for ( long i = 0; i < NR_BUILD_ROWS; i++ ) {
+      Long key = (long) random.nextInt( NR_BUILD_ROWS / 2 );
+      join.addBuildRow( new Object[] { key, i } );
+      List<Long> keyValues = values.get( key );
+      if ( keyValues == null ) {
+        keyValues = new ArrayList<Long>();
+        values.put( key, keyValues );
+      } else if ( uniqueKeys ) {
+        keyValues.clear();
+      }
+      keyValues.add( i );
+    }
+    assertEquals( expectSpilling, join.getNrSpilledPartitions() > 0 );
+
+    final Map<Long, List<Long>> joined = new HashMap<Long, List<Long>>();
+    final List<Object[]> unmatchedProbeRows = new ArrayList<Object[]>();
+    final List<Object[]> unmatchedBuildRows = new ArrayList<Object[]>();
+    GraceHashJoin.JoinListener listener = new GraceHashJoin.JoinListener() {
+      @Override
+      public void rowsJoined( Object[] probeRow, Object[] buildRow ) throws KettleException {
+        assertEquals( probeRow[1], buildRow[0] );
+        List<Long> keyValues = joined.get( probeRow[0] );
+        if ( keyValues == null ) {
+          keyValues = new ArrayList<Long>();
+          joined.put( (Long) probeRow[0], keyValues );
+        }
+        keyValues.add( (Long) buildRow[1] );
+      }
+
+      @Override
+      public void probeRowUnmatched( Object[] probeRow ) throws KettleException {
+        unmatchedProbeRows.add( probeRow );
+      }
+
+      @Override
+      public void buildRowUnmatched( Object[] buildRow ) throws KettleException {
+        unmatchedBuildRows.add( buildRow );
+      }
+    };
+
+    join.startProbe( probeMeta, new int[] { 1 } );
+    List<Long> probeKeys = new ArrayList<Long>();
+    for ( long i = 0; i < NR_PROBE_ROWS; i++ ) {
+      Long key = (long) random.nextInt( NR_BUILD_ROWS );
+      probeKeys.add( key );
+      join.probe( new Object[] { i, key }, listener );
+    }
+    join.finishProbe( listener );
+
+    int nrUnmatched = 0;
+    for ( int i = 0; i < NR_PROBE_ROWS; i++ ) {
+      List<Long> expected = values.get( probeKeys.get( i ) );
+      if ( expected == null ) {
+        nrUnmatched++;
+      } else {
+        List<Long> actual = joined.get( (long) i );
+        assertEquals( expected.size(), actual.size() );
+        assertTrue( actual.containsAll( expected ) );
+      }
+    }
+    assertEquals( nrUnmatched, unmatchedProbeRows.size() );
+
+    for ( Object[] buildRow : unmatchedBuildRows ) {
+      assertTrue( !probeKeys.contains( buildRow[0] ) );
+    }
+    assertEquals( 0L, memoryBudget.getReserved() );
+  }
+
+  private static RowMetaInterface createRowMeta( String... names ) {
+    RowMetaInterface rowMeta = new RowMeta();
+    for ( String name : names ) {
+      rowMeta.addValueMeta( new ValueMetaInteger( name ) );
+    }
+    return rowMeta;
+  }
+}
@@ -26,7 +26,10 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.pentaho.di.core.Const;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -143,4 +146,131 @@ public class LoggingBufferTest {
       Assert.fail( "This should never be reached, as the LogBuffer is empty" );
     }
   }
+
+  @Test
+  public void testUnlimitedBufferGrows() {
+    final LoggingBuffer buff = new LoggingBuffer( 0 );
+    for ( int i = 1; i <= 5000; i++ ) {
+      buff.addLogggingEvent( new KettleLoggingEvent( "Test #" + i, Long.valueOf( i ), LogLevel.BASIC ) );
+    }
+    Assert.assertEquals( 5000, buff.getNrLines() );
+    Assert.assertEquals( 5000, buff.getLastBufferLineNr() );
+
+    Iterator<BufferLine> it = buff.getBufferIterator();
+    Assert.assertEquals( "Test #1", it.next().getEvent().getMessage() );
+
+    buff.removeBufferLines( buff.getBufferLinesBefore( 1001L ) );
+    Assert.assertEquals( 4000, buff.getNrLines() );
+    Assert.assertEquals( "Test #1001", buff.getBufferIterator().next().getEvent().getMessage() );
+  }
+
+  @Test
+  public void testShrinkKeepsNewestLines() {
+    final LoggingBuffer buff = new LoggingBuffer( 100 );
+    for ( int i = 1; i <= 100; i++ ) {
+      buff.addLogggingEvent( new KettleLoggingEvent( "Test #" + i, Long.valueOf( i ), LogLevel.BASIC ) );
+    }
+    buff.setMaxNrLines( 10 );
+    Assert.assertEquals( 10, buff.getNrLines() );
+    Assert.assertEquals( "Test #91", buff.getBufferIterator().next().getEvent().getMessage() );
+    Assert.assertEquals( 100, buff.getLastBufferLineNr() );
+  }
+
+  @Test
+  public void testConcurrentAppendKeepsAllLines() throws Exception {
+    final int threadCount = 4;
+    final int eventCount = 2500;
+    final LoggingBuffer buff = new LoggingBuffer( 0 );
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( int t = 0; t < threadCount; t++ ) {
+      Thread thread = new Thread( new Runnable() {
+        @Override public void run() {
+          for ( int i = 0; i < eventCount; i++ ) {
+            buff.addLogggingEvent( new KettleLoggingEvent( "Test", System.currentTimeMillis(), LogLevel.BASIC ) );
+          }
+        }
+      } );
+      threads.add( thread );
+      thread.start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+
+    Assert.assertEquals( threadCount * eventCount, buff.getNrLines() );
+    int nr = 0;
+    for ( Iterator<BufferLine> it = buff.getBufferIterator(); it.hasNext(); ) {
+      Assert.assertEquals( ++nr, it.next().getNr() );
+    }
+    Assert.assertEquals( threadCount * eventCount, nr );
+  }
+
+  @Test
+  public void testAsyncListenersReceiveAllEventsInOrder() {
+    final LoggingBuffer buff = new LoggingBuffer( 10, true );
+    final List<Object> messages = Collections.synchronizedList( new ArrayList<Object>() );
+    KettleLoggingEventListener listener = new KettleLoggingEventListener() {
+      @Override public void eventAdded( KettleLoggingEvent event ) {
+        messages.add( event.getMessage() );
+      }
+    };
+    buff.addLoggingEventListener( listener );
+
+    for ( int i = 1; i <= 1000; i++ ) {
+      buff.addLogggingEvent( new KettleLoggingEvent( "Test #" + i, Long.valueOf( i ), LogLevel.BASIC ) );
+    }
+    buff.flush();
+
+    Assert.assertEquals( 1000, messages.size() );
+    for ( int i = 1; i <= 1000; i++ ) {
+      Assert.assertEquals( "Test #" + i, messages.get( i - 1 ) );
+    }
+
+    buff.addLogggingEvent( new KettleLoggingEvent( "Last", 1001L, LogLevel.BASIC ) );
+    buff.removeLoggingEventListener( listener );
+    Assert.assertEquals( "Last", messages.get( 1000 ) );
+  }
+
+  @Test
+  public void testSyncListenersAreCalledDirectly() {
+    final LoggingBuffer buff = new LoggingBuffer( 10, false );
+    final List<Object> messages = new ArrayList<Object>();
+    buff.addLoggingEventListener( new KettleLoggingEventListener() {
+      @Override public void eventAdded( KettleLoggingEvent event ) {
+        messages.add( event.getMessage() );
+      }
+    } );
+    buff.addLogggingEvent( new KettleLoggingEvent( "Test", 1L, LogLevel.BASIC ) );
+    Assert.assertEquals( 1, messages.size() );
+  }
+
+  @Test
+  public void testSlowListenerDoesNotBlockLogging() throws Exception {
+    final LoggingBuffer buff = new LoggingBuffer( 0, true, 10 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final List<Object> messages = Collections.synchronizedList( new ArrayList<Object>() );
+    buff.addLoggingEventListener( new KettleLoggingEventListener() {
+      @Override public void eventAdded( KettleLoggingEvent event ) {
+        try {
+          release.await();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+        messages.add( event.getMessage() );
+      }
+    } );
+
+    for ( int i = 1; i <= 100; i++ ) {
+      buff.addLogggingEvent( new KettleLoggingEvent( "Test #" + i, Long.valueOf( i ), LogLevel.BASIC ) );
+    }
+    // All lines are in the buffer, at most the queue and the event being dispatched reach the listener
+    Assert.assertEquals( 100, buff.getNrLines() );
+    Assert.assertTrue( buff.getDroppedEvents() >= 89 );
+
+    release.countDown();
+    buff.flush();
+    Assert.assertEquals( 100 - buff.getDroppedEvents(), messages.size() );
+    Assert.assertEquals( "Test #1", messages.get( 0 ) );
+  }
 }
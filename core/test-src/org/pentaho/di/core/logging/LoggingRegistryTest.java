@@ -23,8 +23,14 @@
 package org.pentaho.di.core.logging;
 
 import org.junit.Test;
+import org.pentaho.di.core.Const;
+
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class LoggingRegistryTest {
   public static final String LOG_CHANEL_ID_PARENT = "parent-chanel-id";
@@ -48,4 +54,67 @@ public class LoggingRegistryTest {
     assertEquals( logChanelId, LOG_CHANEL_ID_CHILD );
   }
 
+  @Test
+  public void childrenAreIndexedAndRemovedWithTheirParent() {
+    LoggingRegistry loggingRegistry = LoggingRegistry.getInstance();
+    loggingRegistry.getMap().clear();
+
+    String parentId =
+      loggingRegistry.registerLoggingSource( new SimpleLoggingObject( "trans", LoggingObjectType.TRANS, null ) );
+    LoggingObjectInterface parent = loggingRegistry.getLoggingObject( parentId );
+    String childId =
+      loggingRegistry.registerLoggingSource( new SimpleLoggingObject( "step", LoggingObjectType.STEP, parent ) );
+
+    List<String> children = loggingRegistry.getLogChannelChildren( parentId );
+    assertEquals( 2, children.size() );
+    assertTrue( children.contains( childId ) );
+
+    // Registering the same source again gives back the same channel
+    assertEquals( childId,
+      loggingRegistry.registerLoggingSource( new SimpleLoggingObject( "step", LoggingObjectType.STEP, parent ) ) );
+
+    loggingRegistry.removeIncludingChildren( parentId );
+    assertEquals( 0, loggingRegistry.size() );
+    assertTrue( loggingRegistry.dumpChildren().isEmpty() );
+  }
+
+  @Test
+  public void referencedHierarchiesAreEvictedLast() {
+    LoggingRegistry loggingRegistry = LoggingRegistry.getInstance();
+    loggingRegistry.getMap().clear();
+    String oldMaxSize = System.getProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE );
+    System.setProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE, "10" );
+    try {
+      String runningId =
+        loggingRegistry.registerLoggingSource( new SimpleLoggingObject( "running", LoggingObjectType.JOB, null ) );
+      String runningChildId = loggingRegistry.registerLoggingSource(
+        new SimpleLoggingObject( "entry", LoggingObjectType.JOBENTRY, loggingRegistry.getLoggingObject( runningId ) ) );
+      loggingRegistry.retainLoggingSource( runningId );
+
+      for ( int i = 0; i < 25; i++ ) {
+        loggingRegistry.registerLoggingSource(
+          new SimpleLoggingObject( "finished " + i, LoggingObjectType.TRANS, null ) );
+      }
+
+      assertTrue( loggingRegistry.size() <= 10 );
+      assertNotNull( loggingRegistry.getLoggingObject( runningId ) );
+      assertNotNull( loggingRegistry.getLoggingObject( runningChildId ) );
+
+      loggingRegistry.releaseLoggingSource( runningId );
+      assertEquals( 0, loggingRegistry.getReferenceCount( runningId ) );
+      for ( int i = 25; i < 50; i++ ) {
+        loggingRegistry.registerLoggingSource(
+          new SimpleLoggingObject( "finished " + i, LoggingObjectType.TRANS, null ) );
+      }
+      assertFalse( loggingRegistry.getMap().containsKey( runningId ) );
+      assertFalse( loggingRegistry.getMap().containsKey( runningChildId ) );
+    } finally {
+      if ( oldMaxSize == null ) {
+        System.clearProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE );
+      } else {
+        System.setProperty( Const.KETTLE_MAX_LOGGING_REGISTRY_SIZE, oldMaxSize );
+      }
+      loggingRegistry.getMap().clear();
+    }
+  }
 }
@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.row;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class FrozenRowMetaTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleClientEnvironment.init();
+  }
+
+  private static RowMeta createRowMeta() {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "string" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "integer" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    return rowMeta;
+  }
+
+  @Test
+  public void testLookups() throws Exception {
+    RowMeta rowMeta = createRowMeta();
+    RowMetaInterface frozen = FrozenRowMeta.freeze( rowMeta );
+
+    assertTrue( frozen instanceof FrozenRowMeta );
+    assertEquals( 3, frozen.size() );
+    assertEquals( 1, frozen.indexOfValue( "INTEGER" ) );
+    assertEquals( -1, frozen.indexOfValue( "nope" ) );
+    assertEquals( -1, frozen.indexOfValue( null ) );
+    assertSame( rowMeta.getValueMeta( 2 ), frozen.searchValueMeta( "date" ) );
+    assertNull( frozen.getValueMeta( 3 ) );
+    assertArrayEquals( rowMeta.getFieldNames(), frozen.getFieldNames() );
+    assertSame( frozen, FrozenRowMeta.freeze( frozen ) );
+  }
+
+  @Test
+  public void testOtherImplementationsAreNotFrozen() {
+    RowMetaInterface rowMeta = mock( RowMetaInterface.class );
+    assertSame( rowMeta, FrozenRowMeta.freeze( rowMeta ) );
+    assertNull( FrozenRowMeta.freeze( null ) );
+  }
+
+  @Test
+  public void testRenamedValueMetaIsFound() {
+    RowMetaInterface frozen = FrozenRowMeta.freeze( createRowMeta() );
+    frozen.getValueMeta( 0 ).setName( "renamed" );
+
+    assertEquals( 0, frozen.indexOfValue( "renamed" ) );
+    assertEquals( -1, frozen.indexOfValue( "string" ) );
+  }
+
+  @Test
+  public void testChangesAreCopyOnWrite() throws Exception {
+    RowMeta rowMeta = createRowMeta();
+    RowMetaInterface frozen = FrozenRowMeta.freeze( rowMeta );
+
+    frozen.addValueMeta( new ValueMetaString( "extra" ) );
+    assertEquals( 4, frozen.size() );
+    assertEquals( 3, frozen.indexOfValue( "extra" ) );
+    assertEquals( 3, rowMeta.size() );
+
+    frozen.removeValueMeta( "string" );
+    assertEquals( 3, frozen.size() );
+    assertEquals( 0, frozen.indexOfValue( "integer" ) );
+
+    frozen.mergeRowMeta( createRowMeta() );
+    assertEquals( 6, frozen.size() );
+    assertEquals( 4, frozen.indexOfValue( "integer_1" ) );
+
+    frozen.clear();
+    assertTrue( frozen.isEmpty() );
+    assertEquals( 3, rowMeta.size() );
+  }
+
+  @Test
+  public void testCloneRowCopiesBinaries() throws Exception {
+    RowMeta rowMeta = createRowMeta();
+    rowMeta.addValueMeta( new ValueMetaBinary( "binary" ) );
+    RowMetaInterface frozen = FrozenRowMeta.freeze( rowMeta );
+    byte[] bytes = new byte[] { 1, 2, 3 };
+
+    Object[] clone = frozen.cloneRow( new Object[] { "a", 1L, null, bytes } );
+    assertNotSame( bytes, clone[ 3 ] );
+    assertArrayEquals( bytes, (byte[]) clone[ 3 ] );
+  }
+
+  @Test
+  public void testRowOperations() throws Exception {
+    RowMetaInterface frozen = FrozenRowMeta.freeze( createRowMeta() );
+    Date date = new Date();
+    Object[] row1 = new Object[] { "a", 1L, date };
+    Object[] row2 = new Object[] { "a", 2L, date };
+
+    Object[] clone = frozen.cloneRow( row1 );
+    assertNotSame( row1, clone );
+    assertArrayEquals( row1, clone );
+
+    assertTrue( frozen.compare( row1, row2 ) < 0 );
+    assertEquals( 0, frozen.compare( row1, row2, new int[] { 0, 2 } ) );
+    assertTrue( frozen.equals( row1, row2, new int[] { 0 } ) );
+    assertEquals( createRowMeta().convertedValuesHashCode( row1 ), frozen.convertedValuesHashCode( row1 ) );
+  }
+}
@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core;
+package org.pentaho.di.core.row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Test;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+public class RowMemoryEstimatorTest {
+
+  @Test
+  public void testNullsAndEmptyRow() {
+    assertEquals( 0L, RowMemoryEstimator.estimateRowSize( null, null ) );
+    assertEquals( 16L, RowMemoryEstimator.estimateRowSize( null, new Object[0] ) );
+    assertEquals( 24L, RowMemoryEstimator.estimateRowSize( null, new Object[] { null, null } ) );
+  }
+
+  @Test
+  public void testLongerStringsTakeMoreMemory() {
+    long small = RowMemoryEstimator.estimateValueSize( null, "a" );
+    long large = RowMemoryEstimator.estimateValueSize( null, "a much longer string value" );
+    assertTrue( small > 0 );
+    assertTrue( large > small );
+  }
+
+  @Test
+  public void testIndexedValuesAreShared() {
+    ValueMetaInterface valueMeta = new ValueMetaString( "name" );
+    valueMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_INDEXED );
+    assertEquals( 0L, RowMemoryEstimator.estimateValueSize( valueMeta, 3 ) );
+  }
+
+  @Test
+  public void testRowSizeIsTheSumOfItsParts() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    Object[] row = new Object[] { "Kettle", 42L, new Date(), new BigDecimal( "123.45" ), new byte[10], Boolean.TRUE };
+
+    long expected = 16 + 6 * 4; // the array itself
+    for ( Object value : row ) {
+      expected += RowMemoryEstimator.estimateValueSize( null, value );
+    }
+    assertEquals( expected, RowMemoryEstimator.estimateRowSize( rowMeta, row ) );
+  }
+}
@@ -0,0 +1,192 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.row.batch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RowBatchTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleClientEnvironment.init();
+  }
+
+  private static RowMetaInterface createRowMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "city" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    return rowMeta;
+  }
+
+  private static List<Object[]> createRows() {
+    List<Object[]> rows = new ArrayList<Object[]>();
+    rows.add( new Object[] { 1L, 1.5, "Orlando", new Date( 0L ) } );
+    rows.add( new Object[] { 2L, null, "Brussels", null } );
+    rows.add( new Object[] { null, 3.0, "Orlando", new Date( 1000L ) } );
+    rows.add( new Object[] { 4L, -2.5, null, new Date( 2000L ) } );
+    return rows;
+  }
+
+  @Test
+  public void testColumnTypes() {
+    RowBatch batch = new RowBatch( createRowMeta(), 10 );
+    assertTrue( batch.getColumn( 0 ) instanceof LongColumnVector );
+    assertTrue( batch.getColumn( "amount" ) instanceof DoubleColumnVector );
+    assertTrue( batch.getColumn( "city" ) instanceof StringColumnVector );
+    assertTrue( batch.getColumn( 3 ) instanceof ObjectColumnVector );
+    assertNull( batch.getColumn( "nope" ) );
+  }
+
+  @Test
+  public void testRoundTrip() {
+    List<Object[]> rows = createRows();
+    RowBatch batch = RowBatch.fromRows( createRowMeta(), rows );
+    assertEquals( 4, batch.size() );
+
+    List<Object[]> result = batch.toRows();
+    assertEquals( rows.size(), result.size() );
+    for ( int i = 0; i < rows.size(); i++ ) {
+      assertArrayEquals( rows.get( i ), Arrays.copyOf( result.get( i ), rows.get( i ).length ) );
+    }
+
+    StringColumnVector cities = (StringColumnVector) batch.getColumn( "city" );
+    assertEquals( 2, cities.getDictionarySize() );
+    assertEquals( cities.getCode( 0 ), cities.getCode( 2 ) );
+    assertTrue( cities.isNull( 3 ) );
+
+    batch.clear();
+    assertTrue( batch.isEmpty() );
+    assertFalse( batch.getColumn( 0 ).hasNulls() );
+  }
+
+  @Test
+  public void testGrowAndNulls() {
+    LongColumnVector vector = new LongColumnVector( 1 );
+    for ( int i = 0; i < 200; i++ ) {
+      if ( i % 3 == 0 ) {
+        vector.append( null );
+      } else {
+        vector.appendLong( i );
+      }
+    }
+    assertEquals( 200, vector.size() );
+    assertTrue( vector.isNull( 198 ) );
+    assertEquals( 199L, vector.getObject( 199 ) );
+    assertTrue( vector.hasNulls() );
+
+    vector.setSize( 300 );
+    assertTrue( vector.isNull( 250 ) );
+  }
+
+  @Test
+  public void testHashCodesMatchRowHashing() throws Exception {
+    RowMetaInterface rowMeta = createRowMeta();
+    List<Object[]> rows = createRows();
+    RowBatch batch = RowBatch.fromRows( rowMeta, rows );
+    int[] fieldnrs = new int[] { 0, 1, 2, 3 };
+
+    int[] hashes = new int[ batch.size() ];
+    batch.hashCodes( fieldnrs, hashes );
+    for ( int i = 0; i < rows.size(); i++ ) {
+      int expected = 1;
+      for ( int fieldnr : fieldnrs ) {
+        expected = 31 * expected + rowMeta.getValueMeta( fieldnr ).hashCode( rows.get( i )[ fieldnr ] );
+      }
+      assertEquals( expected, hashes[ i ] );
+    }
+  }
+
+  @Test
+  public void testCompareMatchesRowComparison() throws Exception {
+    RowMetaInterface rowMeta = createRowMeta();
+    rowMeta.getValueMeta( 1 ).setSortedDescending( true );
+    List<Object[]> rows = createRows();
+    RowBatch batch = RowBatch.fromRows( rowMeta, rows );
+
+    for ( int fieldnr = 0; fieldnr < rowMeta.size(); fieldnr++ ) {
+      int[] fieldnrs = new int[] { fieldnr };
+      for ( int i = 0; i < rows.size(); i++ ) {
+        for ( int j = 0; j < rows.size(); j++ ) {
+          assertEquals( Integer.signum( rowMeta.compare( rows.get( i ), rows.get( j ), fieldnrs ) ),
+            Integer.signum( batch.compare( i, j, fieldnrs ) ) );
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testArithmetic() throws Exception {
+    ValueMetaInteger integer = new ValueMetaInteger( "integer" );
+    LongColumnVector a = new LongColumnVector( 4 );
+    LongColumnVector b = new LongColumnVector( 4 );
+    a.appendLong( 5 );
+    a.append( null );
+    a.appendLong( -3 );
+    b.appendLong( 2 );
+    b.appendLong( 7 );
+    b.appendLong( 4 );
+
+    LongColumnVector result = new LongColumnVector( 0 );
+    integer.plus( a, b, result );
+    assertEquals( 3, result.size() );
+    assertEquals( 7L, result.getObject( 0 ) );
+    assertNull( result.getObject( 1 ) );
+    assertEquals( 1L, result.getObject( 2 ) );
+
+    integer.minus( a, b, result );
+    assertEquals( 3L, result.getObject( 0 ) );
+    integer.multiply( a, b, result );
+    assertEquals( -12L, result.getObject( 2 ) );
+
+    ValueMetaNumber number = new ValueMetaNumber( "number" );
+    DoubleColumnVector x = new DoubleColumnVector( 2 );
+    x.appendDouble( 1.5 );
+    x.appendDouble( 2.0 );
+    ObjectColumnVector boxed = new ObjectColumnVector( 2 );
+    number.plus( x, x, boxed );
+    assertEquals( 3.0, boxed.getObject( 0 ) );
+    assertEquals( 4.0, boxed.getObject( 1 ) );
+  }
+}
@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.row.codec;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryRowCodecTest {
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KettleClientEnvironment.init();
+  }
+
+  private static RowMetaInterface createRowMeta() {
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "city" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "date" ) );
+    rowMeta.addValueMeta( new ValueMetaBoolean( "flag" ) );
+    rowMeta.addValueMeta( new ValueMetaBigNumber( "big" ) );
+    rowMeta.addValueMeta( new ValueMetaBinary( "data" ) );
+    return rowMeta;
+  }
+
+  private static Object[][] createRows() {
+    return new Object[][] {
+      { 1L, 1.5, "Orlando", new Date( 1000L ), true, new BigDecimal( "12345678901234567890.123" ),
+        new byte[] { 1, 2, 3 } },
+      { -42L, null, "Orlando", null, false, new BigDecimal( "-0.5" ), null },
+      { null, -0.25, "K\u00f8benhavn \ud83d\ude00", new Date( -5000L ), null, null, new byte[0] },
+      { Long.MAX_VALUE, Double.NaN, null, new Date( 0L ), true, BigDecimal.ZERO, new byte[] { -1 } }, };
+  }
+
+  private static void assertRowEquals( Object[] expected, Object[] actual ) {
+    for ( int i = 0; i < expected.length; i++ ) {
+      if ( expected[i] instanceof byte[] ) {
+        assertArrayEquals( (byte[]) expected[i], (byte[]) actual[i] );
+      } else {
+        assertEquals( expected[i], actual[i] );
+      }
+    }
+  }
+
+  private static void roundTrip( RowCodec writer ) throws Exception {
+    Object[][] rows = createRows();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream( bytes );
+    RowCodecFactory.writeRowMeta( out, writer );
+    for ( Object[] row : rows ) {
+      writer.writeRow( out, row );
+    }
+    out.flush();
+
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    RowCodec reader = RowCodecFactory.readRowMeta( in );
+    assertEquals( writer.getClass(), reader.getClass() );
+    assertEquals( writer.getRowMeta().size(), reader.getRowMeta().size() );
+    for ( Object[] row : rows ) {
+      assertRowEquals( row, reader.readRow( in ) );
+    }
+    try {
+      reader.readRow( in );
+      fail( "Expected end of stream" );
+    } catch ( KettleEOFException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLegacyRoundTrip() throws Exception {
+    roundTrip( RowCodecFactory.createCodec( RowCodecFactory.CODEC_LEGACY, createRowMeta() ) );
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws Exception {
+    roundTrip( RowCodecFactory.createCodec( RowCodecFactory.CODEC_BINARY, createRowMeta() ) );
+  }
+
+  @Test
+  public void testBinaryRoundTripWithoutDictionary() throws Exception {
+    roundTrip( new BinaryRowCodec( createRowMeta(), false ) );
+  }
+
+  @Test
+  public void testBinaryIsSmallerThanLegacy() throws Exception {
+    RowMetaInterface rowMeta = createRowMeta();
+    Object[] row = createRows()[1];
+    ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+    ByteArrayOutputStream binary = new ByteArrayOutputStream();
+    RowCodec legacyCodec = new LegacyRowCodec( rowMeta );
+    RowCodec binaryCodec = new BinaryRowCodec( rowMeta );
+    for ( int i = 0; i < 100; i++ ) {
+      legacyCodec.writeRow( new DataOutputStream( legacy ), row );
+      binaryCodec.writeRow( new DataOutputStream( binary ), row );
+    }
+    assertTrue( binary.size() < legacy.size() );
+  }
+}
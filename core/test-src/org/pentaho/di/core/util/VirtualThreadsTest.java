@@ -0,0 +1,68 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void testNewThreadRunsRunnable() throws Exception {
+    final AtomicBoolean ran = new AtomicBoolean( false );
+    Thread thread = VirtualThreads.newThread( new Runnable() {
+      @Override
+      public void run() {
+        ran.set( true );
+      }
+    }, "test thread" );
+
+    assertEquals( "test thread", thread.getName() );
+    assertFalse( thread.isAlive() );
+
+    thread.start();
+    thread.join( 10000 );
+    assertTrue( ran.get() );
+  }
+
+  @Test
+  public void testThreadIsVirtualWhenSupported() throws Exception {
+    Thread thread = VirtualThreads.newThread( new Runnable() {
+      @Override
+      public void run() {
+      }
+    }, "test thread" );
+
+    boolean virtual = false;
+    try {
+      virtual = (Boolean) Thread.class.getMethod( "isVirtual" ).invoke( thread );
+    } catch ( NoSuchMethodException e ) {
+      // Older JVM: a platform thread
+    }
+    assertEquals( VirtualThreads.isSupported(), virtual );
+  }
+}
@@ -65,6 +65,9 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
 
   public static final RepositoryObjectType REPOSITORY_ELEMENT_TYPE = RepositoryObjectType.CLUSTER_SCHEMA;
 
+  /** The compression used on compressed sockets unless configured otherwise, readable by all older versions */
+  public static final String DEFAULT_SOCKETS_COMPRESSION_TYPE = "GZip";
+
   /** the name of the cluster schema */
   private String name;
 
@@ -85,6 +88,9 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
   /** flag to compress data over the sockets or not */
   private boolean socketsCompressed;
 
+  /** The name of the compression provider used on compressed sockets */
+  private String socketsCompressionType;
+
   /**
    * Flag to indicate that this cluster schema is dynamic.<br>
    * This means that the slave server configuration is taken from one of the defined master servers.<br>
@@ -105,6 +111,7 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     socketsBufferSize = "2000";
     socketsFlushInterval = "5000";
     socketsCompressed = true;
+    socketsCompressionType = DEFAULT_SOCKETS_COMPRESSION_TYPE;
     basePort = "40000";
     dynamic = false;
     this.changedDate = new Date();
@@ -131,6 +138,7 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     this.basePort = clusterSchema.basePort;
     this.socketsBufferSize = clusterSchema.socketsBufferSize;
     this.socketsCompressed = clusterSchema.socketsCompressed;
+    this.socketsCompressionType = clusterSchema.socketsCompressionType;
     this.socketsFlushInterval = clusterSchema.socketsFlushInterval;
     this.dynamic = clusterSchema.dynamic;
 
@@ -167,6 +175,7 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     xml.append( "        " ).append( XMLHandler.addTagValue( "sockets_buffer_size", socketsBufferSize ) );
     xml.append( "        " ).append( XMLHandler.addTagValue( "sockets_flush_interval", socketsFlushInterval ) );
     xml.append( "        " ).append( XMLHandler.addTagValue( "sockets_compressed", socketsCompressed ) );
+    xml.append( "        " ).append( XMLHandler.addTagValue( "sockets_compression_type", socketsCompressionType ) );
     xml.append( "        " ).append( XMLHandler.addTagValue( "dynamic", dynamic ) );
 
     xml.append( "        " ).append( XMLHandler.openTag( "slaveservers" ) ).append( Const.CR );
@@ -187,6 +196,8 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     socketsBufferSize = XMLHandler.getTagValue( clusterSchemaNode, "sockets_buffer_size" );
     socketsFlushInterval = XMLHandler.getTagValue( clusterSchemaNode, "sockets_flush_interval" );
     socketsCompressed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( clusterSchemaNode, "sockets_compressed" ) );
+    socketsCompressionType = Const.NVL( XMLHandler.getTagValue( clusterSchemaNode, "sockets_compression_type" ),
+      DEFAULT_SOCKETS_COMPRESSION_TYPE );
     dynamic = "Y".equalsIgnoreCase( XMLHandler.getTagValue( clusterSchemaNode, "dynamic" ) );
 
     Node slavesNode = XMLHandler.getSubNode( clusterSchemaNode, "slaveservers" );
@@ -344,6 +355,21 @@ public class ClusterSchema extends ChangedFlag implements Cloneable, SharedObjec
     this.socketsCompressed = socketsCompressed;
   }
 
+  /**
+   * @return the name of the compression provider used on compressed sockets
+   */
+  public String getSocketsCompressionType() {
+    return socketsCompressionType;
+  }
+
+  /**
+   * @param socketsCompressionType
+   *          the name of the compression provider used on compressed sockets, e.g. GZip or LZ4
+   */
+  public void setSocketsCompressionType( String socketsCompressionType ) {
+    this.socketsCompressionType = socketsCompressionType;
+  }
+
   public SlaveServer findSlaveServer( String slaveServerName ) {
     for ( int i = 0; i < slaveServers.size(); i++ ) {
       SlaveServer slaveServer = slaveServers.get( i );
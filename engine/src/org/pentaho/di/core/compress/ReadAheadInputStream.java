@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads an input stream on a separate thread into a bounded queue of chunks. Wrapping a decompressing stream moves
+ * the decompression off the thread consuming the data.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  private static final Chunk END = new Chunk( new byte[0], -1, null );
+
+  private final InputStream source;
+  private final int chunkSize;
+  private final BlockingQueue<Chunk> chunks;
+  private final BlockingQueue<byte[]> freeBuffers;
+  private final Thread thread;
+
+  private Chunk current;
+  private int position;
+  private volatile boolean closed;
+
+  /**
+   * @param source     the stream to read from
+   * @param chunkSize  the size of the chunks to read
+   * @param nrChunks   the maximum number of chunks read ahead
+   * @param threadName the name of the reading thread
+   */
+  public ReadAheadInputStream( InputStream source, int chunkSize, int nrChunks, String threadName ) {
+    this.source = source;
+    this.chunkSize = chunkSize;
+    this.chunks = new ArrayBlockingQueue<Chunk>( nrChunks );
+    this.freeBuffers = new ArrayBlockingQueue<byte[]>( nrChunks + 1 );
+
+    thread = new Thread( new Runnable() {
+      public void run() {
+        readAhead();
+      }
+    }, threadName );
+    thread.setDaemon( true );
+    thread.start();
+  }
+
+  private void readAhead() {
+    try {
+      while ( !closed ) {
+        byte[] buffer = freeBuffers.poll();
+        if ( buffer == null ) {
+          buffer = new byte[chunkSize];
+        }
+        // A single read, so data that trickles in is handed over without waiting for a full chunk
+        int length = source.read( buffer, 0, buffer.length );
+        if ( length < 0 ) {
+          chunks.put( END );
+          return;
+        }
+        if ( length > 0 ) {
+          chunks.put( new Chunk( buffer, length, null ) );
+        }
+      }
+    } catch ( InterruptedException e ) {
+      // closed
+    } catch ( IOException e ) {
+      if ( closed ) {
+        return;
+      }
+      try {
+        chunks.put( new Chunk( null, -1, e ) );
+      } catch ( InterruptedException ie ) {
+        // closed
+      }
+    }
+  }
+
+  private boolean nextChunk() throws IOException {
+    if ( current != null ) {
+      if ( current.length < 0 ) {
+        return false;
+      }
+      freeBuffers.offer( current.buffer );
+    }
+    try {
+      current = chunks.take();
+    } catch ( InterruptedException e ) {
+      throw new InterruptedIOException( "Interrupted while waiting for data" );
+    }
+    position = 0;
+    if ( current.exception != null ) {
+      IOException e = current.exception;
+      current = END;
+      throw e;
+    }
+    return current.length >= 0;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( ( current == null || position == current.length ) && !nextChunk() ) {
+      return -1;
+    }
+    return current.buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( ( current == null || position == current.length ) && !nextChunk() ) {
+      return -1;
+    }
+    int size = Math.min( len, current.length - position );
+    System.arraycopy( current.buffer, position, b, off, size );
+    position += size;
+    return size;
+  }
+
+  @Override
+  public int available() {
+    return current == null || current.length < 0 ? 0 : current.length - position;
+  }
+
+  /**
+   * Stops the reading thread and closes the source stream.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    thread.interrupt();
+    source.close();
+  }
+
+  private static class Chunk {
+    private final byte[] buffer;
+    private final int length;
+    private final IOException exception;
+
+    Chunk( byte[] buffer, int length, IOException exception ) {
+      this.buffer = buffer;
+      this.length = length;
+      this.exception = exception;
+    }
+  }
+}
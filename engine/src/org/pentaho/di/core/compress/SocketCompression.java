@@ -0,0 +1,122 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pentaho.di.core.compress.lz4.LZ4CompressionProvider;
+import org.pentaho.di.core.util.Utils;
+
+/**
+ * Creates the compressing and decompressing streams used on the data sockets between slave servers. GZIP, the
+ * original socket compression, is used when no compression type is given. Any other compression provider decompresses
+ * on a separate read-ahead thread.
+ */
+public class SocketCompression {
+
+  public static final String GZIP = "GZip";
+
+  /** The size of the decompressed chunks handed over by the read-ahead thread */
+  public static final int READ_AHEAD_CHUNK_SIZE = 64 * 1024;
+
+  /** The number of decompressed chunks the read-ahead thread keeps ready */
+  public static final int READ_AHEAD_CHUNKS = 4;
+
+  private SocketCompression() {
+  }
+
+  /**
+   * @param compressionType the name of a compression provider
+   * @return true if the type is empty or GZIP
+   */
+  public static boolean isGzip( String compressionType ) {
+    return Utils.isEmpty( compressionType ) || GZIP.equalsIgnoreCase( compressionType );
+  }
+
+  /**
+   * Wraps a socket output stream in a compressing stream.
+   *
+   * @param compressionType the name of the compression provider
+   * @param out             the socket output stream
+   * @param gzipBufferSize  the buffer size of a GZIP stream
+   * @return the compressing stream
+   * @throws IOException in case the compression type is unknown or the stream can't be created
+   */
+  public static OutputStream createOutputStream( String compressionType, OutputStream out, int gzipBufferSize )
+    throws IOException {
+    if ( isGzip( compressionType ) ) {
+      return new GZIPOutputStream( out, gzipBufferSize );
+    }
+    return getProvider( compressionType ).createOutputStream( out );
+  }
+
+  /**
+   * Wraps a socket input stream in a decompressing stream.
+   *
+   * @param compressionType the name of the compression provider
+   * @param in              the socket input stream
+   * @param threadName      the name of the read-ahead thread
+   * @return the decompressing stream
+   * @throws IOException in case the compression type is unknown or the stream can't be created
+   */
+  public static InputStream createInputStream( String compressionType, InputStream in, String threadName )
+    throws IOException {
+    if ( isGzip( compressionType ) ) {
+      return new GZIPInputStream( in );
+    }
+    return new ReadAheadInputStream( getProvider( compressionType ).createInputStream( in ), READ_AHEAD_CHUNK_SIZE,
+      READ_AHEAD_CHUNKS, threadName );
+  }
+
+  /**
+   * Writes out everything compressed so far without closing the socket.
+   *
+   * @param out a stream created by {@link #createOutputStream(String, OutputStream, int)}
+   * @throws IOException in case of an I/O error
+   */
+  public static void finish( OutputStream out ) throws IOException {
+    if ( out instanceof GZIPOutputStream ) {
+      ( (GZIPOutputStream) out ).finish();
+    } else {
+      out.flush();
+    }
+  }
+
+  private static CompressionProvider getProvider( String compressionType ) throws IOException {
+    CompressionProvider provider =
+      CompressionProviderFactory.getInstance().createCompressionProviderInstance( compressionType );
+    if ( provider == null && "LZ4".equalsIgnoreCase( compressionType ) ) {
+      // Also available when the compression plugins aren't loaded
+      provider = new LZ4CompressionProvider();
+    }
+    if ( provider == null || !provider.supportsInput() || !provider.supportsOutput() ) {
+      throw new IOException( "Compression type '" + compressionType + "' can't be used on sockets" );
+    }
+    return provider;
+  }
+}
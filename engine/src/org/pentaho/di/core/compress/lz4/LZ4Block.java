@@ -0,0 +1,268 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.compress.lz4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format. Every block is compressed independently so that blocks can be
+ * decompressed on another thread than the one reading them.
+ */
+public class LZ4Block {
+
+  static final int MIN_MATCH = 4;
+
+  /** The last match has to start at least this many bytes before the end of the block */
+  static final int MF_LIMIT = 12;
+
+  /** The last bytes of a block are always literals */
+  static final int LAST_LITERALS = 5;
+
+  static final int MAX_DISTANCE = 65535;
+
+  static final int HASH_LOG = 14;
+
+  static final int RUN_MASK = 15;
+
+  private LZ4Block() {
+  }
+
+  /**
+   * @param length the number of bytes to compress
+   * @return the maximum size of the compressed data
+   */
+  public static int maxCompressedLength( int length ) {
+    return length + length / 255 + 16;
+  }
+
+  /**
+   * @return a new hash table to pass to {@link #compress(byte[], int, int, byte[], int, int[])}
+   */
+  public static int[] createHashTable() {
+    return new int[1 << HASH_LOG];
+  }
+
+  /**
+   * Compresses a block of data.
+   *
+   * @param src       the data to compress
+   * @param srcOff    the offset of the data in src
+   * @param srcLen    the number of bytes to compress
+   * @param dst       the buffer to compress into, at least {@link #maxCompressedLength(int)} bytes from dstOff
+   * @param dstOff    the offset to write at in dst
+   * @param hashTable a reusable hash table, see {@link #createHashTable()}
+   * @return the compressed length
+   */
+  public static int compress( byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int[] hashTable ) {
+    final int srcEnd = srcOff + srcLen;
+    final int mfLimit = srcEnd - MF_LIMIT;
+    final int matchLimit = srcEnd - LAST_LITERALS;
+
+    int dp = dstOff;
+    int anchor = srcOff;
+
+    if ( srcLen > MF_LIMIT ) {
+      Arrays.fill( hashTable, -1 );
+      int sp = srcOff;
+      while ( sp < mfLimit ) {
+        int sequence = readInt( src, sp );
+        int h = hash( sequence );
+        int ref = hashTable[h];
+        hashTable[h] = sp;
+        if ( ref < 0 || sp - ref > MAX_DISTANCE || readInt( src, ref ) != sequence ) {
+          // Skip faster through data that doesn't compress
+          sp += 1 + ( ( sp - anchor ) >>> 6 );
+          continue;
+        }
+
+        // Extend the match backwards into the pending literals
+        while ( sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1] ) {
+          sp--;
+          ref--;
+        }
+
+        int matchLength = MIN_MATCH;
+        while ( sp + matchLength < matchLimit && src[sp + matchLength] == src[ref + matchLength] ) {
+          matchLength++;
+        }
+
+        dp = writeSequence( src, anchor, sp - anchor, sp - ref, matchLength, dst, dp );
+        sp += matchLength;
+        anchor = sp;
+      }
+    }
+
+    dp = writeLastLiterals( src, anchor, srcEnd - anchor, dst, dp );
+    return dp - dstOff;
+  }
+
+  /**
+   * Decompresses a block of data, validating every length and offset against the buffers.
+   *
+   * @param src    the compressed data
+   * @param srcOff the offset of the compressed data in src
+   * @param srcLen the compressed length
+   * @param dst    the buffer to decompress into
+   * @param dstOff the offset to write at in dst
+   * @param dstLen the space available in dst
+   * @return the decompressed length
+   * @throws IOException in case the data is corrupt
+   */
+  public static int decompress( byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen )
+    throws IOException {
+    final int srcEnd = srcOff + srcLen;
+    final int dstEnd = dstOff + dstLen;
+    int sp = srcOff;
+    int dp = dstOff;
+
+    while ( true ) {
+      if ( sp >= srcEnd ) {
+        throw corrupt( sp - srcOff );
+      }
+      int token = src[sp++] & 0xFF;
+
+      int literalLength = token >>> 4;
+      if ( literalLength == RUN_MASK ) {
+        int b;
+        do {
+          if ( sp >= srcEnd ) {
+            throw corrupt( sp - srcOff );
+          }
+          b = src[sp++] & 0xFF;
+          literalLength += b;
+        } while ( b == 255 );
+      }
+      if ( literalLength > srcEnd - sp || literalLength > dstEnd - dp ) {
+        throw corrupt( sp - srcOff );
+      }
+      System.arraycopy( src, sp, dst, dp, literalLength );
+      sp += literalLength;
+      dp += literalLength;
+
+      if ( sp == srcEnd ) {
+        // The last sequence only holds literals
+        break;
+      }
+
+      if ( srcEnd - sp < 2 ) {
+        throw corrupt( sp - srcOff );
+      }
+      int offset = ( src[sp] & 0xFF ) | ( ( src[sp + 1] & 0xFF ) << 8 );
+      sp += 2;
+      if ( offset == 0 || offset > dp - dstOff ) {
+        throw corrupt( sp - srcOff );
+      }
+
+      int matchLength = token & RUN_MASK;
+      if ( matchLength == RUN_MASK ) {
+        int b;
+        do {
+          if ( sp >= srcEnd ) {
+            throw corrupt( sp - srcOff );
+          }
+          b = src[sp++] & 0xFF;
+          matchLength += b;
+        } while ( b == 255 );
+      }
+      matchLength += MIN_MATCH;
+      if ( matchLength > dstEnd - dp ) {
+        throw corrupt( sp - srcOff );
+      }
+
+      int ref = dp - offset;
+      if ( offset >= matchLength ) {
+        System.arraycopy( dst, ref, dst, dp, matchLength );
+        dp += matchLength;
+      } else {
+        // Overlapping copy, repeats the last offset bytes
+        for ( int i = 0; i < matchLength; i++ ) {
+          dst[dp++] = dst[ref++];
+        }
+      }
+    }
+
+    return dp - dstOff;
+  }
+
+  private static int writeSequence( byte[] src, int anchor, int literalLength, int offset, int matchLength,
+    byte[] dst, int dp ) {
+    int tokenPos = dp++;
+    int token;
+    if ( literalLength >= RUN_MASK ) {
+      token = RUN_MASK << 4;
+      dp = writeLength( literalLength - RUN_MASK, dst, dp );
+    } else {
+      token = literalLength << 4;
+    }
+    System.arraycopy( src, anchor, dst, dp, literalLength );
+    dp += literalLength;
+
+    dst[dp++] = (byte) offset;
+    dst[dp++] = (byte) ( offset >>> 8 );
+
+    int length = matchLength - MIN_MATCH;
+    if ( length >= RUN_MASK ) {
+      token |= RUN_MASK;
+      dp = writeLength( length - RUN_MASK, dst, dp );
+    } else {
+      token |= length;
+    }
+    dst[tokenPos] = (byte) token;
+    return dp;
+  }
+
+  private static int writeLastLiterals( byte[] src, int anchor, int literalLength, byte[] dst, int dp ) {
+    if ( literalLength >= RUN_MASK ) {
+      dst[dp++] = (byte) ( RUN_MASK << 4 );
+      dp = writeLength( literalLength - RUN_MASK, dst, dp );
+    } else {
+      dst[dp++] = (byte) ( literalLength << 4 );
+    }
+    System.arraycopy( src, anchor, dst, dp, literalLength );
+    return dp + literalLength;
+  }
+
+  private static int writeLength( int length, byte[] dst, int dp ) {
+    while ( length >= 255 ) {
+      dst[dp++] = (byte) 255;
+      length -= 255;
+    }
+    dst[dp++] = (byte) length;
+    return dp;
+  }
+
+  private static int readInt( byte[] buf, int pos ) {
+    return ( buf[pos] & 0xFF ) | ( ( buf[pos + 1] & 0xFF ) << 8 ) | ( ( buf[pos + 2] & 0xFF ) << 16 )
+      | ( ( buf[pos + 3] & 0xFF ) << 24 );
+  }
+
+  private static int hash( int sequence ) {
+    return ( sequence * -1640531535 ) >>> ( 32 - HASH_LOG );
+  }
+
+  private static IOException corrupt( int position ) {
+    return new IOException( "Corrupt LZ4 block at position " + position );
+  }
+}
@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.compress.lz4;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.pentaho.di.core.compress.CompressionInputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+
+/**
+ * Reads the framed stream of LZ4 blocks written by {@link LZ4CompressionOutputStream}. Nothing is read from the
+ * underlying stream until the first read call.
+ */
+public class LZ4CompressionInputStream extends CompressionInputStream {
+
+  /** The largest block size a reader accepts, protects against corrupt streams */
+  public static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+  private final byte[] header = new byte[8];
+  private byte[] buffer;
+  private byte[] compressed;
+  private int blockSize;
+  private int position;
+  private int limit;
+  private boolean eof;
+
+  public LZ4CompressionInputStream( InputStream in, CompressionProvider provider ) throws IOException {
+    super( in, provider );
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( position == limit && !readBlock() ) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] b ) throws IOException {
+    return read( b, 0, b.length );
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( position == limit && !readBlock() ) {
+      return -1;
+    }
+    int size = Math.min( len, limit - position );
+    System.arraycopy( buffer, position, b, off, size );
+    position += size;
+    return size;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return limit - position;
+  }
+
+  private boolean readBlock() throws IOException {
+    if ( eof ) {
+      return false;
+    }
+    if ( buffer == null ) {
+      if ( !readHeader() ) {
+        eof = true;
+        return false;
+      }
+      if ( LZ4CompressionOutputStream.getInt( header, 0 ) != LZ4CompressionOutputStream.MAGIC ) {
+        throw new IOException( "Not an LZ4 compressed stream" );
+      }
+      blockSize = LZ4CompressionOutputStream.getInt( header, 4 );
+      if ( blockSize <= 0 || blockSize > MAX_BLOCK_SIZE ) {
+        throw new IOException( "Invalid LZ4 block size: " + blockSize );
+      }
+      buffer = new byte[blockSize];
+      compressed = new byte[LZ4Block.maxCompressedLength( blockSize )];
+    }
+
+    if ( !readHeader() ) {
+      eof = true;
+      return false;
+    }
+    int rawLength = LZ4CompressionOutputStream.getInt( header, 0 );
+    int compressedLength = LZ4CompressionOutputStream.getInt( header, 4 );
+    if ( rawLength <= 0 || rawLength > blockSize || compressedLength < 0 || compressedLength >= rawLength ) {
+      throw new IOException( "Corrupt LZ4 block header" );
+    }
+    if ( compressedLength == 0 ) {
+      readFully( buffer, rawLength );
+    } else {
+      readFully( compressed, compressedLength );
+      int length = LZ4Block.decompress( compressed, 0, compressedLength, buffer, 0, rawLength );
+      if ( length != rawLength ) {
+        throw new IOException( "Corrupt LZ4 block, expected " + rawLength + " bytes but got " + length );
+      }
+    }
+    position = 0;
+    limit = rawLength;
+    return true;
+  }
+
+  /**
+   * @return false if the underlying stream ended before the first byte of the header
+   */
+  private boolean readHeader() throws IOException {
+    int n = delegate.read( header, 0, 1 );
+    while ( n == 0 ) {
+      n = delegate.read( header, 0, 1 );
+    }
+    if ( n < 0 ) {
+      return false;
+    }
+    int read = 1;
+    while ( read < header.length ) {
+      n = delegate.read( header, read, header.length - read );
+      if ( n < 0 ) {
+        throw new EOFException( "Unexpected end of LZ4 stream" );
+      }
+      read += n;
+    }
+    return true;
+  }
+
+  private void readFully( byte[] buf, int length ) throws IOException {
+    int read = 0;
+    while ( read < length ) {
+      int n = delegate.read( buf, read, length - read );
+      if ( n < 0 ) {
+        throw new EOFException( "Unexpected end of LZ4 stream" );
+      }
+      read += n;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.core.compress.lz4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.pentaho.di.core.compress.CompressionOutputStream;
+import org.pentaho.di.core.compress.CompressionProvider;
+
+/**
+ * Writes a framed stream of LZ4 blocks. The stream starts with a magic number and the block size, followed by blocks
+ * made of the raw length, the compressed length (0 when the block is stored uncompressed) and the data. The end of the
+ * stream is the end of the underlying stream, so a socket can be shut down at any block boundary.
+ */
+public class LZ4CompressionOutputStream extends CompressionOutputStream {
+
+  public static final int MAGIC = 0x4B4C5A34;
+
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  private final byte[] buffer;
+  private final byte[] compressed;
+  private final byte[] header = new byte[8];
+  private final int[] hashTable = LZ4Block.createHashTable();
+  private int position;
+  private boolean headerWritten;
+  private boolean closed;
+
+  public LZ4CompressionOutputStream( OutputStream out, CompressionProvider provider ) throws IOException {
+    this( out, provider, DEFAULT_BLOCK_SIZE );
+  }
+
+  public LZ4CompressionOutputStream( OutputStream out, CompressionProvider provider, int blockSize )
+    throws IOException {
+    super( out, provider );
+    if ( blockSize <= 0 || blockSize > LZ4CompressionInputStream.MAX_BLOCK_SIZE ) {
+      throw new IllegalArgumentException( "Invalid LZ4 block size: " + blockSize );
+    }
+    buffer = new byte[blockSize];
+    compressed = new byte[LZ4Block.maxCompressedLength( blockSize )];
+  }
+
+  @Override
+  public void write( int b ) throws IOException {
+    if ( position == buffer.length ) {
+      writeBlock();
+    }
+    buffer[position++] = (byte) b;
+  }
+
+  @Override
+  public void write( byte[] b ) throws IOException {
+    write( b, 0, b.length );
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) throws IOException {
+    while ( len > 0 ) {
+      if ( position == buffer.length ) {
+        writeBlock();
+      }
+      int size = Math.min( len, buffer.length - position );
+      System.arraycopy( b, off, buffer, position, size );
+      position += size;
+      off += size;
+      len -= size;
+    }
+  }
+
+  /**
+   * Compresses and writes the pending data as a block, then flushes the underlying stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    writeBlock();
+    delegate.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    try {
+      flush();
+    } finally {
+      delegate.close();
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if ( !headerWritten ) {
+      putInt( header, 0, MAGIC );
+      putInt( header, 4, buffer.length );
+      delegate.write( header, 0, 8 );
+      headerWritten = true;
+    }
+    if ( position == 0 ) {
+      return;
+    }
+    int compressedLength = LZ4Block.compress( buffer, 0, position, compressed, 0, hashTable );
+    putInt( header, 0, position );
+    if ( compressedLength < position ) {
+      putInt( header, 4, compressedLength );
+      delegate.write( header, 0, 8 );
+      delegate.write( compressed, 0, compressedLength );
+    } else {
+      // Doesn't compress, store it as is
+      putInt( header, 4, 0 );
+      delegate.write( header, 0, 8 );
+      delegate.write( buffer, 0, position );
+    }
+    position = 0;
+  }
+
+  static void putInt( byte[] buf, int pos, int value ) {
+    buf[pos] = (byte) ( value >>> 24 );
+    buf[pos + 1] = (byte) ( value >>> 16 );
+    buf[pos + 2] = (byte) ( value >>> 8 );
+    buf[pos + 3] = (byte) value;
+  }
+
+  static int getInt( byte[] buf, int pos ) {
+    return ( ( buf[pos] & 0xFF ) << 24 ) | ( ( buf[pos + 1] & 0xFF ) << 16 ) | ( ( buf[pos + 2] & 0xFF ) << 8 )
+      | ( buf[pos + 3] & 0xFF );
+  }
+}
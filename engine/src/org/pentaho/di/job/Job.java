@@ -84,6 +84,7 @@ import org.pentaho.di.core.parameters.UnknownParamException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.util.EnvUtil;
+import org.pentaho.di.core.util.VirtualThreads;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.variables.Variables;
 import org.pentaho.di.core.vfs.KettleVFS;
@@ -414,6 +415,7 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
 
     ExecutorService heartbeat = null; // this job's heartbeat scheduled executor
 
+    LoggingRegistry.getInstance().retainLoggingSource( getLogChannelId() );
     try {
       stopped = new AtomicBoolean( false );
       finished = new AtomicBoolean( false );
@@ -465,6 +467,9 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
         log.logError( BaseMessages.getString( PKG, "Job.Log.ErrorExecJob", e.getMessage() ), e );
 
         emergencyWriteJobTracker( result );
+      } finally {
+        // The logging hierarchy of a finished job can be removed from the registry when it's full
+        LoggingRegistry.getInstance().releaseLoggingSource( getLogChannelId() );
       }
     }
   }
@@ -852,7 +857,14 @@ public class Job extends Thread implements VariableSpace, NamedParams, HasLogCha
               }
             }
           };
-          Thread thread = new Thread( runnable );
+          // Optionally run the entry on a virtual thread, most of the time it just waits for its work to be done
+          //
+          Thread thread;
+          if ( "Y".equalsIgnoreCase( getVariable( Const.KETTLE_VIRTUAL_THREADS, "N" ) ) ) {
+            thread = VirtualThreads.newThread( runnable, getName() + " - " + nextEntry.getName() );
+          } else {
+            thread = new Thread( runnable );
+          }
           threads.add( thread );
           thread.start();
           if ( log.isBasic() ) {
@@ -34,19 +34,23 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.Queue;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -60,15 +64,19 @@ import org.pentaho.di.core.BlockingBatchingRowSet;
 import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.util.VirtualThreads;
 import org.pentaho.di.core.Counter;
 import org.pentaho.di.core.ExecutorInterface;
 import org.pentaho.di.core.ExtensionDataInterface;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.LockFreeRowSet;
+import org.pentaho.di.core.MemoryBudget;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.Result;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.ScheduledRowSet;
 import org.pentaho.di.core.SingleRowRowSet;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
@@ -125,17 +133,22 @@ import org.pentaho.di.resource.ResourceUtil;
 import org.pentaho.di.resource.TopLevelResource;
 import org.pentaho.di.trans.cluster.TransSplitter;
 import org.pentaho.di.trans.performance.StepPerformanceSnapShot;
+import org.pentaho.di.trans.TransMeta.TransformationType;
 import org.pentaho.di.trans.step.BaseStep;
 import org.pentaho.di.trans.step.BaseStepData.StepExecutionStatus;
+import org.pentaho.di.trans.step.FusedRunThread;
 import org.pentaho.di.trans.step.RunThread;
 import org.pentaho.di.trans.step.StepAdapter;
 import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepFusion;
 import org.pentaho.di.trans.step.StepInitThread;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepListener;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaDataCombi;
 import org.pentaho.di.trans.step.StepPartitioningMeta;
+import org.pentaho.di.trans.step.StepScheduler;
+import org.pentaho.di.trans.step.StepTask;
 import org.pentaho.di.trans.steps.mappinginput.MappingInput;
 import org.pentaho.di.trans.steps.mappingoutput.MappingOutput;
 import org.pentaho.di.www.AddExportServlet;
@@ -245,9 +258,27 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
   /** A list of all the row sets. */
   public List<RowSet> rowsets;
 
+  /** The memory the steps of this transformation can reserve before keeping rows in memory. */
+  private MemoryBudget memoryBudget;
+
+  /** True while this transformation holds a reference on its logging source in the logging registry. */
+  private final AtomicBoolean loggingSourceRetained = new AtomicBoolean( false );
+
   /** A list of all the steps. */
   private List<StepMetaDataCombi> steps;
 
+  /** True if the steps run as tasks on the shared step scheduler instead of on a thread each. */
+  private boolean scheduledExecution;
+
+  /** The steps that run as tasks on the step scheduler. */
+  private volatile List<StepTask> stepTasks = new ArrayList<StepTask>();
+
+  /** True if step copies and step initialization run on virtual threads. */
+  private boolean virtualThreads;
+
+  /** The steps that run on the thread of the step before them, by that step. */
+  private Map<StepMetaDataCombi, FusedRunThread> fusedSteps = new HashMap<StepMetaDataCombi, FusedRunThread>();
+
   /** The class number. */
   public int class_nr;
 
@@ -715,6 +746,27 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     steps = new ArrayList<StepMetaDataCombi>();
     rowsets = new ArrayList<RowSet>();
 
+    // The memory steps can reserve, optionally shared with everything else running in this JVM
+    //
+    memoryBudget =
+        MemoryBudget.fromMegaBytes( Const.toLong( getVariable( Const.KETTLE_MEMORY_BUDGET ), 0L ), MemoryBudget
+            .getJvmBudget() );
+
+    // Run the steps as tasks on the shared step scheduler instead of on a thread each?
+    //
+    scheduledExecution =
+        transMeta.getTransformationType() == TransformationType.Normal && "Y".equalsIgnoreCase( getVariable(
+            Const.KETTLE_STEP_SCHEDULER, "N" ) );
+    stepTasks = new ArrayList<StepTask>();
+
+    // Run the step threads as virtual threads?
+    //
+    virtualThreads = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_VIRTUAL_THREADS, "N" ) );
+    if ( virtualThreads && !VirtualThreads.isSupported() ) {
+      log.logBasic( "Virtual threads are not supported by this JVM, the steps run on platform threads" );
+      virtualThreads = false;
+    }
+
     List<StepMeta> hopsteps = transMeta.getTransHopSteps( false );
 
     if ( log.isDetailed() ) {
@@ -805,8 +857,18 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
                 //
                 Boolean batchingRowSet =
                     ValueMetaString.convertStringToBoolean( System.getProperty( Const.KETTLE_BATCHING_ROWSET ) );
-                if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
+                Boolean lockFreeRowSet =
+                    ValueMetaString.convertStringToBoolean( System.getProperty( Const.KETTLE_LOCKFREE_ROWSET ) );
+                if ( scheduledExecution ) {
+                  // The row set wakes up the step tasks instead of blocking threads
+                  //
+                  rowSet = new ScheduledRowSet( transMeta.getSizeRowset() );
+                } else if ( batchingRowSet != null && batchingRowSet.booleanValue() ) {
                   rowSet = new BlockingBatchingRowSet( transMeta.getSizeRowset() );
+                } else if ( dispatchType == TYPE_DISP_1_1 && ( lockFreeRowSet == null || lockFreeRowSet ) ) {
+                  // Exactly one thread writes and one thread reads: no locking needed
+                  //
+                  rowSet = new LockFreeRowSet( transMeta.getSizeRowset() );
                 } else {
                   rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
                 }
@@ -854,7 +916,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
           // distribution...
           for ( int s = 0; s < thisCopies; s++ ) {
             for ( int t = 0; t < nextCopies; t++ ) {
-              BlockingRowSet rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              RowSet rowSet;
+              if ( scheduledExecution ) {
+                rowSet = new ScheduledRowSet( transMeta.getSizeRowset() );
+              } else {
+                rowSet = new BlockingRowSet( transMeta.getSizeRowset() );
+              }
               rowSet.setThreadNameFromToCopy( thisStep.getName(), s, nextStep.getName(), t );
               rowsets.add( rowSet );
               if ( log.isDetailed() ) {
@@ -971,6 +1038,17 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       }
     }
 
+    // Let chains of cheap row-by-row steps run on the thread of the first step of the chain
+    //
+    fusedSteps = new HashMap<StepMetaDataCombi, FusedRunThread>();
+    if ( transMeta.getTransformationType() == TransformationType.Normal && !scheduledExecution && "Y"
+        .equalsIgnoreCase( getVariable( Const.KETTLE_STEP_FUSION, "N" ) ) ) {
+      fusedSteps = StepFusion.fuse( transMeta, steps, rowsets );
+      if ( log.isDetailed() ) {
+        log.logDetailed( "Fused " + fusedSteps.size() + " step copies to the thread of the step before them" );
+      }
+    }
+
     // Now (optionally) write start log record!
     // Make sure we synchronize appropriately to avoid duplicate batch IDs.
     //
@@ -1061,6 +1139,7 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
     StepInitThread[] initThreads = new StepInitThread[steps.size()];
     Thread[] threads = new Thread[steps.size()];
+    ForkJoinTask<?>[] initTasks = new ForkJoinTask<?>[steps.size()];
 
     // Initialize all the threads...
     //
@@ -1073,19 +1152,32 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       //
       initThreads[i] = new StepInitThread( sid, log );
 
-      // Put it in a separate thread!
-      //
-      threads[i] = new Thread( initThreads[i] );
-      threads[i].setName( "init of " + sid.stepname + "." + sid.copy + " (" + threads[i].getName() + ")" );
-
       ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeInitialize.id, initThreads[i] );
 
-      threads[i].start();
+      if ( scheduledExecution ) {
+        // Initialize on the step scheduler as well
+        //
+        initTasks[i] = StepScheduler.getInstance().execute( initThreads[i] );
+      } else {
+        // Put it in a separate thread!
+        //
+        if ( virtualThreads ) {
+          threads[i] = VirtualThreads.newThread( initThreads[i], "init of " + sid.stepname + "." + sid.copy );
+        } else {
+          threads[i] = new Thread( initThreads[i] );
+          threads[i].setName( "init of " + sid.stepname + "." + sid.copy + " (" + threads[i].getName() + ")" );
+        }
+        threads[i].start();
+      }
     }
 
-    for ( int i = 0; i < threads.length; i++ ) {
+    for ( int i = 0; i < steps.size(); i++ ) {
       try {
-        threads[i].join();
+        if ( scheduledExecution ) {
+          initTasks[i].join();
+        } else {
+          threads[i].join();
+        }
         ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepAfterInitialize.id, initThreads[i] );
       } catch ( Exception ex ) {
         log.logError( "Error with init thread: " + ex.getMessage(), ex.getMessage() );
@@ -1163,6 +1255,12 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
     KettleEnvironment.setExecutionInformation( this, repository );
 
+    // Only a prepared transformation keeps its logging hierarchy in the registry until it finishes
+    //
+    if ( loggingSourceRetained.compareAndSet( false, true ) ) {
+      LoggingRegistry.getInstance().retainLoggingSource( getLogChannelId() );
+    }
+
     setReadyToStart( true );
   }
 
@@ -1353,13 +1451,19 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     switch ( transMeta.getTransformationType() ) {
       case Normal:
 
+        // The fused steps are running as soon as the steps before them are
+        //
+        Set<StepMetaDataCombi> fusedCombis = new HashSet<StepMetaDataCombi>();
+        for ( FusedRunThread fusedRunThread : fusedSteps.values() ) {
+          fusedCombis.add( fusedRunThread.getCombi() );
+          fusedRunThread.start();
+        }
+
         // Now start all the threads...
         //
+        List<StepTask> tasks = new ArrayList<StepTask>();
         for ( int i = 0; i < steps.size(); i++ ) {
           final StepMetaDataCombi combi = steps.get( i );
-          RunThread runThread = new RunThread( combi );
-          Thread thread = new Thread( runThread );
-          thread.setName( getName() + " - " + combi.stepname );
           ExtensionPointHandler.callExtensionPoint( log, KettleExtensionPoint.StepBeforeStart.id, combi );
           // Call an extension point at the end of the step
           //
@@ -1376,7 +1480,34 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
 
           } );
 
-          thread.start();
+          if ( scheduledExecution && StepScheduler.canSchedule( combi ) ) {
+            // Thread priority management only makes the step sleep, the scheduler takes care of that
+            //
+            combi.step.setUsingThreadPriorityManagment( false );
+            tasks.add( new StepTask( StepScheduler.getInstance(), combi ) );
+          } else if ( !fusedCombis.contains( combi ) ) {
+            RunThread runThread = new RunThread( combi );
+            runThread.setFusedStep( fusedSteps.get( combi ) );
+            Thread thread;
+            if ( virtualThreads ) {
+              thread = VirtualThreads.newThread( runThread, getName() + " - " + combi.stepname );
+            } else {
+              thread = new Thread( runThread );
+              thread.setName( getName() + " - " + combi.stepname );
+            }
+            thread.start();
+          }
+        }
+
+        // The tasks start once all of them listen to their row sets
+        //
+        stepTasks = tasks;
+        for ( StepTask stepTask : tasks ) {
+          stepTask.start();
+        }
+        if ( scheduledExecution && log.isDetailed() ) {
+          log.logDetailed( "Running " + tasks.size() + " of " + steps.size()
+              + " step copies on the step scheduler" );
         }
         break;
 
@@ -1466,6 +1597,15 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     }
   }
 
+  /**
+   * Checks whether the step copies of the transformation run on virtual threads.
+   *
+   * @return true if the step copies run on virtual threads
+   */
+  public boolean isUsingVirtualThreads() {
+    return virtualThreads;
+  }
+
   /**
    * Make attempt to fire all registered listeners if possible.
    *
@@ -1473,6 +1613,11 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
    *           if any errors occur during notification
    */
   protected void fireTransFinishedListeners() throws KettleException {
+    // The logging hierarchy of a finished transformation can be removed from the registry when it's full
+    if ( loggingSourceRetained.compareAndSet( true, false ) ) {
+      LoggingRegistry.getInstance().releaseLoggingSource( getLogChannelId() );
+    }
+
     // PDI-5229 sync added
     synchronized ( transListeners ) {
       if ( transListeners.size() == 0 ) {
@@ -1899,6 +2044,10 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     setPaused( false );
     setStopped( true );
 
+    // Idle step tasks need to run once more to see that they're stopped
+    //
+    wakeUpStepTasks();
+
     // Fire the stopped listener...
     //
     synchronized ( transStoppedListeners ) {
@@ -3083,6 +3232,15 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
     return rowsets;
   }
 
+  /**
+   * Gets the memory budget steps reserve from before they keep rows in memory. See {@link Const#KETTLE_MEMORY_BUDGET}.
+   *
+   * @return the memory budget or null if the transformation wasn't prepared for execution.
+   */
+  public MemoryBudget getMemoryBudget() {
+    return memoryBudget;
+  }
+
   /**
    * Gets a list of steps in the transformation.
    *
@@ -4544,6 +4702,25 @@ public class Trans implements VariableSpace, NamedParams, HasLogChannelInterface
       combi.step.resumeRunning();
     }
     setPaused( false );
+    wakeUpStepTasks();
+  }
+
+  /**
+   * Lets the steps that run on the step scheduler look at their state and row sets again.
+   */
+  private void wakeUpStepTasks() {
+    for ( StepTask stepTask : stepTasks ) {
+      stepTask.wakeUp();
+    }
+  }
+
+  /**
+   * Checks whether the steps of the transformation run as tasks on the shared step scheduler.
+   *
+   * @return true if the steps run on the step scheduler, false if every step copy has a thread of its own
+   */
+  public boolean isScheduledExecution() {
+    return scheduledExecution;
   }
 
   /**
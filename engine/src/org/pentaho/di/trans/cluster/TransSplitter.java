@@ -90,6 +90,7 @@ public class TransSplitter {
     new SlaveStepCopyPartitionDistribution();
   private int socketsBufferSize;
   private boolean compressingSocketStreams;
+  private String socketsCompressionType;
 
   private Map<String, Integer> portCache;
 
@@ -196,6 +197,7 @@ public class TransSplitter {
           Const.toInt(
             originalTransformation.environmentSubstitute( clusterSchema.getSocketsBufferSize() ), 50000 );
         compressingSocketStreams = clusterSchema.isSocketsCompressed();
+        socketsCompressionType = clusterSchema.getSocketsCompressionType();
 
         // Validate the number of slaves. We need at least one to have a valid cluster
         //
@@ -606,6 +608,7 @@ public class TransSplitter {
                           .getStepFields( previousStep ) );
                     remoteMasterStep.setEncryptingStreams( encrypt );
                     remoteMasterStep.setKey( transformationKey );
+                    remoteMasterStep.setCompressionType( socketsCompressionType );
                     masterStep.getRemoteInputSteps().add( remoteMasterStep );
 
                     RemoteStep remoteSlaveStep =
@@ -617,6 +620,7 @@ public class TransSplitter {
                           .getStepFields( previousStep ) );
                     remoteSlaveStep.setEncryptingStreams( encrypt );
                     remoteSlaveStep.setKey( transformationKey );
+                    remoteSlaveStep.setCompressionType( socketsCompressionType );
                     slaveStep.getRemoteOutputSteps().add( remoteSlaveStep );
 
                     // OK, create a partition number for the target step in the partition distribution...
@@ -752,6 +756,7 @@ public class TransSplitter {
                           .getStepFields( previousStep ) );
                     remoteMasterStep.setEncryptingStreams( encrypt );
                     remoteMasterStep.setKey( transformationKey );
+                    remoteMasterStep.setCompressionType( socketsCompressionType );
                     sourceStep.getRemoteOutputSteps().add( remoteMasterStep );
 
                     RemoteStep remoteSlaveStep =
@@ -763,6 +768,7 @@ public class TransSplitter {
                           .getStepFields( previousStep ) );
                     remoteSlaveStep.setEncryptingStreams( encrypt );
                     remoteSlaveStep.setKey( transformationKey );
+                    remoteSlaveStep.setCompressionType( socketsCompressionType );
                     targetStep.getRemoteInputSteps().add( remoteSlaveStep );
 
                     // OK, create a partition number for the target step in the partition distribution...
@@ -966,6 +972,7 @@ public class TransSplitter {
                                   originalTransformation.getStepFields( previousStep ) );
                               remoteOutputStep.setEncryptingStreams( encrypt );
                               remoteOutputStep.setKey( transformationKey );
+                              remoteOutputStep.setCompressionType( socketsCompressionType );
                               sourceStep.getRemoteOutputSteps().add( remoteOutputStep );
 
                               // OK, so the source step is sending rows out on the reserved ports
@@ -984,6 +991,7 @@ public class TransSplitter {
                                   originalTransformation.getStepFields( previousStep ) );
                               remoteInputStep.setEncryptingStreams( encrypt );
                               remoteInputStep.setKey( transformationKey );
+                              remoteInputStep.setCompressionType( socketsCompressionType );
                               targetStep.getRemoteInputSteps().add( remoteInputStep );
                             }
                             // OK, save the partition number for the target step in the partition distribution...
@@ -1151,6 +1159,7 @@ public class TransSplitter {
                     socketWriterMeta.setBufferSize( clusterSchema.getSocketsBufferSize() );
                     socketWriterMeta.setFlushInterval( clusterSchema.getSocketsFlushInterval() );
                     socketWriterMeta.setCompressed( clusterSchema.isSocketsCompressed() );
+                    socketWriterMeta.setCompressionType( clusterSchema.getSocketsCompressionType() );
 
                     StepMeta writerStep =
                       new StepMeta( getWriterName(
@@ -1175,6 +1184,7 @@ public class TransSplitter {
                     socketReaderMeta.setPort( "" + port );
                     socketReaderMeta.setBufferSize( clusterSchema.getSocketsBufferSize() );
                     socketReaderMeta.setCompressed( clusterSchema.isSocketsCompressed() );
+                    socketReaderMeta.setCompressionType( clusterSchema.getSocketsCompressionType() );
 
                     StepMeta readerStep =
                       new StepMeta( getReaderName(
@@ -1253,6 +1263,7 @@ public class TransSplitter {
                     socketWriterMeta.setBufferSize( clusterSchema.getSocketsBufferSize() );
                     socketWriterMeta.setFlushInterval( clusterSchema.getSocketsFlushInterval() );
                     socketWriterMeta.setCompressed( clusterSchema.isSocketsCompressed() );
+                    socketWriterMeta.setCompressionType( clusterSchema.getSocketsCompressionType() );
 
                     StepMeta writerStep =
                       new StepMeta( getWriterName(
@@ -1286,6 +1297,7 @@ public class TransSplitter {
                         originalStep.getName(), 0 ) );
                     socketReaderMeta.setBufferSize( clusterSchema.getSocketsBufferSize() );
                     socketReaderMeta.setCompressed( clusterSchema.isSocketsCompressed() );
+                    socketReaderMeta.setCompressionType( clusterSchema.getSocketsCompressionType() );
 
                     StepMeta readerStep =
                       new StepMeta( getReaderName(
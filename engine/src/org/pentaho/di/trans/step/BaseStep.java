@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -58,10 +59,12 @@ import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.logging.LogLevel;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.logging.LoggingObjectType;
+import org.pentaho.di.core.row.FrozenRowMeta;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.RowBatch;
 import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
@@ -283,6 +286,8 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   public List<Object[]> terminator_rows;
 
+  private int rowBatchSize;
+
   private StepMetaInterface stepMetaInterface;
 
   private StepDataInterface stepDataInterface;
@@ -328,6 +333,12 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
 
   private RowMetaInterface inputRowMeta;
 
+  /**
+   * The frozen copy of the last row metadata of every input row set, keyed by identity.
+   */
+  private final Map<RowSet, FrozenInputRowMeta> frozenInputRowMetas =
+    new IdentityHashMap<RowSet, FrozenInputRowMeta>();
+
   /**
    * step partitioning information of the NEXT step
    */
@@ -1235,6 +1246,91 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     getRowHandler().putRow( rowMeta, row );
   }
 
+  /**
+   * putRows is used to send a batch of rows with the same layout to the next step(s) in one go. Row listeners and the
+   * line counters are handled once for the whole batch. Only when there is exactly one (non-partitioned) target rowset
+   * are the rows handed over in one go, otherwise they are dispatched one by one just like {@link #putRow}.
+   *
+   * @param rowMeta The row metadata of all the rows
+   * @param rows    The rows to put to the destination rowset(s).
+   * @throws KettleStepException
+   */
+  @Override
+  public void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+    getRowHandler().putRows( rowMeta, rows );
+  }
+
+  /**
+   * Sends a columnar batch of rows to the next step(s). The rowsets carry Object[] rows so the batch is converted at
+   * the step boundary and handed over through {@link #putRows(RowMetaInterface, List)}.
+   *
+   * @param batch The rows to put to the destination rowset(s), described by the row metadata of the batch
+   * @throws KettleStepException
+   */
+  public void putRowBatch( RowBatch batch ) throws KettleStepException {
+    if ( batch.isEmpty() ) {
+      return;
+    }
+    putRows( batch.getRowMeta(), batch.toRows() );
+  }
+
+  private void handlePutRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+    if ( rows.isEmpty() ) {
+      return;
+    }
+    for ( Object[] row : rows ) {
+      if ( row == null ) {
+        throw new KettleStepException( BaseMessages.getString( PKG, "BaseStep.Exception.NullRowInBatch" ) );
+      }
+    }
+
+    // Partitioning, row distribution plugins, multiple targets and terminator rows are handled row by row
+    //
+    if ( outputRowSets.size() != 1 || repartitioning != StepPartitioningMeta.PARTITIONING_METHOD_NONE
+      || rowDistribution != null || terminator ) {
+      for ( Object[] row : rows ) {
+        handlePutRow( rowMeta, row );
+      }
+      return;
+    }
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    while ( paused.get() && !stopped.get() ) {
+      try {
+        Thread.sleep( 1 );
+      } catch ( InterruptedException e ) {
+        throw new KettleStepException( e );
+      }
+    }
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopPuttingARow" ) );
+      }
+      stopAll();
+      return;
+    }
+
+    waitUntilTransformationIsStarted();
+
+    // call all row listeners...
+    //
+    synchronized ( rowListeners ) {
+      for ( int i = 0; i < rowListeners.size(); i++ ) {
+        RowListener rowListener = rowListeners.get( i );
+        for ( Object[] row : rows ) {
+          rowListener.rowWrittenEvent( rowMeta, row );
+        }
+      }
+    }
+
+    putRowsToRowSet( outputRowSets.get( 0 ), rowMeta, rows );
+    synchronized ( statusCountersLock ) {
+      linesWritten += rows.size();
+    }
+  }
+
 
   private void handlePutRow( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
     // Are we pausing the step? If so, stall forever...
@@ -1574,6 +1670,27 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     }
   }
 
+  private void putRowsToRowSet( RowSet rs, RowMetaInterface rowMeta, List<Object[]> rows ) {
+    RowMetaInterface toBeSent;
+    RowMetaInterface metaFromRs = rs.getRowMeta();
+    if ( metaFromRs == null ) {
+      // RowSet is not initialised so far
+      toBeSent = rowMeta.clone();
+    } else {
+      // use the existing
+      toBeSent = metaFromRs;
+    }
+
+    int offset = 0;
+    while ( offset < rows.size() ) {
+      int added = rs.putRows( toBeSent, offset == 0 ? rows : rows.subList( offset, rows.size() ) );
+      if ( added == 0 && isStopped() ) {
+        return;
+      }
+      offset += added;
+    }
+  }
+
   /**
    * putRowTo is used to put a row in a certain specific RowSet.
    *
@@ -1797,6 +1914,160 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return getRowHandler().getRow();
   }
 
+  /**
+   * Reads a batch of rows from the previous step(s). When reading from a single input rowset the available rows are
+   * taken in one go and row listeners, line counters and safe mode checks are handled once per batch. With several
+   * input rowsets the rows are read one by one through {@link #getRow()}.
+   *
+   * @param max the maximum number of rows to return
+   * @return a list with at least one row or null if no more rows are expected.
+   */
+  @Override
+  public List<Object[]> getRows( int max ) throws KettleException {
+    return getRowHandler().getRows( max );
+  }
+
+  /**
+   * Reads a batch of rows from the previous step(s) through {@link #getRows(int)} and stores them column by column.
+   * Integers, numbers and strings in the batch don't need an object per value, see {@link RowBatch}.
+   *
+   * @param max the maximum number of rows to return
+   * @return a batch with at least one row or null if no more rows are expected.
+   */
+  public RowBatch getRowBatch( int max ) throws KettleException {
+    List<Object[]> rows = getRows( max );
+    if ( rows == null ) {
+      return null;
+    }
+    return RowBatch.fromRows( getInputRowMeta(), rows );
+  }
+
+  private List<Object[]> handleGetRows( int max ) throws KettleException {
+
+    // Are we pausing the step? If so, stall forever...
+    //
+    while ( paused.get() && !stopped.get() ) {
+      try {
+        Thread.sleep( 100 );
+      } catch ( InterruptedException e ) {
+        throw new KettleStepException( e );
+      }
+    }
+
+    if ( stopped.get() ) {
+      if ( log.isDebug() ) {
+        logDebug( BaseMessages.getString( PKG, "BaseStep.Log.StopLookingForMoreRows" ) );
+      }
+      stopAll();
+      return null;
+    }
+
+    // Small startup check
+    //
+    waitUntilTransformationIsStarted();
+
+    // See if we need to open sockets to remote input steps...
+    //
+    openRemoteInputStepSocketsOnce();
+
+    if ( inputRowSets.size() != 1 ) {
+      return getRowsOneByOne( max );
+    }
+
+    RowSet inputRowSet = inputRowSets.get( 0 );
+    List<Object[]> rows = new ArrayList<Object[]>( Math.min( max, inputRowSet.size() + 1 ) );
+    int count = 0;
+    while ( count == 0 && !isStopped() ) {
+      count = inputRowSet.getRows( rows, max );
+      if ( count == 0 && inputRowSet.isDone() ) {
+        // Try one more time to get a row to make sure we don't get a race-condition between the get and the isDone()
+        //
+        count = inputRowSet.getRows( rows, max );
+        if ( count == 0 ) {
+          inputRowSets.remove( inputRowSet );
+          return null; // We're completely done.
+        }
+      }
+    }
+    if ( count == 0 ) {
+      return null;
+    }
+
+    synchronized ( statusCountersLock ) {
+      linesRead += count;
+    }
+
+    // Also set the meta data on the first occurrence.
+    //
+    if ( inputRowMeta == null || prevSteps.length > 1 ) {
+      inputRowMeta = freezeInputRowMeta( inputRowSet );
+    }
+
+    if ( trans.isSafeModeEnabled() ) {
+      safeModeChecking( inputRowSet.getRowMeta(), inputRowMeta ); // Extra checking
+      for ( Object[] row : rows ) {
+        if ( row.length < inputRowMeta.size() ) {
+          throw new KettleException( "Safe mode check noticed that the length of the row data is smaller ("
+            + row.length + ") than the row metadata size (" + inputRowMeta.size() + ")" );
+        }
+      }
+    }
+
+    synchronized ( rowListeners ) {
+      for ( int i = 0; i < rowListeners.size(); i++ ) {
+        RowListener rowListener = rowListeners.get( i );
+        for ( Object[] row : rows ) {
+          rowListener.rowReadEvent( inputRowMeta, row );
+        }
+      }
+    }
+
+    // Check the rejection rates etc. as well.
+    verifyRejectionRates();
+
+    return rows;
+  }
+
+  /**
+   * Reads the first row through {@link #getRow()} and keeps on reading as long as rows are waiting in the input rowsets.
+   */
+  private List<Object[]> getRowsOneByOne( int max ) throws KettleException {
+    Object[] row = getRow();
+    if ( row == null ) {
+      return null;
+    }
+    List<Object[]> rows = new ArrayList<Object[]>();
+    rows.add( row );
+    while ( rows.size() < max && hasInputRowsWaiting() ) {
+      row = getRow();
+      if ( row == null ) {
+        break;
+      }
+      rows.add( row );
+    }
+    return rows;
+  }
+
+  private boolean hasInputRowsWaiting() {
+    for ( int i = 0; i < inputRowSets.size(); i++ ) {
+      if ( inputRowSets.get( i ).size() > 0 ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the maximum number of rows that this step exchanges in one go through {@link #getRows(int)} and
+   *         {@link #putRows(RowMetaInterface, List)}. The default can be changed with variable KETTLE_ROW_BATCH_SIZE.
+   */
+  public int getRowBatchSize() {
+    if ( rowBatchSize <= 0 ) {
+      rowBatchSize = Math.max( 1, Const.toInt( getVariable( Const.KETTLE_ROW_BATCH_SIZE ), Const.ROWS_IN_BATCH ) );
+    }
+    return rowBatchSize;
+  }
+
 
   private Object[] handleGetRow() throws KettleException {
 
@@ -1931,7 +2202,7 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     // Also set the meta data on the first occurrence.
     // or if prevSteps.length > 1 inputRowMeta can be changed
     if ( inputRowMeta == null || prevSteps.length > 1 ) {
-      inputRowMeta = inputRowSet.getRowMeta();
+      inputRowMeta = freezeInputRowMeta( inputRowSet );
     }
 
     if ( row != null ) {
@@ -3536,6 +3807,27 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       && ( lines % getTransMeta().getFeedbackSize() ) == 0;
   }
 
+  /**
+   * Looks up or creates the frozen copy of the row metadata of an input row set. The copy is lock-free for the
+   * per-row calls and is created once per input row set, even when rows arrive from several previous steps. Only the
+   * copy of the last row metadata of a row set is kept, so there is at most one copy per input row set.
+   *
+   * @param rowSet the input row set
+   * @return the frozen row metadata
+   */
+  private RowMetaInterface freezeInputRowMeta( RowSet rowSet ) {
+    RowMetaInterface rowMeta = rowSet.getRowMeta();
+    if ( rowMeta == null || rowMeta instanceof FrozenRowMeta ) {
+      return rowMeta;
+    }
+    FrozenInputRowMeta frozen = frozenInputRowMetas.get( rowSet );
+    if ( frozen == null || frozen.rowMeta != rowMeta ) {
+      frozen = new FrozenInputRowMeta( rowMeta );
+      frozenInputRowMetas.put( rowSet, frozen );
+    }
+    return frozen.frozenRowMeta;
+  }
+
   /**
    * @return the rowMeta
    */
@@ -4175,6 +4467,19 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
     return extensionDataMap;
   }
 
+  /**
+   * The row metadata of an input row set and its frozen copy.
+   */
+  private static class FrozenInputRowMeta {
+    private final RowMetaInterface rowMeta;
+    private final RowMetaInterface frozenRowMeta;
+
+    FrozenInputRowMeta( RowMetaInterface rowMeta ) {
+      this.rowMeta = rowMeta;
+      this.frozenRowMeta = FrozenRowMeta.freeze( rowMeta );
+    }
+  }
+
   private class DefaultRowHandler implements RowHandler {
     @Override public Object[] getRow() throws KettleException {
       return handleGetRow();
@@ -4189,6 +4494,14 @@ public class BaseStep implements VariableSpace, StepInterface, LoggingObjectInte
       handlePutError( rowMeta, row, nrErrors, errorDescriptions, fieldNames, errorCodes );
     }
 
+    @Override public void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+      handlePutRows( rowMeta, rows );
+    }
+
+    @Override public List<Object[]> getRows( int max ) throws KettleException {
+      return handleGetRows( max );
+    }
+
     @Override public Object[] getRowFrom( RowSet rowSet ) throws KettleStepException {
       return handleGetRowFrom( rowSet );
     }
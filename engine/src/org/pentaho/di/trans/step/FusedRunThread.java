@@ -0,0 +1,168 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Runs a step copy that is fused to the step before it: there is no thread for this step, the thread of the previous
+ * step calls processRow() as soon as it has written rows to the (queue) row set in between. See {@link StepFusion}.
+ */
+public class FusedRunThread extends RunThread {
+
+  private final StepMetaDataCombi combi;
+  private final RowSet inputRowSet;
+  private boolean finished;
+
+  public FusedRunThread( StepMetaDataCombi combi, RowSet inputRowSet ) {
+    super( combi );
+    this.combi = combi;
+    this.inputRowSet = inputRowSet;
+  }
+
+  /**
+   * Marks the step as running. The rows are processed on the thread of the previous step.
+   */
+  public void start() {
+    startRunning();
+  }
+
+  /**
+   * There is no thread to run for a fused step.
+   */
+  @Override
+  public void run() {
+    throw new IllegalStateException( "Step '" + combi.stepname + "' is fused to the previous step and has no thread" );
+  }
+
+  /**
+   * Lets the step process the rows the previous step just wrote.
+   */
+  public void processAvailableRows() {
+    try {
+      while ( !finished && inputRowSet.size() > 0 ) {
+        if ( !step.processRow( meta, data ) || step.isStopped() ) {
+          finish();
+        }
+      }
+    } catch ( Throwable t ) {
+      handleError( t );
+      finish();
+    }
+  }
+
+  /**
+   * Called when the previous step has finished: processes the remaining rows and finishes this step as well as the
+   * steps fused to it.
+   */
+  public void previousStepFinished() {
+    if ( finished ) {
+      return;
+    }
+
+    // Nothing else will arrive, even if the previous step didn't say so
+    //
+    inputRowSet.setDone();
+    try {
+      while ( !finished ) {
+        if ( !step.processRow( meta, data ) || step.isStopped() ) {
+          finish();
+        }
+      }
+    } catch ( Throwable t ) {
+      handleError( t );
+      finish();
+    }
+  }
+
+  private void finish() {
+    if ( !finished ) {
+      finished = true;
+      finishRunning();
+    }
+  }
+
+  /**
+   * @return the fused step copy
+   */
+  public StepMetaDataCombi getCombi() {
+    return combi;
+  }
+
+  /**
+   * The row handler of the previous step: it writes the rows as usual and then lets the fused step process them.
+   */
+  static class FusedRowHandler implements RowHandler {
+    private final RowHandler delegate;
+    private final FusedRunThread next;
+
+    FusedRowHandler( RowHandler delegate, FusedRunThread next ) {
+      this.delegate = delegate;
+      this.next = next;
+    }
+
+    @Override
+    public Object[] getRow() throws KettleException {
+      return delegate.getRow();
+    }
+
+    @Override
+    public List<Object[]> getRows( int max ) throws KettleException {
+      return delegate.getRows( max );
+    }
+
+    @Override
+    public Object[] getRowFrom( RowSet rowSet ) throws KettleStepException {
+      return delegate.getRowFrom( rowSet );
+    }
+
+    @Override
+    public void putRow( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+      delegate.putRow( rowMeta, row );
+      next.processAvailableRows();
+    }
+
+    @Override
+    public void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+      delegate.putRows( rowMeta, rows );
+      next.processAvailableRows();
+    }
+
+    @Override
+    public void putRowTo( RowMetaInterface rowMeta, Object[] row, RowSet rowSet ) throws KettleStepException {
+      delegate.putRowTo( rowMeta, row, rowSet );
+      next.processAvailableRows();
+    }
+
+    @Override
+    public void putError( RowMetaInterface rowMeta, Object[] row, long nrErrors, String errorDescriptions,
+      String fieldNames, String errorCodes ) throws KettleStepException {
+      delegate.putError( rowMeta, row, nrErrors, errorDescriptions, fieldNames, errorCodes );
+    }
+  }
+}
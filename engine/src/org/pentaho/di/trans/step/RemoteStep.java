@@ -37,8 +37,6 @@ import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.spec.InvalidKeySpecException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
@@ -46,12 +44,15 @@ import javax.crypto.CipherOutputStream;
 
 import org.pentaho.di.core.BlockingRowSet;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.SocketCompression;
 import org.pentaho.di.core.encryption.CertificateGenEncryptUtil;
 import org.pentaho.di.core.exception.KettleEOFException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
+import org.pentaho.di.core.row.codec.RowCodecFactory;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.core.xml.XMLInterface;
 import org.pentaho.di.www.SocketRepository;
@@ -105,16 +106,19 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
   private int bufferSize;
   private boolean compressingStreams;
 
+  /** The name of the compression provider, GZIP if empty */
+  private String compressionType;
+
   private boolean encryptingStreams;
   private byte[] key;
   private CipherInputStream cipherInputStream;
   private CipherOutputStream cipherOutputStream;
 
-  private GZIPOutputStream gzipOutputStream;
+  private OutputStream compressionOutputStream;
 
   private String sourceSlaveServerName;
 
-  private GZIPInputStream gzipInputStream;
+  private InputStream compressionInputStream;
 
   private BufferedInputStream bufferedInputStream;
 
@@ -180,6 +184,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     xml.append( XMLHandler.addTagValue( "port", port, false ) );
     xml.append( XMLHandler.addTagValue( "buffer_size", bufferSize, false ) );
     xml.append( XMLHandler.addTagValue( "compressed_streams", compressingStreams, false ) );
+    xml.append( XMLHandler.addTagValue( "compression_type", compressionType, false ) );
 
     xml.append( XMLHandler.addTagValue( "source_step_name", sourceStep, false ) );
     xml.append( XMLHandler.addTagValue( "source_step_copy", sourceStepCopyNr, false ) );
@@ -213,6 +218,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     port = XMLHandler.getTagValue( node, "port" );
     bufferSize = Integer.parseInt( XMLHandler.getTagValue( node, "buffer_size" ) );
     compressingStreams = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "compressed_streams" ) );
+    compressionType = XMLHandler.getTagValue( node, "compression_type" );
 
     sourceStep = XMLHandler.getTagValue( node, "source_step_name" );
     sourceStepCopyNr = Integer.parseInt( XMLHandler.getTagValue( node, "source_step_copy" ) );
@@ -352,8 +358,8 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
           OutputStream socketOut = socket.getOutputStream();
 
           if ( compressingStreams ) {
-            gzipOutputStream = new GZIPOutputStream( socketOut, 50000 );
-            bufferedOutputStream = new BufferedOutputStream( gzipOutputStream, bufferSize );
+            compressionOutputStream = SocketCompression.createOutputStream( compressionType, socketOut, 50000 );
+            bufferedOutputStream = new BufferedOutputStream( compressionOutputStream, bufferSize );
           } else {
             bufferedOutputStream = new BufferedOutputStream( socketOut, bufferSize );
           }
@@ -388,8 +394,11 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
           // get a row of data...
           Object[] rowData = baseStep.getRowFrom( rowSet );
+          RowCodec rowCodec = null;
           if ( rowData != null ) {
-            rowSet.getRowMeta().writeMeta( outputStream );
+            rowCodec =
+              RowCodecFactory.createCodec( RowCodecFactory.getCodecName( baseStep ), rowSet.getRowMeta() );
+            RowCodecFactory.writeRowMeta( outputStream, rowCodec );
           }
 
           // Send that row to the remote step
@@ -401,7 +410,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
             // Write the row to the remote step via the output stream....
             //
-            rowSet.getRowMeta().writeData( outputStream, rowData );
+            rowCodec.writeRow( outputStream, rowData );
             baseStep.incrementLinesOutput();
 
             if ( baseStep.log.isDebug() ) {
@@ -412,7 +421,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
           if ( compressingStreams ) {
             outputStream.flush();
-            gzipOutputStream.finish();
+            SocketCompression.finish( compressionOutputStream );
           } else {
             outputStream.flush();
           }
@@ -439,8 +448,8 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
                 cipherOutputStream.close();
               }
               bufferedOutputStream.close();
-              if ( gzipOutputStream != null ) {
-                gzipOutputStream.close();
+              if ( compressionOutputStream != null ) {
+                compressionOutputStream.close();
               }
             }
           } catch ( Exception e ) {
@@ -450,7 +459,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
           }
           outputStream = null;
           bufferedOutputStream = null;
-          gzipOutputStream = null;
+          compressionOutputStream = null;
           cipherOutputStream = null;
 
           //
@@ -491,9 +500,9 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
           bufferedInputStream.close();
           bufferedInputStream = null;
         }
-        if ( gzipInputStream != null ) {
-          gzipInputStream.close();
-          gzipInputStream = null;
+        if ( compressionInputStream != null ) {
+          compressionInputStream.close();
+          compressionInputStream = null;
         }
         if ( cipherInputStream != null ) {
           cipherInputStream.close();
@@ -503,9 +512,9 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
           inputStream.close();
           inputStream = null;
         }
-        if ( gzipOutputStream != null ) {
-          gzipOutputStream.close();
-          gzipOutputStream = null;
+        if ( compressionOutputStream != null ) {
+          compressionOutputStream.close();
+          compressionOutputStream = null;
         }
         if ( bufferedOutputStream != null ) {
           bufferedOutputStream.close();
@@ -525,12 +534,12 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     }
   }
 
-  private Object[] getRowOfData( RowMetaInterface rowMeta ) throws KettleFileException {
+  private Object[] getRowOfData( RowCodec rowCodec ) throws KettleFileException {
     Object[] rowData = null;
 
     while ( !baseStep.isStopped() && rowData == null ) {
       try {
-        rowData = rowMeta.readData( inputStream );
+        rowData = rowCodec.readRow( inputStream );
       } catch ( SocketTimeoutException e ) {
         rowData = null; // try again.
       }
@@ -579,8 +588,9 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
         InputStream socketStream = socket.getInputStream();
         if ( compressingStreams ) {
-          gzipInputStream = new GZIPInputStream( socketStream );
-          bufferedInputStream = new BufferedInputStream( gzipInputStream, bufferSize );
+          compressionInputStream =
+            SocketCompression.createInputStream( compressionType, socketStream, toString() + " (decompression)" );
+          bufferedInputStream = new BufferedInputStream( compressionInputStream, bufferSize );
         } else {
           bufferedInputStream = new BufferedInputStream( socketStream, bufferSize );
         }
@@ -666,24 +676,25 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
       public void run() {
         try {
 
-          // First read the row meta data from the socket...
+          // First read the row meta data from the socket, preceded by the header of the row codec the writer uses
           //
-          RowMetaInterface rowMeta = null;
-          while ( !baseStep.isStopped() && rowMeta == null ) {
+          RowCodec rowCodec = null;
+          while ( !baseStep.isStopped() && rowCodec == null ) {
             try {
-              rowMeta = new RowMeta( inputStream );
+              rowCodec = RowCodecFactory.readRowMeta( inputStream );
             } catch ( SocketTimeoutException e ) {
-              rowMeta = null;
+              rowCodec = null;
             }
           }
 
-          if ( rowMeta == null ) {
+          if ( rowCodec == null ) {
             throw new KettleEOFException(); // leave now.
           }
+          RowMetaInterface rowMeta = rowCodec.getRowMeta();
 
           // And a first row of data...
           //
-          Object[] rowData = getRowOfData( rowMeta );
+          Object[] rowData = getRowOfData( rowCodec );
 
           // Now get the data itself, row by row...
           //
@@ -697,7 +708,7 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
 
             baseStep.putRowTo( rowMeta, rowData, rowSet );
             baseStep.decrementLinesWritten();
-            rowData = getRowOfData( rowMeta );
+            rowData = getRowOfData( rowCodec );
           }
         } catch ( KettleEOFException e ) {
           // Nothing, we're simply done reading...
@@ -759,14 +770,14 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
             }
           }
           bufferedInputStream = null;
-          if ( gzipInputStream != null ) {
+          if ( compressionInputStream != null ) {
             try {
-              gzipInputStream.close();
+              compressionInputStream.close();
             } catch ( Exception e ) {
               baseStep.logError( "Error closing input stream on socket connection to remote step", e );
             }
           }
-          gzipInputStream = null;
+          compressionInputStream = null;
           baseStep.logDetailed( "Closed connection to server socket to read rows from remote step on server "
             + realHostname + " port " + portNumber + " - Local port=" + socket.getLocalPort() );
         }
@@ -886,6 +897,21 @@ public class RemoteStep implements Cloneable, XMLInterface, Comparable<RemoteSte
     this.compressingStreams = compressingStreams;
   }
 
+  /**
+   * @return the name of the compression provider used on compressed streams, GZIP if empty
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider used on compressed streams, GZIP if empty
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
   /**
    * @return the remoteHostname
    */
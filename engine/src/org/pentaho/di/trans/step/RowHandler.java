@@ -24,6 +24,9 @@
 
 package org.pentaho.di.trans.step;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -52,6 +55,30 @@ public interface RowHandler {
   void putError( RowMetaInterface rowMeta, Object[] row, long nrErrors, String errorDescriptions,
                  String fieldNames, String errorCodes ) throws KettleStepException;
 
+  /**
+   * Handles a batch of rows, by default one row at a time.
+   */
+  default void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleStepException {
+    for ( Object[] row : rows ) {
+      putRow( rowMeta, row );
+    }
+  }
+
+  /**
+   * Gets a batch of at most max rows, by default just the one row.
+   *
+   * @return the rows or null if no more rows are expected.
+   */
+  default List<Object[]> getRows( int max ) throws KettleException {
+    Object[] row = getRow();
+    if ( row == null ) {
+      return null;
+    }
+    List<Object[]> rows = new ArrayList<Object[]>( 1 );
+    rows.add( row );
+    return rows;
+  }
+
   default void putRowTo( RowMetaInterface rowMeta, Object[] row, RowSet rowSet )
     throws KettleStepException {
     throw new UnsupportedOperationException(
@@ -0,0 +1,159 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.di.core.QueueRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.TransMeta;
+
+/**
+ * Fuses chains of cheap row-by-row steps so they run on the thread of the first step of the chain. A hop between two
+ * single step copies is fused when the target is one of the row-by-row steps below, the source is one of those or one
+ * of the simple input steps, the hop is the only input of the target and the only output of the source, and neither
+ * step is partitioned, clustered or handles errors. The row set
+ * of a fused hop becomes a {@link QueueRowSet} and the source step calls processRow() of the target right after
+ * writing to it, much like the {@link org.pentaho.di.trans.SingleThreadedTransExecutor} does for whole
+ * transformations.
+ */
+public class StepFusion {
+
+  /**
+   * The steps that do a little work on every row and write the rows right away.
+   */
+  private static final Set<String> FUSIBLE_STEP_IDS = new HashSet<String>( Arrays.asList( "Dummy", "SelectValues",
+    "Calculator", "Constant", "FilterRows", "JavaFilter", "NullIf", "IfNull", "SetValueConstant", "SetValueField",
+    "ReplaceString", "StringCut", "StringOperations", "ValueMapper", "NumberRange", "ConcatFields", "CheckSum",
+    "FieldSplitter", "Sequence" ) );
+
+  /**
+   * The input steps that write every row from their own thread as soon as it's read. Other steps can write from other
+   * threads (Mapping, Socket reader) or hold on to rows, and the fused step only runs when the source writes a row.
+   */
+  private static final Set<String> FUSIBLE_INPUT_STEP_IDS = new HashSet<String>( Arrays.asList( "RowGenerator",
+    "DataGrid", "TableInput", "CsvInput" ) );
+
+  private StepFusion() {
+  }
+
+  /**
+   * Fuses the hops of the transformation that qualify. The steps need to be allocated, but not yet started.
+   *
+   * @param transMeta
+   *          the transformation metadata
+   * @param steps
+   *          the step copies of the transformation
+   * @param rowsets
+   *          all the row sets of the transformation, the row sets of fused hops are replaced
+   * @return the fused steps by the step copy whose thread runs them
+   */
+  public static Map<StepMetaDataCombi, FusedRunThread> fuse( TransMeta transMeta, List<StepMetaDataCombi> steps,
+    List<RowSet> rowsets ) {
+    Map<StepMetaDataCombi, FusedRunThread> fused = new LinkedHashMap<StepMetaDataCombi, FusedRunThread>();
+    Map<StepMetaDataCombi, FusedRunThread> fusedTargets = new LinkedHashMap<StepMetaDataCombi, FusedRunThread>();
+
+    for ( StepMetaDataCombi target : steps ) {
+      if ( !isFusibleTarget( transMeta, target ) ) {
+        continue;
+      }
+      RowSet rowSet = target.step.getInputRowSets().get( 0 );
+      StepMetaDataCombi source = findCombi( steps, rowSet.getOriginStepName(), rowSet.getOriginStepCopy() );
+      if ( source == null || !isFusibleSource( transMeta, source ) ) {
+        continue;
+      }
+
+      // Only the source thread reads and writes the row set from now on
+      //
+      QueueRowSet queueRowSet = new QueueRowSet();
+      queueRowSet.setThreadNameFromToCopy( rowSet.getOriginStepName(), rowSet.getOriginStepCopy(), rowSet
+        .getDestinationStepName(), rowSet.getDestinationStepCopy() );
+      replace( source.step.getOutputRowSets(), rowSet, queueRowSet );
+      replace( target.step.getInputRowSets(), rowSet, queueRowSet );
+      replace( rowsets, rowSet, queueRowSet );
+
+      FusedRunThread fusedRunThread = new FusedRunThread( target, queueRowSet );
+      BaseStep sourceStep = (BaseStep) source.step;
+      sourceStep.setRowHandler( new FusedRunThread.FusedRowHandler( sourceStep.getRowHandler(), fusedRunThread ) );
+
+      // With a row set that never fills up there's no point in sleeping
+      //
+      target.step.setUsingThreadPriorityManagment( false );
+
+      fused.put( source, fusedRunThread );
+      fusedTargets.put( target, fusedRunThread );
+    }
+
+    // Chains: the fused step finishes the step fused to it
+    //
+    for ( Map.Entry<StepMetaDataCombi, FusedRunThread> entry : fused.entrySet() ) {
+      FusedRunThread sourceRunThread = fusedTargets.get( entry.getKey() );
+      if ( sourceRunThread != null ) {
+        sourceRunThread.setFusedStep( entry.getValue() );
+      }
+    }
+    return fused;
+  }
+
+  private static boolean isFusibleTarget( TransMeta transMeta, StepMetaDataCombi target ) {
+    StepMeta stepMeta = target.stepMeta;
+    return FUSIBLE_STEP_IDS.contains( stepMeta.getStepID() ) && isSingleLocalCopy( stepMeta )
+      && target.step.getInputRowSets().size() == 1 && transMeta.findPreviousSteps( stepMeta, true ).size() == 1
+      && stepMeta.getRemoteInputSteps().isEmpty();
+  }
+
+  private static boolean isFusibleSource( TransMeta transMeta, StepMetaDataCombi source ) {
+    StepMeta stepMeta = source.stepMeta;
+    String stepId = stepMeta.getStepID();
+    return ( FUSIBLE_STEP_IDS.contains( stepId ) || FUSIBLE_INPUT_STEP_IDS.contains( stepId ) )
+      && source.step instanceof BaseStep && isSingleLocalCopy( stepMeta )
+      && source.step.getOutputRowSets().size() == 1 && transMeta.findNextSteps( stepMeta ).size() == 1
+      && stepMeta.getRemoteOutputSteps().isEmpty();
+  }
+
+  private static boolean isSingleLocalCopy( StepMeta stepMeta ) {
+    return stepMeta.getCopies() == 1 && !stepMeta.isPartitioned() && !stepMeta.isClustered()
+      && !stepMeta.isDoingErrorHandling();
+  }
+
+  private static StepMetaDataCombi findCombi( List<StepMetaDataCombi> steps, String stepname, int copy ) {
+    for ( StepMetaDataCombi combi : steps ) {
+      if ( combi.stepname.equals( stepname ) && combi.copy == copy ) {
+        return combi;
+      }
+    }
+    return null;
+  }
+
+  private static void replace( List<RowSet> list, RowSet rowSet, RowSet replacement ) {
+    int index = list.indexOf( rowSet );
+    if ( index >= 0 ) {
+      list.set( index, replacement );
+    }
+  }
+}
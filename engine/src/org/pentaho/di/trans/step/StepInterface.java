@@ -22,11 +22,13 @@
 
 package org.pentaho.di.trans.step;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.cache.CacheStatistics;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.logging.HasLogChannelInterface;
@@ -245,6 +247,45 @@ public interface StepInterface extends VariableSpace, HasLogChannelInterface {
    */
   public Object[] getRow() throws KettleException;
 
+  /**
+   * Put a number of rows with the same layout on the destination rowsets in one go.
+   *
+   * @param rowMeta
+   *          The description of the rows
+   * @param rows
+   *          The rows to send to the destinations steps
+   */
+  public default void putRows( RowMetaInterface rowMeta, List<Object[]> rows ) throws KettleException {
+    for ( Object[] row : rows ) {
+      putRow( rowMeta, row );
+    }
+  }
+
+  /**
+   * Get a number of rows from the source step(s) in one go. This waits for a first row to arrive, after that only
+   * the rows that are immediately available are returned.
+   *
+   * @param max
+   *          the maximum number of rows to return
+   * @return a list with at least one row from the source step(s) or null if there are no more rows to be expected.
+   */
+  public default List<Object[]> getRows( int max ) throws KettleException {
+    Object[] row = getRow();
+    if ( row == null ) {
+      return null;
+    }
+    List<Object[]> rows = new ArrayList<Object[]>( 1 );
+    rows.add( row );
+    return rows;
+  }
+
+  /**
+   * @return the hit, miss and eviction counters of the lookup cache of this step or null if the step has no cache.
+   */
+  public default CacheStatistics getCacheStatistics() {
+    return null;
+  }
+
   /**
    * Signal output done to destination steps
    */
@@ -22,6 +22,8 @@
 
 package org.pentaho.di.trans.step;
 
+import org.pentaho.di.core.cache.CacheStatistics;
+
 public class StepMetaDataCombi {
   public StepMeta stepMeta;
   public String stepname;
@@ -31,6 +33,13 @@ public class StepMetaDataCombi {
   public StepMetaInterface meta;
   public StepDataInterface data;
 
+  /**
+   * @return the counters of the lookup cache of the step or null if the step has no cache or isn't initialized yet.
+   */
+  public CacheStatistics getCacheStatistics() {
+    return step == null ? null : step.getCacheStatistics();
+  }
+
   public String toString() {
     return step.toString();
   }
@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.ScheduledRowSet;
+import org.pentaho.di.core.util.EnvUtil;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.trans.StepWithMappingMeta;
+
+/**
+ * Runs step copies as {@link StepTask}s on a fixed, work-stealing pool of threads that is shared by all the
+ * transformations in this JVM. A step task only runs while it has rows to read and room to write them, so a waiting
+ * step doesn't hold on to a thread.<br>
+ * <br>
+ * The pool size is set with the {@link Const#KETTLE_STEP_SCHEDULER_THREADS} system property and defaults to the number
+ * of available processors.
+ */
+public class StepScheduler {
+
+  /**
+   * The steps that wait for other steps, sockets or time inside processRow(). These keep a thread of their own.
+   */
+  private static final Set<String> UNSCHEDULED_STEP_IDS = new HashSet<String>( Arrays.asList( "Delay",
+    "BlockUntilStepsFinish", "StepsMetrics", "SocketReader", "SocketWriter" ) );
+
+  /**
+   * The steps that keep state in the thread they run on. The JavaScript steps enter a Rhino context in processRow() and
+   * leave it in dispose(), both need to happen on the same thread and no other step may use that context.
+   */
+  private static final Set<String> THREAD_BOUND_STEP_IDS = new HashSet<String>( Arrays.asList( "ScriptValueMod",
+    "Script" ) );
+
+  private static StepScheduler instance;
+
+  private final ForkJoinPool pool;
+
+  public StepScheduler( int parallelism ) {
+    pool = new ForkJoinPool( parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+      @Override
+      public ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+        thread.setName( "Kettle step scheduler - " + thread.getPoolIndex() );
+        return thread;
+      }
+    }, null, true );
+  }
+
+  /**
+   * @return the step scheduler shared by all transformations
+   */
+  public static synchronized StepScheduler getInstance() {
+    if ( instance == null ) {
+      int parallelism =
+        Const.toInt( EnvUtil.getSystemProperty( Const.KETTLE_STEP_SCHEDULER_THREADS ), Runtime.getRuntime()
+          .availableProcessors() );
+      instance = new StepScheduler( Math.max( 1, parallelism ) );
+    }
+    return instance;
+  }
+
+  /**
+   * See if a step copy can run as a task. Steps that run sub-transformations or jobs, exchange rows with remote steps,
+   * wait inside processRow() for something other than rows or keep state in their thread, as well as steps with row
+   * sets that don't notify the scheduler, need a thread of their own. The
+   * {@link Const#KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS} system property adds more steps to keep on their own thread.
+   *
+   * @param combi
+   *          the initialized step copy
+   * @return true if the step copy can run on the scheduler
+   */
+  public static boolean canSchedule( StepMetaDataCombi combi ) {
+    StepMeta stepMeta = combi.stepMeta;
+    if ( combi.meta instanceof StepWithMappingMeta || stepMeta.isMapping() || stepMeta.isSingleThreader()
+      || stepMeta.isEtlMetaInject() || stepMeta.isJobExecutor() || stepMeta.isMappingInput()
+      || stepMeta.isMappingOutput() || UNSCHEDULED_STEP_IDS.contains( stepMeta.getStepID() )
+      || THREAD_BOUND_STEP_IDS.contains( stepMeta.getStepID() ) || isExcluded( stepMeta.getStepID() ) ) {
+      return false;
+    }
+    if ( !stepMeta.getRemoteInputSteps().isEmpty() || !stepMeta.getRemoteOutputSteps().isEmpty() ) {
+      return false;
+    }
+    for ( RowSet rowSet : combi.step.getInputRowSets() ) {
+      if ( !( rowSet instanceof ScheduledRowSet ) ) {
+        return false;
+      }
+    }
+    for ( RowSet rowSet : combi.step.getOutputRowSets() ) {
+      if ( !( rowSet instanceof ScheduledRowSet ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isExcluded( String stepId ) {
+    String excluded = EnvUtil.getSystemProperty( Const.KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS );
+    if ( Utils.isEmpty( excluded ) || stepId == null ) {
+      return false;
+    }
+    for ( String id : excluded.split( "," ) ) {
+      if ( stepId.equals( id.trim() ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the task on the pool. From a thread of the pool the task goes to the local queue of that thread, where idle
+   * threads can steal it.
+   *
+   * @param task
+   *          the task to run
+   * @return the task as it was handed to the pool
+   */
+  public ForkJoinTask<?> execute( Runnable task ) {
+    ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt( task );
+    if ( ForkJoinTask.getPool() == pool ) {
+      forkJoinTask.fork();
+    } else {
+      pool.execute( forkJoinTask );
+    }
+    return forkJoinTask;
+  }
+
+  /**
+   * @return the number of threads the pool tries to keep running
+   */
+  public int getParallelism() {
+    return pool.getParallelism();
+  }
+}
@@ -33,6 +33,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.owasp.encoder.Encode;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.CacheStatistics;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -61,6 +62,14 @@ public class StepStatus {
   private boolean stopped;
   private boolean paused;
 
+  // The lookup cache counters, -1 if the step has no cache
+  //
+  private long cacheHits = -1L;
+  private long cacheMisses = -1L;
+  private long cacheEvictions = -1L;
+  private long cacheEntries = -1L;
+  private long cacheBytes = -1L;
+
   private RowMetaInterface sampleRowMeta;
   private List<Object[]> sampleRows;
 
@@ -103,6 +112,15 @@ public class StepStatus {
       baseStep.isRunning() ? "   " + baseStep.rowsetInputSize() + "/" + baseStep.rowsetOutputSize() : "-";
     this.stopped = baseStep.isStopped();
     this.paused = baseStep.isPaused();
+
+    CacheStatistics cacheStatistics = baseStep.getCacheStatistics();
+    if ( cacheStatistics != null ) {
+      this.cacheHits = cacheStatistics.getHits();
+      this.cacheMisses = cacheStatistics.getMisses();
+      this.cacheEvictions = cacheStatistics.getEvictions();
+      this.cacheEntries = cacheStatistics.getEntries();
+      this.cacheBytes = cacheStatistics.getWeight();
+    }
   }
 
   public String getHTMLTableRow( boolean urlInStepname ) {
@@ -135,6 +153,13 @@ public class StepStatus {
       xml.append( XMLHandler.addTagValue( "priority", priority, false ) );
       xml.append( XMLHandler.addTagValue( "stopped", stopped, false ) );
       xml.append( XMLHandler.addTagValue( "paused", paused, false ) );
+      if ( hasCacheStatistics() ) {
+        xml.append( XMLHandler.addTagValue( "cacheHits", cacheHits, false ) );
+        xml.append( XMLHandler.addTagValue( "cacheMisses", cacheMisses, false ) );
+        xml.append( XMLHandler.addTagValue( "cacheEvictions", cacheEvictions, false ) );
+        xml.append( XMLHandler.addTagValue( "cacheEntries", cacheEntries, false ) );
+        xml.append( XMLHandler.addTagValue( "cacheBytes", cacheBytes, false ) );
+      }
 
       if ( sampleRowMeta != null ) {
         xml.append( XMLHandler.openTag( "samples" ) );
@@ -176,6 +201,12 @@ public class StepStatus {
     priority = XMLHandler.getTagValue( node, "priority" );
     stopped = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "stopped" ) );
     paused = "Y".equalsIgnoreCase( XMLHandler.getTagValue( node, "paused" ) );
+    // Older servers don't send the cache counters
+    cacheHits = Const.toLong( XMLHandler.getTagValue( node, "cacheHits" ), -1L );
+    cacheMisses = Const.toLong( XMLHandler.getTagValue( node, "cacheMisses" ), -1L );
+    cacheEvictions = Const.toLong( XMLHandler.getTagValue( node, "cacheEvictions" ), -1L );
+    cacheEntries = Const.toLong( XMLHandler.getTagValue( node, "cacheEntries" ), -1L );
+    cacheBytes = Const.toLong( XMLHandler.getTagValue( node, "cacheBytes" ), -1L );
 
     Node samplesNode = XMLHandler.getSubNode( node, "samples" );
     if ( samplesNode != null ) {
@@ -482,6 +513,88 @@ public class StepStatus {
     this.paused = paused;
   }
 
+  /**
+   * @return true if the step has a lookup cache and the cache counters are filled in
+   */
+  public boolean hasCacheStatistics() {
+    return cacheHits >= 0;
+  }
+
+  /**
+   * @return the number of lookups found in the cache of the step, -1 if the step has no cache
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * @param cacheHits
+   *          the cacheHits to set
+   */
+  public void setCacheHits( long cacheHits ) {
+    this.cacheHits = cacheHits;
+  }
+
+  /**
+   * @return the number of lookups not found in the cache of the step, -1 if the step has no cache
+   */
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * @param cacheMisses
+   *          the cacheMisses to set
+   */
+  public void setCacheMisses( long cacheMisses ) {
+    this.cacheMisses = cacheMisses;
+  }
+
+  /**
+   * @return the number of entries evicted from the cache of the step, -1 if the step has no cache
+   */
+  public long getCacheEvictions() {
+    return cacheEvictions;
+  }
+
+  /**
+   * @param cacheEvictions
+   *          the cacheEvictions to set
+   */
+  public void setCacheEvictions( long cacheEvictions ) {
+    this.cacheEvictions = cacheEvictions;
+  }
+
+  /**
+   * @return the number of entries in the cache of the step, -1 if the step has no cache
+   */
+  public long getCacheEntries() {
+    return cacheEntries;
+  }
+
+  /**
+   * @param cacheEntries
+   *          the cacheEntries to set
+   */
+  public void setCacheEntries( long cacheEntries ) {
+    this.cacheEntries = cacheEntries;
+  }
+
+  /**
+   * @return the estimated number of bytes used by the cache of the step, -1 if the step has no cache
+   */
+  public long getCacheBytes() {
+    return cacheBytes;
+  }
+
+  /**
+   * @param cacheBytes
+   *          the cacheBytes to set
+   */
+  public void setCacheBytes( long cacheBytes ) {
+    this.cacheBytes = cacheBytes;
+  }
+
   public RowMetaInterface getSampleRowMeta() {
     return sampleRowMeta;
   }
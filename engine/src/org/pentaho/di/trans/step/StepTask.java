@@ -0,0 +1,177 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.ScheduledRowSet;
+
+/**
+ * Runs a step copy as a cooperative task on the {@link StepScheduler} instead of on a thread of its own. The task calls
+ * processRow() as long as there are rows (or finished row sets) on input and no output row set is full, then gives the
+ * thread back. The row sets wake the task up again when rows arrive or room frees up.
+ */
+public class StepTask extends RunThread {
+
+  /** The number of processRow() calls after which the task goes to the back of the queue to let other steps run */
+  private static final int MAX_ROWS_PER_RUN = 1000;
+
+  private static final int IDLE = 0;
+  private static final int SCHEDULED = 1;
+  private static final int RUNNING = 2;
+  private static final int RUNNING_SIGNALLED = 3;
+  private static final int FINISHED = 4;
+
+  private final StepScheduler scheduler;
+  private final AtomicInteger state;
+  private final Runnable wakeUpListener;
+  private boolean started;
+
+  public StepTask( StepScheduler scheduler, StepMetaDataCombi combi ) {
+    super( combi );
+    this.scheduler = scheduler;
+    this.state = new AtomicInteger( IDLE );
+    this.wakeUpListener = new Runnable() {
+      @Override
+      public void run() {
+        wakeUp();
+      }
+    };
+
+    for ( RowSet rowSet : step.getInputRowSets() ) {
+      ( (ScheduledRowSet) rowSet ).setReaderListener( wakeUpListener );
+    }
+    for ( RowSet rowSet : step.getOutputRowSets() ) {
+      ( (ScheduledRowSet) rowSet ).setWriterListener( wakeUpListener );
+    }
+  }
+
+  /**
+   * Puts the task on the scheduler for the first time.
+   */
+  public void start() {
+    wakeUp();
+  }
+
+  /**
+   * Makes sure the task runs (again) to look at its row sets, for example after rows arrived or the step was stopped
+   * or resumed. Does nothing if the task is already waiting to run.
+   */
+  public void wakeUp() {
+    while ( true ) {
+      int current = state.get();
+      if ( current == IDLE ) {
+        if ( state.compareAndSet( IDLE, SCHEDULED ) ) {
+          scheduler.execute( this );
+          return;
+        }
+      } else if ( current == RUNNING ) {
+        // Let the running task check again before it goes idle
+        //
+        if ( state.compareAndSet( RUNNING, RUNNING_SIGNALLED ) ) {
+          return;
+        }
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true if the step has finished
+   */
+  public boolean isFinished() {
+    return state.get() == FINISHED;
+  }
+
+  @Override
+  public void run() {
+    state.set( RUNNING );
+    boolean finished = false;
+    try {
+      if ( !started ) {
+        started = true;
+        startRunning();
+      }
+
+      int count = 0;
+      while ( !finished ) {
+        if ( !canProcessRow() ) {
+          if ( state.compareAndSet( RUNNING, IDLE ) ) {
+            return;
+          }
+          // Rows arrived while we were looking: look again
+          //
+          state.set( RUNNING );
+        } else if ( count++ >= MAX_ROWS_PER_RUN ) {
+          state.set( SCHEDULED );
+          scheduler.execute( this );
+          return;
+        } else {
+          finished = !step.processRow( meta, data ) || step.isStopped();
+        }
+      }
+    } catch ( Throwable t ) {
+      handleError( t );
+      finished = true;
+    } finally {
+      if ( finished ) {
+        state.set( FINISHED );
+        finishRunning();
+      }
+    }
+  }
+
+  /**
+   * @return true if a call to processRow() won't have to wait for rows to read or room to write
+   */
+  protected boolean canProcessRow() {
+    if ( step.isStopped() ) {
+      return true;
+    }
+    if ( step.isPaused() ) {
+      return false;
+    }
+    for ( RowSet rowSet : step.getOutputRowSets() ) {
+      if ( rowSet instanceof ScheduledRowSet && ( (ScheduledRowSet) rowSet ).isFull() ) {
+        return false;
+      }
+    }
+    List<RowSet> inputRowSets = step.getInputRowSets();
+    if ( inputRowSets.isEmpty() ) {
+      return true;
+    }
+    boolean allDone = true;
+    for ( RowSet rowSet : inputRowSets ) {
+      if ( rowSet.size() > 0 ) {
+        return true;
+      }
+      if ( !rowSet.isDone() ) {
+        allDone = false;
+      }
+    }
+    return allDone;
+  }
+}
@@ -39,6 +39,8 @@ import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
+import org.pentaho.di.core.row.codec.RowCodecFactory;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -97,9 +99,11 @@ public class BlockingStep extends BaseStep implements StepInterface {
         // How many records do we have?
         dos.writeInt( data.buffer.size() );
 
+        RowCodec codec = RowCodecFactory.createCodec( data.rowCodec, rowMeta );
+        codec.writeHeader( dos );
         for ( p = 0; p < data.buffer.size(); p++ ) {
           // Just write the data, nothing else
-          rowMeta.writeData( dos, data.buffer.get( p ) );
+          codec.writeRow( dos, data.buffer.get( p ) );
         }
         // Close temp-file
         dos.close(); // close data stream
@@ -148,6 +152,8 @@ public class BlockingStep extends BaseStep implements StepInterface {
 
         // How long is the buffer?
         int buffersize = di.readInt();
+        data.codec = RowCodecFactory.createCodec( data.rowCodec, data.outputRowMeta );
+        data.codec.readHeader( di );
 
         if ( log.isDetailed() ) {
           logDetailed( BaseMessages.getString( PKG, "BlockingStep.Log.BufferSize1" )
@@ -157,7 +163,7 @@ public class BlockingStep extends BaseStep implements StepInterface {
 
         if ( buffersize > 0 ) {
           // Read a row from temp-file
-          data.rowbuffer.add( data.outputRowMeta.readData( di ) );
+          data.rowbuffer.add( data.codec.readRow( di ) );
         }
       } catch ( Exception e ) {
         logError( BaseMessages.getString( PKG, "BlockingStepMeta.ErrorReadingFile" ) + e.toString() );
@@ -187,7 +193,7 @@ public class BlockingStep extends BaseStep implements StepInterface {
         GZIPInputStream gzfi = ( meta.getCompress() ) ? data.gzis.get( 0 ) : null;
 
         try {
-          data.rowbuffer.add( 0, data.outputRowMeta.readData( di ) );
+          data.rowbuffer.add( 0, data.codec.readRow( di ) );
         } catch ( SocketTimeoutException e ) {
           logError( BaseMessages.getString( PKG, "System.Log.UnexpectedError" ) + " : " + e.toString() );
           logError( Const.getStackTracker( e ) );
@@ -246,7 +252,7 @@ public class BlockingStep extends BaseStep implements StepInterface {
     data = (BlockingStepData) sdi;
 
     if ( super.init( smi, sdi ) ) {
-      // Add init code here.
+      data.rowCodec = RowCodecFactory.getCodecName( this );
       return true;
     }
     return false;
@@ -30,6 +30,7 @@ import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -43,6 +44,9 @@ public class BlockingStepData extends BaseStepData implements StepDataInterface
 
   public RowMetaInterface outputRowMeta;
 
+  public String rowCodec; // the name of the codec the temp files are written with
+  public RowCodec codec; // reads the open temp file
+
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
 
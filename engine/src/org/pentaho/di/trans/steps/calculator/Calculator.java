@@ -32,6 +32,8 @@ import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueDataUtil;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.batch.ColumnVector;
+import org.pentaho.di.core.row.value.ValueMetaBase;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -71,6 +73,10 @@ public class Calculator extends BaseStep implements StepInterface {
     meta = (CalculatorMeta) smi;
     data = (CalculatorData) sdi;
 
+    if ( data.isCalculatingInBatches() ) {
+      return processRowBatch();
+    }
+
     Object[] r = getRow(); // get row, set busy!
     if ( r == null ) { // no more input to be expected...
       setOutputDone();
@@ -152,6 +158,8 @@ public class Calculator extends BaseStep implements StepInterface {
       for ( int i = 0; i < data.getTempIndexes().length; i++ ) {
         data.getTempIndexes()[i] = tempIndexes.get( i );
       }
+
+      data.setCalculatingInBatches( isCalculatingInBatches() );
     }
 
     if ( log.isRowLevel() ) {
@@ -159,6 +167,55 @@ public class Calculator extends BaseStep implements StepInterface {
         + getLinesRead() + " : " + getInputRowMeta().getString( r ) );
     }
 
+    putCalculatedRow( r );
+    return true;
+  }
+
+  /**
+   * Calculates the fields of all the rows that are available at once, see {@link #isCalculatingInBatches()}.
+   *
+   * @return false if no more rows are expected
+   */
+  private boolean processRowBatch() throws KettleException {
+    List<Object[]> rows = getRows( getRowBatchSize() );
+    if ( rows == null ) { // no more input to be expected...
+      setOutputDone();
+      data.clearValuesMetaMapping();
+      return false;
+    }
+
+    List<Object[]> outputRows;
+    try {
+      outputRows = calcFields( getInputRowMeta(), rows );
+    } catch ( KettleValueException e ) {
+      // Calculate the rows one by one so the rows in error go to the error handling or stop the step
+      //
+      for ( Object[] r : rows ) {
+        putCalculatedRow( r );
+      }
+      return true;
+    }
+    putRows( data.getOutputRowMeta(), outputRows );
+
+    long lineNr = getLinesRead() - rows.size();
+    for ( int i = 0; i < rows.size(); i++ ) {
+      lineNr++;
+      if ( checkFeedback( lineNr ) ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "Calculator.Log.Linenr", "" + lineNr ) );
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Calculates the fields of a single row and passes it on, or to the error handling if the calculation fails.
+   *
+   * @param r
+   *          the input row (data)
+   */
+  private void putCalculatedRow( Object[] r ) throws KettleException {
     try {
       Object[] row = calcFields( getInputRowMeta(), r );
       putRow( data.getOutputRowMeta(), row ); // copy row to possible alternate rowset(s).
@@ -179,6 +236,46 @@ public class Calculator extends BaseStep implements StepInterface {
         throw new KettleStepException( BaseMessages.getString( PKG, "Calculator.ErrorInStepRunning" ), e );
       }
     }
+  }
+
+  /**
+   * The rows after the first are calculated a batch at a time if all the calculations add, subtract or multiply
+   * integers or numbers. Those are done column by column on primitive values, which gives the same results as the
+   * calculation of a row in {@link #calcFields(RowMetaInterface, Object[])} does. Row level logging shows every row so
+   * it keeps the calculation row by row.
+   *
+   * @return true if the rows can be calculated in batches
+   */
+  private boolean isCalculatingInBatches() {
+    if ( log.isRowLevel() || meta.getCalculation().length == 0 ) {
+      return false;
+    }
+    RowMetaInterface calcRowMeta = data.getCalcRowMeta();
+    for ( int i = 0; i < meta.getCalculation().length; i++ ) {
+      CalculatorMetaFunction fn = meta.getCalculation()[i];
+      switch ( fn.getCalcType() ) {
+        case CalculatorMetaFunction.CALC_ADD:
+        case CalculatorMetaFunction.CALC_SUBTRACT:
+        case CalculatorMetaFunction.CALC_MULTIPLY:
+          break;
+        default:
+          return false;
+      }
+      if ( Utils.isEmpty( fn.getFieldB() ) ) {
+        return false;
+      }
+      ValueMetaInterface metaA = calcRowMeta.getValueMeta( data.getFieldIndexes()[i].indexA );
+      ValueMetaInterface metaB = calcRowMeta.getValueMeta( data.getFieldIndexes()[i].indexB );
+      ValueMetaInterface targetMeta = calcRowMeta.getValueMeta( getInputRowMeta().size() + i );
+      if ( !( metaA instanceof ValueMetaBase ) || !( metaA.isInteger() || metaA.isNumber() ) ) {
+        return false;
+      }
+      for ( ValueMetaInterface valueMeta : new ValueMetaInterface[] { metaA, metaB, targetMeta } ) {
+        if ( valueMeta.getType() != metaA.getType() || !valueMeta.isStorageNormal() ) {
+          return false;
+        }
+      }
+    }
     return true;
   }
 
@@ -634,6 +731,75 @@ public class Calculator extends BaseStep implements StepInterface {
     return RowDataUtil.removeItems( calcData, data.getTempIndexes() );
   }
 
+  /**
+   * Calculates the fields of a batch of rows, see {@link #isCalculatingInBatches()}. The arguments of a calculation
+   * are put in a vector per field and the results are put in the rows once all the calculations are done.
+   *
+   * @param inputRowMeta
+   *          the input row metadata
+   * @param rows
+   *          the input rows (data), the results are only added once all the calculations succeeded
+   * @return the rows including the calculations, excluding the temporary values
+   * @throws KettleValueException
+   *           in case there is a calculation error.
+   */
+  private List<Object[]> calcFields( RowMetaInterface inputRowMeta, List<Object[]> rows )
+    throws KettleValueException {
+    RowMetaInterface calcRowMeta = data.getCalcRowMeta();
+    List<Object[]> calcRows = new ArrayList<Object[]>( rows.size() );
+    for ( Object[] r : rows ) {
+      calcRows.add( RowDataUtil.resizeArray( r, calcRowMeta.size() ) );
+    }
+
+    ColumnVector[] columns = new ColumnVector[calcRowMeta.size()];
+    for ( int i = 0, index = inputRowMeta.size() + i; i < meta.getCalculation().length; i++, index++ ) {
+      FieldIndexes fieldIndexes = data.getFieldIndexes()[i];
+      ValueMetaBase metaA = (ValueMetaBase) calcRowMeta.getValueMeta( fieldIndexes.indexA );
+      ColumnVector vectorA = getColumn( columns, calcRows, fieldIndexes.indexA );
+      ColumnVector vectorB = getColumn( columns, calcRows, fieldIndexes.indexB );
+      ColumnVector result = ColumnVector.create( calcRowMeta.getValueMeta( index ), calcRows.size() );
+
+      switch ( meta.getCalculation()[i].getCalcType() ) {
+        case CalculatorMetaFunction.CALC_ADD: // A + B
+          metaA.plus( vectorA, vectorB, result );
+          break;
+        case CalculatorMetaFunction.CALC_SUBTRACT: // A - B
+          metaA.minus( vectorA, vectorB, result );
+          break;
+        case CalculatorMetaFunction.CALC_MULTIPLY: // A * B
+          metaA.multiply( vectorA, vectorB, result );
+          break;
+        default:
+          throw new KettleValueException( BaseMessages.getString( PKG, "Calculator.Log.NoType" )
+            + ( i + 1 ) + " : " + meta.getCalculation()[i].getFieldName() );
+      }
+      columns[index] = result;
+    }
+
+    List<Object[]> outputRows = new ArrayList<Object[]>( calcRows.size() );
+    for ( int r = 0; r < calcRows.size(); r++ ) {
+      Object[] calcData = calcRows.get( r );
+      for ( int index = inputRowMeta.size(); index < columns.length; index++ ) {
+        calcData[index] = columns[index].getObject( r );
+      }
+      outputRows.add( RowDataUtil.removeItems( calcData, data.getTempIndexes() ) );
+    }
+    return outputRows;
+  }
+
+  /**
+   * @return the vector with the values of a field of the rows, the vector is created the first time it's needed.
+   */
+  private ColumnVector getColumn( ColumnVector[] columns, List<Object[]> calcRows, int index ) {
+    if ( columns[index] == null ) {
+      columns[index] = ColumnVector.create( data.getCalcRowMeta().getValueMeta( index ), calcRows.size() );
+      for ( Object[] calcData : calcRows ) {
+        columns[index].append( calcData[index] );
+      }
+    }
+    return columns[index];
+  }
+
   @Override
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (CalculatorMeta) smi;
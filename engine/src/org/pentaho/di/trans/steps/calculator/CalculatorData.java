@@ -44,6 +44,8 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
 
   private int[] tempIndexes;
 
+  private boolean calculatingInBatches;
+
   private final Map<Integer, ValueMetaInterface> resultMetaMapping;
 
   public CalculatorData() {
@@ -83,6 +85,14 @@ public class CalculatorData extends BaseStepData implements StepDataInterface {
     this.tempIndexes = tempIndexes;
   }
 
+  public boolean isCalculatingInBatches() {
+    return calculatingInBatches;
+  }
+
+  public void setCalculatingInBatches( boolean calculatingInBatches ) {
+    this.calculatingInBatches = calculatingInBatches;
+  }
+
   public ValueMetaInterface getValueMetaFor( int resultType, String name ) throws KettlePluginException {
     // don't need any synchronization as data instance belongs only to one step instance
     ValueMetaInterface meta = resultMetaMapping.get( resultType );
@@ -25,15 +25,15 @@ package org.pentaho.di.trans.steps.combinationlookup;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.CacheStatistics;
+import org.pentaho.di.core.cache.LookupCacheFactory;
+import org.pentaho.di.core.cache.Weigher;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleConfigException;
@@ -41,6 +41,7 @@ import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMemoryEstimator;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -79,6 +80,9 @@ public class CombinationLookup extends BaseStep implements StepInterface {
   private static final int CREATION_METHOD_SEQUENCE = 2;
   private static final int CREATION_METHOD_TABLEMAX = 3;
 
+  /** The estimated heap size of the technical key in the cache */
+  private static final long BOXED_LONG_SIZE = 16L;
+
   private int techKeyCreation;
 
   private CombinationLookupMeta meta;
@@ -142,70 +146,9 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       return;
     }
 
-    // store it in the cache if needed.
+    // store it in the cache, the cache evicts the least recently or frequently used keys when it's full
     data.cache.put( new RowMetaAndData( rowMeta, row ), tk );
 
-    // check if the size is not too big...
-    // Allow for a buffer overrun of 20% and then remove those 20% in one go.
-    // Just to keep performance in track.
-    //
-    int tenPercent = meta.getCacheSize() / 10;
-    if ( meta.getCacheSize() > 0 && data.cache.size() > meta.getCacheSize() + tenPercent ) {
-      // Which cache entries do we delete here?
-      // We delete those with the lowest technical key...
-      // Those would arguably be the "oldest" dimension entries.
-      // Oh well... Nothing is going to be perfect here...
-      //
-      // Getting the lowest 20% requires some kind of sorting algorithm and I'm not sure we want to do that.
-      // Sorting is slow and even in the best case situation we need to do 2 passes over the cache entries...
-      //
-      // Perhaps we should get 20% random values and delete everything below the lowest but one TK.
-      //
-      List<RowMetaAndData> keys = new ArrayList<RowMetaAndData>( data.cache.keySet() );
-      int sizeBefore = keys.size();
-      List<Long> samples = new ArrayList<Long>();
-
-      // Take 10 sample technical keys....
-      int stepsize = keys.size() / 5;
-      if ( stepsize < 1 ) {
-        stepsize = 1; // make sure we have no endless loop
-      }
-      for ( int i = 0; i < keys.size(); i += stepsize ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          samples.add( value );
-        }
-      }
-      // Sort these 5 elements...
-      Collections.sort( samples );
-
-      // What is the smallest?
-      // Take the second, not the fist in the list, otherwise we would be removing a single entry = not good.
-      if ( samples.size() > 1 ) {
-        data.smallestCacheKey = samples.get( 1 ).longValue();
-      } else { // except when there is only one sample
-        data.smallestCacheKey = samples.get( 0 ).longValue();
-      }
-
-      // Remove anything in the cache <= smallest.
-      // This makes it almost single pass...
-      // This algorithm is not 100% correct, but I guess it beats sorting the whole cache all the time.
-      //
-      for ( int i = 0; i < keys.size(); i++ ) {
-        RowMetaAndData key = keys.get( i );
-        Long value = data.cache.get( key );
-        if ( value != null ) {
-          if ( value.longValue() <= data.smallestCacheKey ) {
-            data.cache.remove( key ); // this one has to go.
-          }
-        }
-      }
-
-      int sizeAfter = data.cache.size();
-      logDetailed( "Reduced the lookup cache from " + sizeBefore + " to " + sizeAfter + " rows." );
-    }
-
     if ( isRowLevel() ) {
       logRowlevel( "Cache store: key=" + rowMeta.getString( row ) + "    key=" + tk );
     }
@@ -672,11 +615,13 @@ public class CombinationLookup extends BaseStep implements StepInterface {
       data.realSchemaName = environmentSubstitute( meta.getSchemaName() );
       data.realTableName = environmentSubstitute( meta.getTableName() );
 
-      if ( meta.getCacheSize() > 0 ) {
-        data.cache = new HashMap<RowMetaAndData, Long>( (int) ( meta.getCacheSize() * 1.5 ) );
-      } else {
-        data.cache = new HashMap<RowMetaAndData, Long>();
-      }
+      data.cache = LookupCacheFactory.create( meta.getCachePolicy(), meta.getCacheSize(),
+        meta.getCacheMemoryLimit() * 1024L * 1024L, new Weigher<RowMetaAndData, Long>() {
+          @Override
+          public long weigh( RowMetaAndData key, Long value ) {
+            return RowMemoryEstimator.estimateRowSize( key.getRowMeta(), key.getData() ) + BOXED_LONG_SIZE;
+          }
+        } );
       if ( meta.getDatabaseMeta() == null ) {
         logError( BaseMessages.getString( PKG, "CombinationLookup.Init.ConnectionMissing", getStepname() ) );
         return false;
@@ -705,10 +650,20 @@ public class CombinationLookup extends BaseStep implements StepInterface {
     return false;
   }
 
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    return data.cache == null || meta.getCacheSize() == -1 ? null : data.cache.getStatistics();
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (CombinationLookupMeta) smi;
     data = (CombinationLookupData) sdi;
 
+    CacheStatistics cacheStatistics = getCacheStatistics();
+    if ( cacheStatistics != null && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "CombinationLookup.Log.CacheStatistics", cacheStatistics.toString() ) );
+    }
+
     if ( data.db != null ) {
       try {
         if ( !data.db.isAutoCommit() ) {
@@ -23,9 +23,9 @@
 package org.pentaho.di.trans.steps.combinationlookup;
 
 import java.sql.PreparedStatement;
-import java.util.Map;
 
 import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.LookupCache;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -39,7 +39,7 @@ public class CombinationLookupData extends BaseStepData implements StepDataInter
   public Database db;
   public int[] keynrs; // nrs in row of the keys
 
-  public Map<RowMetaAndData, Long> cache;
+  public LookupCache<RowMetaAndData, Long> cache;
 
   public RowMetaInterface outputRowMeta;
   public RowMetaInterface lookupRowMeta;
@@ -28,6 +28,7 @@ import java.util.List;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.ProvidesModelerMeta;
 import org.pentaho.di.core.SQLStatement;
@@ -130,6 +131,14 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
   @Injection( name = "CACHE_SIZE" )
   private int cacheSize;
 
+  /** The code of the eviction policy of the cache, see {@link EvictionPolicy} */
+  @Injection( name = "CACHE_POLICY" )
+  private String cachePolicy;
+
+  /** Limit the estimated size of the cache to this many MB, 0 means no limit */
+  @Injection( name = "CACHE_MEMORY_LIMIT" )
+  private int cacheMemoryLimit;
+
   /** Use the auto-increment feature of the database to generate keys. */
   @Injection( name = "AUTO_INC" )
   private boolean useAutoinc;
@@ -275,6 +284,36 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     this.replaceFields = replaceFields;
   }
 
+  /**
+   * @return the code of the eviction policy of the cache, see {@link EvictionPolicy}
+   */
+  public String getCachePolicy() {
+    return cachePolicy;
+  }
+
+  /**
+   * @param cachePolicy
+   *          the code of the eviction policy of the cache
+   */
+  public void setCachePolicy( String cachePolicy ) {
+    this.cachePolicy = cachePolicy;
+  }
+
+  /**
+   * @return the maximum size of the cache in MB, 0 if only the number of rows limits the cache
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          the maximum size of the cache in MB, 0 to only limit the number of rows
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
   /**
    * @param preloadCache true to preload the cache
    */
@@ -401,6 +440,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       commitSize = Const.toInt( commit, 0 );
       csize = XMLHandler.getTagValue( stepnode, "cache_size" );
       cacheSize = Const.toInt( csize, 0 );
+      cachePolicy = EvictionPolicy.getPolicyByCode( XMLHandler.getTagValue( stepnode, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
 
       replaceFields = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "replace" ) );
       preloadCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preloadCache" ) );
@@ -443,6 +484,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
     databaseMeta = null;
     commitSize = 100;
     cacheSize = DEFAULT_CACHE_SIZE;
+    cachePolicy = EvictionPolicy.LRU.getCode();
+    cacheMemoryLimit = 0;
     replaceFields = false;
     preloadCache = false;
     useHash = false;
@@ -490,6 +533,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
         databaseMeta == null ? "" : databaseMeta.getName() ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "commit", commitSize ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_policy", cachePolicy ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "replace", replaceFields ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "preloadCache", preloadCache ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "crc", useHash ) );
@@ -528,6 +573,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       tablename = rep.getStepAttributeString( id_step, "table" );
       commitSize = (int) rep.getStepAttributeInteger( id_step, "commit" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      cachePolicy = EvictionPolicy.getPolicyByCode( rep.getStepAttributeString( id_step, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
       replaceFields = rep.getStepAttributeBoolean( id_step, "replace" );
       preloadCache = rep.getStepAttributeBoolean( id_step, "preloadCache" );
       useHash = rep.getStepAttributeBoolean( id_step, "crc" );
@@ -561,6 +608,8 @@ public class CombinationLookupMeta extends BaseStepMeta implements StepMetaInter
       rep.saveDatabaseMetaStepAttribute( id_transformation, id_step, "id_connection", databaseMeta );
       rep.saveStepAttribute( id_transformation, id_step, "commit", commitSize );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_policy", cachePolicy );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "replace", replaceFields );
       rep.saveStepAttribute( id_transformation, id_step, "preloadCache", preloadCache );
 
@@ -139,6 +139,7 @@ public class CsvInput extends BaseStep implements StepInterface {
       }
     }
 
+    List<Object[]> outputRows = new ArrayList<Object[]>();
     try {
       Object[] outputRowData = readOneRow( false, false ); // get row, set busy!
       // no more input to be expected...
@@ -150,14 +151,28 @@ public class CsvInput extends BaseStep implements StepInterface {
           return false;
         }
       } else {
-        putRow( data.outputRowMeta, outputRowData ); // copy row to possible alternate rowset(s).
-        if ( checkFeedback( getLinesInput() ) ) {
-          if ( log.isBasic() ) {
-            logBasic( BaseMessages.getString( PKG, "CsvInput.Log.LineNumber", Long.toString( getLinesInput() ) ) );
+        // Read a batch of rows from the current file and pass them on in one go
+        //
+        int batchSize = getRowBatchSize();
+        while ( outputRowData != null ) {
+          outputRows.add( outputRowData );
+          if ( checkFeedback( getLinesInput() ) ) {
+            if ( log.isBasic() ) {
+              logBasic( BaseMessages.getString( PKG, "CsvInput.Log.LineNumber", Long.toString( getLinesInput() ) ) );
+            }
+          }
+          if ( outputRows.size() >= batchSize || ( data.parallel && data.totalBytesRead >= data.blockToRead ) ) {
+            break;
           }
+          outputRowData = readOneRow( false, false );
         }
+        putRows( data.outputRowMeta, outputRows ); // copy rows to possible alternate rowset(s).
       }
     } catch ( KettleConversionException e ) {
+      // First pass on the rows that were read correctly before this one
+      //
+      putRows( data.outputRowMeta, outputRows );
+
       if ( getStepMeta().isDoingErrorHandling() ) {
         StringBuilder errorDescriptions = new StringBuilder( 100 );
         StringBuilder errorFields = new StringBuilder( 50 );
@@ -334,11 +349,24 @@ public class CsvInput extends BaseStep implements StepInterface {
 
       data.fis = new FileInputStream( KettleVFS.getFilename( fileObject ) );
       data.fc = data.fis.getChannel();
-      data.bb = ByteBuffer.allocateDirect( data.preferredBufferSize );
+
+      if ( data.memoryMapped ) {
+        long position = data.parallel && data.bytesToSkipInFirstFile > 0 ? data.bytesToSkipInFirstFile : 0L;
+        data.scanner = new MappedCsvScanner( data.fc, position, data.delimiter[ 0 ], data.enclosure );
+
+        // Skip the rest of a row read by the previous step copy, it counts as read by this copy.
+        //
+        if ( position > 0 ) {
+          data.scanner.skipPartialRow();
+          data.totalBytesRead += data.scanner.getPosition() - position;
+        }
+      } else {
+        data.bb = ByteBuffer.allocateDirect( data.preferredBufferSize );
+      }
 
       // If we are running in parallel and we need to skip bytes in the first file, let's do so here.
       //
-      if ( data.parallel ) {
+      if ( data.parallel && !data.memoryMapped ) {
         if ( data.bytesToSkipInFirstFile > 0 ) {
           data.fc.position( data.bytesToSkipInFirstFile );
 
@@ -443,6 +471,9 @@ public class CsvInput extends BaseStep implements StepInterface {
    * @throws KettleException
    */
   private Object[] readOneRow( boolean skipRow, boolean ignoreEnclosures ) throws KettleException {
+    if ( data.memoryMapped ) {
+      return readOneRowMapped( skipRow );
+    }
 
     try {
 
@@ -718,6 +749,92 @@ public class CsvInput extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Read a single row of data from the memory mapped file. The fields are copied straight out of the mapped window.
+   *
+   * @param skipRow if row should be skipped: header row
+   * @return a row of data or null if there are no more rows
+   * @throws KettleException
+   */
+  private Object[] readOneRowMapped( boolean skipRow ) throws KettleException {
+    try {
+      int nrFields = meta.getInputFields().length;
+      long position = data.scanner.getPosition();
+      boolean found = data.scanner.readRow( nrFields, meta.isNewlinePossibleInFields() );
+      data.totalBytesRead += data.scanner.getPosition() - position;
+      if ( !found ) {
+        return null; // nothing more to read, call it a day.
+      }
+
+      Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+      List<Exception> conversionExceptions = null;
+      List<ValueMetaInterface> exceptionFields = null;
+
+      if ( !skipRow ) {
+        int fieldCount = Math.min( nrFields, data.scanner.getFieldCount() );
+        for ( int i = 0; i < fieldCount; i++ ) {
+          byte[] field = data.scanner.getField( i );
+          int escapedEnclosures = data.scanner.getEscapedEnclosures( i );
+          if ( escapedEnclosures > 0 ) {
+            if ( log.isRowLevel() ) {
+              logRowlevel( "Escaped enclosures found in " + new String( field ) );
+            }
+            field = data.removeEscapedEnclosures( field, escapedEnclosures );
+          }
+
+          if ( meta.isLazyConversionActive() ) {
+            outputRowData[ i ] = field;
+          } else {
+            ValueMetaInterface sourceValueMeta = data.convertRowMeta.getValueMeta( i );
+            try {
+              outputRowData[ i ] = sourceValueMeta.convertBinaryStringToNativeType( field );
+            } catch ( KettleValueException e ) {
+              // There was a conversion error,
+              //
+              outputRowData[ i ] = null;
+
+              if ( conversionExceptions == null ) {
+                conversionExceptions = new ArrayList<Exception>();
+                exceptionFields = new ArrayList<ValueMetaInterface>();
+              }
+
+              conversionExceptions.add( e );
+              exceptionFields.add( sourceValueMeta );
+            }
+          }
+        }
+      }
+
+      // Optionally add the current filename to the mix as well...
+      //
+      if ( meta.isIncludingFilename() && !Utils.isEmpty( meta.getFilenameField() ) ) {
+        if ( meta.isLazyConversionActive() ) {
+          outputRowData[ data.filenameFieldIndex ] = data.binaryFilename;
+        } else {
+          outputRowData[ data.filenameFieldIndex ] = data.filenames[ data.filenr - 1 ];
+        }
+      }
+
+      if ( data.isAddingRowNumber ) {
+        outputRowData[ data.rownumFieldIndex ] = data.rowNumber++;
+      }
+
+      incrementLinesInput();
+
+      if ( conversionExceptions != null && conversionExceptions.size() > 0 ) {
+        // Forward the first exception
+        //
+        throw new KettleConversionException(
+          "There were " + conversionExceptions.size() + " conversion errors on line " + getLinesInput(),
+          conversionExceptions, exceptionFields, outputRowData );
+      }
+
+      return outputRowData;
+    } catch ( IOException e ) {
+      throw new KettleFileException( "Exception reading line using memory mapped NIO", e );
+    }
+  }
+
 
   public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (CsvInputMeta) smi;
@@ -767,6 +884,12 @@ public class CsvInput extends BaseStep implements StepInterface {
 
       data.isAddingRowNumber = !Utils.isEmpty( meta.getRowNumField() );
 
+      // Scanning memory mapped windows of the file is limited to single byte delimiters and enclosures.
+      //
+      data.memoryMapped = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_CSV_INPUT_MEMORY_MAPPED, "N" ) )
+        && data.encodingType == EncodingType.SINGLE && data.delimiter.length == 1
+        && ( data.enclosure == null || data.enclosure.length == 1 );
+
       // Handle parallel reading capabilities...
       //
       data.stopReading = false;
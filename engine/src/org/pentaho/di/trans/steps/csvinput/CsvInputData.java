@@ -81,6 +81,9 @@ public class CsvInputData extends BaseStepData implements StepDataInterface {
   public PatternMatcherInterface enclosureMatcher;
   public CrLfMatcherInterface crLfMatcher;
 
+  public boolean memoryMapped;
+  public MappedCsvScanner scanner;
+
   /**
    * Data class for CsvInput step
    *
@@ -259,6 +262,7 @@ public class CsvInputData extends BaseStepData implements StepDataInterface {
   }
 
   void closeFile() throws KettleException {
+    scanner = null;
     try {
       if ( fc != null ) {
         fc.close();
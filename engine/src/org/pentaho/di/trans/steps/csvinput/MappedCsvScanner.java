@@ -0,0 +1,416 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.csvinput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scans single byte encoded CSV files through memory mapped windows of the file. Delimiters, enclosures and line ends
+ * are searched 8 bytes at a time (SWAR) and the fields of a row are kept as slices of the mapped window. Bytes are
+ * only copied when a field is asked for.
+ * <p>
+ * Lines end with CR, LF or CR+LF. Like the buffered reader of {@link CsvInput}, any two line end characters in a row
+ * make up a single line end, and an empty line after that is a row without values. The position after a row is the
+ * start of the next one.
+ */
+public class MappedCsvScanner {
+
+  public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+  private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGHS = 0x8080808080808080L;
+  private static final long CR_PATTERN = ONES * CR;
+  private static final long LF_PATTERN = ONES * LF;
+
+  private static final int ROW = 0;
+  private static final int NO_ROW = 1;
+  private static final int NEED_MORE = 2;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final byte delimiter;
+  private final long delimiterPattern;
+  private final boolean hasEnclosure;
+  private final byte enclosure;
+  private final long enclosurePattern;
+
+  private long windowSize;
+  private MappedByteBuffer buffer;
+  private ByteBuffer reader;
+  private long windowStart;
+  private int limit;
+  private int rowStart;
+
+  private int nrFields;
+  private int[] fieldStarts = new int[16];
+  private int[] fieldEnds = new int[16];
+  private int[] escapedEnclosures = new int[16];
+
+  /**
+   * @param channel   the file to scan
+   * @param position  the position in the file to start scanning at
+   * @param delimiter the field delimiter
+   * @param enclosure the field enclosure, or null if there is none
+   * @throws IOException in case the file can't be mapped
+   */
+  public MappedCsvScanner( FileChannel channel, long position, byte delimiter, byte[] enclosure ) throws IOException {
+    this( channel, position, delimiter, enclosure, DEFAULT_WINDOW_SIZE );
+  }
+
+  MappedCsvScanner( FileChannel channel, long position, byte delimiter, byte[] enclosure, long windowSize )
+    throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+    this.delimiter = delimiter;
+    this.delimiterPattern = ONES * ( delimiter & 0xFF );
+    this.hasEnclosure = enclosure != null && enclosure.length > 0;
+    this.enclosure = hasEnclosure ? enclosure[0] : 0;
+    this.enclosurePattern = ONES * ( this.enclosure & 0xFF );
+    this.windowSize = windowSize;
+    map( Math.min( position, fileSize ) );
+  }
+
+  /**
+   * @return the position in the file of the next row
+   */
+  public long getPosition() {
+    return windowStart + rowStart;
+  }
+
+  /**
+   * Scans the next row.
+   *
+   * @param maxFields               the number of fields to read, the remaining fields on the line are skipped
+   * @param newlinePossibleInFields true if a line end only ends the row in the last field
+   * @return false if there are no more rows
+   * @throws IOException in case the next window of the file can't be mapped
+   */
+  public boolean readRow( int maxFields, boolean newlinePossibleInFields ) throws IOException {
+    while ( true ) {
+      switch ( scanRow( maxFields, newlinePossibleInFields ) ) {
+        case ROW:
+          return true;
+        case NO_ROW:
+          return false;
+        default:
+          remap();
+          break;
+      }
+    }
+  }
+
+  /**
+   * Skips to the start of the next line when the current position is in the middle of a line. Enclosures are ignored.
+   *
+   * @throws IOException in case the file can't be read
+   */
+  public void skipPartialRow() throws IOException {
+    long position = getPosition();
+    if ( position == 0 ) {
+      return;
+    }
+    ByteBuffer previous = ByteBuffer.allocate( 1 );
+    channel.read( previous, position - 1 );
+    byte b = previous.get( 0 );
+    if ( b == CR ) {
+      // Between CR and LF: skip the rest of the line end
+      if ( rowStart < limit && buffer.get( rowStart ) == LF ) {
+        rowStart++;
+      }
+      return;
+    }
+    if ( b == LF ) {
+      return;
+    }
+    rowStart = findNewline( rowStart );
+    while ( rowStart >= limit && !atEndOfFile() ) {
+      map( windowStart + limit );
+      rowStart = findNewline( 0 );
+    }
+    // Also skip the line end, the position is then the start of the next row
+    if ( rowStart + 1 >= limit && !atEndOfFile() ) {
+      map( windowStart + rowStart );
+    }
+    rowStart = skipLineEnd( rowStart );
+  }
+
+  /**
+   * @return the number of fields found in the last row
+   */
+  public int getFieldCount() {
+    return nrFields;
+  }
+
+  /**
+   * Copies a field of the last row, without the enclosures around it.
+   *
+   * @param index the index of the field
+   * @return the bytes of the field
+   */
+  public byte[] getField( int index ) {
+    int start = fieldStarts[index];
+    int length = Math.max( 0, fieldEnds[index] - start );
+    byte[] field = new byte[length];
+    reader.position( start );
+    reader.get( field, 0, length );
+    return field;
+  }
+
+  /**
+   * @param index the index of the field
+   * @return the number of doubled, escaped, enclosures in a field of the last row
+   */
+  public int getEscapedEnclosures( int index ) {
+    return escapedEnclosures[index];
+  }
+
+  private int scanRow( int maxFields, boolean newlinePossibleInFields ) {
+    final boolean eof = atEndOfFile();
+    nrFields = 0;
+
+    int p = rowStart;
+    if ( p >= limit ) {
+      rowStart = limit;
+      return eof ? NO_ROW : NEED_MORE;
+    }
+
+    while ( true ) {
+      int start = p;
+      boolean enclosed = false;
+      int escaped = 0;
+
+      if ( hasEnclosure && p < limit && buffer.get( p ) == enclosure ) {
+        int q = p + 1;
+        while ( true ) {
+          q = findEnclosure( q );
+          if ( q >= limit - 1 ) {
+            // We need the byte after the enclosure to know whether it's escaped
+            if ( !eof ) {
+              return NEED_MORE;
+            }
+            // Closed at the end of the file or never closed at all
+            enclosed = q == limit - 1;
+            p = limit;
+            break;
+          }
+          if ( buffer.get( q + 1 ) == enclosure ) {
+            escaped++;
+            q += 2;
+          } else {
+            enclosed = true;
+            p = q + 1;
+            break;
+          }
+        }
+      }
+
+      boolean newlineEndsField = !newlinePossibleInFields || nrFields == maxFields - 1;
+      int end = p >= limit ? limit : findDelimiterOrNewline( p, newlineEndsField );
+      if ( end >= limit && !eof ) {
+        return NEED_MORE;
+      }
+      if ( start >= limit && nrFields > 0 ) {
+        // A delimiter at the very end of the file, the remaining fields are null
+        rowStart = limit;
+        return ROW;
+      }
+      addField( enclosed ? start + 1 : start, enclosed ? end - 1 : end, escaped );
+
+      if ( end >= limit ) {
+        rowStart = limit;
+        return ROW;
+      }
+
+      if ( buffer.get( end ) == delimiter ) {
+        p = end + 1;
+        if ( nrFields < maxFields ) {
+          continue;
+        }
+        // Skip the fields we don't need on this line, and any empty lines after it like the buffered reader does
+        end = findNewline( p );
+        int next = skipNewlines( end );
+        if ( next >= limit && !eof ) {
+          return NEED_MORE;
+        }
+        rowStart = next;
+        return ROW;
+      }
+
+      // Skip the line end, the next row starts right after
+      int next = skipLineEnd( end );
+      if ( next >= limit && !eof ) {
+        return NEED_MORE;
+      }
+      rowStart = next;
+      return ROW;
+    }
+  }
+
+  private void addField( int start, int end, int escaped ) {
+    if ( nrFields == fieldStarts.length ) {
+      int size = nrFields * 2;
+      int[] starts = new int[size];
+      int[] ends = new int[size];
+      int[] escapes = new int[size];
+      System.arraycopy( fieldStarts, 0, starts, 0, nrFields );
+      System.arraycopy( fieldEnds, 0, ends, 0, nrFields );
+      System.arraycopy( escapedEnclosures, 0, escapes, 0, nrFields );
+      fieldStarts = starts;
+      fieldEnds = ends;
+      escapedEnclosures = escapes;
+    }
+    fieldStarts[nrFields] = start;
+    fieldEnds[nrFields] = end;
+    escapedEnclosures[nrFields] = escaped;
+    nrFields++;
+  }
+
+  private boolean atEndOfFile() {
+    return windowStart + limit >= fileSize;
+  }
+
+  /**
+   * Maps the file again from the start of the current row. The window grows if the row doesn't fit.
+   */
+  private void remap() throws IOException {
+    if ( rowStart == 0 ) {
+      if ( windowSize >= MAX_WINDOW_SIZE ) {
+        throw new IOException( "A row of more than " + MAX_WINDOW_SIZE + " bytes can't be scanned" );
+      }
+      windowSize = Math.min( windowSize * 2, MAX_WINDOW_SIZE );
+    }
+    map( windowStart + rowStart );
+  }
+
+  private void map( long start ) throws IOException {
+    long size = Math.min( windowSize, fileSize - start );
+    buffer = channel.map( FileChannel.MapMode.READ_ONLY, start, size );
+    buffer.order( ByteOrder.LITTLE_ENDIAN );
+    reader = buffer.duplicate();
+    windowStart = start;
+    limit = (int) size;
+    rowStart = 0;
+  }
+
+  /**
+   * Skips one line end: a line end character, and a second one if it follows.
+   */
+  private int skipLineEnd( int p ) {
+    for ( int i = 0; i < 2 && p < limit; i++ ) {
+      byte b = buffer.get( p );
+      if ( b != CR && b != LF ) {
+        break;
+      }
+      p++;
+    }
+    return p;
+  }
+
+  private int skipNewlines( int p ) {
+    while ( p < limit ) {
+      byte b = buffer.get( p );
+      if ( b != CR && b != LF ) {
+        break;
+      }
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * @return a byte marked with its high bit for every byte in the word that equals the pattern byte. Only the lowest
+   *         marked byte is exact, which is all we need to find the first match.
+   */
+  private static long matches( long word, long pattern ) {
+    long x = word ^ pattern;
+    return ( x - ONES ) & ~x & HIGHS;
+  }
+
+  private int findDelimiterOrNewline( int p, boolean newline ) {
+    while ( p + 8 <= limit ) {
+      long word = buffer.getLong( p );
+      long found = matches( word, delimiterPattern );
+      if ( newline ) {
+        found |= matches( word, CR_PATTERN ) | matches( word, LF_PATTERN );
+      }
+      if ( found != 0 ) {
+        return p + ( Long.numberOfTrailingZeros( found ) >>> 3 );
+      }
+      p += 8;
+    }
+    while ( p < limit ) {
+      byte b = buffer.get( p );
+      if ( b == delimiter || newline && ( b == CR || b == LF ) ) {
+        return p;
+      }
+      p++;
+    }
+    return limit;
+  }
+
+  private int findNewline( int p ) {
+    while ( p + 8 <= limit ) {
+      long word = buffer.getLong( p );
+      long found = matches( word, CR_PATTERN ) | matches( word, LF_PATTERN );
+      if ( found != 0 ) {
+        return p + ( Long.numberOfTrailingZeros( found ) >>> 3 );
+      }
+      p += 8;
+    }
+    while ( p < limit ) {
+      byte b = buffer.get( p );
+      if ( b == CR || b == LF ) {
+        return p;
+      }
+      p++;
+    }
+    return limit;
+  }
+
+  private int findEnclosure( int p ) {
+    while ( p + 8 <= limit ) {
+      long found = matches( buffer.getLong( p ), enclosurePattern );
+      if ( found != 0 ) {
+        return p + ( Long.numberOfTrailingZeros( found ) >>> 3 );
+      }
+      p += 8;
+    }
+    while ( p < limit ) {
+      if ( buffer.get( p ) == enclosure ) {
+        return p;
+      }
+      p++;
+    }
+    return limit;
+  }
+}
@@ -0,0 +1,72 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2015 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.CacheStatistics;
+import org.pentaho.di.core.cache.LookupCache;
+import org.pentaho.di.core.cache.LookupCacheFactory;
+import org.pentaho.di.core.cache.Weigher;
+import org.pentaho.di.core.row.RowMemoryEstimator;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A cache for lookups with only equality conditions. It's bounded by the number of rows and the memory the rows use
+ * and evicts the entries with the policy of the step: least recently or least frequently used.
+ */
+public class BoundedCache implements DatabaseLookupData.Cache {
+
+  public static BoundedCache newCache( DatabaseLookupData data, DatabaseLookupMeta meta ) {
+    return new BoundedCache( data, meta.getCachePolicy(), meta.getCacheSize(),
+      meta.getCacheMemoryLimit() * 1024L * 1024L );
+  }
+
+  private final LookupCache<RowMetaAndData, Object[]> cache;
+
+  BoundedCache( final DatabaseLookupData data, String policy, int maxRows, long maxBytes ) {
+    Weigher<RowMetaAndData, Object[]> weigher = new Weigher<RowMetaAndData, Object[]>() {
+      @Override
+      public long weigh( RowMetaAndData key, Object[] value ) {
+        return RowMemoryEstimator.estimateRowSize( key.getRowMeta(), key.getData() )
+          + RowMemoryEstimator.estimateRowSize( data.returnMeta, value );
+      }
+    };
+    cache = LookupCacheFactory.create( policy, maxRows, maxBytes, weigher );
+  }
+
+  @Override
+  public Object[] getRowFromCache( RowMetaInterface lookupMeta, Object[] lookupRow ) {
+    return cache.get( new RowMetaAndData( lookupMeta, lookupRow ) );
+  }
+
+  @Override
+  public void storeRowInCache( DatabaseLookupMeta meta, RowMetaInterface lookupMeta, Object[] lookupRow,
+                               Object[] add ) {
+    cache.put( new RowMetaAndData( lookupMeta, lookupRow ), add );
+  }
+
+  @Override
+  public CacheStatistics getStatistics() {
+    return cache.getStatistics();
+  }
+}
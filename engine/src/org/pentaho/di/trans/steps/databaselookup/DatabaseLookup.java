@@ -22,10 +22,18 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.CacheStatistics;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
@@ -38,6 +46,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.util.ExecutorUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -59,6 +68,12 @@ import com.google.common.annotations.VisibleForTesting;
 public class DatabaseLookup extends BaseStep implements StepInterface {
   private static Class<?> PKG = DatabaseLookupMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /**
+   * A batch is also started when it holds this many rows per key of the batch size, so rows that are found in the
+   * cache don't wait too long.
+   */
+  private static final int MAX_BATCH_ROWS_PER_KEY = 10;
+
   private DatabaseLookupMeta meta;
   private DatabaseLookupData data;
 
@@ -76,8 +91,45 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
    */
   @VisibleForTesting
   synchronized Object[] lookupValues( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
-    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
+    Object[] lookupRow = getLookupRow( inputRowMeta, row );
 
+    Object[] add;
+    boolean cache_now = false;
+
+    // First, check if we looked up before
+    if ( meta.isCached() ) {
+      add = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
+    } else {
+      add = null;
+    }
+
+    if ( add == null ) {
+      if ( !( meta.isCached() && meta.isLoadingAllDataInCache() ) || data.hasDBCondition ) { // do not go to the
+        // database when all rows
+        // are in (exception LIKE
+        // operator)
+        if ( log.isRowLevel() ) {
+          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow1" )
+            + meta.getStreamKeyField1().length
+            + BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow2" )
+            + data.lookupMeta.getString( lookupRow ) );
+        }
+
+        data.db.setValuesLookup( data.lookupMeta, lookupRow );
+        // PDI-8373
+        add = data.db.getLookup( meta.isFailingOnMultipleResults(), meta.getDatabaseMeta().isMySQLVariant() );
+        cache_now = true;
+      }
+    }
+
+    return addLookupValues(
+      inputRowMeta, row, lookupRow, add, cache_now, cache_now ? data.db.getReturnRowMeta() : null );
+  }
+
+  /**
+   * Builds the row with the values to look up, converted to the types of the table fields.
+   */
+  private Object[] getLookupRow( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
     Object[] lookupRow = new Object[ data.lookupMeta.size() ];
     int lookupIndex = 0;
 
@@ -109,39 +161,20 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         lookupIndex++;
       }
     }
+    return lookupRow;
+  }
 
-    Object[] add;
-    boolean cache_now = false;
-    boolean cacheHit = false;
-
-    // First, check if we looked up before
-    if ( meta.isCached() ) {
-      add = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
-      if ( add != null ) {
-        cacheHit = true;
-      }
-    } else {
-      add = null;
-    }
-
-    if ( add == null ) {
-      if ( !( meta.isCached() && meta.isLoadingAllDataInCache() ) || data.hasDBCondition ) { // do not go to the
-        // database when all rows
-        // are in (exception LIKE
-        // operator)
-        if ( log.isRowLevel() ) {
-          logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow1" )
-            + meta.getStreamKeyField1().length
-            + BaseMessages.getString( PKG, "DatabaseLookup.Log.AddedValuesToLookupRow2" )
-            + data.lookupMeta.getString( lookupRow ) );
-        }
-
-        data.db.setValuesLookup( data.lookupMeta, lookupRow );
-        // PDI-8373
-        add = data.db.getLookup( meta.isFailingOnMultipleResults(), meta.getDatabaseMeta().isMySQLVariant() );
-        cache_now = true;
-      }
-    }
+  /**
+   * Adds the looked up values (or the defaults when nothing was found) to the input row.
+   *
+   * @param add the values found in the cache or in the database, null if nothing was found
+   * @param cache_now true if the database was queried, the result is stored in the cache
+   * @param returnedRowMeta the metadata of the values returned by the database
+   * @return the output row or null if the row was eaten or sent to the error stream
+   */
+  private Object[] addLookupValues( RowMetaInterface inputRowMeta, Object[] row, Object[] lookupRow, Object[] add,
+                                    boolean cache_now, RowMetaInterface returnedRowMeta ) throws KettleException {
+    Object[] outputRow = RowDataUtil.resizeArray( row, data.outputRowMeta.size() );
 
     if ( add == null ) { // nothing was found, unknown code: add default values
       if ( meta.isEatingRowOnLookupFailure() ) {
@@ -174,7 +207,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
 
       // Only verify the data types if the data comes from the DB, NOT when we have a cache hit
       // In that case, we already know the data type is OK.
-      if ( !cacheHit ) {
+      if ( cache_now ) {
         incrementLinesInput();
 
         int[] types = meta.getReturnValueDefaultType();
@@ -184,7 +217,7 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         // that should not be a problem.
         //
         for ( int i = 0; i < types.length; i++ ) {
-          ValueMetaInterface returned = data.db.getReturnRowMeta().getValueMeta( i );
+          ValueMetaInterface returned = returnedRowMeta.getValueMeta( i );
           ValueMetaInterface expected = data.returnMeta.getValueMeta( i );
 
           if ( returned != null && types[ i ] > 0
@@ -316,6 +349,16 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
     Object[] r = getRow(); // Get row from input rowset & set row busy!
     if ( r == null ) { // no more input to be expected...
+      if ( data.batchLookup ) {
+        try {
+          finishBatches();
+        } catch ( KettleException e ) {
+          logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
+            + e.getMessage() );
+          setErrors( 1 );
+          stopAll();
+        }
+      }
       setOutputDone();
       return false;
     }
@@ -373,7 +416,13 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       }
 
       if ( meta.isCached() ) {
-        data.cache = DefaultCache.newCache( data, meta.getCacheSize() );
+        // The bounded cache can only look up keys by equality, the other conditions need to scan the cache
+        //
+        if ( data.allEquals && !meta.isLoadingAllDataInCache() ) {
+          data.cache = BoundedCache.newCache( data, meta );
+        } else {
+          data.cache = DefaultCache.newCache( data, meta.getCacheSize() );
+        }
       }
 
       determineFieldsTypesQueryingDb();
@@ -390,6 +439,9 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         loadAllTableDataIntoTheCache();
       }
 
+      if ( meta.getBatchSize() > 1 ) {
+        initBatchLookup();
+      }
     }
 
     if ( log.isRowLevel() ) {
@@ -397,7 +449,16 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         + getInputRowMeta().getString( r ) );
     }
 
+    boolean batched = false;
     try {
+      if ( data.batchLookup ) {
+        // the row is passed on when the batch is looked up
+        addRowToBatch( getInputRowMeta(), r );
+        batched = true;
+        passOnBatches();
+        return true;
+      }
+
       // add new lookup values to the row
       Object[] outputRow = lookupValues( getInputRowMeta(), r );
 
@@ -414,7 +475,9 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
         }
       }
     } catch ( KettleException e ) {
-      if ( getStepMeta().isDoingErrorHandling() ) {
+      // Once the row is in a batch, the rows of a failed batch are sent to the error handling when it is written
+      //
+      if ( getStepMeta().isDoingErrorHandling() && !batched ) {
         putError( getInputRowMeta(), r, 1, e.getMessage(), null, "DBLOOKUPD001" );
       } else {
         logError( BaseMessages.getString( PKG, "DatabaseLookup.ERROR003.UnexpectedErrorDuringProcessing" )
@@ -429,6 +492,326 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     return true;
   }
 
+  private void initBatchLookup() throws KettleException {
+    boolean possible = !( meta.isCached() && meta.isLoadingAllDataInCache() );
+    for ( int condition : data.conditions ) {
+      possible &= condition == DatabaseLookupMeta.CONDITION_EQ;
+    }
+    if ( !possible ) {
+      logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupNotPossible" ) );
+      return;
+    }
+
+    // The database decides which strings are equal: the trailing blanks of CHAR columns or a case insensitive
+    // collation would make the keys it returns differ from the keys of the batch, so these are looked up one at a time
+    //
+    for ( ValueMetaInterface keyMeta : data.lookupMeta.getValueMetaList() ) {
+      if ( keyMeta.isString() ) {
+        logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookupNotPossibleForStrings" ) );
+        return;
+      }
+    }
+
+    int inFlight = Math.max( 1, meta.getBatchesInFlight() );
+    if ( inFlight > 1 && getTransMeta().isUsingUniqueConnections() ) {
+      // all steps share a single connection, it can only run one query at a time
+      logBasic( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchesInFlightUniqueConnections" ) );
+      inFlight = 1;
+    }
+
+    data.batchDatabases = new Database[ inFlight ];
+    data.batchDatabases[ 0 ] = data.db;
+    for ( int i = 1; i < inFlight; i++ ) {
+      data.batchDatabases[ i ] = getDatabase( meta.getDatabaseMeta() );
+      connectDatabase( data.batchDatabases[ i ] );
+    }
+    data.pendingBatches = new ArrayDeque<DatabaseLookupBatch>();
+    data.inFlightKeys = new HashMap<RowMetaAndData, DatabaseLookupBatch>();
+    data.nrBatches = 0L;
+    data.batchLookup = true;
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.BatchLookup", meta.getBatchSize(), inFlight ) );
+    }
+  }
+
+  /**
+   * Adds a row to the current batch. Its key is looked up together with the other keys of the batch, unless it's
+   * found in the cache or an earlier batch already looks it up.
+   */
+  private void addRowToBatch( RowMetaInterface inputRowMeta, Object[] row ) throws KettleException {
+    Object[] lookupRow = getLookupRow( inputRowMeta, row );
+    Object[] cachedValues = null;
+    if ( meta.isCached() ) {
+      cachedValues = data.cache.getRowFromCache( data.lookupMeta, lookupRow );
+    }
+
+    if ( data.batch == null ) {
+      data.batch = new DatabaseLookupBatch( (int) ( data.nrBatches++ % data.batchDatabases.length ) );
+    }
+
+    DatabaseLookupBatch resolver = null;
+    if ( cachedValues == null ) {
+      RowMetaAndData key = new RowMetaAndData( data.lookupMeta, lookupRow );
+      resolver = data.inFlightKeys.get( key );
+      if ( resolver == null ) {
+        resolver = data.batch;
+        resolver.addKey( key );
+        data.inFlightKeys.put( key, resolver );
+      }
+    }
+    data.batch.addEntry( new DatabaseLookupBatch.Entry( row, lookupRow, cachedValues, resolver ) );
+  }
+
+  /**
+   * Starts the lookup of the current batch once it is full and passes on the rows of the batches that are done.
+   */
+  private void passOnBatches() throws KettleException {
+    if ( data.batch.getNrKeys() >= meta.getBatchSize()
+      || data.batch.getNrRows() >= MAX_BATCH_ROWS_PER_KEY * meta.getBatchSize() ) {
+      startBatch();
+    }
+
+    // Pass on the rows of the batches that are done already
+    //
+    while ( !data.pendingBatches.isEmpty() && data.pendingBatches.peek().isDone() ) {
+      writeBatch( data.pendingBatches.poll() );
+    }
+  }
+
+  /**
+   * Looks up the keys of the current batch, in the background when more than one batch can be in flight.
+   */
+  private void startBatch() throws KettleException {
+    final DatabaseLookupBatch batch = data.batch;
+    data.batch = null;
+
+    // The oldest batch uses the connection we need, wait for it
+    //
+    while ( data.pendingBatches.size() >= data.batchDatabases.length ) {
+      writeBatch( data.pendingBatches.poll() );
+    }
+    data.pendingBatches.add( batch );
+
+    // Rows with a null in the key never match
+    //
+    final RowMetaInterface keysMeta = data.lookupMeta.clone();
+    final RowMetaInterface params = new RowMeta();
+    List<Object> values = new ArrayList<Object>();
+    int nrKeys = 0;
+    try {
+      for ( RowMetaAndData key : batch.getKeys() ) {
+        if ( hasNull( keysMeta, key.getData() ) ) {
+          continue;
+        }
+        for ( int i = 0; i < keysMeta.size(); i++ ) {
+          params.addValueMeta( keysMeta.getValueMeta( i ).clone() );
+          values.add( key.getData()[ i ] );
+        }
+        nrKeys++;
+      }
+    } catch ( KettleException e ) {
+      // Like a failed query: the rows of the batch get the error when the batch is written
+      batch.setError( e );
+      return;
+    }
+    if ( nrKeys == 0 ) {
+      return;
+    }
+
+    final String sql = getBatchLookupSql( nrKeys );
+    final Object[] paramData = values.toArray();
+    final Database db = data.batchDatabases[ batch.getSlot() ];
+
+    if ( data.batchDatabases.length == 1 ) {
+      try {
+        lookupBatch( db, batch, keysMeta, sql, params, paramData );
+      } catch ( KettleException e ) {
+        batch.setError( e );
+      }
+    } else {
+      batch.setFuture( ExecutorUtil.getExecutor().submit( new Callable<Void>() {
+        @Override
+        public Void call() throws KettleException {
+          lookupBatch( db, batch, keysMeta, sql, params, paramData );
+          return null;
+        }
+      } ) );
+    }
+  }
+
+  private boolean hasNull( RowMetaInterface rowMeta, Object[] rowData ) throws KettleException {
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      if ( rowMeta.getValueMeta( i ).isNull( rowData[ i ] ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the query of a batch and stores the first row found for every key in the batch. This can run in another
+   * thread, so it only uses the given metadata and connection.
+   */
+  private void lookupBatch( Database db, DatabaseLookupBatch batch, RowMetaInterface keysMeta, String sql,
+                            RowMetaInterface params, Object[] paramData ) throws KettleException {
+    if ( log.isRowLevel() ) {
+      logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.LookingUpBatch", batch.getNrKeys(), sql ) );
+    }
+    List<Object[]> rows = db.getRows( sql, params, paramData, ResultSet.FETCH_FORWARD, false, 0, null );
+    RowMetaInterface rowMeta = db.getReturnRowMeta();
+
+    final int keysAmount = keysMeta.size();
+    RowMetaInterface returnRowMeta = new RowMeta();
+    for ( int i = keysAmount; i < rowMeta.size(); i++ ) {
+      returnRowMeta.addValueMeta( rowMeta.getValueMeta( i ) );
+    }
+    batch.setReturnRowMeta( returnRowMeta );
+
+    for ( Object[] row : rows ) {
+      // Bring the key back to the types of the lookup row, numbers of another type or scale are still equal then
+      //
+      Object[] keyData = new Object[ keysAmount ];
+      for ( int i = 0; i < keysAmount; i++ ) {
+        ValueMetaInterface keyMeta = keysMeta.getValueMeta( i );
+        ValueMetaInterface returned = rowMeta.getValueMeta( i );
+        keyData[ i ] = keyMeta.getType() == returned.getType() ? row[ i ] : keyMeta.convertData( returned, row[ i ] );
+      }
+      RowMetaAndData key = batch.findKey( new RowMetaAndData( keysMeta, keyData ) );
+      if ( key == null ) {
+        continue;
+      }
+
+      if ( batch.getValues( key ) != null ) {
+        // the first row wins, as with a single lookup
+        if ( meta.isFailingOnMultipleResults() ) {
+          throw new KettleDatabaseException( BaseMessages.getString(
+            PKG, "DatabaseLookup.ERROR0006.MultipleResultsFound", keysMeta.getString( keyData ) ) );
+        }
+        continue;
+      }
+      batch.setValues( key, Arrays.copyOfRange( row, keysAmount, row.length ) );
+    }
+  }
+
+  /**
+   * Builds the query that looks up a number of keys at once: "key IN (?, ...)" for a single key field, otherwise
+   * "(key1 = ? AND key2 = ?) OR ...".
+   */
+  private String getBatchLookupSql( int nrKeys ) {
+    DatabaseMeta dbMeta = meta.getDatabaseMeta();
+    String[] keyFields = meta.getTableKeyField();
+
+    StringBuilder sql = new StringBuilder( "SELECT " );
+    for ( int i = 0; i < keyFields.length; i++ ) {
+      if ( i > 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( dbMeta.quoteField( keyFields[ i ] ) );
+    }
+    for ( int i = 0; i < meta.getReturnValueField().length; i++ ) {
+      sql.append( ", " ).append( dbMeta.quoteField( meta.getReturnValueField()[ i ] ) );
+    }
+    sql.append( " FROM " ).append( dbMeta.getQuotedSchemaTableCombination(
+      environmentSubstitute( meta.getSchemaName() ), environmentSubstitute( meta.getTablename() ) ) );
+
+    sql.append( " WHERE " );
+    if ( keyFields.length == 1 ) {
+      sql.append( dbMeta.quoteField( keyFields[ 0 ] ) ).append( " IN (" );
+      for ( int k = 0; k < nrKeys; k++ ) {
+        sql.append( k > 0 ? ", ?" : " ?" );
+      }
+      sql.append( " )" );
+    } else {
+      for ( int k = 0; k < nrKeys; k++ ) {
+        sql.append( k > 0 ? " OR ( " : "( " );
+        for ( int i = 0; i < keyFields.length; i++ ) {
+          if ( i > 0 ) {
+            sql.append( " AND " );
+          }
+          sql.append( dbMeta.quoteField( keyFields[ i ] ) ).append( " = ?" );
+        }
+        sql.append( " )" );
+      }
+    }
+
+    if ( !Utils.isEmpty( meta.getOrderByClause() ) ) {
+      sql.append( " ORDER BY " ).append( meta.getOrderByClause() );
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Waits for the lookup of a batch and passes on its rows, in order.
+   */
+  private void writeBatch( DatabaseLookupBatch batch ) throws KettleException {
+    waitForBatch( batch );
+    for ( RowMetaAndData key : batch.getKeys() ) {
+      data.inFlightKeys.remove( key );
+    }
+
+    for ( DatabaseLookupBatch.Entry entry : batch.getEntries() ) {
+      try {
+        Object[] outputRow;
+        if ( entry.resolver == null ) {
+          outputRow = addLookupValues( getInputRowMeta(), entry.row, entry.lookupRow, entry.cachedValues, false, null );
+        } else {
+          if ( entry.resolver.getError() != null ) {
+            throw entry.resolver.getError();
+          }
+          Object[] values = entry.resolver.getValues( new RowMetaAndData( data.lookupMeta, entry.lookupRow ) );
+          // every row gets its own copy, the values are converted in place
+          outputRow = addLookupValues( getInputRowMeta(), entry.row, entry.lookupRow,
+            values == null ? null : values.clone(), true, entry.resolver.getReturnRowMeta() );
+        }
+
+        if ( outputRow != null ) {
+          putRow( data.outputRowMeta, outputRow );
+
+          if ( log.isRowLevel() ) {
+            logRowlevel( BaseMessages.getString( PKG, "DatabaseLookup.Log.WroteRowToNextStep" )
+              + getInputRowMeta().getString( entry.row ) );
+          }
+          if ( checkFeedback( getLinesRead() ) ) {
+            logBasic( "linenr " + getLinesRead() );
+          }
+        }
+      } catch ( KettleException e ) {
+        if ( getStepMeta().isDoingErrorHandling() ) {
+          putError( getInputRowMeta(), entry.row, 1, e.getMessage(), null, "DBLOOKUPD001" );
+        } else {
+          throw e;
+        }
+      }
+    }
+  }
+
+  private void waitForBatch( DatabaseLookupBatch batch ) {
+    if ( batch.getFuture() == null ) {
+      return;
+    }
+    try {
+      batch.getFuture().get();
+    } catch ( ExecutionException e ) {
+      batch.setError( e.getCause() instanceof KettleException
+        ? (KettleException) e.getCause() : new KettleException( e.getCause() ) );
+    } catch ( InterruptedException e ) {
+      batch.setError( new KettleException( e ) );
+    }
+  }
+
+  /**
+   * Looks up the last batch and passes on all waiting rows.
+   */
+  private void finishBatches() throws KettleException {
+    if ( data.batch != null ) {
+      startBatch();
+    }
+    while ( !data.pendingBatches.isEmpty() ) {
+      writeBatch( data.pendingBatches.poll() );
+    }
+  }
+
   private void loadAllTableDataIntoTheCache() throws KettleException {
     DatabaseMeta dbMeta = meta.getDatabaseMeta();
 
@@ -558,6 +941,13 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
       synchronized ( data.db ) {
         data.db.cancelQuery();
       }
+      if ( data.batchDatabases != null ) {
+        for ( int i = 1; i < data.batchDatabases.length; i++ ) {
+          if ( data.batchDatabases[ i ] != null ) {
+            data.batchDatabases[ i ].cancelQuery();
+          }
+        }
+      }
       data.isCanceled = true;
     }
   }
@@ -605,15 +995,45 @@ public class DatabaseLookup extends BaseStep implements StepInterface {
     return false;
   }
 
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    DatabaseLookupData.Cache cache = data == null ? null : data.cache;
+    return cache == null ? null : cache.getStatistics();
+  }
+
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (DatabaseLookupMeta) smi;
     data = (DatabaseLookupData) sdi;
 
+    // Let the batches in flight finish before closing their connections
+    //
+    if ( data.pendingBatches != null ) {
+      for ( DatabaseLookupBatch batch : data.pendingBatches ) {
+        waitForBatch( batch );
+      }
+      data.pendingBatches = null;
+    }
+    if ( data.batchDatabases != null ) {
+      for ( int i = 1; i < data.batchDatabases.length; i++ ) {
+        if ( data.batchDatabases[ i ] != null ) {
+          data.batchDatabases[ i ].disconnect();
+        }
+      }
+      data.batchDatabases = null;
+    }
+    data.batch = null;
+    data.inFlightKeys = null;
+
     if ( data.db != null ) {
       data.db.disconnect();
     }
 
+    CacheStatistics cacheStatistics = getCacheStatistics();
+    if ( cacheStatistics != null && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DatabaseLookup.Log.CacheStatistics", cacheStatistics.toString() ) );
+    }
+
     // Recover memory immediately, allow in-memory data to be garbage collected
     //
     data.cache = null;
@@ -0,0 +1,194 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2013 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.databaselookup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * A batch of input rows of the {@linkplain DatabaseLookup} step that waits for the keys that were not found in the
+ * cache. All these keys are looked up with a single query. The rows are passed on in the order in which they were
+ * added, after the batch and all batches before it are done.
+ */
+class DatabaseLookupBatch {
+
+  /**
+   * An input row waiting in the batch.
+   */
+  static class Entry {
+    final Object[] row;
+    final Object[] lookupRow;
+
+    /** The values found in the cache or null */
+    final Object[] cachedValues;
+
+    /** The batch that looks up the key of the row, this batch or one before it. Null if found in the cache */
+    final DatabaseLookupBatch resolver;
+
+    Entry( Object[] row, Object[] lookupRow, Object[] cachedValues, DatabaseLookupBatch resolver ) {
+      this.row = row;
+      this.lookupRow = lookupRow;
+      this.cachedValues = cachedValues;
+      this.resolver = resolver;
+    }
+  }
+
+  private final int slot;
+  private final List<Entry> entries;
+
+  /** The keys to look up, in order, and the values found for them */
+  private final Map<RowMetaAndData, Object[]> keys;
+
+  /** The metadata of the values as they were returned by the database */
+  private RowMetaInterface returnRowMeta;
+
+  private Future<?> future;
+
+  /** The reason the lookup of the keys failed */
+  private KettleException error;
+
+  /**
+   * @param slot
+   *          the number of the database connection used to look up the keys
+   */
+  DatabaseLookupBatch( int slot ) {
+    this.slot = slot;
+    this.entries = new ArrayList<Entry>();
+    this.keys = new LinkedHashMap<RowMetaAndData, Object[]>();
+  }
+
+  int getSlot() {
+    return slot;
+  }
+
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  int getNrRows() {
+    return entries.size();
+  }
+
+  int getNrKeys() {
+    return keys.size();
+  }
+
+  void addEntry( Entry entry ) {
+    entries.add( entry );
+  }
+
+  void addKey( RowMetaAndData key ) {
+    keys.put( key, null );
+  }
+
+  /**
+   * @return the keys to look up, in the order in which they were added
+   */
+  List<RowMetaAndData> getKeys() {
+    return new ArrayList<RowMetaAndData>( keys.keySet() );
+  }
+
+  /**
+   * Finds the key of the batch that is equal to a key returned by the database. Equal values don't always have the
+   * same hash code, a BigDecimal 1.00 equals 1 for the value metadata, so the keys are compared one by one if the
+   * hash code doesn't match.
+   *
+   * @return the key of the batch or null if the key is not looked up by this batch
+   */
+  RowMetaAndData findKey( RowMetaAndData key ) {
+    if ( keys.containsKey( key ) ) {
+      return key;
+    }
+    for ( RowMetaAndData candidate : keys.keySet() ) {
+      if ( candidate.equals( key ) ) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Store the values found for a key, only the keys of the batch are accepted.
+   *
+   * @return false if the key is not looked up by this batch
+   */
+  boolean setValues( RowMetaAndData key, Object[] values ) {
+    if ( !keys.containsKey( key ) ) {
+      return false;
+    }
+    keys.put( key, values );
+    return true;
+  }
+
+  /**
+   * @return the values found for the key or null if nothing was found
+   */
+  Object[] getValues( RowMetaAndData key ) {
+    return keys.get( key );
+  }
+
+  RowMetaInterface getReturnRowMeta() {
+    return returnRowMeta;
+  }
+
+  void setReturnRowMeta( RowMetaInterface returnRowMeta ) {
+    this.returnRowMeta = returnRowMeta;
+  }
+
+  /**
+   * @return the running lookup of an asynchronous batch or null if the batch was looked up right away
+   */
+  Future<?> getFuture() {
+    return future;
+  }
+
+  void setFuture( Future<?> future ) {
+    this.future = future;
+  }
+
+  /**
+   * @return the reason the lookup of the keys failed or null if it succeeded
+   */
+  KettleException getError() {
+    return error;
+  }
+
+  void setError( KettleException error ) {
+    this.error = error;
+  }
+
+  /**
+   * @return true if the lookup of the keys is done, either successfully or not
+   */
+  boolean isDone() {
+    return future == null || future.isDone();
+  }
+}
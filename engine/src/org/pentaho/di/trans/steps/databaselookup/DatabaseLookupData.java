@@ -22,6 +22,11 @@
 
 package org.pentaho.di.trans.steps.databaselookup;
 
+import java.util.Deque;
+import java.util.Map;
+
+import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.CacheStatistics;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -49,6 +54,13 @@ public class DatabaseLookupData extends BaseStepData implements StepDataInterfac
   public int[] conditions;
   public boolean hasDBCondition;
 
+  public boolean batchLookup; // look up the keys that are not in the cache in batches
+  Database[] batchDatabases; // one connection per batch in flight, the first one is db
+  DatabaseLookupBatch batch; // the batch that is collecting rows
+  Deque<DatabaseLookupBatch> pendingBatches; // started batches with rows waiting to be passed on, in order
+  Map<RowMetaAndData, DatabaseLookupBatch> inFlightKeys; // the batch that looks up a key
+  long nrBatches;
+
   public DatabaseLookupData() {
     super();
 
@@ -79,5 +91,12 @@ public class DatabaseLookupData extends BaseStepData implements StepDataInterfac
      * @param add         tuple of data
      */
     void storeRowInCache( DatabaseLookupMeta meta, RowMetaInterface lookupMeta, Object[] lookupRow, Object[] add );
+
+    /**
+     * @return the hit, miss and eviction counters of the cache or {@code null} if the cache doesn't keep them
+     */
+    default CacheStatistics getStatistics() {
+      return null;
+    }
   }
 }
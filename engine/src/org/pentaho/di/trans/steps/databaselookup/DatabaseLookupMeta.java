@@ -28,6 +28,7 @@ import java.util.List;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.ProvidesModelerMeta;
 import org.pentaho.di.core.database.Database;
@@ -126,6 +127,18 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
   /** Have the lookup eat the incoming row when nothing gets found */
   private boolean eatingRowOnLookupFailure;
 
+  /** Look up this many keys that are not in the cache with one query, 0 or 1 looks up one row at a time */
+  private int batchSize;
+
+  /** The maximum number of batch queries that run at the same time, each on its own connection */
+  private int batchesInFlight;
+
+  /** The code of the eviction policy of the cache, see {@link EvictionPolicy} */
+  private String cachePolicy;
+
+  /** The maximum size of the cache in MB, 0 means only the number of rows limits the cache */
+  private int cacheMemoryLimit;
+
   public DatabaseLookupMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -397,6 +410,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       loadingAllDataInCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "cache_load_all" ) );
       csize = XMLHandler.getTagValue( stepnode, "cache_size" );
       cacheSize = Const.toInt( csize, 0 );
+      batchSize = Const.toInt( XMLHandler.getTagValue( stepnode, "batch_size" ), 0 );
+      batchesInFlight = Const.toInt( XMLHandler.getTagValue( stepnode, "batches_in_flight" ), 1 );
+      cachePolicy = EvictionPolicy.getPolicyByCode( XMLHandler.getTagValue( stepnode, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
       schemaName = XMLHandler.getTagValue( stepnode, "lookup", "schema" );
       tablename = XMLHandler.getTagValue( stepnode, "lookup", "table" );
 
@@ -451,6 +468,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     databaseMeta = null;
     cached = false;
     cacheSize = 0;
+    batchSize = 0;
+    batchesInFlight = 1;
+    cachePolicy = EvictionPolicy.LRU.getCode();
+    cacheMemoryLimit = 0;
     schemaName = "";
     tablename = BaseMessages.getString( PKG, "DatabaseLookupMeta.Default.TableName" );
 
@@ -516,6 +537,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache", cached ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_load_all", loadingAllDataInCache ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "batch_size", batchSize ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "batches_in_flight", batchesInFlight ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_policy", cachePolicy ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
     retval.append( "    <lookup>" ).append( Const.CR );
     retval.append( "      " ).append( XMLHandler.addTagValue( "schema", schemaName ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "table", tablename ) );
@@ -555,6 +580,13 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       cached = rep.getStepAttributeBoolean( id_step, "cache" );
       loadingAllDataInCache = rep.getStepAttributeBoolean( id_step, "cache_load_all" );
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      batchSize = (int) rep.getStepAttributeInteger( id_step, "batch_size" );
+      batchesInFlight = (int) rep.getStepAttributeInteger( id_step, "batches_in_flight" );
+      if ( batchesInFlight < 1 ) {
+        batchesInFlight = 1;
+      }
+      cachePolicy = EvictionPolicy.getPolicyByCode( rep.getStepAttributeString( id_step, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
       schemaName = rep.getStepAttributeString( id_step, "lookup_schema" );
       tablename = rep.getStepAttributeString( id_step, "lookup_table" );
       orderByClause = rep.getStepAttributeString( id_step, "lookup_orderby" );
@@ -593,6 +625,10 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
       rep.saveStepAttribute( id_transformation, id_step, "cache", cached );
       rep.saveStepAttribute( id_transformation, id_step, "cache_load_all", loadingAllDataInCache );
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "batch_size", batchSize );
+      rep.saveStepAttribute( id_transformation, id_step, "batches_in_flight", batchesInFlight );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_policy", cachePolicy );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_schema", schemaName );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_table", tablename );
       rep.saveStepAttribute( id_transformation, id_step, "lookup_orderby", orderByClause );
@@ -895,6 +931,67 @@ public class DatabaseLookupMeta extends BaseStepMeta implements StepMetaInterfac
     this.loadingAllDataInCache = loadingAllDataInCache;
   }
 
+  /**
+   * @return the number of keys that are not in the cache to look up with a single query, 0 or 1 to look up one row
+   *         at a time. String keys are always looked up one row at a time.
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize
+   *          the number of keys that are not in the cache to look up with a single query
+   */
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @return the maximum number of batch queries that run at the same time
+   */
+  public int getBatchesInFlight() {
+    return batchesInFlight;
+  }
+
+  /**
+   * @param batchesInFlight
+   *          the maximum number of batch queries that run at the same time
+   */
+  public void setBatchesInFlight( int batchesInFlight ) {
+    this.batchesInFlight = batchesInFlight;
+  }
+
+  /**
+   * @return the code of the eviction policy of the cache, see {@link EvictionPolicy}
+   */
+  public String getCachePolicy() {
+    return cachePolicy;
+  }
+
+  /**
+   * @param cachePolicy
+   *          the code of the eviction policy of the cache
+   */
+  public void setCachePolicy( String cachePolicy ) {
+    this.cachePolicy = cachePolicy;
+  }
+
+  /**
+   * @return the maximum size of the cache in MB, 0 if only the number of rows limits the cache
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          the maximum size of the cache in MB, 0 to only limit the number of rows
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
   @Override public RowMeta getRowMeta( StepDataInterface stepData ) {
     return (RowMeta) ( (DatabaseLookupData) stepData ).returnMeta;
   }
@@ -22,23 +22,25 @@
 
 package org.pentaho.di.trans.steps.dimensionlookup;
 
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.RowMetaAndData;
+import org.pentaho.di.core.cache.CacheStatistics;
+import org.pentaho.di.core.cache.LookupCacheFactory;
+import org.pentaho.di.core.cache.Weigher;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
-import org.pentaho.di.core.hash.ByteArrayHashMap;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -68,6 +70,9 @@ public class DimensionLookup extends BaseStep implements StepInterface {
   private static final int CREATION_METHOD_SEQUENCE = 2;
   private static final int CREATION_METHOD_TABLEMAX = 3;
 
+  /** The estimated heap size of the byte buffer and the array headers of a cache entry */
+  private static final long SERIALIZED_ENTRY_OVERHEAD = 80L;
+
   private int techKeyCreation;
 
   private DimensionLookupMeta meta;
@@ -193,8 +198,13 @@ public class DimensionLookup extends BaseStep implements StepInterface {
             data.cacheKeyRowMeta.addValueMeta( key.clone() );
           }
 
-          data.cache =
-            new ByteArrayHashMap( meta.getCacheSize() > 0 ? meta.getCacheSize() : 5000, data.cacheKeyRowMeta );
+          data.cache = LookupCacheFactory.create( meta.getCachePolicy(), meta.getCacheSize(),
+            meta.getCacheMemoryLimit() * 1024L * 1024L, new Weigher<ByteBuffer, byte[]>() {
+              @Override
+              public long weigh( ByteBuffer key, byte[] value ) {
+                return key.capacity() + value.length + SERIALIZED_ENTRY_OVERHEAD;
+              }
+            } );
         }
       }
 
@@ -1518,78 +1528,10 @@ public class DimensionLookup extends BaseStep implements StepInterface {
       data.cacheValueRowMeta = assembleCacheValueRowMeta();
     }
 
-    // store it in the cache if needed.
+    // store it in the cache, the cache evicts the least recently or frequently used keys when it's full
     byte[] keyPart = RowMeta.extractData( data.cacheKeyRowMeta, keyValues );
     byte[] valuePart = RowMeta.extractData( data.cacheValueRowMeta, returnValues );
-    data.cache.put( keyPart, valuePart );
-
-    // check if the size is not too big...
-    // Allow for a buffer overrun of 20% and then remove those 20% in one go.
-    // Just to keep performance in track.
-    //
-    int tenPercent = meta.getCacheSize() / 10;
-    if ( meta.getCacheSize() > 0 && data.cache.size() > meta.getCacheSize() + tenPercent ) {
-      // Which cache entries do we delete here?
-      // We delete those with the lowest technical key...
-      // Those would arguably be the "oldest" dimension entries.
-      // Oh well... Nothing is going to be perfect here...
-      //
-      // Getting the lowest 20% requires some kind of sorting algorithm and I'm not sure we want to do that.
-      // Sorting is slow and even in the best case situation we need to do 2 passes over the cache entries...
-      //
-      // Perhaps we should get 20% random values and delete everything below the lowest but one TK.
-      //
-      List<byte[]> keys = data.cache.getKeys();
-      int sizeBefore = keys.size();
-      List<Long> samples = new ArrayList<Long>();
-
-      // Take 10 sample technical keys....
-      int stepsize = keys.size() / 5;
-      if ( stepsize < 1 ) {
-        stepsize = 1; // make shure we have no endless loop
-      }
-      for ( int i = 0; i < keys.size(); i += stepsize ) {
-        byte[] key = keys.get( i );
-        byte[] value = data.cache.get( key );
-        if ( value != null ) {
-          Object[] values = RowMeta.getRow( data.cacheValueRowMeta, value );
-          Long tk = data.cacheValueRowMeta.getInteger( values, 0 );
-          samples.add( tk );
-        }
-      }
-      // Sort these 5 elements...
-      Collections.sort( samples );
-
-      // What is the smallest?
-      // Take the second, not the fist in the list, otherwise we would be removing a single entry = not good.
-      if ( samples.size() > 1 ) {
-        data.smallestCacheKey = samples.get( 1 );
-      } else if ( !samples.isEmpty() ) { // except when there is only one sample
-        data.smallestCacheKey = samples.get( 0 );
-      } else {
-        // If no samples found nothing to remove, we're done
-        return;
-      }
-
-      // Remove anything in the cache <= smallest.
-      // This makes it almost single pass...
-      // This algorithm is not 100% correct, but I guess it beats sorting the whole cache all the time.
-      //
-      for ( int i = 0; i < keys.size(); i++ ) {
-        byte[] key = keys.get( i );
-        byte[] value = data.cache.get( key );
-        if ( value != null ) {
-          Object[] values = RowMeta.getRow( data.cacheValueRowMeta, value );
-          long tk = data.cacheValueRowMeta.getInteger( values, 0 ).longValue();
-          if ( tk <= data.smallestCacheKey ) {
-            data.cache.remove( key ); // this one has to go.
-          }
-        }
-      }
-
-      int sizeAfter = data.cache.size();
-      logDetailed( "Reduced the lookup cache from " + sizeBefore + " to " + sizeAfter + " rows." );
-    }
+    data.cache.put( ByteBuffer.wrap( keyPart ), valuePart );
 
     if ( isRowLevel() ) {
       logRowlevel( "Cache store: key=" + keyValues + "    values=" + returnValues );
@@ -1622,7 +1564,7 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     }
 
     byte[] key = RowMeta.extractData( data.cacheKeyRowMeta, keyValues );
-    byte[] value = data.cache.get( key );
+    byte[] value = data.cache.get( ByteBuffer.wrap( key ) );
     if ( value != null ) {
       Object[] row = RowMeta.getRow( data.cacheValueRowMeta, value );
 
@@ -1738,10 +1680,21 @@ public class DimensionLookup extends BaseStep implements StepInterface {
     return false;
   }
 
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    // the step status asks for the statistics before init, data is only set there
+    return data == null || data.cache == null ? null : data.cache.getStatistics();
+  }
+
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (DimensionLookupMeta) smi;
     data = (DimensionLookupData) sdi;
+
+    CacheStatistics cacheStatistics = getCacheStatistics();
+    if ( cacheStatistics != null && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "DimensionLookup.Log.CacheStatistics", cacheStatistics.toString() ) );
+    }
     if ( data.db != null ) {
       try {
         if ( !data.db.isAutoCommit() ) {
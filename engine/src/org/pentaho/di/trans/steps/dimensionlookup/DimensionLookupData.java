@@ -22,12 +22,13 @@
 
 package org.pentaho.di.trans.steps.dimensionlookup;
 
+import java.nio.ByteBuffer;
 import java.sql.PreparedStatement;
 import java.util.Date;
 import java.util.List;
 
+import org.pentaho.di.core.cache.LookupCache;
 import org.pentaho.di.core.database.Database;
-import org.pentaho.di.core.hash.ByteArrayHashMap;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -48,9 +49,7 @@ public class DimensionLookupData extends BaseStepData implements StepDataInterfa
   public int[] fieldnrs; // nrs in row of the fields
   public int datefieldnr; // Nr of datefield field in row
 
-  public ByteArrayHashMap cache;
-
-  public long smallestCacheKey;
+  public LookupCache<ByteBuffer, byte[]> cache;
 
   public Long notFoundTk;
 
@@ -103,7 +102,6 @@ public class DimensionLookupData extends BaseStepData implements StepDataInterfa
 
     db = null;
     valueDateNow = null;
-    smallestCacheKey = -1;
     realTableName = null;
     realSchemaName = null;
   }
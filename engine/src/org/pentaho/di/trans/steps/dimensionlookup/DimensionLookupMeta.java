@@ -31,6 +31,7 @@ import java.util.List;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.ProvidesModelerMeta;
 import org.pentaho.di.core.SQLStatement;
@@ -223,6 +224,14 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
   @Injection( name = "CACHE_SIZE" )
   private int cacheSize;
 
+  /** The code of the eviction policy of the cache, see {@link EvictionPolicy} */
+  @Injection( name = "CACHE_POLICY" )
+  private String cachePolicy;
+
+  /** The maximum estimated size of the cache in MB, 0 means no limit */
+  @Injection( name = "CACHE_MEMORY_LIMIT" )
+  private int cacheMemoryLimit;
+
   /** Flag to indicate we're going to use an alternative start date */
   @Injection( name = "USE_ALTERNATIVE_START_DATE" )
   private boolean usingStartDateAlternative;
@@ -741,6 +750,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     versionField = "version";
 
     cacheSize = 5000;
+    cachePolicy = EvictionPolicy.LRU.getCode();
+    cacheMemoryLimit = 0;
     preloadingCache = false;
   }
 
@@ -880,6 +891,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     retval.append( "      " ).append( XMLHandler.addTagValue( "max_year", maxYear ) );
 
     retval.append( "      " ).append( XMLHandler.addTagValue( "cache_size", cacheSize ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_policy", cachePolicy ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "cache_memory_limit", cacheMemoryLimit ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "preload_cache", preloadingCache ) );
 
     retval.append( "      " ).append( XMLHandler.addTagValue( "use_start_date_alternative",
@@ -959,6 +972,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       setTechKeyCreation( XMLHandler.getTagValue( fields, "return", "creation_method" ) );
 
       cacheSize = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_size" ), -1 );
+      cachePolicy = EvictionPolicy.getPolicyByCode( XMLHandler.getTagValue( stepnode, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = Const.toInt( XMLHandler.getTagValue( stepnode, "cache_memory_limit" ), 0 );
       preloadingCache = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preload_cache" ) );
       useBatchUpdate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "useBatch" ) );
 
@@ -1019,6 +1034,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       maxYear = (int) rep.getStepAttributeInteger( id_step, "max_year" );
 
       cacheSize = (int) rep.getStepAttributeInteger( id_step, "cache_size" );
+      cachePolicy = EvictionPolicy.getPolicyByCode( rep.getStepAttributeString( id_step, "cache_policy" ) ).getCode();
+      cacheMemoryLimit = (int) rep.getStepAttributeInteger( id_step, "cache_memory_limit" );
       preloadingCache = rep.getStepAttributeBoolean( id_step, "preload_cache" );
       useBatchUpdate = rep.getStepAttributeBoolean( id_step, "useBatch" );
 
@@ -1074,6 +1091,8 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
       rep.saveStepAttribute( id_transformation, id_step, "max_year", maxYear );
 
       rep.saveStepAttribute( id_transformation, id_step, "cache_size", cacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_policy", cachePolicy );
+      rep.saveStepAttribute( id_transformation, id_step, "cache_memory_limit", cacheMemoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "preload_cache", preloadingCache );
       rep.saveStepAttribute( id_transformation, id_step, "useBatch", useBatchUpdate );
 
@@ -1832,6 +1851,36 @@ public class DimensionLookupMeta extends BaseStepMeta implements StepMetaInterfa
     this.cacheSize = cacheSize;
   }
 
+  /**
+   * @return the code of the eviction policy of the cache, see {@link EvictionPolicy}
+   */
+  public String getCachePolicy() {
+    return cachePolicy;
+  }
+
+  /**
+   * @param cachePolicy
+   *          the code of the eviction policy of the cache
+   */
+  public void setCachePolicy( String cachePolicy ) {
+    this.cachePolicy = cachePolicy;
+  }
+
+  /**
+   * @return the maximum size of the cache in MB, 0 if only the number of rows limits the cache
+   */
+  public int getCacheMemoryLimit() {
+    return cacheMemoryLimit;
+  }
+
+  /**
+   * @param cacheMemoryLimit
+   *          the maximum size of the cache in MB, 0 to only limit the number of rows
+   */
+  public void setCacheMemoryLimit( int cacheMemoryLimit ) {
+    this.cacheMemoryLimit = cacheMemoryLimit;
+  }
+
   /**
    * @return the usingStartDateAlternative
    */
@@ -0,0 +1,293 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.excelinput.staxpoi;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Compact index of the shared strings of a workbook.<br>
+ * The shared strings part is parsed once into UTF-8 bytes and an offset table, strings are only materialized when a
+ * cell refers to them. The bytes are either kept on the heap or written to a temporary file that is memory mapped,
+ * which keeps string heavy workbooks from filling the heap the way the full POI SharedStringsTable does.<br>
+ * Lookups can be done from several threads at once.
+ */
+public class StaxPoiSharedStrings {
+
+  private static final int SEGMENT_SIZE = 1 << 30;
+  private static final int CACHE_SIZE = 1024;
+
+  private final long[] offsets;
+  private final int size;
+
+  // heap storage
+  private final byte[] bytes;
+
+  // mapped storage
+  private final File file;
+  private final ByteBuffer[] segments;
+
+  // recently materialized strings, by index modulo the cache size
+  private final CachedString[] cache = new CachedString[CACHE_SIZE];
+
+  private StaxPoiSharedStrings( long[] offsets, int size, byte[] bytes, File file, ByteBuffer[] segments ) {
+    this.offsets = offsets;
+    this.size = size;
+    this.bytes = bytes;
+    this.file = file;
+    this.segments = segments;
+  }
+
+  /**
+   * Parses the shared strings part of a workbook.
+   *
+   * @param sharedStringsData the shared strings part, may be null if the workbook doesn't have one
+   * @param mapped            true to keep the strings in a memory mapped temporary file rather than on the heap
+   * @return the index of the shared strings
+   */
+  public static StaxPoiSharedStrings read( InputStream sharedStringsData, boolean mapped )
+    throws IOException, XMLStreamException {
+    long[] offsets = new long[256];
+    int size = 0;
+
+    File file = null;
+    OutputStream fileOut = null;
+    byte[] bytes = new byte[mapped ? 0 : 8192];
+    long length = 0;
+
+    boolean success = false;
+    try {
+      if ( mapped ) {
+        file = File.createTempFile( "kettle-xlsx-strings", ".tmp" );
+        fileOut = new BufferedOutputStream( new FileOutputStream( file ), 65536 );
+      }
+
+      if ( sharedStringsData != null ) {
+        XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader( sharedStringsData );
+        try {
+          StringBuilder text = new StringBuilder();
+          // phonetic runs (rPh) are not part of the string value
+          int phonetic = 0;
+          while ( xml.hasNext() ) {
+            int event = xml.next();
+            if ( event == XMLStreamConstants.START_ELEMENT ) {
+              String name = xml.getLocalName();
+              if ( name.equals( "si" ) ) {
+                text.setLength( 0 );
+              } else if ( name.equals( "t" ) ) {
+                if ( phonetic == 0 ) {
+                  text.append( xml.getElementText() );
+                }
+              } else if ( name.equals( "rPh" ) ) {
+                phonetic++;
+              } else if ( name.equals( "sst" ) ) {
+                String uniqueCount = xml.getAttributeValue( null, "uniqueCount" );
+                if ( uniqueCount != null ) {
+                  offsets = new long[ Math.max( offsets.length, parseCount( uniqueCount ) + 1 ) ];
+                }
+              }
+            } else if ( event == XMLStreamConstants.END_ELEMENT ) {
+              String name = xml.getLocalName();
+              if ( name.equals( "si" ) ) {
+                byte[] encoded = decodeEscapes( text ).getBytes( StandardCharsets.UTF_8 );
+                if ( size + 1 >= offsets.length ) {
+                  offsets = Arrays.copyOf( offsets, offsets.length * 2 );
+                }
+                if ( fileOut != null ) {
+                  fileOut.write( encoded );
+                } else {
+                  if ( length + encoded.length > bytes.length ) {
+                    long capacity = Math.max( length + encoded.length, (long) bytes.length * 2 );
+                    bytes = Arrays.copyOf( bytes, (int) Math.min( capacity, Integer.MAX_VALUE - 8 ) );
+                  }
+                  System.arraycopy( encoded, 0, bytes, (int) length, encoded.length );
+                }
+                length += encoded.length;
+                offsets[++size] = length;
+              } else if ( name.equals( "rPh" ) ) {
+                phonetic--;
+              }
+            }
+          }
+        } finally {
+          xml.close();
+        }
+      }
+
+      StaxPoiSharedStrings strings;
+      if ( fileOut != null ) {
+        fileOut.close();
+        fileOut = null;
+        strings = new StaxPoiSharedStrings( offsets, size, null, file, map( file, length ) );
+      } else {
+        strings = new StaxPoiSharedStrings( offsets, size, bytes, null, null );
+      }
+      success = true;
+      return strings;
+    } finally {
+      if ( fileOut != null ) {
+        fileOut.close();
+      }
+      if ( !success && file != null ) {
+        file.delete();
+      }
+    }
+  }
+
+  private static int parseCount( String count ) {
+    try {
+      return Math.max( 0, Integer.parseInt( count ) );
+    } catch ( NumberFormatException e ) {
+      return 0;
+    }
+  }
+
+  private static ByteBuffer[] map( File file, long length ) throws IOException {
+    ByteBuffer[] segments = new ByteBuffer[ (int) ( ( length + SEGMENT_SIZE - 1 ) / SEGMENT_SIZE ) ];
+    RandomAccessFile raf = new RandomAccessFile( file, "r" );
+    try {
+      FileChannel channel = raf.getChannel();
+      for ( int i = 0; i < segments.length; i++ ) {
+        long position = (long) i * SEGMENT_SIZE;
+        long segmentSize = Math.min( SEGMENT_SIZE, length - position );
+        segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, position, segmentSize );
+      }
+    } finally {
+      // the mappings stay valid after the channel is closed
+      raf.close();
+    }
+    return segments;
+  }
+
+  /**
+   * Decodes the _xHHHH_ escapes Excel uses for characters that can't be written in XML, the same way
+   * XSSFRichTextString does.
+   */
+  static String decodeEscapes( CharSequence text ) {
+    int length = text.length();
+    StringBuilder decoded = null;
+    int copied = 0;
+    for ( int i = 0; i + 6 < length; i++ ) {
+      if ( text.charAt( i ) == '_' && text.charAt( i + 1 ) == 'x' && text.charAt( i + 6 ) == '_' ) {
+        int c = 0;
+        int j = i + 2;
+        for ( ; j < i + 6; j++ ) {
+          int digit = Character.digit( text.charAt( j ), 16 );
+          if ( digit < 0 ) {
+            break;
+          }
+          c = c * 16 + digit;
+        }
+        if ( j == i + 6 ) {
+          if ( decoded == null ) {
+            decoded = new StringBuilder( length );
+          }
+          decoded.append( text, copied, i ).append( (char) c );
+          copied = i + 7;
+          i += 6;
+        }
+      }
+    }
+    if ( decoded == null ) {
+      return text.toString();
+    }
+    return decoded.append( text, copied, length ).toString();
+  }
+
+  /**
+   * @return the number of shared strings
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param idx the index of the shared string, as found in the value of a cell of type "s"
+   * @return the shared string
+   */
+  public String getString( int idx ) {
+    if ( idx < 0 || idx >= size ) {
+      throw new IndexOutOfBoundsException( "Shared string " + idx + " doesn't exist, there are " + size );
+    }
+    int slot = idx & ( CACHE_SIZE - 1 );
+    CachedString cached = cache[slot];
+    if ( cached != null && cached.idx == idx ) {
+      return cached.value;
+    }
+    long start = offsets[idx];
+    int length = (int) ( offsets[idx + 1] - start );
+    String value;
+    if ( bytes != null ) {
+      value = new String( bytes, (int) start, length, StandardCharsets.UTF_8 );
+    } else {
+      byte[] encoded = new byte[length];
+      int copied = 0;
+      while ( copied < length ) {
+        long position = start + copied;
+        ByteBuffer segment = segments[(int) ( position / SEGMENT_SIZE )].duplicate();
+        segment.position( (int) ( position % SEGMENT_SIZE ) );
+        int n = Math.min( length - copied, segment.remaining() );
+        segment.get( encoded, copied, n );
+        copied += n;
+      }
+      value = new String( encoded, StandardCharsets.UTF_8 );
+    }
+    cache[slot] = new CachedString( idx, value );
+    return value;
+  }
+
+  /**
+   * Removes the temporary file, if any. The strings can't be read anymore afterwards.
+   */
+  public void close() {
+    if ( file != null && !file.delete() ) {
+      // still mapped on some platforms
+      file.deleteOnExit();
+    }
+  }
+
+  private static class CachedString {
+    private final int idx;
+    private final String value;
+
+    CachedString( int idx, String value ) {
+      this.idx = idx;
+      this.value = value;
+    }
+  }
+}
@@ -31,6 +31,10 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -52,12 +56,18 @@ import org.pentaho.di.core.spreadsheet.KSheet;
 /**
  * Streaming reader for XLSX sheets.<br>
  * Rows should only be accessed sequentially: random access will severely impact performance.<br>
+ * When given an executor the rows are parsed ahead on a separate thread, in order, into a bounded queue.
  */
 public class StaxPoiSheet implements KSheet {
 
   // set to UTC for coherence with PoiSheet;
   private static final TimeZone DATE_TZ = TimeZone.getTimeZone( "UTC" );
 
+  // the number of rows parsed ahead when parsing on a separate thread
+  private static final int PARSED_ROWS = 256;
+
+  private static final ParsedRow END = new ParsedRow( -1, null, null );
+
   private final String sheetName;
   private final String sheetId;
 
@@ -74,17 +84,38 @@ public class StaxPoiSheet implements KSheet {
   private int firstRow;
   private KCell[] currentRowCells;
 
-  // full shared strings table
+  // full shared strings table, only used without a shared strings index
   private SharedStringsTable sst;
+  private StaxPoiSharedStrings sharedStrings;
   // custom styles
   private StylesTable styles;
 
+  // parses the rows ahead on a separate thread, null to parse on the reading thread
+  private ExecutorService parser;
+  private RowParser rowParser;
+
   public StaxPoiSheet( XSSFReader reader, String sheetName, String sheetID )
       throws InvalidFormatException, IOException, XMLStreamException {
+    this( reader, null, null, sheetName, sheetID );
+  }
+
+  /**
+   * @param reader        the reader of the workbook
+   * @param sharedStrings the shared strings of the workbook, null to load the POI shared strings table
+   * @param parser        the executor to parse the rows ahead with, null to parse them when they are read
+   * @param sheetName     the name of the sheet
+   * @param sheetID       the relation id of the sheet
+   */
+  public StaxPoiSheet( XSSFReader reader, StaxPoiSharedStrings sharedStrings, ExecutorService parser,
+      String sheetName, String sheetID ) throws InvalidFormatException, IOException, XMLStreamException {
     this.sheetName = sheetName;
     xssfReader = reader;
     sheetId = sheetID;
-    sst = reader.getSharedStringsTable();
+    this.sharedStrings = sharedStrings;
+    this.parser = parser;
+    if ( sharedStrings == null ) {
+      sst = reader.getSharedStringsTable();
+    }
     styles = reader.getStylesTable();
     sheetStream = reader.getSheet( sheetID );
     XMLInputFactory factory = XMLInputFactory.newInstance();
@@ -120,8 +151,7 @@ public class StaxPoiSheet implements KSheet {
                 event = sheetReader.next();
                 if ( event == XMLStreamConstants.START_ELEMENT && sheetReader.getLocalName().equals( "v" ) ) {
                   int idx = Integer.parseInt( sheetReader.getElementText() );
-                  String content = new XSSFRichTextString( sst.getEntryAt( idx ) ).toString();
-                  headerRow.add( content );
+                  headerRow.add( getSharedString( idx ) );
                   break;
                 }
               }
@@ -134,6 +164,21 @@ public class StaxPoiSheet implements KSheet {
         break;
       }
     }
+    if ( parser != null ) {
+      // rows are read from the start by the parsing thread
+      sheetReader.close();
+      sheetStream.close();
+      sheetReader = null;
+      sheetStream = null;
+      rowParser = new RowParser();
+    }
+  }
+
+  private String getSharedString( int idx ) {
+    if ( sharedStrings != null ) {
+      return sharedStrings.getString( idx );
+    }
+    return new XSSFRichTextString( sst.getEntryAt( idx ) ).toString();
   }
 
   @Override
@@ -156,6 +201,19 @@ public class StaxPoiSheet implements KSheet {
         // allow random access per api despite performance hit
         resetSheetReader();
       }
+      if ( rowParser != null ) {
+        ParsedRow row;
+        while ( ( row = rowParser.next() ) != null ) {
+          currentRow = row.rowNumber;
+          if ( currentRow < rownr + 1 ) {
+            continue;
+          }
+          currentRowCells = row.cells;
+          return currentRowCells;
+        }
+        numRows = currentRow;
+        return new KCell[] {};
+      }
       while ( sheetReader.hasNext() ) {
         int event = sheetReader.next();
         if ( event == XMLStreamConstants.START_ELEMENT && sheetReader.getLocalName().equals( "row" ) ) {
@@ -164,7 +222,7 @@ public class StaxPoiSheet implements KSheet {
           if ( currentRow < rownr + 1 ) {
             continue;
           }
-          currentRowCells = parseRow();
+          currentRowCells = parseRow( sheetReader, currentRow );
           return currentRowCells;
         }
       }
@@ -175,50 +233,50 @@ public class StaxPoiSheet implements KSheet {
     return new KCell[] {};
   }
 
-  private KCell[] parseRow() throws XMLStreamException {
+  private KCell[] parseRow( XMLStreamReader xml, int rowNumber ) throws XMLStreamException {
     KCell[] cells = new StaxPoiCell[numCols];
     for ( int i = 0; i < numCols; i++ ) {
       // go to the "c" cell tag
-      while ( sheetReader.hasNext() ) {
-        int event = sheetReader.next();
-        if ( event == XMLStreamConstants.START_ELEMENT && sheetReader.getLocalName().equals( "c" ) ) {
+      while ( xml.hasNext() ) {
+        int event = xml.next();
+        if ( event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals( "c" ) ) {
           break;
         }
-        if ( event == XMLStreamConstants.END_ELEMENT && sheetReader.getLocalName().equals( "row" ) ) {
+        if ( event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals( "row" ) ) {
           // premature end of row, returning what we have
           return cells;
         }
       }
-      String cellLocation = sheetReader.getAttributeValue( null, "r" );
+      String cellLocation = xml.getAttributeValue( null, "r" );
       int columnIndex = StaxUtil.extractColumnNumber( cellLocation ) - 1;
 
-      String cellType = sheetReader.getAttributeValue( null, "t" );
-      String cellStyle = sheetReader.getAttributeValue( null, "s" );
+      String cellType = xml.getAttributeValue( null, "t" );
+      String cellStyle = xml.getAttributeValue( null, "s" );
 
       boolean isFormula = false;
       String content = null;
       // get value tag
-      while ( sheetReader.hasNext() ) {
-        int event = sheetReader.next();
-        if ( event == XMLStreamConstants.START_ELEMENT && sheetReader.getLocalName().equals( "v" ) ) {
+      while ( xml.hasNext() ) {
+        int event = xml.next();
+        if ( event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals( "v" ) ) {
           // read content as string
           if ( cellType != null && cellType.equals( "s" ) ) {
-            int idx = Integer.parseInt( sheetReader.getElementText() );
-            content = new XSSFRichTextString( sst.getEntryAt( idx ) ).toString();
+            int idx = Integer.parseInt( xml.getElementText() );
+            content = getSharedString( idx );
           } else {
-            content = sheetReader.getElementText();
+            content = xml.getElementText();
           }
         }
-        if ( event == XMLStreamConstants.START_ELEMENT && sheetReader.getLocalName().equals( "f" ) ) {
+        if ( event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals( "f" ) ) {
           isFormula = true;
         }
-        if ( event == XMLStreamConstants.END_ELEMENT && sheetReader.getLocalName().equals( "c" ) ) {
+        if ( event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals( "c" ) ) {
           break;
         }
       }
       if ( content != null ) {
         KCellType kcType = getCellType( cellType, cellStyle, isFormula );
-        cells[columnIndex] = new StaxPoiCell( parseValue( kcType, content ), kcType, currentRow );
+        cells[columnIndex] = new StaxPoiCell( parseValue( kcType, content ), kcType, rowNumber );
       }
       // else let cell be null
     }
@@ -314,6 +372,11 @@ public class StaxPoiSheet implements KSheet {
   }
 
   private void resetSheetReader() throws IOException, XMLStreamException, InvalidFormatException {
+    if ( rowParser != null ) {
+      rowParser.stop();
+      rowParser = new RowParser();
+      return;
+    }
     sheetReader.close();
     sheetStream.close();
     sheetStream = xssfReader.getSheet( sheetId );
@@ -322,7 +385,95 @@ public class StaxPoiSheet implements KSheet {
   }
 
   public void close() throws IOException, XMLStreamException {
+    if ( rowParser != null ) {
+      rowParser.stop();
+      return;
+    }
     sheetReader.close();
     sheetStream.close();
   }
+
+  /**
+   * Parses the rows of the sheet, from the start, on a thread of the parser executor.
+   */
+  private class RowParser implements Runnable {
+    private final BlockingQueue<ParsedRow> rows = new ArrayBlockingQueue<ParsedRow>( PARSED_ROWS );
+    private final Future<?> future;
+    private boolean finished;
+
+    RowParser() {
+      future = parser.submit( this );
+    }
+
+    @Override
+    public void run() {
+      InputStream stream = null;
+      XMLStreamReader xml = null;
+      try {
+        stream = xssfReader.getSheet( sheetId );
+        xml = XMLInputFactory.newInstance().createXMLStreamReader( stream );
+        while ( xml.hasNext() ) {
+          if ( xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals( "row" ) ) {
+            int rowNumber = Integer.parseInt( xml.getAttributeValue( null, "r" ) );
+            rows.put( new ParsedRow( rowNumber, parseRow( xml, rowNumber ), null ) );
+          }
+        }
+        rows.put( END );
+      } catch ( InterruptedException e ) {
+        // stopped
+      } catch ( Exception e ) {
+        try {
+          rows.put( new ParsedRow( -1, null, e ) );
+        } catch ( InterruptedException ie ) {
+          // stopped
+        }
+      } finally {
+        try {
+          if ( xml != null ) {
+            xml.close();
+          }
+          if ( stream != null ) {
+            stream.close();
+          }
+        } catch ( Exception e ) {
+          // nothing left to read
+        }
+      }
+    }
+
+    /**
+     * @return the next row of the sheet, null at the end of the sheet
+     */
+    ParsedRow next() throws Exception {
+      if ( finished ) {
+        return null;
+      }
+      ParsedRow row = rows.take();
+      if ( row.exception != null ) {
+        finished = true;
+        throw row.exception;
+      }
+      if ( row == END ) {
+        finished = true;
+        return null;
+      }
+      return row;
+    }
+
+    void stop() {
+      future.cancel( true );
+    }
+  }
+
+  private static class ParsedRow {
+    private final int rowNumber;
+    private final KCell[] cells;
+    private final Exception exception;
+
+    ParsedRow( int rowNumber, KCell[] cells, Exception exception ) {
+      this.rowNumber = rowNumber;
+      this.cells = cells;
+      this.exception = exception;
+    }
+  }
 }
@@ -31,6 +31,9 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -39,15 +42,20 @@ import javax.xml.stream.XMLStreamReader;
 
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.logging.KettleLogStore;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.spreadsheet.KSheet;
 import org.pentaho.di.core.spreadsheet.KWorkbook;
+import org.pentaho.di.core.util.EnvUtil;
 
 /**
  * Streaming reader for XLSX files.<br>
- * Does not open XLS.
+ * Does not open XLS.<br>
+ * The shared strings are indexed once for all the sheets, see {@link StaxPoiSharedStrings}. With
+ * KETTLE_EXCEL_INPUT_PARALLEL_SHEETS set, the requested sheet and the ones following it are parsed on separate
+ * threads while the rows are read.
  */
 public class StaxPoiWorkbook implements KWorkbook {
 
@@ -67,6 +75,12 @@ public class StaxPoiWorkbook implements KWorkbook {
 
   private OPCPackage opcpkg;
 
+  private StaxPoiSharedStrings sharedStrings;
+
+  // the number of sheets parsed at the same time, 0 to parse on the reading thread
+  private int parallelSheets;
+  private ExecutorService sheetParser;
+
   protected StaxPoiWorkbook() {
     openSheetsMap = new HashMap<String, StaxPoiSheet>();
     this.log = KettleLogStore.getLogChannelInterfaceFactory().create( this );
@@ -97,6 +111,17 @@ public class StaxPoiWorkbook implements KWorkbook {
     XMLStreamReader workbookReader = null;
     try {
       reader = new XSSFReader( pkg );
+      sharedStrings = readSharedStrings( reader );
+      parallelSheets = Const.toInt( EnvUtil.getSystemProperty( Const.KETTLE_EXCEL_INPUT_PARALLEL_SHEETS ), 0 );
+      if ( parallelSheets > 0 ) {
+        sheetParser = Executors.newCachedThreadPool( new ThreadFactory() {
+          public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r, "StaxPoiWorkbook sheet parser" );
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+      }
       sheetNameIDMap = new LinkedHashMap<String, String>();
       workbookData = reader.getWorkbookData();
       XMLInputFactory factory = XMLInputFactory.newInstance();
@@ -134,11 +159,41 @@ public class StaxPoiWorkbook implements KWorkbook {
     }
   }
 
+  private static StaxPoiSharedStrings readSharedStrings( XSSFReader reader ) throws Exception {
+    boolean mapped =
+      "Y".equalsIgnoreCase( EnvUtil.getSystemProperty( Const.KETTLE_EXCEL_INPUT_SHARED_STRINGS_MAPPED ) );
+    // null when the workbook has no shared strings
+    InputStream sharedStringsData = reader.getSharedStringsData();
+    try {
+      return StaxPoiSharedStrings.read( sharedStringsData, mapped );
+    } finally {
+      if ( sharedStringsData != null ) {
+        sharedStringsData.close();
+      }
+    }
+  }
+
   @Override
   /**
    * return the same sheet if it already is created otherwise instantiate a new one
    */
   public KSheet getSheet( String sheetName ) {
+    StaxPoiSheet sheet = openSheet( sheetName );
+    if ( sheet != null && sheetParser != null ) {
+      // start parsing the next sheets while this one is read
+      for ( int i = 0; i < sheetNames.length; i++ ) {
+        if ( sheetNames[i].equals( sheetName ) ) {
+          for ( int next = i + 1; next < i + parallelSheets && next < sheetNames.length; next++ ) {
+            openSheet( sheetNames[next] );
+          }
+          break;
+        }
+      }
+    }
+    return sheet;
+  }
+
+  private StaxPoiSheet openSheet( String sheetName ) {
     String sheetID = sheetNameIDMap.get( sheetName );
     if ( sheetID == null ) {
       return null;
@@ -146,7 +201,7 @@ public class StaxPoiWorkbook implements KWorkbook {
     StaxPoiSheet sheet = openSheetsMap.get( sheetID );
     if ( sheet == null ) {
       try {
-        sheet = new StaxPoiSheet( reader, sheetName, sheetID );
+        sheet = new StaxPoiSheet( reader, sharedStrings, sheetParser, sheetName, sheetID );
         openSheetsMap.put( sheetID, sheet );
       } catch ( Exception e ) {
         log.logError( sheetName, e );
@@ -173,6 +228,12 @@ public class StaxPoiWorkbook implements KWorkbook {
         log.logError( "Could not close xmlstream", e );
       }
     }
+    if ( sheetParser != null ) {
+      sheetParser.shutdownNow();
+    }
+    if ( sharedStrings != null ) {
+      sharedStrings.close();
+    }
     if ( opcpkg != null ) {
       //We should not save change in xlsx because it is input step.
       opcpkg.revert();
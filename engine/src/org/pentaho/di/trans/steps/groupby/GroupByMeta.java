@@ -675,6 +675,31 @@ public class GroupByMeta extends BaseStepMeta implements StepMetaInterface {
           PKG, "GroupByMeta.CheckResult.NoInputError" ), stepMeta );
       remarks.add( cr );
     }
+
+    if ( stepMeta.getCopies() > 1 && !stepMeta.isPartitioned() ) {
+      // Memory group by can't merge first and last values either
+      String message = hasFirstOrLastAggregates()
+        ? "GroupByMeta.CheckResult.CopiesNotPartitionedFirstLast" : "GroupByMeta.CheckResult.CopiesNotPartitioned";
+      cr =
+        new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
+          PKG, message, String.valueOf( stepMeta.getCopies() ) ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  private boolean hasFirstOrLastAggregates() {
+    for ( int type : aggregateType ) {
+      switch ( type ) {
+        case TYPE_GROUP_FIRST:
+        case TYPE_GROUP_LAST:
+        case TYPE_GROUP_FIRST_INCL_NULL:
+        case TYPE_GROUP_LAST_INCL_NULL:
+          return true;
+        default:
+          break;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing (linear probing) hash table over serialized group keys. Every distinct key gets a group number:
+ * 0, 1, 2, ... in the order the keys are added. The group numbers index the accumulator arrays of the
+ * {@link HashAggregator}.
+ */
+public class GroupKeyTable {
+  private static final int MIN_CAPACITY = 16;
+
+  /** The group number + 1 for every slot, 0 for an empty slot */
+  private int[] slots;
+  private int mask;
+
+  private byte[][] keys;
+  private int[] hashes;
+  private int size;
+  private long keyBytes;
+
+  public GroupKeyTable( int expectedSize ) {
+    int capacity = MIN_CAPACITY;
+    while ( capacity < expectedSize * 2 ) {
+      capacity <<= 1;
+    }
+    slots = new int[capacity];
+    mask = capacity - 1;
+    keys = new byte[Math.max( expectedSize, MIN_CAPACITY )][];
+    hashes = new int[keys.length];
+  }
+
+  /**
+   * Looks up a key, adding it if it is new.
+   *
+   * @param buffer
+   *          the buffer holding the serialized key, copied if the key is new
+   * @param length
+   *          the length of the key in the buffer
+   * @param hash
+   *          the hash of the key, see {@link #hash(byte[], int)}
+   * @return the group number of the key, equal to size()-1 after the call if the key was added
+   */
+  public int getOrAdd( byte[] buffer, int length, int hash ) {
+    int index = hash & mask;
+    int slot;
+    while ( ( slot = slots[index] ) != 0 ) {
+      int groupNr = slot - 1;
+      if ( hashes[groupNr] == hash && equals( keys[groupNr], buffer, length ) ) {
+        return groupNr;
+      }
+      index = ( index + 1 ) & mask;
+    }
+
+    if ( size == keys.length ) {
+      keys = Arrays.copyOf( keys, size * 2 );
+      hashes = Arrays.copyOf( hashes, size * 2 );
+    }
+    int groupNr = size++;
+    keys[groupNr] = Arrays.copyOf( buffer, length );
+    hashes[groupNr] = hash;
+    keyBytes += length;
+    slots[index] = groupNr + 1;
+
+    // Keep the table at most half full
+    //
+    if ( size * 2 > slots.length ) {
+      rehash( slots.length * 2 );
+    }
+    return groupNr;
+  }
+
+  private void rehash( int capacity ) {
+    slots = new int[capacity];
+    mask = capacity - 1;
+    for ( int groupNr = 0; groupNr < size; groupNr++ ) {
+      int index = hashes[groupNr] & mask;
+      while ( slots[index] != 0 ) {
+        index = ( index + 1 ) & mask;
+      }
+      slots[index] = groupNr + 1;
+    }
+  }
+
+  private static boolean equals( byte[] key, byte[] buffer, int length ) {
+    if ( key.length != length ) {
+      return false;
+    }
+    for ( int i = 0; i < length; i++ ) {
+      if ( key[i] != buffer[i] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of groups
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the serialized key of the group
+   */
+  public byte[] getKey( int groupNr ) {
+    return keys[groupNr];
+  }
+
+  /**
+   * @return the hash of the key of the group
+   */
+  public int getHash( int groupNr ) {
+    return hashes[groupNr];
+  }
+
+  /**
+   * @return the total size of the keys
+   */
+  public long getKeyBytes() {
+    return keyBytes;
+  }
+
+  /**
+   * @return the approximate memory used by the table for the current keys: the slots, references, hashes and array
+   *         headers, but not the key bytes themselves
+   */
+  public long getTableBytes() {
+    return 36L * size;
+  }
+
+  /**
+   * Removes all keys, keeping the allocated arrays.
+   */
+  public void clear() {
+    Arrays.fill( slots, 0 );
+    Arrays.fill( keys, 0, size, null );
+    size = 0;
+    keyBytes = 0;
+  }
+
+  /**
+   * Hashes a serialized key.
+   *
+   * @param buffer
+   *          the buffer holding the key
+   * @param length
+   *          the length of the key
+   * @return the well mixed hash of the key
+   */
+  public static int hash( byte[] buffer, int length ) {
+    int h = 1;
+    for ( int i = 0; i < length; i++ ) {
+      h = 31 * h + buffer[i];
+    }
+    return mix( h );
+  }
+
+  /**
+   * The murmur3 finalizer, spreading the bits of a hash code over the whole int.
+   */
+  static int mix( int h ) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -0,0 +1,800 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+/**
+ * Aggregates rows in a {@link GroupKeyTable} with primitive accumulator arrays, one entry per group, instead of a map
+ * of boxed {@link Aggregate} objects. Used by the Memory Group By step when all aggregates are sums, averages,
+ * minimums, maximums or counts of Integer or Number fields.<br>
+ * <br>
+ * The estimated memory use is reserved from a {@link MemoryBudget}. When a reservation fails, the partial aggregates are
+ * written to partition files by the hash of their key and the table is emptied. At the end, every partition is
+ * aggregated on its own, which is partitioned again by a different hash function if it still doesn't fit.
+ */
+public class HashAggregator {
+
+  /**
+   * Handles the result of one group.
+   */
+  public interface GroupHandler {
+    void handleGroup( Object[] groupData, Object[] aggregates ) throws KettleException;
+  }
+
+  static final int NR_PARTITIONS = 16;
+  static final int PARTITION_BITS = 4;
+  static final int MAX_LEVEL = 4;
+
+  /** Reserve memory in chunks to limit the contention on a shared budget */
+  private static final long RESERVATION_CHUNK = 4L * 1024 * 1024;
+
+  private static final byte STATE_EMPTY = 0;
+  private static final byte STATE_VALUE = 1;
+  private static final byte STATE_NULL = 2;
+
+  private final RowMetaInterface inputRowMeta;
+  private final RowMetaInterface groupMeta;
+  private final RowMetaInterface keyMeta;
+  private final int[] groupnrs;
+  private final int[] subjectnrs;
+  private final int[] aggregateTypes;
+  private final boolean minNullIsValued;
+  private final MemoryBudget memoryBudget;
+  private final String spillDirectory;
+  private final VariableSpace space;
+
+  /** Don't bother spilling a handful of groups, whatever the budget */
+  int minGroupsToSpill = 1024;
+
+  private final GroupKeyTable table;
+  private final long bytesPerGroup;
+  private int capacity;
+  private long memoryReserved;
+
+  /** Integer sums, minimums and maximums */
+  private long[][] longValues;
+  /** Number sums, minimums and maximums */
+  private double[][] doubleValues;
+  /** Counts, also for averages */
+  private long[][] counts;
+  /** Whether a sum, minimum or maximum has a value */
+  private byte[][] states;
+
+  private final KeyBuffer keyBuffer;
+  private final DataOutputStream keyOutput;
+  private byte[] readBuffer = new byte[256];
+
+  /** The partition files of the input rows, null as long as everything fits in memory */
+  private Spill inputSpill;
+  private final List<Spill> spills = new ArrayList<Spill>();
+
+  /**
+   * @param data
+   *          the data of the step with the input, group and aggregate metadata
+   * @param aggregateTypes
+   *          the aggregate types of the step
+   * @param minNullIsValued
+   *          true if null is smaller than anything else for a minimum
+   * @param memoryBudget
+   *          the budget to reserve memory from, the groups are only spilled when it is limited
+   * @param spillDirectory
+   *          the directory to create the partition files in
+   * @param space
+   *          the variables to resolve the directory with
+   */
+  public HashAggregator( MemoryGroupByData data, int[] aggregateTypes, boolean minNullIsValued,
+    MemoryBudget memoryBudget, String spillDirectory, VariableSpace space ) {
+    this.inputRowMeta = data.inputRowMeta;
+    this.groupMeta = data.groupMeta;
+    this.groupnrs = data.groupnrs;
+    this.subjectnrs = data.subjectnrs;
+    this.aggregateTypes = aggregateTypes;
+    this.minNullIsValued = minNullIsValued;
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.space = space;
+
+    // The keys are serialized with the normal storage type
+    //
+    keyMeta = new RowMeta();
+    for ( int i = 0; i < groupMeta.size(); i++ ) {
+      ValueMetaInterface normalMeta = groupMeta.getValueMeta( i ).clone();
+      normalMeta.setStorageType( ValueMetaInterface.STORAGE_TYPE_NORMAL );
+      keyMeta.addValueMeta( normalMeta );
+    }
+
+    capacity = 1024;
+    table = new GroupKeyTable( capacity );
+    longValues = new long[subjectnrs.length][];
+    doubleValues = new double[subjectnrs.length][];
+    counts = new long[subjectnrs.length][];
+    states = new byte[subjectnrs.length][];
+
+    long bytes = 0;
+    for ( int i = 0; i < subjectnrs.length; i++ ) {
+      switch ( aggregateTypes[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          counts[i] = new long[capacity];
+          bytes += 8;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          counts[i] = new long[capacity];
+          bytes += 8;
+          // Fall through: the sum
+        default:
+          if ( isIntegerValued( data.aggMeta.getValueMeta( i ) ) ) {
+            longValues[i] = new long[capacity];
+          } else {
+            doubleValues[i] = new double[capacity];
+          }
+          states[i] = new byte[capacity];
+          bytes += 9;
+          break;
+      }
+    }
+    bytesPerGroup = bytes;
+
+    keyBuffer = new KeyBuffer();
+    keyOutput = new DataOutputStream( keyBuffer );
+  }
+
+  /**
+   * @return true if all aggregates of the step can be calculated by a HashAggregator
+   */
+  public static boolean canAggregate( MemoryGroupByData data, int[] aggregateTypes ) {
+    for ( int i = 0; i < data.groupMeta.size(); i++ ) {
+      ValueMetaInterface valueMeta = data.groupMeta.getValueMeta( i );
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_STRING:
+          // Keys are compared byte by byte: no collation or case insensitive grouping
+          if ( !valueMeta.isCollatorDisabled() || valueMeta.isCaseInsensitive() ) {
+            return false;
+          }
+          break;
+        case ValueMetaInterface.TYPE_INTEGER:
+        case ValueMetaInterface.TYPE_NUMBER:
+        case ValueMetaInterface.TYPE_DATE:
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          break;
+        default:
+          return false;
+      }
+    }
+
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      switch ( aggregateTypes[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+        case MemoryGroupByMeta.TYPE_GROUP_MIN:
+        case MemoryGroupByMeta.TYPE_GROUP_MAX:
+          ValueMetaInterface subjMeta = data.inputRowMeta.getValueMeta( data.subjectnrs[i] );
+          ValueMetaInterface aggMeta = data.aggMeta.getValueMeta( i );
+          if ( !isPrimitive( subjMeta ) || !isPrimitive( aggMeta ) || subjMeta.isSortedDescending() ) {
+            return false;
+          }
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isPrimitive( ValueMetaInterface valueMeta ) {
+    return valueMeta.getType() == ValueMetaInterface.TYPE_INTEGER
+      || valueMeta.getType() == ValueMetaInterface.TYPE_NUMBER;
+  }
+
+  private static boolean isIntegerValued( ValueMetaInterface valueMeta ) {
+    return valueMeta.getType() == ValueMetaInterface.TYPE_INTEGER;
+  }
+
+  /**
+   * Adds an input row to the aggregates of its group.
+   *
+   * @param r
+   *          the input row
+   * @throws KettleException
+   *           in case the row can't be converted or the aggregates can't be spilled to disk
+   */
+  public void addRow( Object[] r ) throws KettleException {
+    keyBuffer.reset();
+    for ( int i = 0; i < groupnrs.length; i++ ) {
+      ValueMetaInterface valueMeta = groupMeta.getValueMeta( i );
+      Object value = r[groupnrs[i]];
+      if ( valueMeta.isNull( value ) ) {
+        keyMeta.getValueMeta( i ).writeData( keyOutput, null );
+      } else {
+        keyMeta.getValueMeta( i ).writeData( keyOutput, valueMeta.convertToNormalStorageType( value ) );
+      }
+    }
+    byte[] key = keyBuffer.getBuffer();
+    int length = keyBuffer.size();
+    int groupNr = lookup( key, length, GroupKeyTable.hash( key, length ) );
+
+    for ( int i = 0; i < subjectnrs.length; i++ ) {
+      ValueMetaInterface subjMeta = inputRowMeta.getValueMeta( subjectnrs[i] );
+      Object subj = r[subjectnrs[i]];
+
+      switch ( aggregateTypes[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          counts[i][groupNr]++;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+          if ( !subjMeta.isNull( subj ) ) {
+            counts[i][groupNr]++;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          if ( !subjMeta.isNull( subj ) ) {
+            counts[i][groupNr]++;
+          }
+          // Fall through: the sum
+        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+          if ( !subjMeta.isNull( subj ) ) {
+            if ( longValues[i] != null ) {
+              longValues[i][groupNr] += subjMeta.getInteger( subj );
+            } else {
+              doubleValues[i][groupNr] += subjMeta.getNumber( subj );
+            }
+            states[i][groupNr] = STATE_VALUE;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MIN:
+          if ( subjMeta.isNull( subj ) ) {
+            // With KETTLE_AGGREGATION_MIN_NULL_IS_VALUED null is smaller than anything else
+            if ( minNullIsValued ) {
+              states[i][groupNr] = STATE_NULL;
+            }
+          } else if ( longValues[i] != null ) {
+            addMin( i, groupNr, subjMeta.getInteger( subj ) );
+          } else {
+            addMin( i, groupNr, subjMeta.getNumber( subj ) );
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MAX:
+          if ( !subjMeta.isNull( subj ) ) {
+            if ( longValues[i] != null ) {
+              addMax( i, groupNr, subjMeta.getInteger( subj ) );
+            } else {
+              addMax( i, groupNr, subjMeta.getNumber( subj ) );
+            }
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private void addMin( int i, int groupNr, long value ) {
+    byte state = states[i][groupNr];
+    if ( state == STATE_EMPTY || ( state == STATE_VALUE && value < longValues[i][groupNr] ) ) {
+      longValues[i][groupNr] = value;
+      states[i][groupNr] = STATE_VALUE;
+    }
+  }
+
+  private void addMin( int i, int groupNr, double value ) {
+    byte state = states[i][groupNr];
+    if ( state == STATE_EMPTY || ( state == STATE_VALUE && Double.compare( value, doubleValues[i][groupNr] ) < 0 ) ) {
+      doubleValues[i][groupNr] = value;
+      states[i][groupNr] = STATE_VALUE;
+    }
+  }
+
+  private void addMax( int i, int groupNr, long value ) {
+    if ( states[i][groupNr] == STATE_EMPTY || value > longValues[i][groupNr] ) {
+      longValues[i][groupNr] = value;
+      states[i][groupNr] = STATE_VALUE;
+    }
+  }
+
+  private void addMax( int i, int groupNr, double value ) {
+    if ( states[i][groupNr] == STATE_EMPTY || Double.compare( value, doubleValues[i][groupNr] ) > 0 ) {
+      doubleValues[i][groupNr] = value;
+      states[i][groupNr] = STATE_VALUE;
+    }
+  }
+
+  /**
+   * Finds the group of a key, spilling the table to disk if the memory for a new group can't be reserved.
+   */
+  private int lookup( byte[] key, int length, int hash ) throws KettleException {
+    int size = table.size();
+    int groupNr = table.getOrAdd( key, length, hash );
+    if ( table.size() == size ) {
+      return groupNr;
+    }
+    newGroup( groupNr );
+
+    if ( isOverBudget() ) {
+      // Spill the groups we have so far. Every group starts afresh after a spill, the partial aggregates of the same
+      // key in the partition files are merged later on.
+      //
+      inputSpill = spill( inputSpill, 0 );
+      groupNr = table.getOrAdd( key, length, hash );
+      newGroup( groupNr );
+    }
+    return groupNr;
+  }
+
+  private boolean isOverBudget() {
+    return !reserveMemory( table.getKeyBytes() + table.getTableBytes() + table.size() * bytesPerGroup )
+      && table.size() >= minGroupsToSpill;
+  }
+
+  /**
+   * Makes sure the given number of bytes is reserved. The reservation is kept after a spill, the table is filled again
+   * right away.
+   */
+  private boolean reserveMemory( long bytes ) {
+    long needed = bytes - memoryReserved;
+    if ( needed <= 0 ) {
+      return true;
+    }
+    if ( memoryBudget.reserve( Math.max( needed, RESERVATION_CHUNK ) ) ) {
+      memoryReserved += Math.max( needed, RESERVATION_CHUNK );
+      return true;
+    }
+    if ( memoryBudget.reserve( needed ) ) {
+      memoryReserved += needed;
+      return true;
+    }
+    return false;
+  }
+
+  private void releaseMemory() {
+    memoryBudget.release( memoryReserved );
+    memoryReserved = 0L;
+  }
+
+  private void newGroup( int groupNr ) {
+    if ( groupNr >= capacity ) {
+      capacity = Math.max( capacity * 2, groupNr + 1 );
+      for ( int i = 0; i < subjectnrs.length; i++ ) {
+        if ( longValues[i] != null ) {
+          longValues[i] = Arrays.copyOf( longValues[i], capacity );
+        }
+        if ( doubleValues[i] != null ) {
+          doubleValues[i] = Arrays.copyOf( doubleValues[i], capacity );
+        }
+        if ( counts[i] != null ) {
+          counts[i] = Arrays.copyOf( counts[i], capacity );
+        }
+        if ( states[i] != null ) {
+          states[i] = Arrays.copyOf( states[i], capacity );
+        }
+      }
+    }
+
+    // The arrays are reused after a flush or a spill
+    //
+    for ( int i = 0; i < subjectnrs.length; i++ ) {
+      if ( longValues[i] != null ) {
+        longValues[i][groupNr] = 0L;
+      }
+      if ( doubleValues[i] != null ) {
+        doubleValues[i][groupNr] = 0.0;
+      }
+      if ( counts[i] != null ) {
+        counts[i][groupNr] = 0L;
+      }
+      if ( states[i] != null ) {
+        states[i][groupNr] = STATE_EMPTY;
+      }
+    }
+  }
+
+  /**
+   * Hands the result of every group to the handler and empties the aggregator.
+   *
+   * @param handler
+   *          receives the group values (normal storage) and the aggregates
+   * @return the number of groups
+   * @throws KettleException
+   *           in case the handler fails or the partition files can't be read
+   */
+  public long flush( GroupHandler handler ) throws KettleException {
+    try {
+      if ( inputSpill == null ) {
+        return emit( handler );
+      }
+      Spill spill = inputSpill;
+      inputSpill = null;
+      return aggregatePartitions( spill, handler );
+    } finally {
+      releaseMemory();
+    }
+  }
+
+  private long emit( GroupHandler handler ) throws KettleException {
+    int size = table.size();
+    for ( int groupNr = 0; groupNr < size; groupNr++ ) {
+      handler.handleGroup( getGroupData( groupNr ), getAggregates( groupNr ) );
+    }
+    table.clear();
+    return size;
+  }
+
+  private Object[] getGroupData( int groupNr ) throws KettleException {
+    DataInputStream in = new DataInputStream( new ByteArrayInputStream( table.getKey( groupNr ) ) );
+    Object[] groupData = new Object[keyMeta.size()];
+    try {
+      for ( int i = 0; i < groupData.length; i++ ) {
+        groupData[i] = keyMeta.getValueMeta( i ).readData( in );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read the key of a group", e );
+    }
+    return groupData;
+  }
+
+  private Object[] getAggregates( int groupNr ) {
+    Object[] aggregates = new Object[subjectnrs.length];
+    for ( int i = 0; i < subjectnrs.length; i++ ) {
+      switch ( aggregateTypes[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          aggregates[i] = Long.valueOf( counts[i][groupNr] );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          if ( states[i][groupNr] == STATE_VALUE ) {
+            if ( longValues[i] != null ) {
+              aggregates[i] = Long.valueOf( longValues[i][groupNr] / counts[i][groupNr] );
+            } else {
+              aggregates[i] = Double.valueOf( doubleValues[i][groupNr] / counts[i][groupNr] );
+            }
+          }
+          break;
+        default:
+          if ( states[i][groupNr] == STATE_VALUE ) {
+            if ( longValues[i] != null ) {
+              aggregates[i] = Long.valueOf( longValues[i][groupNr] );
+            } else {
+              aggregates[i] = Double.valueOf( doubleValues[i][groupNr] );
+            }
+          }
+          break;
+      }
+    }
+    return aggregates;
+  }
+
+  /**
+   * Writes all groups in the table to the partition files of the given level and empties the table.
+   */
+  private Spill spill( Spill spill, int level ) throws KettleException {
+    if ( spill == null ) {
+      spill = new Spill( level );
+      spills.add( spill );
+    }
+    try {
+      for ( int groupNr = 0; groupNr < table.size(); groupNr++ ) {
+        DataOutputStream out = spill.getOutputStream( table.getHash( groupNr ) );
+        byte[] key = table.getKey( groupNr );
+        out.writeInt( table.getHash( groupNr ) );
+        out.writeInt( key.length );
+        out.write( key );
+        for ( int i = 0; i < subjectnrs.length; i++ ) {
+          out.writeByte( states[i] != null ? states[i][groupNr] : STATE_EMPTY );
+          if ( longValues[i] != null ) {
+            out.writeLong( longValues[i][groupNr] );
+          } else if ( doubleValues[i] != null ) {
+            out.writeDouble( doubleValues[i][groupNr] );
+          }
+          if ( counts[i] != null ) {
+            out.writeLong( counts[i][groupNr] );
+          }
+        }
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to write aggregates to a temporary file", e );
+    }
+    table.clear();
+    return spill;
+  }
+
+  private long aggregatePartitions( Spill spill, GroupHandler handler ) throws KettleException {
+    spill( spill, spill.level );
+    spill.close();
+
+    long nrGroups = 0;
+    for ( int partition = 0; partition < NR_PARTITIONS; partition++ ) {
+      if ( spill.files[partition] != null ) {
+        nrGroups += aggregatePartition( spill, partition, handler );
+      }
+    }
+    spills.remove( spill );
+    return nrGroups;
+  }
+
+  /**
+   * Merges the partial aggregates in a partition file, recursively partitioning it again if it doesn't fit.
+   */
+  private long aggregatePartition( Spill spill, int partition, GroupHandler handler ) throws KettleException {
+    int level = spill.level + 1;
+    Spill subSpill = null;
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( spill.files[partition] ), 50000 ) );
+      for ( long record = 0; record < spill.nrRecords[partition]; record++ ) {
+        int hash = in.readInt();
+        int length = in.readInt();
+        if ( readBuffer.length < length ) {
+          readBuffer = new byte[Math.max( length, readBuffer.length * 2 )];
+        }
+        in.readFully( readBuffer, 0, length );
+
+        int size = table.size();
+        int groupNr = table.getOrAdd( readBuffer, length, hash );
+        if ( table.size() != size ) {
+          newGroup( groupNr );
+          if ( level < MAX_LEVEL && isOverBudget() ) {
+            subSpill = spill( subSpill, level );
+            groupNr = table.getOrAdd( readBuffer, length, hash );
+            newGroup( groupNr );
+          }
+        }
+        merge( in, groupNr );
+      }
+    } catch ( IOException e ) {
+      throw new KettleException( "Unable to read aggregates from a temporary file", e );
+    } finally {
+      spill.delete( partition, in );
+    }
+
+    if ( subSpill == null ) {
+      return emit( handler );
+    }
+    return aggregatePartitions( subSpill, handler );
+  }
+
+  private void merge( DataInputStream in, int groupNr ) throws IOException {
+    for ( int i = 0; i < subjectnrs.length; i++ ) {
+      byte state = in.readByte();
+      long longValue = 0L;
+      double doubleValue = 0.0;
+      long count = 0L;
+      if ( longValues[i] != null ) {
+        longValue = in.readLong();
+      } else if ( doubleValues[i] != null ) {
+        doubleValue = in.readDouble();
+      }
+      if ( counts[i] != null ) {
+        count = in.readLong();
+      }
+      mergeState( i, groupNr, state, longValue, doubleValue, count );
+    }
+  }
+
+  /**
+   * Merges the partial aggregates of another aggregator for the same step, like the one of another step copy. The
+   * other aggregator is empty afterwards.
+   *
+   * @param other
+   *          the aggregator to merge
+   * @throws KettleException
+   *           in case the partition files of either aggregator can't be read or written
+   */
+  public void merge( HashAggregator other ) throws KettleException {
+    GroupKeyTable otherTable = other.table;
+    for ( int otherNr = 0; otherNr < otherTable.size(); otherNr++ ) {
+      byte[] key = otherTable.getKey( otherNr );
+      int groupNr = lookup( key, key.length, otherTable.getHash( otherNr ) );
+      for ( int i = 0; i < subjectnrs.length; i++ ) {
+        mergeState( i, groupNr,
+          other.states[i] != null ? other.states[i][otherNr] : STATE_EMPTY,
+          other.longValues[i] != null ? other.longValues[i][otherNr] : 0L,
+          other.doubleValues[i] != null ? other.doubleValues[i][otherNr] : 0.0,
+          other.counts[i] != null ? other.counts[i][otherNr] : 0L );
+      }
+    }
+    otherTable.clear();
+    other.releaseMemory();
+
+    Spill spill = other.inputSpill;
+    if ( spill == null ) {
+      return;
+    }
+    other.inputSpill = null;
+    spill.close();
+    for ( int partition = 0; partition < NR_PARTITIONS; partition++ ) {
+      if ( spill.files[partition] == null ) {
+        continue;
+      }
+      DataInputStream in = null;
+      try {
+        in = new DataInputStream( new BufferedInputStream( KettleVFS.getInputStream( spill.files[partition] ), 50000 ) );
+        for ( long record = 0; record < spill.nrRecords[partition]; record++ ) {
+          int hash = in.readInt();
+          int length = in.readInt();
+          if ( readBuffer.length < length ) {
+            readBuffer = new byte[Math.max( length, readBuffer.length * 2 )];
+          }
+          in.readFully( readBuffer, 0, length );
+          merge( in, lookup( readBuffer, length, hash ) );
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( "Unable to read aggregates from a temporary file", e );
+      } finally {
+        spill.delete( partition, in );
+      }
+    }
+    other.spills.remove( spill );
+  }
+
+  private void mergeState( int i, int groupNr, byte state, long longValue, double doubleValue, long count ) {
+    switch ( aggregateTypes[i] ) {
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+      case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+        counts[i][groupNr] += count;
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+        counts[i][groupNr] += count;
+        // Fall through: the sum
+      case MemoryGroupByMeta.TYPE_GROUP_SUM:
+        if ( state == STATE_VALUE ) {
+          if ( longValues[i] != null ) {
+            longValues[i][groupNr] += longValue;
+          } else {
+            doubleValues[i][groupNr] += doubleValue;
+          }
+          states[i][groupNr] = STATE_VALUE;
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_MIN:
+        if ( state == STATE_NULL ) {
+          states[i][groupNr] = STATE_NULL;
+        } else if ( state == STATE_VALUE ) {
+          if ( longValues[i] != null ) {
+            addMin( i, groupNr, longValue );
+          } else {
+            addMin( i, groupNr, doubleValue );
+          }
+        }
+        break;
+      case MemoryGroupByMeta.TYPE_GROUP_MAX:
+        if ( state == STATE_VALUE ) {
+          if ( longValues[i] != null ) {
+            addMax( i, groupNr, longValue );
+          } else {
+            addMax( i, groupNr, doubleValue );
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * @return true if the aggregates didn't fit in memory and were written to disk
+   */
+  public boolean isSpilled() {
+    return inputSpill != null;
+  }
+
+  /**
+   * Removes all groups, gives back the reserved memory and deletes any partition files left after an error or a stop.
+   */
+  public void clear() {
+    table.clear();
+    releaseMemory();
+    inputSpill = null;
+    for ( Spill spill : spills ) {
+      spill.close();
+      for ( int partition = 0; partition < NR_PARTITIONS; partition++ ) {
+        spill.delete( partition, null );
+      }
+    }
+    spills.clear();
+  }
+
+  /**
+   * The partition files of one level of spilling.
+   */
+  private class Spill {
+    private final int level;
+    private final FileObject[] files = new FileObject[NR_PARTITIONS];
+    private final DataOutputStream[] outputs = new DataOutputStream[NR_PARTITIONS];
+    private final long[] nrRecords = new long[NR_PARTITIONS];
+
+    Spill( int level ) {
+      this.level = level;
+    }
+
+    DataOutputStream getOutputStream( int hash ) throws KettleException, IOException {
+      // Every level uses other bits of the hash, or a partition would end up in a single sub-partition
+      //
+      int partition = GroupKeyTable.mix( hash + level * 0x9E3779B9 ) >>> ( 32 - PARTITION_BITS );
+      if ( outputs[partition] == null ) {
+        files[partition] = KettleVFS.createTempFile( "memgroupby", ".tmp", spillDirectory, space );
+        outputs[partition] =
+          new DataOutputStream( new BufferedOutputStream( KettleVFS.getOutputStream( files[partition], false ),
+            50000 ) );
+      }
+      nrRecords[partition]++;
+      return outputs[partition];
+    }
+
+    void close() {
+      for ( int partition = 0; partition < NR_PARTITIONS; partition++ ) {
+        if ( outputs[partition] != null ) {
+          try {
+            outputs[partition].close();
+          } catch ( IOException e ) {
+            // Deleted soon enough
+          }
+          outputs[partition] = null;
+        }
+      }
+    }
+
+    void delete( int partition, DataInputStream in ) {
+      try {
+        if ( in != null ) {
+          in.close();
+        }
+        if ( files[partition] != null ) {
+          files[partition].delete();
+        }
+      } catch ( IOException e ) {
+        // Nothing more we can do
+      }
+      files[partition] = null;
+    }
+  }
+
+  /**
+   * Gives access to the bytes written, without copying them.
+   */
+  private static class KeyBuffer extends ByteArrayOutputStream {
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import java.util.TreeSet;
 
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.MemoryBudget;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleValueException;
@@ -69,6 +70,12 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
   private boolean minNullIsValued = false;
   private boolean compatibilityMode = false;
 
+  /** True if the copies of this step aggregate their rows partially and the last copy merges them */
+  private boolean mergingCopies = false;
+
+  /** Collects the partial aggregates of all copies, the one of the first copy is used */
+  private final PartialAggregation partialAggregation = new PartialAggregation();
+
   public MemoryGroupBy( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
                         Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
@@ -84,18 +91,20 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
     Object[] r = getRow(); // get row!
 
+    if ( r == null && mergingCopies && !mergeCopies() ) {
+      // Another copy writes the aggregates of this one
+      //
+      setOutputDone();
+      return false;
+    }
+
     if ( first ) {
       if ( ( r == null ) && ( !meta.isAlwaysGivingBackOneRow() ) ) {
         setOutputDone();
         return false;
       }
 
-      String val = getVariable( Const.KETTLE_AGGREGATION_ALL_NULLS_ARE_ZERO, "N" );
-      allNullsAreZero = ValueMetaBase.convertStringToBoolean( val );
-      val = getVariable( Const.KETTLE_AGGREGATION_MIN_NULL_IS_VALUED, "N" );
-      minNullIsValued = ValueMetaBase.convertStringToBoolean( val );
-      compatibilityMode = ValueMetaBase.convertStringToBoolean(
-        getVariable( Const.KETTLE_COMPATIBILITY_MEMORY_GROUP_BY_SUM_AVERAGE_RETURN_NUMBER_TYPE, "N" ) );
+      readAggregationVariables();
 
       // What is the output looking like?
       //
@@ -169,6 +178,18 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       data.groupAggMeta = new RowMeta();
       data.groupAggMeta.addRowMeta( data.groupMeta );
       data.groupAggMeta.addRowMeta( data.aggMeta );
+
+      // Sums, averages, minimums, maximums and counts of numbers are kept in primitive arrays and spilled to disk
+      // when the memory for the groups can't be reserved from the budget of the transformation.
+      //
+      if ( r != null && HashAggregator.canAggregate( data, meta.getAggregateType() ) ) {
+        MemoryBudget memoryBudget = getTrans() == null ? null : getTrans().getMemoryBudget();
+        if ( memoryBudget == null ) {
+          memoryBudget = new MemoryBudget( 0L, null );
+        }
+        data.hashAggregator = new HashAggregator( data, meta.getAggregateType(), minNullIsValued, memoryBudget,
+          getVariable( Const.KETTLE_SPILL_DIRECTORY, "%%java.io.tmpdir%%" ), this );
+      }
     }
 
     // Here is where we start to do the real work...
@@ -185,7 +206,11 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       data.newBatch = false;
     }
 
-    addToAggregate( r );
+    if ( data.hashAggregator != null ) {
+      data.hashAggregator.addRow( r );
+    } else {
+      addToAggregate( r );
+    }
 
     if ( checkFeedback( getLinesRead() ) ) {
       if ( log.isBasic() ) {
@@ -196,7 +221,209 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
     return true;
   }
 
+  private void readAggregationVariables() {
+    String val = getVariable( Const.KETTLE_AGGREGATION_ALL_NULLS_ARE_ZERO, "N" );
+    allNullsAreZero = ValueMetaBase.convertStringToBoolean( val );
+    val = getVariable( Const.KETTLE_AGGREGATION_MIN_NULL_IS_VALUED, "N" );
+    minNullIsValued = ValueMetaBase.convertStringToBoolean( val );
+    compatibilityMode = ValueMetaBase.convertStringToBoolean(
+      getVariable( Const.KETTLE_COMPATIBILITY_MEMORY_GROUP_BY_SUM_AVERAGE_RETURN_NUMBER_TYPE, "N" ) );
+  }
+
+  /**
+   * The copies of the step receive their rows round robin, so every copy has partial aggregates of possibly all the
+   * groups. When it runs out of rows, a copy hands its aggregates over to the copy that finishes last, which merges
+   * them.
+   *
+   * @return true if this copy finished last and holds the merged aggregates of all copies
+   * @throws KettleException
+   *           in case the aggregates can't be merged
+   */
+  private boolean mergeCopies() throws KettleException {
+    mergingCopies = false;
+
+    List<StepInterface> copies = getTrans().findBaseSteps( getStepname() );
+    MemoryGroupBy firstCopy = (MemoryGroupBy) getTrans().findStepInterface( getStepname(), 0 );
+    List<MemoryGroupByData> partials =
+      firstCopy.partialAggregation.finish( getCopy(), copies.size(), first ? null : data.detach() );
+    if ( partials == null ) {
+      return false;
+    }
+
+    if ( log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.MergingCopies", String.valueOf( partials
+        .size() ) ) );
+    }
+    for ( int i = 0; i < partials.size(); i++ ) {
+      if ( i == 0 ) {
+        data.adopt( partials.get( i ) );
+        if ( first ) {
+          readAggregationVariables();
+          first = false;
+        }
+      } else {
+        mergePartial( partials.get( i ) );
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Merges the partial aggregates of another step copy into the ones of this copy.
+   */
+  private void mergePartial( MemoryGroupByData partial ) throws KettleException {
+    if ( data.hashAggregator != null && partial.hashAggregator != null ) {
+      data.hashAggregator.merge( partial.hashAggregator );
+      return;
+    }
+
+    for ( HashEntry partialEntry : partial.map.keySet() ) {
+      Aggregate partialAggregate = partial.map.get( partialEntry );
+      HashEntry entry = data.getHashEntry( partialEntry.getGroupData() );
+      Aggregate aggregate = data.map.get( entry );
+      if ( aggregate == null ) {
+        data.map.put( entry, partialAggregate );
+      } else {
+        mergeAggregate( aggregate, partialAggregate, partial.aggMeta );
+      }
+    }
+    partial.map.clear();
+  }
+
+  /**
+   * Merges the aggregates of a group in another copy. First and last values never get here, see
+   * {@link #isMergingCopies()}. Concatenations add the values of the other copy at the end: the order of the values
+   * is the order in which the copies got the rows, which isn't defined either.
+   *
+   * Used for junits in MemoryGroupByMergeTest
+   *
+   * @param aggregate
+   *          the aggregate of this copy
+   * @param partial
+   *          the aggregate of the same group in another copy
+   * @param partialMeta
+   *          the metadata of the aggregates of the other copy
+   * @throws KettleException
+   */
+  @SuppressWarnings( "unchecked" ) void mergeAggregate( Aggregate aggregate, Aggregate partial,
+    RowMetaInterface partialMeta ) throws KettleException {
+    for ( int i = 0; i < data.subjectnrs.length; i++ ) {
+      Object value = aggregate.agg[i];
+      ValueMetaInterface valueMeta = data.aggMeta.getValueMeta( i );
+      Object partialValue = partial.agg[i];
+      ValueMetaInterface partialValueMeta = partialMeta.getValueMeta( i );
+
+      switch ( meta.getAggregateType()[i] ) {
+        case MemoryGroupByMeta.TYPE_GROUP_SUM:
+          aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, partialValueMeta, partialValue );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_AVERAGE:
+          aggregate.agg[i] = ValueDataUtil.sum( valueMeta, value, partialValueMeta, partialValue );
+          aggregate.counts[i] += partial.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MEDIAN:
+        case MemoryGroupByMeta.TYPE_GROUP_PERCENTILE:
+          ( (List<Double>) aggregate.agg[i] ).addAll( (List<Double>) partialValue );
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION:
+          // Combine the means and the sums of squared differences of both parts (Chan et al.)
+          //
+          long n1 = aggregate.counts[i];
+          long n2 = partial.counts[i];
+          if ( n2 == 0 ) {
+            break;
+          }
+          if ( n1 == 0 ) {
+            aggregate.agg[i] = partialValue;
+            aggregate.mean[i] = partial.mean[i];
+          } else {
+            double n = n1 + n2;
+            double delta = partial.mean[i] - aggregate.mean[i];
+            double m1 = value == null ? 0.0 : (Double) value;
+            double m2 = partialValue == null ? 0.0 : (Double) partialValue;
+            aggregate.mean[i] = aggregate.mean[i] + delta * n2 / n;
+            aggregate.agg[i] = m1 + m2 + delta * delta * n1 * n2 / n;
+          }
+          aggregate.counts[i] = n1 + n2;
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT:
+          if ( partial.distinctObjs == null || partial.distinctObjs[i] == null ) {
+            break;
+          }
+          if ( aggregate.distinctObjs == null ) {
+            aggregate.distinctObjs = new Set[meta.getSubjectField().length];
+          }
+          if ( aggregate.distinctObjs[i] == null ) {
+            aggregate.distinctObjs[i] = new TreeSet<>();
+          }
+          aggregate.distinctObjs[i].addAll( partial.distinctObjs[i] );
+          aggregate.counts[i] = aggregate.distinctObjs[i].size();
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL:
+        case MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY:
+          aggregate.counts[i] += partial.counts[i];
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MIN:
+          boolean partialIsNull = partialValueMeta.isNull( partialValue );
+          boolean valueIsNull = valueMeta.isNull( value );
+          if ( minNullIsValued || ( !partialIsNull && !valueIsNull ) ) {
+            aggregate.agg[i] = partialValueMeta.compare( partialValue, valueMeta, value ) < 0 ? partialValue : value;
+          } else if ( valueIsNull && !partialIsNull ) {
+            aggregate.agg[i] = partialValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_MAX:
+          if ( partialValueMeta.compare( partialValue, valueMeta, value ) > 0 ) {
+            aggregate.agg[i] = partialValue;
+          }
+          break;
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA:
+        case MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING:
+          StringBuilder partialSb = (StringBuilder) partialValue;
+          if ( partialSb.length() > 0 ) {
+            StringBuilder sb = (StringBuilder) value;
+            if ( sb.length() > 0 ) {
+              if ( meta.getAggregateType()[i] == MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA ) {
+                sb.append( ", " );
+              } else if ( !Utils.isEmpty( meta.getValueField()[i] ) ) {
+                sb.append( environmentSubstitute( meta.getValueField()[i] ) );
+              }
+            }
+            sb.append( partialSb );
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
   private void handleLastOfGroup() throws KettleException {
+    if ( data.hashAggregator != null ) {
+      if ( data.hashAggregator.isSpilled() && log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "MemoryGroupBy.Log.AggregatingSpilledGroups" ) );
+      }
+      long nrGroups = data.hashAggregator.flush( new HashAggregator.GroupHandler() {
+        @Override
+        public void handleGroup( Object[] groupData, Object[] aggregates ) throws KettleException {
+          Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+          System.arraycopy( groupData, 0, outputRowData, 0, groupData.length );
+          for ( int i = 0; i < aggregates.length; i++ ) {
+            Object ag = aggregates[i];
+            if ( ag == null && allNullsAreZero ) {
+              ag = ValueDataUtil.getZeroForValueMetaType( data.aggMeta.getValueMeta( i ) );
+            }
+            outputRowData[groupData.length + i] = ag;
+          }
+          putRow( data.outputRowMeta, outputRowData );
+        }
+      } );
+      if ( nrGroups == 0 ) {
+        handleNoGroups();
+      }
+      return;
+    }
+
     // Dump the content of the map...
     //
     for ( HashEntry entry : data.map.keySet() ) {
@@ -214,10 +441,16 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
       putRow( data.outputRowMeta, outputRowData );
     }
 
+    if ( data.map.isEmpty() ) {
+      handleNoGroups();
+    }
+  }
+
+  private void handleNoGroups() throws KettleException {
     // What if we always need to give back one row?
     // This means we give back 0 for count all, count distinct, null for everything else
     //
-    if ( data.map.isEmpty() && meta.isAlwaysGivingBackOneRow() ) {
+    if ( meta.isAlwaysGivingBackOneRow() ) {
       Object[] outputRowData = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
       int index = 0;
       for ( int i = 0; i < data.groupMeta.size(); i++ ) {
@@ -559,11 +792,37 @@ public class MemoryGroupBy extends BaseStep implements StepInterface {
 
     if ( super.init( smi, sdi ) ) {
       data.map = new HashMap<HashEntry, Aggregate>( 5000 );
+      mergingCopies = isMergingCopies();
       return true;
     }
     return false;
   }
 
+  /**
+   * Copies of the step that aren't partitioned and get distinct rows need to merge their aggregates. First and last
+   * values can't be merged: a copy doesn't know where its rows were in the input of the other copies. Every copy then
+   * writes its own groups, like before, and the check of the step warns about it.
+   *
+   * Used for junits in MemoryGroupByMergeTest
+   */
+  boolean isMergingCopies() {
+    StepMeta stepMeta = getStepMeta();
+    if ( stepMeta.getCopies() <= 1 || stepMeta.isPartitioned() || stepMeta.isClustered()
+      || getTrans().findBaseSteps( getStepname() ).size() <= 1 ) {
+      return false;
+    }
+    if ( meta.hasFirstOrLastAggregates() ) {
+      return false;
+    }
+    for ( StepMeta previousStep : getTransMeta().findPreviousSteps( stepMeta ) ) {
+      if ( !previousStep.isDistributes() ) {
+        // Every copy receives all rows
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     super.dispose( smi, sdi );
@@ -77,6 +77,9 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
 
   public HashMap<HashEntry, Aggregate> map;
 
+  /** Used instead of the map when all aggregates can be kept in primitive arrays */
+  public HashAggregator hashAggregator;
+
   public RowMetaInterface aggMeta;
   public RowMetaInterface groupMeta;
   public RowMetaInterface entryMeta;
@@ -108,10 +111,49 @@ public class MemoryGroupByData extends BaseStepData implements StepDataInterface
     return new HashEntry( groupData );
   }
 
+  /**
+   * Moves the aggregates and the metadata to a new data object, leaving an empty map behind. Used to hand the partial
+   * aggregates of a step copy over to the copy that merges them.
+   *
+   * @return the new data object with the aggregates of this one
+   */
+  public MemoryGroupByData detach() {
+    MemoryGroupByData partial = new MemoryGroupByData();
+    partial.adopt( this );
+    map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+    hashAggregator = null;
+    return partial;
+  }
+
+  /**
+   * Takes over the aggregates and the metadata of another data object.
+   *
+   * @param other
+   *          the data object to take over from
+   */
+  public void adopt( MemoryGroupByData other ) {
+    map = other.map;
+    hashAggregator = other.hashAggregator;
+    aggMeta = other.aggMeta;
+    groupMeta = other.groupMeta;
+    entryMeta = other.entryMeta;
+    groupAggMeta = other.groupAggMeta;
+    groupnrs = other.groupnrs;
+    subjectnrs = other.subjectnrs;
+    inputRowMeta = other.inputRowMeta;
+    outputRowMeta = other.outputRowMeta;
+    valueMetaInteger = other.valueMetaInteger;
+    valueMetaNumber = other.valueMetaNumber;
+  }
+
   /**
    * Method responsible for clearing out memory hogs
    */
   public void clear() {
     map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+    if ( hashAggregator != null ) {
+      hashAggregator.clear();
+      hashAggregator = null;
+    }
   }
 }
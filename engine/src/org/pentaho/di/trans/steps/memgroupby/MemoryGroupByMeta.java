@@ -533,6 +533,32 @@ public class MemoryGroupByMeta extends BaseStepMeta implements StepMetaInterface
           PKG, "MemoryGroupByMeta.CheckResult.NoInputError" ), stepMeta );
       remarks.add( cr );
     }
+
+    if ( stepMeta.getCopies() > 1 && !stepMeta.isPartitioned() && hasFirstOrLastAggregates() ) {
+      cr =
+        new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
+          PKG, "MemoryGroupByMeta.CheckResult.CopiesNotMerged", String.valueOf( stepMeta.getCopies() ) ), stepMeta );
+      remarks.add( cr );
+    }
+  }
+
+  /**
+   * @return true if an aggregate takes the first or the last value of a group. These depend on the order of all the
+   *         rows, so copies of the step that each get a part of the rows can't merge them.
+   */
+  public boolean hasFirstOrLastAggregates() {
+    for ( int type : aggregateType ) {
+      switch ( type ) {
+        case TYPE_GROUP_FIRST:
+        case TYPE_GROUP_LAST:
+        case TYPE_GROUP_FIRST_INCL_NULL:
+        case TYPE_GROUP_LAST_INCL_NULL:
+          return true;
+        default:
+          break;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the partial aggregates of the copies of a Memory Group By step that receive their rows round robin. Every
+ * copy aggregates its own rows and hands them over when it runs out of input. The copy that finishes last merges all
+ * of them and writes the result.
+ */
+public class PartialAggregation {
+  private final Map<Integer, MemoryGroupByData> partials = new TreeMap<Integer, MemoryGroupByData>();
+  private int nrFinished;
+
+  /**
+   * Hands over the partial aggregates of a step copy.
+   *
+   * @param copyNr
+   *          the copy number of the step copy
+   * @param nrCopies
+   *          the number of copies of the step
+   * @param partial
+   *          the partial aggregates of the step copy, null if it didn't receive any rows
+   * @return the partial aggregates of all copies that received rows, in copy order, if this is the last copy to
+   *         finish, null otherwise
+   */
+  public synchronized List<MemoryGroupByData> finish( int copyNr, int nrCopies, MemoryGroupByData partial ) {
+    if ( partial != null ) {
+      partials.put( copyNr, partial );
+    }
+    nrFinished++;
+    if ( nrFinished < nrCopies ) {
+      return null;
+    }
+    List<MemoryGroupByData> result = new ArrayList<MemoryGroupByData>( partials.values() );
+    partials.clear();
+    return result;
+  }
+}
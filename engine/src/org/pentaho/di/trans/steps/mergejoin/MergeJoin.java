@@ -22,12 +22,16 @@
 
 package org.pentaho.di.trans.steps.mergejoin;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.MemoryBudget;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.hash.GraceHashJoin;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -72,6 +76,10 @@ public class MergeJoin extends BaseStep implements StepInterface {
     data = (MergeJoinData) sdi;
     int compare;
 
+    if ( meta.isHashJoin() ) {
+      return processHashJoinRow();
+    }
+
     if ( first ) {
       first = false;
 
@@ -394,6 +402,177 @@ public class MergeJoin extends BaseStep implements StepInterface {
     return true;
   }
 
+  /**
+   * Join unsorted inputs: read the second stream into a hash table that spills partitions to disk when it doesn't fit
+   * in memory, then join every row of the first stream with it. The output is in the order of the first stream, except
+   * for rows of spilled partitions and unmatched rows of the second stream, which come out at the end.
+   * <p>
+   * A step that writes to both streams would wait forever on the full row set of the first stream while the second
+   * stream is read, so in that case the rows of the first stream are kept in memory meanwhile.
+   */
+  private boolean processHashJoinRow() throws KettleException {
+    if ( first ) {
+      first = false;
+
+      List<StreamInterface> infoStreams = meta.getStepIOMeta().getInfoStreams();
+
+      data.oneRowSet = findInputRowSet( infoStreams.get( 0 ).getStepname() );
+      if ( data.oneRowSet == null ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "MergeJoin.Exception.UnableToFindSpecifiedStep", infoStreams.get( 0 ).getStepname() ) );
+      }
+
+      data.twoRowSet = findInputRowSet( infoStreams.get( 1 ).getStepname() );
+      if ( data.twoRowSet == null ) {
+        throw new KettleException( BaseMessages.getString(
+          PKG, "MergeJoin.Exception.UnableToFindSpecifiedStep", infoStreams.get( 1 ).getStepname() ) );
+      }
+
+      StepMeta sharedStep = meta.findSharedUpstreamStep( getTransMeta() );
+      if ( sharedStep != null ) {
+        data.probeRows = new ArrayDeque<Object[]>();
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString(
+            PKG, "MergeJoin.Log.HashJoinSharedUpstreamStep", sharedStep.getName() ) );
+        }
+      }
+
+      // Build the hash table from the second stream
+      //
+      data.two = getBuildRow();
+      if ( data.two != null ) {
+        data.twoMeta = data.twoRowSet.getRowMeta();
+      } else {
+        data.twoMeta = getTransMeta().getStepFields( infoStreams.get( 1 ).getStepname() );
+      }
+      data.keyNrs2 = findKeyNrs( data.twoMeta, meta.getKeyFields2() );
+
+      long megaBytes = Const.toLong( environmentSubstitute( meta.getMemoryLimit() ), 0L );
+      MemoryBudget memoryBudget =
+        GraceHashJoin.createMemoryBudget( megaBytes, getTrans() == null ? null : getTrans().getMemoryBudget() );
+      data.hashJoin =
+        new GraceHashJoin( data.twoMeta, data.keyNrs2, memoryBudget, this,
+          getVariable( Const.KETTLE_SPILL_DIRECTORY, "%%java.io.tmpdir%%" ), "merge_join" );
+      data.hashJoin.setReturningUnmatchedBuildRows( data.one_optional );
+
+      while ( data.two != null && !isStopped() ) {
+        data.hashJoin.addBuildRow( data.two );
+        data.two = getBuildRow();
+      }
+      if ( isStopped() ) {
+        return false;
+      }
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "MergeJoin.Log.HashJoinPartitionsSpilled",
+          String.valueOf( data.hashJoin.getNrSpilledPartitions() ) ) );
+      }
+
+      data.one = getProbeRow();
+      if ( data.one != null ) {
+        data.oneMeta = data.oneRowSet.getRowMeta();
+      } else {
+        data.oneMeta = getTransMeta().getStepFields( infoStreams.get( 0 ).getStepname() );
+      }
+      data.keyNrs1 = findKeyNrs( data.oneMeta, meta.getKeyFields1() );
+
+      data.outputRowMeta = new RowMeta();
+      data.outputRowMeta.mergeRowMeta( data.oneMeta.clone() );
+      data.outputRowMeta.mergeRowMeta( data.twoMeta.clone() );
+      data.one_dummy = RowDataUtil.allocateRowData( data.oneMeta.size() + data.twoMeta.size() );
+      data.two_dummy = new Object[data.twoMeta.size()];
+
+      data.hashJoin.startProbe( data.oneMeta, data.keyNrs1 );
+      data.joinListener = new HashJoinListener();
+    } else {
+      data.one = getProbeRow();
+    }
+
+    if ( data.one == null ) {
+      // Join the partitions that were written to disk
+      data.hashJoin.finishProbe( data.joinListener );
+      setOutputDone();
+      return false;
+    }
+
+    data.hashJoin.probe( data.one, data.joinListener );
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      logBasic( BaseMessages.getString( PKG, "MergeJoin.LineNumber" ) + getLinesRead() );
+    }
+    return true;
+  }
+
+  /**
+   * Reads a row of the second stream. If a step writes to both streams, the rows that arrive on the first stream in the
+   * meantime are kept in memory so that step never waits for us.
+   */
+  private Object[] getBuildRow() throws KettleException {
+    if ( data.probeRows != null ) {
+      while ( data.twoRowSet.size() == 0 && !data.twoRowSet.isDone() && !isStopped() ) {
+        if ( data.oneRowSet.size() > 0 ) {
+          data.probeRows.add( getRowFrom( data.oneRowSet ) );
+        } else {
+          try {
+            Thread.sleep( 1 );
+          } catch ( InterruptedException e ) {
+            throw new KettleStepException( e );
+          }
+        }
+      }
+    }
+    return getRowFrom( data.twoRowSet );
+  }
+
+  /**
+   * Reads a row of the first stream, the rows kept in memory while the second stream was read come first.
+   */
+  private Object[] getProbeRow() throws KettleException {
+    if ( data.probeRows != null && !data.probeRows.isEmpty() ) {
+      return data.probeRows.poll();
+    }
+    return getRowFrom( data.oneRowSet );
+  }
+
+  private int[] findKeyNrs( RowMetaInterface rowMeta, String[] keyFields ) throws KettleStepException {
+    int[] keyNrs = new int[keyFields.length];
+    for ( int i = 0; i < keyNrs.length; i++ ) {
+      keyNrs[i] = rowMeta.indexOfValue( keyFields[i] );
+      if ( keyNrs[i] < 0 ) {
+        String message =
+          BaseMessages.getString( PKG, "MergeJoin.Exception.UnableToFindFieldInReferenceStream", keyFields[i] );
+        logError( message );
+        throw new KettleStepException( message );
+      }
+    }
+    return keyNrs;
+  }
+
+  /**
+   * Passes on the result of the hash join: the first stream is the probe input, the second stream the build input.
+   */
+  private class HashJoinListener implements GraceHashJoin.JoinListener {
+    @Override
+    public void rowsJoined( Object[] one, Object[] two ) throws KettleException {
+      // A row of the first stream can match more than one row of the second
+      Object[] oneBig = RowDataUtil.createResizedCopy( one, data.outputRowMeta.size() );
+      putRow( data.outputRowMeta, RowDataUtil.addRowData( oneBig, data.oneMeta.size(), two ) );
+    }
+
+    @Override
+    public void probeRowUnmatched( Object[] one ) throws KettleException {
+      if ( data.two_optional ) {
+        Object[] outputRowData = RowDataUtil.createResizedCopy( one, data.outputRowMeta.size() );
+        putRow( data.outputRowMeta, RowDataUtil.addRowData( outputRowData, data.oneMeta.size(), data.two_dummy ) );
+      }
+    }
+
+    @Override
+    public void buildRowUnmatched( Object[] two ) throws KettleException {
+      Object[] outputRowData = RowDataUtil.createResizedCopy( data.one_dummy, data.outputRowMeta.size() );
+      putRow( data.outputRowMeta, RowDataUtil.addRowData( outputRowData, data.oneMeta.size(), two ) );
+    }
+  }
+
   /**
    * @see StepInterface#init(org.pentaho.di.trans.step.StepMetaInterface , org.pentaho.di.trans.step.StepDataInterface)
    */
@@ -421,6 +600,19 @@ public class MergeJoin extends BaseStep implements StepInterface {
     return true;
   }
 
+  @Override
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    data = (MergeJoinData) sdi;
+
+    // Remove the temporary files of the hash join, if any
+    if ( data.hashJoin != null ) {
+      data.hashJoin.close();
+      data.hashJoin = null;
+    }
+
+    super.dispose( smi, sdi );
+  }
+
   /**
    * Checks whether incoming rows are join compatible. This essentially means that the keys being compared should be of
    * the same datatype and both rows should have the same number of keys specified
@@ -22,9 +22,11 @@
 
 package org.pentaho.di.trans.steps.mergejoin;
 
+import java.util.Deque;
 import java.util.List;
 
 import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.hash.GraceHashJoin;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
@@ -49,6 +51,16 @@ public class MergeJoinData extends BaseStepData implements StepDataInterface {
   public RowSet oneRowSet;
   public RowSet twoRowSet;
 
+  /** The hash join of unsorted inputs, null when merging sorted inputs */
+  public GraceHashJoin hashJoin;
+  public GraceHashJoin.JoinListener joinListener;
+
+  /**
+   * The rows of the first stream read while the hash join reads the second stream, null unless a step writes to both
+   * streams
+   */
+  public Deque<Object[]> probeRows;
+
   /**
    * Default initializer
    */
@@ -22,7 +22,11 @@
 
 package org.pentaho.di.trans.steps.mergejoin;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
@@ -78,6 +82,14 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
   @Injection( name = "KEY_FIELD2" )
   private String[] keyFields2;
 
+  /** Join unsorted inputs with a hash join on the second stream instead of merging sorted inputs */
+  @Injection( name = "HASH_JOIN" )
+  private boolean hashJoin;
+
+  /** The memory the hash join can use before partitions are written to disk, in MB */
+  @Injection( name = "HASH_JOIN_MEMORY_LIMIT" )
+  private String memoryLimit;
+
   /**
    * The supported join types are INNER, LEFT OUTER, RIGHT OUTER and FULL OUTER
    *
@@ -124,6 +136,76 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
     this.keyFields2 = keyFields2;
   }
 
+  /**
+   * @return true if the inputs don't have to be sorted: the second stream is read into a hash table (spilling to disk
+   *         when it doesn't fit in memory) and the first stream is joined with it. If a step writes to both streams,
+   *         the rows of the first stream are kept in memory while the second stream is read, see
+   *         {@link #findSharedUpstreamStep(TransMeta)}.
+   */
+  public boolean isHashJoin() {
+    return hashJoin;
+  }
+
+  /**
+   * @param hashJoin true to join unsorted inputs with a hash join
+   */
+  public void setHashJoin( boolean hashJoin ) {
+    this.hashJoin = hashJoin;
+  }
+
+  /**
+   * @return the memory the hash join can use before it writes partitions to disk in MB, empty to use the memory budget
+   *         of the transformation
+   */
+  public String getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  /**
+   * @param memoryLimit the memory limit of the hash join in MB
+   */
+  public void setMemoryLimit( String memoryLimit ) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  /**
+   * Finds a step that writes to both streams, directly or through other steps. Such a step blocks when the row set
+   * of the first stream is full while the hash join still reads the second stream.
+   *
+   * @param transMeta
+   *          the transformation of this step
+   * @return a step before both streams or null if the streams come from different steps
+   */
+  public StepMeta findSharedUpstreamStep( TransMeta transMeta ) {
+    List<StreamInterface> infoStreams = getStepIOMeta().getInfoStreams();
+    StepMeta one = infoStreams.get( 0 ).getStepMeta();
+    StepMeta two = infoStreams.get( 1 ).getStepMeta();
+    if ( one == null || two == null ) {
+      return null;
+    }
+
+    Set<StepMeta> upstreamOne = findUpstreamSteps( transMeta, one );
+    for ( StepMeta step : findUpstreamSteps( transMeta, two ) ) {
+      if ( upstreamOne.contains( step ) ) {
+        return step;
+      }
+    }
+    return null;
+  }
+
+  private static Set<StepMeta> findUpstreamSteps( TransMeta transMeta, StepMeta stepMeta ) {
+    Set<StepMeta> steps = new HashSet<StepMeta>();
+    Deque<StepMeta> todo = new ArrayDeque<StepMeta>();
+    todo.add( stepMeta );
+    while ( !todo.isEmpty() ) {
+      StepMeta step = todo.poll();
+      if ( steps.add( step ) ) {
+        todo.addAll( transMeta.findPreviousSteps( step, true ) );
+      }
+    }
+    return steps;
+  }
+
   public boolean excludeFromRowLayoutVerification() {
     return true;
   }
@@ -168,6 +250,8 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( XMLHandler.addTagValue( "join_type", getJoinType() ) );
     retval.append( XMLHandler.addTagValue( "step1", infoStreams.get( 0 ).getStepname() ) );
     retval.append( XMLHandler.addTagValue( "step2", infoStreams.get( 1 ).getStepname() ) );
+    retval.append( XMLHandler.addTagValue( "hash_join", hashJoin ) );
+    retval.append( XMLHandler.addTagValue( "memory_limit", memoryLimit ) );
 
     retval.append( "    <keys_1>" + Const.CR );
     for ( int i = 0; i < keyFields1.length; i++ ) {
@@ -209,6 +293,8 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
       infoStreams.get( 0 ).setSubject( XMLHandler.getTagValue( stepnode, "step1" ) );
       infoStreams.get( 1 ).setSubject( XMLHandler.getTagValue( stepnode, "step2" ) );
       joinType = XMLHandler.getTagValue( stepnode, "join_type" );
+      hashJoin = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "hash_join" ) );
+      memoryLimit = XMLHandler.getTagValue( stepnode, "memory_limit" );
     } catch ( Exception e ) {
       throw new KettleXMLException(
         BaseMessages.getString( PKG, "MergeJoinMeta.Exception.UnableToLoadStepInfo" ), e );
@@ -217,6 +303,8 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
 
   public void setDefault() {
     joinType = join_types[0];
+    hashJoin = false;
+    memoryLimit = null;
     allocate( 0, 0 );
   }
 
@@ -238,6 +326,8 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
       infoStreams.get( 0 ).setSubject( rep.getStepAttributeString( id_step, "step1" ) );
       infoStreams.get( 1 ).setSubject( rep.getStepAttributeString( id_step, "step2" ) );
       joinType = rep.getStepAttributeString( id_step, "join_type" );
+      hashJoin = rep.getStepAttributeBoolean( id_step, "hash_join" );
+      memoryLimit = rep.getStepAttributeString( id_step, "memory_limit" );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString(
         PKG, "MergeJoinMeta.Exception.UnexpectedErrorReadingStepInfo" ), e );
@@ -266,6 +356,8 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "step1", infoStreams.get( 0 ).getStepname() );
       rep.saveStepAttribute( id_transformation, id_step, "step2", infoStreams.get( 1 ).getStepname() );
       rep.saveStepAttribute( id_transformation, id_step, "join_type", getJoinType() );
+      rep.saveStepAttribute( id_transformation, id_step, "hash_join", hashJoin );
+      rep.saveStepAttribute( id_transformation, id_step, "memory_limit", memoryLimit );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString( PKG, "MergeJoinMeta.Exception.UnableToSaveStepInfo" )
         + id_step, e );
@@ -283,6 +375,16 @@ public class MergeJoinMeta extends BaseStepMeta implements StepMetaInterface {
       new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
         PKG, "MergeJoinMeta.CheckResult.StepNotVerified" ), stepMeta );
     remarks.add( cr );
+
+    if ( hashJoin ) {
+      StepMeta sharedStep = findSharedUpstreamStep( transMeta );
+      if ( sharedStep != null ) {
+        cr =
+          new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
+            PKG, "MergeJoinMeta.CheckResult.HashJoinSharedUpstreamStep", sharedStep.getName() ), stepMeta );
+        remarks.add( cr );
+      }
+    }
   }
 
   public void getFields( RowMetaInterface r, String name, RowMetaInterface[] info, StepMeta nextStep,
@@ -0,0 +1,238 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.parallelgzipcsv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+/**
+ * Reads a part of a bzip2 file. Blocks start with a 48 bit magic number at any bit position, so their boundaries are
+ * found by scanning. Every block is decompressed as a stream of its own, checked against the CRC in its header.
+ */
+public class Bzip2SplitInputStream extends SplitInputStream {
+
+  private static final long BLOCK_MAGIC = 0x314159265359L;
+  private static final long END_MAGIC = 0x177245385090L;
+  private static final long MAGIC_MASK = 0xFFFFFFFFFFFFL;
+  private static final int MAGIC_BITS = 48;
+
+  /** The stream header of the blocks: the largest block size, so any block fits. */
+  private static final byte[] STREAM_HEADER = { 'B', 'Z', 'h', '9' };
+
+  private final InputStream in;
+
+  private byte[] input = new byte[1024 * 1024];
+  private long inputOffset;
+  private int inputLen;
+  private boolean inputEof;
+  private long keepFrom;
+
+  private boolean positioned;
+  private long scanBit;
+  private InputStream block;
+
+  /**
+   * @param in         the bzip2 file, read from the start
+   * @param rangeStart the first position of the range
+   * @param rangeEnd   the position after the range, Long.MAX_VALUE for the last range
+   */
+  public Bzip2SplitInputStream( InputStream in, long rangeStart, long rangeEnd ) {
+    super( rangeStart, rangeEnd );
+    this.in = in;
+  }
+
+  @Override
+  protected long nextUnit() throws IOException {
+    if ( !positioned ) {
+      positioned = true;
+      long skipped = 0;
+      while ( skipped < rangeStart ) {
+        long n = in.skip( rangeStart - skipped );
+        if ( n <= 0 ) {
+          if ( in.read() < 0 ) {
+            inputEof = true;
+            break;
+          }
+          n = 1;
+        }
+        skipped += n;
+      }
+      inputOffset = skipped;
+      scanBit = skipped * 8;
+    }
+    closeBlock();
+
+    long start = findMagic( scanBit, true );
+    if ( start < 0 ) {
+      return -1;
+    }
+    keepFrom = start >>> 3;
+    long end = findMagic( start + MAGIC_BITS, false );
+    if ( end < 0 ) {
+      end = ( inputOffset + inputLen ) * 8;
+    }
+    if ( end - start < MAGIC_BITS + 32 ) {
+      throw new IOException( "Truncated bzip2 block at position " + ( start >>> 3 ) );
+    }
+    block = new BZip2CompressorInputStream( new ByteArrayInputStream( toStream( start, end ) ) );
+    scanBit = end;
+    return start >>> 3;
+  }
+
+  @Override
+  protected int readUnit( byte[] b, int off, int len ) throws IOException {
+    if ( block == null ) {
+      return -1;
+    }
+    int n = block.read( b, off, len );
+    if ( n < 0 ) {
+      closeBlock();
+    }
+    return n;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeBlock();
+    in.close();
+  }
+
+  private void closeBlock() throws IOException {
+    if ( block != null ) {
+      block.close();
+      block = null;
+    }
+  }
+
+  /**
+   * Searches for a block magic number, or the end of stream one, at or after the given bit position. When searching
+   * for the start of a block the bytes scanned are dropped from the buffer.
+   *
+   * @return the bit position of the magic number or -1 if there is none
+   */
+  private long findMagic( long fromBit, boolean blockOnly ) throws IOException {
+    long position = fromBit >>> 3;
+    if ( blockOnly ) {
+      keepFrom = position;
+    }
+    long register = 0;
+    long bit = position * 8;
+    while ( ensure( position ) ) {
+      int end = inputLen;
+      for ( int i = (int) ( position - inputOffset ); i < end; i++ ) {
+        int b = input[i];
+        for ( int k = 7; k >= 0; k-- ) {
+          register = ( ( register << 1 ) | ( ( b >>> k ) & 1 ) ) & MAGIC_MASK;
+          bit++;
+          long start = bit - MAGIC_BITS;
+          if ( start >= fromBit && ( register == BLOCK_MAGIC || !blockOnly && register == END_MAGIC ) ) {
+            return start;
+          }
+        }
+      }
+      position = inputOffset + end;
+      if ( blockOnly ) {
+        // A magic number found later on can start in the last 6 bytes scanned
+        keepFrom = Math.max( keepFrom, position - MAGIC_BITS / 8 - 1 );
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Wraps the bits of a block in a stream of its own: a stream header, the block and the end of stream magic number.
+   * The CRC of a stream with one block is the CRC of the block.
+   */
+  private byte[] toStream( long start, long end ) {
+    long nrBits = end - start;
+    int nrBytes = (int) ( ( nrBits + 7 ) >>> 3 );
+    byte[] stream = new byte[STREAM_HEADER.length + nrBytes + 11];
+    System.arraycopy( STREAM_HEADER, 0, stream, 0, STREAM_HEADER.length );
+
+    int from = (int) ( ( start >>> 3 ) - inputOffset );
+    int shift = (int) ( start & 7 );
+    for ( int j = 0; j < nrBytes; j++ ) {
+      int high = input[from + j] & 0xFF;
+      int low = from + j + 1 < inputLen ? input[from + j + 1] & 0xFF : 0;
+      stream[STREAM_HEADER.length + j] = (byte) ( ( high << shift ) | ( low >>> ( 8 - shift ) ) );
+    }
+    int tailBits = (int) ( nrBits & 7 );
+    if ( tailBits != 0 ) {
+      stream[STREAM_HEADER.length + nrBytes - 1] &= 0xFF << ( 8 - tailBits );
+    }
+
+    long bit = STREAM_HEADER.length * 8L + nrBits;
+    bit = putBits( stream, bit, END_MAGIC, MAGIC_BITS );
+    putBits( stream, bit, getBits( start + MAGIC_BITS, 32 ), 32 );
+    return stream;
+  }
+
+  private long getBits( long bit, int count ) {
+    long value = 0;
+    for ( int k = 0; k < count; k++, bit++ ) {
+      int b = input[(int) ( ( bit >>> 3 ) - inputOffset )];
+      value = ( value << 1 ) | ( ( b >>> ( 7 - ( bit & 7 ) ) ) & 1 );
+    }
+    return value;
+  }
+
+  private static long putBits( byte[] stream, long bit, long value, int count ) {
+    for ( int k = count - 1; k >= 0; k--, bit++ ) {
+      if ( ( ( value >>> k ) & 1 ) != 0 ) {
+        stream[(int) ( bit >>> 3 )] |= 0x80 >>> ( bit & 7 );
+      }
+    }
+    return bit;
+  }
+
+  /**
+   * Makes sure the input buffer holds the byte at the given position. Bytes before keepFrom can be dropped.
+   *
+   * @return false at the end of the file
+   */
+  private boolean ensure( long position ) throws IOException {
+    while ( inputOffset + inputLen <= position && !inputEof ) {
+      int drop = (int) Math.min( keepFrom - inputOffset, inputLen );
+      if ( drop > 0 ) {
+        System.arraycopy( input, drop, input, 0, inputLen - drop );
+        inputLen -= drop;
+        inputOffset += drop;
+      }
+      if ( inputLen == input.length ) {
+        input = Arrays.copyOf( input, input.length * 2 );
+      }
+      int r = in.read( input, inputLen, input.length - inputLen );
+      if ( r < 0 ) {
+        inputEof = true;
+      } else {
+        inputLen += r;
+      }
+    }
+    return position < inputOffset + inputLen;
+  }
+}
@@ -0,0 +1,323 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.parallelgzipcsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a part of a gzip file with multiple members, like the files written by bgzip or concatenated gzip files. The
+ * start of a member is found by scanning for a gzip header and inflating the start of the member that follows it.
+ * Every member is checked against the CRC32 and size in its trailer.
+ */
+public class GzipSplitInputStream extends SplitInputStream {
+
+  /** The number of compressed bytes searched for a second member to see if a file can be split. */
+  public static final long DETECTION_SIZE = 4L * 1024 * 1024;
+
+  private static final int FTEXT_MASK = 0xE0;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private static final int PROBE_SIZE = 32 * 1024;
+  private static final int MAX_PROBE_INPUT = 1024 * 1024;
+
+  private final InputStream in;
+  private final Inflater inflater = new Inflater( true );
+  private final CRC32 crc = new CRC32();
+
+  private byte[] input = new byte[64 * 1024];
+  private long inputOffset;
+  private int inputLen;
+  private boolean inputEof;
+  private long keepFrom;
+
+  private boolean positioned;
+  private long scanPosition;
+  private long scanLimit = Long.MAX_VALUE;
+
+  private boolean inMember;
+  private boolean memberFinished;
+  private boolean probing;
+  private long memberStart;
+  private long memberDataPosition;
+
+  private final byte[] probe = new byte[PROBE_SIZE];
+  private int probePos;
+  private int probeLen;
+
+  /**
+   * @param in         the gzip file, read from the start
+   * @param rangeStart the first position of the range
+   * @param rangeEnd   the position after the range, Long.MAX_VALUE for the last range
+   */
+  public GzipSplitInputStream( InputStream in, long rangeStart, long rangeEnd ) {
+    super( rangeStart, rangeEnd );
+    this.in = in;
+  }
+
+  void setScanLimit( long scanLimit ) {
+    this.scanLimit = scanLimit;
+  }
+
+  @Override
+  protected long nextUnit() throws IOException {
+    if ( !positioned ) {
+      positioned = true;
+      long skipped = 0;
+      while ( skipped < rangeStart ) {
+        long n = in.skip( rangeStart - skipped );
+        if ( n <= 0 ) {
+          if ( in.read() < 0 ) {
+            inputEof = true;
+            break;
+          }
+          n = 1;
+        }
+        skipped += n;
+      }
+      inputOffset = skipped;
+      scanPosition = skipped;
+    }
+
+    inMember = false;
+    while ( true ) {
+      long candidate = findHeader( scanPosition );
+      if ( candidate < 0 ) {
+        return -1;
+      }
+      if ( startMember( candidate ) ) {
+        return candidate;
+      }
+      scanPosition = candidate + 1;
+    }
+  }
+
+  @Override
+  protected int readUnit( byte[] b, int off, int len ) throws IOException {
+    if ( !inMember ) {
+      return -1;
+    }
+    if ( probePos < probeLen ) {
+      int n = Math.min( len, probeLen - probePos );
+      System.arraycopy( probe, probePos, b, off, n );
+      probePos += n;
+      return n;
+    }
+    try {
+      int n = memberFinished ? -1 : inflate( b, off, len );
+      if ( n < 0 ) {
+        inMember = false;
+      }
+      return n;
+    } catch ( DataFormatException e ) {
+      throw new ZipException( "Corrupt gzip member at position " + memberStart + " : " + e.getMessage() );
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    in.close();
+  }
+
+  /**
+   * @return the position of the next possible gzip header at or after the given position, -1 if there is none
+   */
+  private long findHeader( long position ) throws IOException {
+    keepFrom = position;
+    while ( position < scanLimit && ensure( position, 4 ) == 4 ) {
+      int i = (int) ( position - inputOffset );
+      int end = (int) Math.min( inputLen - 3, scanLimit - inputOffset );
+      for ( ; i < end; i++ ) {
+        if ( input[i] == (byte) 0x1f && input[i + 1] == (byte) 0x8b && input[i + 2] == 8
+          && ( input[i + 3] & FTEXT_MASK ) == 0 ) {
+          return inputOffset + i;
+        }
+      }
+      position = inputOffset + end;
+      keepFrom = position;
+    }
+    return -1;
+  }
+
+  /**
+   * Parses the header at the given position and inflates the start of the member to see if it is a real one.
+   *
+   * @return true if a member starts at the position
+   */
+  private boolean startMember( long position ) throws IOException {
+    keepFrom = position;
+    if ( ensure( position, 10 ) < 10 ) {
+      return false;
+    }
+    int flags = input[(int) ( position - inputOffset ) + 3] & 0xFF;
+    long pos = position + 10;
+    if ( ( flags & FEXTRA ) != 0 ) {
+      if ( ensure( pos, 2 ) < 2 ) {
+        return false;
+      }
+      int i = (int) ( pos - inputOffset );
+      pos += 2 + ( ( input[i] & 0xFF ) | ( ( input[i + 1] & 0xFF ) << 8 ) );
+    }
+    if ( ( flags & FNAME ) != 0 ) {
+      pos = skipZeroTerminated( pos );
+    }
+    if ( pos >= 0 && ( flags & FCOMMENT ) != 0 ) {
+      pos = skipZeroTerminated( pos );
+    }
+    if ( pos >= 0 && ( flags & FHCRC ) != 0 ) {
+      pos += 2;
+    }
+    if ( pos < 0 ) {
+      return false;
+    }
+
+    inflater.reset();
+    crc.reset();
+    memberStart = position;
+    memberDataPosition = pos;
+    memberFinished = false;
+    probePos = 0;
+    probeLen = 0;
+
+    // Inflate the start of the member: a header found in compressed data fails to inflate almost right away
+    //
+    probing = true;
+    try {
+      while ( probeLen < probe.length && !memberFinished ) {
+        int n = inflate( probe, probeLen, probe.length - probeLen );
+        if ( n < 0 || memberDataPosition - position > MAX_PROBE_INPUT && probeLen == 0 ) {
+          break;
+        }
+        probeLen += n;
+      }
+    } catch ( DataFormatException e ) {
+      return false;
+    } finally {
+      probing = false;
+    }
+    if ( !memberFinished && probeLen == 0 ) {
+      return false;
+    }
+    inMember = true;
+    return true;
+  }
+
+  private long skipZeroTerminated( long pos ) throws IOException {
+    while ( ensure( pos, 1 ) == 1 ) {
+      if ( input[(int) ( pos++ - inputOffset )] == 0 ) {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Inflates data of the current member.
+   *
+   * @return the number of bytes inflated, -1 at the end of the member
+   */
+  private int inflate( byte[] b, int off, int len ) throws IOException, DataFormatException {
+    while ( true ) {
+      int n = inflater.inflate( b, off, len );
+      if ( n > 0 ) {
+        crc.update( b, off, n );
+        return n;
+      }
+      if ( inflater.finished() ) {
+        readTrailer();
+        return -1;
+      }
+      if ( inflater.needsDictionary() ) {
+        throw new DataFormatException( "Preset dictionaries are not supported" );
+      }
+      if ( inflater.needsInput() ) {
+        if ( !probing ) {
+          keepFrom = memberDataPosition;
+        }
+        if ( ensure( memberDataPosition, 1 ) == 0 ) {
+          throw new DataFormatException( "Unexpected end of file" );
+        }
+        int i = (int) ( memberDataPosition - inputOffset );
+        inflater.setInput( input, i, inputLen - i );
+        memberDataPosition += inputLen - i;
+      }
+    }
+  }
+
+  private void readTrailer() throws IOException, DataFormatException {
+    memberDataPosition -= inflater.getRemaining();
+    if ( ensure( memberDataPosition, 8 ) < 8 ) {
+      throw new DataFormatException( "Unexpected end of file" );
+    }
+    int i = (int) ( memberDataPosition - inputOffset );
+    if ( readInt( i ) != crc.getValue() ) {
+      throw new DataFormatException( "CRC32 mismatch" );
+    }
+    if ( readInt( i + 4 ) != ( inflater.getBytesWritten() & 0xFFFFFFFFL ) ) {
+      throw new DataFormatException( "Size mismatch" );
+    }
+    memberFinished = true;
+    scanPosition = memberDataPosition + 8;
+  }
+
+  private long readInt( int i ) {
+    return ( input[i] & 0xFFL ) | ( ( input[i + 1] & 0xFFL ) << 8 ) | ( ( input[i + 2] & 0xFFL ) << 16 )
+      | ( ( input[i + 3] & 0xFFL ) << 24 );
+  }
+
+  /**
+   * Makes sure the input buffer holds the bytes at the given position. Bytes before keepFrom can be dropped.
+   *
+   * @return the number of the requested bytes available, less at the end of the file
+   */
+  private int ensure( long position, int n ) throws IOException {
+    while ( inputOffset + inputLen - position < n && !inputEof ) {
+      int drop = (int) Math.min( keepFrom - inputOffset, inputLen );
+      if ( drop > 0 ) {
+        System.arraycopy( input, drop, input, 0, inputLen - drop );
+        inputLen -= drop;
+        inputOffset += drop;
+      }
+      if ( inputLen == input.length ) {
+        input = Arrays.copyOf( input, input.length * 2 );
+      }
+      int r = in.read( input, inputLen, input.length - inputLen );
+      if ( r < 0 ) {
+        inputEof = true;
+      } else {
+        inputLen += r;
+      }
+    }
+    return (int) Math.max( 0, Math.min( n, inputOffset + inputLen - position ) );
+  }
+}
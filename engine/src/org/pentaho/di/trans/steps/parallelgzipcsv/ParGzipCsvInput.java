@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.parallelgzipcsv;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
@@ -286,7 +287,11 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
         data.binaryFilename = data.filenames[data.filenr].getBytes();
       }
 
-      data.gzis = new GZIPInputStream( data.fis, data.bufferSize );
+      data.gzis = openSplit( fileObject );
+      data.split = data.gzis != null;
+      if ( !data.split ) {
+        data.gzis = new GZIPInputStream( data.fis, data.bufferSize );
+      }
 
       clearBuffer();
       data.fileReadPosition = 0L;
@@ -297,9 +302,20 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
       //
       data.filenr++;
 
-      // If we are running in parallel and we need to skip bytes in the first file, let's do so here.
-      //
-      if ( data.parallel ) {
+      if ( data.split ) {
+        // The split stream only returns the rows of this step copy: read it all until we hit an EOF.
+        //
+        data.blockSize = Long.MAX_VALUE;
+        data.totalBytesRead = 0L;
+
+        // The header row is in the part of the first step copy
+        //
+        if ( meta.isHeaderPresent() && ( !data.parallel || data.stepNumber == 0 ) ) {
+          readOneRow( false );
+        }
+      } else if ( data.parallel ) {
+        // If we are running in parallel and we need to skip bytes in the first file, let's do so here.
+        //
         // Calculate the first block of data to read from the file
         // If the buffer size is 500, we read 0-499 for the first file,
         // 500-999 for the second, 1000-1499 for the third, etc.
@@ -391,6 +407,38 @@ public class ParGzipCsvInput extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Files with independently compressed units, multi-member gzip or bzip2, are split in a compressed byte range per
+   * step copy. That way every copy only decompresses its own part of the file.
+   *
+   * @return the stream of the rows in the part of this step copy or null if the file can't be split
+   */
+  private InputStream openSplit( FileObject fileObject ) throws Exception {
+    InputStream probe = KettleVFS.getInputStream( fileObject );
+    int format = SplitInputStream.detectFormat( probe, data.parallel );
+    if ( format == SplitInputStream.FORMAT_NONE ) {
+      return null;
+    }
+
+    long rangeStart = 0L;
+    long rangeEnd = Long.MAX_VALUE;
+    if ( data.parallel ) {
+      long rangeSize = fileObject.getContent().getSize() / data.totalNumberOfSteps + 1;
+      rangeStart = data.stepNumber * rangeSize;
+      if ( data.stepNumber < data.totalNumberOfSteps - 1 ) {
+        rangeEnd = rangeStart + rangeSize;
+      }
+      logBasic( "Reading compressed bytes " + rangeStart + " to " + ( rangeStart + rangeSize ) + " of file "
+        + data.filenames[data.filenr] + " in step copy " + data.stepNumber );
+    }
+
+    if ( format == SplitInputStream.FORMAT_BZIP2 ) {
+      return new Bzip2SplitInputStream( data.fis, rangeStart, rangeEnd );
+    } else {
+      return new GzipSplitInputStream( data.fis, rangeStart, rangeEnd );
+    }
+  }
+
   private void clearBuffer() {
     data.startBuffer = 0;
     data.endBuffer = 0;
@@ -24,7 +24,6 @@ package org.pentaho.di.trans.steps.parallelgzipcsv;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
 
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -55,7 +54,11 @@ public class ParGzipCsvInputData extends BaseStepData implements StepDataInterfa
   public boolean parallel;
   public int filenameFieldIndex;
   public int rownumFieldIndex;
-  public GZIPInputStream gzis;
+  /**
+   * The decompressed data of the file: the whole file or the part read by this step copy when the file is split.
+   */
+  public InputStream gzis;
+  public boolean split;
   public int bufferSize;
   public byte[] delimiter;
   public byte[] enclosure;
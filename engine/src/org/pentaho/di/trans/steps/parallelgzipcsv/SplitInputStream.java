@@ -0,0 +1,268 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.parallelgzipcsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * Reads the rows of one part of a compressed file that consists of independently compressed units: gzip members or
+ * bzip2 blocks. The compressed file is divided in byte ranges, one per step copy, and a copy decompresses the units
+ * that start in its range.
+ * <p>
+ * Rows are divided the way splits of text files are: a copy skips the partial row at the start of its first unit and
+ * finishes its last row in the first unit of the next range. Together the copies return every row exactly once.
+ *
+ * @see GzipSplitInputStream
+ * @see Bzip2SplitInputStream
+ */
+public abstract class SplitInputStream extends InputStream {
+
+  /** The file can't be split, it has to be decompressed from the start. */
+  public static final int FORMAT_NONE = 0;
+  public static final int FORMAT_GZIP = 1;
+  public static final int FORMAT_BZIP2 = 2;
+
+  private static final int STATE_SKIP = 0;
+  private static final int STATE_EMIT = 1;
+  private static final int STATE_TAIL = 2;
+  private static final int STATE_TAIL_LF = 3;
+  private static final int STATE_DONE = 4;
+
+  protected final long rangeStart;
+  protected final long rangeEnd;
+
+  private final byte[] buffer = new byte[64 * 1024];
+  private int bufferPos;
+  private int bufferLen;
+
+  private boolean started;
+  private int state;
+  private boolean beyondRange;
+  private boolean beyondRangeRead;
+
+  /**
+   * @param rangeStart the first position in the compressed file of the range
+   * @param rangeEnd   the position after the range, Long.MAX_VALUE for the last range
+   */
+  protected SplitInputStream( long rangeStart, long rangeEnd ) {
+    this.rangeStart = rangeStart;
+    this.rangeEnd = rangeEnd;
+  }
+
+  /**
+   * Moves to the next unit in the file.
+   *
+   * @return the position in the compressed file where the unit starts or -1 if there are no more units
+   * @throws IOException in case the file can't be read
+   */
+  protected abstract long nextUnit() throws IOException;
+
+  /**
+   * Reads decompressed data of the current unit.
+   *
+   * @return the number of bytes read or -1 at the end of the unit
+   * @throws IOException in case the data is corrupt or can't be read
+   */
+  protected abstract int readUnit( byte[] b, int off, int len ) throws IOException;
+
+  /**
+   * Looks at the start of a file to see how it can be read.
+   *
+   * @param in    the file, it is read from the start and closed
+   * @param split true if the file is going to be read in parts: gzip files are only split if the first member is
+   *              followed by another one in the first {@link GzipSplitInputStream#DETECTION_SIZE} bytes
+   * @return FORMAT_GZIP or FORMAT_BZIP2 to read the file with a split stream, FORMAT_NONE to read it as a whole
+   * @throws IOException in case the file can't be read
+   */
+  public static int detectFormat( InputStream in, boolean split ) throws IOException {
+    PushbackInputStream pin = new PushbackInputStream( in, 3 );
+    try {
+      byte[] magic = new byte[3];
+      int len = 0;
+      while ( len < magic.length ) {
+        int n = pin.read( magic, len, magic.length - len );
+        if ( n < 0 ) {
+          return FORMAT_NONE;
+        }
+        len += n;
+      }
+      if ( magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h' ) {
+        return FORMAT_BZIP2;
+      }
+      if ( !split || magic[0] != (byte) 0x1f || magic[1] != (byte) 0x8b ) {
+        return FORMAT_NONE;
+      }
+      pin.unread( magic );
+      GzipSplitInputStream gzip = new GzipSplitInputStream( pin, 1L, Long.MAX_VALUE );
+      try {
+        gzip.setScanLimit( GzipSplitInputStream.DETECTION_SIZE );
+        return gzip.nextUnit() >= 0 ? FORMAT_GZIP : FORMAT_NONE;
+      } finally {
+        gzip.close();
+      }
+    } finally {
+      pin.close();
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int n;
+    do {
+      n = read( b, 0, 1 );
+    } while ( n == 0 );
+    return n < 0 ? -1 : b[0] & 0xFF;
+  }
+
+  @Override
+  public int read( byte[] b, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( !started ) {
+      started = true;
+      long start = nextUnit();
+      if ( start < 0 || start >= rangeEnd ) {
+        // The first unit belongs to the next range
+        state = STATE_DONE;
+      } else {
+        state = rangeStart > 0 ? STATE_SKIP : STATE_EMIT;
+      }
+    }
+
+    while ( true ) {
+      switch ( state ) {
+        case STATE_SKIP:
+          skipLine();
+          if ( beyondRangeRead ) {
+            // The partial row ended in the next range: the next copy doesn't skip anything after it
+            state = STATE_DONE;
+          } else {
+            state = beyondRange ? STATE_TAIL : STATE_EMIT;
+          }
+          break;
+
+        case STATE_EMIT:
+          if ( bufferPos == bufferLen && !fill() ) {
+            state = STATE_DONE;
+            break;
+          }
+          if ( beyondRange ) {
+            state = STATE_TAIL;
+            break;
+          }
+          return copy( b, off, Math.min( len, bufferLen - bufferPos ) );
+
+        case STATE_TAIL:
+          // Finish the last row with the first line of the next range
+          if ( bufferPos == bufferLen && !fill() ) {
+            state = STATE_DONE;
+            break;
+          }
+          int end = Math.min( bufferLen, bufferPos + len );
+          for ( int i = bufferPos; i < end; i++ ) {
+            if ( buffer[i] == '\n' || buffer[i] == '\r' ) {
+              state = buffer[i] == '\r' ? STATE_TAIL_LF : STATE_DONE;
+              return copy( b, off, i + 1 - bufferPos );
+            }
+          }
+          return copy( b, off, end - bufferPos );
+
+        case STATE_TAIL_LF:
+          state = STATE_DONE;
+          if ( peek() == '\n' ) {
+            return copy( b, off, 1 );
+          }
+          break;
+
+        default:
+          return -1;
+      }
+    }
+  }
+
+  private int copy( byte[] b, int off, int n ) {
+    System.arraycopy( buffer, bufferPos, b, off, n );
+    bufferPos += n;
+    return n;
+  }
+
+  /**
+   * Skips up to and including the next line end: CR, LF or CR+LF.
+   */
+  private void skipLine() throws IOException {
+    int b;
+    do {
+      b = next();
+    } while ( b >= 0 && b != '\n' && b != '\r' );
+    if ( b == '\r' && peek() == '\n' ) {
+      next();
+    }
+  }
+
+  private int next() throws IOException {
+    if ( bufferPos == bufferLen && !fill() ) {
+      return -1;
+    }
+    if ( beyondRange ) {
+      beyondRangeRead = true;
+    }
+    return buffer[bufferPos++] & 0xFF;
+  }
+
+  private int peek() throws IOException {
+    if ( bufferPos == bufferLen && !fill() ) {
+      return -1;
+    }
+    return buffer[bufferPos] & 0xFF;
+  }
+
+  /**
+   * Reads the next decompressed data in the buffer, moving on to the next unit when needed.
+   *
+   * @return false at the end of the file
+   */
+  private boolean fill() throws IOException {
+    while ( true ) {
+      int n = readUnit( buffer, 0, buffer.length );
+      if ( n > 0 ) {
+        bufferPos = 0;
+        bufferLen = n;
+        return true;
+      }
+      if ( n < 0 ) {
+        long start = nextUnit();
+        if ( start < 0 ) {
+          return false;
+        }
+        if ( start >= rangeEnd ) {
+          beyondRange = true;
+        }
+      }
+    }
+  }
+}
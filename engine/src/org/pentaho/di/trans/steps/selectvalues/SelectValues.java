@@ -340,13 +340,46 @@ public class SelectValues extends BaseStep implements StepInterface {
     meta = (SelectValuesMeta) smi;
     data = (SelectValuesData) sdi;
 
-    Object[] rowData = getRow(); // get row from rowset, wait for our turn, indicate busy!
-    if ( rowData == null ) { // no more input to be expected...
+    // get a batch of rows from rowset, wait for our turn, indicate busy!
+    List<Object[]> rows = getRows( getRowBatchSize() );
+    if ( rows == null ) { // no more input to be expected...
 
       setOutputDone();
       return false;
     }
 
+    long lineNr = getLinesRead() - rows.size();
+    List<Object[]> outputRows = new ArrayList<Object[]>( rows.size() );
+    for ( Object[] rowData : rows ) {
+      if ( !processOneRow( rowData, outputRows ) ) {
+        // Send what we have so far on its way
+        //
+        putRows( data.metadataRowMeta, outputRows );
+        setOutputDone(); // signal end to receiver(s)
+        return false;
+      }
+
+      lineNr++;
+      if ( checkFeedback( lineNr ) ) {
+        logBasic( BaseMessages.getString( PKG, "SelectValues.Log.LineNumber" ) + lineNr );
+      }
+    }
+
+    // Send the rows on their way
+    //
+    putRows( data.metadataRowMeta, outputRows );
+
+    return true;
+  }
+
+  /**
+   * Select, remove and change the metadata of the values of a single row.
+   *
+   * @param rowData the input row
+   * @param outputRows the list to add the output row to
+   * @return false if no more rows should be processed
+   */
+  private boolean processOneRow( Object[] rowData, List<Object[]> outputRows ) throws KettleException {
     Object[] rowCopy = null;
     if ( getStepMeta().isDoingErrorHandling() ) {
       rowCopy = getInputRowMeta().cloneRow( rowData );
@@ -382,13 +415,10 @@ public class SelectValues extends BaseStep implements StepInterface {
       }
 
       if ( outputData == null ) {
-        setOutputDone(); // signal end to receiver(s)
         return false;
       }
 
-      // Send the row on its way
-      //
-      putRow( data.metadataRowMeta, outputData );
+      outputRows.add( outputData );
       if ( log.isRowLevel() ) {
         logRowlevel( BaseMessages.getString( PKG, "SelectValues.Log.WroteRowToNextStep" )
           + data.metadataRowMeta.getString( outputData ) );
@@ -409,10 +439,6 @@ public class SelectValues extends BaseStep implements StepInterface {
       }
     }
 
-    if ( checkFeedback( getLinesRead() ) ) {
-      logBasic( BaseMessages.getString( PKG, "SelectValues.Log.LineNumber" ) + getLinesRead() );
-    }
-
     return true;
   }
 
@@ -28,13 +28,12 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.SocketCompression;
 import org.pentaho.di.core.exception.KettleEOFException;
 import org.pentaho.di.core.exception.KettleException;
-import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.codec.RowCodecFactory;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -92,11 +91,12 @@ public class SocketReader extends BaseStep implements StepInterface {
 
             if ( meta.isCompressed() ) {
               data.outputStream =
-                new DataOutputStream( new BufferedOutputStream( new GZIPOutputStream( data.socket
-                  .getOutputStream() ), bufferSize ) );
+                new DataOutputStream( new BufferedOutputStream( SocketCompression.createOutputStream(
+                  meta.getCompressionType(), data.socket.getOutputStream(), 512 ), bufferSize ) );
               data.inputStream =
-                new DataInputStream( new BufferedInputStream(
-                  new GZIPInputStream( data.socket.getInputStream() ), bufferSize ) );
+                new DataInputStream( new BufferedInputStream( SocketCompression.createInputStream(
+                  meta.getCompressionType(), data.socket.getInputStream(), toString() + " (decompression)" ),
+                  bufferSize ) );
             } else {
               data.outputStream =
                 new DataOutputStream( new BufferedOutputStream( data.socket.getOutputStream(), bufferSize ) );
@@ -136,10 +136,12 @@ public class SocketReader extends BaseStep implements StepInterface {
           }
         }
 
-        data.rowMeta = new RowMeta( data.inputStream ); // This is the metadata
+        // The metadata, preceded by the header of the row codec the writer uses (if any)
+        data.rowCodec = RowCodecFactory.readRowMeta( data.inputStream );
+        data.rowMeta = data.rowCodec.getRowMeta();
         first = false;
       }
-      r = data.rowMeta.readData( data.inputStream );
+      r = data.rowCodec.readRow( data.inputStream );
 
       incrementLinesInput();
 
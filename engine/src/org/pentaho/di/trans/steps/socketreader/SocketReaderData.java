@@ -27,6 +27,7 @@ import java.io.DataOutputStream;
 import java.net.Socket;
 
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -41,6 +42,7 @@ public class SocketReaderData extends BaseStepData implements StepDataInterface
   public DataOutputStream outputStream;
   public DataInputStream inputStream;
   public RowMetaInterface rowMeta;
+  public RowCodec rowCodec;
 
   public SocketReaderData() {
     super();
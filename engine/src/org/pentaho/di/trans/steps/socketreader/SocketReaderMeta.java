@@ -58,6 +58,7 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
   private String port;
   private String bufferSize;
   private boolean compressed;
+  private String compressionType;
 
   public SocketReaderMeta() {
     super(); // allocate BaseStepMeta
@@ -79,6 +80,7 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
     xml.append( "     " + XMLHandler.addTagValue( "port", port ) );
     xml.append( "     " + XMLHandler.addTagValue( "buffer_size", bufferSize ) );
     xml.append( "     " + XMLHandler.addTagValue( "compressed", compressed ) );
+    xml.append( "     " + XMLHandler.addTagValue( "compression_type", compressionType ) );
 
     return xml.toString();
   }
@@ -88,6 +90,7 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
     port = XMLHandler.getTagValue( stepnode, "port" );
     bufferSize = XMLHandler.getTagValue( stepnode, "buffer_size" );
     compressed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compressed" ) );
+    compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
   }
 
   public void setDefault() {
@@ -100,6 +103,7 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
     port = rep.getStepAttributeString( id_step, "port" );
     bufferSize = rep.getStepAttributeString( id_step, "buffer_size" );
     compressed = rep.getStepAttributeBoolean( id_step, "compressed" );
+    compressionType = rep.getStepAttributeString( id_step, "compression_type" );
   }
 
   public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
@@ -107,6 +111,7 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
     rep.saveStepAttribute( id_transformation, id_step, "port", port );
     rep.saveStepAttribute( id_transformation, id_step, "buffer_size", bufferSize );
     rep.saveStepAttribute( id_transformation, id_step, "compressed", compressed );
+    rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
   }
 
   public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
@@ -205,4 +210,19 @@ public class SocketReaderMeta extends BaseStepMeta implements StepMetaInterface
   public void setCompressed( boolean compressed ) {
     this.compressed = compressed;
   }
+
+  /**
+   * @return the name of the compression provider used when compressed, GZIP if empty
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider used when compressed, GZIP if empty
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
 }
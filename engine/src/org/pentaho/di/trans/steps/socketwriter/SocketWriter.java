@@ -25,10 +25,11 @@ package org.pentaho.di.trans.steps.socketwriter;
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPOutputStream;
 
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.SocketCompression;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.codec.RowCodecFactory;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -70,8 +71,8 @@ public class SocketWriter extends BaseStep implements StepInterface {
 
         if ( meta.isCompressed() ) {
           data.outputStream =
-            new DataOutputStream( new BufferedOutputStream( new GZIPOutputStream( data.clientSocket
-              .getOutputStream() ), bufferSize ) );
+            new DataOutputStream( new BufferedOutputStream( SocketCompression.createOutputStream(
+              meta.getCompressionType(), data.clientSocket.getOutputStream(), 512 ), bufferSize ) );
         } else {
           data.outputStream =
             new DataOutputStream( new BufferedOutputStream( data.clientSocket.getOutputStream(), bufferSize ) );
@@ -111,10 +112,11 @@ public class SocketWriter extends BaseStep implements StepInterface {
 
     try {
       if ( first ) {
-        getInputRowMeta().writeMeta( data.outputStream );
+        data.rowCodec = RowCodecFactory.createCodec( RowCodecFactory.getCodecName( this ), getInputRowMeta() );
+        RowCodecFactory.writeRowMeta( data.outputStream, data.rowCodec );
         first = false;
       }
-      getInputRowMeta().writeData( data.outputStream, r );
+      data.rowCodec.writeRow( data.outputStream, r );
       incrementLinesOutput();
 
       // flush every X rows
@@ -26,6 +26,7 @@ import java.io.DataOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 
+import org.pentaho.di.core.row.codec.RowCodec;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -36,6 +37,7 @@ import org.pentaho.di.trans.step.StepDataInterface;
  */
 public class SocketWriterData extends BaseStepData implements StepDataInterface {
   public DataOutputStream outputStream;
+  public RowCodec rowCodec;
   public Socket clientSocket;
   public int flushInterval;
   public ServerSocket serverSocket;
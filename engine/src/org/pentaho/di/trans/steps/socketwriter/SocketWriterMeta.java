@@ -58,6 +58,7 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
   private String bufferSize;
   private String flushInterval;
   private boolean compressed;
+  private String compressionType;
 
   public SocketWriterMeta() {
     super(); // allocate BaseStepMeta
@@ -79,6 +80,7 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
     xml.append( "     " + XMLHandler.addTagValue( "buffer_size", bufferSize ) );
     xml.append( "     " + XMLHandler.addTagValue( "flush_interval", flushInterval ) );
     xml.append( "     " + XMLHandler.addTagValue( "compressed", compressed ) );
+    xml.append( "     " + XMLHandler.addTagValue( "compression_type", compressionType ) );
 
     return xml.toString();
   }
@@ -88,6 +90,7 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
     bufferSize = XMLHandler.getTagValue( stepnode, "buffer_size" );
     flushInterval = XMLHandler.getTagValue( stepnode, "flush_interval" );
     compressed = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compressed" ) );
+    compressionType = XMLHandler.getTagValue( stepnode, "compression_type" );
   }
 
   public void setDefault() {
@@ -101,6 +104,7 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
     bufferSize = rep.getStepAttributeString( id_step, "buffer_size" );
     flushInterval = rep.getStepAttributeString( id_step, "flush_interval" );
     compressed = rep.getStepAttributeBoolean( id_step, "compressed" );
+    compressionType = rep.getStepAttributeString( id_step, "compression_type" );
   }
 
   public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step ) throws KettleException {
@@ -108,6 +112,7 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
     rep.saveStepAttribute( id_transformation, id_step, "buffer_size", bufferSize );
     rep.saveStepAttribute( id_transformation, id_step, "flush_interval", flushInterval );
     rep.saveStepAttribute( id_transformation, id_step, "compressed", compressed );
+    rep.saveStepAttribute( id_transformation, id_step, "compression_type", compressionType );
   }
 
   public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
@@ -200,4 +205,19 @@ public class SocketWriterMeta extends BaseStepMeta implements StepMetaInterface
     this.compressed = compressed;
   }
 
+  /**
+   * @return the name of the compression provider used when compressed, GZIP if empty
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider used when compressed, GZIP if empty
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
 }
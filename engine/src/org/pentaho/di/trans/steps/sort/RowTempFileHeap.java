@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import java.util.Comparator;
+
+/**
+ * A binary min-heap of the current rows of the temporary files that are being merged. The smallest row is always on
+ * top. After the top row is passed on, the next row of the same file replaces it and sinks to its place, which costs
+ * O(log k) comparisons for k open files.<br>
+ * <br>
+ * Rows that compare equal come out in the order of their file numbers, so a merge of runs that were written in input
+ * order is stable.
+ */
+public class RowTempFileHeap {
+  private final Comparator<RowTempFile> comparator;
+  private RowTempFile[] heap;
+  private int size;
+
+  public RowTempFileHeap( Comparator<RowTempFile> comparator, int capacity ) {
+    this.comparator = comparator;
+    this.heap = new RowTempFile[Math.max( 1, capacity )];
+    this.size = 0;
+  }
+
+  public void add( RowTempFile rowTempFile ) {
+    if ( size == heap.length ) {
+      RowTempFile[] grown = new RowTempFile[heap.length * 2];
+      System.arraycopy( heap, 0, grown, 0, size );
+      heap = grown;
+    }
+    heap[size] = rowTempFile;
+    siftUp( size++ );
+  }
+
+  /**
+   * @return the entry with the smallest row or null if the heap is empty
+   */
+  public RowTempFile peek() {
+    return size == 0 ? null : heap[0];
+  }
+
+  /**
+   * Replace the row on top by the next row of the same file and restore the heap order.
+   *
+   * @param row
+   *          the next row of the file on top, not null
+   */
+  public void replaceTop( Object[] row ) {
+    heap[0].row = row;
+    siftDown( 0 );
+  }
+
+  /**
+   * Remove the entry on top, typically because its file has no more rows.
+   *
+   * @return the removed entry or null if the heap is empty
+   */
+  public RowTempFile removeTop() {
+    if ( size == 0 ) {
+      return null;
+    }
+    RowTempFile top = heap[0];
+    size--;
+    heap[0] = heap[size];
+    heap[size] = null;
+    if ( size > 0 ) {
+      siftDown( 0 );
+    }
+    return top;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for ( int i = 0; i < size; i++ ) {
+      heap[i] = null;
+    }
+    size = 0;
+  }
+
+  private void siftUp( int index ) {
+    RowTempFile entry = heap[index];
+    while ( index > 0 ) {
+      int parent = ( index - 1 ) >>> 1;
+      if ( compare( entry, heap[parent] ) >= 0 ) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = entry;
+  }
+
+  private void siftDown( int index ) {
+    RowTempFile entry = heap[index];
+    int half = size >>> 1;
+    while ( index < half ) {
+      int child = 2 * index + 1;
+      int right = child + 1;
+      if ( right < size && compare( heap[right], heap[child] ) < 0 ) {
+        child = right;
+      }
+      if ( compare( entry, heap[child] ) <= 0 ) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = entry;
+  }
+
+  private int compare( RowTempFile one, RowTempFile two ) {
+    int cmp = comparator.compare( one, two );
+    if ( cmp == 0 ) {
+      cmp = Integer.compare( one.fileNumber, two.fileNumber );
+    }
+    return cmp;
+  }
+}
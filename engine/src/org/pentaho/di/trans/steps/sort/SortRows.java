@@ -31,6 +31,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -40,11 +41,17 @@ import java.util.zip.GZIPOutputStream;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMemoryEstimator;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
+import org.pentaho.di.core.row.codec.RowCodecFactory;
+import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.vfs.KettleVFS;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -64,6 +71,14 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 public class SortRows extends BaseStep implements StepInterface {
   private static Class<?> PKG = SortRows.class; // for i18n
 
+  private static final String GZIP_COMPRESSION = "GZip";
+
+  /** Reserve memory from the budget in blocks of at least 4MB */
+  private static final long MEMORY_RESERVATION_CHUNK = 4L * 1024 * 1024;
+
+  /** Always keep this many rows in memory, even when no memory can be reserved */
+  private static final int MIN_ROWS_IN_MEMORY = 1000;
+
   private SortRowsMeta meta;
   private SortRowsData data;
 
@@ -87,29 +102,42 @@ public class SortRows extends BaseStep implements StepInterface {
     // Save row
     data.buffer.add( r );
 
-    // Check the free memory every 1000 rows...
-    //
-    data.freeCounter++;
-    if ( data.sortSize <= 0 && data.freeCounter >= 1000 ) {
-      data.freeMemoryPct = Const.getPercentageFreeMemory();
-      data.freeCounter = 0;
+    // Buffer is full: sort & dump to disk
+    boolean doSort = data.buffer.size() == data.sortSize;
 
-      if ( log.isDetailed() ) {
-        data.memoryReporting++;
-        if ( data.memoryReporting >= 10 ) {
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.AvailableMemory", data.freeMemoryPct ) );
+    if ( data.memoryBudget != null ) {
+      // Account for the size of the row, dump to disk when no more memory can be reserved
+      //
+      if ( !reserveBufferMemory( RowMemoryEstimator.estimateRowSize( rowMeta, r ) ) ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MemoryReservationExceeded",
+              data.memoryReserved, data.buffer.size() ) );
+        }
+        doSort = true;
+      }
+    } else {
+      // Check the free memory every 1000 rows...
+      //
+      data.freeCounter++;
+      if ( data.sortSize <= 0 && data.freeCounter >= 1000 ) {
+        data.freeMemoryPct = Const.getPercentageFreeMemory();
+        data.freeCounter = 0;
+
+        if ( log.isDetailed() ) {
+          data.memoryReporting++;
+          if ( data.memoryReporting >= 10 ) {
+            if ( log.isDetailed() ) {
+              logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.AvailableMemory", data.freeMemoryPct ) );
+            }
+            data.memoryReporting = 0;
           }
-          data.memoryReporting = 0;
         }
       }
-    }
 
-    // Buffer is full: sort & dump to disk
-    boolean doSort = data.buffer.size() == data.sortSize;
-    doSort |=
-        data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
-            && data.buffer.size() >= data.minSortSize;
+      doSort |=
+          data.freeMemoryPctLimit > 0 && data.freeMemoryPct < data.freeMemoryPctLimit
+              && data.buffer.size() >= data.minSortSize;
+    }
     if ( log.isDebug() ) {
       this.logDebug( BaseMessages.getString( PKG, "SortRows.Debug.StartDumpToDisk", data.freeMemoryPct, data.buffer
           .size() ) );
@@ -120,6 +148,46 @@ public class SortRows extends BaseStep implements StepInterface {
     }
   }
 
+  /**
+   * Make sure the rows in the buffer plus a new row fit in the memory reserved by this step. More memory is reserved
+   * from the budget in chunks, up to the memory limit of the step. A minimum number of rows is always kept in memory to
+   * prevent lots of tiny temp files when the budget is exhausted by other steps.
+   *
+   * @return false if the rows in the buffer need to be written to disk.
+   */
+  boolean reserveBufferMemory( long rowBytes ) {
+    data.bufferBytes += rowBytes;
+    if ( data.bufferBytes <= data.memoryReserved ) {
+      return true;
+    }
+
+    long needed = data.bufferBytes - data.memoryReserved;
+    long available = data.memoryLimit > 0 ? data.memoryLimit - data.memoryReserved : Long.MAX_VALUE;
+    if ( needed > available ) {
+      return data.buffer.size() < MIN_ROWS_IN_MEMORY;
+    }
+
+    long chunk = Math.min( Math.max( needed, MEMORY_RESERVATION_CHUNK ), available );
+    if ( !data.memoryBudget.reserve( chunk ) ) {
+      // The budget is nearly exhausted, try to get just what we need
+      //
+      chunk = needed;
+      if ( !data.memoryBudget.reserve( chunk ) ) {
+        return data.buffer.size() < MIN_ROWS_IN_MEMORY;
+      }
+    }
+    data.memoryReserved += chunk;
+    return true;
+  }
+
+  private void releaseBufferMemory() {
+    if ( data.memoryBudget != null ) {
+      data.memoryBudget.release( data.memoryReserved );
+    }
+    data.memoryReserved = 0L;
+    data.bufferBytes = 0L;
+  }
+
   // dump sorted rows from in-memory buffer to fs file
   // clean current buffer
   void sortExternalRows() throws KettleException {
@@ -133,23 +201,18 @@ public class SortRows extends BaseStep implements StepInterface {
 
     // Then write them to disk...
     DataOutputStream dos;
-    GZIPOutputStream gzos;
     int p;
 
     try {
-      FileObject fileObject =
-          KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
-              getTransMeta() );
+      FileObject fileObject = createTempFile();
 
       data.files.add( fileObject ); // Remember the files!
-      OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
-      if ( data.compressFiles ) {
-        gzos = new GZIPOutputStream( new BufferedOutputStream( outputStream ) );
-        dos = new DataOutputStream( gzos );
-      } else {
-        dos = new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
-        gzos = null;
-      }
+      data.fis.add( null ); // opened when the merge starts
+      data.dis.add( null );
+      data.codecs.add( null );
+      dos = getTempFileOutputStream( fileObject );
+      RowCodec codec = RowCodecFactory.createCodec( data.rowCodec, data.outputRowMeta );
+      codec.writeHeader( dos );
 
       // Just write the data, nothing else
       List<Integer> duplicates = new ArrayList<Integer>();
@@ -186,7 +249,7 @@ public class SortRows extends BaseStep implements StepInterface {
           }
         }
         if ( !skip ) {
-          data.outputRowMeta.writeData( dos, data.buffer.get( p ) );
+          codec.writeRow( dos, data.buffer.get( p ) );
         }
       }
 
@@ -203,15 +266,12 @@ public class SortRows extends BaseStep implements StepInterface {
         }
       }
 
-      // Clear the list
+      // Clear the list, the memory stays reserved for the next rows
       data.buffer.clear();
+      data.bufferBytes = 0L;
 
-      // Close temp-file
-      dos.close(); // close data stream
-      if ( gzos != null ) {
-        gzos.close(); // close gzip stream
-      }
-      outputStream.close(); // close file stream
+      // Close temp-file, this closes the compression and file streams as well
+      dos.close();
 
       // How much memory do we have left?
       //
@@ -230,146 +290,238 @@ public class SortRows extends BaseStep implements StepInterface {
     data.getBufferIndex = 0;
   }
 
-  private DataInputStream getDataInputStream( GZIPInputStream gzipInputStream ) {
-    DataInputStream result = new DataInputStream( gzipInputStream );
-    data.gzis.add( gzipInputStream );
-    return result;
+  private FileObject createTempFile() throws KettleFileException {
+    return KettleVFS.createTempFile( meta.getPrefix(), ".tmp", environmentSubstitute( meta.getDirectory() ),
+        getTransMeta() );
+  }
+
+  private DataOutputStream getTempFileOutputStream( FileObject fileObject ) throws IOException,
+    KettleFileException {
+    OutputStream outputStream = KettleVFS.getOutputStream( fileObject, false );
+    if ( !data.compressFiles ) {
+      return new DataOutputStream( new BufferedOutputStream( outputStream, 500000 ) );
+    }
+    if ( data.compressionProvider == null ) {
+      return new DataOutputStream( new GZIPOutputStream( new BufferedOutputStream( outputStream ) ) );
+    }
+    return new DataOutputStream( new BufferedOutputStream( data.compressionProvider
+        .createOutputStream( new BufferedOutputStream( outputStream ) ), 50000 ) );
+  }
+
+  private DataInputStream getTempFileInputStream( InputStream inputStream ) throws IOException {
+    if ( !data.compressFiles ) {
+      return new DataInputStream( new BufferedInputStream( inputStream, 50000 ) );
+    }
+    if ( data.compressionProvider == null ) {
+      return new DataInputStream( new GZIPInputStream( new BufferedInputStream( inputStream ) ) );
+    }
+    return new DataInputStream( new BufferedInputStream( data.compressionProvider
+        .createInputStream( new BufferedInputStream( inputStream ) ), 50000 ) );
   }
 
   // get sorted rows from available files in iterative manner.
   // that means call to this method will continue to return rows
   // till all temp files will not be read to the end.
   Object[] getBuffer() throws KettleValueException {
-    Object[] retval;
+    if ( data.files.isEmpty() ) {
+      // read from in-memory processing
 
-    // Open all files at once and read one row from each file...
-    if ( data.files.size() > 0 && ( data.dis.size() == 0 || data.fis.size() == 0 ) ) {
-      if ( log.isBasic() ) {
-        logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
+      if ( data.getBufferIndex < data.buffer.size() ) {
+        Object[] retval = data.buffer.get( data.getBufferIndex );
+        data.getBufferIndex++;
+        return retval;
       }
+      return null;
+    }
 
+    // read from disk processing
+    //
+    if ( data.tempRows == null ) {
+      // Merge the files in several passes if there are too many of them,
+      // then open all remaining files at once and read one row from each file...
+      //
       try {
-        for ( int f = 0; f < data.files.size() && !isStopped(); f++ ) {
-          FileObject fileObject = data.files.get( f );
-          String filename = KettleVFS.getFilename( fileObject );
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
-          }
-          InputStream fi = KettleVFS.getInputStream( fileObject );
-          DataInputStream di;
-          data.fis.add( fi );
-          if ( data.compressFiles ) {
-            di = getDataInputStream( new GZIPInputStream( new BufferedInputStream( fi ) ) );
-          } else {
-            di = new DataInputStream( new BufferedInputStream( fi, 50000 ) );
-          }
-          data.dis.add( di );
-
-          // How long is the buffer?
-          int buffersize = data.bufferSizes.get( f );
+        mergeTempFiles();
 
-          if ( log.isDetailed() ) {
-            logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows",
-                filename, buffersize ) );
-          }
-
-          if ( buffersize > 0 ) {
-            Object[] row = data.outputRowMeta.readData( di );
-            data.rowbuffer.add( row ); // new row from input stream
-            data.tempRows.add( new RowTempFile( row, f ) );
-          }
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SortRows.Basic.OpeningTempFiles", data.files.size() ) );
         }
-
-        // Sort the data row buffer
-        Collections.sort( data.tempRows, data.comparator );
+        data.tempRows = openTempFiles( 0, data.files.size() );
       } catch ( Exception e ) {
         logError( BaseMessages.getString( PKG, "SortRows.Error.ErrorReadingBackTempFiles" ), e );
+        setErrors( 1 );
+        stopAll();
+        return null;
       }
     }
 
-    if ( data.files.size() == 0 ) {
-      // read from in-memory processing
+    return getMergedRow( data.tempRows );
+  }
 
-      if ( data.getBufferIndex < data.buffer.size() ) {
-        retval = data.buffer.get( data.getBufferIndex );
-        data.getBufferIndex++;
-      } else {
-        retval = null;
+  /**
+   * Open the temp files with numbers from (inclusive) to (exclusive) and read the first row of each of them.
+   *
+   * @return a heap with the first row of every file
+   */
+  private RowTempFileHeap openTempFiles( int from, int to ) throws KettleException, IOException {
+    RowTempFileHeap heap = new RowTempFileHeap( data.comparator, to - from );
+
+    for ( int f = from; f < to && !isStopped(); f++ ) {
+      FileObject fileObject = data.files.get( f );
+      String filename = KettleVFS.getFilename( fileObject );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.OpeningTempFile", filename ) );
       }
-    } else {
-      // read from disk processing
+      InputStream fi = KettleVFS.getInputStream( fileObject );
+      data.fis.set( f, fi );
+      DataInputStream di = getTempFileInputStream( fi );
+      data.dis.set( f, di );
+      RowCodec codec = RowCodecFactory.createCodec( data.rowCodec, data.outputRowMeta );
+      codec.readHeader( di );
+      data.codecs.set( f, codec );
 
-      if ( data.rowbuffer.size() == 0 ) {
-        retval = null;
-      } else {
-        // We now have "filenr" rows waiting: which one is the smallest?
-        //
-        if ( log.isRowLevel() ) {
-          for ( int i = 0; i < data.rowbuffer.size() && !isStopped(); i++ ) {
-            Object[] b = data.rowbuffer.get( i );
-            logRowlevel( BaseMessages
-                .getString( PKG, "SortRows.RowLevel.PrintRow", i, data.outputRowMeta.getString( b ) ) );
-          }
-        }
+      // How long is the buffer?
+      int buffersize = data.bufferSizes.get( f );
 
-        RowTempFile rowTempFile = data.tempRows.remove( 0 );
-        retval = rowTempFile.row;
-        int smallest = rowTempFile.fileNumber;
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.FromFileExpectingRows", filename, buffersize ) );
+      }
 
-        // now get another Row for position smallest
+      if ( buffersize > 0 ) {
+        heap.add( new RowTempFile( codec.readRow( di ), f ) );
+      } else if ( !closeTempFile( f ) ) {
+        break;
+      }
+    }
+    return heap;
+  }
 
-        FileObject file = data.files.get( smallest );
-        DataInputStream di = data.dis.get( smallest );
-        InputStream fi = data.fis.get( smallest );
+  /**
+   * Take the smallest row from the heap and replace it by the next row of the same file. Files are closed and deleted
+   * as soon as they are read to the end.
+   *
+   * @return the smallest row or null if all files were read.
+   */
+  private Object[] getMergedRow( RowTempFileHeap heap ) throws KettleValueException {
+    RowTempFile rowTempFile = heap.peek();
+    if ( rowTempFile == null ) {
+      return null;
+    }
+    Object[] retval = rowTempFile.row;
+    int smallest = rowTempFile.fileNumber;
 
-        try {
-          Object[] row2 = data.outputRowMeta.readData( di );
-          RowTempFile extra = new RowTempFile( row2, smallest );
-
-          int index = Collections.binarySearch( data.tempRows, extra, data.comparator );
-          if ( index < 0 ) {
-            data.tempRows.add( index * ( -1 ) - 1, extra );
-          } else {
-            data.tempRows.add( index, extra );
-          }
-        } catch ( KettleFileException fe ) { // empty file or EOF mostly
-          GZIPInputStream gzfi = ( data.compressFiles ) ? data.gzis.get( smallest ) : null;
-          try {
-            di.close();
-            fi.close();
-            if ( gzfi != null ) {
-              gzfi.close();
-            }
-            file.delete();
-          } catch ( IOException e ) {
-            logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", smallest, file.toString() ) );
-            setErrors( 1 );
-            stopAll();
-            return null;
-          }
+    // now get another Row for position smallest
+    //
+    try {
+      heap.replaceTop( data.codecs.get( smallest ).readRow( data.dis.get( smallest ) ) );
+    } catch ( KettleFileException fe ) { // empty file or EOF mostly
+      heap.removeTop();
+      if ( !closeTempFile( smallest ) ) {
+        return null;
+      }
+    } catch ( SocketTimeoutException e ) {
+      throw new KettleValueException( e ); // should never happen on local files
+    }
+    return retval;
+  }
 
-          data.files.remove( smallest );
-          data.dis.remove( smallest );
-          data.fis.remove( smallest );
+  /**
+   * Close and delete the temp file with the given number. The file numbers of the other files don't change.
+   *
+   * @return false if the file could not be closed or deleted, the step is stopped in that case.
+   */
+  private boolean closeTempFile( int fileNumber ) {
+    FileObject file = data.files.get( fileNumber );
+    try {
+      DataInputStream di = data.dis.get( fileNumber );
+      if ( di != null ) {
+        di.close(); // closes the file stream as well
+      }
+      file.delete();
+    } catch ( IOException e ) {
+      logError( BaseMessages.getString( PKG, "SortRows.Error.UnableToCloseFile", fileNumber, file.toString() ) );
+      setErrors( 1 );
+      stopAll();
+      return false;
+    }
+    data.files.set( fileNumber, null );
+    data.fis.set( fileNumber, null );
+    data.dis.set( fileNumber, null );
+    data.codecs.set( fileNumber, null );
+    return true;
+  }
 
-          if ( gzfi != null ) {
-            data.gzis.remove( smallest );
-          }
+  /**
+   * As long as there are more temp files than we want to have open at the same time, merge every group of
+   * maxMergeFiles consecutive files into a single new temp file. Groups are merged in place, so the runs stay in the
+   * order they were written.
+   */
+  private void mergeTempFiles() throws KettleException, IOException {
+    while ( data.files.size() > data.maxMergeFiles && !isStopped() ) {
+      List<FileObject> mergedFiles = new ArrayList<FileObject>();
+      List<Integer> mergedSizes = new ArrayList<Integer>();
+
+      for ( int from = 0; from < data.files.size() && !isStopped(); from += data.maxMergeFiles ) {
+        int to = Math.min( from + data.maxMergeFiles, data.files.size() );
+        if ( to - from == 1 ) {
+          // Nothing to merge this file with
+          mergedFiles.add( data.files.get( from ) );
+          mergedSizes.add( data.bufferSizes.get( from ) );
+          data.files.set( from, null );
+          continue;
+        }
 
-          // Also update all file numbers in in data.tempRows if they are larger
-          // than smallest.
-          //
-          for ( RowTempFile rtf : data.tempRows ) {
-            if ( rtf.fileNumber > smallest ) {
-              rtf.fileNumber--;
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "SortRows.Detailed.MergingTempFiles", to - from, data.files
+              .size() ) );
+        }
+
+        FileObject fileObject = createTempFile();
+        mergedFiles.add( fileObject );
+        DataOutputStream dos = getTempFileOutputStream( fileObject );
+        int nrRows = 0;
+        try {
+          RowCodec codec = RowCodecFactory.createCodec( data.rowCodec, data.outputRowMeta );
+          codec.writeHeader( dos );
+          RowTempFileHeap heap = openTempFiles( from, to );
+          Object[] previousRow = null;
+          Object[] row = getMergedRow( heap );
+          while ( row != null ) {
+            // The runs are unique, the combination doesn't have to be
+            //
+            if ( !meta.isOnlyPassingUniqueRows() || previousRow == null
+                || data.outputRowMeta.compare( row, previousRow, data.fieldnrs ) != 0 ) {
+              codec.writeRow( dos, row );
+              nrRows++;
             }
+            previousRow = row;
+            row = getMergedRow( heap );
           }
-        } catch ( SocketTimeoutException e ) {
-          throw new KettleValueException( e ); // should never happen on local files
+        } finally {
+          dos.close();
+        }
+        mergedSizes.add( nrRows );
+      }
+
+      // Whatever is left (after a stop) is deleted in clearBuffers()
+      //
+      for ( int f = 0; f < data.files.size(); f++ ) {
+        if ( data.files.get( f ) != null ) {
+          mergedFiles.add( data.files.get( f ) );
+          mergedSizes.add( data.bufferSizes.get( f ) );
         }
       }
+      closeInputStreams();
+      data.files.clear();
+      data.files.addAll( mergedFiles );
+      data.bufferSizes.clear();
+      data.bufferSizes.addAll( mergedSizes );
+      for ( int f = 0; f < data.files.size(); f++ ) {
+        data.fis.add( null );
+        data.dis.add( null );
+        data.codecs.add( null );
+      }
     }
-    return retval;
   }
 
   @Override
@@ -554,7 +706,21 @@ public class SortRows extends BaseStep implements StepInterface {
 
     data.sortSize = Const.toInt( environmentSubstitute( meta.getSortSize() ), -1 );
     data.freeMemoryPctLimit = Const.toInt( meta.getFreeMemoryLimit(), -1 );
-    if ( data.sortSize <= 0 && data.freeMemoryPctLimit <= 0 ) {
+
+    // Account for the memory used by the rows when a limit is set for this step or for the transformation.
+    // The free memory percentage isn't used in that case.
+    //
+    data.memoryLimit = Math.max( 0L, Const.toLong( environmentSubstitute( meta.getMemoryLimit() ), 0L ) ) * 1024 * 1024;
+    MemoryBudget memoryBudget = getTrans() == null ? null : getTrans().getMemoryBudget();
+    if ( data.memoryLimit > 0 || ( memoryBudget != null && memoryBudget.isLimited() ) ) {
+      data.memoryBudget = memoryBudget != null ? memoryBudget : new MemoryBudget( 0L, null );
+    } else {
+      data.memoryBudget = null;
+    }
+    data.memoryReserved = 0L;
+    data.bufferBytes = 0L;
+
+    if ( data.sortSize <= 0 && data.freeMemoryPctLimit <= 0 && data.memoryBudget == null ) {
       // Prefer the memory limit as it should never fail
       //
       data.freeMemoryPctLimit = 25;
@@ -564,13 +730,28 @@ public class SortRows extends BaseStep implements StepInterface {
     //
     data.buffer = new ArrayList<Object[]>( 5000 );
 
-    // Buffer for reading from disk
-    //
-    data.rowbuffer = new ArrayList<Object[]>( 5000 );
-
     data.compressFiles = getBooleanValueOfVariable( meta.getCompressFilesVariable(), meta.getCompressFiles() );
+    data.rowCodec = RowCodecFactory.getCodecName( this );
+    data.compressionProvider = null;
+    String compressionType = environmentSubstitute( meta.getCompressionType() );
+    if ( data.compressFiles && !Utils.isEmpty( compressionType )
+        && !GZIP_COMPRESSION.equalsIgnoreCase( compressionType ) ) {
+      data.compressionProvider =
+          CompressionProviderFactory.getInstance().createCompressionProviderInstance( compressionType );
+      if ( data.compressionProvider == null ) {
+        logError( BaseMessages.getString( PKG, "SortRows.Error.UnknownCompressionType", compressionType ) );
+        return false;
+      }
+    }
+
+    data.parallelSort = meta.isParallelSort();
+    data.maxMergeFiles =
+        Const.toInt( environmentSubstitute( meta.getMaxMergeFiles() ), SortRowsMeta.DEFAULT_MAX_MERGE_FILES );
+    if ( data.maxMergeFiles < 2 ) {
+      data.maxMergeFiles = SortRowsMeta.DEFAULT_MAX_MERGE_FILES;
+    }
 
-    data.tempRows = new ArrayList<RowTempFile>();
+    data.tempRows = null;
 
     data.minSortSize = 5000;
 
@@ -588,20 +769,14 @@ public class SortRows extends BaseStep implements StepInterface {
     // Clean out the sort buffer
     data.buffer.clear();
     data.getBufferIndex = 0;
-    data.rowbuffer.clear();
-
-    // close any open DataInputStream objects
-    if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
-      for ( DataInputStream dis : data.dis ) {
-        BaseStep.closeQuietly( dis );
-      }
-    }
-    // close any open InputStream objects
-    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
-      for ( InputStream is : data.fis ) {
-        BaseStep.closeQuietly( is );
-      }
+    releaseBufferMemory();
+    if ( data.tempRows != null ) {
+      data.tempRows.clear();
+      data.tempRows = null;
     }
+
+    closeInputStreams();
+
     // remove temp files
     for ( int f = 0; f < data.files.size(); f++ ) {
       FileObject fileToDelete = data.files.get( f );
@@ -613,14 +788,47 @@ public class SortRows extends BaseStep implements StepInterface {
         logError( e.getLocalizedMessage(), e );
       }
     }
+    data.files.clear();
+    data.bufferSizes.clear();
+  }
+
+  private void closeInputStreams() {
+    // close any open DataInputStream objects
+    if ( ( data.dis != null ) && ( data.dis.size() > 0 ) ) {
+      for ( DataInputStream dis : data.dis ) {
+        if ( dis != null ) {
+          BaseStep.closeQuietly( dis );
+        }
+      }
+      data.dis.clear();
+    }
+    data.codecs.clear();
+    // close any open InputStream objects
+    if ( ( data.fis != null ) && ( data.fis.size() > 0 ) ) {
+      for ( InputStream is : data.fis ) {
+        if ( is != null ) {
+          BaseStep.closeQuietly( is );
+        }
+      }
+      data.fis.clear();
+    }
   }
 
   /**
-   * Sort the entire vector, if it is not empty.
+   * Sort the entire vector, if it is not empty. In parallel mode the rows are sorted in chunks on all available
+   * processors (fork/join) and the chunks are merged, the result is the same stable sort.
    */
   void quickSort( List<Object[]> elements ) throws KettleException {
     if ( elements.size() > 0 ) {
-      Collections.sort( elements, data.rowComparator );
+      if ( data.parallelSort ) {
+        Object[][] rows = elements.toArray( new Object[elements.size()][] );
+        Arrays.parallelSort( rows, data.rowComparator );
+        for ( int i = 0; i < rows.length; i++ ) {
+          elements.set( i, rows[i] );
+        }
+      } else {
+        Collections.sort( elements, data.rowComparator );
+      }
 
       long nrConversions = 0L;
       for ( ValueMetaInterface valueMeta : data.outputRowMeta.getValueMetaList() ) {
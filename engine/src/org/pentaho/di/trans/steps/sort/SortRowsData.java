@@ -27,10 +27,12 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.compress.CompressionProvider;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.codec.RowCodec;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
@@ -44,19 +46,22 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public int getBufferIndex;
 
   public List<InputStream> fis;
-  public List<GZIPInputStream> gzis;
   public List<DataInputStream> dis;
-  public List<Object[]> rowbuffer;
+  public List<RowCodec> codecs; // the codec reading each open temp file
   public List<Integer> bufferSizes;
 
-  // To store rows and file references
-  public List<RowTempFile> tempRows;
+  // The current row of every open temp file, smallest row on top. Null until the merge starts.
+  public RowTempFileHeap tempRows;
 
   public int[] fieldnrs; // the corresponding field numbers;
   public FileObject fil;
   public RowMetaInterface outputRowMeta;
   public int sortSize;
   public boolean compressFiles;
+  public String rowCodec; // the name of the codec the temp files are written with
+  public CompressionProvider compressionProvider; // null means GZIP
+  public boolean parallelSort;
+  public int maxMergeFiles;
   public int[] convertKeysToNative;
   public boolean convertAnyKeysToNative;
 
@@ -69,6 +74,12 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
   public int freeMemoryPctLimit;
   public int memoryReporting;
 
+  // Memory accounting, only used when memoryBudget is not null
+  public MemoryBudget memoryBudget;
+  public long memoryLimit; // in bytes, 0 means only the budget limits the reservation
+  public long memoryReserved;
+  public long bufferBytes; // the estimated size of the rows in the buffer
+
   /*
    * Group Fields Implementation heroic
    */
@@ -81,8 +92,8 @@ public class SortRowsData extends BaseStepData implements StepDataInterface {
 
     files = new ArrayList<FileObject>();
     fis = new ArrayList<InputStream>();
-    gzis = new ArrayList<GZIPInputStream>();
     dis = new ArrayList<DataInputStream>();
+    codecs = new ArrayList<RowCodec>();
     bufferSizes = new ArrayList<Integer>();
 
     previous = null; // Heroic
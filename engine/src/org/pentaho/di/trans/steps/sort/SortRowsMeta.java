@@ -64,6 +64,9 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
   private static final long serialVersionUID = -9075883720765645655L;
   private static Class<?> PKG = SortRowsMeta.class; // for i18n purposes, needed by Translator2!!
 
+  /** The default maximum number of temporary files that are merged in a single pass */
+  public static final int DEFAULT_MAX_MERGE_FILES = 256;
+
   /** order by which fields? */
   @Injection( name = "NAME", group = "FIELDS" )
   private String[] fieldName;
@@ -105,6 +108,13 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
   @Injection( name = "FREE_MEMORY_TRESHOLD" )
   private String freeMemoryLimit;
 
+  /**
+   * The maximum size in MB of the rows kept in memory. When set, the size of the rows is accounted for and reserved
+   * from the memory budget of the transformation instead of looking at the free memory.
+   */
+  @Injection( name = "SORT_MEMORY_LIMIT" )
+  private String memoryLimit;
+
   /** only pass unique rows to the output stream(s) */
   @Injection( name = "ONLY_PASS_UNIQUE_ROWS" )
   private boolean onlyPassingUniqueRows;
@@ -119,6 +129,18 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
   /** The variable to use to set the compressFiles option boolean */
   private String compressFilesVariable;
 
+  /** The name of the compression provider to use for the temporary files, empty means GZip */
+  @Injection( name = "COMPRESSION_TYPE" )
+  private String compressionType;
+
+  /** Sort the rows in memory using all available processors */
+  @Injection( name = "PARALLEL_SORT" )
+  private boolean parallelSort;
+
+  /** The maximum number of temporary files merged at once, more files are merged in several passes */
+  @Injection( name = "MAX_MERGE_FILES" )
+  private String maxMergeFiles;
+
   public SortRowsMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -221,8 +243,12 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
       prefix = XMLHandler.getTagValue( stepnode, "prefix" );
       sortSize = XMLHandler.getTagValue( stepnode, "sort_size" );
       freeMemoryLimit = XMLHandler.getTagValue( stepnode, "free_memory" );
+      memoryLimit = XMLHandler.getTagValue( stepnode, "memory_limit" );
       compressFiles = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "compress" ) );
       compressFilesVariable = XMLHandler.getTagValue( stepnode, "compress_variable" );
+      compressionType = XMLHandler.getTagValue( stepnode, "compress_type" );
+      parallelSort = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "parallel_sort" ) );
+      maxMergeFiles = XMLHandler.getTagValue( stepnode, "max_merge_files" );
       onlyPassingUniqueRows = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "unique_rows" ) );
 
       Node fields = XMLHandler.getSubNode( stepnode, "fields" );
@@ -257,8 +283,12 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     prefix = "out";
     sortSize = "1000000";
     freeMemoryLimit = null;
+    memoryLimit = null;
     compressFiles = false;
     compressFilesVariable = null;
+    compressionType = null;
+    parallelSort = false;
+    maxMergeFiles = Integer.toString( DEFAULT_MAX_MERGE_FILES );
     onlyPassingUniqueRows = false;
 
     int nrfields = 0;
@@ -282,8 +312,12 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     retval.append( "      " ).append( XMLHandler.addTagValue( "prefix", prefix ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "sort_size", sortSize ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "free_memory", freeMemoryLimit ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "memory_limit", memoryLimit ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress", compressFiles ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "compress_variable", compressFilesVariable ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "compress_type", compressionType ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "parallel_sort", parallelSort ) );
+    retval.append( "      " ).append( XMLHandler.addTagValue( "max_merge_files", maxMergeFiles ) );
     retval.append( "      " ).append( XMLHandler.addTagValue( "unique_rows", onlyPassingUniqueRows ) );
 
     retval.append( "    <fields>" ).append( Const.CR );
@@ -310,9 +344,13 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
       prefix = rep.getStepAttributeString( id_step, "prefix" );
       sortSize = rep.getStepAttributeString( id_step, "sort_size" );
       freeMemoryLimit = rep.getStepAttributeString( id_step, "free_memory" );
+      memoryLimit = rep.getStepAttributeString( id_step, "memory_limit" );
 
       compressFiles = rep.getStepAttributeBoolean( id_step, "compress" );
       compressFilesVariable = rep.getStepAttributeString( id_step, "compress_variable" );
+      compressionType = rep.getStepAttributeString( id_step, "compress_type" );
+      parallelSort = rep.getStepAttributeBoolean( id_step, "parallel_sort" );
+      maxMergeFiles = rep.getStepAttributeString( id_step, "max_merge_files" );
 
       onlyPassingUniqueRows = rep.getStepAttributeBoolean( id_step, "unique_rows" );
 
@@ -364,8 +402,12 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
       rep.saveStepAttribute( id_transformation, id_step, "prefix", prefix );
       rep.saveStepAttribute( id_transformation, id_step, "sort_size", sortSize );
       rep.saveStepAttribute( id_transformation, id_step, "free_memory", freeMemoryLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "memory_limit", memoryLimit );
       rep.saveStepAttribute( id_transformation, id_step, "compress", compressFiles );
       rep.saveStepAttribute( id_transformation, id_step, "compress_variable", compressFilesVariable );
+      rep.saveStepAttribute( id_transformation, id_step, "compress_type", compressionType );
+      rep.saveStepAttribute( id_transformation, id_step, "parallel_sort", parallelSort );
+      rep.saveStepAttribute( id_transformation, id_step, "max_merge_files", maxMergeFiles );
       rep.saveStepAttribute( id_transformation, id_step, "unique_rows", onlyPassingUniqueRows );
 
       for ( int i = 0; i < fieldName.length; i++ ) {
@@ -575,6 +617,51 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     this.compressFilesVariable = compressFilesVariable;
   }
 
+  /**
+   * @return the name of the compression provider used for the temporary files, empty means GZip
+   */
+  public String getCompressionType() {
+    return compressionType;
+  }
+
+  /**
+   * @param compressionType
+   *          the name of the compression provider to use for the temporary files
+   */
+  public void setCompressionType( String compressionType ) {
+    this.compressionType = compressionType;
+  }
+
+  /**
+   * @return true if the rows in memory are sorted using all available processors
+   */
+  public boolean isParallelSort() {
+    return parallelSort;
+  }
+
+  /**
+   * @param parallelSort
+   *          true to sort the rows in memory using all available processors
+   */
+  public void setParallelSort( boolean parallelSort ) {
+    this.parallelSort = parallelSort;
+  }
+
+  /**
+   * @return the maximum number of temporary files merged in a single pass
+   */
+  public String getMaxMergeFiles() {
+    return maxMergeFiles;
+  }
+
+  /**
+   * @param maxMergeFiles
+   *          the maximum number of temporary files merged in a single pass
+   */
+  public void setMaxMergeFiles( String maxMergeFiles ) {
+    this.maxMergeFiles = maxMergeFiles;
+  }
+
   /**
    * @return the caseSensitive
    */
@@ -635,6 +722,21 @@ public class SortRowsMeta extends BaseStepMeta implements StepMetaInterface, Ser
     this.freeMemoryLimit = freeMemoryLimit;
   }
 
+  /**
+   * @return the maximum size in MB of the rows kept in memory
+   */
+  public String getMemoryLimit() {
+    return memoryLimit;
+  }
+
+  /**
+   * @param memoryLimit
+   *          the maximum size in MB of the rows kept in memory
+   */
+  public void setMemoryLimit( String memoryLimit ) {
+    this.memoryLimit = memoryLimit;
+  }
+
   /**
    * @return the preSortedField
    */
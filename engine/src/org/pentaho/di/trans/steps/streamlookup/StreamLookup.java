@@ -26,12 +26,17 @@ import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.util.Collections;
 
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.MemoryBudget;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.hash.ByteArraySlabHashIndex;
+import org.pentaho.di.core.hash.GraceHashJoin;
+import org.pentaho.di.core.logging.Metrics;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -198,29 +203,94 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
         data.cacheKeyMeta = cacheKeyMeta;
         data.cacheValueMeta = cacheValueMeta;
-      }
+        data.valueNrs = valueNrs;
 
-      Object[] keyData = new Object[keyNrs.length];
-      for ( int i = 0; i < keyNrs.length; i++ ) {
-        ValueMetaInterface keyMeta = data.keyTypes.getValueMeta( i );
-        // Convert keys to normal storage type
-        keyData[i] = keyMeta.convertToNormalStorageType( rowData[keyNrs[i]] );
+        if ( meta.isOverflowToDisk() ) {
+          data.hashJoin = createHashJoin( rowSet.getRowMeta(), keyNrs );
+        }
       }
 
-      Object[] valueData = new Object[valueNrs.length];
-      for ( int i = 0; i < valueNrs.length; i++ ) {
-        // Store value as is, avoid preliminary binary->normal storage type conversion
-        valueData[i] = rowData[valueNrs[i]];
-      }
+      if ( data.hashJoin != null ) {
+        // The hash join keeps the complete rows, in memory or on disk
+        data.hashJoin.addBuildRow( rowData );
+      } else {
+        Object[] keyData = new Object[keyNrs.length];
+        for ( int i = 0; i < keyNrs.length; i++ ) {
+          ValueMetaInterface keyMeta = data.keyTypes.getValueMeta( i );
+          // Convert keys to normal storage type
+          keyData[i] = keyMeta.convertToNormalStorageType( rowData[keyNrs[i]] );
+        }
 
-      addToCache( data.cacheKeyMeta, keyData, data.cacheValueMeta, valueData );
+        Object[] valueData = new Object[valueNrs.length];
+        for ( int i = 0; i < valueNrs.length; i++ ) {
+          // Store value as is, avoid preliminary binary->normal storage type conversion
+          valueData[i] = rowData[valueNrs[i]];
+        }
+
+        addToCache( data.cacheKeyMeta, keyData, data.cacheValueMeta, valueData );
+      }
 
       rowData = getRowFrom( rowSet );
     }
 
+    if ( data.hashJoin != null ) {
+      log.snap( Metrics.METRIC_STEP_LOOKUP_MEMORY_MAX, data.hashJoin.getMemoryUsed() );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.HashJoinPartitionsSpilled",
+          String.valueOf( data.hashJoin.getNrSpilledPartitions() ) ) );
+      }
+    }
+
+    if ( data.slabIndex != null ) {
+      long memoryUsage = data.slabIndex.getMemoryUsage();
+      log.snap( Metrics.METRIC_STEP_LOOKUP_MEMORY_MAX, memoryUsage );
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.SlabHashIndexMemoryUsage",
+          String.valueOf( data.slabIndex.size() ), String.valueOf( memoryUsage ) ) );
+      }
+    }
+
     return true;
   }
 
+  private GraceHashJoin createHashJoin( RowMetaInterface lookupRowMeta, int[] keyNrs ) {
+    long megaBytes = Const.toLong( environmentSubstitute( meta.getOverflowMemoryLimit() ), 0L );
+    MemoryBudget memoryBudget =
+      GraceHashJoin.createMemoryBudget( megaBytes, getTrans() == null ? null : getTrans().getMemoryBudget() );
+
+    GraceHashJoin hashJoin =
+      new GraceHashJoin( lookupRowMeta, keyNrs, memoryBudget, this,
+        getVariable( Const.KETTLE_SPILL_DIRECTORY, "%%java.io.tmpdir%%" ), "stream_lookup" );
+    // Like the other lookup tables: the last row of a key wins
+    hashJoin.setUniqueKeys( true );
+    return hashJoin;
+  }
+
+  /**
+   * Receives the rows joined by the hash join in overflow mode, rows of spilled partitions arrive after the last input
+   * row.
+   */
+  private class LookupJoinListener implements GraceHashJoin.JoinListener {
+    @Override
+    public void rowsJoined( Object[] probeRow, Object[] buildRow ) throws KettleException {
+      Object[] add = new Object[data.valueNrs.length];
+      for ( int i = 0; i < data.valueNrs.length; i++ ) {
+        add[i] = buildRow[data.valueNrs[i]];
+      }
+      putRow( data.outputRowMeta, RowDataUtil.addRowData( probeRow, getInputRowMeta().size(), add ) );
+    }
+
+    @Override
+    public void probeRowUnmatched( Object[] probeRow ) throws KettleException {
+      putRow( data.outputRowMeta, RowDataUtil.addRowData( probeRow, getInputRowMeta().size(), data.nullIf ) );
+    }
+
+    @Override
+    public void buildRowUnmatched( Object[] buildRow ) throws KettleException {
+      // Lookup rows without a match are not passed on
+    }
+  }
+
   private Object[] lookupValues( RowMetaInterface rowMeta, Object[] row ) throws KettleException {
     // See if we need to stop.
     if ( isStopped() ) {
@@ -320,6 +390,12 @@ public class StreamLookup extends BaseStep implements StepInterface {
           Long key = keyMeta.getInteger( keyData, 0 );
           Long value = valueMeta.getInteger( valueData, 0 );
           data.longIndex.put( key, value );
+        } else if ( meta.isUsingSlabHashIndex() ) {
+          if ( data.slabIndex == null ) {
+            data.slabIndex = new ByteArraySlabHashIndex( meta.isSlabOffHeap() );
+          }
+          data.slabIndex
+            .put( RowMeta.extractData( keyMeta, keyData ), RowMeta.extractData( valueMeta, valueData ) );
         } else {
           if ( data.hashIndex == null ) {
             data.hashIndex = new ByteArrayHashIndex( keyMeta );
@@ -355,7 +431,8 @@ public class StreamLookup extends BaseStep implements StepInterface {
           return new Object[] { value, };
         } else {
           try {
-            byte[] value = data.hashIndex.get( RowMeta.extractData( keyMeta, keyData ) );
+            byte[] key = RowMeta.extractData( keyMeta, keyData );
+            byte[] value = meta.isUsingSlabHashIndex() ? data.slabIndex.get( key ) : data.hashIndex.get( key );
             if ( value == null ) {
               return null;
             }
@@ -394,6 +471,11 @@ public class StreamLookup extends BaseStep implements StepInterface {
     if ( r == null ) {
       // no more input to be expected...
 
+      if ( data.hashJoin != null ) {
+        // Join the partitions that didn't fit in memory
+        data.hashJoin.finishProbe( data.joinListener );
+      }
+
       if ( log.isDetailed() ) {
         logDetailed( BaseMessages.getString( PKG, "StreamLookup.Log.StoppedProcessingWithEmpty", getLinesRead()
           + "" ) );
@@ -441,6 +523,19 @@ public class StreamLookup extends BaseStep implements StepInterface {
 
       // Handle the NULL values (not found...)
       handleNullIf();
+
+      if ( data.hashJoin != null ) {
+        data.hashJoin.startProbe( getInputRowMeta(), data.keynrs );
+        data.joinListener = new LookupJoinListener();
+      }
+    }
+
+    if ( data.hashJoin != null ) {
+      data.hashJoin.probe( r, data.joinListener );
+      if ( checkFeedback( getLinesRead() ) && log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "StreamLookup.Log.LineNumber" ) + getLinesRead() );
+      }
+      return true;
     }
 
     Object[] outputRow = lookupValues( getInputRowMeta(), r ); // Do the actual lookup in the hastable.
@@ -483,6 +578,14 @@ public class StreamLookup extends BaseStep implements StepInterface {
     data.list = null;
     data.hashIndex = null;
     data.longIndex = null;
+    if ( data.slabIndex != null ) {
+      data.slabIndex.clear();
+      data.slabIndex = null;
+    }
+    if ( data.hashJoin != null ) {
+      data.hashJoin.close();
+      data.hashJoin = null;
+    }
 
     super.dispose( smi, sdi );
   }
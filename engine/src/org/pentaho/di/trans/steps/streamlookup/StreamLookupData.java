@@ -31,6 +31,8 @@ import java.util.Map;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.hash.ByteArrayHashIndex;
+import org.pentaho.di.core.hash.ByteArraySlabHashIndex;
+import org.pentaho.di.core.hash.GraceHashJoin;
 import org.pentaho.di.core.hash.LongHashIndex;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
@@ -73,6 +75,14 @@ public class StreamLookupData extends BaseStepData implements StepDataInterface
 
   public ByteArrayHashIndex hashIndex;
   public LongHashIndex longIndex;
+  public ByteArraySlabHashIndex slabIndex;
+
+  /** The hybrid hash join used in overflow mode, null otherwise */
+  public GraceHashJoin hashJoin;
+  public GraceHashJoin.JoinListener joinListener;
+
+  /** nrs of the values to return in the lookup rows */
+  public int[] valueNrs;
 
   public RowMetaInterface lookupMeta;
 
@@ -100,6 +100,22 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
   @Injection( name = "INTEGER_PAIR" )
   private boolean usingIntegerPair;
 
+  /** Keep the serialized keys and values in slabs of memory instead of one object per row */
+  @Injection( name = "SLAB_HASH_INDEX" )
+  private boolean usingSlabHashIndex;
+
+  /** Allocate the slabs outside of the Java heap */
+  @Injection( name = "SLAB_OFF_HEAP" )
+  private boolean slabOffHeap;
+
+  /** Partition the lookup data to disk when it doesn't fit in memory (hybrid hash join) */
+  @Injection( name = "OVERFLOW_TO_DISK" )
+  private boolean overflowToDisk;
+
+  /** The memory to use before partitions are written to disk, in MB */
+  @Injection( name = "OVERFLOW_MEMORY_LIMIT" )
+  private String overflowMemoryLimit;
+
   public StreamLookupMeta() {
     super(); // allocate BaseStepMeta
   }
@@ -164,6 +180,10 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "preserve_memory" ) ) );
       setUsingSortedList( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "sorted_list" ) ) );
       setUsingIntegerPair( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "integer_pair" ) ) );
+      setUsingSlabHashIndex( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "slab_hash_index" ) ) );
+      setSlabOffHeap( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "slab_off_heap" ) ) );
+      setOverflowToDisk( "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "overflow_to_disk" ) ) );
+      setOverflowMemoryLimit( XMLHandler.getTagValue( stepnode, "overflow_memory_limit" ) );
 
       Node lookup = XMLHandler.getSubNode( stepnode, "lookup" );
       nrkeys = XMLHandler.countNodes( lookup, "key" );
@@ -211,6 +231,10 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     setMemoryPreservationActive( true );
     setUsingSortedList( false );
     setUsingIntegerPair( false );
+    setUsingSlabHashIndex( false );
+    setSlabOffHeap( false );
+    setOverflowToDisk( false );
+    setOverflowMemoryLimit( null );
 
     allocate( 0, 0 );
   }
@@ -254,6 +278,10 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
     retval.append( "    " ).append( XMLHandler.addTagValue( "preserve_memory", isMemoryPreservationActive() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "sorted_list", isUsingSortedList() ) );
     retval.append( "    " ).append( XMLHandler.addTagValue( "integer_pair", isUsingIntegerPair() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "slab_hash_index", isUsingSlabHashIndex() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "slab_off_heap", isSlabOffHeap() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "overflow_to_disk", isOverflowToDisk() ) );
+    retval.append( "    " ).append( XMLHandler.addTagValue( "overflow_memory_limit", getOverflowMemoryLimit() ) );
 
     retval.append( "    <lookup>" ).append( Const.CR );
     for ( int i = 0; i < getKeystream().length; i++ ) {
@@ -288,6 +316,10 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       setMemoryPreservationActive( rep.getStepAttributeBoolean( id_step, "preserve_memory" ) );
       setUsingSortedList( rep.getStepAttributeBoolean( id_step, "sorted_list" ) );
       setUsingIntegerPair( rep.getStepAttributeBoolean( id_step, "integer_pair" ) );
+      setUsingSlabHashIndex( rep.getStepAttributeBoolean( id_step, "slab_hash_index" ) );
+      setSlabOffHeap( rep.getStepAttributeBoolean( id_step, "slab_off_heap" ) );
+      setOverflowToDisk( rep.getStepAttributeBoolean( id_step, "overflow_to_disk" ) );
+      setOverflowMemoryLimit( rep.getStepAttributeString( id_step, "overflow_memory_limit" ) );
 
       int nrkeys = rep.countNrStepAttributes( id_step, "lookup_key_name" );
       int nrvalues = rep.countNrStepAttributes( id_step, "return_value_name" );
@@ -325,6 +357,10 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
       rep.saveStepAttribute( id_transformation, id_step, "preserve_memory", isMemoryPreservationActive() );
       rep.saveStepAttribute( id_transformation, id_step, "sorted_list", isUsingSortedList() );
       rep.saveStepAttribute( id_transformation, id_step, "integer_pair", isUsingIntegerPair() );
+      rep.saveStepAttribute( id_transformation, id_step, "slab_hash_index", isUsingSlabHashIndex() );
+      rep.saveStepAttribute( id_transformation, id_step, "slab_off_heap", isSlabOffHeap() );
+      rep.saveStepAttribute( id_transformation, id_step, "overflow_to_disk", isOverflowToDisk() );
+      rep.saveStepAttribute( id_transformation, id_step, "overflow_memory_limit", getOverflowMemoryLimit() );
 
       for ( int i = 0; i < getKeystream().length; i++ ) {
         rep.saveStepAttribute( id_transformation, id_step, i, "lookup_key_name", getKeystream()[i] );
@@ -664,4 +700,40 @@ public class StreamLookupMeta extends BaseStepMeta implements StepMetaInterface
   public void setUsingIntegerPair( boolean usingIntegerPair ) {
     this.usingIntegerPair = usingIntegerPair;
   }
+
+  public boolean isUsingSlabHashIndex() {
+    return usingSlabHashIndex;
+  }
+
+  public void setUsingSlabHashIndex( boolean usingSlabHashIndex ) {
+    this.usingSlabHashIndex = usingSlabHashIndex;
+  }
+
+  public boolean isSlabOffHeap() {
+    return slabOffHeap;
+  }
+
+  public void setSlabOffHeap( boolean slabOffHeap ) {
+    this.slabOffHeap = slabOffHeap;
+  }
+
+  public boolean isOverflowToDisk() {
+    return overflowToDisk;
+  }
+
+  public void setOverflowToDisk( boolean overflowToDisk ) {
+    this.overflowToDisk = overflowToDisk;
+  }
+
+  /**
+   * @return the memory to use before the lookup data is partitioned to disk in MB, empty to use the memory budget of
+   *         the transformation
+   */
+  public String getOverflowMemoryLimit() {
+    return overflowMemoryLimit;
+  }
+
+  public void setOverflowMemoryLimit( String overflowMemoryLimit ) {
+    this.overflowMemoryLimit = overflowMemoryLimit;
+  }
 }
@@ -24,6 +24,8 @@ package org.pentaho.di.trans.steps.tableinput;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.util.Utils;
@@ -199,7 +201,8 @@ public class TableInput extends BaseStep implements StepInterface {
         return false; // end of data or error.
       }
     } else {
-      putRow( data.rowMeta, data.thisrow ); // fill the rowset(s). (wait for empty)
+      List<Object[]> rows = new ArrayList<Object[]>();
+      rows.add( data.thisrow );
       data.thisrow = data.nextrow;
 
       if ( checkFeedback( getLinesInput() ) ) {
@@ -207,6 +210,40 @@ public class TableInput extends BaseStep implements StepInterface {
           logBasic( "linenr " + getLinesInput() );
         }
       }
+
+      // Keep on reading while we're at it to pass the rows on in one go
+      //
+      int batchSize = getRowBatchSize();
+      while ( data.thisrow != null && rows.size() < batchSize && !isStopped() ) {
+        try {
+          data.nextrow = data.db.getRow( data.rs, meta.isLazyConversionActive() );
+        } catch ( KettleDatabaseException e ) {
+          // The rows read before the error were read without problems, pass them on like they would be one by one
+          //
+          putRows( data.rowMeta, rows );
+          if ( e.getCause() instanceof SQLException && isStopped() ) {
+            //This exception indicates we tried reading a row after the statment for this step was cancelled
+            //this is expected and ok so do not pass the exception up
+            logDebug( e.getMessage() );
+            return false;
+          } else {
+            throw e;
+          }
+        }
+        if ( data.nextrow != null ) {
+          incrementLinesInput();
+        }
+        rows.add( data.thisrow );
+        data.thisrow = data.nextrow;
+
+        if ( checkFeedback( getLinesInput() ) ) {
+          if ( log.isBasic() ) {
+            logBasic( "linenr " + getLinesInput() );
+          }
+        }
+      }
+
+      putRows( data.rowMeta, rows ); // fill the rowset(s). (wait for empty)
     }
 
     return true;
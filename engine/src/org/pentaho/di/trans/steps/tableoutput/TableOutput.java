@@ -47,6 +47,7 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -71,8 +72,8 @@ public class TableOutput extends BaseStep implements StepInterface {
     meta = (TableOutputMeta) smi;
     data = (TableOutputData) sdi;
 
-    Object[] r = getRow(); // this also waits for a previous step to be finished.
-    if ( r == null ) { // no more input to be expected...
+    List<Object[]> rows = getRows( getRowBatchSize() ); // this also waits for a previous step to be finished.
+    if ( rows == null ) { // no more input to be expected...
       // truncate the table if there are no rows at all coming into this step
       if ( first && meta.truncateTable() ) {
         truncateTable();
@@ -121,19 +122,26 @@ public class TableOutput extends BaseStep implements StepInterface {
       }
     }
 
+    List<Object[]> outputRows = new ArrayList<Object[]>( rows.size() );
     try {
-      Object[] outputRowData = writeToTable( getInputRowMeta(), r );
-      if ( outputRowData != null ) {
-        putRow( data.outputRowMeta, outputRowData ); // in case we want it go further...
-        incrementLinesOutput();
-      }
+      long lineNr = getLinesRead() - rows.size();
+      for ( Object[] r : rows ) {
+        Object[] outputRowData = writeToTable( getInputRowMeta(), r );
+        if ( outputRowData != null ) {
+          outputRows.add( outputRowData ); // in case we want it go further...
+          incrementLinesOutput();
+        }
 
-      if ( checkFeedback( getLinesRead() ) ) {
-        if ( log.isBasic() ) {
-          logBasic( "linenr " + getLinesRead() );
+        lineNr++;
+        if ( checkFeedback( lineNr ) ) {
+          if ( log.isBasic() ) {
+            logBasic( "linenr " + lineNr );
+          }
         }
       }
+      putRows( data.outputRowMeta, outputRows );
     } catch ( KettleException e ) {
+      putRows( data.outputRowMeta, outputRows );
       logError( "Because of an error, this step can't continue: ", e );
       setErrors( 1 );
       stopAll();
@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a reader on a separate thread into a bounded queue of character blocks. Wrapping the reader of a (compressed)
+ * file moves the decompression and the character decoding off the thread parsing the lines.
+ * <p>
+ * Unlike the reader it wraps, reading characters one at a time doesn't take a lock. Only a single thread can read
+ * from it.
+ */
+public class ReadAheadReader extends Reader {
+
+  private static final Block END = new Block( new char[0], -1, null );
+
+  private final Reader source;
+  private final int blockSize;
+  private final BlockingQueue<Block> blocks;
+  private final BlockingQueue<char[]> freeBuffers;
+  private final Thread thread;
+
+  private Block current;
+  private int position;
+  private volatile boolean closed;
+
+  /**
+   * @param source     the reader to read from
+   * @param blockSize  the number of characters in a block
+   * @param nrBlocks   the maximum number of blocks read ahead
+   * @param threadName the name of the reading thread
+   */
+  public ReadAheadReader( Reader source, int blockSize, int nrBlocks, String threadName ) {
+    this.source = source;
+    this.blockSize = blockSize;
+    this.blocks = new ArrayBlockingQueue<Block>( nrBlocks );
+    this.freeBuffers = new ArrayBlockingQueue<char[]>( nrBlocks + 1 );
+
+    thread = new Thread( new Runnable() {
+      public void run() {
+        readAhead();
+      }
+    }, threadName );
+    thread.setDaemon( true );
+    thread.start();
+  }
+
+  private void readAhead() {
+    try {
+      while ( !closed ) {
+        char[] buffer = freeBuffers.poll();
+        if ( buffer == null ) {
+          buffer = new char[blockSize];
+        }
+        // Fill the block, lines are parsed a character at a time so small blocks don't pay off
+        int length = 0;
+        while ( length < buffer.length ) {
+          int n = source.read( buffer, length, buffer.length - length );
+          if ( n < 0 ) {
+            break;
+          }
+          length += n;
+        }
+        if ( length > 0 ) {
+          blocks.put( new Block( buffer, length, null ) );
+        }
+        if ( length < buffer.length ) {
+          blocks.put( END );
+          return;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      // closed
+    } catch ( IOException e ) {
+      if ( closed ) {
+        return;
+      }
+      try {
+        blocks.put( new Block( null, -1, e ) );
+      } catch ( InterruptedException ie ) {
+        // closed
+      }
+    }
+  }
+
+  private boolean nextBlock() throws IOException {
+    if ( current != null ) {
+      if ( current.length < 0 ) {
+        return false;
+      }
+      freeBuffers.offer( current.buffer );
+    }
+    try {
+      current = blocks.take();
+    } catch ( InterruptedException e ) {
+      throw new InterruptedIOException( "Interrupted while waiting for data" );
+    }
+    position = 0;
+    if ( current.exception != null ) {
+      IOException e = current.exception;
+      current = END;
+      throw e;
+    }
+    return current.length >= 0;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if ( ( current == null || position == current.length ) && !nextBlock() ) {
+      return -1;
+    }
+    return current.buffer[position++];
+  }
+
+  @Override
+  public int read( char[] cbuf, int off, int len ) throws IOException {
+    if ( len == 0 ) {
+      return 0;
+    }
+    if ( ( current == null || position == current.length ) && !nextBlock() ) {
+      return -1;
+    }
+    int size = Math.min( len, current.length - position );
+    System.arraycopy( current.buffer, position, cbuf, off, size );
+    position += size;
+    return size;
+  }
+
+  /**
+   * Stops the reading thread and closes the source reader.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    thread.interrupt();
+    source.close();
+  }
+
+  private static class Block {
+    private final char[] buffer;
+    private final int length;
+    private final IOException exception;
+
+    Block( char[] buffer, int length, IOException exception ) {
+      this.buffer = buffer;
+      this.length = length;
+      this.exception = exception;
+    }
+  }
+}
@@ -24,11 +24,20 @@ package org.pentaho.di.trans.steps.textfileinput;
 
 import java.io.BufferedInputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.vfs2.FileObject;
@@ -82,12 +91,35 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
   private static final int BUFFER_SIZE_INPUT_STREAM = 500;
 
+  private static final int READ_AHEAD_BLOCK_SIZE = 64 * 1024;
+
+  private static final int READ_AHEAD_BLOCKS = 4;
+
+  private static final int CONVERSION_BATCH_SIZE = 500;
+
   private TextFileInputMeta meta;
 
   private TextFileInputData data;
 
   private long lineNumberInFile;
 
+  private ExecutorService conversionExecutor;
+
+  private Deque<Future<List<Object[]>>> conversions;
+
+  private ConversionBatch conversionBatch;
+
+  /**
+   * Every conversion thread converts with its own copies of the row metadata: the date and number formats they cache
+   * aren't thread-safe.
+   */
+  private final ThreadLocal<RowMetaInterface[]> conversionRowMetas = new ThreadLocal<RowMetaInterface[]>() {
+    @Override
+    protected RowMetaInterface[] initialValue() {
+      return new RowMetaInterface[] { data.outputRowMeta.clone(), data.convertRowMeta.clone() };
+    }
+  };
+
   public TextFileInput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
       Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
@@ -99,7 +131,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
     return getLine( log, reader, type, formatNr, line );
   }
 
-  public static final String getLine( LogChannelInterface log, InputStreamReader reader, EncodingType encodingType,
+  public static final String getLine( LogChannelInterface log, Reader reader, EncodingType encodingType,
       int formatNr, StringBuilder line ) throws KettleFileException {
     int c = 0;
     line.setLength( 0 );
@@ -944,9 +976,13 @@ public class TextFileInput extends BaseStep implements StepInterface {
      * If the buffer is empty: open the next file. (if nothing in there, open the next, etc.)
      */
     while ( data.lineBuffer.size() == 0 ) {
+      if ( conversionExecutor != null ) {
+        flushConversionBatch();
+      }
       if ( !openNextFile() ) {
         // Open fails: done processing unless set to skip bad files
         if ( failAfterBadFile( null ) ) {
+          putAllConvertedRows();
           closeLastFile();
           setOutputDone(); // signal end to receiver(s)
           return false;
@@ -1089,13 +1125,18 @@ public class TextFileInput extends BaseStep implements StepInterface {
               AbstractFileErrorHandler.NO_PARTS ) ) {
             data.lineInFile++;
             long useNumber = meta.isRowNumberByFile() ? data.lineInFile : getLinesWritten() + 1;
-            r =
-                convertLineToRow( log, textLine, meta, data.currentPassThruFieldsRow, data.nrPassThruFields,
-                    data.outputRowMeta, data.convertRowMeta, data.filename, useNumber, data.separator, data.enclosure,
-                    data.escapeCharacter, data.dataErrorLineHandler, data.addShortFilename, data.addExtension,
-                    data.addPath, data.addSize, data.addIsHidden, data.addLastModificationDate, data.addUri,
-                    data.addRootUri, data.shortFilename, data.path, data.hidden, data.lastModificationDateTime,
-                    data.uriName, data.rootUriName, data.extension, data.size );
+            if ( conversionExecutor != null ) {
+              // The row is put once the conversion threads are done with it
+              addConversion( textLine, useNumber );
+            } else {
+              r =
+                  convertLineToRow( log, textLine, meta, data.currentPassThruFieldsRow, data.nrPassThruFields,
+                      data.outputRowMeta, data.convertRowMeta, data.filename, useNumber, data.separator,
+                      data.enclosure, data.escapeCharacter, data.dataErrorLineHandler, data.addShortFilename,
+                      data.addExtension, data.addPath, data.addSize, data.addIsHidden, data.addLastModificationDate,
+                      data.addUri, data.addRootUri, data.shortFilename, data.path, data.hidden,
+                      data.lastModificationDateTime, data.uriName, data.rootUriName, data.extension, data.size );
+            }
             if ( r != null ) {
               if ( log.isRowLevel() ) {
                 logRowlevel( "Found data row: " + data.outputRowMeta.getString( r ) );
@@ -1110,34 +1151,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
     }
 
     if ( putrow && r != null ) {
-      // See if the previous values need to be repeated!
-      if ( data.nr_repeats > 0 ) {
-        if ( data.previous_row == null ) { // First invocation...
-
-          data.previous_row = data.outputRowMeta.cloneRow( r );
-        } else {
-          // int repnr = 0;
-          for ( int i = 0; i < meta.getInputFields().length; i++ ) {
-            if ( meta.getInputFields()[i].isRepeated() ) {
-              if ( r[i] == null ) {
-                // if it is empty: take the previous value!
-
-                r[i] = data.previous_row[i];
-              } else {
-                // not empty: change the previous_row entry!
-
-                data.previous_row[i] = r[i];
-              }
-              // repnr++;
-            }
-          }
-        }
-      }
-
-      if ( log.isRowLevel() ) {
-        logRowlevel( "Putting row: " + data.outputRowMeta.getString( r ) );
-      }
-      putRow( data.outputRowMeta, r );
+      putTextRow( r );
 
       if ( getLinesInput() >= meta.getRowLimit() && meta.getRowLimit() > 0 ) {
         closeLastFile();
@@ -1155,6 +1169,136 @@ public class TextFileInput extends BaseStep implements StepInterface {
     return retval;
   }
 
+  private void putTextRow( Object[] r ) throws KettleException {
+    // See if the previous values need to be repeated!
+    if ( data.nr_repeats > 0 ) {
+      if ( data.previous_row == null ) { // First invocation...
+
+        data.previous_row = data.outputRowMeta.cloneRow( r );
+      } else {
+        // int repnr = 0;
+        for ( int i = 0; i < meta.getInputFields().length; i++ ) {
+          if ( meta.getInputFields()[i].isRepeated() ) {
+            if ( r[i] == null ) {
+              // if it is empty: take the previous value!
+
+              r[i] = data.previous_row[i];
+            } else {
+              // not empty: change the previous_row entry!
+
+              data.previous_row[i] = r[i];
+            }
+            // repnr++;
+          }
+        }
+      }
+    }
+
+    if ( log.isRowLevel() ) {
+      logRowlevel( "Putting row: " + data.outputRowMeta.getString( r ) );
+    }
+    putRow( data.outputRowMeta, r );
+  }
+
+  /**
+   * Adds a line to the batch of lines to convert on the conversion threads. Once enough batches are being converted,
+   * the rows of the oldest one are put.
+   */
+  private void addConversion( TextFileLine textLine, long rowNumber ) throws KettleException {
+    if ( conversionBatch == null ) {
+      conversionBatch = new ConversionBatch();
+    }
+    conversionBatch.add( textLine, rowNumber );
+    if ( conversionBatch.isFull() ) {
+      flushConversionBatch();
+    }
+  }
+
+  /**
+   * Hands the lines collected so far over to the conversion threads. This is done before opening the next file: a
+   * batch only holds lines of one file.
+   */
+  private void flushConversionBatch() throws KettleException {
+    if ( conversionBatch != null ) {
+      conversions.add( conversionExecutor.submit( conversionBatch ) );
+      conversionBatch = null;
+    }
+    while ( conversions.size() > 2 * data.conversionThreads ) {
+      putConvertedRows( conversions.removeFirst() );
+    }
+  }
+
+  private void putAllConvertedRows() throws KettleException {
+    if ( conversionExecutor == null ) {
+      return;
+    }
+    flushConversionBatch();
+    while ( !conversions.isEmpty() ) {
+      putConvertedRows( conversions.removeFirst() );
+    }
+  }
+
+  private void putConvertedRows( Future<List<Object[]>> conversion ) throws KettleException {
+    List<Object[]> rows;
+    try {
+      rows = conversion.get();
+    } catch ( InterruptedException e ) {
+      throw new KettleException( "Interrupted while converting lines", e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof KettleException ) {
+        throw (KettleException) e.getCause();
+      }
+      throw new KettleException( e.getCause() );
+    }
+    for ( Object[] r : rows ) {
+      if ( r != null ) {
+        putTextRow( r );
+      }
+    }
+  }
+
+  /**
+   * A batch of lines of the same file, converted to rows on a conversion thread.
+   */
+  private class ConversionBatch implements Callable<List<Object[]>> {
+    private final List<TextFileLine> lines = new ArrayList<TextFileLine>( CONVERSION_BATCH_SIZE );
+    private final long[] rowNumbers = new long[CONVERSION_BATCH_SIZE];
+
+    // The file the lines are read from
+    private final Object[] passThruFieldsRow = data.currentPassThruFieldsRow;
+    private final String filename = data.filename;
+    private final String shortFilename = data.shortFilename;
+    private final String path = data.path;
+    private final boolean hidden = data.hidden;
+    private final Date lastModificationDateTime = data.lastModificationDateTime;
+    private final String uriName = data.uriName;
+    private final String rootUriName = data.rootUriName;
+    private final String extension = data.extension;
+    private final long size = data.size;
+
+    void add( TextFileLine textLine, long rowNumber ) {
+      rowNumbers[lines.size()] = rowNumber;
+      lines.add( textLine );
+    }
+
+    boolean isFull() {
+      return lines.size() == CONVERSION_BATCH_SIZE;
+    }
+
+    public List<Object[]> call() throws KettleException {
+      RowMetaInterface[] rowMetas = conversionRowMetas.get();
+      List<Object[]> rows = new ArrayList<Object[]>( lines.size() );
+      for ( int i = 0; i < lines.size(); i++ ) {
+        rows.add( convertLineToRow( log, lines.get( i ), meta, passThruFieldsRow, data.nrPassThruFields,
+            rowMetas[0], rowMetas[1], filename, rowNumbers[i], data.separator, data.enclosure,
+            data.escapeCharacter, data.dataErrorLineHandler, data.addShortFilename, data.addExtension, data.addPath,
+            data.addSize, data.addIsHidden, data.addLastModificationDate, data.addUri, data.addRootUri,
+            shortFilename, path, hidden, lastModificationDateTime, uriName, rootUriName, extension, size ) );
+      }
+      return rows;
+    }
+  }
+
   /**
    *
    * @param errorMsg
@@ -1306,8 +1450,8 @@ public class TextFileInput extends BaseStep implements StepInterface {
          * } else if ( sFileCompression != null && sFileCompression.equals( "Snappy" ) && data.sis != null ) {
          * data.sis.close(); }
          */
+        data.reader.close();
         data.in.close();
-        data.isr.close();
         data.filename = null; // send it down the next time.
         if ( data.file != null ) {
           data.file.close();
@@ -1417,6 +1561,14 @@ public class TextFileInput extends BaseStep implements StepInterface {
       String encoding = data.isr.getEncoding();
       data.encodingType = EncodingType.guessEncodingType( encoding );
 
+      // Decompress and decode the file on a separate thread
+      if ( data.readAhead ) {
+        data.reader =
+            new ReadAheadReader( data.isr, READ_AHEAD_BLOCK_SIZE, READ_AHEAD_BLOCKS, getStepname() + " read-ahead" );
+      } else {
+        data.reader = data.isr;
+      }
+
       // /////////////////////////////////////////////////////////////////////////////
       // Read the first lines...
 
@@ -1440,7 +1592,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
       if ( meta.isLayoutPaged() ) {
         for ( int i = 0; i < meta.getNrLinesDocHeader(); i++ ) {
           // Just skip these...
-          getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder ); // header and
+          getLine( log, data.reader, data.encodingType, data.fileFormatType, data.lineStringBuilder ); // header and
                                                                                                     // footer: not
                                                                                                     // wrapped
           lineNumberInFile++;
@@ -1477,7 +1629,7 @@ public class TextFileInput extends BaseStep implements StepInterface {
 
   private boolean tryToReadLine( boolean applyFilter ) throws KettleFileException {
     String line;
-    line = getLine( log, data.isr, data.encodingType, data.fileFormatType, data.lineStringBuilder );
+    line = getLine( log, data.reader, data.encodingType, data.fileFormatType, data.lineStringBuilder );
     if ( line != null ) {
       // when there is no header, check the filter for the first line
       if ( applyFilter ) {
@@ -1581,11 +1733,36 @@ public class TextFileInput extends BaseStep implements StepInterface {
       if ( !Utils.isEmpty( meta.getRootUriField() ) ) {
         data.addRootUri = true;
       }
+
+      data.readAhead = "Y".equalsIgnoreCase( getVariable( Const.KETTLE_TEXT_FILE_INPUT_READ_AHEAD, "N" ) );
+      initConversionThreads( meta, data );
       return true;
     }
     return false;
   }
 
+  /**
+   * Lines are converted on separate threads only when the rows don't depend on the lines and rows handled before.
+   *
+   * Used for junits in TextFileInputTest
+   */
+  void initConversionThreads( TextFileInputMeta meta, TextFileInputData data ) {
+    data.conversionThreads = Const.toInt( getVariable( Const.KETTLE_TEXT_FILE_INPUT_CONVERSION_THREADS, "0" ), 0 );
+    if ( data.conversionThreads <= 0 || meta.isLayoutPaged() || meta.isErrorIgnored() || meta.getRowLimit() > 0
+      || ( meta.includeRowNumber() && !meta.isRowNumberByFile() ) ) {
+      return;
+    }
+    final String threadName = getStepname() + " conversion";
+    conversionExecutor = Executors.newFixedThreadPool( data.conversionThreads, new ThreadFactory() {
+      public Thread newThread( Runnable r ) {
+        Thread thread = new Thread( r, threadName );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    conversions = new ArrayDeque<Future<List<Object[]>>>();
+  }
+
   private void initReplayFactory() {
     Date replayDate = getTrans().getReplayDate();
     if ( replayDate == null ) {
@@ -1625,10 +1802,18 @@ public class TextFileInput extends BaseStep implements StepInterface {
         log.logError( "Error closing file", e );
       }
     }
+    if ( data.reader != null ) {
+      BaseStep.closeQuietly( data.reader );
+      data.reader = null;
+    }
     if ( data.in != null ) {
       BaseStep.closeQuietly( data.in );
       data.in = null;
     }
+    if ( conversionExecutor != null ) {
+      conversionExecutor.shutdownNow();
+      conversionExecutor = null;
+    }
     super.dispose( smi, sdi );
   }
 
@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.textfileinput;
 
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -76,6 +77,15 @@ public class TextFileInputData extends BaseStepData implements StepDataInterface
 
   public InputStreamReader isr;
 
+  /**
+   * The reader the lines are read from: the input stream reader or a read-ahead reader wrapping it.
+   */
+  public Reader reader;
+
+  public boolean readAhead;
+
+  public int conversionThreads;
+
   public boolean doneReading;
 
   public int headerLinesRead;
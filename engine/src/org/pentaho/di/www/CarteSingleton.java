@@ -167,10 +167,11 @@ public class CarteSingleton {
                     //
                     transformationMap.removeTransformation( entry );
 
-                    // Remove the logging information from the log registry & central log store
+                    // Remove the logging information from the central log store & log registry.
+                    // The lines have to go first: the registry knows which child channels to discard.
                     //
-                    LoggingRegistry.getInstance().removeIncludingChildren( trans.getLogChannelId() );
                     KettleLogStore.discardLines( trans.getLogChannelId(), false );
+                    LoggingRegistry.getInstance().removeIncludingChildren( trans.getLogChannelId() );
 
                     // transformationMap.deallocateServerSocketPorts(entry);
 
@@ -197,6 +198,12 @@ public class CarteSingleton {
                     // Let's remove this from the job map...
                     //
                     jobMap.removeJob( entry );
+
+                    // Remove the logging information from the central log store & log registry
+                    //
+                    KettleLogStore.discardLines( job.getLogChannelId(), false );
+                    LoggingRegistry.getInstance().removeIncludingChildren( job.getLogChannelId() );
+
                     log.logMinimal( "Cleaned up job "
                       + entry.getName() + " with id " + entry.getId() + " from " + job.getLogDate() );
                   }
@@ -39,6 +39,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LoggingRegistry;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.job.Job;
@@ -122,6 +123,7 @@ public class GetStatusServlet extends BaseHttpServlet implements CartePluginInte
         <os_name>Windows 7</os_name>
         <os_version>6.1</os_version>
         <os_arch>amd64</os_arch>
+        <logging_registry_size>1250</logging_registry_size>
         <transstatuslist>
           <transstatus>
             <transname>Row generator test</transname>
@@ -478,6 +480,7 @@ public class GetStatusServlet extends BaseHttpServlet implements CartePluginInte
     serverStatus.setOsArchitecture( osArch );
     serverStatus.setMemoryFree( freeMemory );
     serverStatus.setMemoryTotal( totalMemory );
+    serverStatus.setLoggingRegistrySize( LoggingRegistry.getInstance().size() );
 
   }
 
@@ -59,6 +59,8 @@ public class SlaveServerStatus {
 
   private String osArchitecture;
 
+  private int loggingRegistrySize = -1;
+
   public SlaveServerStatus() {
     transStatusList = new ArrayList<SlaveServerTransStatus>();
     jobStatusList = new ArrayList<SlaveServerJobStatus>();
@@ -102,6 +104,8 @@ public class SlaveServerStatus {
     xml.append( XMLHandler.addTagValue( "os_version", osVersion ) );
     xml.append( XMLHandler.addTagValue( "os_arch", osArchitecture ) );
 
+    xml.append( XMLHandler.addTagValue( "logging_registry_size", loggingRegistrySize ) );
+
     xml.append( "  <transstatuslist>" ).append( Const.CR );
     for ( int i = 0; i < transStatusList.size(); i++ ) {
       SlaveServerTransStatus transStatus = transStatusList.get( i );
@@ -141,6 +145,8 @@ public class SlaveServerStatus {
     osVersion = XMLHandler.getTagValue( statusNode, "os_version" );
     osArchitecture = XMLHandler.getTagValue( statusNode, "os_arch" );
 
+    loggingRegistrySize = Const.toInt( XMLHandler.getTagValue( statusNode, "logging_registry_size" ), -1 );
+
     Node listTransNode = XMLHandler.getSubNode( statusNode, "transstatuslist" );
     Node listJobsNode = XMLHandler.getSubNode( statusNode, "jobstatuslist" );
 
@@ -352,4 +358,19 @@ public class SlaveServerStatus {
   public String getOsArchitecture() {
     return osArchitecture;
   }
+
+  /**
+   * @return the number of logging sources in the logging registry of the server, -1 if unknown
+   */
+  public int getLoggingRegistrySize() {
+    return loggingRegistrySize;
+  }
+
+  /**
+   * @param loggingRegistrySize
+   *          the number of logging sources in the logging registry of the server
+   */
+  public void setLoggingRegistrySize( int loggingRegistrySize ) {
+    this.loggingRegistrySize = loggingRegistrySize;
+  }
 }
@@ -0,0 +1,182 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.core.compress.lz4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.compress.CompressionPluginType;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
+import org.pentaho.di.core.compress.ReadAheadInputStream;
+import org.pentaho.di.core.compress.SocketCompression;
+import org.pentaho.di.core.plugins.PluginRegistry;
+
+public class LZ4CompressionProviderTest {
+
+  public static final String PROVIDER_NAME = "LZ4";
+
+  public CompressionProviderFactory factory = null;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    PluginRegistry.addPluginType( CompressionPluginType.getInstance() );
+    PluginRegistry.init( true );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    factory = CompressionProviderFactory.getInstance();
+  }
+
+  @Test
+  public void testGetProviderAttributes() {
+    LZ4CompressionProvider provider = (LZ4CompressionProvider) factory.getCompressionProviderByName( PROVIDER_NAME );
+    assertNotNull( provider );
+    assertEquals( PROVIDER_NAME, provider.getName() );
+    assertEquals( "LZ4 compression", provider.getDescription() );
+    assertTrue( provider.supportsInput() );
+    assertTrue( provider.supportsOutput() );
+    assertEquals( "lz4", provider.getDefaultExtension() );
+  }
+
+  private static byte[] createData( int size, boolean compressible ) {
+    Random random = new Random( size );
+    byte[] data = new byte[size];
+    for ( int i = 0; i < size; i++ ) {
+      data[i] = compressible ? (byte) "Orlando;Miami;Tampa;".charAt( random.nextInt( 20 ) ) : (byte) random.nextInt();
+    }
+    return data;
+  }
+
+  private static byte[] compress( byte[] data ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream out = new LZ4CompressionProvider().createOutputStream( bytes );
+    int offset = 0;
+    while ( offset < data.length ) {
+      // Odd write sizes and flushes cut the data into blocks of different sizes
+      int size = Math.min( data.length - offset, 1 + offset % 70001 );
+      out.write( data, offset, size );
+      offset += size;
+      if ( offset % 3 == 0 ) {
+        out.flush();
+      }
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] readAll( InputStream in ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ( ( n = in.read( buffer ) ) >= 0 ) {
+      bytes.write( buffer, 0, n );
+    }
+    in.close();
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for ( int size : new int[] { 0, 1, 12, 13, 1000, 65536, 65537, 500000 } ) {
+      for ( boolean compressible : new boolean[] { true, false } ) {
+        byte[] data = createData( size, compressible );
+        byte[] compressed = compress( data );
+        if ( compressible && size >= 1000 ) {
+          assertTrue( compressed.length < data.length / 2 );
+        }
+        LZ4CompressionInputStream in =
+          new LZ4CompressionProvider().createInputStream( new ByteArrayInputStream( compressed ) );
+        assertArrayEquals( data, readAll( in ) );
+      }
+    }
+  }
+
+  @Test
+  public void testRepeatedBytes() throws IOException {
+    byte[] data = new byte[100000];
+    byte[] compressed = compress( data );
+    assertTrue( compressed.length < 1000 );
+    assertArrayEquals( data, readAll( new LZ4CompressionInputStream( new ByteArrayInputStream( compressed ), null ) ) );
+  }
+
+  @Test
+  public void testReadAhead() throws IOException {
+    byte[] data = createData( 300000, true );
+    InputStream in =
+      new ReadAheadInputStream( new LZ4CompressionInputStream( new ByteArrayInputStream( compress( data ) ), null ),
+        8192, 2, "test" );
+    assertArrayEquals( data, readAll( in ) );
+  }
+
+  @Test
+  public void testSocketCompression() throws IOException {
+    byte[] data = createData( 100000, true );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream out = SocketCompression.createOutputStream( PROVIDER_NAME, bytes, 512 );
+    out.write( data );
+    SocketCompression.finish( out );
+    InputStream in =
+      SocketCompression.createInputStream( PROVIDER_NAME, new ByteArrayInputStream( bytes.toByteArray() ), "test" );
+    assertArrayEquals( data, readAll( in ) );
+  }
+
+  @Test
+  public void testCorruptBlock() throws IOException {
+    byte[] compressed = compress( createData( 10000, true ) );
+    // Point the first match far before the start of the block
+    for ( int i = 16; i < compressed.length; i++ ) {
+      compressed[i] = (byte) 0xFF;
+    }
+    try {
+      readAll( new LZ4CompressionInputStream( new ByteArrayInputStream( compressed ), null ) );
+      fail( "Expected a corrupt stream" );
+    } catch ( IOException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testNotLZ4() throws IOException {
+    try {
+      readAll( new LZ4CompressionInputStream( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 } ),
+        null ) );
+      fail( "Expected an invalid stream" );
+    } catch ( IOException e ) {
+      // expected
+    }
+  }
+}
@@ -290,6 +290,47 @@ public class BaseStepTest {
     assertFalse( meta1 == meta2 );
   }
 
+  @Test
+  public void frozenInputRowMetaIsOnlyKeptForTheLastRowMetaOfARowSet() throws Exception {
+    StepMeta prev1 = mock( StepMeta.class );
+    when( prev1.getName() ).thenReturn( "prev1" );
+    StepMeta prev2 = mock( StepMeta.class );
+    when( prev2.getName() ).thenReturn( "prev2" );
+    when( mockHelper.transMeta.findPreviousSteps( any( StepMeta.class ), eq( true ) ) )
+      .thenReturn( Arrays.asList( prev1, prev2 ) );
+    RowSet rs1 = new QueueRowSet();
+    RowSet rs2 = new QueueRowSet();
+    when( mockHelper.trans.findRowSet( anyString(), anyInt(), anyString(), anyInt() ) ).thenReturn( rs1, rs2 );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    assertEquals( 2, baseStep.getInputRowSets().size() );
+
+    RowMetaInterface rowMeta1 = new RowMeta();
+    rowMeta1.addValueMeta( new ValueMetaString( "a" ) );
+    RowMetaInterface rowMeta2 = new RowMeta();
+    rowMeta2.addValueMeta( new ValueMetaString( "b" ) );
+
+    rs1.putRow( rowMeta1, new Object[] { "x" } );
+    assertNotNull( baseStep.getRow() );
+    RowMetaInterface frozen1 = baseStep.getInputRowMeta();
+    assertNotSame( rowMeta1, frozen1 );
+
+    rs1.putRow( rowMeta1, new Object[] { "y" } );
+    assertNotNull( baseStep.getRow() );
+    assertSame( frozen1, baseStep.getInputRowMeta() );
+
+    rs1.putRow( rowMeta2, new Object[] { "z" } );
+    assertNotNull( baseStep.getRow() );
+    assertEquals( "b", baseStep.getInputRowMeta().getValueMeta( 0 ).getName() );
+
+    // the copy of the first row metadata was replaced, a row set doesn't collect copies
+    rs1.putRow( rowMeta1, new Object[] { "x" } );
+    assertNotNull( baseStep.getRow() );
+    assertNotSame( frozen1, baseStep.getInputRowMeta() );
+    assertEquals( "a", baseStep.getInputRowMeta().getValueMeta( 0 ).getName() );
+  }
+
   @Test
   public void testBuildLog() throws KettleValueException {
     BaseStep testObject = new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta,
@@ -428,6 +469,148 @@ public class BaseStepTest {
   }
 
 
+  @Test
+  public void putRowsToSingleRowSetInOneGo() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    RowSet rowSet = new BlockingRowSet( 10 );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    RowListener rowListener = mock( RowListener.class );
+    baseStep.addRowListener( rowListener );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    List<Object[]> rows = batchOfRows( 0, 3 );
+    baseStep.putRows( rowMeta, rows );
+
+    assertEquals( 3, rowSet.size() );
+    assertEquals( 3, baseStep.getLinesWritten() );
+    verify( rowListener, times( 3 ) ).rowWrittenEvent( any( RowMetaInterface.class ), any( Object[].class ) );
+    for ( Object[] row : rows ) {
+      assertSame( row, rowSet.getRowImmediate() );
+    }
+  }
+
+  @Test
+  public void putRowsToSeveralRowSetsCopiesRowByRow() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    baseStep.setDistributed( false );
+    RowSet rowSet1 = new BlockingRowSet( 10 );
+    RowSet rowSet2 = new BlockingRowSet( 10 );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Arrays.asList( rowSet1, rowSet2 ) ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    baseStep.putRows( rowMeta, batchOfRows( 0, 3 ) );
+
+    assertEquals( 3, rowSet1.size() );
+    assertEquals( 3, rowSet2.size() );
+    for ( long i = 0; i < 3; i++ ) {
+      assertEquals( i, rowSet1.getRowImmediate()[ 0 ] );
+      assertEquals( i, rowSet2.getRowImmediate()[ 0 ] );
+    }
+  }
+
+  @Test
+  public void putRowsRefusesNullRow() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    baseStep.setRepartitioning( StepPartitioningMeta.PARTITIONING_METHOD_NONE );
+    RowSet rowSet = new BlockingRowSet( 10 );
+    baseStep.setOutputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    List<Object[]> rows = batchOfRows( 0, 3 );
+    rows.set( 1, null );
+    try {
+      baseStep.putRows( rowMeta, rows );
+      fail( "A batch with a null row should be refused" );
+    } catch ( KettleStepException e ) {
+      // expected
+    }
+    assertEquals( 0, rowSet.size() );
+    assertEquals( 0, baseStep.getLinesWritten() );
+  }
+
+  @Test
+  public void getRowsFromSingleRowSet() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    RowSet rowSet = new BlockingRowSet( 10 );
+    baseStep.setInputRowSets( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    RowListener rowListener = mock( RowListener.class );
+    baseStep.addRowListener( rowListener );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    List<Object[]> rows = batchOfRows( 0, 5 );
+    for ( Object[] row : rows ) {
+      rowSet.putRow( rowMeta, row );
+    }
+    rowSet.setDone();
+
+    List<Object[]> first = baseStep.getRows( 3 );
+    assertEquals( rows.subList( 0, 3 ), first );
+    List<Object[]> second = baseStep.getRows( 3 );
+    assertEquals( rows.subList( 3, 5 ), second );
+    assertNull( baseStep.getRows( 3 ) );
+
+    assertEquals( 5, baseStep.getLinesRead() );
+    assertEquals( 1, baseStep.getInputRowMeta().size() );
+    verify( rowListener, times( 5 ) ).rowReadEvent( any( RowMetaInterface.class ), any( Object[].class ) );
+  }
+
+  @Test
+  public void getRowsFromSeveralRowSets() throws KettleException {
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    BaseStep baseStep =
+      new BaseStep( mockHelper.stepMeta, mockHelper.stepDataInterface, 0, mockHelper.transMeta, mockHelper.trans );
+    baseStep.setStopped( false );
+    RowSet rowSet1 = new BlockingRowSet( 10 );
+    RowSet rowSet2 = new BlockingRowSet( 10 );
+    baseStep.setInputRowSets( new ArrayList<RowSet>( Arrays.asList( rowSet1, rowSet2 ) ) );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    List<Object[]> rows = batchOfRows( 0, 6 );
+    for ( int i = 0; i < rows.size(); i++ ) {
+      ( i < 3 ? rowSet1 : rowSet2 ).putRow( rowMeta, rows.get( i ) );
+    }
+    rowSet1.setDone();
+    rowSet2.setDone();
+
+    List<Object[]> read = new ArrayList<Object[]>();
+    List<Object[]> batch = baseStep.getRows( 4 );
+    while ( batch != null ) {
+      assertTrue( batch.size() <= 4 );
+      read.addAll( batch );
+      batch = baseStep.getRows( 4 );
+    }
+    assertEquals( 6, read.size() );
+    assertTrue( read.containsAll( rows ) );
+    assertEquals( 6, baseStep.getLinesRead() );
+  }
+
+  private List<Object[]> batchOfRows( long from, long to ) {
+    List<Object[]> rows = new ArrayList<Object[]>();
+    for ( long i = from; i < to; i++ ) {
+      rows.add( new Object[] { i } );
+    }
+    return rows;
+  }
+
   private RowHandler rowHandlerWithDefaultMethods() {
     return new RowHandler() {
       @Override public Object[] getRow() throws KettleException {
@@ -0,0 +1,134 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.di.core.QueueRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+public class FusedRunThreadTest {
+
+  private RowMetaInterface rowMeta;
+  private RowSet inputRowSet;
+  private List<Object[]> processed;
+  private StepInterface step;
+  private FusedRunThread fusedRunThread;
+
+  @Before
+  public void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    inputRowSet = new QueueRowSet();
+    processed = new ArrayList<Object[]>();
+
+    step = mockStep();
+    when( step.processRow( any( StepMetaInterface.class ), any( StepDataInterface.class ) ) ).thenAnswer(
+      new Answer<Boolean>() {
+        @Override
+        public Boolean answer( InvocationOnMock invocation ) throws Throwable {
+          Object[] row = inputRowSet.getRow();
+          if ( row == null ) {
+            return !inputRowSet.isDone();
+          }
+          processed.add( row );
+          return true;
+        }
+      } );
+    fusedRunThread = new FusedRunThread( combi( step ), inputRowSet );
+  }
+
+  @Test
+  public void testRowsAreProcessedRightAfterTheyAreWritten() throws Exception {
+    RowHandler delegate = mock( RowHandler.class );
+    RowHandler rowHandler = new FusedRunThread.FusedRowHandler( delegate, fusedRunThread );
+    fusedRunThread.start();
+    verify( step ).setRunning( true );
+
+    for ( int i = 0; i < 3; i++ ) {
+      Object[] row = new Object[] { i };
+      inputRowSet.putRow( rowMeta, row );
+      rowHandler.putRow( rowMeta, row );
+      verify( delegate ).putRow( rowMeta, row );
+      assertEquals( i + 1, processed.size() );
+      assertEquals( 0, inputRowSet.size() );
+    }
+    verify( step, times( 0 ) ).markStop();
+  }
+
+  @Test
+  public void testPreviousStepFinishedFinishesTheChain() throws Exception {
+    StepInterface nextStep = mockStep();
+    when( nextStep.processRow( any( StepMetaInterface.class ), any( StepDataInterface.class ) ) ).thenReturn( false );
+    FusedRunThread next = new FusedRunThread( combi( nextStep ), new QueueRowSet() );
+    fusedRunThread.setFusedStep( next );
+
+    fusedRunThread.start();
+    next.start();
+    inputRowSet.putRow( rowMeta, new Object[] { "last" } );
+
+    fusedRunThread.previousStepFinished();
+    fusedRunThread.previousStepFinished();
+
+    assertEquals( 1, processed.size() );
+    assertTrue( inputRowSet.isDone() );
+    verify( step ).dispose( any( StepMetaInterface.class ), any( StepDataInterface.class ) );
+    verify( step ).markStop();
+    verify( nextStep ).markStop();
+  }
+
+  @Test( expected = IllegalStateException.class )
+  public void testThereIsNoThreadToRun() {
+    fusedRunThread.run();
+  }
+
+  private static StepInterface mockStep() {
+    StepInterface step = mock( StepInterface.class );
+    when( step.getLogChannel() ).thenReturn( mock( LogChannelInterface.class ) );
+    return step;
+  }
+
+  private static StepMetaDataCombi combi( StepInterface step ) {
+    StepMetaDataCombi combi = new StepMetaDataCombi();
+    combi.step = step;
+    combi.meta = mock( StepMetaInterface.class );
+    combi.data = mock( StepDataInterface.class );
+    combi.stepname = "fused";
+    return combi;
+  }
+}
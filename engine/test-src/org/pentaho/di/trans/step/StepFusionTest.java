@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.QueueRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.TransMeta;
+
+public class StepFusionTest {
+
+  private TransMeta transMeta;
+  private RowSet rowSet;
+  private List<RowSet> rowsets;
+
+  @Before
+  public void setUp() {
+    transMeta = mock( TransMeta.class );
+    rowSet = new BlockingRowSet( 10 );
+    rowSet.setThreadNameFromToCopy( "source", 0, "target", 0 );
+    rowsets = new ArrayList<RowSet>( Collections.singletonList( rowSet ) );
+  }
+
+  @Test
+  public void testRowByRowStepsAreFused() {
+    StepMetaDataCombi source = sourceCombi( "Dummy" );
+    StepMetaDataCombi target = targetCombi( "Calculator" );
+
+    Map<StepMetaDataCombi, FusedRunThread> fused = StepFusion.fuse( transMeta, Arrays.asList( source, target ),
+      rowsets );
+
+    assertEquals( 1, fused.size() );
+    assertSame( target, fused.get( source ).getCombi() );
+    assertTrue( rowsets.get( 0 ) instanceof QueueRowSet );
+    verify( (BaseStep) source.step ).setRowHandler( any( RowHandler.class ) );
+  }
+
+  @Test
+  public void testMappingIsNoSource() {
+    // The sub-transformation of a mapping writes to the output row set from another thread
+    //
+    StepMetaDataCombi source = sourceCombi( "Mapping" );
+    StepMetaDataCombi target = targetCombi( "Calculator" );
+
+    Map<StepMetaDataCombi, FusedRunThread> fused = StepFusion.fuse( transMeta, Arrays.asList( source, target ),
+      rowsets );
+
+    assertTrue( fused.isEmpty() );
+    assertSame( rowSet, rowsets.get( 0 ) );
+    assertSame( rowSet, source.step.getOutputRowSets().get( 0 ) );
+    verify( (BaseStep) source.step, never() ).setRowHandler( any( RowHandler.class ) );
+  }
+
+  private StepMetaDataCombi sourceCombi( String stepId ) {
+    StepMetaDataCombi combi = combi( "source", stepId, mock( BaseStep.class ) );
+    when( combi.step.getOutputRowSets() ).thenReturn( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    when( combi.step.getInputRowSets() ).thenReturn( new ArrayList<RowSet>() );
+    when( transMeta.findNextSteps( combi.stepMeta ) ).thenReturn( Collections.singletonList( mock( StepMeta.class ) ) );
+    return combi;
+  }
+
+  private StepMetaDataCombi targetCombi( String stepId ) {
+    StepMetaDataCombi combi = combi( "target", stepId, mock( StepInterface.class ) );
+    when( combi.step.getInputRowSets() ).thenReturn( new ArrayList<RowSet>( Collections.singletonList( rowSet ) ) );
+    when( combi.step.getOutputRowSets() ).thenReturn( new ArrayList<RowSet>() );
+    when( transMeta.findPreviousSteps( combi.stepMeta, true ) )
+      .thenReturn( Collections.singletonList( mock( StepMeta.class ) ) );
+    return combi;
+  }
+
+  private static StepMetaDataCombi combi( String stepname, String stepId, StepInterface step ) {
+    StepMeta stepMeta = mock( StepMeta.class );
+    when( stepMeta.getStepID() ).thenReturn( stepId );
+    when( stepMeta.getCopies() ).thenReturn( 1 );
+    when( stepMeta.getRemoteInputSteps() ).thenReturn( Collections.<RemoteStep>emptyList() );
+    when( stepMeta.getRemoteOutputSteps() ).thenReturn( Collections.<RemoteStep>emptyList() );
+
+    StepMetaDataCombi combi = new StepMetaDataCombi();
+    combi.stepMeta = stepMeta;
+    combi.step = step;
+    combi.meta = mock( StepMetaInterface.class );
+    combi.data = mock( StepDataInterface.class );
+    combi.stepname = stepname;
+    combi.copy = 0;
+    return combi;
+  }
+}
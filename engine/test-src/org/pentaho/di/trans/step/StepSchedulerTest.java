@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.step;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.ScheduledRowSet;
+
+public class StepSchedulerTest {
+
+  @After
+  public void tearDown() {
+    System.clearProperty( Const.KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS );
+  }
+
+  @Test
+  public void testRowByRowStepIsScheduled() {
+    assertTrue( StepScheduler.canSchedule( combi( "SelectValues" ) ) );
+  }
+
+  @Test
+  public void testScriptStepsKeepTheirThread() {
+    assertFalse( StepScheduler.canSchedule( combi( "ScriptValueMod" ) ) );
+    assertFalse( StepScheduler.canSchedule( combi( "Script" ) ) );
+  }
+
+  @Test
+  public void testExcludedStepsKeepTheirThread() {
+    System.setProperty( Const.KETTLE_STEP_SCHEDULER_EXCLUDED_STEPS, "Formula, SelectValues" );
+    assertFalse( StepScheduler.canSchedule( combi( "SelectValues" ) ) );
+    assertTrue( StepScheduler.canSchedule( combi( "Constant" ) ) );
+  }
+
+  private static StepMetaDataCombi combi( String stepId ) {
+    StepMetaDataCombi combi = new StepMetaDataCombi();
+    combi.stepMeta = mock( StepMeta.class );
+    when( combi.stepMeta.getStepID() ).thenReturn( stepId );
+    combi.meta = mock( StepMetaInterface.class );
+    combi.step = mock( StepInterface.class );
+    when( combi.step.getInputRowSets() ).thenReturn( Collections.<RowSet>singletonList( new ScheduledRowSet( 10 ) ) );
+    when( combi.step.getOutputRowSets() ).thenReturn( Collections.<RowSet>emptyList() );
+    return combi;
+  }
+}
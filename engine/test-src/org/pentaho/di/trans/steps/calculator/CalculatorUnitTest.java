@@ -42,6 +42,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -130,6 +131,62 @@ public class CalculatorUnitTest {
     }
   }
 
+  @Test
+  public void testArithmeticInBatches() throws KettleException {
+    RowMeta inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "A" ) );
+    inputRowMeta.addValueMeta( new ValueMetaInteger( "B" ) );
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "X" ) );
+    inputRowMeta.addValueMeta( new ValueMetaNumber( "Y" ) );
+
+    RowSet inputRowSet = new QueueRowSet();
+    inputRowSet.putRow( inputRowMeta, new Object[] { 2L, 3L, 1.5, 0.5 } );
+    inputRowSet.putRow( inputRowMeta, new Object[] { 4L, null, 2.0, 1.0 } );
+    inputRowSet.putRow( inputRowMeta, new Object[] { 5L, 6L, null, 1.0 } );
+    inputRowSet.putRow( inputRowMeta, new Object[] { -1L, 7L, 0.25, 0.75 } );
+    inputRowSet.setDone();
+
+    Calculator calculator = new Calculator( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
+    calculator.getInputRowSets().add( inputRowSet );
+    calculator.setInputRowMeta( inputRowMeta );
+    calculator.init( smh.initStepMetaInterface, smh.initStepDataInterface );
+
+    // The product is a temporary field used by the sum
+    //
+    CalculatorMeta meta = new CalculatorMeta();
+    meta.setCalculation( new CalculatorMetaFunction[] {
+      new CalculatorMetaFunction( "product", CalculatorMetaFunction.CALC_MULTIPLY, "A", "B", null,
+        ValueMetaInterface.TYPE_INTEGER, 0, 0, true, "", "", "", "" ),
+      new CalculatorMetaFunction( "sum", CalculatorMetaFunction.CALC_ADD, "product", "A", null,
+        ValueMetaInterface.TYPE_INTEGER, 0, 0, false, "", "", "", "" ),
+      new CalculatorMetaFunction( "difference", CalculatorMetaFunction.CALC_SUBTRACT, "X", "Y", null,
+        ValueMetaInterface.TYPE_NUMBER, 0, 0, false, "", "", "", "" ) } );
+
+    final List<Object[]> output = new ArrayList<Object[]>();
+    calculator.addRowListener( new RowAdapter() {
+      @Override public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+        output.add( row );
+      }
+    } );
+    CalculatorData data = new CalculatorData();
+    while ( calculator.processRow( meta, data ) ) {
+      // the rows after the first are calculated in batches
+    }
+
+    assertTrue( data.isCalculatingInBatches() );
+    assertEquals( 4, output.size() );
+    Object[][] expected = {
+      { 2L, 3L, 1.5, 0.5, 8L, 1.0 },
+      { 4L, null, 2.0, 1.0, null, 1.0 },
+      { 5L, 6L, null, 1.0, 35L, null },
+      { -1L, 7L, 0.25, 0.75, -8L, -0.5 } };
+    for ( int i = 0; i < expected.length; i++ ) {
+      for ( int j = 0; j < expected[i].length; j++ ) {
+        assertEquals( "row " + i + ", field " + j, expected[i][j], output.get( i )[j] );
+      }
+    }
+  }
+
   @Test
   public void testReturnDigitsOnly() throws KettleException {
     RowMeta inputRowMeta = new RowMeta();
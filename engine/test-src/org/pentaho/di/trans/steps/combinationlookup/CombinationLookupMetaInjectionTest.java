@@ -94,6 +94,16 @@ public class CombinationLookupMetaInjectionTest extends BaseMetadataInjectionTes
         return meta.getCacheSize();
       }
     } );
+    check( "CACHE_POLICY", new StringGetter() {
+      public String get() {
+        return meta.getCachePolicy();
+      }
+    } );
+    check( "CACHE_MEMORY_LIMIT", new IntGetter() {
+      public int get() {
+        return meta.getCacheMemoryLimit();
+      }
+    } );
     check( "AUTO_INC", new BooleanGetter() {
       public boolean get() {
         return meta.isUseAutoinc();
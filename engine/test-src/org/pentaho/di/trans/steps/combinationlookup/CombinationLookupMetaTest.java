@@ -45,6 +45,7 @@ import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
 import org.pentaho.di.trans.steps.loadsave.initializer.InitializerInterface;
 import org.pentaho.di.trans.steps.loadsave.validator.ArrayLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.DatabaseMetaLoadSaveValidator;
+import org.pentaho.di.trans.steps.loadsave.validator.EvictionPolicyCodeLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.StringLoadSaveValidator;
 
@@ -59,7 +60,7 @@ public class CombinationLookupMetaTest implements InitializerInterface<StepMetaI
     List<String> attributes =
         Arrays.asList( "schemaName", "tableName", "databaseMeta", "replaceFields", "keyField", "keyLookup",
             "useHash", "hashField", "technicalKeyField", "sequenceFrom", "commitSize", "preloadCache", "cacheSize",
-            "useAutoinc", "techKeyCreation", "lastUpdateField" );
+            "useAutoinc", "techKeyCreation", "lastUpdateField", "cachePolicy", "cacheMemoryLimit" );
 
     Map<String, String> getterMap = new HashMap<String, String>() {
       {
@@ -80,6 +81,7 @@ public class CombinationLookupMetaTest implements InitializerInterface<StepMetaI
     attrValidatorMap.put( "keyField", stringArrayLoadSaveValidator );
     attrValidatorMap.put( "keyLookup", stringArrayLoadSaveValidator );
     attrValidatorMap.put( "databaseMeta", new DatabaseMetaLoadSaveValidator() );
+    attrValidatorMap.put( "cachePolicy", new EvictionPolicyCodeLoadSaveValidator() );
 
     Map<String, FieldLoadSaveValidator<?>> typeValidatorMap = new HashMap<String, FieldLoadSaveValidator<?>>();
 
@@ -0,0 +1,190 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.csvinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class MappedCsvScannerTest extends CsvInputUnitTestBase {
+
+  private static StepMockHelper<CsvInputMeta, CsvInputData> stepMockHelper;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void setUpStepMockHelper() {
+    stepMockHelper =
+      new StepMockHelper<CsvInputMeta, CsvInputData>( "CsvInputTest", CsvInputMeta.class, CsvInputData.class );
+    when( stepMockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) )
+      .thenReturn( stepMockHelper.logChannelInterface );
+    when( stepMockHelper.trans.isRunning() ).thenReturn( true );
+  }
+
+  @Test
+  public void testReadsFieldsAndLineEnds() throws Exception {
+    List<String> rows = readAll( "a;b;c\nd;e;f\r\ng;h;i\rj;k;l", 3, 1024 );
+    assertEquals( "[a|b|c, d|e|f, g|h|i, j|k|l]", rows.toString() );
+  }
+
+  @Test
+  public void testEmptyLinesAndExtraFieldsAsBufferedReader() throws Exception {
+    // Two line end characters make up one line end, the empty lines after the extra fields are skipped
+    String content = "\n\na;b;c;d\n\r\n\ne;f;g\r\n\r\nh;i;j\n\nk;l;m\n\n\n";
+    assertEquals( "[, a|b|c, e|f|g, , h|i|j, k|l|m, ]", readAll( content, 3, 1024 ).toString() );
+
+    List<String> buffered = readWithCsvInput( content, false );
+    assertEquals( 7, buffered.size() );
+    assertEquals( buffered, readWithCsvInput( content, true ) );
+  }
+
+  @Test
+  public void testEnclosures() throws Exception {
+    List<String> rows = readAll( "\"a;1\";\"b\"\"2\"\n\"c\n3\";d\n", 2, 1024 );
+    assertEquals( "[a;1|b\"2, c\n3|d]", rows.toString() );
+  }
+
+  @Test
+  public void testRowsAcrossSmallWindows() throws Exception {
+    StringBuilder content = new StringBuilder();
+    List<String> expected = new ArrayList<String>();
+    for ( int i = 0; i < 100; i++ ) {
+      content.append( "row" ).append( i ).append( ";\"value " ).append( i ).append( "\"\r\n" );
+      expected.add( "row" + i + "|value " + i );
+    }
+    for ( long windowSize = 1; windowSize <= 32; windowSize++ ) {
+      assertEquals( expected, readAll( content.toString(), 2, windowSize ) );
+    }
+  }
+
+  @Test
+  public void testSkipPartialRow() throws Exception {
+    File file = write( "aaa;1\nbbb;2\r\nccc;3\n" );
+    FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+    try {
+      // In the middle of the first row: continue at the second one
+      MappedCsvScanner scanner = new MappedCsvScanner( channel, 2, (byte) ';', null, 4 );
+      scanner.skipPartialRow();
+      assertEquals( 6, scanner.getPosition() );
+
+      // At the start of a row: nothing to skip
+      scanner = new MappedCsvScanner( channel, 6, (byte) ';', null, 4 );
+      scanner.skipPartialRow();
+      assertEquals( 6, scanner.getPosition() );
+
+      // Between CR and LF: the rest of the line end is skipped
+      scanner = new MappedCsvScanner( channel, 12, (byte) ';', null, 4 );
+      scanner.skipPartialRow();
+      assertEquals( 13, scanner.getPosition() );
+      assertTrue( scanner.readRow( 2, false ) );
+      assertEquals( "ccc", new String( scanner.getField( 0 ) ) );
+      assertFalse( scanner.readRow( 2, false ) );
+    } finally {
+      channel.close();
+    }
+  }
+
+  private List<String> readAll( String content, int maxFields, long windowSize ) throws Exception {
+    File file = write( content );
+    FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+    try {
+      MappedCsvScanner scanner = new MappedCsvScanner( channel, 0, (byte) ';', new byte[] { '"' }, windowSize );
+      List<String> rows = new ArrayList<String>();
+      while ( scanner.readRow( maxFields, false ) ) {
+        StringBuilder row = new StringBuilder();
+        for ( int i = 0; i < scanner.getFieldCount(); i++ ) {
+          String field = new String( scanner.getField( i ), "UTF-8" );
+          if ( scanner.getEscapedEnclosures( i ) > 0 ) {
+            field = field.replace( "\"\"", "\"" );
+          }
+          row.append( i > 0 ? "|" : "" ).append( field );
+        }
+        rows.add( row.toString() );
+      }
+      return rows;
+    } finally {
+      channel.close();
+    }
+  }
+
+  private List<String> readWithCsvInput( String content, boolean memoryMapped ) throws Exception {
+    CsvInputMeta meta = new CsvInputMeta();
+    meta.setFilename( createTestFile( "windows-1252", content ).getAbsolutePath() );
+    meta.setDelimiter( ";" );
+    meta.setEncoding( "windows-1252" );
+    meta.setEnclosure( "\"" );
+    meta.setBufferSize( "50000" );
+    meta.setInputFields( createInputFileFields( "Field1", "Field2", "Field3" ) );
+    meta.setHeaderPresent( false );
+    CsvInputData data = new CsvInputData();
+
+    CsvInput csvInput =
+      new CsvInput( stepMockHelper.stepMeta, stepMockHelper.stepDataInterface, 0, stepMockHelper.transMeta,
+        stepMockHelper.trans );
+    csvInput.setVariable( Const.KETTLE_CSV_INPUT_MEMORY_MAPPED, memoryMapped ? "Y" : "N" );
+    final List<String> rows = new ArrayList<String>();
+    csvInput.addRowListener( new RowAdapter() {
+      @Override
+      public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+        rows.add( Arrays.toString( Arrays.copyOf( row, rowMeta.size() ) ) );
+      }
+    } );
+
+    assertTrue( csvInput.init( meta, data ) );
+    assertEquals( memoryMapped, data.memoryMapped );
+    while ( csvInput.processRow( meta, data ) ) {
+      // read all rows
+    }
+    csvInput.dispose( meta, data );
+    return rows;
+  }
+
+  private File write( String content ) throws Exception {
+    File file = folder.newFile();
+    Files.write( file.toPath(), content.getBytes( "UTF-8" ) );
+    return file;
+  }
+}
@@ -48,6 +48,7 @@ import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
 import org.pentaho.di.trans.steps.loadsave.initializer.InitializerInterface;
 import org.pentaho.di.trans.steps.loadsave.validator.ArrayLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.DatabaseMetaLoadSaveValidator;
+import org.pentaho.di.trans.steps.loadsave.validator.EvictionPolicyCodeLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.NonZeroIntLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.PrimitiveIntArrayLoadSaveValidator;
@@ -66,7 +67,8 @@ public class DatabaseLookupMetaTest implements InitializerInterface<StepMetaInte
         Arrays.asList( "schemaName", "tablename", "databaseMeta", "orderByClause", "cached",
             "cacheSize", "loadingAllDataInCache", "failingOnMultipleResults", "eatingRowOnLookupFailure",
             "streamKeyField1", "streamKeyField2", "keyCondition", "tableKeyField", "returnValueField",
-            "returnValueNewName", "returnValueDefault", "returnValueDefaultType" );
+            "returnValueNewName", "returnValueDefault", "returnValueDefaultType", "batchSize", "batchesInFlight",
+            "cachePolicy", "cacheMemoryLimit" );
 
     Map<String, String> getterMap = new HashMap<String, String>();
     Map<String, String> setterMap = new HashMap<String, String>();
@@ -86,6 +88,8 @@ public class DatabaseLookupMetaTest implements InitializerInterface<StepMetaInte
          new PrimitiveIntArrayLoadSaveValidator( new NonZeroIntLoadSaveValidator( 7 ), 5 ) );
 
     attrValidatorMap.put( "databaseMeta", new DatabaseMetaLoadSaveValidator() );
+    attrValidatorMap.put( "batchesInFlight", new NonZeroIntLoadSaveValidator( 8 ) );
+    attrValidatorMap.put( "cachePolicy", new EvictionPolicyCodeLoadSaveValidator() );
 
     Map<String, FieldLoadSaveValidator<?>> typeValidatorMap = new HashMap<String, FieldLoadSaveValidator<?>>();
 
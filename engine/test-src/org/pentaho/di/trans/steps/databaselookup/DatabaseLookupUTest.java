@@ -25,7 +25,10 @@ package org.pentaho.di.trans.steps.databaselookup;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -40,9 +43,11 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockingDetails;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -53,20 +58,25 @@ import java.util.concurrent.TimeUnit;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.ProgressMonitorListener;
+import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.database.MySQLDatabaseMeta;
+import org.pentaho.di.core.exception.KettleDatabaseException;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.logging.LoggingObjectInterface;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
 import org.pentaho.di.core.row.value.ValueMetaBinary;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
@@ -426,6 +436,204 @@ public class DatabaseLookupUTest {
     assertNotNull( data.cache.getRowFromCache( data.lookupMeta, new Object[] { 2L } ) );
   }
 
+  @Test
+  public void batchLookupKeepsRowOrderAndFillsTheCache() throws Exception {
+    Database db = mock( Database.class );
+    RowMeta tableFields = new RowMeta();
+    tableFields.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+    tableFields.addValueMeta( new ValueMetaString( "value" ) );
+    doReturn( tableFields ).when( db ).getTableFields( anyString() );
+    doReturn( tableFields ).when( db ).getReturnRowMeta();
+    when( db.getRows( anyString(), any( RowMetaInterface.class ), any( Object[].class ), anyInt(), anyBoolean(),
+      anyInt(), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( Arrays.asList( new Object[] { 3L, "three" }, new Object[] { 1L, "one" } ) )
+      .thenReturn( Collections.singletonList( new Object[] { 4L, "four" } ) );
+
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper = createBatchMockHelper();
+    DatabaseLookupMeta meta = createBatchMeta();
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = createBatchStep( db, mockHelper, data );
+    RowSet output = step.getOutputRowSets().get( 0 );
+
+    assertTrue( step.init( meta, data ) );
+    while ( step.processRow( meta, data ) ) {
+      // the rows are passed on per batch
+    }
+
+    // keys 1, 2 and 3 in the first query, the second 1 comes from the cache, 4 in the last query
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass( String.class );
+    verify( db, times( 2 ) ).getRows( sql.capture(), any( RowMetaInterface.class ), any( Object[].class ), anyInt(),
+      anyBoolean(), anyInt(), any( ProgressMonitorListener.class ) );
+    assertTrue( sql.getAllValues().get( 0 ).contains( "IN ( ?, ?, ? )" ) );
+    assertTrue( sql.getAllValues().get( 1 ).contains( "IN ( ? )" ) );
+
+    for ( String expected : new String[] { "one", "none", "three", "one", "four" } ) {
+      Object[] row = output.getRow();
+      assertNotNull( row );
+      assertEquals( expected, row[ 1 ] );
+    }
+    assertNull( output.getRow() );
+  }
+
+  @Test
+  public void batchLookupSendsRowsOfFailedBatchToErrorHandling() throws Exception {
+    Database db = mock( Database.class );
+    RowMeta tableFields = new RowMeta();
+    tableFields.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+    tableFields.addValueMeta( new ValueMetaString( "value" ) );
+    doReturn( tableFields ).when( db ).getTableFields( anyString() );
+    doReturn( tableFields ).when( db ).getReturnRowMeta();
+    when( db.getRows( anyString(), any( RowMetaInterface.class ), any( Object[].class ), anyInt(), anyBoolean(),
+      anyInt(), any( ProgressMonitorListener.class ) ) )
+      .thenThrow( new KettleDatabaseException( "lookup failed" ) )
+      .thenReturn( Collections.singletonList( new Object[] { 4L, "four" } ) );
+
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper = createBatchMockHelper();
+    when( mockHelper.stepMeta.isDoingErrorHandling() ).thenReturn( true );
+    DatabaseLookupMeta meta = createBatchMeta();
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = createBatchStep( db, mockHelper, data );
+    doNothing().when( step ).putError( any( RowMetaInterface.class ), any( Object[].class ), anyLong(), anyString(),
+      anyString(), anyString() );
+    RowSet output = step.getOutputRowSets().get( 0 );
+
+    assertTrue( step.init( meta, data ) );
+    while ( step.processRow( meta, data ) ) {
+      // the rows are passed on per batch
+    }
+
+    // all rows of the failed first batch go to the error handling, the second 1 is looked up again with 4
+    ArgumentCaptor<Object[]> errorRows = ArgumentCaptor.forClass( Object[].class );
+    verify( step, times( 3 ) ).putError( any( RowMetaInterface.class ), errorRows.capture(), eq( 1L ), anyString(),
+      anyString(), eq( "DBLOOKUPD001" ) );
+    long[] expectedErrors = new long[] { 1L, 2L, 3L };
+    for ( int i = 0; i < expectedErrors.length; i++ ) {
+      assertEquals( expectedErrors[ i ], errorRows.getAllValues().get( i )[ 0 ] );
+    }
+
+    for ( String expected : new String[] { "none", "four" } ) {
+      Object[] row = output.getRow();
+      assertNotNull( row );
+      assertEquals( expected, row[ 1 ] );
+    }
+    assertNull( output.getRow() );
+    assertEquals( 0, step.getErrors() );
+  }
+
+  @Test
+  public void batchLookupMatchesKeysOfAnotherScale() throws Exception {
+    Database db = mock( Database.class );
+    RowMeta tableFields = new RowMeta();
+    tableFields.addValueMeta( new ValueMetaBigNumber( ID_FIELD ) );
+    tableFields.addValueMeta( new ValueMetaString( "value" ) );
+    doReturn( tableFields ).when( db ).getTableFields( anyString() );
+    doReturn( tableFields ).when( db ).getReturnRowMeta();
+    when( db.getRows( anyString(), any( RowMetaInterface.class ), any( Object[].class ), anyInt(), anyBoolean(),
+      anyInt(), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( Arrays.asList( new Object[] { new BigDecimal( "3.00" ), "three" },
+        new Object[] { new BigDecimal( "1.0" ), "one" } ) )
+      .thenReturn( Collections.singletonList( new Object[] { new BigDecimal( "4.000" ), "four" } ) );
+
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper = createBatchMockHelper();
+    DatabaseLookupMeta meta = createBatchMeta();
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = createBatchStep( db, mockHelper, data );
+    RowSet output = step.getOutputRowSets().get( 0 );
+
+    assertTrue( step.init( meta, data ) );
+    while ( step.processRow( meta, data ) ) {
+      // the rows are passed on per batch
+    }
+
+    // the integer keys are widened to big numbers, the database returns them with another scale
+    for ( String expected : new String[] { "one", "none", "three", "one", "four" } ) {
+      Object[] row = output.getRow();
+      assertNotNull( row );
+      assertEquals( expected, row[ 1 ] );
+    }
+    assertNull( output.getRow() );
+  }
+
+  @Test
+  public void batchLookupIsNotUsedForStringKeys() throws Exception {
+    Database db = mock( Database.class );
+    RowMeta tableFields = new RowMeta();
+    tableFields.addValueMeta( new ValueMetaString( ID_FIELD ) );
+    tableFields.addValueMeta( new ValueMetaString( "value" ) );
+    doReturn( tableFields ).when( db ).getTableFields( anyString() );
+    doReturn( tableFields ).when( db ).getReturnRowMeta();
+
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper = createBatchMockHelper();
+    DatabaseLookupMeta meta = createBatchMeta();
+    DatabaseLookupData data = new DatabaseLookupData();
+    DatabaseLookup step = createBatchStep( db, mockHelper, data );
+
+    assertTrue( step.init( meta, data ) );
+    while ( step.processRow( meta, data ) ) {
+      // the rows are looked up one at a time
+    }
+
+    // a CHAR column can return the key with trailing blanks, only the database can match it
+    assertFalse( data.batchLookup );
+    verify( db, times( 0 ) ).getRows( anyString(), any( RowMetaInterface.class ), any( Object[].class ), anyInt(),
+      anyBoolean(), anyInt(), any( ProgressMonitorListener.class ) );
+  }
+
+  private StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> createBatchMockHelper() {
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper =
+      new StepMockHelper<>( "Test", DatabaseLookupMeta.class, DatabaseLookupData.class );
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) )
+      .thenReturn( mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+    return mockHelper;
+  }
+
+  private DatabaseLookupMeta createBatchMeta() {
+    MySQLDatabaseMeta mysql = new MySQLDatabaseMeta();
+    mysql.setName( "MySQL" );
+    DatabaseMeta dbMeta = new DatabaseMeta();
+    dbMeta.setDatabaseInterface( mysql );
+
+    DatabaseLookupMeta meta = new DatabaseLookupMeta();
+    meta.allocate( 1, 1 );
+    meta.setDatabaseMeta( dbMeta );
+    meta.setTablename( "VirtualTable" );
+    meta.setStreamKeyField1( new String[] { ID_FIELD } );
+    meta.setStreamKeyField2( new String[] { null } );
+    meta.setTableKeyField( new String[] { ID_FIELD } );
+    meta.setKeyCondition( new String[] { "=" } );
+    meta.setReturnValueField( new String[] { "value" } );
+    meta.setReturnValueNewName( new String[] { "value" } );
+    meta.setReturnValueDefault( new String[] { "none" } );
+    meta.setReturnValueDefaultType( new int[] { ValueMetaInterface.TYPE_STRING } );
+    meta.setCached( true );
+    meta.setBatchSize( 3 );
+    meta.setBatchesInFlight( 1 );
+    return meta;
+  }
+
+  /**
+   * Creates the step with the input ids 1, 2, 3, 1 and 4 and a single output row set.
+   */
+  private DatabaseLookup createBatchStep( Database db,
+    StepMockHelper<DatabaseLookupMeta, DatabaseLookupData> mockHelper, DatabaseLookupData data ) throws Exception {
+    DatabaseLookup step =
+      spy( new DatabaseLookup( mockHelper.stepMeta, data, 0, mockHelper.transMeta, mockHelper.trans ) );
+    doReturn( db ).when( step ).getDatabase( any( DatabaseMeta.class ) );
+
+    RowMeta inputRowMeta = new RowMeta();
+    inputRowMeta.addValueMeta( new ValueMetaInteger( ID_FIELD ) );
+    RowSet input = new QueueRowSet();
+    for ( long id : new long[] { 1L, 2L, 3L, 1L, 4L } ) {
+      input.putRow( inputRowMeta, new Object[] { id } );
+    }
+    input.setDone();
+    step.getInputRowSets().add( input );
+    step.setInputRowMeta( inputRowMeta );
+    step.getOutputRowSets().add( new QueueRowSet() );
+    return step;
+  }
+
   public class MockDatabaseLookup extends DatabaseLookup {
     public MockDatabaseLookup( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta, Trans trans ) {
       super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
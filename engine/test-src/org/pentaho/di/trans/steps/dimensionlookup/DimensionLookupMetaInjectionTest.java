@@ -153,6 +153,18 @@ public class DimensionLookupMetaInjectionTest extends BaseMetadataInjectionTest<
         return meta.getCacheSize();
       }
     } );
+    check( "CACHE_POLICY", new StringGetter() {
+      @Override
+      public String get() {
+        return meta.getCachePolicy();
+      }
+    } );
+    check( "CACHE_MEMORY_LIMIT", new IntGetter() {
+      @Override
+      public int get() {
+        return meta.getCacheMemoryLimit();
+      }
+    } );
     check( "USE_ALTERNATIVE_START_DATE", new BooleanGetter() {
       @Override
       public boolean get() {
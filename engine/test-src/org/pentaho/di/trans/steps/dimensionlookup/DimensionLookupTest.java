@@ -36,6 +36,7 @@ import java.sql.Connection;
 import java.util.Date;
 import java.util.List;
 
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.*;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -89,6 +90,14 @@ public class DimensionLookupTest {
     doNothing().when( dimensionLookupSpy ).logDetailed( anyString() );
   }
 
+  @Test
+  public void testCacheStatisticsBeforeInit() {
+    // the step status asks for the statistics of steps that were not initialized
+    DimensionLookup step =
+      new DimensionLookup( stepMeta, dimensionLookupData, 1, mock( TransMeta.class ), mock( Trans.class ) );
+    assertNull( step.getCacheStatistics() );
+  }
+
   @Test
   public void testDimInsert() throws Exception {
     RowMetaInterface rowMetaInterface = mock( RowMetaInterface.class );
@@ -0,0 +1,104 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.excelinput.staxpoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class StaxPoiSharedStringsTest {
+
+  private static final String SST = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+      + "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" count=\"5\" uniqueCount=\"4\">"
+      + "<si><t>One</t></si>"
+      + "<si><r><rPr><b/></rPr><t>Rich </t></r><r><t xml:space=\"preserve\">text</t></r></si>"
+      + "<si><t>Kanji</t><rPh sb=\"0\" eb=\"1\"><t>kana</t></rPh></si>"
+      + "<si><t>Line_x000D_break \u00e9</t></si>"
+      + "</sst>";
+
+  @Test
+  public void testHeap() throws Exception {
+    checkStrings( StaxPoiSharedStrings.read( stream( SST ), false ) );
+  }
+
+  @Test
+  public void testMapped() throws Exception {
+    StaxPoiSharedStrings strings = StaxPoiSharedStrings.read( stream( SST ), true );
+    try {
+      checkStrings( strings );
+    } finally {
+      strings.close();
+    }
+  }
+
+  @Test
+  public void testNoSharedStrings() throws Exception {
+    assertEquals( 0, StaxPoiSharedStrings.read( null, false ).size() );
+  }
+
+  @Test
+  public void testManyStrings() throws Exception {
+    StringBuilder sst = new StringBuilder( "<sst>" );
+    for ( int i = 0; i < 5000; i++ ) {
+      sst.append( "<si><t>" ).append( i ).append( "</t></si>" );
+    }
+    sst.append( "</sst>" );
+    StaxPoiSharedStrings strings = StaxPoiSharedStrings.read( stream( sst.toString() ), false );
+    assertEquals( 5000, strings.size() );
+    for ( int i = 4999; i >= 0; i-- ) {
+      assertEquals( String.valueOf( i ), strings.getString( i ) );
+    }
+  }
+
+  @Test
+  public void testDecodeEscapes() {
+    assertEquals( "a\tb", StaxPoiSharedStrings.decodeEscapes( "a_x0009_b" ) );
+    assertEquals( "_x00G9_", StaxPoiSharedStrings.decodeEscapes( "_x00G9_" ) );
+    assertEquals( "_x0009", StaxPoiSharedStrings.decodeEscapes( "_x0009" ) );
+  }
+
+  private void checkStrings( StaxPoiSharedStrings strings ) {
+    assertEquals( 4, strings.size() );
+    assertEquals( "One", strings.getString( 0 ) );
+    assertEquals( "Rich text", strings.getString( 1 ) );
+    assertEquals( "Kanji", strings.getString( 2 ) );
+    assertEquals( "Line\rbreak \u00e9", strings.getString( 3 ) );
+    // cached
+    assertEquals( "One", strings.getString( 0 ) );
+    try {
+      strings.getString( 4 );
+      fail( "No out of bounds exception thrown when expected" );
+    } catch ( IndexOutOfBoundsException e ) {
+      // OK!
+    }
+  }
+
+  private ByteArrayInputStream stream( String xml ) {
+    return new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) );
+  }
+}
@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
@@ -201,6 +203,39 @@ public class StaxPoiSheetTest {
     }
   }
 
+  @Test
+  public void testReadDataParsedAhead() throws Exception {
+    StringBuilder sst = new StringBuilder( "<sst>" );
+    for ( String str : new String[] {
+      "Col1Label", "Col2Date", "Col3Number", "Col4Boolean", "Col5NumFormula", "One", "Two", "Three" } ) {
+      sst.append( "<si><t>" ).append( str ).append( "</t></si>" );
+    }
+    sst.append( "</sst>" );
+    StaxPoiSharedStrings sharedStrings = StaxPoiSharedStrings.read( IOUtils.toInputStream( sst, "UTF-8" ), false );
+    ExecutorService parser = Executors.newSingleThreadExecutor();
+    try {
+      String sheetId = "sheet1";
+      XSSFReader reader = mockXSSFReader( sheetId, SHEET_1, mock( SharedStringsTable.class ),
+          mockStylesTable( Collections.singletonMap( 1, 14 ), Collections.<Integer, String>emptyMap() ) );
+      KSheet sheet = new StaxPoiSheet( reader, sharedStrings, parser, "Sheet 1", sheetId );
+      assertEquals( "Col1Label", sheet.getCell( 0, 0 ).getValue() );
+      assertEquals( 0, sheet.getRow( 0 ).length );
+      KCell[] row = sheet.getRow( 2 );
+      assertEquals( "One", row[1].getValue() );
+      assertEquals( new Date( 1283817600000L ), row[2].getValue() );
+      row = sheet.getRow( 4 );
+      assertEquals( "Three", row[1].getValue() );
+      assertEquals( Double.valueOf( "210" ), row[5].getValue() );
+      // random access restarts the parsing
+      row = sheet.getRow( 3 );
+      assertEquals( "Two", row[1].getValue() );
+      assertEquals( Boolean.FALSE, row[4].getValue() );
+      ( (StaxPoiSheet) sheet ).close();
+    } finally {
+      parser.shutdownNow();
+    }
+  }
+
   private StaxPoiSheet getSampleSheet() throws Exception {
     String sheetId = "sheet1";
     XSSFReader reader = mockXSSFReader( sheetId, SHEET_1,
@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2016 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+package org.pentaho.di.trans.steps.loadsave.validator;
+
+import java.util.Random;
+
+import org.pentaho.di.core.cache.EvictionPolicy;
+
+public class EvictionPolicyCodeLoadSaveValidator implements FieldLoadSaveValidator<String> {
+  Random r = new Random();
+
+  @Override
+  public String getTestObject() {
+    EvictionPolicy[] policies = EvictionPolicy.values();
+    return policies[r.nextInt( policies.length )].getCode();
+  }
+
+  @Override
+  public boolean validateTestObject( String test, Object actual ) {
+    return test.equals( actual );
+  }
+}
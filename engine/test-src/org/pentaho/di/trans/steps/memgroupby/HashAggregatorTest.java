@@ -0,0 +1,228 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.MemoryBudget;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+public class HashAggregatorTest {
+
+  private static final int[] TYPES = {
+    MemoryGroupByMeta.TYPE_GROUP_SUM, MemoryGroupByMeta.TYPE_GROUP_AVERAGE, MemoryGroupByMeta.TYPE_GROUP_MIN,
+    MemoryGroupByMeta.TYPE_GROUP_MAX, MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL, MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY, };
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private MemoryGroupByData data;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws KettleException {
+    KettleClientEnvironment.init();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    data = new MemoryGroupByData();
+    data.inputRowMeta = new RowMeta();
+    data.inputRowMeta.addValueMeta( new ValueMetaString( "key" ) );
+    data.inputRowMeta.addValueMeta( new ValueMetaInteger( "int" ) );
+    data.inputRowMeta.addValueMeta( new ValueMetaNumber( "num" ) );
+    data.groupnrs = new int[] { 0 };
+    data.subjectnrs = new int[] { 1, 2, 1, 2, 1, 2 };
+
+    data.groupMeta = new RowMeta();
+    data.groupMeta.addValueMeta( data.inputRowMeta.getValueMeta( 0 ) );
+
+    data.aggMeta = new RowMeta();
+    data.aggMeta.addValueMeta( new ValueMetaInteger( "sum" ) );
+    data.aggMeta.addValueMeta( new ValueMetaNumber( "avg" ) );
+    data.aggMeta.addValueMeta( new ValueMetaInteger( "min" ) );
+    data.aggMeta.addValueMeta( new ValueMetaNumber( "max" ) );
+    data.aggMeta.addValueMeta( new ValueMetaInteger( "count" ) );
+    data.aggMeta.addValueMeta( new ValueMetaInteger( "count_any" ) );
+  }
+
+  @Test
+  public void testCanAggregate() {
+    assertTrue( HashAggregator.canAggregate( data, TYPES ) );
+
+    int[] types = TYPES.clone();
+    types[0] = MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT;
+    assertFalse( HashAggregator.canAggregate( data, types ) );
+
+    data.groupMeta.getValueMeta( 0 ).setCaseInsensitive( true );
+    assertFalse( HashAggregator.canAggregate( data, TYPES ) );
+  }
+
+  @Test
+  public void testAggregateInMemory() throws Exception {
+    MemoryBudget memoryBudget = new MemoryBudget( 0L, null );
+    HashAggregator aggregator = newAggregator( memoryBudget );
+    Map<Object, Object[]> expected = addRows( aggregator, 5000, 300 );
+    assertFalse( aggregator.isSpilled() );
+    assertTrue( memoryBudget.getReserved() > 0 );
+    assertSameGroups( expected, flush( aggregator ) );
+    assertEquals( 0L, memoryBudget.getReserved() );
+  }
+
+  @Test
+  public void testAggregateSpilled() throws Exception {
+    MemoryBudget memoryBudget = new MemoryBudget( 1L, null );
+    HashAggregator aggregator = newAggregator( memoryBudget );
+    Map<Object, Object[]> expected = addRows( aggregator, 20000, 3000 );
+    assertTrue( aggregator.isSpilled() );
+    assertSameGroups( expected, flush( aggregator ) );
+    assertEquals( 0L, memoryBudget.getReserved() );
+
+    // The partition files are gone
+    assertEquals( 0, tempFolder.getRoot().list().length );
+  }
+
+  @Test
+  public void testAggregateSpilledWhenSharedBudgetIsUsed() throws Exception {
+    // Another step holds on to all of the memory of the transformation
+    //
+    MemoryBudget memoryBudget = new MemoryBudget( 1024L * 1024, null );
+    assertTrue( memoryBudget.reserve( 1024L * 1024 ) );
+
+    HashAggregator aggregator = newAggregator( memoryBudget );
+    Map<Object, Object[]> expected = addRows( aggregator, 20000, 3000 );
+    assertTrue( aggregator.isSpilled() );
+    assertSameGroups( expected, flush( aggregator ) );
+    assertEquals( 1024L * 1024, memoryBudget.getReserved() );
+  }
+
+  @Test
+  public void testClearReleasesMemory() throws Exception {
+    MemoryBudget memoryBudget = new MemoryBudget( 0L, null );
+    HashAggregator aggregator = newAggregator( memoryBudget );
+    addRows( aggregator, 1000, 100 );
+    aggregator.clear();
+    assertEquals( 0L, memoryBudget.getReserved() );
+  }
+
+  @Test
+  public void testAllNullsGroup() throws Exception {
+    HashAggregator aggregator = newAggregator( new MemoryBudget( 0L, null ) );
+    aggregator.addRow( new Object[] { null, null, null } );
+    aggregator.addRow( new Object[] { null, null, null } );
+
+    Map<Object, Object[]> result = flush( aggregator );
+    assertArrayEquals( new Object[] { null, null, null, null, 0L, 2L }, result.get( null ) );
+  }
+
+  private HashAggregator newAggregator( MemoryBudget memoryBudget ) {
+    HashAggregator aggregator =
+      new HashAggregator( data, TYPES, false, memoryBudget, tempFolder.getRoot().getAbsolutePath(), new Variables() );
+    aggregator.minGroupsToSpill = 64;
+    return aggregator;
+  }
+
+  /**
+   * Adds random rows, with a null in every 10th row, and calculates the expected aggregates the simple way.
+   */
+  private Map<Object, Object[]> addRows( HashAggregator aggregator, int nrRows, int nrGroups ) throws Exception {
+    Map<Object, long[]> ints = new HashMap<Object, long[]>();
+    Map<Object, double[]> nums = new HashMap<Object, double[]>();
+    Random random = new Random( 42 );
+    for ( int row = 0; row < nrRows; row++ ) {
+      String key = "key" + random.nextInt( nrGroups );
+      Long intValue = row % 10 == 0 ? null : Long.valueOf( random.nextInt( 1000 ) - 500 );
+      Double numValue = row % 10 == 5 ? null : Double.valueOf( random.nextInt( 1000 ) / 8.0 );
+      aggregator.addRow( new Object[] { key, intValue, numValue } );
+
+      long[] i = ints.get( key );
+      double[] n = nums.get( key );
+      if ( i == null ) {
+        // sum, min, count, count any
+        i = new long[] { 0L, Long.MAX_VALUE, 0L, 0L };
+        ints.put( key, i );
+        // sum, count, max
+        n = new double[] { 0.0, 0.0, Double.NEGATIVE_INFINITY };
+        nums.put( key, n );
+      }
+      if ( intValue != null ) {
+        i[0] += intValue;
+        i[1] = Math.min( i[1], intValue );
+        i[2]++;
+      }
+      i[3]++;
+      if ( numValue != null ) {
+        n[0] += numValue;
+        n[1]++;
+        n[2] = Math.max( n[2], numValue );
+      }
+    }
+
+    Map<Object, Object[]> expected = new HashMap<Object, Object[]>();
+    for ( Object key : ints.keySet() ) {
+      long[] i = ints.get( key );
+      double[] n = nums.get( key );
+      expected.put( key, new Object[] {
+        i[2] == 0 ? null : i[0], n[1] == 0 ? null : n[0] / n[1], i[2] == 0 ? null : i[1],
+        n[1] == 0 ? null : n[2], i[2], i[3] } );
+    }
+    return expected;
+  }
+
+  private Map<Object, Object[]> flush( HashAggregator aggregator ) throws KettleException {
+    final Map<Object, Object[]> result = new HashMap<Object, Object[]>();
+    aggregator.flush( new HashAggregator.GroupHandler() {
+      @Override
+      public void handleGroup( Object[] groupData, Object[] aggregates ) {
+        assertEquals( 1, groupData.length );
+        assertFalse( "Group " + groupData[0] + " is handled twice", result.containsKey( groupData[0] ) );
+        result.put( groupData[0], aggregates );
+      }
+    } );
+    return result;
+  }
+
+  private static void assertSameGroups( Map<Object, Object[]> expected, Map<Object, Object[]> actual ) {
+    assertEquals( expected.keySet(), actual.keySet() );
+    for ( Object key : expected.keySet() ) {
+      assertArrayEquals( "Group " + key, expected.get( key ), actual.get( key ) );
+    }
+  }
+}
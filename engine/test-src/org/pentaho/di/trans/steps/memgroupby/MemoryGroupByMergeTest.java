@@ -0,0 +1,289 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.memgroupby;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class MemoryGroupByMergeTest {
+
+  private static final int[] TYPES = {
+    MemoryGroupByMeta.TYPE_GROUP_STANDARD_DEVIATION, MemoryGroupByMeta.TYPE_GROUP_COUNT_DISTINCT,
+    MemoryGroupByMeta.TYPE_GROUP_AVERAGE, MemoryGroupByMeta.TYPE_GROUP_SUM, MemoryGroupByMeta.TYPE_GROUP_PERCENTILE,
+    MemoryGroupByMeta.TYPE_GROUP_MIN, MemoryGroupByMeta.TYPE_GROUP_MAX, MemoryGroupByMeta.TYPE_GROUP_COUNT_ALL,
+    MemoryGroupByMeta.TYPE_GROUP_COUNT_ANY, MemoryGroupByMeta.TYPE_GROUP_MEDIAN, };
+
+  static StepMockHelper<MemoryGroupByMeta, MemoryGroupByData> mockHelper;
+
+  MemoryGroupByMeta meta;
+  MemoryGroupBy step;
+  MemoryGroupByData data;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    mockHelper =
+      new StepMockHelper<MemoryGroupByMeta, MemoryGroupByData>( "Memory Group By", MemoryGroupByMeta.class,
+        MemoryGroupByData.class );
+    when( mockHelper.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      mockHelper.logChannelInterface );
+    when( mockHelper.trans.isRunning() ).thenReturn( true );
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    meta = new MemoryGroupByMeta();
+    meta.setAggregateType( TYPES.clone() );
+    meta.setValueField( new String[TYPES.length] );
+    meta.setSubjectField( new String[TYPES.length] );
+    when( mockHelper.stepMeta.getStepMetaInterface() ).thenReturn( meta );
+
+    data = new MemoryGroupByData();
+    data.subjectnrs = new int[TYPES.length];
+    data.aggMeta = newAggMeta();
+    step = new MemoryGroupBy( mockHelper.stepMeta, data, 0, mockHelper.transMeta, mockHelper.trans );
+  }
+
+  private static RowMeta newAggMeta() {
+    RowMeta aggMeta = new RowMeta();
+    aggMeta.addValueMeta( new ValueMetaNumber( "stddev" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "distinct" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "average" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "sum" ) );
+    aggMeta.addValueMeta( new ValueMetaNumber( "percentile" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "min" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "max" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "count_all" ) );
+    aggMeta.addValueMeta( new ValueMetaInteger( "count_any" ) );
+    aggMeta.addValueMeta( new ValueMetaNumber( "median" ) );
+    return aggMeta;
+  }
+
+  /**
+   * The aggregates of a copy that saw the specified values of one group. Nulls only count for count any.
+   */
+  @SuppressWarnings( "unchecked" )
+  private static Aggregate newAggregate( Long... values ) {
+    long n = 0;
+    long sum = 0;
+    Long min = null;
+    Long max = null;
+    Set<Object> distinct = new TreeSet<Object>();
+    List<Double> list = new ArrayList<Double>();
+    for ( Long value : values ) {
+      if ( value != null ) {
+        n++;
+        sum += value;
+        min = min == null || value < min ? value : min;
+        max = max == null || value > max ? value : max;
+        distinct.add( value );
+        list.add( value.doubleValue() );
+      }
+    }
+    double mean = n == 0 ? 0.0 : (double) sum / n;
+    double m2 = 0.0;
+    for ( Long value : values ) {
+      if ( value != null ) {
+        m2 += ( value - mean ) * ( value - mean );
+      }
+    }
+
+    Aggregate aggregate = new Aggregate();
+    aggregate.agg = new Object[] {
+      n == 0 ? null : m2, null, n == 0 ? null : sum, n == 0 ? null : sum, list, min, max, null, null,
+      new ArrayList<Double>( list ) };
+    aggregate.counts = new long[] { n, distinct.size(), n, 0, 0, 0, 0, n, values.length, 0 };
+    aggregate.mean = new double[TYPES.length];
+    aggregate.mean[0] = mean;
+    aggregate.distinctObjs = new Set[TYPES.length];
+    aggregate.distinctObjs[1] = distinct;
+    return aggregate;
+  }
+
+  @Test
+  public void testMergeAggregate() throws Exception {
+    Aggregate aggregate = newAggregate( 1L, 2L, 3L, null );
+    step.mergeAggregate( aggregate, newAggregate( 4L, 5L, 2L ), newAggMeta() );
+
+    // The same as one copy that saw all the rows
+    Aggregate expected = newAggregate( 1L, 2L, 3L, null, 4L, 5L, 2L );
+    assertEquals( (Double) expected.agg[0], (Double) aggregate.agg[0], 0.000001 );
+    assertEquals( expected.mean[0], aggregate.mean[0], 0.000001 );
+    for ( int i = 0; i < TYPES.length; i++ ) {
+      assertEquals( "Count of aggregate " + i, expected.counts[i], aggregate.counts[i] );
+      if ( i > 0 && i != 4 && i != 9 ) {
+        assertEquals( "Aggregate " + i, expected.agg[i], aggregate.agg[i] );
+      }
+    }
+    assertEquals( 5L, aggregate.counts[1] );
+    assertEquals( 17L, aggregate.agg[3] );
+    assertEquals( 1L, aggregate.agg[5] );
+    assertEquals( 5L, aggregate.agg[6] );
+    assertEquals( 6L, aggregate.counts[7] );
+    assertEquals( 7L, aggregate.counts[8] );
+
+    // The value lists are sorted when the percentile and the median are calculated
+    assertEquals( Arrays.asList( 1.0, 2.0, 3.0, 4.0, 5.0, 2.0 ), aggregate.agg[4] );
+    assertEquals( Arrays.asList( 1.0, 2.0, 3.0, 4.0, 5.0, 2.0 ), aggregate.agg[9] );
+  }
+
+  @Test
+  public void testMergeIntoEmptyAggregate() throws Exception {
+    Aggregate aggregate = newAggregate( (Long) null );
+    step.mergeAggregate( aggregate, newAggregate( 4L, 5L ), newAggMeta() );
+
+    assertEquals( 0.5, (Double) aggregate.agg[0], 0.000001 );
+    assertEquals( 4.5, aggregate.mean[0], 0.000001 );
+    assertEquals( 2L, aggregate.counts[0] );
+    assertEquals( 9L, aggregate.agg[3] );
+    assertEquals( 4L, aggregate.agg[5] );
+    assertEquals( 5L, aggregate.agg[6] );
+    assertEquals( 2L, aggregate.counts[7] );
+    assertEquals( 3L, aggregate.counts[8] );
+  }
+
+  @Test
+  public void testMergeEmptyPartial() throws Exception {
+    Aggregate aggregate = newAggregate( 4L, 5L );
+    step.mergeAggregate( aggregate, newAggregate( (Long) null ), newAggMeta() );
+
+    assertEquals( 0.5, (Double) aggregate.agg[0], 0.000001 );
+    assertEquals( 4.5, aggregate.mean[0], 0.000001 );
+    assertEquals( 9L, aggregate.agg[3] );
+    assertEquals( 4L, aggregate.agg[5] );
+    assertEquals( 5L, aggregate.agg[6] );
+    assertEquals( 3L, aggregate.counts[8] );
+  }
+
+  @Test
+  public void testMergeConcatenations() throws Exception {
+    meta.setAggregateType( new int[] {
+      MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA, MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING,
+      MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING, } );
+    meta.setValueField( new String[] { null, "|", "|" } );
+    data.subjectnrs = new int[3];
+    RowMeta aggMeta = new RowMeta();
+    aggMeta.addValueMeta( new ValueMetaString( "comma" ) );
+    aggMeta.addValueMeta( new ValueMetaString( "separator" ) );
+    aggMeta.addValueMeta( new ValueMetaString( "empty" ) );
+    data.aggMeta = aggMeta;
+
+    Aggregate aggregate = new Aggregate();
+    aggregate.agg = new Object[] { new StringBuilder( "a, b" ), new StringBuilder( "a|b" ), new StringBuilder() };
+    Aggregate partial = new Aggregate();
+    partial.agg = new Object[] { new StringBuilder( "c" ), new StringBuilder( "c|d" ), new StringBuilder( "e" ) };
+    step.mergeAggregate( aggregate, partial, aggMeta );
+
+    // The values of the other copy come after the values of this one
+    assertEquals( "a, b, c", aggregate.agg[0].toString() );
+    assertEquals( "a|b|c|d", aggregate.agg[1].toString() );
+    assertEquals( "e", aggregate.agg[2].toString() );
+  }
+
+  @Test
+  public void testOrderDependentAggregatesAreNotMerged() {
+    when( mockHelper.stepMeta.getCopies() ).thenReturn( 2 );
+    when( mockHelper.trans.findBaseSteps( anyString() ) ).thenReturn(
+      Arrays.asList( mock( StepInterface.class ), mock( StepInterface.class ) ) );
+    StepMeta previousStep = mock( StepMeta.class );
+    when( previousStep.isDistributes() ).thenReturn( true );
+    when( mockHelper.transMeta.findPreviousSteps( mockHelper.stepMeta ) ).thenReturn( Arrays.asList( previousStep ) );
+
+    assertTrue( step.isMergingCopies() );
+
+    for ( int type : new int[] {
+      MemoryGroupByMeta.TYPE_GROUP_FIRST, MemoryGroupByMeta.TYPE_GROUP_LAST,
+      MemoryGroupByMeta.TYPE_GROUP_FIRST_INCL_NULL, MemoryGroupByMeta.TYPE_GROUP_LAST_INCL_NULL, } ) {
+      meta.getAggregateType()[3] = type;
+      assertFalse( "Aggregate type " + type, step.isMergingCopies() );
+    }
+
+    // The order of concatenated values is not defined across copies anyway
+    for ( int type : new int[] {
+      MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA, MemoryGroupByMeta.TYPE_GROUP_CONCAT_STRING, } ) {
+      meta.getAggregateType()[3] = type;
+      assertTrue( "Aggregate type " + type, step.isMergingCopies() );
+    }
+
+    // Every copy gets all rows
+    meta.getAggregateType()[3] = MemoryGroupByMeta.TYPE_GROUP_SUM;
+    when( previousStep.isDistributes() ).thenReturn( false );
+    assertFalse( step.isMergingCopies() );
+  }
+
+  @Test
+  public void testLastCopyGetsAllPartials() {
+    PartialAggregation partialAggregation = new PartialAggregation();
+    MemoryGroupByData partial0 = new MemoryGroupByData();
+    MemoryGroupByData partial2 = new MemoryGroupByData();
+
+    assertNull( partialAggregation.finish( 2, 3, partial2 ) );
+    assertNull( partialAggregation.finish( 1, 3, null ) );
+    List<MemoryGroupByData> partials = partialAggregation.finish( 0, 3, partial0 );
+
+    assertEquals( 2, partials.size() );
+    assertSame( partial0, partials.get( 0 ) );
+    assertSame( partial2, partials.get( 1 ) );
+  }
+
+  @Test
+  public void testDetachLeavesEmptyMap() {
+    data.map = new HashMap<MemoryGroupByData.HashEntry, Aggregate>();
+    data.groupMeta = new RowMeta();
+    data.map.put( data.getHashEntry( new Object[0] ), new Aggregate() );
+    ValueMetaInterface sum = data.aggMeta.getValueMeta( 2 );
+
+    MemoryGroupByData partial = data.detach();
+
+    assertEquals( 1, partial.map.size() );
+    assertSame( sum, partial.aggMeta.getValueMeta( 2 ) );
+    assertEquals( 0, data.map.size() );
+    assertNull( data.hashAggregator );
+  }
+}
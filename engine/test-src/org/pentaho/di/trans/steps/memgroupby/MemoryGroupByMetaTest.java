@@ -33,6 +33,7 @@ import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.exception.KettleException;
@@ -50,6 +51,8 @@ import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.row.value.ValueMetaTimestamp;
 import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
 import org.pentaho.di.trans.steps.loadsave.initializer.InitializerInterface;
 import org.pentaho.di.trans.steps.loadsave.validator.ArrayLoadSaveValidator;
@@ -98,6 +101,36 @@ public class MemoryGroupByMetaTest implements InitializerInterface<MemoryGroupBy
     loadSaveTester.testSerialization();
   }
 
+  @Test
+  public void testCheckWarnsAboutFirstAndLastInCopies() {
+    MemoryGroupByMeta meta = new MemoryGroupByMeta();
+    meta.allocate( 1, 2 );
+    meta.setAggregateType( new int[] { MemoryGroupByMeta.TYPE_GROUP_SUM, MemoryGroupByMeta.TYPE_GROUP_CONCAT_COMMA } );
+    StepMeta stepMeta = new StepMeta( "Memory group by", meta );
+    stepMeta.setCopies( 2 );
+
+    assertEquals( 0, countWarnings( meta, stepMeta ) );
+
+    meta.getAggregateType()[1] = MemoryGroupByMeta.TYPE_GROUP_LAST;
+    assertEquals( 1, countWarnings( meta, stepMeta ) );
+
+    stepMeta.setCopies( 1 );
+    assertEquals( 0, countWarnings( meta, stepMeta ) );
+  }
+
+  private static int countWarnings( MemoryGroupByMeta meta, StepMeta stepMeta ) {
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    meta.check( remarks, new TransMeta(), stepMeta, new RowMeta(), new String[] { "input" }, new String[0], null,
+      new Variables(), null, null );
+    int warnings = 0;
+    for ( CheckResultInterface remark : remarks ) {
+      if ( remark.getType() == CheckResultInterface.TYPE_RESULT_WARNING ) {
+        warnings++;
+      }
+    }
+    return warnings;
+  }
+
   private RowMetaInterface getInputRowMeta() {
     RowMetaInterface rm = new RowMeta();
     rm.addValueMeta( new ValueMetaString( "myGroupField2" ) );
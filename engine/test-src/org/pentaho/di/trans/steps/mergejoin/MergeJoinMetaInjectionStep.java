@@ -49,5 +49,15 @@ public class MergeJoinMetaInjectionStep extends BaseMetadataInjectionTest<MergeJ
         return meta.getKeyFields2()[0];
       }
     } );
+    check( "HASH_JOIN", new BooleanGetter() {
+      public boolean get() {
+        return meta.isHashJoin();
+      }
+    } );
+    check( "HASH_JOIN_MEMORY_LIMIT", new StringGetter() {
+      public String get() {
+        return meta.getMemoryLimit();
+      }
+    } );
   }
 }
@@ -23,6 +23,7 @@
 package org.pentaho.di.trans.steps.mergejoin;
 
 import org.junit.Test;
+import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -30,13 +31,16 @@ import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.Variables;
+import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.errorhandling.StreamInterface;
 import org.pentaho.di.trans.steps.loadsave.LoadSaveTester;
 import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidator;
 import org.pentaho.di.trans.steps.loadsave.validator.FieldLoadSaveValidatorFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +49,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 public class MergeJoinMetaTest {
@@ -53,7 +61,7 @@ public class MergeJoinMetaTest {
 
   public MergeJoinMetaTest() {
     //SwitchCaseMeta bean-like attributes
-    List<String> attributes = Arrays.asList( "joinType", "keyFields1", "keyFields2" );
+    List<String> attributes = Arrays.asList( "joinType", "keyFields1", "keyFields2", "hashJoin", "memoryLimit" );
 
     Map<String, FieldLoadSaveValidator<?>> attrValidatorMap = new HashMap<String, FieldLoadSaveValidator<?>>();
 
@@ -63,11 +71,15 @@ public class MergeJoinMetaTest {
     getterMap.put( "joinType", "getJoinType" );
     getterMap.put( "keyFields1", "getKeyFields1" );
     getterMap.put( "keyFields2", "getKeyFields2" );
+    getterMap.put( "hashJoin", "isHashJoin" );
+    getterMap.put( "memoryLimit", "getMemoryLimit" );
 
     Map<String, String> setterMap = new HashMap<String, String>();
     setterMap.put( "joinType", "setJoinType" );
     setterMap.put( "keyFields1", "setKeyFields1" );
     setterMap.put( "keyFields2", "setKeyFields2" );
+    setterMap.put( "hashJoin", "setHashJoin" );
+    setterMap.put( "memoryLimit", "setMemoryLimit" );
 
     this.loadSaveTester = new LoadSaveTester( MergeJoinMeta.class,
       attributes,
@@ -188,4 +200,45 @@ public class MergeJoinMetaTest {
       assertFalse( infoStreams.get( i ) == cloneInfoStreams.get( i ) );
     }
   }
+
+  @Test
+  public void testCheckWarnsAboutStepBeforeBothStreamsOfHashJoin() {
+    StepMeta source = new StepMeta( "source", null );
+    StepMeta one = new StepMeta( "one", null );
+    StepMeta two = new StepMeta( "two", null );
+    TransMeta transMeta = mock( TransMeta.class );
+    when( transMeta.findPreviousSteps( any( StepMeta.class ), eq( true ) ) ).thenReturn( new ArrayList<StepMeta>() );
+    when( transMeta.findPreviousSteps( one, true ) ).thenReturn( Collections.singletonList( source ) );
+
+    MergeJoinMeta meta = new MergeJoinMeta();
+    meta.setDefault();
+    meta.setHashJoin( true );
+    meta.getStepIOMeta().getInfoStreams().get( 0 ).setStepMeta( one );
+    meta.getStepIOMeta().getInfoStreams().get( 1 ).setStepMeta( two );
+    StepMeta stepMeta = new StepMeta( "Merge", meta );
+
+    assertEquals( 0, countSharedStepWarnings( meta, transMeta, stepMeta ) );
+
+    // source -> one and source -> two: the second stream is read while the first one fills up
+    when( transMeta.findPreviousSteps( two, true ) ).thenReturn( Collections.singletonList( source ) );
+    assertEquals( source, meta.findSharedUpstreamStep( transMeta ) );
+    assertEquals( 1, countSharedStepWarnings( meta, transMeta, stepMeta ) );
+
+    // merging sorted streams reads both streams at the same time
+    meta.setHashJoin( false );
+    assertEquals( 0, countSharedStepWarnings( meta, transMeta, stepMeta ) );
+  }
+
+  private static int countSharedStepWarnings( MergeJoinMeta meta, TransMeta transMeta, StepMeta stepMeta ) {
+    List<CheckResultInterface> remarks = new ArrayList<CheckResultInterface>();
+    meta.check( remarks, transMeta, stepMeta, null, null, null, null, new Variables(), null, null );
+    int warnings = 0;
+    for ( CheckResultInterface remark : remarks ) {
+      if ( remark.getType() == CheckResultInterface.TYPE_RESULT_WARNING
+        && remark.getText().contains( "writes to both streams" ) ) {
+        warnings++;
+      }
+    }
+    return warnings;
+  }
 }
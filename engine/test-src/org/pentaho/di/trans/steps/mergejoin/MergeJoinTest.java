@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.mergejoin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class MergeJoinTest {
+
+  private static final int NR_ROWS = 20;
+
+  private StepMockHelper<MergeJoinMeta, MergeJoinData> smh;
+  private StepMeta source;
+  private StepMeta one;
+  private StepMeta two;
+
+  @Before
+  public void setUp() {
+    smh = new StepMockHelper<MergeJoinMeta, MergeJoinData>( "Merge", MergeJoinMeta.class, MergeJoinData.class );
+    when( smh.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      smh.logChannelInterface );
+    when( smh.trans.isRunning() ).thenReturn( true );
+
+    source = new StepMeta( "source", null );
+    one = new StepMeta( "one", null );
+    two = new StepMeta( "two", null );
+    when( smh.transMeta.findStep( "one" ) ).thenReturn( one );
+    when( smh.transMeta.findStep( "two" ) ).thenReturn( two );
+    when( smh.transMeta.findPreviousSteps( any( StepMeta.class ), eq( true ) ) )
+      .thenReturn( new ArrayList<StepMeta>() );
+    when( smh.transMeta.findPreviousSteps( one, true ) ).thenReturn( Collections.singletonList( source ) );
+    when( smh.transMeta.findPreviousSteps( two, true ) ).thenReturn( Collections.singletonList( source ) );
+  }
+
+  @Test( timeout = 10000 )
+  public void testHashJoinReadsFirstStreamWhileStepBeforeBothStreamsFillsIt() throws Exception {
+    final RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+
+    // The first stream can only hold a few rows, the source step writes all its rows to it before the second stream
+    //
+    final RowSet oneRowSet = new BlockingRowSet( 2 );
+    oneRowSet.setThreadNameFromToCopy( "one", 0, "Merge", 0 );
+    final RowSet twoRowSet = new BlockingRowSet( 2 );
+    twoRowSet.setThreadNameFromToCopy( "two", 0, "Merge", 0 );
+
+    MergeJoinMeta meta = new MergeJoinMeta();
+    meta.setDefault();
+    meta.setHashJoin( true );
+    meta.setKeyFields1( new String[] { "id" } );
+    meta.setKeyFields2( new String[] { "id" } );
+    meta.getStepIOMeta().getInfoStreams().get( 0 ).setStepMeta( one );
+    meta.getStepIOMeta().getInfoStreams().get( 1 ).setStepMeta( two );
+
+    MergeJoinData data = new MergeJoinData();
+    MergeJoin step = new MergeJoin( smh.stepMeta, data, 0, smh.transMeta, smh.trans );
+    step.getInputRowSets().add( oneRowSet );
+    step.getInputRowSets().add( twoRowSet );
+    final List<Object[]> output = new ArrayList<Object[]>();
+    step.addRowListener( new RowAdapter() {
+      @Override
+      public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
+        output.add( row );
+      }
+    } );
+    assertTrue( step.init( meta, data ) );
+
+    Thread writer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        putRows( oneRowSet, rowMeta );
+        putRows( twoRowSet, rowMeta );
+      }
+    } );
+    writer.start();
+
+    while ( step.processRow( meta, data ) ) {
+      // the first stream is joined with the second one row at a time
+    }
+    writer.join();
+
+    assertEquals( NR_ROWS, output.size() );
+    for ( int i = 0; i < NR_ROWS; i++ ) {
+      assertEquals( Long.valueOf( i ), output.get( i )[0] );
+      assertEquals( Long.valueOf( i ), output.get( i )[1] );
+    }
+  }
+
+  private static void putRows( RowSet rowSet, RowMetaInterface rowMeta ) {
+    for ( long i = 0; i < NR_ROWS; i++ ) {
+      while ( !rowSet.putRow( rowMeta, new Object[] { i } ) ) {
+        // the row set is full, try again
+      }
+    }
+    rowSet.setDone();
+  }
+}
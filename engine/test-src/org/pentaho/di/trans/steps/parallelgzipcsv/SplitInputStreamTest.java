@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.parallelgzipcsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Test;
+
+public class SplitInputStreamTest {
+
+  @Test
+  public void testDetectFormat() throws Exception {
+    byte[] content = createContent( 20000 );
+    assertEquals( SplitInputStream.FORMAT_GZIP, detect( gzipMembers( content, 1000 ), true ) );
+    assertEquals( SplitInputStream.FORMAT_NONE, detect( gzipMembers( content, 1000 ), false ) );
+    assertEquals( SplitInputStream.FORMAT_NONE, detect( gzipMembers( content, content.length ), true ) );
+    assertEquals( SplitInputStream.FORMAT_BZIP2, detect( bzip2( content ), false ) );
+  }
+
+  @Test
+  public void testGzipMembersAreReadOnceByAllCopies() throws Exception {
+    byte[] content = createContent( 100000 );
+    byte[] compressed = gzipMembers( content, 3000 );
+    for ( int nrCopies = 1; nrCopies <= 8; nrCopies++ ) {
+      assertArrayEquals( "copies: " + nrCopies, content, readCopies( compressed, nrCopies, false ) );
+    }
+  }
+
+  @Test
+  public void testBzip2BlocksAreReadOnceByAllCopies() throws Exception {
+    // Block size 100k, the content spans several blocks
+    byte[] content = createContent( 450000 );
+    byte[] compressed = bzip2( content );
+    for ( int nrCopies = 1; nrCopies <= 6; nrCopies++ ) {
+      assertArrayEquals( "copies: " + nrCopies, content, readCopies( compressed, nrCopies, true ) );
+    }
+  }
+
+  private static int detect( byte[] compressed, boolean split ) throws IOException {
+    return SplitInputStream.detectFormat( new ByteArrayInputStream( compressed ), split );
+  }
+
+  private static byte[] readCopies( byte[] compressed, int nrCopies, boolean bzip2 ) throws IOException {
+    ByteArrayOutputStream all = new ByteArrayOutputStream();
+    long rangeSize = compressed.length / nrCopies + 1;
+    for ( int copy = 0; copy < nrCopies; copy++ ) {
+      long rangeStart = copy * rangeSize;
+      long rangeEnd = copy == nrCopies - 1 ? Long.MAX_VALUE : rangeStart + rangeSize;
+      InputStream in = new ByteArrayInputStream( compressed );
+      InputStream split = bzip2
+        ? new Bzip2SplitInputStream( in, rangeStart, rangeEnd ) : new GzipSplitInputStream( in, rangeStart, rangeEnd );
+      byte[] buffer = new byte[1000];
+      int n;
+      while ( ( n = split.read( buffer ) ) >= 0 ) {
+        all.write( buffer, 0, n );
+      }
+      split.close();
+    }
+    return all.toByteArray();
+  }
+
+  /**
+   * Rows of random length with all kinds of line ends and empty lines.
+   */
+  private static byte[] createContent( int size ) {
+    Random random = new Random( size );
+    String[] lineEnds = { "\n", "\r\n", "\r", "\n\n" };
+    StringBuilder content = new StringBuilder();
+    while ( content.length() < size ) {
+      int length = random.nextInt( 60 );
+      for ( int i = 0; i < length; i++ ) {
+        content.append( i % 10 == 9 ? ';' : (char) ( 'a' + random.nextInt( 26 ) ) );
+      }
+      content.append( lineEnds[random.nextInt( lineEnds.length )] );
+    }
+    return content.toString().getBytes();
+  }
+
+  private static byte[] gzipMembers( byte[] content, int memberSize ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for ( int offset = 0; offset < content.length; offset += memberSize ) {
+      GZIPOutputStream gzip = new GZIPOutputStream( out );
+      gzip.write( content, offset, Math.min( memberSize, content.length - offset ) );
+      gzip.finish();
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] bzip2( byte[] content ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream( out, 1 );
+    bzip2.write( content );
+    bzip2.finish();
+    return out.toByteArray();
+  }
+}
@@ -33,7 +33,7 @@ public class SocketReaderMetaTest {
 
   @Test
   public void testLoadSave() throws KettleException {
-    List<String> attributes = Arrays.asList( "Hostname", "Port", "BufferSize", "Compressed" );
+    List<String> attributes = Arrays.asList( "Hostname", "Port", "BufferSize", "Compressed", "CompressionType" );
 
     LoadSaveTester loadSaveTester = new LoadSaveTester( SocketReaderMeta.class, attributes );
 
@@ -33,7 +33,7 @@ public class SocketWriterMetaTest {
 
   @Test
   public void testLoadSave() throws KettleException {
-    List<String> attributes = Arrays.asList( "Port", "BufferSize", "FlushInterval", "Compressed" );
+    List<String> attributes = Arrays.asList( "Port", "BufferSize", "FlushInterval", "Compressed", "CompressionType" );
 
     LoadSaveTester loadSaveTester = new LoadSaveTester( SocketWriterMeta.class, attributes );
 
@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RowTempFileHeapTest {
+
+  private static final Comparator<RowTempFile> COMPARATOR = new Comparator<RowTempFile>() {
+    @Override
+    public int compare( RowTempFile o1, RowTempFile o2 ) {
+      return ( (Long) o1.row[0] ).compareTo( (Long) o2.row[0] );
+    }
+  };
+
+  @Test
+  public void testEmptyHeap() {
+    RowTempFileHeap heap = new RowTempFileHeap( COMPARATOR, 0 );
+    assertTrue( heap.isEmpty() );
+    assertNull( heap.peek() );
+    assertNull( heap.removeTop() );
+  }
+
+  @Test
+  public void testMergeSortedRuns() {
+    Random random = new Random( 42 );
+    int nrRuns = 37;
+    List<long[]> runs = new ArrayList<long[]>();
+    int total = 0;
+    for ( int r = 0; r < nrRuns; r++ ) {
+      long[] run = new long[random.nextInt( 100 ) + 1];
+      long value = 0;
+      for ( int i = 0; i < run.length; i++ ) {
+        value += random.nextInt( 5 );
+        run[i] = value;
+      }
+      runs.add( run );
+      total += run.length;
+    }
+
+    int[] positions = new int[nrRuns];
+    RowTempFileHeap heap = new RowTempFileHeap( COMPARATOR, 4 ); // has to grow
+    for ( int r = 0; r < nrRuns; r++ ) {
+      heap.add( new RowTempFile( new Object[] { runs.get( r )[0] }, r ) );
+    }
+    assertEquals( nrRuns, heap.size() );
+
+    long previous = Long.MIN_VALUE;
+    int previousFile = -1;
+    int count = 0;
+    while ( !heap.isEmpty() ) {
+      RowTempFile top = heap.peek();
+      long value = (Long) top.row[0];
+      assertTrue( value >= previous );
+      if ( value == previous ) {
+        // Equal rows come out in file order
+        assertTrue( top.fileNumber >= previousFile );
+      }
+      previous = value;
+      previousFile = top.fileNumber;
+      count++;
+
+      long[] run = runs.get( top.fileNumber );
+      positions[top.fileNumber]++;
+      if ( positions[top.fileNumber] < run.length ) {
+        heap.replaceTop( new Object[] { run[positions[top.fileNumber]] } );
+      } else {
+        heap.removeTop();
+      }
+    }
+    assertEquals( total, count );
+  }
+
+  @Test
+  public void testClear() {
+    RowTempFileHeap heap = new RowTempFileHeap( COMPARATOR, 2 );
+    heap.add( new RowTempFile( new Object[] { 2L }, 0 ) );
+    heap.add( new RowTempFile( new Object[] { 1L }, 1 ) );
+    assertEquals( 1, heap.peek().fileNumber );
+
+    heap.clear();
+    assertTrue( heap.isEmpty() );
+    assertNull( heap.peek() );
+  }
+}
@@ -58,6 +58,12 @@ public class SortRowsMetaInjectionTest extends BaseMetadataInjectionTest<SortRow
         return meta.getFreeMemoryLimit();
       }
     } );
+    check( "SORT_MEMORY_LIMIT", new StringGetter() {
+      @Override
+      public String get() {
+        return meta.getMemoryLimit();
+      }
+    } );
     check( "ONLY_PASS_UNIQUE_ROWS", new BooleanGetter() {
       @Override
       public boolean get() {
@@ -70,6 +76,24 @@ public class SortRowsMetaInjectionTest extends BaseMetadataInjectionTest<SortRow
         return meta.getCompressFiles();
       }
     } );
+    check( "COMPRESSION_TYPE", new StringGetter() {
+      @Override
+      public String get() {
+        return meta.getCompressionType();
+      }
+    } );
+    check( "PARALLEL_SORT", new BooleanGetter() {
+      @Override
+      public boolean get() {
+        return meta.isParallelSort();
+      }
+    } );
+    check( "MAX_MERGE_FILES", new StringGetter() {
+      @Override
+      public String get() {
+        return meta.getMaxMergeFiles();
+      }
+    } );
     check( "NAME", new StringGetter() {
       @Override
       public String get() {
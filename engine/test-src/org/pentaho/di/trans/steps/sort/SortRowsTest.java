@@ -0,0 +1,69 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.trans.steps.sort;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+public class SortRowsTest {
+
+  private StepMockHelper<SortRowsMeta, SortRowsData> smh;
+
+  @BeforeClass
+  public static void initEnvironment() throws KettleException {
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() {
+    smh = new StepMockHelper<SortRowsMeta, SortRowsData>( "Sort rows", SortRowsMeta.class, SortRowsData.class );
+    when( smh.logChannelInterfaceFactory.create( any(), any( LoggingObjectInterface.class ) ) ).thenReturn(
+      smh.logChannelInterface );
+  }
+
+  @Test
+  public void testInitFailsOnUnknownCompressionType() {
+    assertFalse( initWithCompressionType( "Unknown" ) );
+    assertTrue( initWithCompressionType( "Zip" ) );
+  }
+
+  private boolean initWithCompressionType( String compressionType ) {
+    SortRowsMeta meta = new SortRowsMeta();
+    meta.setDefault();
+    meta.setCompressFiles( true );
+    meta.setCompressionType( compressionType );
+    SortRowsData data = new SortRowsData();
+    SortRows step = new SortRows( smh.stepMeta, data, 0, smh.transMeta, smh.trans );
+    return step.init( meta, data );
+  }
+}
@@ -131,7 +131,8 @@ public class StreamLookupTest {
     return dataRowSet;
   }
 
-  private StreamLookupMeta mockProcessRowMeta( boolean memoryPreservationActive ) throws KettleStepException {
+  private StreamLookupMeta mockProcessRowMeta( boolean memoryPreservationActive, boolean slabHashIndex,
+    boolean overflowToDisk ) throws KettleStepException {
     StreamLookupMeta meta = smh.processRowsStepMetaInterface;
 
     StepMeta lookupStepMeta = when( mock( StepMeta.class ).getName() ).thenReturn( "Lookup" ).getMock();
@@ -147,6 +148,9 @@ public class StreamLookupTest {
     doReturn( memoryPreservationActive ).when( meta ).isMemoryPreservationActive();
     doReturn( false ).when( meta ).isUsingSortedList();
     doReturn( false ).when( meta ).isUsingIntegerPair();
+    doReturn( slabHashIndex ).when( meta ).isUsingSlabHashIndex();
+    doReturn( false ).when( meta ).isSlabOffHeap();
+    doReturn( overflowToDisk ).when( meta ).isOverflowToDisk();
     doReturn( new int[] { -1 } ).when( meta ).getValueDefaultType();
     doReturn( new String[] { "" } ).when( meta ).getValueDefault();
     doReturn( new String[] { "Value" } ).when( meta ).getValueName();
@@ -158,13 +162,18 @@ public class StreamLookupTest {
   }
 
   private void doTest( boolean memoryPreservationActive, boolean binaryLookupStream, boolean binaryDataStream ) throws KettleException {
+    doTest( memoryPreservationActive, false, false, binaryLookupStream, binaryDataStream );
+  }
+
+  private void doTest( boolean memoryPreservationActive, boolean slabHashIndex, boolean overflowToDisk,
+    boolean binaryLookupStream, boolean binaryDataStream ) throws KettleException {
     StreamLookup step = new StreamLookup( smh.stepMeta, smh.stepDataInterface, 0, smh.transMeta, smh.trans );
     step.init( smh.initStepMetaInterface, smh.initStepDataInterface );
     step.getInputRowSets().add( mockLookupRowSet( binaryLookupStream ) );
     step.getInputRowSets().add( mockDataRowSet( binaryDataStream ) );
     step.getOutputRowSets().add( new QueueRowSet() );
 
-    StreamLookupMeta meta = mockProcessRowMeta( memoryPreservationActive );
+    StreamLookupMeta meta = mockProcessRowMeta( memoryPreservationActive, slabHashIndex, overflowToDisk );
     StreamLookupData data = new StreamLookupData();
     data.readLookupValues = true;
 
@@ -231,4 +240,24 @@ public class StreamLookupTest {
   public void testMemoryPreservationWithBinaryStreams() throws KettleException {
     doTest( true, false, true );
   }
+
+  @Test
+  public void testSlabHashIndexWithNormalStreams() throws KettleException {
+    doTest( true, true, false, false, false );
+  }
+
+  @Test
+  public void testSlabHashIndexWithBinaryStreams() throws KettleException {
+    doTest( true, true, false, true, true );
+  }
+
+  @Test
+  public void testOverflowToDiskWithNormalStreams() throws KettleException {
+    doTest( false, false, true, false, false );
+  }
+
+  @Test
+  public void testOverflowToDiskWithBinaryStreams() throws KettleException {
+    doTest( false, false, true, true, true );
+  }
 }
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.textfileinput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class ReadAheadReaderTest {
+
+  @Test
+  public void testReadsAllCharacters() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for ( int i = 0; i < 10000; i++ ) {
+      content.append( "line " ).append( i ).append( " \u00e9\u00e8\n" );
+    }
+    Reader reader = new ReadAheadReader( new StringReader( content.toString() ), 1000, 3, "test" );
+    StringBuilder read = new StringBuilder();
+    char[] buffer = new char[777];
+    int c;
+    while ( ( c = reader.read() ) >= 0 ) {
+      read.append( (char) c );
+      int n = reader.read( buffer, 0, buffer.length );
+      if ( n > 0 ) {
+        read.append( buffer, 0, n );
+      }
+    }
+    reader.close();
+    assertEquals( content.toString(), read.toString() );
+  }
+
+  @Test
+  public void testErrorIsPassedToReader() throws Exception {
+    Reader failing = new Reader() {
+      private boolean first = true;
+
+      @Override
+      public int read( char[] cbuf, int off, int len ) throws IOException {
+        if ( first ) {
+          first = false;
+          cbuf[off] = 'a';
+          return 1;
+        }
+        throw new IOException( "corrupt" );
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    Reader reader = new ReadAheadReader( failing, 10, 2, "test" );
+    try {
+      reader.read();
+      fail( "the error should be thrown" );
+    } catch ( IOException e ) {
+      assertEquals( "corrupt", e.getMessage() );
+    } finally {
+      reader.close();
+    }
+  }
+}
@@ -23,12 +23,14 @@
 package org.pentaho.di.trans.steps.textfileinput;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -36,7 +38,10 @@ import org.apache.commons.io.IOUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.pentaho.di.core.BlockingRowSet;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.fileinput.FileInputList;
@@ -235,6 +240,79 @@ public class TextFileInputTest {
     deleteVfsFile( virtualFile );
   }
 
+  @Test
+  public void readInputWithConversionThreads() throws Exception {
+    // Several batches of lines in the first file and a partial batch in the second one
+    //
+    final int nrLines1 = 1100;
+    final int nrLines2 = 700;
+    final String virtualFile1 = createVirtualFile( "conversion1.txt", numberedLines( 0, nrLines1 ) );
+    final String virtualFile2 = createVirtualFile( "conversion2.txt", numberedLines( nrLines1, nrLines1 + nrLines2 ) );
+
+    TextFileInputMeta meta = new TextFileInputMeta();
+    TextFileInputField field2 = field( "col2" );
+    field2.setRepeated( true );
+    meta.setInputFields( new TextFileInputField[] { field( "col1" ), field2 } );
+    meta.setFileCompression( "None" );
+    meta.setFileType( "CSV" );
+    meta.setHeader( false );
+    meta.setNrHeaderLines( -1 );
+    meta.setFooter( false );
+    meta.setNrFooterLines( -1 );
+
+    TextFileInputData data = new TextFileInputData();
+    data.setFiles( new FileInputList() );
+    data.getFiles().addFile( KettleVFS.getFileObject( virtualFile1 ) );
+    data.getFiles().addFile( KettleVFS.getFileObject( virtualFile2 ) );
+
+    data.outputRowMeta = new RowMeta();
+    data.outputRowMeta.addValueMeta( new ValueMetaString( "col1" ) );
+    data.outputRowMeta.addValueMeta( new ValueMetaString( "col2" ) );
+
+    data.dataErrorLineHandler = Mockito.mock( FileErrorHandler.class );
+    data.fileFormatType = TextFileInputMeta.FILE_FORMAT_UNIX;
+    data.separator = ",";
+    data.filterProcessor = new TextFileFilterProcessor( new TextFileFilter[ 0 ] );
+    data.filePlayList = new FilePlayListAll();
+
+    TextFileInput input = StepMockUtil.getStep( TextFileInput.class, TextFileInputMeta.class, "test" );
+    input.setVariable( Const.KETTLE_TEXT_FILE_INPUT_CONVERSION_THREADS, "3" );
+    input.initConversionThreads( meta, data );
+
+    RowSet output = new BlockingRowSet( nrLines1 + nrLines2 );
+    input.setOutputRowSets( Collections.singletonList( output ) );
+    try {
+      while ( input.processRow( meta, data ) ) {
+        // The rows are put in batches, once converted
+      }
+    } finally {
+      input.dispose( meta, data );
+    }
+
+    // The rows keep the order of the lines and the repeated field takes the value of the previous line
+    //
+    assertEquals( nrLines1 + nrLines2, output.size() );
+    for ( int i = 0; i < nrLines1 + nrLines2; i++ ) {
+      Object[] expected = new Object[] { String.valueOf( i ), "v" + ( i - i % 3 ) };
+      TransTestingUtil.assertResult( expected, output.getRowImmediate() );
+    }
+    assertTrue( output.isDone() );
+
+    deleteVfsFile( virtualFile1 );
+    deleteVfsFile( virtualFile2 );
+  }
+
+  /**
+   * @return lines with the line number and a value on every third line
+   */
+  private static String[] numberedLines( int from, int to ) {
+    String[] lines = new String[ to - from ];
+    for ( int i = from; i < to; i++ ) {
+      lines[ i - from ] = i + "," + ( i % 3 == 0 ? "v" + i : "" ) + "\n";
+    }
+    return lines;
+  }
+
   private static String createVirtualFile( String filename, String... rows ) throws Exception {
     String virtualFile = TestUtils.createRamFile( filename );
 
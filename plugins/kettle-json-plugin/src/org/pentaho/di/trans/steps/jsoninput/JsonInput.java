@@ -33,6 +33,7 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.poi.util.IOUtils;
 import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.QueueRowSet;
 import org.pentaho.di.core.ResultFile;
 import org.pentaho.di.core.RowSet;
@@ -56,6 +57,7 @@ import org.pentaho.di.trans.steps.jsoninput.exception.JsonInputException;
 import org.pentaho.di.trans.steps.jsoninput.reader.FastJsonReader;
 import org.pentaho.di.trans.steps.jsoninput.reader.InputsReader;
 import org.pentaho.di.trans.steps.jsoninput.reader.RowOutputConverter;
+import org.pentaho.di.trans.steps.jsoninput.reader.StreamingJsonReader;
 
 /**
  * Read Json files, parse them and convert them to rows and writes these to one or more output streams.
@@ -214,6 +216,16 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
       field.setPath( environmentSubstitute( field.getPath() ) );
       inputFields[i] = field;
     }
+    if ( "Y".equalsIgnoreCase( getVariable( Const.KETTLE_JSON_INPUT_STREAMING, "N" ) ) ) {
+      if ( StreamingJsonReader.isSupported( inputFields ) ) {
+        data.streamingReader = new StreamingJsonReader( inputFields, log );
+        data.streamingReader.setIgnoreMissingPath( meta.isIgnoreMissingPath() );
+        data.reader = data.streamingReader;
+        logBasic( BaseMessages.getString( PKG, "JsonInput.Log.Streaming.Activated" ) );
+        return;
+      }
+      logBasic( BaseMessages.getString( PKG, "JsonInput.Log.Streaming.NotSupported" ) );
+    }
     data.reader.setFields( inputFields );
   }
 
@@ -269,7 +281,9 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
   private void parseNextInputToRowSet( InputStream input ) throws KettleException {
     try {
       data.readerRowSet = data.reader.parse( input );
-      input.close();
+      if ( data.streamingReader == null ) {
+        input.close();
+      }
     } catch ( KettleException ke ) {
       logInputError( ke );
       throw new JsonInputException( ke );
@@ -279,6 +293,18 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
     }
   }
 
+  private Object[] getReaderRow() throws KettleException {
+    if ( data.streamingReader == null ) {
+      return data.readerRowSet.getRow();
+    }
+    try {
+      return data.streamingReader.nextRow();
+    } catch ( KettleException ke ) {
+      logInputError( ke );
+      throw new JsonInputException( ke );
+    }
+  }
+
   private void logInputError( KettleException e ) {
     logError( e.getLocalizedMessage(), e );
     inputError( e.getLocalizedMessage() );
@@ -334,16 +360,22 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
       return null;
     }
     Object[] rawReaderRow = null;
-    while ( ( rawReaderRow = data.readerRowSet.getRow() ) == null ) {
+    while ( ( rawReaderRow = getReaderRow() ) == null ) {
       if ( data.inputs.hasNext() && data.readerRowSet.isDone() ) {
-        try ( InputStream nextIn = data.inputs.next() ) {
-
-          if ( nextIn != null ) {
-            parseNextInputToRowSet( nextIn );
-          } else {
-            parseNextInputToRowSet( new ByteArrayInputStream( EMPTY_JSON ) );
+        InputStream nextIn = data.inputs.next();
+        try {
+          try {
+            if ( nextIn != null ) {
+              parseNextInputToRowSet( nextIn );
+            } else {
+              parseNextInputToRowSet( new ByteArrayInputStream( EMPTY_JSON ) );
+            }
+          } finally {
+            // the streaming reader closes the input once all its rows are read
+            if ( nextIn != null && data.streamingReader == null ) {
+              nextIn.close();
+            }
           }
-
         } catch ( IOException e ) {
           logError( BaseMessages.getString( PKG, "JsonInput.Log.UnexpectedError", e.toString() ), e );
           incrementErrors();
@@ -473,6 +505,10 @@ public class JsonInput extends BaseFileInputStep<JsonInputMeta, JsonInputData> i
       IOUtils.closeQuietly( data.file );
     }
     data.inputs = null;
+    if ( data.streamingReader != null ) {
+      data.streamingReader.close();
+      data.streamingReader = null;
+    }
     data.reader = null;
     data.readerRowSet = null;
     data.repeatedFields = null;
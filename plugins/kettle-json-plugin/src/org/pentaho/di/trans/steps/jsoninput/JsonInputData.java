@@ -31,6 +31,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.StepDataInterface;
 import org.pentaho.di.trans.steps.fileinput.BaseFileInputStepData;
 import org.pentaho.di.trans.steps.jsoninput.reader.IJsonReader;
+import org.pentaho.di.trans.steps.jsoninput.reader.StreamingJsonReader;
 
 /**
  * @author Samatar
@@ -60,6 +61,7 @@ public class JsonInputData extends BaseFileInputStepData implements StepDataInte
 
   public Iterator<InputStream> inputs;
   public IJsonReader reader;
+  public StreamingJsonReader streamingReader;
   public RowSet readerRowSet;
   public BitSet repeatedFields;
 
@@ -0,0 +1,436 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.jsoninput.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.SingleRowRowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.steps.jsoninput.JsonInputField;
+import org.pentaho.di.trans.steps.jsoninput.JsonInputMeta;
+import org.pentaho.di.trans.steps.jsoninput.exception.JsonInputException;
+
+/**
+ * Reads the rows in a single pass over the token stream of the input, without parsing the whole document.<br>
+ * The paths of all the fields have to go through the same wildcard, like $.data[*].id and $.data[*].user.name: the
+ * parser skips to the array (or object) of that wildcard and builds a tree of one element at a time, the fields are
+ * evaluated on that element and the row is returned before the next element is read. Paths are made of property
+ * names (.name or ['name']), array indexes and that one wildcard; use {@link #isSupported(JsonInputField[])} to check.
+ * <br>
+ * Unlike {@link FastJsonReader}, a missing value doesn't shift the values of the following elements, and rows are
+ * returned while the input is read, so an error can come after the first rows.
+ */
+public class StreamingJsonReader implements IJsonReader {
+  private static Class<?> PKG = JsonInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final MappingJsonFactory JSON_FACTORY = new MappingJsonFactory();
+
+  private final LogChannelInterface log;
+  private boolean ignoreMissingPath;
+
+  private JsonInputField[] fields;
+  // the steps up to the wildcard, the same for all the fields
+  private List<Step> prefix;
+  // the steps after the wildcard, for each field
+  private List<List<Step>> suffixes;
+
+  private InputStream input;
+  private JsonParser parser;
+  private boolean containerIsObject;
+  private long nrRows;
+  private final StreamedRowSet rowSet = new StreamedRowSet();
+
+  public StreamingJsonReader( JsonInputField[] fields, LogChannelInterface log ) throws KettleException {
+    this.log = log;
+    setFields( fields );
+  }
+
+  /**
+   * @return true if the paths of the fields can be read with a streaming reader
+   */
+  public static boolean isSupported( JsonInputField[] fields ) {
+    return compile( fields ) != null;
+  }
+
+  @Override
+  public void setFields( JsonInputField[] fields ) throws KettleException {
+    List<List<Step>> paths = compile( fields );
+    if ( paths == null ) {
+      throw new KettleException( "The paths of the fields can't be read while streaming" );
+    }
+    this.fields = fields;
+    int wildcard = paths.get( 0 ).indexOf( Step.WILDCARD );
+    prefix = paths.get( 0 ).subList( 0, wildcard );
+    suffixes = new ArrayList<>( paths.size() );
+    for ( List<Step> path : paths ) {
+      suffixes.add( path.subList( wildcard + 1, path.size() ) );
+    }
+  }
+
+  private static List<List<Step>> compile( JsonInputField[] fields ) {
+    if ( fields == null || fields.length == 0 ) {
+      return null;
+    }
+    List<List<Step>> paths = new ArrayList<>( fields.length );
+    List<Step> prefix = null;
+    for ( JsonInputField field : fields ) {
+      List<Step> path = parsePath( field.getPath() );
+      if ( path == null ) {
+        return null;
+      }
+      int wildcard = path.indexOf( Step.WILDCARD );
+      if ( wildcard < 0 || path.lastIndexOf( Step.WILDCARD ) != wildcard ) {
+        return null;
+      }
+      if ( prefix == null ) {
+        prefix = path.subList( 0, wildcard );
+      } else if ( !prefix.equals( path.subList( 0, wildcard ) ) ) {
+        return null;
+      }
+      paths.add( path );
+    }
+    return paths;
+  }
+
+  /**
+   * @return the steps of a path like $.a['b'][0][*].c, null if the path uses anything else
+   */
+  static List<Step> parsePath( String path ) {
+    if ( path == null ) {
+      return null;
+    }
+    path = path.trim();
+    if ( !path.startsWith( "$" ) ) {
+      return null;
+    }
+    List<Step> steps = new ArrayList<>();
+    int i = 1;
+    while ( i < path.length() ) {
+      char c = path.charAt( i );
+      if ( c == '.' ) {
+        i++;
+        if ( path.startsWith( "*", i ) ) {
+          steps.add( Step.WILDCARD );
+          i++;
+          continue;
+        }
+        int end = i;
+        while ( end < path.length() && path.charAt( end ) != '.' && path.charAt( end ) != '[' ) {
+          end++;
+        }
+        String name = path.substring( i, end );
+        if ( name.isEmpty() || name.matches( ".*[()?@*,:'\"\\]].*" ) ) {
+          // deep scan, functions and filters
+          return null;
+        }
+        steps.add( Step.property( name ) );
+        i = end;
+      } else if ( c == '[' ) {
+        int end = path.indexOf( ']', i );
+        if ( end < 0 ) {
+          return null;
+        }
+        String selector = path.substring( i + 1, end ).trim();
+        i = end + 1;
+        if ( selector.equals( "*" ) ) {
+          steps.add( Step.WILDCARD );
+        } else if ( selector.length() >= 2 && ( selector.charAt( 0 ) == '\'' || selector.charAt( 0 ) == '"' )
+          && selector.charAt( selector.length() - 1 ) == selector.charAt( 0 ) ) {
+          String name = selector.substring( 1, selector.length() - 1 );
+          if ( name.indexOf( selector.charAt( 0 ) ) >= 0 || name.indexOf( '\\' ) >= 0 ) {
+            // several names or escapes
+            return null;
+          }
+          steps.add( Step.property( name ) );
+        } else if ( selector.matches( "\\d{1,9}" ) ) {
+          steps.add( Step.index( Integer.parseInt( selector ) ) );
+        } else {
+          // filters, slices, unions and negative indexes
+          return null;
+        }
+      } else {
+        return null;
+      }
+    }
+    return steps;
+  }
+
+  @Override
+  public boolean isIgnoreMissingPath() {
+    return ignoreMissingPath;
+  }
+
+  @Override
+  public void setIgnoreMissingPath( boolean value ) {
+    this.ignoreMissingPath = value;
+  }
+
+  /**
+   * Starts reading an input. The input is closed by the reader once all its rows are read.
+   *
+   * @return a row set reading the rows from the input as they are asked for
+   */
+  @Override
+  public RowSet parse( InputStream in ) throws KettleException {
+    close();
+    input = in;
+    nrRows = 0;
+    try {
+      parser = JSON_FACTORY.createJsonParser( in );
+      JsonToken token = parser.nextToken();
+      if ( token == null || !seekPrefix() ) {
+        parser.close();
+      } else {
+        containerIsObject = parser.getCurrentToken() == JsonToken.START_OBJECT;
+      }
+    } catch ( IOException e ) {
+      close();
+      throw new KettleException( e );
+    }
+    return rowSet;
+  }
+
+  /**
+   * Moves the parser to the value the wildcard applies to.
+   *
+   * @return false if there is no such array or object
+   */
+  private boolean seekPrefix() throws IOException {
+    for ( Step step : prefix ) {
+      JsonToken token = parser.getCurrentToken();
+      boolean found = false;
+      if ( step.name != null ) {
+        if ( token != JsonToken.START_OBJECT ) {
+          return false;
+        }
+        while ( !found && parser.nextToken() == JsonToken.FIELD_NAME ) {
+          String name = parser.getCurrentName();
+          parser.nextToken();
+          if ( name.equals( step.name ) ) {
+            found = true;
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } else {
+        if ( token != JsonToken.START_ARRAY ) {
+          return false;
+        }
+        int index = 0;
+        while ( !found && ( token = parser.nextToken() ) != JsonToken.END_ARRAY && token != null ) {
+          if ( index++ == step.index ) {
+            found = true;
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+      if ( !found ) {
+        return false;
+      }
+    }
+    JsonToken token = parser.getCurrentToken();
+    return token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT;
+  }
+
+  /**
+   * Reads the next element of the array or object of the wildcard.
+   *
+   * @return the values of the fields for the element, null when the input has no more rows
+   */
+  public Object[] nextRow() throws KettleException {
+    if ( parser == null ) {
+      return null;
+    }
+    try {
+      while ( !parser.isClosed() ) {
+        JsonToken token = parser.nextToken();
+        if ( containerIsObject && token == JsonToken.FIELD_NAME ) {
+          token = parser.nextToken();
+        }
+        if ( token == null || token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT ) {
+          break;
+        }
+        JsonNode element = parser.readValueAsTree();
+        Object[] row = new Object[suffixes.size()];
+        boolean allNull = true;
+        for ( int i = 0; i < row.length; i++ ) {
+          row[i] = getValue( element, suffixes.get( i ) );
+          allNull &= row[i] == null;
+        }
+        if ( allNull ) {
+          continue;
+        }
+        if ( !ignoreMissingPath ) {
+          for ( int i = 0; i < row.length; i++ ) {
+            if ( row[i] == null ) {
+              throw new JsonInputException(
+                BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[i].getPath() ) );
+            }
+          }
+        }
+        nrRows++;
+        return row;
+      }
+    } catch ( IOException e ) {
+      close();
+      throw new KettleException( e );
+    }
+
+    close();
+    if ( log.isDetailed() ) {
+      log.logDetailed( BaseMessages.getString( PKG, "JsonInput.Log.NrRecords", nrRows ) );
+    }
+    if ( nrRows == 0 ) {
+      if ( !ignoreMissingPath ) {
+        throw new JsonInputException(
+          BaseMessages.getString( PKG, "JsonReader.Error.CanNotFindPath", fields[0].getPath() ) );
+      }
+      // like FastJsonReader, an input without data gives a single empty row
+      nrRows++;
+      return new Object[] {};
+    }
+    return null;
+  }
+
+  private static Object getValue( JsonNode element, List<Step> steps ) {
+    JsonNode node = element;
+    for ( Step step : steps ) {
+      if ( step.name != null ) {
+        node = node.isObject() ? node.get( step.name ) : null;
+      } else {
+        node = node.isArray() ? node.get( step.index ) : null;
+      }
+      if ( node == null ) {
+        return null;
+      }
+    }
+    if ( node.isNull() || node.isMissingNode() ) {
+      return null;
+    } else if ( node.isTextual() ) {
+      return node.getTextValue();
+    } else if ( node.isNumber() ) {
+      return node.getNumberValue();
+    } else if ( node.isBoolean() ) {
+      return node.getBooleanValue();
+    }
+    // objects and arrays are passed on as JSON
+    return node.toString();
+  }
+
+  /**
+   * Stops reading the current input and closes it.
+   */
+  public void close() {
+    try {
+      if ( parser != null ) {
+        parser.close();
+      }
+      if ( input != null ) {
+        input.close();
+      }
+    } catch ( IOException e ) {
+      if ( log.isDebug() ) {
+        log.logDebug( e.getLocalizedMessage(), e );
+      }
+    } finally {
+      parser = null;
+      input = null;
+    }
+  }
+
+  /**
+   * Rows of the current input, read when they are asked for.
+   */
+  private class StreamedRowSet extends SingleRowRowSet {
+
+    @Override
+    public Object[] getRow() {
+      try {
+        return nextRow();
+      } catch ( KettleException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+
+    @Override
+    public int size() {
+      return isDone() ? 0 : 1;
+    }
+
+    @Override
+    public boolean isDone() {
+      return parser == null;
+    }
+
+    @Override
+    public void clear() {
+      close();
+    }
+  }
+
+  static final class Step {
+    static final Step WILDCARD = new Step( null, -1 );
+
+    final String name;
+    final int index;
+
+    private Step( String name, int index ) {
+      this.name = name;
+      this.index = index;
+    }
+
+    static Step property( String name ) {
+      return new Step( name, -1 );
+    }
+
+    static Step index( int index ) {
+      return new Step( null, index );
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( !( obj instanceof Step ) ) {
+        return false;
+      }
+      Step other = (Step) obj;
+      return index == other.index && ( name == null ? other.name == null : name.equals( other.name ) );
+    }
+
+    @Override
+    public int hashCode() {
+      return name == null ? index : name.hashCode();
+    }
+  }
+}
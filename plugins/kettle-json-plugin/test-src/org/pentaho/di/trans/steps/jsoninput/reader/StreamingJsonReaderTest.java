@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.jsoninput.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.trans.steps.jsoninput.JsonInputField;
+import org.pentaho.di.trans.steps.jsoninput.exception.JsonInputException;
+
+public class StreamingJsonReaderTest {
+
+  private static final String JSON = "{ \"meta\" : { \"count\" : 3, \"tags\" : [ \"a\", \"b\" ] },"
+    + " \"data\" : [ { \"id\" : 1, \"user\" : { \"name\" : \"Ann\", \"roles\" : [ \"admin\", \"dev\" ] } },"
+    + " { \"id\" : 2.5, \"user\" : { \"name\" : \"Bob\" }, \"active\" : true },"
+    + " { \"id\" : 3, \"user\" : { \"name\" : null, \"roles\" : [] }, \"extra\" : { \"x\" : [ 1, { } ] } } ] }";
+
+  private static JsonInputField[] fields( String... paths ) {
+    JsonInputField[] fields = new JsonInputField[paths.length];
+    for ( int i = 0; i < paths.length; i++ ) {
+      fields[i] = new JsonInputField( "f" + i );
+      fields[i].setPath( paths[i] );
+    }
+    return fields;
+  }
+
+  private static List<Object[]> readAll( StreamingJsonReader reader, String json ) throws KettleException {
+    RowSet rowSet = reader.parse( new ByteArrayInputStream( json.getBytes( StandardCharsets.UTF_8 ) ) );
+    List<Object[]> rows = new ArrayList<>();
+    Object[] row;
+    while ( ( row = reader.nextRow() ) != null ) {
+      rows.add( row );
+    }
+    assertTrue( rowSet.isDone() );
+    return rows;
+  }
+
+  private static StreamingJsonReader reader( boolean ignoreMissingPath, String... paths ) throws KettleException {
+    StreamingJsonReader reader = new StreamingJsonReader( fields( paths ), mock( LogChannelInterface.class ) );
+    reader.setIgnoreMissingPath( ignoreMissingPath );
+    return reader;
+  }
+
+  @Test
+  public void testIsSupported() {
+    assertTrue( StreamingJsonReader.isSupported( fields( "$.data[*].id", "$['data'][*].user.name" ) ) );
+    assertTrue( StreamingJsonReader.isSupported( fields( "$[*]", "$.*.a[0]" ) ) );
+    assertTrue( StreamingJsonReader.isSupported( fields( "$.a[1][*].b" ) ) );
+
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data[*].id", "$.meta.count" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data[*].id", "$.other[*].id" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data[*].roles[*]" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$..id" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data[?(@.id)].id" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data[0:2].id" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "$.data.length()" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( fields( "data[*].id" ) ) );
+    assertFalse( StreamingJsonReader.isSupported( new JsonInputField[0] ) );
+  }
+
+  @Test
+  public void testReadElements() throws Exception {
+    StreamingJsonReader reader = reader( true, "$.data[*].id", "$.data[*].user.name", "$.data[*].user.roles[1]",
+      "$.data[*].active", "$.data[*].extra" );
+    List<Object[]> rows = readAll( reader, JSON );
+    assertEquals( 3, rows.size() );
+    assertArrayEquals( new Object[] { 1, "Ann", "dev", null, null }, rows.get( 0 ) );
+    assertArrayEquals( new Object[] { 2.5, "Bob", null, true, null }, rows.get( 1 ) );
+    assertArrayEquals( new Object[] { 3, null, null, null, "{\"x\":[1,{}]}" }, rows.get( 2 ) );
+  }
+
+  @Test
+  public void testReadObjectValuesAndIndexes() throws Exception {
+    StreamingJsonReader reader = reader( true, "$.meta.*" );
+    List<Object[]> rows = readAll( reader, JSON );
+    assertEquals( 2, rows.size() );
+    assertArrayEquals( new Object[] { 3 }, rows.get( 0 ) );
+    assertArrayEquals( new Object[] { "[\"a\",\"b\"]" }, rows.get( 1 ) );
+
+    reader = reader( true, "$[1][*]" );
+    rows = readAll( reader, "[ [ 1, 2 ], [ \"x\", \"y\", \"z\" ] ]" );
+    assertEquals( 3, rows.size() );
+    assertArrayEquals( new Object[] { "z" }, rows.get( 2 ) );
+  }
+
+  @Test
+  public void testSkipsNullRows() throws Exception {
+    StreamingJsonReader reader = reader( true, "$[*].a" );
+    List<Object[]> rows = readAll( reader, "[ { \"a\" : 1 }, { \"b\" : 2 }, 3, { \"a\" : null }, { \"a\" : 4 } ]" );
+    assertEquals( 2, rows.size() );
+    assertArrayEquals( new Object[] { 1 }, rows.get( 0 ) );
+    assertArrayEquals( new Object[] { 4 }, rows.get( 1 ) );
+  }
+
+  @Test
+  public void testMissingPath() throws Exception {
+    List<Object[]> rows = readAll( reader( true, "$.missing[*].id" ), JSON );
+    assertEquals( 1, rows.size() );
+    assertEquals( 0, rows.get( 0 ).length );
+
+    try {
+      readAll( reader( false, "$.missing[*].id" ), JSON );
+      fail( "missing path" );
+    } catch ( JsonInputException e ) {
+      // expected
+    }
+
+    StreamingJsonReader reader = reader( false, "$.data[*].id", "$.data[*].active" );
+    reader.parse( new ByteArrayInputStream( JSON.getBytes( StandardCharsets.UTF_8 ) ) );
+    try {
+      reader.nextRow();
+      fail( "missing path" );
+    } catch ( JsonInputException e ) {
+      assertTrue( e.getMessage().contains( "$.data[*].active" ) );
+    }
+  }
+
+  @Test
+  public void testClosesInput() throws Exception {
+    final boolean[] closed = new boolean[1];
+    InputStream in = new ByteArrayInputStream( "[ 1, 2 ]".getBytes( StandardCharsets.UTF_8 ) ) {
+      @Override
+      public void close() {
+        closed[0] = true;
+      }
+    };
+    StreamingJsonReader reader = reader( true, "$[*]" );
+    RowSet rowSet = reader.parse( in );
+    assertArrayEquals( new Object[] { 1 }, rowSet.getRow() );
+    assertFalse( closed[0] );
+    assertArrayEquals( new Object[] { 2 }, rowSet.getRow() );
+    assertNull( rowSet.getRow() );
+    assertTrue( closed[0] );
+  }
+}
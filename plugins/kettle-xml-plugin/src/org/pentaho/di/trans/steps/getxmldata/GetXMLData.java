@@ -589,6 +589,16 @@ public class GetXMLData extends BaseStep implements StepInterface {
           logDetailed( BaseMessages.getString( PKG, "GetXMLData.Log.OpeningFile", data.file.toString() ) );
         }
 
+        if ( data.streamingReader != null ) {
+          // rows are read while the document is parsed in getStreamedXMLRow()
+          data.streamingReader.open( KettleVFS.getInputStream( data.file ) );
+          addFileToResultFilesname( data.file );
+          if ( log.isDetailed() ) {
+            logDetailed( BaseMessages.getString( PKG, "GetXMLData.Log.FileOpened", data.file.toString() ) );
+          }
+          return true;
+        }
+
         // Open the XML document
         if ( !setDocument( null, data.file, false, false ) ) {
           if ( data.stopPruning ) {
@@ -677,6 +687,9 @@ public class GetXMLData extends BaseStep implements StepInterface {
 
   private Object[] getXMLRow() throws KettleException {
 
+    if ( data.streamingReader != null ) {
+      return getStreamedXMLRow();
+    }
     if ( !meta.isInFields() ) {
       while ( ( data.nodenr >= data.nodesize || data.file == null ) ) {
         if ( !openNextFile() ) {
@@ -704,7 +717,7 @@ public class GetXMLData extends BaseStep implements StepInterface {
         }
       }
 
-      r = processPutRow( data.an.get( data.nodenr ) );
+      r = processPutRow( data.an.get( data.nodenr ), null );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString( PKG, "GetXMLData.Error.UnableReadFile" ), e );
     }
@@ -712,7 +725,106 @@ public class GetXMLData extends BaseStep implements StepInterface {
     return r;
   }
 
-  private Object[] processPutRow( AbstractNode node ) throws KettleException {
+  /**
+   * Reads the next row from the files in streaming XPath mode: the values of the fields are collected while the
+   * document is parsed, up to the end of the next loop node.
+   */
+  private Object[] getStreamedXMLRow() throws KettleException {
+    data.errorInRowButContinue = false;
+    String[] values;
+    try {
+      while ( ( values = data.streamingReader.isOpen() ? data.streamingReader.next() : null ) == null ) {
+        data.streamingReader.close();
+        if ( !openNextFile() ) {
+          return null;
+        }
+      }
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString( PKG, "GetXMLData.Error.UnableReadFile" ), e );
+    }
+    return processPutRow( null, values );
+  }
+
+  /**
+   * @return the XPath of the field, relative to the loop node
+   */
+  private String getFieldXPath( GetXMLDataField xmlDataField ) {
+    String XPathValue = environmentSubstitute( xmlDataField.getXPath() );
+    if ( xmlDataField.getElementType() == GetXMLDataField.ELEMENT_TYPE_ATTRIBUT ) {
+      // We have an attribute
+      // do we need to add leading @?
+      // Only put @ to the last element in path, not in front at all
+      int last = XPathValue.lastIndexOf( GetXMLDataMeta.N0DE_SEPARATOR );
+      if ( last > -1 ) {
+        last++;
+        String attribut = XPathValue.substring( last, XPathValue.length() );
+        if ( !attribut.startsWith( GetXMLDataMeta.AT ) ) {
+          XPathValue = XPathValue.substring( 0, last ) + GetXMLDataMeta.AT + attribut;
+        }
+      } else {
+        if ( !XPathValue.startsWith( GetXMLDataMeta.AT ) ) {
+          XPathValue = GetXMLDataMeta.AT + XPathValue;
+        }
+      }
+    }
+    return XPathValue;
+  }
+
+  /**
+   * Applies the XPath of a field to a loop node.
+   */
+  private String getNodeValue( AbstractNode node, GetXMLDataField xmlDataField, Object[] outputRowData ) {
+    // Get the Path to look for
+    String XPathValue = getFieldXPath( xmlDataField );
+    if ( meta.isuseToken() ) {
+      // See if user use Token inside path field
+      // The syntax is : @_Fieldname-
+      // PDI will search for Fieldname value and replace it
+      // Fieldname must be defined before the current node
+      XPathValue = substituteToken( XPathValue, outputRowData );
+      if ( isDetailed() ) {
+        logDetailed( XPathValue );
+      }
+    }
+
+    String nodevalue;
+
+    // Handle namespaces
+    if ( meta.isNamespaceAware() ) {
+      XPath xpathField = node.createXPath( addNSPrefix( XPathValue, data.PathValue ) );
+      xpathField.setNamespaceURIs( data.NAMESPACE );
+      if ( xmlDataField.getResultType() == GetXMLDataField.RESULT_TYPE_VALUE_OF ) {
+        nodevalue = xpathField.valueOf( node );
+      } else {
+        // nodevalue=xpathField.selectSingleNode(node).asXML();
+        Node n = xpathField.selectSingleNode( node );
+        if ( n != null ) {
+          nodevalue = n.asXML();
+        } else {
+          nodevalue = "";
+        }
+      }
+    } else {
+      if ( xmlDataField.getResultType() == GetXMLDataField.RESULT_TYPE_VALUE_OF ) {
+        nodevalue = node.valueOf( XPathValue );
+      } else {
+        // nodevalue=node.selectSingleNode(XPathValue).asXML();
+        Node n = node.selectSingleNode( XPathValue );
+        if ( n != null ) {
+          nodevalue = n.asXML();
+        } else {
+          nodevalue = "";
+        }
+      }
+    }
+    return nodevalue;
+  }
+
+  /**
+   * @param node   the loop node to apply the field XPaths to, null in streaming XPath mode
+   * @param values the values of the fields in streaming XPath mode
+   */
+  private Object[] processPutRow( AbstractNode node, String[] values ) throws KettleException {
     // Create new row...
     Object[] outputRowData = buildEmptyRow();
 
@@ -727,67 +839,13 @@ public class GetXMLData extends BaseStep implements StepInterface {
       for ( int i = 0; i < data.nrInputFields; i++ ) {
         // Get field
         GetXMLDataField xmlDataField = meta.getInputFields()[i];
-        // Get the Path to look for
-        String XPathValue = xmlDataField.getXPath();
-        XPathValue = environmentSubstitute( XPathValue );
-        if ( xmlDataField.getElementType() == GetXMLDataField.ELEMENT_TYPE_ATTRIBUT ) {
-          // We have an attribute
-          // do we need to add leading @?
-          // Only put @ to the last element in path, not in front at all
-          int last = XPathValue.lastIndexOf( GetXMLDataMeta.N0DE_SEPARATOR );
-          if ( last > -1 ) {
-            last++;
-            String attribut = XPathValue.substring( last, XPathValue.length() );
-            if ( !attribut.startsWith( GetXMLDataMeta.AT ) ) {
-              XPathValue = XPathValue.substring( 0, last ) + GetXMLDataMeta.AT + attribut;
-            }
-          } else {
-            if ( !XPathValue.startsWith( GetXMLDataMeta.AT ) ) {
-              XPathValue = GetXMLDataMeta.AT + XPathValue;
-            }
-          }
-        }
-        if ( meta.isuseToken() ) {
-          // See if user use Token inside path field
-          // The syntax is : @_Fieldname-
-          // PDI will search for Fieldname value and replace it
-          // Fieldname must be defined before the current node
-          XPathValue = substituteToken( XPathValue, outputRowData );
-          if ( isDetailed() ) {
-            logDetailed( XPathValue );
-          }
-        }
 
         // Get node value
         String nodevalue;
-
-        // Handle namespaces
-        if ( meta.isNamespaceAware() ) {
-          XPath xpathField = node.createXPath( addNSPrefix( XPathValue, data.PathValue ) );
-          xpathField.setNamespaceURIs( data.NAMESPACE );
-          if ( xmlDataField.getResultType() == GetXMLDataField.RESULT_TYPE_VALUE_OF ) {
-            nodevalue = xpathField.valueOf( node );
-          } else {
-            // nodevalue=xpathField.selectSingleNode(node).asXML();
-            Node n = xpathField.selectSingleNode( node );
-            if ( n != null ) {
-              nodevalue = n.asXML();
-            } else {
-              nodevalue = "";
-            }
-          }
+        if ( node == null ) {
+          nodevalue = values[i];
         } else {
-          if ( xmlDataField.getResultType() == GetXMLDataField.RESULT_TYPE_VALUE_OF ) {
-            nodevalue = node.valueOf( XPathValue );
-          } else {
-            // nodevalue=node.selectSingleNode(XPathValue).asXML();
-            Node n = node.selectSingleNode( XPathValue );
-            if ( n != null ) {
-              nodevalue = n.asXML();
-            } else {
-              nodevalue = "";
-            }
-          }
+          nodevalue = getNodeValue( node, xmlDataField, outputRowData );
         }
 
         // Do trimming
@@ -961,11 +1019,42 @@ public class GetXMLData extends BaseStep implements StepInterface {
         }
       }
 
+      if ( "Y".equalsIgnoreCase( getVariable( Const.KETTLE_GET_XML_DATA_STREAMING_XPATH, "N" ) ) ) {
+        data.streamingReader = compileStreamingXPath();
+        if ( data.streamingReader != null ) {
+          // the streaming reader doesn't build a document to prune
+          data.prunePath = null;
+          logDetailed( BaseMessages.getString( PKG, "GetXMLData.Log.StreamingXPath.Activated" ) );
+        } else {
+          logBasic( BaseMessages.getString( PKG, "GetXMLData.Log.StreamingXPath.NotSupported" ) );
+        }
+      }
+
       return true;
     }
     return false;
   }
 
+  /**
+   * Compiles the loop XPath and the field XPaths to be evaluated while the files are parsed.
+   *
+   * @return the streaming reader, or null when the options or the XPaths need the document
+   */
+  private StreamingXPathReader compileStreamingXPath() {
+    if ( meta.isInFields() || meta.isValidating() || meta.isNamespaceAware() || meta.isuseToken() ) {
+      return null;
+    }
+    String[] fieldPaths = new String[data.nrInputFields];
+    for ( int i = 0; i < data.nrInputFields; i++ ) {
+      GetXMLDataField xmlDataField = meta.getInputFields()[i];
+      if ( xmlDataField.getResultType() != GetXMLDataField.RESULT_TYPE_VALUE_OF ) {
+        return null;
+      }
+      fieldPaths[i] = getFieldXPath( xmlDataField );
+    }
+    return StreamingXPathReader.compile( data.PathValue, fieldPaths );
+  }
+
   public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     meta = (GetXMLDataMeta) smi;
     data = (GetXMLDataData) sdi;
@@ -976,6 +1065,9 @@ public class GetXMLData extends BaseStep implements StepInterface {
         // Ignore close errors
       }
     }
+    if ( data.streamingReader != null ) {
+      data.streamingReader.close();
+    }
     if ( data.an != null ) {
       data.an.clear();
       data.an = null;
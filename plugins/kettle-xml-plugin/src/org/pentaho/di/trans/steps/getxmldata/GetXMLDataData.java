@@ -90,6 +90,8 @@ public class GetXMLDataData extends BaseStepData implements StepDataInterface {
   public FileInputStream fr;
   public BufferedInputStream is;
   public Document document;
+  // reads the rows while the files are parsed, null when the document is built
+  public StreamingXPathReader streamingReader;
   public String itemElement;
   public int itemCount;
   public int itemPosition;
@@ -0,0 +1,412 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.getxmldata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Evaluates the loop XPath and the field XPaths of the Get data from XML step while the document is read with StAX,
+ * so that no document tree is built and the memory used only depends on the size of a row.<br>
+ * Only a subset of XPath can be compiled:
+ * <ul>
+ * <li>the loop path is an absolute path of element names or *, like /root/items/item</li>
+ * <li>a field path is relative to the loop node: ., child element paths, an attribute or text() at the end of such a
+ * path, or the attribute of an ancestor like ../@id</li>
+ * </ul>
+ * The values are those XPath valueOf() gives: the string value of the first matching node in document order, or an
+ * empty string when nothing matches. Names only match elements and attributes without a namespace, like they do when
+ * the step is not namespace aware.
+ */
+public class StreamingXPathReader {
+
+  private static final Pattern NAME = Pattern.compile( "[\\p{L}_][\\p{L}\\p{N}_.\\-]*" );
+  private static final String ANY = "*";
+  private static final String PARENT = "..";
+  private static final String SELF = ".";
+  private static final String TEXT = "text()";
+
+  private final String[] loopSteps;
+  private final FieldPath[] fields;
+  // the attributes of the ancestors of the loop node are kept when a field refers to them
+  private final boolean keepAncestorAttributes;
+
+  private XMLInputFactory factory;
+  private InputStream stream;
+  private XMLStreamReader xml;
+
+  // depth of the current element, the document element is at depth 1
+  private int depth;
+  // the number of leading loop steps matched by the current element and its ancestors
+  private int loopMatched;
+  private boolean inLoop;
+  private final List<List<String[]>> ancestorAttributes = new ArrayList<List<String[]>>();
+
+  private StreamingXPathReader( String[] loopSteps, FieldPath[] fields ) {
+    this.loopSteps = loopSteps;
+    this.fields = fields;
+    boolean ancestors = false;
+    for ( FieldPath field : fields ) {
+      ancestors |= field.ups > 0;
+    }
+    keepAncestorAttributes = ancestors;
+    for ( int i = 0; i <= loopSteps.length; i++ ) {
+      ancestorAttributes.add( null );
+    }
+  }
+
+  /**
+   * Compiles the loop path and the field paths.
+   *
+   * @param loopPath   the absolute XPath of the nodes to loop over
+   * @param fieldPaths the XPaths of the fields, relative to the loop nodes
+   * @return the reader or null if one of the paths is not in the subset of XPath that can be streamed
+   */
+  public static StreamingXPathReader compile( String loopPath, String[] fieldPaths ) {
+    if ( loopPath == null || !loopPath.startsWith( GetXMLDataMeta.N0DE_SEPARATOR ) ) {
+      return null;
+    }
+    String[] loopSteps = loopPath.substring( 1 ).split( GetXMLDataMeta.N0DE_SEPARATOR, -1 );
+    for ( String step : loopSteps ) {
+      if ( !isStep( step ) ) {
+        return null;
+      }
+    }
+    FieldPath[] fields = new FieldPath[fieldPaths.length];
+    for ( int i = 0; i < fieldPaths.length; i++ ) {
+      fields[i] = compileField( fieldPaths[i], loopSteps.length );
+      if ( fields[i] == null ) {
+        return null;
+      }
+    }
+    return new StreamingXPathReader( loopSteps, fields );
+  }
+
+  private static FieldPath compileField( String fieldPath, int loopDepth ) {
+    if ( fieldPath == null ) {
+      return null;
+    }
+    String path = fieldPath.trim();
+    if ( path.isEmpty() || path.startsWith( GetXMLDataMeta.N0DE_SEPARATOR ) ) {
+      return null;
+    }
+    String[] parts = path.split( GetXMLDataMeta.N0DE_SEPARATOR, -1 );
+    int ups = 0;
+    String attribute = null;
+    boolean text = false;
+    List<String> steps = new ArrayList<String>();
+    for ( int i = 0; i < parts.length; i++ ) {
+      String part = parts[i];
+      boolean last = i == parts.length - 1;
+      if ( part.equals( PARENT ) && steps.isEmpty() ) {
+        ups++;
+      } else if ( part.equals( SELF ) ) {
+        continue;
+      } else if ( last && part.startsWith( GetXMLDataMeta.AT ) ) {
+        attribute = part.substring( GetXMLDataMeta.AT.length() );
+        if ( !NAME.matcher( attribute ).matches() ) {
+          return null;
+        }
+      } else if ( last && part.equals( TEXT ) ) {
+        text = true;
+      } else if ( isStep( part ) ) {
+        steps.add( part );
+      } else {
+        return null;
+      }
+    }
+    if ( ups > 0 && ( attribute == null || !steps.isEmpty() || ups > loopDepth ) ) {
+      // only the attributes of the ancestors are known before the loop node ends
+      return null;
+    }
+    return new FieldPath( steps.toArray( new String[steps.size()] ), ups, attribute, text );
+  }
+
+  private static boolean isStep( String step ) {
+    return step.equals( ANY ) || NAME.matcher( step ).matches();
+  }
+
+  /**
+   * Starts reading a document.
+   *
+   * @param inputStream the document, closed by {@link #close()}
+   */
+  public void open( InputStream inputStream ) throws XMLStreamException {
+    close();
+    if ( factory == null ) {
+      factory = XMLInputFactory.newInstance();
+      factory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.TRUE );
+      // like IgnoreDTDEntityResolver, external entities are not read
+      factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+    }
+    stream = inputStream;
+    xml = factory.createXMLStreamReader( inputStream );
+    depth = 0;
+    loopMatched = 0;
+    inLoop = false;
+  }
+
+  /**
+   * @return true while a document is open
+   */
+  public boolean isOpen() {
+    return xml != null;
+  }
+
+  /**
+   * Reads up to the end of the next loop node.
+   *
+   * @return the values of the fields for the loop node, null at the end of the document
+   */
+  public String[] next() throws XMLStreamException {
+    while ( xml.hasNext() ) {
+      switch ( xml.next() ) {
+        case XMLStreamConstants.START_ELEMENT:
+          depth++;
+          if ( inLoop ) {
+            startInLoop( depth - loopSteps.length );
+          } else if ( depth == loopMatched + 1 && depth <= loopSteps.length && matches( loopSteps[depth - 1] ) ) {
+            loopMatched = depth;
+            if ( keepAncestorAttributes ) {
+              ancestorAttributes.set( depth, attributes() );
+            }
+            if ( depth == loopSteps.length ) {
+              startLoopNode();
+            }
+          }
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          if ( inLoop ) {
+            if ( depth == loopSteps.length ) {
+              inLoop = false;
+              loopMatched--;
+              depth--;
+              return values();
+            }
+            endInLoop( depth - loopSteps.length );
+          } else if ( loopMatched == depth ) {
+            loopMatched--;
+          }
+          depth--;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if ( inLoop ) {
+            characters( depth - loopSteps.length );
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return null;
+  }
+
+  private void startLoopNode() {
+    inLoop = true;
+    for ( FieldPath field : fields ) {
+      field.reset();
+      if ( field.steps.length > 0 ) {
+        continue;
+      }
+      if ( field.ups > 0 ) {
+        field.setValue( getAttribute( ancestorAttributes.get( depth - field.ups ), field.attribute ) );
+      } else if ( field.attribute != null ) {
+        field.setValue( getAttribute( field.attribute ) );
+      } else {
+        field.captureDepth = 0;
+      }
+    }
+  }
+
+  private void startInLoop( int relativeDepth ) {
+    for ( FieldPath field : fields ) {
+      if ( field.done ) {
+        continue;
+      }
+      if ( field.text && field.captureDepth == relativeDepth - 1 && field.value.length() > 0 ) {
+        // a child element ends the first text node
+        field.done = true;
+        continue;
+      }
+      if ( field.captureDepth < 0 && field.matched == relativeDepth - 1 && relativeDepth <= field.steps.length
+          && matches( field.steps[relativeDepth - 1] ) ) {
+        field.matched = relativeDepth;
+        if ( relativeDepth == field.steps.length ) {
+          if ( field.attribute != null ) {
+            String value = getAttribute( field.attribute );
+            if ( value != null ) {
+              field.setValue( value );
+            }
+          } else {
+            field.captureDepth = relativeDepth;
+          }
+        }
+      }
+    }
+  }
+
+  private void endInLoop( int relativeDepth ) {
+    for ( FieldPath field : fields ) {
+      if ( field.done ) {
+        continue;
+      }
+      if ( field.captureDepth == relativeDepth ) {
+        if ( field.text && field.value.length() == 0 ) {
+          // no text in this element, look further
+          field.captureDepth = -1;
+        } else {
+          field.done = true;
+        }
+      }
+      if ( field.matched == relativeDepth ) {
+        field.matched--;
+      }
+    }
+  }
+
+  private void characters( int relativeDepth ) {
+    for ( FieldPath field : fields ) {
+      if ( !field.done && field.captureDepth >= 0
+          && ( field.text ? relativeDepth == field.captureDepth : relativeDepth >= field.captureDepth ) ) {
+        field.value.append( xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength() );
+      }
+    }
+  }
+
+  private String[] values() {
+    String[] values = new String[fields.length];
+    for ( int i = 0; i < fields.length; i++ ) {
+      values[i] = fields[i].value.toString();
+    }
+    return values;
+  }
+
+  private boolean matches( String step ) {
+    if ( step.equals( ANY ) ) {
+      return true;
+    }
+    String namespace = xml.getNamespaceURI();
+    return ( namespace == null || namespace.isEmpty() ) && step.equals( xml.getLocalName() );
+  }
+
+  private String getAttribute( String name ) {
+    for ( int i = 0; i < xml.getAttributeCount(); i++ ) {
+      String namespace = xml.getAttributeNamespace( i );
+      if ( ( namespace == null || namespace.isEmpty() ) && name.equals( xml.getAttributeLocalName( i ) ) ) {
+        return xml.getAttributeValue( i );
+      }
+    }
+    return null;
+  }
+
+  private List<String[]> attributes() {
+    List<String[]> attributes = new ArrayList<String[]>( xml.getAttributeCount() );
+    for ( int i = 0; i < xml.getAttributeCount(); i++ ) {
+      String namespace = xml.getAttributeNamespace( i );
+      if ( namespace == null || namespace.isEmpty() ) {
+        attributes.add( new String[] { xml.getAttributeLocalName( i ), xml.getAttributeValue( i ) } );
+      }
+    }
+    return attributes;
+  }
+
+  private static String getAttribute( List<String[]> attributes, String name ) {
+    if ( attributes != null ) {
+      for ( String[] attribute : attributes ) {
+        if ( attribute[0].equals( name ) ) {
+          return attribute[1];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Closes the document being read, if any.
+   */
+  public void close() {
+    try {
+      if ( xml != null ) {
+        xml.close();
+      }
+    } catch ( XMLStreamException e ) {
+      // nothing left to read
+    } finally {
+      xml = null;
+      try {
+        if ( stream != null ) {
+          stream.close();
+        }
+      } catch ( IOException e ) {
+        // nothing left to read
+      }
+      stream = null;
+    }
+  }
+
+  private static class FieldPath {
+    private final String[] steps;
+    private final int ups;
+    private final String attribute;
+    private final boolean text;
+
+    private final StringBuilder value = new StringBuilder();
+    // the number of leading steps matched by the current element and its ancestors below the loop node
+    private int matched;
+    // the depth below the loop node of the element whose text is captured, -1 if none
+    private int captureDepth;
+    private boolean done;
+
+    FieldPath( String[] steps, int ups, String attribute, boolean text ) {
+      this.steps = steps;
+      this.ups = ups;
+      this.attribute = attribute;
+      this.text = text;
+    }
+
+    void reset() {
+      value.setLength( 0 );
+      matched = 0;
+      captureDepth = -1;
+      done = false;
+    }
+
+    void setValue( String string ) {
+      if ( string != null ) {
+        value.append( string );
+      }
+      done = true;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Pentaho : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.trans.steps.getxmldata;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class StreamingXPathReaderTest {
+
+  private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<root version=\"2\">"
+      + " <orders region=\"north\">"
+      + "  <order id=\"1\"><customer><name>Ann</name></customer><line sku=\"a\">x</line><line sku=\"b\"/>"
+      + "   <note><![CDATA[fast & free]]></note></order>"
+      + "  <other><order id=\"9\"/></other>"
+      + "  <order id=\"2\">mixed<b>bold</b>tail<line>y</line></order>"
+      + " </orders>"
+      + " <orders region=\"south\"><order><line sku=\"c\"/></order></orders>"
+      + "</root>";
+
+  @Test
+  public void testChildAndAttributePaths() throws Exception {
+    StreamingXPathReader reader = StreamingXPathReader.compile( "/root/orders/order",
+      new String[] { "@id", "customer/name", "line/@sku", "line", "note", "../@region", "../../@version" } );
+    assertNotNull( reader );
+    reader.open( stream( XML ) );
+    assertArrayEquals( new String[] { "1", "Ann", "a", "x", "fast & free", "north", "2" }, reader.next() );
+    assertArrayEquals( new String[] { "2", "", "", "y", "", "north", "2" }, reader.next() );
+    assertArrayEquals( new String[] { "", "", "c", "", "", "south", "2" }, reader.next() );
+    assertNull( reader.next() );
+    reader.close();
+    assertFalse( reader.isOpen() );
+  }
+
+  @Test
+  public void testSelfAndText() throws Exception {
+    StreamingXPathReader reader = StreamingXPathReader.compile( "/root/*/order",
+      new String[] { ".", "text()", "./b" } );
+    reader.open( stream( XML ) );
+    // the whitespace before the note is a text node of the order
+    assertArrayEquals( new String[] { "Annx   fast & free", "   ", "" }, reader.next() );
+    assertArrayEquals( new String[] { "mixedboldtaily", "mixed", "bold" }, reader.next() );
+    assertArrayEquals( new String[] { "", "", "" }, reader.next() );
+    assertNull( reader.next() );
+    reader.close();
+  }
+
+  @Test
+  public void testNamespacedElementsDontMatch() throws Exception {
+    StreamingXPathReader reader = StreamingXPathReader.compile( "/root/item", new String[] { "." } );
+    reader.open( stream( "<root xmlns=\"urn:test\"><item>a</item></root>" ) );
+    assertNull( reader.next() );
+    reader.close();
+  }
+
+  @Test
+  public void testUnsupportedPaths() {
+    assertNull( StreamingXPathReader.compile( "//order", new String[] { "." } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order[1]", new String[] { "." } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "../name" } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "/root/name" } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "line[@sku='a']" } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "count(line)" } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "ns:line" } ) );
+    assertNull( StreamingXPathReader.compile( "/root/order", new String[] { "" } ) );
+  }
+
+  private ByteArrayInputStream stream( String xml ) {
+    return new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) );
+  }
+}
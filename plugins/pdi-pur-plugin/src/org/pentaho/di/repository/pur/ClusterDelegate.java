@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.pentaho.di.cluster.ClusterSchema;
 import org.pentaho.di.cluster.SlaveServer;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.repository.ObjectId;
 import org.pentaho.di.repository.Repository;
@@ -46,6 +47,8 @@ public class ClusterDelegate extends AbstractDelegate implements ITransformer, S
 
   private static final String PROP_SOCKETS_COMPRESSED = "SOCKETS_COMPRESSED"; //$NON-NLS-1$
 
+  private static final String PROP_SOCKETS_COMPRESSION_TYPE = "SOCKETS_COMPRESSION_TYPE"; //$NON-NLS-1$
+
   private static final String PROP_DYNAMIC = "DYNAMIC"; //$NON-NLS-1$
 
   private static final String NODE_ATTRIBUTES = "attributes"; //$NON-NLS-1$
@@ -76,6 +79,8 @@ public class ClusterDelegate extends AbstractDelegate implements ITransformer, S
     clusterSchema.setSocketsBufferSize( getString( rootNode, PROP_SOCKETS_BUFFER_SIZE ) );
     clusterSchema.setSocketsFlushInterval( getString( rootNode, PROP_SOCKETS_FLUSH_INTERVAL ) );
     clusterSchema.setSocketsCompressed( rootNode.getProperty( PROP_SOCKETS_COMPRESSED ).getBoolean() );
+    clusterSchema.setSocketsCompressionType( Const.NVL( getString( rootNode, PROP_SOCKETS_COMPRESSION_TYPE ),
+      ClusterSchema.DEFAULT_SOCKETS_COMPRESSION_TYPE ) );
     clusterSchema.setDynamic( rootNode.getProperty( PROP_DYNAMIC ).getBoolean() );
     DataNode attrNode = rootNode.getNode( NODE_ATTRIBUTES );
     // The slaves...
@@ -96,6 +101,7 @@ public class ClusterDelegate extends AbstractDelegate implements ITransformer, S
     rootNode.setProperty( PROP_SOCKETS_BUFFER_SIZE, clusterSchema.getSocketsBufferSize() );
     rootNode.setProperty( PROP_SOCKETS_FLUSH_INTERVAL, clusterSchema.getSocketsFlushInterval() );
     rootNode.setProperty( PROP_SOCKETS_COMPRESSED, clusterSchema.isSocketsCompressed() );
+    rootNode.setProperty( PROP_SOCKETS_COMPRESSION_TYPE, clusterSchema.getSocketsCompressionType() );
     rootNode.setProperty( PROP_DYNAMIC, clusterSchema.isDynamic() );
 
     DataNode attrNode = rootNode.addNode( NODE_ATTRIBUTES );
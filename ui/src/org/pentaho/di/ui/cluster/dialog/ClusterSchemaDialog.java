@@ -28,6 +28,7 @@ import java.util.List;
 
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -49,6 +50,7 @@ import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.cluster.ClusterSchema;
 import org.pentaho.di.cluster.SlaveServer;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.ui.core.PropsUI;
 import org.pentaho.di.ui.core.dialog.EnterSelectionDialog;
@@ -109,6 +111,8 @@ public class ClusterSchemaDialog extends Dialog {
 
   private Button wCompressed;
 
+  private CCombo wCompressionType;
+
   private Button wDynamic;
 
   private List<SlaveServer> slaveServers;
@@ -259,13 +263,36 @@ public class ClusterSchemaDialog extends Dialog {
     fdCompressed.right = new FormAttachment( 95, 0 );
     wCompressed.setLayoutData( fdCompressed );
 
+    // Which compression is used on the sockets?
+    Label wlCompressionType = new Label( shell, SWT.RIGHT );
+    props.setLook( wlCompressionType );
+    wlCompressionType.setText( BaseMessages.getString( PKG, "ClusterSchemaDialog.SocketDataCompressionType.Label" ) );
+    FormData fdlCompressionType = new FormData();
+    fdlCompressionType.top = new FormAttachment( wCompressed, margin );
+    fdlCompressionType.left = new FormAttachment( 0, 0 ); // First one in the left top corner
+    fdlCompressionType.right = new FormAttachment( middle, 0 );
+    wlCompressionType.setLayoutData( fdlCompressionType );
+
+    wCompressionType = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    props.setLook( wCompressionType );
+    for ( String providerName : CompressionProviderFactory.getInstance().getCompressionProviderNames() ) {
+      if ( !"None".equals( providerName ) ) {
+        wCompressionType.add( providerName );
+      }
+    }
+    FormData fdCompressionType = new FormData();
+    fdCompressionType.top = new FormAttachment( wCompressed, margin );
+    fdCompressionType.left = new FormAttachment( middle, margin ); // To the right of the label
+    fdCompressionType.right = new FormAttachment( 95, 0 );
+    wCompressionType.setLayoutData( fdCompressionType );
+
     // What are the sockets buffer sizes??
     Label wlDynamic = new Label( shell, SWT.RIGHT );
     wlDynamic.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Tooltip" ) );
     props.setLook( wlDynamic );
     wlDynamic.setText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Label" ) );
     FormData fdlDynamic = new FormData();
-    fdlDynamic.top = new FormAttachment( wCompressed, margin );
+    fdlDynamic.top = new FormAttachment( wCompressionType, margin );
     fdlDynamic.left = new FormAttachment( 0, 0 ); // First one in the left top corner
     fdlDynamic.right = new FormAttachment( middle, 0 );
     wlDynamic.setLayoutData( fdlDynamic );
@@ -274,7 +301,7 @@ public class ClusterSchemaDialog extends Dialog {
     wDynamic.setToolTipText( BaseMessages.getString( PKG, "ClusterSchemaDialog.DynamicCluster.Tooltip" ) );
     props.setLook( wDynamic );
     FormData fdDynamic = new FormData();
-    fdDynamic.top = new FormAttachment( wCompressed, margin );
+    fdDynamic.top = new FormAttachment( wCompressionType, margin );
     fdDynamic.left = new FormAttachment( middle, margin ); // To the right of the label
     fdDynamic.right = new FormAttachment( 95, 0 );
     wDynamic.setLayoutData( fdDynamic );
@@ -421,6 +448,7 @@ public class ClusterSchemaDialog extends Dialog {
     wBufferSize.setText( Const.NVL( clusterSchema.getSocketsBufferSize(), "" ) );
     wFlushInterval.setText( Const.NVL( clusterSchema.getSocketsFlushInterval(), "" ) );
     wCompressed.setSelection( clusterSchema.isSocketsCompressed() );
+    wCompressionType.setText( Const.NVL( clusterSchema.getSocketsCompressionType(), "" ) );
     wDynamic.setSelection( clusterSchema.isDynamic() );
 
     refreshSlaveServers();
@@ -470,6 +498,7 @@ public class ClusterSchemaDialog extends Dialog {
     originalSchema.setSocketsBufferSize( clusterSchema.getSocketsBufferSize() );
     originalSchema.setSocketsFlushInterval( clusterSchema.getSocketsFlushInterval() );
     originalSchema.setSocketsCompressed( clusterSchema.isSocketsCompressed() );
+    originalSchema.setSocketsCompressionType( clusterSchema.getSocketsCompressionType() );
     originalSchema.setDynamic( clusterSchema.isDynamic() );
     originalSchema.setSlaveServers( clusterSchema.getSlaveServers() );
     originalSchema.setChanged();
@@ -498,6 +527,7 @@ public class ClusterSchemaDialog extends Dialog {
     clusterSchema.setSocketsBufferSize( wBufferSize.getText() );
     clusterSchema.setSocketsFlushInterval( wFlushInterval.getText() );
     clusterSchema.setSocketsCompressed( wCompressed.getSelection() );
+    clusterSchema.setSocketsCompressionType( wCompressionType.getText() );
     clusterSchema.setDynamic( wDynamic.getSelection() );
 
     String[] names = SlaveServer.getSlaveServerNames( slaveServers );
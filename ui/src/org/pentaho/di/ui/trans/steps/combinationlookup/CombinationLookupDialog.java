@@ -55,6 +55,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.SQLStatement;
 import org.pentaho.di.core.database.Database;
@@ -101,6 +102,12 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
   private Label wlPreloadCache;
   private Button wPreloadCache;
 
+  private Label wlCachePolicy;
+  private CCombo wCachePolicy;
+
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+
   private Label wlTk;
   private Text wTk;
 
@@ -337,6 +344,46 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     fdPreloadCache.right = new FormAttachment( 100, 0 );
     wPreloadCache.setLayoutData( fdPreloadCache );
 
+    // Cache eviction policy
+    wlCachePolicy = new Label( shell, SWT.RIGHT );
+    wlCachePolicy.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.CachePolicy.Label" ) );
+    props.setLook( wlCachePolicy );
+    FormData fdlCachePolicy = new FormData();
+    fdlCachePolicy.top = new FormAttachment( wPreloadCache, margin );
+    fdlCachePolicy.left = new FormAttachment( wCommit, margin );
+    fdlCachePolicy.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlCachePolicy.setLayoutData( fdlCachePolicy );
+    wCachePolicy = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCachePolicy.setItems( EvictionPolicy.getDescriptions() );
+    props.setLook( wCachePolicy );
+    wCachePolicy.addModifyListener( lsMod );
+    FormData fdCachePolicy = new FormData();
+    fdCachePolicy.top = new FormAttachment( wPreloadCache, margin );
+    fdCachePolicy.left = new FormAttachment( wlCachePolicy, margin );
+    fdCachePolicy.right = new FormAttachment( 100, 0 );
+    wCachePolicy.setLayoutData( fdCachePolicy );
+    wCachePolicy.setToolTipText( BaseMessages.getString( PKG, "CombinationLookupDialog.CachePolicy.ToolTip" ) );
+
+    // Cache memory limit
+    wlCacheMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "CombinationLookupDialog.CacheMemoryLimit.Label" ) );
+    props.setLook( wlCacheMemoryLimit );
+    FormData fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    fdlCacheMemoryLimit.left = new FormAttachment( wCommit, margin );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle + 2 * ( 100 - middle ) / 3, -margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    FormData fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    fdCacheMemoryLimit.left = new FormAttachment( wlCacheMemoryLimit, margin );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+    wCacheMemoryLimit.setToolTipText(
+      BaseMessages.getString( PKG, "CombinationLookupDialog.CacheMemoryLimit.ToolTip" ) );
+
     //
     // The Lookup fields: usually the (business) key
     //
@@ -345,7 +392,7 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     props.setLook( wlKey );
     FormData fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wlPreloadCache, margin );
+    fdlKey.top = new FormAttachment( wCacheMemoryLimit, margin );
     fdlKey.right = new FormAttachment( 100, 0 );
     wlKey.setLayoutData( fdlKey );
 
@@ -624,6 +671,7 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
     wSeq.addSelectionListener( lsDef );
     wTk.addSelectionListener( lsDef );
     wCachesize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
     wHashfield.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
@@ -853,6 +901,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
 
     wCommit.setText( "" + input.getCommitSize() );
     wCachesize.setText( "" + input.getCacheSize() );
+    wCachePolicy.setText( EvictionPolicy.getPolicyByCode( input.getCachePolicy() ).getDescription() );
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
 
     wLastUpdateField.setText( Const.NVL( input.getLastUpdateField(), "" ) );
 
@@ -930,6 +980,8 @@ public class CombinationLookupDialog extends BaseStepDialog implements StepDialo
 
     in.setCommitSize( Const.toInt( wCommit.getText(), 0 ) );
     in.setCacheSize( Const.toInt( wCachesize.getText(), 0 ) );
+    in.setCachePolicy( EvictionPolicy.getPolicyByDescription( wCachePolicy.getText() ).getCode() );
+    in.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
 
     in.setLastUpdateField( wLastUpdateField.getText() );
   }
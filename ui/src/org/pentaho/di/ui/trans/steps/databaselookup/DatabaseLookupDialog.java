@@ -48,6 +48,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.database.Database;
 import org.pentaho.di.core.database.DatabaseMeta;
@@ -87,6 +88,22 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
   private Text wCachesize;
   private FormData fdlCachesize, fdCachesize;
 
+  private Label wlCachePolicy;
+  private CCombo wCachePolicy;
+  private FormData fdlCachePolicy, fdCachePolicy;
+
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+  private FormData fdlCacheMemoryLimit, fdCacheMemoryLimit;
+
+  private Label wlBatchSize;
+  private Text wBatchSize;
+  private FormData fdlBatchSize, fdBatchSize;
+
+  private Label wlBatchesInFlight;
+  private Text wBatchesInFlight;
+  private FormData fdlBatchesInFlight, fdBatchesInFlight;
+
   private Label wlKey;
   private TableView wKey;
   private FormData fdlKey, fdKey;
@@ -333,12 +350,94 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
       }
     } );
 
+    // Cache eviction policy line
+    wlCachePolicy = new Label( shell, SWT.RIGHT );
+    wlCachePolicy.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CachePolicy.Label" ) );
+    props.setLook( wlCachePolicy );
+    fdlCachePolicy = new FormData();
+    fdlCachePolicy.left = new FormAttachment( 0, 0 );
+    fdlCachePolicy.right = new FormAttachment( middle, -margin );
+    fdlCachePolicy.top = new FormAttachment( wCacheLoadAll, margin );
+    wlCachePolicy.setLayoutData( fdlCachePolicy );
+    wCachePolicy = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCachePolicy.setItems( EvictionPolicy.getDescriptions() );
+    wCachePolicy.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CachePolicy.Tooltip" ) );
+    props.setLook( wCachePolicy );
+    wCachePolicy.addModifyListener( lsMod );
+    fdCachePolicy = new FormData();
+    fdCachePolicy.left = new FormAttachment( middle, 0 );
+    fdCachePolicy.right = new FormAttachment( 100, 0 );
+    fdCachePolicy.top = new FormAttachment( wCacheLoadAll, margin );
+    wCachePolicy.setLayoutData( fdCachePolicy );
+
+    // Cache memory limit line
+    wlCacheMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheMemoryLimit.Label" ) );
+    props.setLook( wlCacheMemoryLimit );
+    fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle, -margin );
+    fdlCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wCacheMemoryLimit.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.CacheMemoryLimit.Tooltip" ) );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    fdCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+
+    // Batch size line
+    wlBatchSize = new Label( shell, SWT.RIGHT );
+    wlBatchSize.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchSize.Label" ) );
+    props.setLook( wlBatchSize );
+    fdlBatchSize = new FormData();
+    fdlBatchSize.left = new FormAttachment( 0, 0 );
+    fdlBatchSize.right = new FormAttachment( middle, -margin );
+    fdlBatchSize.top = new FormAttachment( wCacheMemoryLimit, margin );
+    wlBatchSize.setLayoutData( fdlBatchSize );
+    wBatchSize = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wBatchSize.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchSize.Tooltip" ) );
+    props.setLook( wBatchSize );
+    wBatchSize.addModifyListener( lsMod );
+    wBatchSize.addModifyListener( new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        enableFields();
+      }
+    } );
+    fdBatchSize = new FormData();
+    fdBatchSize.left = new FormAttachment( middle, 0 );
+    fdBatchSize.right = new FormAttachment( 100, 0 );
+    fdBatchSize.top = new FormAttachment( wCacheMemoryLimit, margin );
+    wBatchSize.setLayoutData( fdBatchSize );
+
+    // Batches in flight line
+    wlBatchesInFlight = new Label( shell, SWT.RIGHT );
+    wlBatchesInFlight.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchesInFlight.Label" ) );
+    props.setLook( wlBatchesInFlight );
+    fdlBatchesInFlight = new FormData();
+    fdlBatchesInFlight.left = new FormAttachment( 0, 0 );
+    fdlBatchesInFlight.right = new FormAttachment( middle, -margin );
+    fdlBatchesInFlight.top = new FormAttachment( wBatchSize, margin );
+    wlBatchesInFlight.setLayoutData( fdlBatchesInFlight );
+    wBatchesInFlight = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wBatchesInFlight.setToolTipText( BaseMessages.getString( PKG, "DatabaseLookupDialog.BatchesInFlight.Tooltip" ) );
+    props.setLook( wBatchesInFlight );
+    wBatchesInFlight.addModifyListener( lsMod );
+    fdBatchesInFlight = new FormData();
+    fdBatchesInFlight.left = new FormAttachment( middle, 0 );
+    fdBatchesInFlight.right = new FormAttachment( 100, 0 );
+    fdBatchesInFlight.top = new FormAttachment( wBatchSize, margin );
+    wBatchesInFlight.setLayoutData( fdBatchesInFlight );
+
     wlKey = new Label( shell, SWT.NONE );
     wlKey.setText( BaseMessages.getString( PKG, "DatabaseLookupDialog.Keys.Label" ) );
     props.setLook( wlKey );
     fdlKey = new FormData();
     fdlKey.left = new FormAttachment( 0, 0 );
-    fdlKey.top = new FormAttachment( wCacheLoadAll, margin );
+    fdlKey.top = new FormAttachment( wBatchesInFlight, margin );
     wlKey.setLayoutData( fdlKey );
 
     int nrKeyCols = 4;
@@ -530,6 +629,9 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wTable.addSelectionListener( lsDef );
     wOrderBy.addSelectionListener( lsDef );
     wCachesize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
+    wBatchSize.addSelectionListener( lsDef );
+    wBatchesInFlight.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -641,8 +743,17 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wlCachesize.setEnabled( wCache.getSelection() && !wCacheLoadAll.getSelection() );
     wCacheLoadAll.setEnabled( wCache.getSelection() );
     wlCacheLoadAll.setEnabled( wCache.getSelection() );
+    boolean boundedCache = wCache.getSelection() && !wCacheLoadAll.getSelection();
+    wlCachePolicy.setEnabled( boundedCache );
+    wCachePolicy.setEnabled( boundedCache );
+    wlCacheMemoryLimit.setEnabled( boundedCache );
+    wCacheMemoryLimit.setEnabled( boundedCache );
     wFailMultiple.setEnabled( !wCache.getSelection() );
     wlFailMultiple.setEnabled( !wCache.getSelection() );
+
+    boolean batch = Const.toInt( wBatchSize.getText(), 0 ) > 1;
+    wlBatchesInFlight.setEnabled( batch );
+    wBatchesInFlight.setEnabled( batch );
   }
 
   /**
@@ -654,6 +765,10 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     wCache.setSelection( input.isCached() );
     wCachesize.setText( "" + input.getCacheSize() );
     wCacheLoadAll.setSelection( input.isLoadingAllDataInCache() );
+    wCachePolicy.setText( EvictionPolicy.getPolicyByCode( input.getCachePolicy() ).getDescription() );
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
+    wBatchSize.setText( "" + input.getBatchSize() );
+    wBatchesInFlight.setText( "" + input.getBatchesInFlight() );
 
     if ( input.getStreamKeyField1() != null ) {
       for ( int i = 0; i < input.getStreamKeyField1().length; i++ ) {
@@ -738,6 +853,10 @@ public class DatabaseLookupDialog extends BaseStepDialog implements StepDialogIn
     input.setCached( wCache.getSelection() );
     input.setCacheSize( Const.toInt( wCachesize.getText(), 0 ) );
     input.setLoadingAllDataInCache( wCacheLoadAll.getSelection() );
+    input.setCachePolicy( EvictionPolicy.getPolicyByDescription( wCachePolicy.getText() ).getCode() );
+    input.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
+    input.setBatchSize( Const.toInt( wBatchSize.getText(), 0 ) );
+    input.setBatchesInFlight( Math.max( 1, Const.toInt( wBatchesInFlight.getText(), 1 ) ) );
 
     logDebug( BaseMessages.getString( PKG, "DatabaseLookupDialog.Log.FoundKeys", String.valueOf( nrkeys ) ) );
     //CHECKSTYLE:Indentation:OFF
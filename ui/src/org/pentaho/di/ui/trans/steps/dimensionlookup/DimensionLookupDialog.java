@@ -63,6 +63,7 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.cache.EvictionPolicy;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.Props;
 import org.pentaho.di.core.SQLStatement;
@@ -130,6 +131,12 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
   private Label wlCacheSize;
   private Text wCacheSize;
 
+  private Label wlCachePolicy;
+  private CCombo wCachePolicy;
+
+  private Label wlCacheMemoryLimit;
+  private Text wCacheMemoryLimit;
+
   private Label wlTk;
   private CCombo wTk;
 
@@ -482,6 +489,46 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     fdCacheSize.right = new FormAttachment( 100, 0 );
     wCacheSize.setLayoutData( fdCacheSize );
 
+    // Cache eviction policy ...
+    wlCachePolicy = new Label( comp, SWT.RIGHT );
+    wlCachePolicy.setText( BaseMessages.getString( PKG, "DimensionLookupDialog.CachePolicy.Label" ) );
+    props.setLook( wlCachePolicy );
+    FormData fdlCachePolicy = new FormData();
+    fdlCachePolicy.left = new FormAttachment( 0, 0 );
+    fdlCachePolicy.right = new FormAttachment( middle, -margin );
+    fdlCachePolicy.top = new FormAttachment( wCacheSize, margin );
+    wlCachePolicy.setLayoutData( fdlCachePolicy );
+    wCachePolicy = new CCombo( comp, SWT.BORDER | SWT.READ_ONLY );
+    wCachePolicy.setItems( EvictionPolicy.getDescriptions() );
+    wCachePolicy.setToolTipText( BaseMessages.getString( PKG, "DimensionLookupDialog.CachePolicy.Tooltip" ) );
+    props.setLook( wCachePolicy );
+    wCachePolicy.addModifyListener( lsMod );
+    FormData fdCachePolicy = new FormData();
+    fdCachePolicy.left = new FormAttachment( middle, 0 );
+    fdCachePolicy.top = new FormAttachment( wCacheSize, margin );
+    fdCachePolicy.right = new FormAttachment( 100, 0 );
+    wCachePolicy.setLayoutData( fdCachePolicy );
+
+    // Cache memory limit ...
+    wlCacheMemoryLimit = new Label( comp, SWT.RIGHT );
+    wlCacheMemoryLimit.setText( BaseMessages.getString( PKG, "DimensionLookupDialog.CacheMemoryLimit.Label" ) );
+    props.setLook( wlCacheMemoryLimit );
+    FormData fdlCacheMemoryLimit = new FormData();
+    fdlCacheMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlCacheMemoryLimit.right = new FormAttachment( middle, -margin );
+    fdlCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    wlCacheMemoryLimit.setLayoutData( fdlCacheMemoryLimit );
+    wCacheMemoryLimit = new Text( comp, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wCacheMemoryLimit.setToolTipText(
+      BaseMessages.getString( PKG, "DimensionLookupDialog.CacheMemoryLimit.Tooltip" ) );
+    props.setLook( wCacheMemoryLimit );
+    wCacheMemoryLimit.addModifyListener( lsMod );
+    FormData fdCacheMemoryLimit = new FormData();
+    fdCacheMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdCacheMemoryLimit.top = new FormAttachment( wCachePolicy, margin );
+    fdCacheMemoryLimit.right = new FormAttachment( 100, 0 );
+    wCacheMemoryLimit.setLayoutData( fdCacheMemoryLimit );
+
     wlTkRename = new Label( comp, SWT.RIGHT );
 
     wTabFolder = new CTabFolder( comp, SWT.BORDER );
@@ -639,7 +686,7 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
 
     fdTabFolder = new FormData();
     fdTabFolder.left = new FormAttachment( 0, 0 );
-    fdTabFolder.top = new FormAttachment( wCacheSize, margin );
+    fdTabFolder.top = new FormAttachment( wCacheMemoryLimit, margin );
     fdTabFolder.right = new FormAttachment( 100, 0 );
     fdTabFolder.height = 200;
     wTabFolder.setLayoutData( fdTabFolder );
@@ -1073,6 +1120,7 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     wTable.addSelectionListener( lsDef );
     wCommit.addSelectionListener( lsDef );
     wCacheSize.addSelectionListener( lsDef );
+    wCacheMemoryLimit.addSelectionListener( lsDef );
     wTk.addSelectionListener( lsDef );
     wTkRename.addSelectionListener( lsDef );
     wSeq.addSelectionListener( lsDef );
@@ -1203,6 +1251,10 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
 
     wlCacheSize.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
     wCacheSize.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wlCachePolicy.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wCachePolicy.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wlCacheMemoryLimit.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
+    wCacheMemoryLimit.setEnabled( wUseCache.getSelection() && !wPreloadCache.getSelection() );
 
   }
 
@@ -1374,6 +1426,8 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     if ( input.getCacheSize() >= 0 ) {
       wCacheSize.setText( "" + input.getCacheSize() );
     }
+    wCachePolicy.setText( EvictionPolicy.getPolicyByCode( input.getCachePolicy() ).getDescription() );
+    wCacheMemoryLimit.setText( "" + input.getCacheMemoryLimit() );
 
     wMinyear.setText( "" + input.getMinYear() );
     wMaxyear.setText( "" + input.getMaxYear() );
@@ -1494,6 +1548,8 @@ public class DimensionLookupDialog extends BaseStepDialog implements StepDialogI
     } else {
       in.setCacheSize( -1 );
     }
+    in.setCachePolicy( EvictionPolicy.getPolicyByDescription( wCachePolicy.getText() ).getCode() );
+    in.setCacheMemoryLimit( Const.toInt( wCacheMemoryLimit.getText(), 0 ) );
     in.setPreloadingCache( wPreloadCache.getSelection() );
     if ( wPreloadCache.getSelection() ) {
       in.setCacheSize( 0 );
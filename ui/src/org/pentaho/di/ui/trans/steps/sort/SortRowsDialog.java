@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -50,6 +51,7 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.compress.CompressionProviderFactory;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
@@ -88,10 +90,26 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
   private TextVar wFreeMemory;
   private FormData fdlFreeMemory, fdFreeMemory;
 
+  private Label wlMemoryLimit;
+  private TextVar wMemoryLimit;
+  private FormData fdlMemoryLimit, fdMemoryLimit;
+
   private Label wlCompress;
   private CheckBoxVar wCompress;
   private FormData fdlCompress, fdCompress;
 
+  private Label wlCompressionType;
+  private CCombo wCompressionType;
+  private FormData fdlCompressionType, fdCompressionType;
+
+  private Label wlMaxMergeFiles;
+  private TextVar wMaxMergeFiles;
+  private FormData fdlMaxMergeFiles, fdMaxMergeFiles;
+
+  private Label wlParallelSort;
+  private Button wParallelSort;
+  private FormData fdlParallelSort, fdParallelSort;
+
   private Label wlUniqueRows;
   private Button wUniqueRows;
   private FormData fdlUniqueRows, fdUniqueRows;
@@ -261,6 +279,26 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     fdFreeMemory.right = new FormAttachment( 100, 0 );
     wFreeMemory.setLayoutData( fdFreeMemory );
 
+    // Memory to reserve for the rows in memory
+    wlMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlMemoryLimit.setText( BaseMessages.getString( PKG, "SortRowsDialog.MemoryLimit.Label" ) );
+    wlMemoryLimit.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.MemoryLimit.ToolTip" ) );
+    props.setLook( wlMemoryLimit );
+    fdlMemoryLimit = new FormData();
+    fdlMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlMemoryLimit.right = new FormAttachment( middle, -margin );
+    fdlMemoryLimit.top = new FormAttachment( wFreeMemory, margin * 2 );
+    wlMemoryLimit.setLayoutData( fdlMemoryLimit );
+    wMemoryLimit = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wMemoryLimit.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.MemoryLimit.ToolTip" ) );
+    props.setLook( wMemoryLimit );
+    wMemoryLimit.addModifyListener( lsMod );
+    fdMemoryLimit = new FormData();
+    fdMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdMemoryLimit.top = new FormAttachment( wFreeMemory, margin * 2 );
+    fdMemoryLimit.right = new FormAttachment( 100, 0 );
+    wMemoryLimit.setLayoutData( fdMemoryLimit );
+
     // Using compression for temporary files?
     wlCompress = new Label( shell, SWT.RIGHT );
     wlCompress.setText( BaseMessages.getString( PKG, "SortRowsDialog.Compress.Label" ) );
@@ -268,13 +306,13 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     fdlCompress = new FormData();
     fdlCompress.left = new FormAttachment( 0, 0 );
     fdlCompress.right = new FormAttachment( middle, -margin );
-    fdlCompress.top = new FormAttachment( wFreeMemory, margin * 2 );
+    fdlCompress.top = new FormAttachment( wMemoryLimit, margin * 2 );
     wlCompress.setLayoutData( fdlCompress );
     wCompress = new CheckBoxVar( transMeta, shell, SWT.CHECK, "" );
     props.setLook( wCompress );
     fdCompress = new FormData();
     fdCompress.left = new FormAttachment( middle, 0 );
-    fdCompress.top = new FormAttachment( wFreeMemory, margin * 2 );
+    fdCompress.top = new FormAttachment( wMemoryLimit, margin * 2 );
     fdCompress.right = new FormAttachment( 100, 0 );
     wCompress.setLayoutData( fdCompress );
     wCompress.addSelectionListener( new SelectionAdapter() {
@@ -285,6 +323,71 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
       }
     } );
 
+    // Which compression to use for the temporary files?
+    wlCompressionType = new Label( shell, SWT.RIGHT );
+    wlCompressionType.setText( BaseMessages.getString( PKG, "SortRowsDialog.CompressionType.Label" ) );
+    wlCompressionType.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.CompressionType.Tooltip" ) );
+    props.setLook( wlCompressionType );
+    fdlCompressionType = new FormData();
+    fdlCompressionType.left = new FormAttachment( 0, 0 );
+    fdlCompressionType.right = new FormAttachment( middle, -margin );
+    fdlCompressionType.top = new FormAttachment( wCompress, margin );
+    wlCompressionType.setLayoutData( fdlCompressionType );
+    wCompressionType = new CCombo( shell, SWT.BORDER | SWT.READ_ONLY );
+    wCompressionType.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.CompressionType.Tooltip" ) );
+    wCompressionType.setItems( CompressionProviderFactory.getInstance().getCompressionProviderNames() );
+    props.setLook( wCompressionType );
+    wCompressionType.addModifyListener( lsMod );
+    fdCompressionType = new FormData();
+    fdCompressionType.left = new FormAttachment( middle, 0 );
+    fdCompressionType.top = new FormAttachment( wCompress, margin );
+    fdCompressionType.right = new FormAttachment( 100, 0 );
+    wCompressionType.setLayoutData( fdCompressionType );
+
+    // How many temporary files to merge at once?
+    wlMaxMergeFiles = new Label( shell, SWT.RIGHT );
+    wlMaxMergeFiles.setText( BaseMessages.getString( PKG, "SortRowsDialog.MaxMergeFiles.Label" ) );
+    wlMaxMergeFiles.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.MaxMergeFiles.Tooltip" ) );
+    props.setLook( wlMaxMergeFiles );
+    fdlMaxMergeFiles = new FormData();
+    fdlMaxMergeFiles.left = new FormAttachment( 0, 0 );
+    fdlMaxMergeFiles.right = new FormAttachment( middle, -margin );
+    fdlMaxMergeFiles.top = new FormAttachment( wCompressionType, margin );
+    wlMaxMergeFiles.setLayoutData( fdlMaxMergeFiles );
+    wMaxMergeFiles = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wMaxMergeFiles.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.MaxMergeFiles.Tooltip" ) );
+    props.setLook( wMaxMergeFiles );
+    wMaxMergeFiles.addModifyListener( lsMod );
+    fdMaxMergeFiles = new FormData();
+    fdMaxMergeFiles.left = new FormAttachment( middle, 0 );
+    fdMaxMergeFiles.top = new FormAttachment( wCompressionType, margin );
+    fdMaxMergeFiles.right = new FormAttachment( 100, 0 );
+    wMaxMergeFiles.setLayoutData( fdMaxMergeFiles );
+
+    // Sort using all processors?
+    wlParallelSort = new Label( shell, SWT.RIGHT );
+    wlParallelSort.setText( BaseMessages.getString( PKG, "SortRowsDialog.ParallelSort.Label" ) );
+    props.setLook( wlParallelSort );
+    fdlParallelSort = new FormData();
+    fdlParallelSort.left = new FormAttachment( 0, 0 );
+    fdlParallelSort.right = new FormAttachment( middle, -margin );
+    fdlParallelSort.top = new FormAttachment( wMaxMergeFiles, margin );
+    wlParallelSort.setLayoutData( fdlParallelSort );
+    wParallelSort = new Button( shell, SWT.CHECK );
+    wParallelSort.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.ParallelSort.Tooltip" ) );
+    props.setLook( wParallelSort );
+    fdParallelSort = new FormData();
+    fdParallelSort.left = new FormAttachment( middle, 0 );
+    fdParallelSort.top = new FormAttachment( wMaxMergeFiles, margin );
+    fdParallelSort.right = new FormAttachment( 100, 0 );
+    wParallelSort.setLayoutData( fdParallelSort );
+    wParallelSort.addSelectionListener( new SelectionAdapter() {
+      @Override
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
     // Using compression for temporary files?
     wlUniqueRows = new Label( shell, SWT.RIGHT );
     wlUniqueRows.setText( BaseMessages.getString( PKG, "SortRowsDialog.UniqueRows.Label" ) );
@@ -292,14 +395,14 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     fdlUniqueRows = new FormData();
     fdlUniqueRows.left = new FormAttachment( 0, 0 );
     fdlUniqueRows.right = new FormAttachment( middle, -margin );
-    fdlUniqueRows.top = new FormAttachment( wCompress, margin );
+    fdlUniqueRows.top = new FormAttachment( wParallelSort, margin );
     wlUniqueRows.setLayoutData( fdlUniqueRows );
     wUniqueRows = new Button( shell, SWT.CHECK );
     wUniqueRows.setToolTipText( BaseMessages.getString( PKG, "SortRowsDialog.UniqueRows.Tooltip" ) );
     props.setLook( wUniqueRows );
     fdUniqueRows = new FormData();
     fdUniqueRows.left = new FormAttachment( middle, 0 );
-    fdUniqueRows.top = new FormAttachment( wCompress, margin );
+    fdUniqueRows.top = new FormAttachment( wParallelSort, margin );
     fdUniqueRows.right = new FormAttachment( 100, 0 );
     wUniqueRows.setLayoutData( fdUniqueRows );
 
@@ -427,6 +530,8 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     wPrefix.addSelectionListener( lsDef );
     wSortSize.addSelectionListener( lsDef );
     wFreeMemory.addSelectionListener( lsDef );
+    wMemoryLimit.addSelectionListener( lsDef );
+    wMaxMergeFiles.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window...
     shell.addShellListener( new ShellAdapter() {
@@ -491,8 +596,12 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     }
     wSortSize.setText( Const.NVL( input.getSortSize(), "" ) );
     wFreeMemory.setText( Const.NVL( input.getFreeMemoryLimit(), "" ) );
+    wMemoryLimit.setText( Const.NVL( input.getMemoryLimit(), "" ) );
     wCompress.setSelection( input.getCompressFiles() );
     wCompress.setVariableName( input.getCompressFilesVariable() );
+    wCompressionType.setText( Const.NVL( input.getCompressionType(), "" ) );
+    wMaxMergeFiles.setText( Const.NVL( input.getMaxMergeFiles(), "" ) );
+    wParallelSort.setSelection( input.isParallelSort() );
     wUniqueRows.setSelection( input.isOnlyPassingUniqueRows() );
 
     Table table = wFields.table;
@@ -540,9 +649,13 @@ public class SortRowsDialog extends BaseStepDialog implements StepDialogInterfac
     input.setDirectory( wSortDir.getText() );
     input.setSortSize( wSortSize.getText() );
     input.setFreeMemoryLimit( wFreeMemory.getText() );
+    input.setMemoryLimit( wMemoryLimit.getText() );
     log.logDetailed( "Sort rows", "Compression is set to " + wCompress.getSelection() );
     input.setCompressFiles( wCompress.getSelection() );
     input.setCompressFilesVariable( wCompress.getVariableName() );
+    input.setCompressionType( wCompressionType.getText() );
+    input.setMaxMergeFiles( wMaxMergeFiles.getText() );
+    input.setParallelSort( wParallelSort.getSelection() );
     input.setOnlyPassingUniqueRows( wUniqueRows.getSelection() );
 
     // Table table = wFields.table;
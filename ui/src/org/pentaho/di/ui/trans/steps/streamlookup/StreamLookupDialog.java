@@ -64,6 +64,7 @@ import org.pentaho.di.trans.steps.streamlookup.StreamLookupMeta;
 import org.pentaho.di.ui.core.dialog.ErrorDialog;
 import org.pentaho.di.ui.core.widget.ColumnInfo;
 import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
 public class StreamLookupDialog extends BaseStepDialog implements StepDialogInterface {
@@ -93,6 +94,22 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
   private Button wIntegerPair;
   private FormData fdlIntegerPair, fdIntegerPair;
 
+  private Label wlSlabHashIndex;
+  private Button wSlabHashIndex;
+  private FormData fdlSlabHashIndex, fdSlabHashIndex;
+
+  private Label wlSlabOffHeap;
+  private Button wSlabOffHeap;
+  private FormData fdlSlabOffHeap, fdSlabOffHeap;
+
+  private Label wlOverflowToDisk;
+  private Button wOverflowToDisk;
+  private FormData fdlOverflowToDisk, fdOverflowToDisk;
+
+  private Label wlOverflowMemoryLimit;
+  private TextVar wOverflowMemoryLimit;
+  private FormData fdlOverflowMemoryLimit, fdOverflowMemoryLimit;
+
   private StreamLookupMeta input;
 
   private Button wGetLU;
@@ -258,7 +275,7 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     fdReturn.left = new FormAttachment( 0, 0 );
     fdReturn.top = new FormAttachment( wlReturn, margin );
     fdReturn.right = new FormAttachment( 100, 0 );
-    fdReturn.bottom = new FormAttachment( 100, -125 );
+    fdReturn.bottom = new FormAttachment( 100, -225 );
     wReturn.setLayoutData( fdReturn );
 
     wlPreserveMemory = new Label( shell, SWT.RIGHT );
@@ -325,15 +342,106 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
         input.setChanged();
       }
     } );
+
+    wlSlabHashIndex = new Label( shell, SWT.RIGHT );
+    wlSlabHashIndex.setText( BaseMessages.getString( PKG, "StreamLookupDialog.SlabHashIndex.Label" ) );
+    wlSlabHashIndex.setToolTipText( BaseMessages.getString( PKG, "StreamLookupDialog.SlabHashIndex.Tooltip" ) );
+    props.setLook( wlSlabHashIndex );
+    fdlSlabHashIndex = new FormData();
+    fdlSlabHashIndex.left = new FormAttachment( 0, 0 );
+    fdlSlabHashIndex.top = new FormAttachment( wSortedList, margin );
+    fdlSlabHashIndex.right = new FormAttachment( middle, -margin );
+    wlSlabHashIndex.setLayoutData( fdlSlabHashIndex );
+    wSlabHashIndex = new Button( shell, SWT.RADIO );
+    wSlabHashIndex.setEnabled( false );
+    props.setLook( wSlabHashIndex );
+    fdSlabHashIndex = new FormData();
+    fdSlabHashIndex.left = new FormAttachment( middle, 0 );
+    fdSlabHashIndex.top = new FormAttachment( wSortedList, margin );
+    fdSlabHashIndex.right = new FormAttachment( 100, 0 );
+    wSlabHashIndex.setLayoutData( fdSlabHashIndex );
+    wSlabHashIndex.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
+    wlSlabOffHeap = new Label( shell, SWT.RIGHT );
+    wlSlabOffHeap.setText( BaseMessages.getString( PKG, "StreamLookupDialog.SlabOffHeap.Label" ) );
+    wlSlabOffHeap.setToolTipText( BaseMessages.getString( PKG, "StreamLookupDialog.SlabOffHeap.Tooltip" ) );
+    props.setLook( wlSlabOffHeap );
+    fdlSlabOffHeap = new FormData();
+    fdlSlabOffHeap.left = new FormAttachment( 0, 0 );
+    fdlSlabOffHeap.top = new FormAttachment( wSlabHashIndex, margin );
+    fdlSlabOffHeap.right = new FormAttachment( middle, -margin );
+    wlSlabOffHeap.setLayoutData( fdlSlabOffHeap );
+    wSlabOffHeap = new Button( shell, SWT.CHECK );
+    wSlabOffHeap.setEnabled( false );
+    props.setLook( wSlabOffHeap );
+    fdSlabOffHeap = new FormData();
+    fdSlabOffHeap.left = new FormAttachment( middle, 0 );
+    fdSlabOffHeap.top = new FormAttachment( wSlabHashIndex, margin );
+    fdSlabOffHeap.right = new FormAttachment( 100, 0 );
+    wSlabOffHeap.setLayoutData( fdSlabOffHeap );
+    wSlabOffHeap.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
+    wlOverflowToDisk = new Label( shell, SWT.RIGHT );
+    wlOverflowToDisk.setText( BaseMessages.getString( PKG, "StreamLookupDialog.OverflowToDisk.Label" ) );
+    wlOverflowToDisk.setToolTipText( BaseMessages.getString( PKG, "StreamLookupDialog.OverflowToDisk.Tooltip" ) );
+    props.setLook( wlOverflowToDisk );
+    fdlOverflowToDisk = new FormData();
+    fdlOverflowToDisk.left = new FormAttachment( 0, 0 );
+    fdlOverflowToDisk.top = new FormAttachment( wSlabOffHeap, margin );
+    fdlOverflowToDisk.right = new FormAttachment( middle, -margin );
+    wlOverflowToDisk.setLayoutData( fdlOverflowToDisk );
+    wOverflowToDisk = new Button( shell, SWT.CHECK );
+    props.setLook( wOverflowToDisk );
+    fdOverflowToDisk = new FormData();
+    fdOverflowToDisk.left = new FormAttachment( middle, 0 );
+    fdOverflowToDisk.top = new FormAttachment( wSlabOffHeap, margin );
+    fdOverflowToDisk.right = new FormAttachment( 100, 0 );
+    wOverflowToDisk.setLayoutData( fdOverflowToDisk );
+    wOverflowToDisk.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        input.setChanged();
+      }
+    } );
+
+    wlOverflowMemoryLimit = new Label( shell, SWT.RIGHT );
+    wlOverflowMemoryLimit.setText( BaseMessages.getString( PKG, "StreamLookupDialog.OverflowMemoryLimit.Label" ) );
+    props.setLook( wlOverflowMemoryLimit );
+    fdlOverflowMemoryLimit = new FormData();
+    fdlOverflowMemoryLimit.left = new FormAttachment( 0, 0 );
+    fdlOverflowMemoryLimit.top = new FormAttachment( wOverflowToDisk, margin );
+    fdlOverflowMemoryLimit.right = new FormAttachment( middle, -margin );
+    wlOverflowMemoryLimit.setLayoutData( fdlOverflowMemoryLimit );
+    wOverflowMemoryLimit = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wOverflowMemoryLimit.setToolTipText(
+      BaseMessages.getString( PKG, "StreamLookupDialog.OverflowMemoryLimit.Tooltip" ) );
+    props.setLook( wOverflowMemoryLimit );
+    wOverflowMemoryLimit.addModifyListener( lsMod );
+    fdOverflowMemoryLimit = new FormData();
+    fdOverflowMemoryLimit.left = new FormAttachment( middle, 0 );
+    fdOverflowMemoryLimit.top = new FormAttachment( wOverflowToDisk, margin );
+    fdOverflowMemoryLimit.right = new FormAttachment( 100, 0 );
+    wOverflowMemoryLimit.setLayoutData( fdOverflowMemoryLimit );
+
     // PDI-2107 preserve memory should be enabled to have this options on.
-    wPreserveMemory.addListener( SWT.Selection, new Listener() {
+    Listener lsAlgorithm = new Listener() {
       @Override
       public void handleEvent( Event event ) {
-        boolean selection = wPreserveMemory.getSelection();
-        wSortedList.setEnabled( selection );
-        wIntegerPair.setEnabled( selection );
+        setAlgorithmFlags();
       }
-    } );
+    };
+    wPreserveMemory.addListener( SWT.Selection, lsAlgorithm );
+    wSortedList.addListener( SWT.Selection, lsAlgorithm );
+    wIntegerPair.addListener( SWT.Selection, lsAlgorithm );
+    wSlabHashIndex.addListener( SWT.Selection, lsAlgorithm );
+    wOverflowToDisk.addListener( SWT.Selection, lsAlgorithm );
 
     // END MEMORY PRESERVE
 
@@ -526,17 +634,17 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     StreamInterface infoStream = input.getStepIOMeta().getInfoStreams().get( 0 );
     wStep.setText( Const.NVL( infoStream.getStepname(), "" ) );
 
-    boolean isPreserveMemory = input.isMemoryPreservationActive();
-    wPreserveMemory.setSelection( isPreserveMemory );
-    if ( isPreserveMemory ) {
-      wSortedList.setEnabled( true );
-      wIntegerPair.setEnabled( true );
-    }
+    wPreserveMemory.setSelection( input.isMemoryPreservationActive() );
     // PDI-2107 usually this is sorted list or integer pair
     // for backward compatibility they can be set both
     // but user will be forced to choose only one option later.
     wSortedList.setSelection( input.isUsingSortedList() );
     wIntegerPair.setSelection( input.isUsingIntegerPair() );
+    wSlabHashIndex.setSelection( input.isUsingSlabHashIndex() );
+    wSlabOffHeap.setSelection( input.isSlabOffHeap() );
+    wOverflowToDisk.setSelection( input.isOverflowToDisk() );
+    wOverflowMemoryLimit.setText( Const.NVL( input.getOverflowMemoryLimit(), "" ) );
+    setAlgorithmFlags();
 
     wKey.setRowNums();
     wKey.optWidth( true );
@@ -547,6 +655,17 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     wStepname.setFocus();
   }
 
+  private void setAlgorithmFlags() {
+    boolean preserveMemory = wPreserveMemory.getSelection();
+    wSortedList.setEnabled( preserveMemory );
+    wIntegerPair.setEnabled( preserveMemory );
+    wSlabHashIndex.setEnabled( preserveMemory );
+    wlSlabOffHeap.setEnabled( preserveMemory && wSlabHashIndex.getSelection() );
+    wSlabOffHeap.setEnabled( preserveMemory && wSlabHashIndex.getSelection() );
+    wlOverflowMemoryLimit.setEnabled( wOverflowToDisk.getSelection() );
+    wOverflowMemoryLimit.setEnabled( wOverflowToDisk.getSelection() );
+  }
+
   private void cancel() {
     stepname = null;
     input.setChanged( changed );
@@ -564,6 +683,10 @@ public class StreamLookupDialog extends BaseStepDialog implements StepDialogInte
     input.setMemoryPreservationActive( wPreserveMemory.getSelection() );
     input.setUsingSortedList( wSortedList.getSelection() );
     input.setUsingIntegerPair( wIntegerPair.getSelection() );
+    input.setUsingSlabHashIndex( wSlabHashIndex.getSelection() );
+    input.setSlabOffHeap( wSlabOffHeap.getSelection() );
+    input.setOverflowToDisk( wOverflowToDisk.getSelection() );
+    input.setOverflowMemoryLimit( wOverflowMemoryLimit.getText() );
 
     if ( log.isDebug() ) {
       logDebug( BaseMessages.getString( PKG, "StreamLookupDialog.Log.FoundKeys", nrkeys + "" ) );